@@ -62,6 +62,11 @@ import weka.core.Summarizable;
  * The number of folds for the cross-validation (default: 10).
  * <p/>
  * 
+ * -eval-slots number <br/>
+ * The number of threads for the cross-validation folds (default: 1, 0 to
+ * auto-detect number of cores).
+ * <p/>
+ * 
  * -no-cv <br/>
  * No cross validation. If no test file is provided, no evaluation is done.
  * <p/>
@@ -300,6 +305,26 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
     return m_delegate.getDiscardPredictions();
   }
 
+  /**
+   * Sets the number of threads used to build and evaluate the folds of a
+   * cross-validation.
+   *
+   * @param value the number of threads, 0 to use one per available core
+   */
+  public void setNumExecutionSlots(int value) {
+    m_delegate.setNumExecutionSlots(value);
+  }
+
+  /**
+   * Gets the number of threads used to build and evaluate the folds of a
+   * cross-validation.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_delegate.getNumExecutionSlots();
+  }
+
   /**
    * Returns the area under ROC for those predictions that have been collected
    * in the evaluateClassifier(Classifier, Instances) method. Returns
@@ -436,6 +461,11 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
    * The number of folds for the cross-validation (default: 10).
    * <p/>
    * 
+   * -eval-slots number <br/>
+   * The number of threads for the cross-validation folds (default: 1, 0 to
+   * auto-detect number of cores).
+   * <p/>
+   * 
    * -no-cv <br/>
    * No cross validation. If no test file is provided, no evaluation is done.
    * <p/>
@@ -570,6 +600,11 @@ public class Evaluation implements Serializable, Summarizable, RevisionHandler {
    * The number of folds for the cross-validation (default: 10).
    * <p/>
    * 
+   * -eval-slots number <br/>
+   * The number of threads for the cross-validation folds (default: 1, 0 to
+   * auto-detect number of cores).
+   * <p/>
+   * 
    * -no-cv <br/>
    * No cross validation. If no test file is provided, no evaluation is done.
    * <p/>
@@ -200,7 +200,7 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
           @Override
           public void run() {
             try {
-              currentClassifier.buildClassifier(getTrainingSet(iteration));
+              buildClassifier(iteration);
             } catch (Throwable ex) {
               ex.printStackTrace();
               numFailed.incrementAndGet();
@@ -226,11 +226,23 @@ public abstract class ParallelIteratedSingleClassifierEnhancer extends
     } else {
       // simple single-threaded execution
       for (int i = 0; i < m_Classifiers.length; i++) {
-        m_Classifiers[i].buildClassifier(getTrainingSet(i));
+        buildClassifier(i);
       }
     }
   }
 
+  /**
+   * Builds the classifier of a particular iteration on the training set for
+   * that iteration. May be called concurrently for different iterations.
+   *
+   * @param iteration the number of the iteration
+   * @throws Exception if something goes wrong during the training process
+   */
+  protected void buildClassifier(int iteration) throws Exception {
+
+    m_Classifiers[iteration].buildClassifier(getTrainingSet(iteration));
+  }
+
   /**
    * Gets a training set for a particular iteration. Implementations need to be
    * careful with thread safety and should probably be synchronized to be on the
@@ -0,0 +1,49 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PresortedIndexHandler.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers;
+
+import weka.core.PresortedIndex;
+
+/**
+ * Classifiers that sort their training data can implement this to be trained
+ * on a weighted sample of a dataset whose instances have already been sorted
+ * once, e.g., by an ensemble that trains many members on bootstrap samples of
+ * the same data.
+ *
+ * @version $Revision$
+ */
+public interface PresortedIndexHandler {
+
+  /**
+   * Builds the classifier on a sample of the indexed dataset. The result must
+   * be equivalent to building the classifier on the dataset returned by
+   * <code>index.sample(index.rows(weights), weights)</code>, up to the order
+   * in which instances with equal values are processed.
+   *
+   * @param index the presorted index of the dataset
+   * @param weights the weight of each instance of the dataset in the sample,
+   *          0 if it is not part of the sample
+   * @throws Exception if the classifier could not be built
+   */
+  public void buildClassifier(PresortedIndex index, double[] weights)
+    throws Exception;
+}
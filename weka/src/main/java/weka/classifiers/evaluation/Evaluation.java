@@ -56,6 +56,11 @@ import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -87,6 +92,11 @@ import java.util.zip.GZIPOutputStream;
  * The number of folds for the cross-validation (default: 10).
  * <p/>
  *
+ * -eval-slots number <br/>
+ * The number of threads for the cross-validation folds (default: 1, 0 to
+ * auto-detect number of cores).
+ * <p/>
+ *
  * -no-cv <br/>
  * No cross validation. If no test file is provided, no evaluation is done.
  * <p/>
@@ -458,6 +468,11 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    */
   protected List<String> m_metricsToDisplay = new ArrayList<String>();
 
+  /**
+   * The number of threads used for the folds of a cross-validation
+   */
+  protected int m_NumExecutionSlots = 1;
+
   public static final String[] BUILT_IN_EVAL_METRICS = {"Correct",
           "Incorrect", "Kappa", "Total cost", "Average cost", "KB relative",
           "KB information", "Correlation", "Complexity 0", "Complexity scheme",
@@ -610,6 +625,26 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     return m_DiscardPredictions;
   }
 
+  /**
+   * Sets the number of threads used to build and evaluate the folds of a
+   * cross-validation. The results are deterministic for a given seed.
+   *
+   * @param value the number of threads, 0 to use one per available core
+   */
+  public void setNumExecutionSlots(int value) {
+    m_NumExecutionSlots = value;
+  }
+
+  /**
+   * Gets the number of threads used to build and evaluate the folds of a
+   * cross-validation.
+   *
+   * @return the number of threads
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
   /**
    * Returns the list of plugin metrics in use (or null if there are none)
    *
@@ -801,7 +836,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * Performs a (stratified if class is nominal) cross-validation for a
    * classifier on a set of instances. Performs a deep copy of the
    * classifier before each call to buildClassifier() (just in case the
-   * classifier is not initialized properly).
+   * classifier is not initialized properly). The data is copied, unless it
+   * is a SubsetInstances view: then the folds are views onto the same
+   * instances, and the classifier must not modify its training data.
    *
    * @param classifier             the classifier with any options set.
    * @param data                   the data on which the cross-validation is to be performed
@@ -818,8 +855,15 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
                                  int numFolds, Random random, Object... forPrinting)
           throws Exception {
 
-    // Make a copy of the data we can reorder
-    data = new Instances(data);
+    // Make a copy of the data we can reorder. If the data is a view, make
+    // a view instead: its folds are views as well, so no instances are
+    // copied per fold, but the classifier must leave its training data
+    // unchanged.
+    if (data instanceof SubsetInstances) {
+      data = new SubsetInstances(data);
+    } else {
+      data = new Instances(data);
+    }
     data.randomize(random);
     if (data.classAttribute().isNominal()) {
       data.stratify(numFolds);
@@ -835,6 +879,19 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
       classificationOutput.printHeader();
     }
 
+    // Folds can only be run concurrently if they don't print predictions
+    // and all statistics can be merged afterwards
+    int numSlots = (m_NumExecutionSlots > 0) ? m_NumExecutionSlots
+      : Runtime.getRuntime().availableProcessors();
+    if ((numSlots > 1) && (numFolds > 1) && (classificationOutput == null)
+      && ((m_pluginMetrics == null) || m_pluginMetrics.isEmpty())) {
+      crossValidateModelInParallel(classifier, data, numFolds, random,
+        Math.min(numSlots, numFolds),
+        (forPrinting.length > 0) ? (StringBuffer) forPrinting[0] : null);
+      m_NumFolds = numFolds;
+      return;
+    }
+
     // Do the folds
     for (int i = 0; i < numFolds; i++) {
       Instances train = data.trainCV(numFolds, i, random);
@@ -859,6 +916,113 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     }
   }
 
+  /**
+   * Builds and evaluates the folds of a cross-validation on a fixed pool of
+   * threads. The folds are generated up front in the same order as in the
+   * sequential case, so the random number generator is used identically, and
+   * the per-fold evaluations are aggregated in fold order afterwards. Hence
+   * the results do not depend on the order in which the folds finish.
+   *
+   * @param classifier the classifier with any options set
+   * @param data the randomized (and stratified) data
+   * @param numFolds the number of folds for the cross-validation
+   * @param random random number generator for generating the training sets
+   * @param numSlots the number of threads to use
+   * @param modelOutput the buffer to append the models to, can be null
+   * @throws Exception if a classifier could not be generated successfully
+   */
+  protected void crossValidateModelInParallel(final Classifier classifier,
+    Instances data, int numFolds, Random random, int numSlots,
+    StringBuffer modelOutput) throws Exception {
+
+    ExecutorService executor = Executors.newFixedThreadPool(numSlots);
+    try {
+      Evaluation[] folds = new Evaluation[numFolds];
+      List<Future<Classifier>> models = new ArrayList<Future<Classifier>>();
+      for (int i = 0; i < numFolds; i++) {
+        final Instances train = data.trainCV(numFolds, i, random);
+        final Instances test = data.testCV(numFolds, i);
+        final Evaluation fold = new Evaluation(train, m_CostMatrix);
+        fold.setDiscardPredictions(m_DiscardPredictions);
+        folds[i] = fold;
+        models.add(executor.submit(new Callable<Classifier>() {
+          @Override
+          public Classifier call() throws Exception {
+            Classifier copiedClassifier = AbstractClassifier.makeCopy(classifier);
+            copiedClassifier.buildClassifier(train);
+            fold.evaluateModel(copiedClassifier, test);
+            return copiedClassifier;
+          }
+        }));
+      }
+
+      // merge the statistics collected so far and the ones of the folds
+      AggregateableEvaluation merged = new AggregateableEvaluation(this);
+      merged.aggregate(this);
+      boolean complexityAvailable = m_ComplexityStatisticsAvailable;
+      boolean coverageAvailable = m_CoverageStatisticsAvailable;
+      for (int i = 0; i < numFolds; i++) {
+        Classifier copiedClassifier;
+        try {
+          copiedClassifier = models.get(i).get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+        if (modelOutput != null) {
+          modelOutput.append("\n=== Classifier model (training fold " + (i + 1) +") ===\n\n" +
+                  copiedClassifier);
+        }
+        merged.aggregate(folds[i]);
+        complexityAvailable &= folds[i].m_ComplexityStatisticsAvailable;
+        coverageAvailable &= folds[i].m_CoverageStatisticsAvailable;
+      }
+
+      m_Incorrect = merged.m_Incorrect;
+      m_Correct = merged.m_Correct;
+      m_Unclassified = merged.m_Unclassified;
+      m_MissingClass = merged.m_MissingClass;
+      m_WithClass = merged.m_WithClass;
+      m_ConfusionMatrix = merged.m_ConfusionMatrix;
+      m_TotalCost = merged.m_TotalCost;
+      m_SumErr = merged.m_SumErr;
+      m_SumAbsErr = merged.m_SumAbsErr;
+      m_SumSqrErr = merged.m_SumSqrErr;
+      m_SumClass = merged.m_SumClass;
+      m_SumSqrClass = merged.m_SumSqrClass;
+      m_SumPredicted = merged.m_SumPredicted;
+      m_SumSqrPredicted = merged.m_SumSqrPredicted;
+      m_SumClassPredicted = merged.m_SumClassPredicted;
+      m_SumPriorAbsErr = merged.m_SumPriorAbsErr;
+      m_SumPriorSqrErr = merged.m_SumPriorSqrErr;
+      m_SumKBInfo = merged.m_SumKBInfo;
+      m_MarginCounts = merged.m_MarginCounts;
+      m_SumPriorEntropy = merged.m_SumPriorEntropy;
+      m_SumSchemeEntropy = merged.m_SumSchemeEntropy;
+      m_TotalSizeOfRegions = merged.m_TotalSizeOfRegions;
+      m_TotalCoverage = merged.m_TotalCoverage;
+      m_Predictions = merged.m_Predictions;
+      m_ComplexityStatisticsAvailable = complexityAvailable;
+      m_CoverageStatisticsAvailable = coverageAvailable;
+
+      // like in the sequential case, the priors are the ones of the last fold
+      Evaluation last = folds[numFolds - 1];
+      m_NoPriors = false;
+      m_ClassPriors = last.m_ClassPriors;
+      m_ClassPriorsSum = last.m_ClassPriorsSum;
+      m_NumTrainClassVals = last.m_NumTrainClassVals;
+      m_TrainClassVals = last.m_TrainClassVals;
+      m_TrainClassWeights = last.m_TrainClassWeights;
+      m_PriorEstimator = last.m_PriorEstimator;
+      m_MinTarget = last.m_MinTarget;
+      m_MaxTarget = last.m_MaxTarget;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
   /**
    * Performs a (stratified if class is nominal) cross-validation for a
    * classifier on a set of instances.
@@ -903,6 +1067,11 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * The number of folds for the cross-validation (default: 10).
    * <p/>
    * <p>
+   * -eval-slots number <br/>
+   * The number of threads for the cross-validation folds (default: 1, 0 to
+   * auto-detect number of cores).
+   * <p/>
+   * <p>
    * -no-cv <br/>
    * No cross validation. If no test file is provided, no evaluation is done.
    * <p/>
@@ -1172,6 +1341,11 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
    * The number of folds for the cross-validation (default: 10).
    * <p/>
    *
+   * -eval-slots number <br/>
+   * The number of threads for the cross-validation folds (default: 1, 0 to
+   * auto-detect number of cores).
+   * <p/>
+   *
    * -no-cv <br/>
    * No cross validation. If no test file is provided, no evaluation is done.
    * <p/>
@@ -1302,6 +1476,7 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     String objectOutputFileName = Utils.getOption('d', options);
     String testFileName = Utils.getOption('T', options);
     String foldsString = Utils.getOption('x', options);
+    String numSlotsString = Utils.getOption("eval-slots", options);
     String seedString = Utils.getOption('s', options);
     boolean outputModelsForTrainingSplits = Utils.getFlag("output-models-for-training-splits", options);
     boolean classStatistics = !Utils.getFlag("do-not-output-per-class-statistics", options);
@@ -1328,7 +1503,7 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     CostMatrix costMatrix = null;
     double splitPercentage = -1;
     int classIndex = -1, actualClassIndex = -1;
-    int seed = 1, folds = 10;
+    int seed = 1, folds = 10, numSlots = 1;
     Instances train = null, test = null, template = null;
     AbstractOutput classificationOutput = null;
     List<String> toggleList = new ArrayList<String>();
@@ -1433,6 +1608,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
       if (foldsString.length() != 0) {
         folds = Integer.parseInt(foldsString);
       }
+      if (numSlotsString.length() != 0) {
+        numSlots = Integer.parseInt(numSlotsString);
+      }
       if (classIndexString.length() != 0) {
         if (classIndexString.equals("first")) {
           classIndex = 1;
@@ -1743,6 +1921,7 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
         testingEvaluation = new Evaluation(new Instances(mappedClassifierHeader, 0), costMatrix);
       }
       testingEvaluation.setDiscardPredictions(discardPredictions);
+      testingEvaluation.setNumExecutionSlots(numSlots);
       testingEvaluation.toggleEvalMetrics(toggleList);
 
       // CASE 1: SEPARATE TEST SET
@@ -4514,6 +4693,9 @@ public class Evaluation implements Summarizable, RevisionHandler, Serializable {
     optionsText.append("-x <number of folds>\n");
     optionsText
       .append("\tSets number of folds for cross-validation (default: 10).\n");
+    optionsText.append("-eval-slots <num>\n");
+    optionsText
+      .append("\tNumber of threads for building and evaluating the folds of the\n\tcross-validation (default: 1, 0 to auto-detect number of cores).\n");
     optionsText.append("-no-cv\n");
     optionsText.append("\tDo not perform any cross validation.\n");
     optionsText.append("-force-batch-training\n");
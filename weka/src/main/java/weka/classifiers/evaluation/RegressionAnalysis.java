@@ -216,6 +216,25 @@ public class RegressionAnalysis {
     Matrix X = new Matrix(array);
     Matrix Xt = X.transpose();
     Matrix XtX = Xt.times(X);
+
+    return calculateStdErrorOfCoef(XtX, ssr, n, k);
+  }
+
+  /**
+   * Returns an array of the standard errors of the coefficients in a multiple
+   * linear regression, given the sums of products of the X variables instead
+   * of the data. The last row and column of XtX belong to the constant, whose
+   * standard error is the last element of the array.
+   * 
+   * @param XtX (X'X, including a column of 1's for the constant)
+   * @param ssr (sum of squared residuals)
+   * @param n (number of instances)
+   * @param k (number of coefficients; includes constant)
+   * 
+   * @return array of standard errors of coefficients
+   */
+  public static double[] calculateStdErrorOfCoef(Matrix XtX, double ssr,
+    int n, int k) {
     Matrix inverse = XtX.inverse();
 
     double mse = ssr / (n - k);
@@ -41,6 +41,7 @@ import weka.core.TechnicalInformation.Type;
 import weka.core.TechnicalInformationHandler;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
+import weka.core.matrix.BlockedCholesky;
 import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.NominalToBinary;
 import weka.filters.unsupervised.attribute.Normalize;
@@ -50,12 +51,21 @@ import weka.filters.unsupervised.attribute.Standardize;
 import no.uib.cipr.matrix.*;
 import no.uib.cipr.matrix.Matrix;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <!-- globalinfo-start -->
- * * Implements Gaussian processes for regression without hyperparameter-tuning. To make choosing an appropriate noise level easier, this implementation applies normalization/standardization to the target attribute as well as the other attributes (if  normalization/standardizaton is turned on). Missing values are replaced by the global mean/mode. Nominal attributes are converted to binary ones. Note that kernel caching is turned off if the kernel used implements CachedKernel.
+ * * Implements Gaussian processes for regression without hyperparameter-tuning. To make choosing an appropriate noise level easier, this implementation applies normalization/standardization to the target attribute as well as the other attributes (if  normalization/standardizaton is turned on). Missing values are replaced by the global mean/mode. Nominal attributes are converted to binary ones. Note that kernel caching is turned off if the kernel used implements CachedKernel. For large datasets, a sparse approximation can be used that is based on a random subset of the training instances, the inducing points (deterministic training conditional).
  * * <br><br>
  * <!-- globalinfo-end -->
  * 
@@ -86,6 +96,16 @@ import java.util.Enumeration;
  * *  The Kernel to use.
  * *  (default: weka.classifiers.functions.supportVector.PolyKernel)</pre>
  * * 
+ * * <pre> -inducing-points &lt;num&gt;
+ * *  The number of inducing points for a sparse approximation,
+ * *  0 to use all training instances.
+ * *  (default 0)</pre>
+ * * 
+ * * <pre> -num-threads &lt;num&gt;
+ * *  The number of threads to use for building the model,
+ * *  0 for one per available processor.
+ * *  (default 1)</pre>
+ * * 
  * * <pre> -S &lt;num&gt;
  * *  Random number seed.
  * *  (default 1)</pre>
@@ -118,6 +138,11 @@ import java.util.Enumeration;
  * *  -1 to turn it off.
  * *  (default: 250007)</pre>
  * * 
+ * * <pre> -row-cache &lt;num&gt;
+ * *  The memory for caching whole rows of the kernel matrix
+ * *  in megabytes, replaces the cache above if &gt; 0.
+ * *  (default: 0)</pre>
+ * * 
  * * <pre> -output-debug-info
  * *  Enables debugging output (if available) to be printed.
  * *  (default: off)</pre>
@@ -193,21 +218,90 @@ public class GaussianProcesses extends RandomizableClassifier implements
   /** Actual kernel object to use */
   protected Kernel m_actualKernel;
 
-  /** The number of training instances */
+  /** The number of training instances, or inducing points */
   protected int m_NumTrain = 0;
 
   /** The training data. */
   protected double m_avg_target;
 
-  /** (negative) covariance matrix in symmetric matrix representation **/
+  /**
+   * (negative) covariance matrix in symmetric matrix representation; with
+   * inducing points, the inverse of their covariance matrix minus their
+   * posterior covariance matrix. Null once training instances have been
+   * added to the exact model.
+   **/
   public Matrix m_L;
 
+  /**
+   * The Cholesky factor of the weighted kernel matrix plus the noise, as rows
+   * of increasing length, which replaces its inverse once training instances
+   * have been added to the exact model; null otherwise
+   */
+  protected double[][] m_Cholesky;
+
   /** The vector of target values. */
   protected Vector m_t;
   
   /** The weight of the training instances. */
   protected double[] m_weights;
 
+  /** The number of inducing points, 0 to use all training instances */
+  protected int m_numInducingPoints = 0;
+
+  /** The number of threads to build the model with */
+  protected int m_numThreads = 1;
+
+  /** The filtered instances the kernel is built on */
+  protected Instances m_Data;
+
+  /** The posterior covariance matrix of the inducing points, null if none */
+  protected Matrix m_Sigma;
+
+  /**
+   * The sum of the kernel values between each training instance and the
+   * inducing points, multiplied by the instance's weight over the squared
+   * noise
+   */
+  protected double[] m_B1;
+
+  /** The same sum with the values also multiplied by the target value */
+  protected double[] m_By;
+
+  /** The sum of the weights of the training instances */
+  protected double m_SumOfWeights;
+
+  /** The sum of the weighted target values of the training instances */
+  protected double m_SumOfWeightedTargets;
+
+  /** The number of consecutive rows a thread processes at a time */
+  protected static final int CHUNK_SIZE = 8;
+
+  /** The number of training instances processed together with inducing points */
+  protected static final int INSTANCE_BLOCK_SIZE = 256;
+
+  /**
+   * The smallest Schur complement of a new diagonal entry of the kernel
+   * matrix, relative to the entry, for which the Cholesky factor is extended
+   * rather than computed from scratch
+   */
+  protected static final double MIN_RELATIVE_PIVOT = 1e-8;
+
+  /**
+   * Computes values for a range of rows, using a kernel of its own.
+   */
+  protected interface RowTask {
+
+    /**
+     * Processes the rows in the given range.
+     *
+     * @param kernel the kernel to use, not shared with other threads
+     * @param from the first row
+     * @param to the row after the last one
+     * @throws Exception if something goes wrong
+     */
+    void run(Kernel kernel, int from, int to) throws Exception;
+  }
+
   /**
    * Returns a string describing classifier
    * 
@@ -224,7 +318,10 @@ public class GaussianProcesses extends RandomizableClassifier implements
       + " normalization/standardizaton is turned on). Missing values "
       + "are replaced by the global mean/mode. Nominal attributes are "
       + "converted to binary ones. Note that kernel caching is turned off "
-      + "if the kernel used implements CachedKernel.";
+      + "if the kernel used implements CachedKernel. For large datasets, a "
+      + "sparse approximation can be used that is based on a random subset of "
+      + "the training instances, the inducing points (deterministic training "
+      + "conditional).";
   }
 
   /**
@@ -341,8 +438,6 @@ public class GaussianProcesses extends RandomizableClassifier implements
       m_Filter = null;
     }
 
-    m_NumTrain = insts.numInstances();
-
     // determine which linear transformation has been
     // applied to the class by the filter
     if (m_Filter != null) {
@@ -362,51 +457,627 @@ public class GaussianProcesses extends RandomizableClassifier implements
       m_Blin = 0.0;
     }
 
-    // Initialize kernel
-    m_actualKernel = Kernel.makeCopy(m_kernel);
-    if (m_kernel instanceof CachedKernel) {
-      ((CachedKernel)m_actualKernel).setCacheSize(-1); // We don't need a cache at all
-    }
-    m_actualKernel.buildKernel(insts);
+    buildModel(insts);
+  } // buildClassifier
+
+  /**
+   * Builds the model from the filtered training instances.
+   * 
+   * @param insts the filtered training instances
+   * @throws Exception if the model can't be built
+   */
+  protected void buildModel(Instances insts) throws Exception {
 
     // Compute average target value
-    double sum = 0.0;
+    m_SumOfWeights = 0.0;
+    m_SumOfWeightedTargets = 0.0;
     for (int i = 0; i < insts.numInstances(); i++) {
-      sum += insts.instance(i).weight() * insts.instance(i).classValue();
+      m_SumOfWeights += insts.instance(i).weight();
+      m_SumOfWeightedTargets += insts.instance(i).weight()
+        * insts.instance(i).classValue();
     }
-    m_avg_target = sum / insts.sumOfWeights();
+    m_avg_target = m_SumOfWeightedTargets / m_SumOfWeights;
 
     // Store squared noise level
     m_deltaSquared = m_delta * m_delta;
 
+    int numThreads = m_numThreads;
+    if (numThreads <= 0) {
+      numThreads = Runtime.getRuntime().availableProcessors();
+    }
+    ExecutorService executor = null;
+    if (numThreads > 1) {
+      executor = Executors.newFixedThreadPool(numThreads);
+    }
+    try {
+      if ((m_numInducingPoints > 0)
+        && (m_numInducingPoints < insts.numInstances())) {
+        buildSparseModel(insts, executor, numThreads);
+      } else {
+        buildExactModel(insts, executor, numThreads);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Builds the model from all training instances, inverting the kernel matrix
+   * with several threads if an executor is given.
+   * 
+   * @param insts the filtered training instances
+   * @param executor the threads to use, null for the calling thread only
+   * @param numThreads the number of threads
+   * @throws Exception if the model can't be built
+   */
+  protected void buildExactModel(Instances insts, ExecutorService executor,
+    int numThreads) throws Exception {
+
+    m_Data = insts;
+    m_Sigma = null;
+    m_Cholesky = null;
+    m_B1 = null;
+    m_By = null;
+    m_NumTrain = insts.numInstances();
+
+    // Initialize kernel
+    m_actualKernel = newKernel(insts);
+
     // Store square roots of instance m_weights
     m_weights = new double[insts.numInstances()];
     for (int i  = 0; i < insts.numInstances(); i++) {
       m_weights[i] = Math.sqrt(insts.instance(i).weight());
     }
 
-    // initialize kernel matrix/covariance matrix
     int n = insts.numInstances();
-    m_L = new UpperSPDDenseMatrix(n);
-    for (int i = 0; i < n; i++) {
-      for (int j = i + 1; j < n; j++) {
-        m_L.set(i, j, m_weights[i] * m_weights[j] * m_actualKernel.eval(i, j, insts.instance(i)));
+    if (executor == null) {
+
+      // initialize kernel matrix/covariance matrix
+      m_L = new UpperSPDDenseMatrix(n);
+      for (int i = 0; i < n; i++) {
+        for (int j = i + 1; j < n; j++) {
+          m_L.set(i, j, m_weights[i] * m_weights[j] * m_actualKernel.eval(i, j, insts.instance(i)));
+        }
+        m_L.set(i, i, m_weights[i] * m_weights[i] * m_actualKernel.eval(i, i, insts.instance(i)) + m_deltaSquared);
       }
-      m_L.set(i, i, m_weights[i] * m_weights[i] * m_actualKernel.eval(i, i, insts.instance(i)) + m_deltaSquared);
+
+      // Compute inverse of kernel matrix
+      m_L = new DenseCholesky(n, true).factor((UpperSPDDenseMatrix)m_L).solve(Matrices.identity(n));
+      m_L = new UpperSPDDenseMatrix(m_L); // Convert from DenseMatrix
+    } else {
+
+      // the lower triangle of the kernel matrix, computed row by row
+      final double[][] k = new double[n][];
+      forEachRow(0, n, executor, newKernels(numThreads), new RowTask() {
+        @Override
+        public void run(Kernel kernel, int from, int to) throws Exception {
+          for (int r = from; r < to; r++) {
+            k[r] = new double[r + 1];
+            for (int c = 0; c < r; c++) {
+              k[r][c] = m_weights[c] * m_weights[r]
+                * kernel.eval(c, r, m_Data.instance(c));
+            }
+            k[r][r] = m_weights[r] * m_weights[r]
+              * kernel.eval(r, r, m_Data.instance(r)) + m_deltaSquared;
+          }
+        }
+      });
+      m_L = new UpperSPDDenseMatrix(n);
+      setUpper(m_L, inverse(k, executor, numThreads));
     }
 
-    // Compute inverse of kernel matrix
-    m_L = new DenseCholesky(n, true).factor((UpperSPDDenseMatrix)m_L).solve(Matrices.identity(n));
-    m_L = new UpperSPDDenseMatrix(m_L); // Convert from DenseMatrix
+    computeTargets();
+  }
 
-    // Compute t
+  /**
+   * Builds a sparse approximation that uses a random subset of the training
+   * instances as inducing points. The training instances are processed in
+   * blocks, computing their kernel vectors and updating the matrix that is
+   * inverted to obtain the posterior covariance of the inducing points with
+   * several threads if an executor is given.
+   * 
+   * @param insts the filtered training instances
+   * @param executor the threads to use, null for the calling thread only
+   * @param numThreads the number of threads
+   * @throws Exception if the model can't be built
+   */
+  protected void buildSparseModel(final Instances insts,
+    ExecutorService executor, int numThreads) throws Exception {
+
+    final int m = m_numInducingPoints;
+    int[] indices = selectInducingPoints(insts);
+    m_Data = new Instances(insts, m);
+    for (int i = 0; i < m; i++) {
+      m_Data.add(insts.instance(indices[i]));
+    }
+    m_NumTrain = m;
+    m_Cholesky = null;
+    m_weights = new double[m];
+    Arrays.fill(m_weights, 1.0);
+    m_actualKernel = newKernel(m_Data);
+    Kernel[] kernels = newKernels(numThreads);
+
+    // the lower triangle of the kernel matrix of the inducing points, with a
+    // little jitter on the diagonal in case it is singular
+    final double[][] kmm = new double[m][];
+    forEachRow(0, m, executor, kernels, new RowTask() {
+      @Override
+      public void run(Kernel kernel, int from, int to) throws Exception {
+        for (int r = from; r < to; r++) {
+          kmm[r] = new double[r + 1];
+          for (int c = 0; c <= r; c++) {
+            kmm[r][c] = kernel.eval(c, r, m_Data.instance(c));
+          }
+        }
+      }
+    });
+    double[][] kmmInverse = jitteredInverse(kmm, true, executor, numThreads,
+      "Covariance matrix of the inducing points");
+
+    // add the kernel vectors of the training instances, block by block
+    final double[][] a = copy(kmm);
+    m_B1 = new double[m];
+    m_By = new double[m];
+    final int[] ids = new int[m];
+    for (int i = 0; i < m; i++) {
+      ids[i] = i;
+    }
+    final double[][] vectors = new double[INSTANCE_BLOCK_SIZE][m];
+    final double[] factors = new double[INSTANCE_BLOCK_SIZE];
+    for (int start = 0; start < insts.numInstances(); start += INSTANCE_BLOCK_SIZE) {
+      final int offset = start;
+      final int size = Math.min(INSTANCE_BLOCK_SIZE, insts.numInstances() - start);
+      forEachRow(0, size, executor, kernels, new RowTask() {
+        @Override
+        public void run(Kernel kernel, int from, int to) throws Exception {
+          for (int i = from; i < to; i++) {
+            kernel.evalRow(-1, insts.instance(offset + i), ids, m, vectors[i]);
+          }
+        }
+      });
+      for (int i = 0; i < size; i++) {
+        Instance inst = insts.instance(offset + i);
+        factors[i] = inst.weight() / m_deltaSquared;
+        for (int p = 0; p < m; p++) {
+          m_B1[p] += factors[i] * vectors[i][p];
+          m_By[p] += factors[i] * inst.classValue() * vectors[i][p];
+        }
+      }
+      forEachRow(0, m, executor, kernels, new RowTask() {
+        @Override
+        public void run(Kernel kernel, int from, int to) {
+          for (int p = from; p < to; p++) {
+            for (int q = 0; q <= p; q++) {
+              double sum = 0;
+              for (int i = 0; i < size; i++) {
+                sum += factors[i] * vectors[i][p] * vectors[i][q];
+              }
+              a[p][q] += sum;
+            }
+          }
+        }
+      });
+    }
+
+    // the kernel vectors may not add enough to the diagonal to make up for
+    // rounding errors, e.g. with a linear kernel and more inducing points
+    // than attributes
+    double[][] sigma = jitteredInverse(a, false, executor, numThreads,
+      "Posterior covariance matrix of the inducing points");
+    m_Sigma = new UpperSPDDenseMatrix(m);
+    setUpper(m_Sigma, sigma);
+    for (int i = 0; i < m; i++) {
+      for (int j = 0; j <= i; j++) {
+        kmmInverse[i][j] -= sigma[i][j];
+      }
+    }
+    m_L = new UpperSymmDenseMatrix(m);
+    setUpper(m_L, kmmInverse);
+
+    computeTargets();
+  }
+
+  /**
+   * Picks the training instances that serve as inducing points, at random.
+   * 
+   * @param insts the filtered training instances
+   * @return the indices of the inducing points, in increasing order
+   */
+  protected int[] selectInducingPoints(Instances insts) {
+
+    int[] indices = new int[insts.numInstances()];
+    for (int i = 0; i < indices.length; i++) {
+      indices[i] = i;
+    }
+    Random random = new Random(getSeed());
+    for (int i = 0; i < m_numInducingPoints; i++) {
+      int j = i + random.nextInt(indices.length - i);
+      int help = indices[i];
+      indices[i] = indices[j];
+      indices[j] = help;
+    }
+    indices = Arrays.copyOf(indices, m_numInducingPoints);
+    Arrays.sort(indices);
+
+    return indices;
+  }
+
+  /**
+   * Computes the vector that the kernel vector of an instance is multiplied
+   * with to get the predicted target value.
+   */
+  protected void computeTargets() {
+
+    int n = m_NumTrain;
     Vector tt = new DenseVector(n);
+    if (m_Cholesky != null) {
+      double[] y = new double[n];
+      for (int i = 0; i < n; i++) {
+        y[i] = m_weights[i] * (m_Data.instance(i).classValue() - m_avg_target);
+      }
+      m_t = new DenseVector(backSubstitution(m_Cholesky,
+        forwardSubstitution(m_Cholesky, y, n)), false);
+    } else if (m_Sigma == null) {
+      for (int i = 0; i < n; i++) {
+        tt.set(i, m_weights[i] * (m_Data.instance(i).classValue() - m_avg_target));
+      }
+      m_t = m_L.mult(tt, new DenseVector(n));
+    } else {
+      for (int i = 0; i < n; i++) {
+        tt.set(i, m_By[i] - m_avg_target * m_B1[i]);
+      }
+      m_t = m_Sigma.mult(tt, new DenseVector(n));
+    }
+  }
+
+  /**
+   * Adds a training instance to the model that has been built, without
+   * building it from scratch. In the exact model, the Cholesky factor of the
+   * kernel matrix is extended by a row, which takes time quadratic in the
+   * number of training instances, and the instance is appended to the
+   * training data. The inverse of the kernel matrix the model was built with
+   * is replaced by the factor the first time, which takes time cubic in the
+   * number of instances, as does computing the factor from scratch if the new
+   * row is numerically dependent on the others. With inducing points, the
+   * posterior covariance matrix receives a rank-one update instead, which
+   * takes time quadratic in the number of inducing points. The filters are
+   * not changed, and instances with a missing class are ignored.
+   * 
+   * @param inst the instance to add
+   * @throws Exception if no model has been built yet or the instance can't
+   *           be added
+   */
+  public void addTrainingInstance(Instance inst) throws Exception {
+
+    if (m_t == null) {
+      throw new Exception("No model built yet.");
+    }
+    if (inst.classIsMissing()) {
+      return;
+    }
+
+    inst = filterInstance(inst);
+    double weight = inst.weight();
+    double target = inst.classValue();
+    m_SumOfWeights += weight;
+    m_SumOfWeightedTargets += weight * target;
+    m_avg_target = m_SumOfWeightedTargets / m_SumOfWeights;
+
+    Vector k = kernelVector(inst);
+    int n = m_NumTrain;
+    if (m_Sigma != null) {
+
+      // Sherman-Morrison update of the posterior covariance
+      double factor = weight / m_deltaSquared;
+      Vector sk = m_Sigma.mult(k, new DenseVector(n));
+      double denom = 1.0 + factor * sk.dot(k);
+      for (int j = 0; j < n; j++) {
+        double f = factor * sk.get(j) / denom;
+        for (int i = 0; i <= j; i++) {
+          m_Sigma.add(i, j, -f * sk.get(i));
+          m_L.add(i, j, f * sk.get(i));
+        }
+        m_B1[j] += factor * k.get(j);
+        m_By[j] += factor * target * k.get(j);
+      }
+    } else {
+
+      // covariances of the new instance, weighted as in the kernel matrix
+      double w = Math.sqrt(weight);
+      double[] b = new double[n + 1];
+      for (int i = 0; i < n; i++) {
+        b[i] = w * k.get(i);
+      }
+      double c = weight * m_actualKernel.eval(-1, -1, inst) + m_deltaSquared;
+
+      if (m_Cholesky == null) {
+        m_Data = new Instances(m_Data); // may be the data the model was built on
+        factorKernelMatrix();
+      }
+      m_Data.add(inst);
+      m_actualKernel.buildKernel(m_Data);
+      m_weights = Arrays.copyOf(m_weights, n + 1);
+      m_weights[n] = w;
+      m_NumTrain = n + 1;
+
+      // the new row of the factor, unless the Schur complement of the new
+      // diagonal entry has lost too much to cancellation
+      double[] row = forwardSubstitution(m_Cholesky, b, n);
+      double s = c;
+      for (int i = 0; i < n; i++) {
+        s -= row[i] * row[i];
+      }
+      if (s > MIN_RELATIVE_PIVOT * c) {
+        row[n] = Math.sqrt(s);
+        m_Cholesky = Arrays.copyOf(m_Cholesky, n + 1);
+        m_Cholesky[n] = row;
+      } else {
+        factorKernelMatrix();
+      }
+    }
+
+    computeTargets();
+  }
+
+  /**
+   * Computes the Cholesky factor of the weighted kernel matrix of the training
+   * instances plus the noise, which replaces its inverse in the exact model.
+   * 
+   * @throws Exception if the matrix is not positive definite
+   */
+  protected void factorKernelMatrix() throws Exception {
+
+    int n = m_NumTrain;
+    double[][] a = new double[n][];
+    for (int r = 0; r < n; r++) {
+      a[r] = new double[r + 1];
+      for (int c = 0; c < r; c++) {
+        a[r][c] = m_weights[c] * m_weights[r]
+          * m_actualKernel.eval(c, r, m_Data.instance(c));
+      }
+      a[r][r] = m_weights[r] * m_weights[r]
+        * m_actualKernel.eval(r, r, m_Data.instance(r)) + m_deltaSquared;
+    }
+    BlockedCholesky cholesky = new BlockedCholesky(a);
+    if (!cholesky.isSPD()) {
+      throw new Exception("Covariance matrix is not positive definite.");
+    }
+    m_Cholesky = cholesky.getL();
+    m_L = null;
+  }
+
+  /**
+   * Solves L*x = b for the first rows of a lower triangular matrix L.
+   * 
+   * @param l the matrix, as rows of increasing length
+   * @param b the right-hand side, which is overwritten with the solution
+   * @param n the number of rows
+   * @return the solution, b
+   */
+  protected static double[] forwardSubstitution(double[][] l, double[] b,
+    int n) {
+
     for (int i = 0; i < n; i++) {
-      tt.set(i, m_weights[i] * (insts.instance(i).classValue() - m_avg_target));
+      double[] rowI = l[i];
+      double s = b[i];
+      for (int p = 0; p < i; p++) {
+        s -= rowI[p] * b[p];
+      }
+      b[i] = s / rowI[i];
     }
-    m_t = m_L.mult(tt, new DenseVector(insts.numInstances()));
 
-  } // buildClassifier
+    return b;
+  }
+
+  /**
+   * Solves L'*x = y for a lower triangular matrix L.
+   * 
+   * @param l the matrix, as rows of increasing length
+   * @param y the right-hand side, which is overwritten with the solution
+   * @return the solution, y
+   */
+  protected static double[] backSubstitution(double[][] l, double[] y) {
+
+    for (int i = l.length - 1; i >= 0; i--) {
+      y[i] /= l[i][i];
+      double yi = y[i];
+      double[] rowI = l[i];
+      for (int p = 0; p < i; p++) {
+        y[p] -= rowI[p] * yi;
+      }
+    }
+
+    return y;
+  }
+
+  /**
+   * Creates a kernel for the given data from the kernel template.
+   * 
+   * @param data the filtered instances
+   * @return the kernel, built on the data
+   * @throws Exception if the kernel can't be built
+   */
+  protected Kernel newKernel(Instances data) throws Exception {
+
+    Kernel result = Kernel.makeCopy(m_kernel);
+    if (m_kernel instanceof CachedKernel) {
+      ((CachedKernel)result).setCacheSize(-1); // We don't need a cache at all
+    }
+    result.buildKernel(data);
+
+    return result;
+  }
+
+  /**
+   * Returns one kernel per thread, all built on the instances the actual
+   * kernel is built on. The first one is the actual kernel.
+   * 
+   * @param numThreads the number of threads
+   * @return the kernels
+   * @throws Exception if a kernel can't be built
+   */
+  protected Kernel[] newKernels(int numThreads) throws Exception {
+
+    Kernel[] result = new Kernel[numThreads];
+    result[0] = m_actualKernel;
+    for (int i = 1; i < numThreads; i++) {
+      result[i] = newKernel(m_Data);
+    }
+
+    return result;
+  }
+
+  /**
+   * Runs a task on a range of rows. With several threads, the rows are dealt
+   * out to the threads in chunks, in turn, and each thread uses a kernel of
+   * its own.
+   * 
+   * @param from the first row
+   * @param to the row after the last one
+   * @param executor the threads to use, null to run the task in the calling
+   *          thread
+   * @param kernels one kernel for each thread
+   * @param task the work to do
+   * @throws Exception if the task fails or a thread is interrupted
+   */
+  protected void forEachRow(final int from, final int to,
+    ExecutorService executor, Kernel[] kernels, final RowTask task)
+    throws Exception {
+
+    final int numThreads = kernels.length;
+    if ((executor == null) || (numThreads == 1) || (to - from <= CHUNK_SIZE)) {
+      task.run(kernels[0], from, to);
+      return;
+    }
+
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(numThreads);
+    for (int t = 0; t < numThreads; t++) {
+      final int first = from + t * CHUNK_SIZE;
+      final Kernel kernel = kernels[t];
+      futures.add(executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          for (int i = first; i < to; i += numThreads * CHUNK_SIZE) {
+            task.run(kernel, i, Math.min(i + CHUNK_SIZE, to));
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Object> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Inverts a symmetric, positive definite matrix.
+   * 
+   * @param a the lower triangle of the matrix, as rows of increasing length,
+   *          which is overwritten
+   * @param executor the threads to use, null for the calling thread only
+   * @param numThreads the number of threads
+   * @return the lower triangle of the inverse, null if the matrix is not
+   *         positive definite
+   * @throws Exception if a thread fails or is interrupted
+   */
+  protected static double[][] inverse(double[][] a, ExecutorService executor,
+    int numThreads) throws Exception {
+
+    BlockedCholesky cholesky = new BlockedCholesky(a, executor, numThreads);
+    if (!cholesky.isSPD()) {
+      return null;
+    }
+
+    return cholesky.inverse();
+  }
+
+  /**
+   * Inverts a symmetric matrix that is positive definite in theory but may
+   * not be numerically. If the inversion fails, jitter is added to the
+   * diagonal, a millionth of its mean at first and ten times as much on each
+   * further attempt.
+   * 
+   * @param a the lower triangle of the matrix, as rows of increasing length,
+   *          which receives the jitter but is otherwise left unchanged
+   * @param jitterFirst whether to add jitter before the first attempt
+   * @param executor the threads to use, null for the calling thread only
+   * @param numThreads the number of threads
+   * @param name the name of the matrix, for the error message
+   * @return the lower triangle of the inverse
+   * @throws Exception if the matrix can't be inverted even with jitter, or a
+   *           thread fails or is interrupted
+   */
+  protected static double[][] jitteredInverse(double[][] a,
+    boolean jitterFirst, ExecutorService executor, int numThreads, String name)
+    throws Exception {
+
+    int n = a.length;
+    double meanDiagonal = 0;
+    for (int i = 0; i < n; i++) {
+      meanDiagonal += a[i][i] / n;
+    }
+    double jitter = (meanDiagonal > 0) ? 1e-6 * meanDiagonal : 1e-6;
+    if (jitterFirst) {
+      for (int i = 0; i < n; i++) {
+        a[i][i] += jitter;
+      }
+    }
+    for (int attempt = 0;; attempt++) {
+      double[][] result = inverse(copy(a), executor, numThreads);
+      if (result != null) {
+        return result;
+      }
+      if (attempt == 5) {
+        throw new Exception(name + " is not positive definite.");
+      }
+      if (jitterFirst || (attempt > 0)) {
+        jitter *= 9; // ten times the jitter in total
+      }
+      for (int i = 0; i < n; i++) {
+        a[i][i] += jitter;
+      }
+    }
+  }
+
+  /**
+   * Copies a matrix given as rows of increasing length.
+   * 
+   * @param a the lower triangle of the matrix
+   * @return the copy
+   */
+  protected static double[][] copy(double[][] a) {
+
+    double[][] result = new double[a.length][];
+    for (int i = 0; i < a.length; i++) {
+      result[i] = a[i].clone();
+    }
+
+    return result;
+  }
+
+  /**
+   * Sets the upper triangle of a symmetric matrix.
+   * 
+   * @param matrix the matrix to set
+   * @param lower the lower triangle of the values, as rows of increasing length
+   */
+  protected static void setUpper(Matrix matrix, double[][] lower) {
+
+    for (int i = 0; i < lower.length; i++) {
+      for (int j = 0; j <= i; j++) {
+        matrix.set(j, i, lower[i][j]);
+      }
+    }
+  }
 
   /**
    * Classifies a given instance.
@@ -422,10 +1093,7 @@ public class GaussianProcesses extends RandomizableClassifier implements
     inst = filterInstance(inst);
 
     // Build K vector
-    Vector k = new DenseVector(m_NumTrain);
-    for (int i = 0; i < m_NumTrain; i++) {
-      k.set(i, m_weights[i] * m_actualKernel.eval(-1, i, inst));
-    }
+    Vector k = kernelVector(inst);
 
     double result = (k.dot(m_t) + m_avg_target - m_Blin) / m_Alin;
 
@@ -433,6 +1101,29 @@ public class GaussianProcesses extends RandomizableClassifier implements
 
   }
 
+  /**
+   * Computes the weighted kernel values between the given instance and all
+   * training instances, evaluating the kernel in a single batch.
+   *
+   * @param inst the filtered instance
+   * @return the vector of kernel values
+   * @throws Exception if the kernel can't be evaluated
+   */
+  protected Vector kernelVector(Instance inst) throws Exception {
+
+    int[] ids = new int[m_NumTrain];
+    for (int i = 0; i < m_NumTrain; i++) {
+      ids[i] = i;
+    }
+    double[] values = new double[m_NumTrain];
+    m_actualKernel.evalRow(-1, inst, ids, m_NumTrain, values);
+    for (int i = 0; i < m_NumTrain; i++) {
+      values[i] *= m_weights[i];
+    }
+
+    return new DenseVector(values, false);
+  }
+
   /**
    * Filters an instance.
    */
@@ -466,7 +1157,17 @@ public class GaussianProcesses extends RandomizableClassifier implements
 
     double kappa = m_actualKernel.eval(-1, -1, inst) + m_deltaSquared;
 
-    double s = m_L.mult(k, new DenseVector(k.size())).dot(k);
+    double s;
+    if (m_Cholesky != null) {
+      double[] z = forwardSubstitution(m_Cholesky, Matrices.getArray(k).clone(),
+        k.size());
+      s = 0;
+      for (double zi : z) {
+        s += zi * zi;
+      }
+    } else {
+      s = m_L.mult(k, new DenseVector(k.size())).dot(k);
+    }
 
     double sigma = m_delta;
     if (kappa > s) {
@@ -491,10 +1192,7 @@ public class GaussianProcesses extends RandomizableClassifier implements
     inst = filterInstance(inst);
 
     // Build K vector (and Kappa)
-    Vector k = new DenseVector(m_NumTrain);
-    for (int i = 0; i < m_NumTrain; i++) {
-      k.set(i, m_weights[i] * m_actualKernel.eval(-1, i, inst));
-    }
+    Vector k = kernelVector(inst);
 
     double estimate = k.dot(m_t) + m_avg_target;
 
@@ -528,10 +1226,7 @@ public class GaussianProcesses extends RandomizableClassifier implements
     inst = filterInstance(inst);
 
     // Build K vector (and Kappa)
-    Vector k = new DenseVector(m_NumTrain);
-    for (int i = 0; i < m_NumTrain; i++) {
-      k.set(i, m_weights[i] * m_actualKernel.eval(-1, i, inst));
-    }
+    Vector k = kernelVector(inst);
 
     return computeStdDev(inst, k) / m_Alin;
   }
@@ -551,10 +1246,7 @@ public class GaussianProcesses extends RandomizableClassifier implements
     inst = filterInstance(inst);
 
     // Build K vector (and Kappa)
-    Vector k = new DenseVector(m_NumTrain);
-    for (int i = 0; i < m_NumTrain; i++) {
-      k.set(i, m_weights[i] * m_actualKernel.eval(-1, i, inst));
-    }
+    Vector k = kernelVector(inst);
 
     double estimate = k.dot(m_t) + m_avg_target;
 
@@ -592,6 +1284,16 @@ public class GaussianProcesses extends RandomizableClassifier implements
       + "\t(default: weka.classifiers.functions.supportVector.PolyKernel)",
       "K", 1, "-K <classname and parameters>"));
 
+    result.addElement(new Option(
+      "\tThe number of inducing points for a sparse approximation,\n"
+        + "\t0 to use all training instances.\n" + "\t(default 0)",
+      "inducing-points", 1, "-inducing-points <num>"));
+
+    result.addElement(new Option(
+      "\tThe number of threads to use for building the model,\n"
+        + "\t0 for one per available processor.\n" + "\t(default 1)",
+      "num-threads", 1, "-num-threads <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     result.addElement(new Option("", "", 0, "\nOptions specific to kernel "
@@ -620,6 +1322,16 @@ public class GaussianProcesses extends RandomizableClassifier implements
    * *  The Kernel to use.
    * *  (default: weka.classifiers.functions.supportVector.PolyKernel)</pre>
    * * 
+   * * <pre> -inducing-points &lt;num&gt;
+   * *  The number of inducing points for a sparse approximation,
+   * *  0 to use all training instances.
+   * *  (default 0)</pre>
+   * * 
+   * * <pre> -num-threads &lt;num&gt;
+   * *  The number of threads to use for building the model,
+   * *  0 for one per available processor.
+   * *  (default 1)</pre>
+   * * 
    * * <pre> -S &lt;num&gt;
    * *  Random number seed.
    * *  (default 1)</pre>
@@ -652,6 +1364,11 @@ public class GaussianProcesses extends RandomizableClassifier implements
    * *  -1 to turn it off.
    * *  (default: 250007)</pre>
    * * 
+   * * <pre> -row-cache &lt;num&gt;
+   * *  The memory for caching whole rows of the kernel matrix
+   * *  in megabytes, replaces the cache above if &gt; 0.
+   * *  (default: 0)</pre>
+   * * 
    * * <pre> -output-debug-info
    * *  Enables debugging output (if available) to be printed.
    * *  (default: off)</pre>
@@ -692,6 +1409,20 @@ public class GaussianProcesses extends RandomizableClassifier implements
       setKernel(Kernel.forName(tmpStr, tmpOptions));
     }
 
+    tmpStr = Utils.getOption("inducing-points", options);
+    if (tmpStr.length() != 0) {
+      setNumInducingPoints(Integer.parseInt(tmpStr));
+    } else {
+      setNumInducingPoints(0);
+    }
+
+    tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0) {
+      setNumThreads(Integer.parseInt(tmpStr));
+    } else {
+      setNumThreads(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -715,6 +1446,16 @@ public class GaussianProcesses extends RandomizableClassifier implements
     result.addElement("" + m_kernel.getClass().getName() + " "
       + Utils.joinOptions(m_kernel.getOptions()));
 
+    if (getNumInducingPoints() != 0) {
+      result.addElement("-inducing-points");
+      result.addElement("" + getNumInducingPoints());
+    }
+
+    if (getNumThreads() != 1) {
+      result.addElement("-num-threads");
+      result.addElement("" + getNumThreads());
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -811,6 +1552,65 @@ public class GaussianProcesses extends RandomizableClassifier implements
     m_delta = v;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numInducingPointsTipText() {
+    return "The number of training instances, chosen at random, that serve as "
+      + "inducing points for a sparse approximation of the Gaussian process; "
+      + "0 to use all training instances.";
+  }
+
+  /**
+   * Gets the number of inducing points.
+   * 
+   * @return the number of inducing points, 0 for all training instances
+   */
+  public int getNumInducingPoints() {
+    return m_numInducingPoints;
+  }
+
+  /**
+   * Sets the number of inducing points.
+   * 
+   * @param value the number of inducing points, 0 for all training instances
+   */
+  public void setNumInducingPoints(int value) {
+    m_numInducingPoints = value;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads used to compute and invert the kernel "
+      + "matrix; 0 for one per available processor.";
+  }
+
+  /**
+   * Gets the number of threads.
+   * 
+   * @return the number of threads, 0 for one per available processor
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
+  /**
+   * Sets the number of threads.
+   * 
+   * @param value the number of threads, 0 for one per available processor
+   */
+  public void setNumThreads(int value) {
+    m_numThreads = value;
+  }
+
   /**
    * Prints out the classifier.
    * 
@@ -835,21 +1635,33 @@ public class GaussianProcesses extends RandomizableClassifier implements
 
       text.append("Average Target Value : " + m_avg_target + "\n");
 
-      text.append("Inverted Covariance Matrix:\n");
-      double min = m_L.get(0, 0);
-      double max = m_L.get(0, 0);
+      if (m_Sigma != null) {
+        text.append("Inducing points: " + m_NumTrain + "\n");
+        text.append("Inverted Covariance Matrix of Inducing Points minus Posterior Covariance:\n");
+      } else if (m_Cholesky != null) {
+        text.append("Cholesky Factor of Covariance Matrix:\n");
+      } else {
+        text.append("Inverted Covariance Matrix:\n");
+      }
+      double min = (m_Cholesky != null) ? m_Cholesky[0][0] : m_L.get(0, 0);
+      double max = min;
       for (int i = 0; i < m_NumTrain; i++) {
         for (int j = 0; j <= i; j++) {
-          if (m_L.get(i, j) < min) {
-            min = m_L.get(i, j);
-          } else if (m_L.get(i, j) > max) {
-            max = m_L.get(i, j);
+          double value = (m_Cholesky != null) ? m_Cholesky[i][j] : m_L.get(i, j);
+          if (value < min) {
+            min = value;
+          } else if (value > max) {
+            max = value;
           }
         }
       }
       text.append("    Lowest Value = " + min + "\n");
       text.append("    Highest Value = " + max + "\n");
-      text.append("Inverted Covariance Matrix * Target-value Vector:\n");
+      if (m_Sigma != null) {
+        text.append("Posterior Covariance * Weighted Kernel Vectors * Target-value Vector:\n");
+      } else {
+        text.append("Inverted Covariance Matrix * Target-value Vector:\n");
+      }
       min = m_t.get(0);
       max = m_t.get(0);
       for (int i = 0; i < m_NumTrain; i++) {
@@ -21,9 +21,17 @@
 
 package weka.classifiers.functions;
 
+import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import no.uib.cipr.matrix.*;
 import no.uib.cipr.matrix.Matrix;
@@ -42,6 +50,8 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  * Class for using linear regression for prediction.
  * Uses the Akaike criterion for model selection, and is able to deal with
  * weighted instances.
+ * <br/>
+ * Optionally, the model is computed from the sums of products of the attributes and the class (the Gram matrix), which are accumulated in a single pass through the data, possibly by several threads. Attribute selection then only needs this matrix, and no copy of the data is kept.
  * <p/>
  <!-- globalinfo-end -->
  * 
@@ -77,6 +87,19 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  * </pre>
  * 
  * <pre>
+ * -gram
+ *  Compute the model from the Gram matrix, accumulated in a single
+ *  pass through the data.
+ * </pre>
+ * 
+ * <pre>
+ * -num-threads &lt;num&gt;
+ *  The number of threads to accumulate the Gram matrix with.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
+ * <pre>
  * -output-debug-info
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -158,6 +181,12 @@ public class LinearRegression extends AbstractClassifier implements
   protected boolean m_ModelBuilt = false;
   /** True if the model is a zero R one */
   protected boolean m_isZeroR;
+  /** Compute the model from the Gram matrix? */
+  protected boolean m_UseGramMatrix = false;
+  /** The number of threads to accumulate the Gram matrix with */
+  protected int m_numThreads = 1;
+  /** The sums of products the model is computed from, if any */
+  protected SufficientStatistics m_Statistics;
   /** The degrees of freedom of the regression model */
   private int m_df;
   /** The R-squared value of the regression model */
@@ -171,6 +200,153 @@ public class LinearRegression extends AbstractClassifier implements
   /** Array for storing the t-statistic of each coefficient */
   private double[] m_TStats;
 
+  /**
+   * The weighted means of the attributes and the class, and the weighted sums
+   * of products of their deviations from the means, for a stream of
+   * instances. The sums are updated with each instance as in Welford's method
+   * for the variance, which avoids the loss of precision of subtracting the
+   * squared means from raw sums of squares, and two sets of statistics can be
+   * merged. Only the lower triangle of the symmetric matrix of sums is kept.
+   */
+  protected static class SufficientStatistics implements Serializable,
+    RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = -2981626012815287405L;
+
+    /** The number of instances, including those with zero weight */
+    protected long m_NumInstances;
+
+    /** The sum of the weights */
+    protected double m_SumOfWeights;
+
+    /** The weighted means of the attributes, including the class */
+    protected double[] m_Means;
+
+    /** The sums of products of the deviations, as rows of increasing length */
+    protected double[][] m_CoMoments;
+
+    /** The deviations of the current instance from the means */
+    protected transient double[] m_Deviations;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param numAttributes the number of attributes, including the class
+     */
+    public SufficientStatistics(int numAttributes) {
+      m_Means = new double[numAttributes];
+      m_CoMoments = new double[numAttributes][];
+      for (int i = 0; i < numAttributes; i++) {
+        m_CoMoments[i] = new double[i + 1];
+      }
+    }
+
+    /**
+     * Adds an instance, which must not have missing values.
+     *
+     * @param inst the instance to add
+     */
+    public void add(Instance inst) {
+
+      m_NumInstances++;
+      double weight = inst.weight();
+      if (weight <= 0) {
+        return;
+      }
+      if (m_Deviations == null) {
+        m_Deviations = new double[m_Means.length];
+      }
+
+      double sumOfWeights = m_SumOfWeights + weight;
+      double r = weight / sumOfWeights;
+      double factor = weight * (m_SumOfWeights / sumOfWeights);
+      for (int i = 0; i < m_Means.length; i++) {
+        m_Deviations[i] = inst.value(i) - m_Means[i];
+        m_Means[i] += m_Deviations[i] * r;
+      }
+      for (int i = 0; i < m_Means.length; i++) {
+        double[] row = m_CoMoments[i];
+        double d = factor * m_Deviations[i];
+        for (int j = 0; j <= i; j++) {
+          row[j] += d * m_Deviations[j];
+        }
+      }
+      m_SumOfWeights = sumOfWeights;
+    }
+
+    /**
+     * Adds the instances that another set of statistics has been computed
+     * from.
+     *
+     * @param other the statistics to add
+     */
+    public void add(SufficientStatistics other) {
+
+      m_NumInstances += other.m_NumInstances;
+      if (other.m_SumOfWeights <= 0) {
+        return;
+      }
+
+      double sumOfWeights = m_SumOfWeights + other.m_SumOfWeights;
+      double r = other.m_SumOfWeights / sumOfWeights;
+      double factor = m_SumOfWeights * r;
+      double[] deviations = new double[m_Means.length];
+      for (int i = 0; i < m_Means.length; i++) {
+        deviations[i] = other.m_Means[i] - m_Means[i];
+        m_Means[i] += deviations[i] * r;
+      }
+      for (int i = 0; i < m_Means.length; i++) {
+        double[] row = m_CoMoments[i];
+        double[] otherRow = other.m_CoMoments[i];
+        double d = factor * deviations[i];
+        for (int j = 0; j <= i; j++) {
+          row[j] += otherRow[j] + d * deviations[j];
+        }
+      }
+      m_SumOfWeights = sumOfWeights;
+    }
+
+    /**
+     * Returns the weighted sum of products of the deviations of two
+     * attributes from their means.
+     *
+     * @param i the index of the first attribute
+     * @param j the index of the second attribute
+     * @return the sum of products
+     */
+    public double coMoment(int i, int j) {
+      return (i >= j) ? m_CoMoments[i][j] : m_CoMoments[j][i];
+    }
+
+    /**
+     * Returns the variance of an attribute, computed like
+     * Instances.variance().
+     *
+     * @param i the index of the attribute
+     * @return the variance, NaN if the sum of the weights is at most 1
+     */
+    public double variance(int i) {
+
+      if (m_SumOfWeights <= 1) {
+        return Double.NaN;
+      }
+      double var = m_CoMoments[i][i] / (m_SumOfWeights - 1);
+
+      return (var < 0) ? 0 : var;
+    }
+
+    /**
+     * Returns the revision string.
+     *
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  }
+
   public LinearRegression() {
     m_numDecimalPlaces = 4;
   }
@@ -193,7 +369,12 @@ public class LinearRegression extends AbstractClassifier implements
   public String globalInfo() {
     return "Class for using linear regression for prediction. Uses the Akaike "
       + "criterion for model selection, and is able to deal with weighted "
-      + "instances.";
+      + "instances.\n"
+      + "Optionally, the model is computed from the sums of products of the "
+      + "attributes and the class (the Gram matrix), which are accumulated in "
+      + "a single pass through the data, possibly by several threads. "
+      + "Attribute selection then only needs this matrix, and no copy of the "
+      + "data is kept.";
   }
 
   /**
@@ -231,8 +412,9 @@ public class LinearRegression extends AbstractClassifier implements
   public void buildClassifier(Instances data) throws Exception {
     m_ModelBuilt = false;
     m_isZeroR = false;
+    m_Statistics = null;
 
-    if (data.numInstances() == 1) {
+    if (!m_UseGramMatrix && (data.numInstances() == 1)) {
       m_Coefficients = new double[1];
       m_Coefficients[0] = data.instance(0).classValue();
       m_SelectedAttributes = new boolean[data.numAttributes()];
@@ -278,6 +460,17 @@ public class LinearRegression extends AbstractClassifier implements
     }
 
     m_ClassIndex = data.classIndex();
+
+    if (m_UseGramMatrix) {
+      m_Statistics = computeStatistics(data);
+      m_TransformedData = new Instances(data, 0);
+      buildModelFromStatistics();
+      if (!keepStatistics()) {
+        m_Statistics = null;
+      }
+      return;
+    }
+
     m_TransformedData = data;
 
     // Turn all attributes on for a start
@@ -345,6 +538,174 @@ public class LinearRegression extends AbstractClassifier implements
     m_ModelBuilt = true;
   }
 
+  /**
+   * Accumulates the statistics of the given data in a single pass. With
+   * several threads, each thread processes a contiguous block of instances
+   * and the statistics of the blocks are merged in order.
+   *
+   * @param data the transformed training data
+   * @return the statistics
+   * @throws Exception if a thread fails or is interrupted
+   */
+  protected SufficientStatistics computeStatistics(final Instances data)
+    throws Exception {
+
+    int numThreads = (m_numThreads > 0) ? m_numThreads : Runtime.getRuntime()
+      .availableProcessors();
+    numThreads = Math.min(numThreads, data.numInstances());
+    if (numThreads <= 1) {
+      SufficientStatistics result =
+        new SufficientStatistics(data.numAttributes());
+      for (int i = 0; i < data.numInstances(); i++) {
+        result.add(data.instance(i));
+      }
+      return result;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<SufficientStatistics>> futures =
+        new ArrayList<Future<SufficientStatistics>>(numThreads);
+      for (int t = 0; t < numThreads; t++) {
+        final int from = (int) ((long) data.numInstances() * t / numThreads);
+        final int to = (int) ((long) data.numInstances() * (t + 1) / numThreads);
+        futures.add(executor.submit(new Callable<SufficientStatistics>() {
+          @Override
+          public SufficientStatistics call() {
+            SufficientStatistics partial =
+              new SufficientStatistics(data.numAttributes());
+            for (int i = from; i < to; i++) {
+              partial.add(data.instance(i));
+            }
+            return partial;
+          }
+        }));
+      }
+
+      SufficientStatistics result = null;
+      for (Future<SufficientStatistics> future : futures) {
+        SufficientStatistics partial;
+        try {
+          partial = future.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+        if (result == null) {
+          result = partial;
+        } else {
+          result.add(partial);
+        }
+      }
+      return result;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Whether the statistics are kept once the model has been built from
+   * them. They are only needed to add further instances later on, so they
+   * are dropped if memory is to be conserved.
+   *
+   * @return true if the statistics are kept
+   */
+  protected boolean keepStatistics() {
+    return !m_Minimal;
+  }
+
+  /**
+   * Builds the model from m_Statistics alone, including the means and
+   * standard deviations, the attribute selection and the additional
+   * statistics. With fewer than two instances, the model predicts the mean
+   * of the class.
+   *
+   * @throws Exception if the model can't be built
+   */
+  protected void buildModelFromStatistics() throws Exception {
+
+    m_ModelBuilt = false;
+
+    int numAttributes = m_Statistics.m_Means.length;
+    m_SelectedAttributes = new boolean[numAttributes];
+    m_Means = new double[numAttributes];
+    m_StdDevs = new double[numAttributes];
+    for (int j = 0; j < numAttributes; j++) {
+      if (j != m_ClassIndex) {
+        m_SelectedAttributes[j] = true; // Turn attributes on for a start
+        m_Means[j] = m_Statistics.m_Means[j];
+        m_StdDevs[j] = Math.sqrt(m_Statistics.variance(j));
+        if (m_StdDevs[j] == 0) {
+          m_SelectedAttributes[j] = false;
+        }
+      }
+    }
+
+    m_ClassStdDev = Math.sqrt(m_Statistics.variance(m_ClassIndex));
+    m_ClassMean = m_Statistics.m_Means[m_ClassIndex];
+
+    if (m_Statistics.m_NumInstances <= 1) {
+      Arrays.fill(m_SelectedAttributes, false);
+      m_Coefficients = new double[] { m_ClassMean };
+    } else {
+      m_Coefficients = null;
+      findBestModel();
+    }
+
+    if (m_outputAdditionalStats) {
+      // find number of coefficients, degrees of freedom
+      int[] indices = new int[numAttributes];
+      int k = 0;
+      for (int i = 0; i < numAttributes; i++) {
+        if ((i != m_ClassIndex) && m_SelectedAttributes[i]) {
+          indices[k++] = i;
+        }
+      }
+      k++;
+      int n = (int) m_Statistics.m_NumInstances;
+      m_df = n - k;
+
+      // calculate R^2 and F-stat
+      double se = calculateSE(m_SelectedAttributes, m_Coefficients);
+      m_RSquared =
+        1 - se / m_Statistics.coMoment(m_ClassIndex, m_ClassIndex);
+      m_RSquaredAdj = RegressionAnalysis.calculateAdjRSquared(m_RSquared, n, k);
+      m_FStat = RegressionAnalysis.calculateFStat(m_RSquared, n, k);
+
+      // X'X with a column of 1's, from the means and the sums of products
+      double sumOfWeights = m_Statistics.m_SumOfWeights;
+      double[][] xTx = new double[k][k];
+      for (int a = 0; a < k - 1; a++) {
+        double meanA = m_Statistics.m_Means[indices[a]];
+        for (int b = 0; b <= a; b++) {
+          xTx[a][b] = m_Statistics.coMoment(indices[a], indices[b])
+            + sumOfWeights * meanA * m_Statistics.m_Means[indices[b]];
+          xTx[b][a] = xTx[a][b];
+        }
+        xTx[a][k - 1] = sumOfWeights * meanA;
+        xTx[k - 1][a] = xTx[a][k - 1];
+      }
+      xTx[k - 1][k - 1] = sumOfWeights;
+
+      // calculate std error of coefficients and t-stats
+      m_StdErrorOfCoef = RegressionAnalysis.calculateStdErrorOfCoef(
+        new weka.core.matrix.Matrix(xTx), se, n, k);
+      m_TStats =
+        RegressionAnalysis.calculateTStats(m_Coefficients, m_StdErrorOfCoef, k);
+    }
+
+    // Save memory
+    if (m_Minimal) {
+      m_TransformedData = null;
+      m_Means = null;
+      m_StdDevs = null;
+    }
+
+    m_ModelBuilt = true;
+  }
+
   /**
    * Classifies the given instance using the linear regression function.
    *
@@ -497,6 +858,15 @@ public class LinearRegression extends AbstractClassifier implements
     newVector.addElement(new Option("\tUse QR decomposition to find coefficients",
             "use-qr", 0, "-use-qr"));
 
+    newVector.addElement(new Option("\tCompute the model from the Gram matrix,"
+      + " accumulated in a single\n\tpass through the data.", "gram", 0,
+      "-gram"));
+
+    newVector.addElement(new Option("\tThe number of threads to accumulate the"
+      + " Gram matrix with.\n" + "\t(default 1 - i.e. no parallelism)\n"
+      + "\t(use 0 to auto-detect number of cores)", "num-threads", 1,
+      "-num-threads <num>"));
+
     newVector.addAll(Collections.list(super.listOptions()));
 
     return newVector.elements();
@@ -551,6 +921,15 @@ public class LinearRegression extends AbstractClassifier implements
       result.add("-use-qr");
     }
 
+    if (getUseGramMatrix()) {
+      result.add("-gram");
+    }
+
+    if (getNumThreads() != 1) {
+      result.add("-num-threads");
+      result.add("" + getNumThreads());
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -592,6 +971,19 @@ public class LinearRegression extends AbstractClassifier implements
    * </pre>
    *
    * <pre>
+   * -gram
+   *  Compute the model from the Gram matrix, accumulated in a single
+   *  pass through the data.
+   * </pre>
+   *
+   * <pre>
+   * -num-threads &lt;num&gt;
+   *  The number of threads to accumulate the Gram matrix with.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   *
+   * <pre>
    * -output-debug-info
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -635,6 +1027,15 @@ public class LinearRegression extends AbstractClassifier implements
 
     setUseQRDecomposition(Utils.getFlag("use-qr", options));
 
+    setUseGramMatrix(Utils.getFlag("gram", options));
+
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreadsString));
+    } else {
+      setNumThreads(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -837,6 +1238,67 @@ public class LinearRegression extends AbstractClassifier implements
     m_useQRDecomposition = useQR;
   }
 
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String useGramMatrixTipText() {
+    return "Compute the model from the sums of products of the attributes and "
+      + "the class, which are accumulated in a single pass through the data. "
+      + "Attribute selection then takes time independent of the number of "
+      + "instances, and the QR decomposition is not used.";
+  }
+
+  /**
+   * Get whether the model is computed from the Gram matrix.
+   *
+   * @return true if the Gram matrix is used
+   */
+  public boolean getUseGramMatrix() {
+    return m_UseGramMatrix;
+  }
+
+  /**
+   * Set whether the model is computed from the Gram matrix.
+   *
+   * @param value true if the Gram matrix is to be used
+   */
+  public void setUseGramMatrix(boolean value) {
+    m_UseGramMatrix = value;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads to accumulate the Gram matrix with, each "
+      + "processing a block of the training instances (0 = number of cores). "
+      + "Only used if the model is computed from the Gram matrix.";
+  }
+
+  /**
+   * Gets the number of threads used to accumulate the Gram matrix.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
+  /**
+   * Sets the number of threads used to accumulate the Gram matrix.
+   *
+   * @param numThreads the number of threads, 0 for the number of cores
+   */
+  public void setNumThreads(int numThreads) {
+    m_numThreads = numThreads;
+  }
+
   /**
    * Turns off checks for missing values, etc. Use with caution. Also turns off
    * scaling.
@@ -898,9 +1360,10 @@ public class LinearRegression extends AbstractClassifier implements
 
     // For the weighted case we still use numInstances in
     // the calculation of the Akaike criterion.
-    int numInstances = m_TransformedData.numInstances();
+    long numInstances = (m_Statistics != null) ? m_Statistics.m_NumInstances
+      : m_TransformedData.numInstances();
 
-    if (m_Debug) {
+    if (m_Debug && (m_TransformedData != null)) {
       System.out.println((new Instances(m_TransformedData, 0)).toString());
     }
 
@@ -1026,7 +1489,9 @@ public class LinearRegression extends AbstractClassifier implements
   }
 
   /**
-   * Calculate the squared error of a regression model on the training data
+   * Calculate the squared error of a regression model on the training data.
+   * If the model is computed from the Gram matrix, the error is obtained from
+   * that matrix and the squared errors of the instances are weighted.
    *
    * @param selectedAttributes an array of flags indicating which attributes are
    *          included in the regression model
@@ -1037,6 +1502,10 @@ public class LinearRegression extends AbstractClassifier implements
   protected double calculateSE(boolean[] selectedAttributes,
     double[] coefficients) throws Exception {
 
+    if (m_Statistics != null) {
+      return calculateSEFromStatistics(selectedAttributes, coefficients);
+    }
+
     double mse = 0;
     for (int i = 0; i < m_TransformedData.numInstances(); i++) {
       double prediction =
@@ -1048,6 +1517,45 @@ public class LinearRegression extends AbstractClassifier implements
     return mse;
   }
 
+  /**
+   * Calculate the weighted squared error of a regression model from the
+   * statistics of the training data. The residual of an instance is the
+   * deviation of the prediction from its mean minus the deviation of the
+   * class from its mean, plus the difference of those means; the sums of the
+   * deviations are zero, so only the sums of products and the difference of
+   * the means remain.
+   *
+   * @param selectedAttributes an array of flags indicating which attributes are
+   *          included in the regression model
+   * @param coefficients an array of coefficients for the regression model
+   * @return the squared error on the training data
+   */
+  protected double calculateSEFromStatistics(boolean[] selectedAttributes,
+    double[] coefficients) {
+
+    int[] indices = new int[coefficients.length - 1];
+    int column = 0;
+    for (int j = 0; j < selectedAttributes.length; j++) {
+      if ((m_ClassIndex != j) && (selectedAttributes[j])) {
+        indices[column++] = j;
+      }
+    }
+
+    double se = m_Statistics.coMoment(m_ClassIndex, m_ClassIndex);
+    double offset = coefficients[column] - m_Statistics.m_Means[m_ClassIndex];
+    for (int a = 0; a < column; a++) {
+      double s = -2 * m_Statistics.coMoment(indices[a], m_ClassIndex);
+      for (int b = 0; b < column; b++) {
+        s += coefficients[b] * m_Statistics.coMoment(indices[a], indices[b]);
+      }
+      se += coefficients[a] * s;
+      offset += coefficients[a] * m_Statistics.m_Means[indices[a]];
+    }
+    se += m_Statistics.m_SumOfWeights * offset * offset;
+
+    return (se < 0) ? 0 : se;
+  }
+
   /**
    * Calculate the dependent value for a given instance for a given regression
    * model.
@@ -1095,6 +1603,9 @@ public class LinearRegression extends AbstractClassifier implements
       }
       System.out.println(" )");
     }
+    if (m_Statistics != null) {
+      return doRegressionFromStatistics(selectedAttributes);
+    }
     int numAttributes = 0;
     for (boolean selectedAttribute : selectedAttributes) {
       if (selectedAttribute) {
@@ -1208,6 +1719,65 @@ public class LinearRegression extends AbstractClassifier implements
     return coefficients;
   }
 
+  /**
+   * Calculate a linear regression using the selected attributes from the
+   * statistics of the training data. The matrix that is solved is the same
+   * as in doRegression(), but it is obtained from the Gram matrix rather than
+   * the data, in time that does not depend on the number of instances. The
+   * QR decomposition needs the data, so the covariance matrix is always used.
+   *
+   * @param selectedAttributes an array of booleans where each element is true
+   *          if the corresponding attribute should be included in the
+   *          regression.
+   * @return an array of coefficients for the linear regression model.
+   */
+  protected double[] doRegressionFromStatistics(boolean[] selectedAttributes) {
+
+    int[] indices = new int[selectedAttributes.length];
+    int numAttributes = 0;
+    for (int j = 0; j < selectedAttributes.length; j++) {
+      if ((j != m_ClassIndex) && selectedAttributes[j]) {
+        indices[numAttributes++] = j;
+      }
+    }
+
+    double[] coefficients = new double[numAttributes + 1];
+    if (numAttributes > 0) {
+      double[] scale = new double[numAttributes];
+      for (int a = 0; a < numAttributes; a++) {
+        // We only need to do this if we want to scale the input
+        scale[a] = m_checksTurnedOff ? 1.0 : m_StdDevs[indices[a]];
+      }
+
+      Matrix aTa = new UpperSPDDenseMatrix(numAttributes);
+      Vector aTy = new DenseVector(numAttributes);
+      double ridge = getRidge();
+      for (int a = 0; a < numAttributes; a++) {
+        for (int b = a; b < numAttributes; b++) {
+          aTa.set(a, b, m_Statistics.coMoment(indices[a], indices[b])
+            / (scale[a] * scale[b]));
+        }
+        aTa.add(a, a, ridge);
+        aTy.set(a, m_Statistics.coMoment(indices[a], m_ClassIndex) / scale[a]);
+      }
+      Vector coeffsWithoutIntercept =
+        aTa.solve(aTy, new DenseVector(numAttributes));
+      System.arraycopy(((DenseVector) coeffsWithoutIntercept).getData(), 0,
+        coefficients, 0, numAttributes);
+    }
+    coefficients[numAttributes] = m_ClassMean;
+
+    // Convert coefficients into original scale
+    for (int a = 0; a < numAttributes; a++) {
+      if (!m_checksTurnedOff) {
+        coefficients[a] /= m_StdDevs[indices[a]];
+      }
+      coefficients[numAttributes] -= coefficients[a] * m_Means[indices[a]];
+    }
+
+    return coefficients;
+  }
+
   /**
    * Returns the revision string.
    *
@@ -0,0 +1,696 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    LinearRegressionUpdateable.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.functions;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import weka.classifiers.UpdateableClassifier;
+import weka.core.Attribute;
+import weka.core.Capabilities;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+import weka.filters.Filter;
+import weka.filters.supervised.attribute.NominalToBinary;
+import weka.filters.unsupervised.attribute.ReplaceMissingValues;
+
+/**
+ <!-- globalinfo-start -->
+ * Class for using linear regression for prediction. This is the updateable version of LinearRegression: the model is always computed from the sums of products of the attributes and the class (the Gram matrix), and further instances are added to these sums one at a time, so that the data never needs to be held in memory. The model is recomputed from the sums when it is next used.<br/>
+ * Nominal attributes are encoded and missing values replaced as if all instances seen so far had been passed to buildClassifier, which may therefore be empty: sums over the untransformed instances are kept, from which the encoding, the means and the Gram matrix of the transformed data are derived when the model is recomputed. The cost of adding an instance grows with the square of the number of numeric attributes and nominal values.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are:
+ * <p/>
+ *
+ * <pre>
+ * -S &lt;number of selection method&gt;
+ *  Set the attribute selection method to use. 1 = None, 2 = Greedy.
+ *  (default 0 = M5' method)
+ * </pre>
+ *
+ * <pre>
+ * -C
+ *  Do not try to eliminate colinear attributes.
+ * </pre>
+ *
+ * <pre>
+ * -R &lt;double&gt;
+ *  Set ridge parameter (default 1.0e-8).
+ * </pre>
+ *
+ * <pre>
+ * -minimal
+ *  Conserve memory, don't keep dataset header and means/stdevs.
+ *  Model cannot be printed out if this option is enabled. (default: keep data)
+ * </pre>
+ *
+ * <pre>
+ * -additional-stats
+ *  Output additional statistics.
+ * </pre>
+ *
+ * <pre>
+ * -num-threads &lt;num&gt;
+ *  The number of threads to accumulate the Gram matrix with.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ *
+ * <pre>
+ * -output-debug-info
+ *  If set, classifier is run in debug mode and
+ *  may output additional info to the console
+ * </pre>
+ *
+ * <pre>
+ * -do-not-check-capabilities
+ *  If set, classifier capabilities are not checked before classifier is built
+ *  (use with caution).
+ * </pre>
+ <!-- options-end -->
+ *
+ * @version $Revision$
+ */
+public class LinearRegressionUpdateable extends LinearRegression implements
+  UpdateableClassifier {
+
+  /** for serialization */
+  static final long serialVersionUID = 4187240385046278137L;
+
+  /** Whether instances have been added since the model was computed */
+  protected boolean m_ModelOutdated;
+
+  /** The sums over the untransformed instances, unless checks are off */
+  protected InputStatistics m_InputStatistics;
+
+  /**
+   * Weighted sums over a stream of untransformed instances, from which the
+   * statistics of the data transformed by NominalToBinary and
+   * ReplaceMissingValues can be derived as if the filters had been set up
+   * with all of these instances. Each attribute is represented by one
+   * feature if it is numeric and by one indicator per value if it is
+   * nominal. Missing values are left out of the sums, and the sums over the
+   * instances where pairs of attributes are both present are kept as well,
+   * so that the effect of replacing missing values by the final means can be
+   * worked out. Numeric features are shifted by their first value to limit
+   * the loss of precision when the products of the means are subtracted.
+   */
+  protected static class InputStatistics implements Serializable,
+    RevisionHandler {
+
+    /** for serialization */
+    private static final long serialVersionUID = 7425189363725436219L;
+
+    /** The structure of the untransformed data */
+    protected Instances m_Header;
+
+    /** The index of the first feature of each attribute */
+    protected int[] m_FirstFeature;
+
+    /** The attribute of each feature */
+    protected int[] m_Attribute;
+
+    /** The shift of each feature, zero for indicators */
+    protected double[] m_Shift;
+
+    /** Whether the shift of each feature has been set */
+    protected boolean[] m_HasShift;
+
+    /** The number of instances, including those with zero weight */
+    protected long m_NumInstances;
+
+    /** The sum of the weights */
+    protected double m_SumOfWeights;
+
+    /** The sum of the weights where each attribute is present */
+    protected double[] m_PresentWeights;
+
+    /** The sums of the weights where two attributes are present, as rows */
+    protected double[][] m_BothPresentWeights;
+
+    /** The weighted sums of the features */
+    protected double[] m_Sums;
+
+    /** The weighted sums of the features where an attribute is present */
+    protected double[][] m_SumsWherePresent;
+
+    /** The weighted sums of products of the features, as rows */
+    protected double[][] m_Products;
+
+    /** The weighted sums of the class values for each feature */
+    protected double[] m_ClassSums;
+
+    /** The features of the current instance */
+    protected transient double[] m_Values;
+
+    /** The attributes present in the current instance */
+    protected transient int[] m_Present;
+
+    /** The features of the current instance that are present and not zero */
+    protected transient int[] m_NonZero;
+
+    /**
+     * Creates empty statistics.
+     *
+     * @param header the structure of the data, with the class set
+     */
+    public InputStatistics(Instances header) {
+
+      m_Header = new Instances(header, 0);
+      int numAttributes = m_Header.numAttributes();
+      m_FirstFeature = new int[numAttributes + 1];
+      for (int j = 0; j < numAttributes; j++) {
+        Attribute att = m_Header.attribute(j);
+        m_FirstFeature[j + 1] = m_FirstFeature[j]
+          + ((att.isNominal() && (j != m_Header.classIndex())) ? att
+            .numValues() : 1);
+      }
+      int numFeatures = m_FirstFeature[numAttributes];
+      m_Attribute = new int[numFeatures];
+      for (int j = 0; j < numAttributes; j++) {
+        for (int f = m_FirstFeature[j]; f < m_FirstFeature[j + 1]; f++) {
+          m_Attribute[f] = j;
+        }
+      }
+      m_Shift = new double[numFeatures];
+      m_HasShift = new boolean[numFeatures];
+      m_PresentWeights = new double[numAttributes];
+      m_BothPresentWeights = new double[numAttributes][];
+      for (int j = 0; j < numAttributes; j++) {
+        m_BothPresentWeights[j] = new double[j + 1];
+      }
+      m_Sums = new double[numFeatures];
+      m_SumsWherePresent = new double[numFeatures][numAttributes];
+      m_Products = new double[numFeatures][];
+      for (int f = 0; f < numFeatures; f++) {
+        m_Products[f] = new double[f + 1];
+      }
+      m_ClassSums = new double[numFeatures];
+    }
+
+    /**
+     * Adds an instance, which must not have a missing class value.
+     *
+     * @param inst the instance to add
+     */
+    public void add(Instance inst) {
+
+      m_NumInstances++;
+      double weight = inst.weight();
+      if (weight <= 0) {
+        return;
+      }
+      int numAttributes = m_Header.numAttributes();
+      if (m_Values == null) {
+        m_Values = new double[m_Sums.length];
+        m_Present = new int[numAttributes];
+        m_NonZero = new int[m_Sums.length];
+      }
+
+      // the present attributes, and the features that are present and not
+      // zero, as only these contribute to the sums
+      int[] present = m_Present;
+      int numPresent = 0;
+      int[] nonZero = m_NonZero;
+      int numNonZero = 0;
+      for (int j = 0; j < numAttributes; j++) {
+        if (inst.isMissing(j)) {
+          continue;
+        }
+        present[numPresent++] = j;
+        double value = inst.value(j);
+        if (m_Header.attribute(j).isNominal() && (j != m_Header.classIndex())) {
+          int f = m_FirstFeature[j] + (int) value;
+          m_Values[f] = 1;
+          nonZero[numNonZero++] = f;
+        } else {
+          int f = m_FirstFeature[j];
+          if (!m_HasShift[f]) {
+            m_Shift[f] = value;
+            m_HasShift[f] = true;
+          }
+          m_Values[f] = value - m_Shift[f];
+          if (m_Values[f] != 0) {
+            nonZero[numNonZero++] = f;
+          }
+        }
+      }
+
+      m_SumOfWeights += weight;
+      double classValue = inst.classValue();
+      for (int a = 0; a < numPresent; a++) {
+        int j = present[a];
+        m_PresentWeights[j] += weight;
+        for (int b = 0; b <= a; b++) {
+          m_BothPresentWeights[j][present[b]] += weight;
+        }
+      }
+      for (int a = 0; a < numNonZero; a++) {
+        int f = nonZero[a];
+        double d = weight * m_Values[f];
+        m_Sums[f] += d;
+        m_ClassSums[f] += weight * classValue;
+        double[] sums = m_SumsWherePresent[f];
+        for (int b = 0; b < numPresent; b++) {
+          sums[present[b]] += d;
+        }
+        double[] row = m_Products[f];
+        for (int b = 0; b <= a; b++) {
+          row[nonZero[b]] += d * m_Values[nonZero[b]];
+        }
+      }
+    }
+
+    /**
+     * Returns the weight of the instances where two attributes are both
+     * present.
+     *
+     * @param i the index of the first attribute
+     * @param j the index of the second attribute
+     * @return the sum of the weights
+     */
+    public double bothPresentWeight(int i, int j) {
+      return (i >= j) ? m_BothPresentWeights[i][j] : m_BothPresentWeights[j][i];
+    }
+
+    /**
+     * Returns the weighted sum of products of two features.
+     *
+     * @param f the index of the first feature
+     * @param g the index of the second feature
+     * @return the sum of products
+     */
+    public double product(int f, int g) {
+      return (f >= g) ? m_Products[f][g] : m_Products[g][f];
+    }
+
+    /**
+     * Returns the revision string.
+     *
+     * @return the revision
+     */
+    @Override
+    public String getRevision() {
+      return RevisionUtils.extract("$Revision$");
+    }
+  }
+
+  /**
+   * Constructor.
+   */
+  public LinearRegressionUpdateable() {
+    super();
+    m_UseGramMatrix = true;
+  }
+
+  /**
+   * Generates a linear regression function predictor.
+   *
+   * @param argv the options
+   */
+  public static void main(String argv[]) {
+    runClassifier(new LinearRegressionUpdateable(), argv);
+  }
+
+  /**
+   * Returns a string describing this classifier
+   *
+   * @return a description of the classifier suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  @Override
+  public String globalInfo() {
+    return "Class for using linear regression for prediction. This is the "
+      + "updateable version of LinearRegression: the model is always computed "
+      + "from the sums of products of the attributes and the class (the Gram "
+      + "matrix), and further instances are added to these sums one at a "
+      + "time, so that the data never needs to be held in memory. The model "
+      + "is recomputed from the sums when it is next used.\n"
+      + "Nominal attributes are encoded and missing values replaced as if "
+      + "all instances seen so far had been passed to buildClassifier, which "
+      + "may therefore be empty: sums over the untransformed instances are "
+      + "kept, from which the encoding, the means and the Gram matrix of the "
+      + "transformed data are derived when the model is recomputed. The cost "
+      + "of adding an instance grows with the square of the number of "
+      + "numeric attributes and nominal values.";
+  }
+
+  /**
+   * Returns default capabilities of the classifier.
+   *
+   * @return the capabilities of this classifier
+   */
+  @Override
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+
+    // instances
+    result.setMinimumNumberInstances(0);
+
+    return result;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  @Override
+  public String useGramMatrixTipText() {
+    return "The updateable version always computes the model from the Gram "
+      + "matrix, so this setting has no effect.";
+  }
+
+  /**
+   * Set whether the model is computed from the Gram matrix. The updateable
+   * version always uses the Gram matrix, so the value is ignored.
+   *
+   * @param value ignored
+   */
+  @Override
+  public void setUseGramMatrix(boolean value) {
+    m_UseGramMatrix = true;
+  }
+
+  /**
+   * The statistics are always kept, as further instances may be added.
+   *
+   * @return true
+   */
+  @Override
+  protected boolean keepStatistics() {
+    return true;
+  }
+
+  /**
+   * Builds a regression model for the given data, which may be empty.
+   *
+   * @param data the training data to be used for generating the linear
+   *          regression function
+   * @throws Exception if the classifier could not be built successfully
+   */
+  @Override
+  public void buildClassifier(Instances data) throws Exception {
+
+    m_ModelOutdated = false;
+    if (m_checksTurnedOff) {
+      m_InputStatistics = null;
+      super.buildClassifier(data);
+      return;
+    }
+
+    // can classifier handle the data?
+    getCapabilities().testWithFail(data);
+
+    m_ModelBuilt = false;
+    m_isZeroR = false;
+    m_Statistics = null;
+    m_InputStatistics = new InputStatistics(data);
+    for (int i = 0; i < data.numInstances(); i++) {
+      updateClassifier(data.instance(i));
+    }
+    buildModelFromInputStatistics();
+    m_ModelOutdated = false;
+  }
+
+  /**
+   * Updates the classifier with the given instance. Instances with a missing
+   * class value are ignored.
+   *
+   * @param instance the new training instance to include in the model
+   * @throws Exception if the instance could not be incorporated in the model
+   */
+  @Override
+  public void updateClassifier(Instance instance) throws Exception {
+
+    if ((m_Statistics == null) && (m_InputStatistics == null)) {
+      throw new Exception("No model built yet, call buildClassifier() first!");
+    }
+    if (instance.classIsMissing()) {
+      return;
+    }
+    if (m_outputAdditionalStats && (instance.weight() != 1)) {
+      throw new Exception(
+        "Can only compute additional statistics on unweighted data");
+    }
+
+    if (m_InputStatistics != null) {
+      m_InputStatistics.add(instance);
+    } else {
+      m_Statistics.add(instance);
+    }
+    m_ModelOutdated = true;
+  }
+
+  /**
+   * Sets up the filters and the statistics of the transformed data from the
+   * sums over the untransformed instances, and builds the model from them.
+   * NominalToBinary orders the values of each nominal attribute by the
+   * average class value and ReplaceMissingValues replaces missing values by
+   * the means, so the filters are set up with a summary of the instances
+   * that gives the same averages and means: one instance per nominal value
+   * for the former, and a single instance holding the means for the latter.
+   *
+   * @throws Exception if the model can't be built
+   */
+  protected void buildModelFromInputStatistics() throws Exception {
+
+    InputStatistics stats = m_InputStatistics;
+    Instances header = stats.m_Header;
+    int classIndex = header.classIndex();
+    int numFeatures = stats.m_Sums.length;
+    double sumOfWeights = stats.m_SumOfWeights;
+
+    // the values that replace missing values, and the means and sums of
+    // products of the deviations of the features once they are replaced,
+    // all relative to the shifts
+    double[] replacements = new double[numFeatures];
+    for (int f = 0; f < numFeatures; f++) {
+      double presentWeight = stats.m_PresentWeights[stats.m_Attribute[f]];
+      replacements[f] = Utils.gr(presentWeight, 0) ? stats.m_Sums[f]
+        / presentWeight : -stats.m_Shift[f];
+    }
+    double[] means = new double[numFeatures];
+    double[][] coMoments = new double[numFeatures][numFeatures];
+    if (sumOfWeights > 0) {
+      for (int f = 0; f < numFeatures; f++) {
+        int i = stats.m_Attribute[f];
+        means[f] = (stats.m_Sums[f] + replacements[f]
+          * (sumOfWeights - stats.m_PresentWeights[i]))
+          / sumOfWeights;
+      }
+      for (int f = 0; f < numFeatures; f++) {
+        int i = stats.m_Attribute[f];
+        for (int g = 0; g <= f; g++) {
+          int j = stats.m_Attribute[g];
+          double bothMissing = sumOfWeights - stats.m_PresentWeights[i]
+            - stats.m_PresentWeights[j] + stats.bothPresentWeight(i, j);
+          double sum = stats.product(f, g)
+            + replacements[g] * (stats.m_Sums[f] - stats.m_SumsWherePresent[f][j])
+            + replacements[f] * (stats.m_Sums[g] - stats.m_SumsWherePresent[g][i])
+            + replacements[f] * replacements[g] * bothMissing;
+          coMoments[f][g] = sum - sumOfWeights * means[f] * means[g];
+          coMoments[g][f] = coMoments[f][g];
+        }
+      }
+    }
+
+    // order the values of the nominal attributes as NominalToBinary does,
+    // and set it up with one instance per value that has the average
+    Instances summary = new Instances(header, 0);
+    int[][] order = new int[header.numAttributes()][];
+    for (int j = 0; j < header.numAttributes(); j++) {
+      Attribute att = header.attribute(j);
+      if (!att.isNominal() || (j == classIndex)) {
+        continue;
+      }
+      double[] avgClassValues = new double[att.numValues()];
+      double[] counts = new double[att.numValues()];
+      for (int k = 0; k < att.numValues(); k++) {
+        avgClassValues[k] = stats.m_ClassSums[stats.m_FirstFeature[j] + k];
+        counts[k] = stats.m_Sums[stats.m_FirstFeature[j] + k];
+      }
+      double sum = Utils.sum(avgClassValues);
+      double totalCounts = Utils.sum(counts);
+      if (Utils.gr(totalCounts, 0)) {
+        for (int k = 0; k < att.numValues(); k++) {
+          if (Utils.gr(counts[k], 0)) {
+            avgClassValues[k] /= counts[k];
+          } else {
+            avgClassValues[k] = sum / totalCounts;
+          }
+        }
+      }
+      order[j] = Utils.sort(avgClassValues);
+      for (int k = 0; k < att.numValues(); k++) {
+        Instance inst = new DenseInstance(header.numAttributes());
+        inst.setValue(j, k);
+        inst.setValue(classIndex, avgClassValues[k]);
+        summary.add(inst);
+      }
+    }
+    m_TransformFilter = new NominalToBinary();
+    m_TransformFilter.setInputFormat(summary);
+    Instances transformed = new Instances(Filter.useFilter(summary,
+      m_TransformFilter), 0);
+
+    // the features that add up to each transformed attribute
+    List<int[]> features = new ArrayList<int[]>();
+    for (int j = 0; j < header.numAttributes(); j++) {
+      Attribute att = header.attribute(j);
+      if (!att.isNominal() || (j == classIndex)) {
+        features.add(new int[] { stats.m_FirstFeature[j] });
+        continue;
+      }
+      for (int k = 1; k < att.numValues(); k++) {
+        int[] indicators = new int[att.numValues() - k];
+        for (int l = k; l < att.numValues(); l++) {
+          indicators[l - k] = stats.m_FirstFeature[j] + order[j][l];
+        }
+        features.add(indicators);
+      }
+    }
+    if (features.size() != transformed.numAttributes()) {
+      throw new IllegalStateException("Unexpected output of NominalToBinary");
+    }
+
+    // set up ReplaceMissingValues with the means
+    int numAttributes = transformed.numAttributes();
+    double[] values = new double[numAttributes];
+    m_Statistics = new SufficientStatistics(numAttributes);
+    m_Statistics.m_NumInstances = stats.m_NumInstances;
+    m_Statistics.m_SumOfWeights = sumOfWeights;
+    for (int a = 0; a < numAttributes; a++) {
+      for (int f : features.get(a)) {
+        values[a] += replacements[f] + stats.m_Shift[f];
+        m_Statistics.m_Means[a] += means[f] + stats.m_Shift[f];
+      }
+      if (sumOfWeights <= 0) {
+        m_Statistics.m_Means[a] = 0;
+      }
+      for (int b = 0; b <= a; b++) {
+        double sum = 0;
+        for (int f : features.get(a)) {
+          for (int g : features.get(b)) {
+            sum += coMoments[f][g];
+          }
+        }
+        m_Statistics.m_CoMoments[a][b] = sum;
+      }
+    }
+    Instances replacement = new Instances(transformed, 1);
+    replacement.add(new DenseInstance(1, values));
+    m_MissingFilter = new ReplaceMissingValues();
+    m_MissingFilter.setInputFormat(replacement);
+    Filter.useFilter(replacement, m_MissingFilter);
+
+    m_TransformedData = transformed;
+    m_ClassIndex = transformed.classIndex();
+    buildModelFromStatistics();
+  }
+
+  /**
+   * Recomputes the model from the statistics if instances have been added
+   * since it was last computed.
+   *
+   * @throws Exception if the model can't be built
+   */
+  protected void updateModel() throws Exception {
+
+    if (m_ModelOutdated) {
+      if (m_InputStatistics != null) {
+        buildModelFromInputStatistics();
+      } else {
+        buildModelFromStatistics();
+      }
+      m_ModelOutdated = false;
+    }
+  }
+
+  /**
+   * Classifies the given instance using the linear regression function.
+   *
+   * @param instance the test instance
+   * @return the classification
+   * @throws Exception if classification can't be done successfully
+   */
+  @Override
+  public double classifyInstance(Instance instance) throws Exception {
+
+    updateModel();
+
+    return super.classifyInstance(instance);
+  }
+
+  /**
+   * Returns the coefficients for this linear model.
+   *
+   * @return the coefficients for this linear model
+   */
+  @Override
+  public double[] coefficients() {
+
+    try {
+      updateModel();
+    } catch (Exception e) {
+      throw new IllegalStateException(e);
+    }
+
+    return super.coefficients();
+  }
+
+  /**
+   * Outputs the linear regression model as a string.
+   *
+   * @return the model as string
+   */
+  @Override
+  public String toString() {
+
+    try {
+      updateModel();
+    } catch (Exception e) {
+      return "Can't print Linear Regression!";
+    }
+
+    return super.toString();
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
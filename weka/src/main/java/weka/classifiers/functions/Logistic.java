@@ -24,6 +24,8 @@ package weka.classifiers.functions;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.pmml.producer.LogisticProducerHelper;
@@ -36,6 +38,7 @@ import weka.core.Instances;
 import weka.core.Optimization;
 import weka.core.Option;
 import weka.core.OptionHandler;
+import weka.core.PartitionedObjective;
 import weka.core.RevisionUtils;
 import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
@@ -135,6 +138,13 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  *  Set the maximum number of iterations (default -1, until convergence).
  * </pre>
  * 
+ * <pre>
+ * -num-threads &lt;num&gt;
+ *  The number of threads to compute the log-likelihood and its gradient with.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Xin Xu (xx5@cs.waikato.ac.nz)
@@ -189,6 +199,9 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
   /** The header information in the training data. */
   private Instances m_structure;
 
+  /** The number of threads used to compute the log-likelihood. */
+  protected int m_numThreads = 1;
+
   /**
    * Constructor that sets the default number of decimal places to 4.
    */
@@ -265,7 +278,7 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
    */
   @Override
   public Enumeration<Option> listOptions() {
-    Vector<Option> newVector = new Vector<Option>(4);
+    Vector<Option> newVector = new Vector<Option>(5);
 
     newVector.addElement(new Option(
       "\tUse conjugate gradient descent rather than BFGS updates.", "C", 0,
@@ -277,6 +290,11 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
       "R", 1, "-R <ridge>"));
     newVector.addElement(new Option("\tSet the maximum number of iterations"
       + " (default -1, until convergence).", "M", 1, "-M <number>"));
+    newVector.addElement(new Option("\tThe number of threads to compute the"
+      + " log-likelihood and its gradient with.\n"
+      + "\t(default 1 - i.e. no parallelism)\n"
+      + "\t(use 0 to auto-detect number of cores)", "num-threads", 1,
+      "-num-threads <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -310,6 +328,13 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
    *  Set the maximum number of iterations (default -1, until convergence).
    * </pre>
    * 
+   * <pre>
+   * -num-threads &lt;num&gt;
+   *  The number of threads to compute the log-likelihood and its gradient with.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -334,6 +359,13 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
       m_MaxIts = -1;
     }
 
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      m_numThreads = Integer.parseInt(numThreadsString);
+    } else {
+      m_numThreads = 1;
+    }
+
     super.setOptions(options);
   }
 
@@ -357,6 +389,10 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
     options.add("" + m_Ridge);
     options.add("-M");
     options.add("" + m_MaxIts);
+    if (m_numThreads != 1) {
+      options.add("-num-threads");
+      options.add("" + m_numThreads);
+    }
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[0]);
@@ -507,6 +543,38 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
     m_MaxIts = newMaxIts;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads to compute the log-likelihood and its "
+      + "gradient with (0 = number of cores). The model does not depend on the "
+      + "number of threads.";
+  }
+
+  /**
+   * Gets the number of threads used to compute the log-likelihood.
+   * 
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+
+    return m_numThreads;
+  }
+
+  /**
+   * Sets the number of threads used to compute the log-likelihood.
+   * 
+   * @param numThreads the number of threads, 0 for the number of cores
+   */
+  public void setNumThreads(int numThreads) {
+
+    m_numThreads = numThreads;
+  }
+
   private class OptEng extends Optimization {
 
     OptObject m_oO = null;
@@ -516,12 +584,12 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
     }
 
     @Override
-    protected double objectiveFunction(double[] x) {
+    protected double objectiveFunction(double[] x) throws Exception {
       return m_oO.objectiveFunction(x);
     }
 
     @Override
-    protected double[] evaluateGradient(double[] x) {
+    protected double[] evaluateGradient(double[] x) throws Exception {
       return m_oO.evaluateGradient(x);
     }
 
@@ -540,12 +608,12 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
     }
 
     @Override
-    protected double objectiveFunction(double[] x) {
+    protected double objectiveFunction(double[] x) throws Exception {
       return m_oO.objectiveFunction(x);
     }
 
     @Override
-    protected double[] evaluateGradient(double[] x) {
+    protected double[] evaluateGradient(double[] x) throws Exception {
       return m_oO.evaluateGradient(x);
     }
 
@@ -555,7 +623,7 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
     }
   }
 
-  private class OptObject {
+  private class OptObject extends PartitionedObjective {
 
     /** Weights of instances in the data */
     private double[] weights;
@@ -563,6 +631,33 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
     /** Class labels of instances */
     private int[] cls;
 
+    /** The values of the variables the passes are run for */
+    private double[] m_X;
+
+    /** The gradient the gradient pass adds to */
+    private double[] m_Grad;
+
+    /** The weighted log-likelihood of each instance */
+    private final double[] m_Terms;
+
+    /** The weighted posterior probabilities of the instances, row by row */
+    private final double[] m_Posteriors;
+
+    /** The passes, created once as they are run for every evaluation */
+    private final RangePass m_TermsPass = new TermsPass();
+    private final RangePass m_PosteriorPass = new PosteriorPass();
+    private final RangePass m_GradientPass = new GradientPass();
+
+    /**
+     * Initializes the objective function for the given number of instances
+     * 
+     * @param numInstances the number of instances in the data
+     */
+    public OptObject(int numInstances) {
+      m_Terms = new double[numInstances];
+      m_Posteriors = new double[numInstances * (m_NumClasses - 1)];
+    }
+
     /**
      * Set the weights of instances
      * 
@@ -610,31 +705,17 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
      * 
      * @param x the current values of variables
      * @return the value of the objective function
+     * @throws Exception if the computation fails
      */
-    protected double objectiveFunction(double[] x) {
-      double nll = 0; // -LogLikelihood
+    @Override
+    public double objectiveFunction(double[] x) throws Exception {
       int dim = m_NumPredictors + 1; // Number of variables per class
 
+      m_X = x;
+      run(m_TermsPass, cls.length, (m_NumClasses - 1) * dim);
+      double nll = 0; // -LogLikelihood
       for (int i = 0; i < cls.length; i++) { // ith instance
-
-        double[] exp = new double[m_NumClasses - 1];
-        int index;
-        for (int offset = 0; offset < m_NumClasses - 1; offset++) {
-          index = offset * dim;
-          for (int j = 0; j < dim; j++) {
-            exp[offset] += m_Data[i][j] * x[index + j];
-          }
-        }
-        double num = 0;
-        if (cls[i] < m_NumClasses - 1) { // Class of this instance
-          num = exp[cls[i]];
-        }
-        double denom = 0;
-        for (int offset = 0; offset < m_NumClasses - 1; offset++) {
-	  denom = logOfSum(denom, exp[offset]);
-        }
-
-        nll -= weights[i] * (num - denom); // Weighted NLL
+        nll -= m_Terms[i]; // Weighted NLL
       }
 
       // Ridge: note that intercepts NOT included
@@ -652,59 +733,142 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
      * 
      * @param x the current values of variables
      * @return the gradient vector
+     * @throws Exception if the computation fails
      */
-    protected double[] evaluateGradient(double[] x) {
+    @Override
+    public double[] evaluateGradient(double[] x) throws Exception {
       double[] grad = new double[x.length];
       int dim = m_NumPredictors + 1; // Number of variables per class
 
-      for (int i = 0; i < cls.length; i++) { // ith instance
+      m_X = x;
+      m_Grad = grad;
+      run(m_PosteriorPass, cls.length, (m_NumClasses - 1) * dim);
+      run(m_GradientPass, dim, (long) cls.length * m_NumClasses);
+      m_Grad = null;
+
+      // Ridge: note that intercepts NOT included
+      for (int offset = 0; offset < m_NumClasses - 1; offset++) {
+        for (int r = 1; r < dim; r++) {
+          grad[offset * dim + r] += 2 * m_Ridge * x[offset * dim + r];
+        }
+      }
+
+      return grad;
+    }
+
+    /**
+     * Computes the weighted log-likelihood of each instance in a range
+     */
+    private class TermsPass extends RangePass {
+
+      @Override
+      public void process(int from, int to) {
+        int dim = m_NumPredictors + 1; // Number of variables per class
+        double[] exp = new double[m_NumClasses - 1];
+
+        for (int i = from; i < to; i++) { // ith instance
+
+          double[] data = m_Data[i];
+          int index;
+          for (int offset = 0; offset < m_NumClasses - 1; offset++) {
+            index = offset * dim;
+            double sum = 0;
+            for (int j = 0; j < dim; j++) {
+              sum += data[j] * m_X[index + j];
+            }
+            exp[offset] = sum;
+          }
+          double num = 0;
+          if (cls[i] < m_NumClasses - 1) { // Class of this instance
+            num = exp[cls[i]];
+          }
+          double denom = 0;
+          for (int offset = 0; offset < m_NumClasses - 1; offset++) {
+            denom = logOfSum(denom, exp[offset]);
+          }
+
+          m_Terms[i] = weights[i] * (num - denom);
+        }
+      }
+    }
+
+    /**
+     * Computes the weighted posterior probabilities of the instances in a
+     * range, the first terms of their gradients
+     */
+    private class PosteriorPass extends RangePass {
+
+      @Override
+      public void process(int from, int to) {
+        int dim = m_NumPredictors + 1; // Number of variables per class
         double[] num = new double[m_NumClasses - 1]; // numerator of
                                                      // [-log(1+sum(exp))]'
-        int index;
-        for (int offset = 0; offset < m_NumClasses - 1; offset++) { // Which
-                                                                    // part of x
-          double exp = 0.0;
-          index = offset * dim;
-          for (int j = 0; j < dim; j++) {
-            exp += m_Data[i][j] * x[index + j];
+
+        for (int i = from; i < to; i++) { // ith instance
+          double[] data = m_Data[i];
+          int index;
+          for (int offset = 0; offset < m_NumClasses - 1; offset++) { // Which
+                                                                      // part of
+                                                                      // x
+            double exp = 0.0;
+            index = offset * dim;
+            for (int j = 0; j < dim; j++) {
+              exp += data[j] * m_X[index + j];
+            }
+            num[offset] = exp;
           }
-          num[offset] = exp;
-        }
 
-        double max = num[Utils.maxIndex(num)];
-        double denom = Math.exp(-max); // Denominator of [-log(1+sum(exp))]'
-        for (int offset = 0; offset < m_NumClasses - 1; offset++) {
-          num[offset] = Math.exp(num[offset] - max);
-          denom += num[offset];
-        }
-        Utils.normalize(num, denom);
-
-        // Update denominator of the gradient of -log(Posterior)
-        double firstTerm;
-        for (int offset = 0; offset < m_NumClasses - 1; offset++) { // Which
-                                                                    // part of x
-          index = offset * dim;
-          firstTerm = weights[i] * num[offset];
-          for (int q = 0; q < dim; q++) {
-            grad[index + q] += firstTerm * m_Data[i][q];
+          double max = num[Utils.maxIndex(num)];
+          double denom = Math.exp(-max); // Denominator of [-log(1+sum(exp))]'
+          for (int offset = 0; offset < m_NumClasses - 1; offset++) {
+            num[offset] = Math.exp(num[offset] - max);
+            denom += num[offset];
           }
-        }
+          Utils.normalize(num, denom);
 
-        if (cls[i] != m_NumClasses - 1) { // Not the last class
-          for (int p = 0; p < dim; p++) {
-            grad[cls[i] * dim + p] -= weights[i] * m_Data[i][p];
+          index = i * (m_NumClasses - 1);
+          for (int offset = 0; offset < m_NumClasses - 1; offset++) {
+            m_Posteriors[index + offset] = weights[i] * num[offset];
           }
         }
       }
+    }
 
-      // Ridge: note that intercepts NOT included
-      for (int offset = 0; offset < m_NumClasses - 1; offset++) {
-        for (int r = 1; r < dim; r++) {
-          grad[offset * dim + r] += 2 * m_Ridge * x[offset * dim + r];
+    /**
+     * Adds up the gradient for a range of the variables of each class. The
+     * instances are added in their order, so the gradient does not depend on
+     * how the variables are split.
+     */
+    private class GradientPass extends RangePass {
+
+      @Override
+      public void process(int from, int to) {
+        int dim = m_NumPredictors + 1; // Number of variables per class
+
+        for (int i = 0; i < cls.length; i++) { // ith instance
+          double[] data = m_Data[i];
+
+          // Update denominator of the gradient of -log(Posterior)
+          int index;
+          double firstTerm;
+          for (int offset = 0; offset < m_NumClasses - 1; offset++) { // Which
+                                                                      // part of
+                                                                      // x
+            index = offset * dim;
+            firstTerm = m_Posteriors[i * (m_NumClasses - 1) + offset];
+            for (int q = from; q < to; q++) {
+              m_Grad[index + q] += firstTerm * data[q];
+            }
+          }
+
+          if (cls[i] != m_NumClasses - 1) { // Not the last class
+            index = cls[i] * dim;
+            for (int p = from; p < to; p++) {
+              m_Grad[index + p] -= weights[i] * data[p];
+            }
+          }
         }
       }
-
-      return grad;
     }
   }
 
@@ -871,35 +1035,49 @@ public class Logistic extends AbstractClassifier implements OptionHandler,
       }
     }
 
-    OptObject oO = new OptObject();
+    OptObject oO = new OptObject(nC);
     oO.setWeights(weights);
     oO.setClassLabels(Y);
 
-    Optimization opt = null;
-    if (m_useConjugateGradientDescent) {
-      opt = new OptEngCG(oO);
-    } else {
-      opt = new OptEng(oO);
+    int numThreads = (m_numThreads > 0) ? m_numThreads
+      : Runtime.getRuntime().availableProcessors();
+    ExecutorService executor = null;
+    if ((numThreads > 1) && (nC > 1)) {
+      executor = Executors.newFixedThreadPool(numThreads - 1);
+      oO.setExecutor(executor, numThreads);
     }
-    opt.setDebug(m_Debug);
 
-    if (m_MaxIts == -1) { // Search until convergence
-      x = opt.findArgmin(x, b);
-      while (x == null) {
-        x = opt.getVarbValues();
+    Optimization opt = null;
+    try {
+      if (m_useConjugateGradientDescent) {
+        opt = new OptEngCG(oO);
+      } else {
+        opt = new OptEng(oO);
+      }
+      opt.setDebug(m_Debug);
+
+      if (m_MaxIts == -1) { // Search until convergence
+        x = opt.findArgmin(x, b);
+        while (x == null) {
+          x = opt.getVarbValues();
+          if (m_Debug) {
+            System.out.println("First set of iterations finished, not enough!");
+          }
+          x = opt.findArgmin(x, b);
+        }
         if (m_Debug) {
-          System.out.println("First set of iterations finished, not enough!");
+          System.out.println(" -------------<Converged>--------------");
         }
+      } else {
+        opt.setMaxIteration(m_MaxIts);
         x = opt.findArgmin(x, b);
+        if (x == null) {
+          x = opt.getVarbValues();
+        }
       }
-      if (m_Debug) {
-        System.out.println(" -------------<Converged>--------------");
-      }
-    } else {
-      opt.setMaxIteration(m_MaxIts);
-      x = opt.findArgmin(x, b);
-      if (x == null) {
-        x = opt.getVarbValues();
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
       }
     }
 
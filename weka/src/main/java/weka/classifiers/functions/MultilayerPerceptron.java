@@ -38,6 +38,8 @@ import java.util.Enumeration;
 import java.util.Random;
 import java.util.StringTokenizer;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.swing.BorderFactory;
 import javax.swing.Box;
@@ -53,6 +55,7 @@ import javax.swing.JTextField;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.IterativeClassifier;
+import weka.classifiers.functions.neural.DenseNetwork;
 import weka.classifiers.functions.neural.LinearUnit;
 import weka.classifiers.functions.neural.NeuralConnection;
 import weka.classifiers.functions.neural.NeuralNode;
@@ -163,6 +166,19 @@ import weka.filters.unsupervised.attribute.NominalToBinary;
  *  (Set this to cause the learning rate to decay).
  * </pre>
  * 
+ * <pre>
+ * -mini-batch-size &lt;number of instances&gt;
+ *  The number of instances whose weight updates are added up
+ *  before the weights are changed.
+ *  (Default = 1).
+ * </pre>
+ * 
+ * <pre>
+ * -num-threads &lt;number of threads&gt;
+ *  The number of threads that process the instances of a mini-batch
+ *  (use 0 to auto-detect number of cores, Default = 1).
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Malcolm Ware (mfw4@cs.waikato.ac.nz)
@@ -1060,6 +1076,39 @@ public class MultilayerPerceptron extends AbstractClassifier implements
    */
   protected boolean m_resume;
 
+  /** The number of instances whose weight updates are added up. */
+  private int m_miniBatchSize = 1;
+
+  /** The number of threads that process the instances of a mini-batch. */
+  private int m_numThreads = 1;
+
+  /**
+   * The packed layers the network is trained with, null if the network is not
+   * made up of fully connected layers.
+   */
+  private transient DenseNetwork m_denseNetwork;
+
+  /** Whether the network has been checked for fully connected layers. */
+  private transient boolean m_denseNetworkChecked;
+
+  /** The inputs of the instances for the packed layers. */
+  private transient double[][] m_denseInputs;
+
+  /** The target outputs of the instances for the packed layers. */
+  private transient double[][] m_denseTargets;
+
+  /** The indices of the training instances that have a class value. */
+  private transient int[] m_denseRows;
+
+  /** The inputs of the validation instances for the packed layers. */
+  private transient double[][] m_denseValInputs;
+
+  /** The target outputs of the validation instances. */
+  private transient double[][] m_denseValTargets;
+
+  /** The indices of the validation instances that have a class value. */
+  private transient int[] m_denseValRows;
+
   /**
    * The constructor.
    */
@@ -1414,6 +1463,41 @@ public class MultilayerPerceptron extends AbstractClassifier implements
     return m_numEpochs;
   }
 
+  /**
+   * Set the number of instances whose weight updates are added up before the
+   * weights are changed. Must be greater than 0.
+   * 
+   * @param size the number of instances per update
+   */
+  public void setMiniBatchSize(int size) {
+    if (size > 0) {
+      m_miniBatchSize = size;
+    }
+  }
+
+  /**
+   * @return The number of instances per weight update.
+   */
+  public int getMiniBatchSize() {
+    return m_miniBatchSize;
+  }
+
+  /**
+   * Set the number of threads that process the instances of a mini-batch.
+   * 
+   * @param numThreads the number of threads, 0 for the number of cores
+   */
+  public void setNumThreads(int numThreads) {
+    m_numThreads = numThreads;
+  }
+
+  /**
+   * @return The number of threads that process a mini-batch.
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
   /**
    * Call this function to place a node into the network list.
    * 
@@ -1837,6 +1921,7 @@ public class MultilayerPerceptron extends AbstractClassifier implements
       m_stopIt = true;
       m_stopped = true;
       m_accepted = false;
+      clearDenseNetwork();
       m_instances = new Instances(data);
       m_random = new Random(m_randomSeed);
       m_instances.randomize(m_random);
@@ -1976,7 +2061,12 @@ public class MultilayerPerceptron extends AbstractClassifier implements
     m_epoch++;
     m_numItsPerformed++;
     double right = 0;
-    for (int nob = numInVal; nob < m_instances.numInstances(); nob++) {
+    DenseNetwork network = denseNetwork();
+    if (network != null) {
+      right = trainDenseNetwork(network);
+    }
+    for (int nob = numInVal; (network == null)
+      && (nob < m_instances.numInstances()); nob++) {
       m_currentInstance = m_instances.instance(nob);
 
       if (!m_currentInstance.classIsMissing()) {
@@ -2020,7 +2110,14 @@ public class MultilayerPerceptron extends AbstractClassifier implements
       if (valSet == null) {
         throw new IllegalArgumentException("Trying to use validation set but validation set is null.");
       }
-      for (int nob = 0; nob < valSet.numInstances(); nob++) {
+      if (network != null) {
+        for (int i = 0; i < m_denseValRows.length; i++) {
+          int row = m_denseValRows[i];
+          right += (network.squaredError(m_denseValInputs[row], m_denseValTargets[row])
+            / valSet.numClasses()) * valSet.instance(row).weight();
+        }
+      }
+      for (int nob = 0; (network == null) && (nob < valSet.numInstances()); nob++) {
         m_currentInstance = valSet.instance(nob);
         if (!m_currentInstance.classIsMissing()) {
           // this is where the network updating occurs, for the validation set
@@ -2125,9 +2222,184 @@ public class MultilayerPerceptron extends AbstractClassifier implements
       m_currentInstance = null;
       valSet = null;
       originalFormatData = null;
+      clearDenseNetwork();
     }
   }
 
+  /**
+   * Returns the packed layers to train the network with, setting them up the
+   * first time. Networks that are edited in the GUI are always trained
+   * through their nodes.
+   * 
+   * @return the packed layers, or null if the network is not made up of fully
+   *         connected layers
+   */
+  private DenseNetwork denseNetwork() {
+
+    if (m_denseNetworkChecked) {
+      return m_denseNetwork;
+    }
+    m_denseNetworkChecked = true;
+    if (m_gui) {
+      return null;
+    }
+    NeuralConnection[] outputNodes = new NeuralConnection[m_numClasses];
+    for (int noa = 0; noa < m_numClasses; noa++) {
+      if (m_outputs[noa].getNumInputs() != 1) {
+        return null;
+      }
+      outputNodes[noa] = m_outputs[noa].getInputs()[0];
+    }
+    m_denseNetwork = DenseNetwork.create(m_inputs, outputNodes);
+    if (m_denseNetwork != null) {
+      m_denseInputs = denseInputs(m_instances);
+      m_denseTargets = denseTargets(m_instances);
+      m_denseRows = denseRows(m_instances, numInVal);
+      if (valSet != null) {
+        m_denseValInputs = denseInputs(valSet);
+        m_denseValTargets = denseTargets(valSet);
+        m_denseValRows = denseRows(valSet, 0);
+      }
+    }
+
+    return m_denseNetwork;
+  }
+
+  /**
+   * Discards the packed layers and the data that was packed for them.
+   */
+  private void clearDenseNetwork() {
+    m_denseNetwork = null;
+    m_denseNetworkChecked = false;
+    m_denseInputs = null;
+    m_denseTargets = null;
+    m_denseRows = null;
+    m_denseValInputs = null;
+    m_denseValTargets = null;
+    m_denseValRows = null;
+  }
+
+  /**
+   * Collects the values of the input units for each instance, which are 0 for
+   * missing values.
+   * 
+   * @param data the instances
+   * @return the values of the inputs, one array per instance
+   */
+  private double[][] denseInputs(Instances data) {
+    double[][] result = new double[data.numInstances()][m_numAttributes];
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      for (int noa = 0; noa < m_numAttributes; noa++) {
+        int link = m_inputs[noa].getLink();
+        if (!inst.isMissing(link)) {
+          result[i][noa] = inst.value(link);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Collects the values the output units are trained towards for each
+   * instance: 1 for the output of the instance's class and 0 for the others,
+   * or the class value for a numeric class.
+   * 
+   * @param data the instances
+   * @return the targets, one array per instance
+   */
+  private double[][] denseTargets(Instances data) {
+    double[][] result = new double[data.numInstances()][m_numClasses];
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      if (inst.classIsMissing()) {
+        continue;
+      }
+      for (int noa = 0; noa < m_numClasses; noa++) {
+        if (m_numeric) {
+          result[i][noa] = inst.classValue();
+        } else if (inst.classValue() == m_outputs[noa].getLink()) {
+          result[i][noa] = 1;
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the indices of the instances with a class value, starting at the
+   * given one.
+   * 
+   * @param data the instances
+   * @param first the index of the first instance to consider
+   * @return the indices of the instances
+   */
+  private int[] denseRows(Instances data, int first) {
+    int count = 0;
+    int[] rows = new int[data.numInstances()];
+    for (int i = first; i < data.numInstances(); i++) {
+      if (!data.instance(i).classIsMissing()) {
+        rows[count++] = i;
+      }
+    }
+    int[] result = new int[count];
+    System.arraycopy(rows, 0, result, 0, count);
+    return result;
+  }
+
+  /**
+   * Trains the packed layers for one epoch and copies the new weights to the
+   * nodes. The weights are taken from the nodes first, as they may have been
+   * changed since the last epoch.
+   * 
+   * @param network the packed layers
+   * @return the weighted sum of the errors of the training instances
+   * @throws Exception if a thread fails
+   */
+  private double trainDenseNetwork(DenseNetwork network) throws Exception {
+
+    double[] rates = new double[m_instances.numInstances()];
+    for (int row : m_denseRows) {
+      rates[row] = m_learningRate * m_instances.instance(row).weight();
+      if (m_decay) {
+        rates[row] /= m_epoch;
+      }
+    }
+    if (m_numeric && m_normalizeClass) {
+      network.setOutputScale(m_attributeRanges[m_instances.classIndex()],
+        m_attributeBases[m_instances.classIndex()]);
+    } else {
+      network.setOutputScale(1, 0);
+    }
+
+    int numThreads = (m_numThreads > 0) ? m_numThreads : Runtime.getRuntime()
+      .availableProcessors();
+    ExecutorService executor = null;
+    if ((m_miniBatchSize > 1) && (numThreads > 1)) {
+      executor = Executors.newFixedThreadPool(numThreads);
+    }
+    double[] errors = new double[m_denseRows.length];
+    try {
+      network.setExecutor(executor, numThreads);
+      network.load();
+      network.train(m_denseInputs, m_denseTargets, rates, m_denseRows,
+        m_miniBatchSize, m_momentum, errors);
+      network.store();
+    } finally {
+      network.setExecutor(null, 1);
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+
+    double right = 0;
+    for (int i = 0; i < m_denseRows.length; i++) {
+      right += (errors[i] / m_instances.numClasses())
+        * m_instances.instance(m_denseRows[i]).weight();
+    }
+    return right;
+  }
+
   /**
    * Tool tip text for resume property
    *
@@ -2259,7 +2531,7 @@ public class MultilayerPerceptron extends AbstractClassifier implements
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(14);
+    Vector<Option> newVector = new Vector<Option>(17);
 
     newVector.addElement(new Option(
       "\tLearning rate for the backpropagation algorithm.\n"
@@ -2312,6 +2584,14 @@ public class MultilayerPerceptron extends AbstractClassifier implements
         + "\t(Set this to not allow the network to reset).", "R", 0, "-R"));
     newVector.addElement(new Option("\tLearning rate decay will occur.\n"
       + "\t(Set this to cause the learning rate to decay).", "D", 0, "-D"));
+    newVector.addElement(new Option(
+      "\tThe number of instances whose weight updates are added up\n"
+        + "\tbefore the weights are changed.\n" + "\t(Default = 1).",
+      "mini-batch-size", 1, "-mini-batch-size <number of instances>"));
+    newVector.addElement(new Option(
+      "\tThe number of threads that process the instances of a mini-batch\n"
+        + "\t(use 0 to auto-detect number of cores, Default = 1).",
+      "num-threads", 1, "-num-threads <number of threads>"));
     newVector.addElement(new Option("\t" + resumeTipText() + "\n",
       "resume", 0, "-resume"));
 
@@ -2416,6 +2696,19 @@ public class MultilayerPerceptron extends AbstractClassifier implements
    *  (Set this to cause the learning rate to decay).
    * </pre>
    * 
+   * <pre>
+   * -mini-batch-size &lt;number of instances&gt;
+   *  The number of instances whose weight updates are added up
+   *  before the weights are changed.
+   *  (Default = 1).
+   * </pre>
+   * 
+   * <pre>
+   * -num-threads &lt;number of threads&gt;
+   *  The number of threads that process the instances of a mini-batch
+   *  (use 0 to auto-detect number of cores, Default = 1).
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -2504,6 +2797,19 @@ public class MultilayerPerceptron extends AbstractClassifier implements
       setDecay(false);
     }
 
+    String miniBatchString = Utils.getOption("mini-batch-size", options);
+    if (miniBatchString.length() != 0) {
+      setMiniBatchSize(Integer.parseInt(miniBatchString));
+    } else {
+      setMiniBatchSize(1);
+    }
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() != 0) {
+      setNumThreads(Integer.parseInt(numThreadsString));
+    } else {
+      setNumThreads(1);
+    }
+
     setResume(Utils.getFlag("resume", options));
 
     super.setOptions(options);
@@ -2554,6 +2860,14 @@ public class MultilayerPerceptron extends AbstractClassifier implements
     if (getDecay()) {
       options.add("-D");
     }
+    if (getMiniBatchSize() != 1) {
+      options.add("-mini-batch-size");
+      options.add("" + getMiniBatchSize());
+    }
+    if (getNumThreads() != 1) {
+      options.add("-num-threads");
+      options.add("" + getNumThreads());
+    }
     if (getResume()) {
       options.add("-resume");
     }
@@ -2807,6 +3121,27 @@ public class MultilayerPerceptron extends AbstractClassifier implements
       + " fail the training process and return an error message.";
   }
 
+  /**
+   * @return a string to describe the mini-batch size option.
+   */
+  public String miniBatchSizeTipText() {
+    return "The number of instances whose weight updates are computed with the"
+      + " same weights and added up before the weights are changed. With 1,"
+      + " the weights are updated after every instance. The learning rate"
+      + " applies to each instance, and the momentum to each combined update.";
+  }
+
+  /**
+   * @return a string to describe the number of threads option.
+   */
+  public String numThreadsTipText() {
+    return "The number of threads that compute the weight updates of the"
+      + " instances in a mini-batch (0 = number of cores). This is only used"
+      + " with mini-batches of more than one instance. The network that is"
+      + " learned depends on the number of threads, as the updates are added"
+      + " up in a different order.";
+  }
+
   /**
    * @return a string to describe the Decay option.
    */
@@ -24,8 +24,14 @@ package weka.classifiers.functions;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.RandomizableClassifier;
 import weka.classifiers.UpdateableClassifier;
@@ -82,6 +88,15 @@ import weka.filters.unsupervised.attribute.ReplaceMissingValues;
  * <pre> -M
  *  Don't replace missing values</pre>
  * 
+ * <pre> -mini-batch-size &lt;integer&gt;
+ *  The number of instances whose gradients are added up before the
+ *  weights are updated (batch learning only, default = 1)</pre>
+ * 
+ * <pre> -num-threads &lt;integer&gt;
+ *  The number of threads that update the weights concurrently,
+ *  without locking (batch learning only, default = 1)
+ *  (use 0 to auto-detect number of cores)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -158,6 +173,12 @@ public class SGD extends RandomizableClassifier implements
   /** Holds the header of the training data */
   protected Instances m_data;
 
+  /** The number of instances per weight update (batch learning) */
+  protected int m_miniBatchSize = 1;
+
+  /** The number of threads updating the weights (batch learning) */
+  protected int m_numThreads = 1;
+
   /**
    * Returns default capabilities of the classifier.
    * 
@@ -309,6 +330,70 @@ public class SGD extends RandomizableClassifier implements
     return m_epochs;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String miniBatchSizeTipText() {
+    return "The number of instances whose gradients are computed with the "
+        + "same weights and added up before the weights are updated "
+        + "(batch learning). The learning rate applies to each instance, "
+        + "as with updates by single instances. With mini-batches the "
+        + "order of the instances is shuffled again in every epoch.";
+  }
+
+  /**
+   * Set the number of instances per weight update
+   * 
+   * @param size the number of instances per update
+   */
+  public void setMiniBatchSize(int size) {
+    m_miniBatchSize = size;
+  }
+
+  /**
+   * Get the number of instances per weight update
+   * 
+   * @return the number of instances per update
+   */
+  public int getMiniBatchSize() {
+    return m_miniBatchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads that process the instances of an epoch "
+        + "concurrently (batch learning, 0 = number of cores). The threads "
+        + "update the shared weights without locking (Hogwild), so updates "
+        + "may occasionally be lost and the model varies from run to run; "
+        + "this works best for sparse data.";
+  }
+
+  /**
+   * Set the number of threads updating the weights
+   * 
+   * @param numThreads the number of threads, 0 for the number of cores
+   */
+  public void setNumThreads(int numThreads) {
+    m_numThreads = numThreads;
+  }
+
+  /**
+   * Get the number of threads updating the weights
+   * 
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
   /**
    * Turn normalization off/on.
    * 
@@ -425,6 +510,13 @@ public class SGD extends RandomizableClassifier implements
         "-C <double>"));
     newVector.add(new Option("\tDon't normalize the data", "N", 0, "-N"));
     newVector.add(new Option("\tDon't replace missing values", "M", 0, "-M"));
+    newVector.add(new Option("\tThe number of instances whose gradients are "
+        + "added up before the\n\tweights are updated (batch learning only, "
+        + "default = 1)", "mini-batch-size", 1, "-mini-batch-size <integer>"));
+    newVector.add(new Option("\tThe number of threads that update the "
+        + "weights concurrently,\n\twithout locking (batch learning only, "
+        + "default = 1)\n\t(use 0 to auto-detect number of cores)",
+        "num-threads", 1, "-num-threads <integer>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
     
@@ -467,6 +559,15 @@ public class SGD extends RandomizableClassifier implements
    * <pre> -M
    *  Don't replace missing values</pre>
    * 
+   * <pre> -mini-batch-size &lt;integer&gt;
+   *  The number of instances whose gradients are added up before the
+   *  weights are updated (batch learning only, default = 1)</pre>
+   * 
+   * <pre> -num-threads &lt;integer&gt;
+   *  The number of threads that update the weights concurrently,
+   *  without locking (batch learning only, default = 1)
+   *  (use 0 to auto-detect number of cores)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -517,6 +618,20 @@ public class SGD extends RandomizableClassifier implements
     setDontNormalize(Utils.getFlag("N", options));
     setDontReplaceMissing(Utils.getFlag('M', options));
 
+    String miniBatchString = Utils.getOption("mini-batch-size", options);
+    if (miniBatchString.length() > 0) {
+      setMiniBatchSize(Integer.parseInt(miniBatchString));
+    } else {
+      setMiniBatchSize(1);
+    }
+
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() > 0) {
+      setNumThreads(Integer.parseInt(numThreadsString));
+    } else {
+      setNumThreads(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -545,6 +660,14 @@ public class SGD extends RandomizableClassifier implements
     if (getDontReplaceMissing()) {
       options.add("-M");
     }
+    if (getMiniBatchSize() != 1) {
+      options.add("-mini-batch-size");
+      options.add("" + getMiniBatchSize());
+    }
+    if (getNumThreads() != 1) {
+      options.add("-num-threads");
+      options.add("" + getNumThreads());
+    }
 
     Collections.addAll(options, super.getOptions());
     
@@ -634,7 +757,6 @@ public class SGD extends RandomizableClassifier implements
     m_data = new Instances(data, 0);
 
     if (data.numInstances() > 0) {
-      data.randomize(new Random(getSeed())); // randomize the data
       train(data);
     }
   }
@@ -706,10 +828,134 @@ public class SGD extends RandomizableClassifier implements
     return z;
   }
 
-  private void train(Instances data) throws Exception {
-    for (int e = 0; e < m_epochs; e++) {
-      for (int i = 0; i < data.numInstances(); i++) {
-        updateClassifier(data.instance(i), false);
+  /**
+   * Shuffles an array in the same way as <code>Instances.randomize()</code>
+   * shuffles the instances of a dataset.
+   * 
+   * @param order the array to shuffle
+   * @param random the random number generator to use
+   */
+  protected static void shuffle(int[] order, Random random) {
+    for (int j = order.length - 1; j > 0; j--) {
+      int other = random.nextInt(j + 1);
+      int help = order[j];
+      order[j] = order[other];
+      order[other] = help;
+    }
+  }
+
+  /**
+   * Waits for a set of tasks to finish, passing on the first exception thrown
+   * by one of them.
+   * 
+   * @param futures the futures of the tasks
+   * @throws Exception if a task failed or the thread was interrupted
+   */
+  protected static void waitFor(List<Future<Object>> futures)
+      throws Exception {
+    for (Future<Object> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  private void train(final Instances data) throws Exception {
+    final int[] order = new int[data.numInstances()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Random random = new Random(getSeed());
+    shuffle(order, random); // randomize the data
+
+    int numThreads = (m_numThreads > 0) ? m_numThreads : Runtime
+        .getRuntime().availableProcessors();
+    numThreads = Math.min(numThreads, order.length);
+    if (m_miniBatchSize <= 1 && numThreads <= 1) {
+      for (int e = 0; e < m_epochs; e++) {
+        for (int i = 0; i < order.length; i++) {
+          updateClassifier(data.instance(order[i]), false);
+        }
+      }
+      return;
+    }
+
+    ExecutorService executor = null;
+    if (numThreads > 1) {
+      executor = Executors.newFixedThreadPool(numThreads);
+    }
+    try {
+      for (int e = 0; e < m_epochs; e++) {
+        if (e > 0) {
+          shuffle(order, random);
+        }
+        if (executor == null) {
+          train(data, order, 0, order.length);
+        } else {
+          // each thread processes a part of the epoch
+          List<Future<Object>> futures = new ArrayList<Future<Object>>();
+          for (int j = 0; j < numThreads; j++) {
+            final int from = (int) ((long) j * order.length / numThreads);
+            final int to = (int) ((long) (j + 1) * order.length / numThreads);
+            futures.add(executor.submit(new Callable<Object>() {
+              @Override
+              public Object call() throws Exception {
+                train(data, order, from, to);
+                return null;
+              }
+            }));
+          }
+          waitFor(futures);
+        }
+        m_t += order.length;
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Updates the weights with a range of instances, in mini-batches. Several
+   * threads may do this at the same time.
+   * 
+   * @param data the training instances
+   * @param order the order in which to process the instances
+   * @param from the first position in the order to process
+   * @param to the position after the last one to process
+   */
+  protected void train(Instances data, int[] order, int from, int to) {
+    int batchSize = Math.max(1, m_miniBatchSize);
+    double[] factors = new double[batchSize];
+    double multiplier = decayMultiplier();
+
+    for (int start = from; start < to; start += batchSize) {
+      int end = Math.min(start + batchSize, to);
+
+      // the gradients of all instances use the same weights
+      double decay = 1.0;
+      for (int k = start; k < end; k++) {
+        Instance instance = data.instance(order[k]);
+        if (!instance.classIsMissing()) {
+          factors[k - start] = gradientFactor(instance);
+          decay *= multiplier;
+        }
+      }
+
+      for (int i = 0; i < m_weights.length - 1; i++) {
+        m_weights[i] *= decay;
+      }
+      for (int k = start; k < end; k++) {
+        Instance instance = data.instance(order[k]);
+        if (!instance.classIsMissing()) {
+          addToWeights(instance, factors[k - start]);
+        }
       }
     }
   }
@@ -771,53 +1017,90 @@ public class SGD extends RandomizableClassifier implements
         }
       }
 
-      double wx = dotProd(instance, m_weights, instance.classIndex());
-
-      double y;
-      double z;
-      if (instance.classAttribute().isNominal()) {
-        y = (instance.classValue() == 0) ? -1 : 1;
-        z = y * (wx + m_weights[m_weights.length - 1]);
-      } else {
-        y = instance.classValue();
-        z = y - (wx + m_weights[m_weights.length - 1]);
-        y = 1;
-      }
+      double factor = gradientFactor(instance);
 
       // Compute multiplier for weight decay
-      double multiplier = 1.0;
-      if (m_numInstances == 0) {
-        multiplier = 1.0 - (m_learningRate * m_lambda) / m_t;
-      } else {
-        multiplier = 1.0 - (m_learningRate * m_lambda) / m_numInstances;
-      }
+      double multiplier = decayMultiplier();
       for (int i = 0; i < m_weights.length - 1; i++) {
         m_weights[i] *= multiplier;
       }
 
-      // Only need to do the following if the loss is non-zero
-      // if (m_loss != HINGE || (z < 1)) {
-      if (m_loss == SQUAREDLOSS || m_loss == LOGLOSS || m_loss == HUBER
-          || (m_loss == HINGE && (z < 1))
-          || (m_loss == EPSILON_INSENSITIVE && Math.abs(z) > m_epsilon)) {
-
-        // Compute Factor for updates
-        double factor = m_learningRate * y * dloss(z);
-
-        // Update coefficients for attributes
-        int n1 = instance.numValues();
-        for (int p1 = 0; p1 < n1; p1++) {
-          int indS = instance.index(p1);
-          if (indS != instance.classIndex() && !instance.isMissingSparse(p1)) {
-            m_weights[indS] += factor * instance.valueSparse(p1);
-          }
-        }
+      addToWeights(instance, factor);
+      m_t++;
+    }
+  }
+
+  /**
+   * Computes the multiplier for the weight decay of one update.
+   * 
+   * @return the multiplier
+   */
+  protected double decayMultiplier() {
+    if (m_numInstances == 0) {
+      return 1.0 - (m_learningRate * m_lambda) / m_t;
+    } else {
+      return 1.0 - (m_learningRate * m_lambda) / m_numInstances;
+    }
+  }
 
-        // update the bias
-        m_weights[m_weights.length - 1] += factor;
+  /**
+   * Computes the factor by which an instance is added to the weights, i.e.,
+   * the learning rate times the derivative of the loss for the instance
+   * under the current weights.
+   * 
+   * @param instance the (filtered) training instance
+   * @return the factor, 0 if the loss is zero
+   */
+  protected double gradientFactor(Instance instance) {
+    double wx = dotProd(instance, m_weights, instance.classIndex());
+
+    double y;
+    double z;
+    if (instance.classAttribute().isNominal()) {
+      y = (instance.classValue() == 0) ? -1 : 1;
+      z = y * (wx + m_weights[m_weights.length - 1]);
+    } else {
+      y = instance.classValue();
+      z = y - (wx + m_weights[m_weights.length - 1]);
+      y = 1;
+    }
+
+    // Only need to do the following if the loss is non-zero
+    // if (m_loss != HINGE || (z < 1)) {
+    if (m_loss == SQUAREDLOSS || m_loss == LOGLOSS || m_loss == HUBER
+        || (m_loss == HINGE && (z < 1))
+        || (m_loss == EPSILON_INSENSITIVE && Math.abs(z) > m_epsilon)) {
+
+      // Compute Factor for updates
+      return m_learningRate * y * dloss(z);
+    }
+
+    return 0;
+  }
+
+  /**
+   * Adds a multiple of an instance to the weights and the factor to the
+   * bias. Only the non-zero values of the instance are visited.
+   * 
+   * @param instance the (filtered) training instance
+   * @param factor the factor, nothing is done if 0
+   */
+  protected void addToWeights(Instance instance, double factor) {
+    if (factor == 0) {
+      return;
+    }
+
+    // Update coefficients for attributes
+    int n1 = instance.numValues();
+    for (int p1 = 0; p1 < n1; p1++) {
+      int indS = instance.index(p1);
+      if (indS != instance.classIndex() && !instance.isMissingSparse(p1)) {
+        m_weights[indS] += factor * instance.valueSparse(p1);
       }
-      m_t++;
     }
+
+    // update the bias
+    m_weights[m_weights.length - 1] += factor;
   }
 
   /**
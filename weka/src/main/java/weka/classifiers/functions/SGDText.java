@@ -27,9 +27,14 @@ import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.RandomizableClassifier;
 import weka.classifiers.UpdateableBatchProcessor;
@@ -120,6 +125,15 @@ import weka.core.tokenizers.WordTokenizer;
  * <pre> -stemmer &lt;spec&gt;
  *  The stemmering algorihtm (classname plus parameters) to use.</pre>
  * 
+ * <pre> -mini-batch-size &lt;integer&gt;
+ *  The number of documents whose gradients are added up before the
+ *  weights are updated (batch learning only, default = 1)</pre>
+ * 
+ * <pre> -num-threads &lt;integer&gt;
+ *  The number of threads that update the weights concurrently,
+ *  without locking (batch learning only, default = 1)
+ *  (use 0 to auto-detect number of cores)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -230,6 +244,12 @@ public class SGDText extends RandomizableClassifier implements
    */
   protected int m_epochs = 500;
 
+  /** The number of documents per weight update (batch learning) */
+  protected int m_miniBatchSize = 1;
+
+  /** The number of threads updating the weights (batch learning) */
+  protected int m_numThreads = 1;
+
   /**
    * Holds the current document vector (LinkedHashMap is more efficient when
    * iterating over EntrySet than HashMap)
@@ -727,6 +747,70 @@ public class SGDText extends RandomizableClassifier implements
     return m_epochs;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String miniBatchSizeTipText() {
+    return "The number of documents whose gradients are computed with the "
+      + "same weights and added up before the weights are updated (batch "
+      + "learning). With mini-batches or several threads, the documents are "
+      + "shuffled again in every epoch and kept in tokenized form after the "
+      + "first one, which needs more memory.";
+  }
+
+  /**
+   * Set the number of documents per weight update
+   * 
+   * @param size the number of documents per update
+   */
+  public void setMiniBatchSize(int size) {
+    m_miniBatchSize = size;
+  }
+
+  /**
+   * Get the number of documents per weight update
+   * 
+   * @return the number of documents per update
+   */
+  public int getMiniBatchSize() {
+    return m_miniBatchSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads that process the documents concurrently, "
+      + "updating the shared weights without locking (batch learning, 0 = "
+      + "number of cores). The first epoch, which builds the dictionary, "
+      + "and training with probability estimates for the SVM always use a "
+      + "single thread.";
+  }
+
+  /**
+   * Set the number of threads updating the weights
+   * 
+   * @param numThreads the number of threads, 0 for the number of cores
+   */
+  public void setNumThreads(int numThreads) {
+    m_numThreads = numThreads;
+  }
+
+  /**
+   * Get the number of threads updating the weights
+   * 
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
   /**
    * Set the loss function to use.
    * 
@@ -848,6 +932,14 @@ public class SGDText extends RandomizableClassifier implements
     newVector.addElement(new Option(
       "\tThe stemmering algorihtm (classname plus parameters) to use.",
       "stemmer", 1, "-stemmer <spec>"));
+    newVector.addElement(new Option("\tThe number of documents whose "
+      + "gradients are added up before the\n\tweights are updated (batch "
+      + "learning only, default = 1)", "mini-batch-size", 1,
+      "-mini-batch-size <integer>"));
+    newVector.addElement(new Option("\tThe number of threads that update the "
+      + "weights concurrently,\n\twithout locking (batch learning only, "
+      + "default = 1)\n\t(use 0 to auto-detect number of cores)",
+      "num-threads", 1, "-num-threads <integer>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -917,6 +1009,15 @@ public class SGDText extends RandomizableClassifier implements
    * <pre> -stemmer &lt;spec&gt;
    *  The stemmering algorihtm (classname plus parameters) to use.</pre>
    * 
+   * <pre> -mini-batch-size &lt;integer&gt;
+   *  The number of documents whose gradients are added up before the
+   *  weights are updated (batch learning only, default = 1)</pre>
+   * 
+   * <pre> -num-threads &lt;integer&gt;
+   *  The number of threads that update the weights concurrently,
+   *  without locking (batch learning only, default = 1)
+   *  (use 0 to auto-detect number of cores)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -1035,6 +1136,20 @@ public class SGDText extends RandomizableClassifier implements
       setTokenizer(tokenizer);
     }
 
+    String miniBatchString = Utils.getOption("mini-batch-size", options);
+    if (miniBatchString.length() > 0) {
+      setMiniBatchSize(Integer.parseInt(miniBatchString));
+    } else {
+      setMiniBatchSize(1);
+    }
+
+    String numThreadsString = Utils.getOption("num-threads", options);
+    if (numThreadsString.length() > 0) {
+      setNumThreads(Integer.parseInt(numThreadsString));
+    } else {
+      setNumThreads(1);
+    }
+
     super.setOptions(options);
   }
 
@@ -1111,6 +1226,15 @@ public class SGDText extends RandomizableClassifier implements
       options.add(spec.trim());
     }
 
+    if (getMiniBatchSize() != 1) {
+      options.add("-mini-batch-size");
+      options.add("" + getMiniBatchSize());
+    }
+    if (getNumThreads() != 1) {
+      options.add("-num-threads");
+      options.add("" + getNumThreads());
+    }
+
     Collections.addAll(options, super.getOptions());
 
     return options.toArray(new String[1]);
@@ -1172,7 +1296,6 @@ public class SGDText extends RandomizableClassifier implements
     }
 
     if (data.numInstances() > 0) {
-      data.randomize(new Random(getSeed()));
       train(data);
       pruneDictionary(true);
     }
@@ -1196,16 +1319,140 @@ public class SGDText extends RandomizableClassifier implements
     m_svmProbs.buildClassifier(m_fitLogisticStructure);
   }
 
-  protected void train(Instances data) throws Exception {
-    for (int e = 0; e < m_epochs; e++) {
-      for (int i = 0; i < data.numInstances(); i++) {
+  protected void train(final Instances data) throws Exception {
+    final int[] order = new int[data.numInstances()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Random random = new Random(getSeed());
+    SGD.shuffle(order, random);
+
+    int numThreads = (m_numThreads > 0) ? m_numThreads : Runtime.getRuntime()
+      .availableProcessors();
+    numThreads = Math.min(numThreads, order.length);
+    if (m_loss == HINGE && m_fitLogistic) {
+      // the logistic model is updated one document after the other
+      numThreads = 1;
+    }
+    if (m_miniBatchSize <= 1 && numThreads <= 1) {
+      for (int e = 0; e < m_epochs; e++) {
+        for (int i = 0; i < order.length; i++) {
+          if (e == 0) {
+            updateClassifier(data.instance(order[i]), true);
+          } else {
+            updateClassifier(data.instance(order[i]), false);
+          }
+        }
+      }
+      return;
+    }
+
+    // the documents are only tokenized in the first epoch
+    final List<Map<String, Count>> documents =
+      new ArrayList<Map<String, Count>>(order.length);
+    for (int i = 0; i < order.length; i++) {
+      documents.add(null);
+    }
+    ExecutorService executor = null;
+    if (numThreads > 1) {
+      executor = Executors.newFixedThreadPool(numThreads);
+    }
+    try {
+      for (int e = 0; e < m_epochs; e++) {
+        if (e > 0) {
+          SGD.shuffle(order, random);
+        }
         if (e == 0) {
-          updateClassifier(data.instance(i), true);
+          // grows the dictionary, which must not change in later epochs
+          train(data, order, 0, order.length, documents, true);
+        } else if (executor == null) {
+          m_t += train(data, order, 0, order.length, documents, false);
         } else {
-          updateClassifier(data.instance(i), false);
+          List<Future<Object>> futures = new ArrayList<Future<Object>>();
+          final int[] counts = new int[numThreads];
+          for (int j = 0; j < numThreads; j++) {
+            final int thread = j;
+            final int from = (int) ((long) j * order.length / numThreads);
+            final int to = (int) ((long) (j + 1) * order.length / numThreads);
+            futures.add(executor.submit(new Callable<Object>() {
+              @Override
+              public Object call() throws Exception {
+                counts[thread] = train(data, order, from, to, documents,
+                  false);
+                return null;
+              }
+            }));
+          }
+          SGD.waitFor(futures);
+          for (int count : counts) {
+            m_t += count;
+          }
+        }
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
+      }
+    }
+  }
+
+  /**
+   * Updates the weights with a range of documents, in mini-batches. When the
+   * dictionary is updated, the documents are tokenized and kept in the given
+   * list, and the iteration number is incremented for each document as
+   * pruning depends on it. Otherwise several threads may do this at the same
+   * time, using the documents kept from the first epoch.
+   * 
+   * @param data the training instances
+   * @param order the order in which to process the instances
+   * @param from the first position in the order to process
+   * @param to the position after the last one to process
+   * @param documents the tokenized documents, indexed by instance
+   * @param updateDictionary true if the dictionary is to be updated
+   * @return the number of documents used for training
+   * @throws Exception if the logistic model for the SVM can't be updated
+   */
+  protected int train(Instances data, int[] order, int from, int to,
+    List<Map<String, Count>> documents, boolean updateDictionary)
+    throws Exception {
+
+    int batchSize = Math.max(1, m_miniBatchSize);
+    double[] factors = new double[batchSize];
+    double multiplier = decayMultiplier();
+    int count = 0;
+
+    for (int start = from; start < to; start += batchSize) {
+      int end = Math.min(start + batchSize, to);
+
+      // the gradients of all documents use the same weights
+      double decay = 1.0;
+      for (int k = start; k < end; k++) {
+        Instance instance = data.instance(order[k]);
+        if (!instance.classIsMissing()) {
+          if (updateDictionary) {
+            tokenizeInstance(instance, true);
+            documents.set(order[k], m_inputVector);
+            m_inputVector = null;
+          }
+          factors[k - start] = gradientFactor(instance,
+            documents.get(order[k]));
+          decay *= multiplier;
+          if (updateDictionary) {
+            m_t++;
+          }
+          count++;
+        }
+      }
+
+      decay(decay);
+      for (int k = start; k < end; k++) {
+        if (!data.instance(order[k]).classIsMissing()) {
+          addToWeights(documents.get(order[k]), factors[k - start]);
         }
       }
     }
+
+    return count;
   }
 
   /**
@@ -1228,58 +1475,107 @@ public class SGDText extends RandomizableClassifier implements
       // tokenize
       tokenizeInstance(instance, updateDictionary);
 
-      // make a meta instance for the logistic model before we update
-      // the SVM
-      if (m_loss == HINGE && m_fitLogistic) {
-        double pred = svmOutput();
-        double[] vals = new double[2];
-        vals[0] = pred;
-        vals[1] = instance.classValue();
-        DenseInstance metaI = new DenseInstance(instance.weight(), vals);
-        metaI.setDataset(m_fitLogisticStructure);
-        m_svmProbs.updateClassifier(metaI);
-      }
-
-      // ---
-      double wx = dotProd(m_inputVector);
-      double y = (instance.classValue() == 0) ? -1 : 1;
-      double z = y * (wx + m_bias);
+      double factor = gradientFactor(instance, m_inputVector);
 
       // Compute multiplier for weight decay
-      double multiplier = 1.0;
-      if (m_numInstances == 0) {
-        multiplier = 1.0 - (m_learningRate * m_lambda) / m_t;
-      } else {
-        multiplier = 1.0 - (m_learningRate * m_lambda) / m_numInstances;
-      }
+      decay(decayMultiplier());
 
-      for (Map.Entry<String, Count> c : m_dictionary.entrySet()) {
-        c.getValue().m_weight *= multiplier;
-      }
+      addToWeights(m_inputVector, factor);
+
+      m_t++;
+    }
+  }
+
+  /**
+   * Computes the multiplier for the weight decay of one update.
+   * 
+   * @return the multiplier
+   */
+  protected double decayMultiplier() {
+    if (m_numInstances == 0) {
+      return 1.0 - (m_learningRate * m_lambda) / m_t;
+    } else {
+      return 1.0 - (m_learningRate * m_lambda) / m_numInstances;
+    }
+  }
 
-      // Only need to do the following if the loss is non-zero
-      if (m_loss != HINGE || (z < 1)) {
-        // Compute Factor for updates
-        double dloss = dloss(z);
-        double factor = m_learningRate * y * dloss;
+  /**
+   * Multiplies the weights of all words in the dictionary by the given
+   * factor.
+   * 
+   * @param multiplier the factor
+   */
+  protected void decay(double multiplier) {
+    for (Count c : m_dictionary.values()) {
+      c.m_weight *= multiplier;
+    }
+  }
 
-        // Update coefficients for attributes
-        for (Map.Entry<String, Count> feature : m_inputVector.entrySet()) {
-          String word = feature.getKey();
-          double value = (m_wordFrequencies) ? feature.getValue().m_count : 1;
+  /**
+   * Computes the factor by which a document is added to the weights, i.e.,
+   * the learning rate times the derivative of the loss for the document
+   * under the current weights. If probabilities are estimated for the SVM,
+   * the logistic model is updated with the document's output first.
+   * 
+   * @param instance the training instance
+   * @param document the tokenized document of the instance
+   * @return the factor, 0 if the loss is zero
+   * @throws Exception if the logistic model can't be updated
+   */
+  protected double gradientFactor(Instance instance,
+    Map<String, Count> document) throws Exception {
 
-          Count c = m_dictionary.get(word);
-          if (c != null) {
-            c.m_weight += factor * value;
-          }
-        }
+    // make a meta instance for the logistic model before we update
+    // the SVM
+    if (m_loss == HINGE && m_fitLogistic) {
+      double pred = dotProd(document) + m_bias;
+      double[] vals = new double[2];
+      vals[0] = pred;
+      vals[1] = instance.classValue();
+      DenseInstance metaI = new DenseInstance(instance.weight(), vals);
+      metaI.setDataset(m_fitLogisticStructure);
+      m_svmProbs.updateClassifier(metaI);
+    }
 
-        // update the bias
-        m_bias += factor;
-      }
+    // ---
+    double wx = dotProd(document);
+    double y = (instance.classValue() == 0) ? -1 : 1;
+    double z = y * (wx + m_bias);
 
-      m_t++;
+    // Only need to do the following if the loss is non-zero
+    if (m_loss != HINGE || (z < 1)) {
+      // Compute Factor for updates
+      return m_learningRate * y * dloss(z);
     }
+
+    return 0;
+  }
+
+  /**
+   * Adds a multiple of a document to the weights of the words in the
+   * dictionary, and the factor to the bias.
+   * 
+   * @param document the tokenized document
+   * @param factor the factor, nothing is done if 0
+   */
+  protected void addToWeights(Map<String, Count> document, double factor) {
+    if (factor == 0) {
+      return;
+    }
+
+    // Update coefficients for attributes
+    for (Map.Entry<String, Count> feature : document.entrySet()) {
+      String word = feature.getKey();
+      double value = (m_wordFrequencies) ? feature.getValue().m_count : 1;
+
+      Count c = m_dictionary.get(word);
+      if (c != null) {
+        c.m_weight += factor * value;
+      }
+    }
+
+    // update the bias
+    m_bias += factor;
   }
 
   protected void tokenizeInstance(Instance instance, boolean updateDictionary) {
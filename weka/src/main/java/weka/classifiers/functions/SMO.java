@@ -23,6 +23,7 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.supportVector.CachedKernel;
 import weka.classifiers.functions.supportVector.Kernel;
 import weka.classifiers.functions.supportVector.NormalizedPolyKernel;
 import weka.classifiers.functions.supportVector.PolyKernel;
@@ -52,10 +53,17 @@ import weka.filters.unsupervised.attribute.Standardize;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  <!-- globalinfo-start -->
@@ -161,6 +169,11 @@ import java.util.Vector;
   Full name of calibration model, followed by options.
   (default: "weka.classifiers.functions.Logistic")</pre>
  
+ <pre> -num-slots &lt;num&gt;
+  Number of execution slots.
+  (default 1 - i.e. no parallelism)
+  (use 0 to auto-detect number of cores)</pre>
+ 
  <pre> -output-debug-info
   If set, classifier is run in debug mode and
   may output additional info to the console</pre>
@@ -189,6 +202,11 @@ import java.util.Vector;
   -1 to turn it off.
   (default: 250007)</pre>
  
+ <pre> -row-cache &lt;num&gt;
+  The memory for caching whole rows of the kernel matrix
+  in megabytes, replaces the cache above if &gt; 0.
+  (default: 0)</pre>
+ 
  <pre> -output-debug-info
   Enables debugging output (if available) to be printed.
   (default: off)</pre>
@@ -373,6 +391,10 @@ public class SMO
     /** number of kernel cache hits, used for printing statistics only **/
     protected int m_nCacheHits = -1;
 
+    /** the position of each training instance in the data of the multi-class
+        problem, used to share kernel evaluations between the machines */
+    protected int[] m_rows = null;
+
     /**
      * Fits calibrator model to SVM's output, so that reasonable probability estimates can be produced.
      * If numFolds > 0, cross-validation is used to generate the training data for the calibrator.
@@ -734,6 +756,20 @@ public class SMO
             }
           }
         }
+      } else if (index == -1) {
+
+        // evaluate the kernel for all support vectors in one go
+        int[] ids = new int[m_supportVectors.numElements()];
+        int numIds = 0;
+        for (int i = m_supportVectors.getNext(-1); i != -1;
+             i = m_supportVectors.getNext(i)) {
+          ids[numIds++] = i;
+        }
+        double[] values = new double[numIds];
+        m_kernel.evalRow(-1, inst, ids, numIds, values);
+        for (int k = 0; k < numIds; k++) {
+          result += m_class[ids[k]] * m_alpha[ids[k]] * values[k];
+        }
       } else {
         for (int i = m_supportVectors.getNext(-1); i != -1;
              i = m_supportVectors.getNext(i)) {
@@ -745,6 +781,50 @@ public class SMO
       return result;
     }
 
+    /**
+     * Computes SVM output for given instance, looking up the kernel values in
+     * a cache shared by all pairwise machines. The values are indexed by the
+     * position of the training instance in the data of the multi-class
+     * problem, NaN marks a value that has not been computed yet.
+     *
+     * @param inst the instance
+     * @param kernelValues the shared kernel values
+     * @return the output of the SVM for the given instance
+     * @throws Exception in case of an error
+     */
+    protected double SVMOutput(Instance inst, double[] kernelValues) throws Exception {
+
+      if (m_KernelIsLinear || (m_rows == null)) {
+        return SVMOutput(-1, inst);
+      }
+
+      // evaluate the kernel for the support vectors not seen yet
+      int[] ids = new int[m_supportVectors.numElements()];
+      int numIds = 0;
+      for (int i = m_supportVectors.getNext(-1); i != -1;
+           i = m_supportVectors.getNext(i)) {
+        if (Double.isNaN(kernelValues[m_rows[i]])) {
+          ids[numIds++] = i;
+        }
+      }
+      if (numIds > 0) {
+        double[] values = new double[numIds];
+        m_kernel.evalRow(-1, inst, ids, numIds, values);
+        for (int k = 0; k < numIds; k++) {
+          kernelValues[m_rows[ids[k]]] = values[k];
+        }
+      }
+
+      double result = 0;
+      for (int i = m_supportVectors.getNext(-1); i != -1;
+           i = m_supportVectors.getNext(i)) {
+        result += m_class[i] * m_alpha[i] * kernelValues[m_rows[i]];
+      }
+      result -= m_b;
+
+      return result;
+    }
+
     /**
      * Prints out the classifier.
      *
@@ -1269,6 +1349,12 @@ public class SMO
 
   /** the kernel to use */
   protected Kernel m_kernel = new PolyKernel();
+
+  /** The number of threads to train the pairwise machines with */
+  protected int m_numExecutionSlots = 1;
+
+  /** The number of training instances after filtering */
+  protected int m_numTrainingInstances = 0;
   
   /**
    * Turns off checks for missing values, etc. Use with caution.
@@ -1394,42 +1480,139 @@ public class SMO
     m_KernelIsLinear = (m_kernel instanceof PolyKernel) && (((PolyKernel) m_kernel).getExponent() == 1.0) &&
             !(((PolyKernel) m_kernel).getUseLowerOrder()) && !(m_kernel instanceof NormalizedPolyKernel);
 
-    // Generate subsets representing each class
-    Instances[] subsets = new Instances[insts.numClasses()];
+    // Generate subsets representing each class, given by the positions
+    // of their instances
+    int[] counts = new int[insts.numClasses()];
+    for (int j = 0; j < insts.numInstances(); j++) {
+      counts[(int) insts.instance(j).classValue()]++;
+    }
+    int[][] subsets = new int[insts.numClasses()][];
     for (int i = 0; i < insts.numClasses(); i++) {
-      subsets[i] = new Instances(insts, insts.numInstances());
+      subsets[i] = new int[counts[i]];
+      counts[i] = 0;
     }
     for (int j = 0; j < insts.numInstances(); j++) {
-      Instance inst = insts.instance(j);
-      subsets[(int) inst.classValue()].add(inst);
+      int c = (int) insts.instance(j).classValue();
+      subsets[c][counts[c]++] = j;
     }
-    for (int i = 0; i < insts.numClasses(); i++) {
-      subsets[i].compactify();
+    m_numTrainingInstances = insts.numInstances();
+
+    // The machines are trained concurrently if there is more than one slot.
+    // The cache of the kernel is then shared between the machines that
+    // are trained at the same time.
+    int numSlots = (m_numExecutionSlots > 0) ? m_numExecutionSlots
+      : Runtime.getRuntime().availableProcessors();
+    numSlots = Math.min(numSlots, insts.numClasses() * (insts.numClasses() - 1) / 2);
+    ExecutorService executor = null;
+    List<Future<Object>> futures = null;
+    if (numSlots > 1) {
+      executor = Executors.newFixedThreadPool(numSlots);
+      futures = new ArrayList<Future<Object>>();
     }
 
     // Build the binary classifiers
-    Random rand = new Random(m_randomSeed);
-    m_classifiers = new BinarySMO[insts.numClasses()][insts.numClasses()];
-    for (int i = 0; i < insts.numClasses(); i++) {
-      for (int j = i + 1; j < insts.numClasses(); j++) {
-        m_classifiers[i][j] = new BinarySMO();
-        m_classifiers[i][j].setKernel(Kernel.makeCopy(getKernel()));
-        Instances data = new Instances(insts, insts.numInstances());
-        for (int k = 0; k < subsets[i].numInstances(); k++) {
-          data.add(subsets[i].instance(k));
+    try {
+      Random rand = new Random(m_randomSeed);
+      m_classifiers = new BinarySMO[insts.numClasses()][insts.numClasses()];
+      for (int i = 0; i < insts.numClasses(); i++) {
+        for (int j = i + 1; j < insts.numClasses(); j++) {
+          final BinarySMO smo = new BinarySMO();
+          m_classifiers[i][j] = smo;
+          Kernel kernel = Kernel.makeCopy(getKernel());
+          if ((executor != null) && (kernel instanceof CachedKernel)) {
+            CachedKernel cached = (CachedKernel) kernel;
+            cached.setCacheSize(cacheSizeForSlots(cached.getCacheSize(), numSlots));
+            cached.setRowCacheSize(cached.getRowCacheSize() / numSlots);
+          }
+          smo.setKernel(kernel);
+
+          // same order as randomizing the combined subsets
+          int[] rows = new int[subsets[i].length + subsets[j].length];
+          System.arraycopy(subsets[i], 0, rows, 0, subsets[i].length);
+          System.arraycopy(subsets[j], 0, rows, subsets[i].length, subsets[j].length);
+          for (int k = rows.length - 1; k > 0; k--) {
+            int other = rand.nextInt(k + 1);
+            int help = rows[k];
+            rows[k] = rows[other];
+            rows[other] = help;
+          }
+          final Instances data = new Instances(insts, rows.length);
+          for (int row : rows) {
+            data.add(insts.instance(row));
+          }
+          if (!m_KernelIsLinear) {
+            smo.m_rows = rows;
+          }
+
+          final int cl1 = i;
+          final int cl2 = j;
+          if (executor == null) {
+            smo.buildClassifier(data, cl1, cl2, m_fitCalibratorModels,
+                    m_numFolds, m_randomSeed);
+          } else {
+            futures.add(executor.submit(new Callable<Object>() {
+              @Override
+              public Object call() throws Exception {
+                smo.buildClassifier(data, cl1, cl2, m_fitCalibratorModels,
+                        m_numFolds, m_randomSeed);
+                return null;
+              }
+            }));
+          }
         }
-        for (int k = 0; k < subsets[j].numInstances(); k++) {
-          data.add(subsets[j].instance(k));
+      }
+
+      if (executor != null) {
+        for (Future<Object> future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+              throw (Exception) e.getCause();
+            }
+            throw e;
+          }
         }
-        data.compactify();
-        data.randomize(rand);
-        m_classifiers[i][j].buildClassifier(data, i, j,
-                m_fitCalibratorModels,
-                m_numFolds, m_randomSeed);
+      }
+    } finally {
+      if (executor != null) {
+        executor.shutdownNow();
       }
     }
   }
 
+  /**
+   * Returns the cache size for each of the kernels of machines that are
+   * trained concurrently, so that together they don't use more memory than a
+   * single kernel with the given cache size. The size is a prime number.
+   *
+   * @param cacheSize the cache size of the kernel
+   * @param numSlots the number of machines trained at the same time
+   * @return the cache size to use for each machine
+   */
+  protected static int cacheSizeForSlots(int cacheSize, int numSlots) {
+
+    // full cache or no cache at all
+    if (cacheSize <= 0) {
+      return cacheSize;
+    }
+
+    int result = Math.max(2, cacheSize / numSlots);
+    boolean prime;
+    do {
+      prime = true;
+      for (int k = 2; k * k <= result; k++) {
+        if (result % k == 0) {
+          prime = false;
+          result--;
+          break;
+        }
+      }
+    } while (!prime);
+
+    return result;
+  }
+
   /**
    * Estimates class probabilities for given instance.
    * 
@@ -1457,13 +1640,14 @@ public class SMO
       inst = m_Filter.output();
     }
 
+    double[] kernelValues = kernelValues();
     if (!m_fitCalibratorModels) {
       double[] result = new double[inst.numClasses()];
       for (int i = 0; i < inst.numClasses(); i++) {
         for (int j = i + 1; j < inst.numClasses(); j++) {
           if ((m_classifiers[i][j].m_alpha != null) ||
                   (m_classifiers[i][j].m_sparseWeights != null)) {
-            double output = m_classifiers[i][j].SVMOutput(-1, inst);
+            double output = m_classifiers[i][j].SVMOutput(inst, kernelValues);
             if (output > 0) {
               result[j] += 1;
             } else {
@@ -1493,7 +1677,7 @@ public class SMO
           if ((m_classifiers[i][j].m_alpha != null) ||
                   (m_classifiers[i][j].m_sparseWeights != null)) {
             double[] newInst = new double[2];
-            newInst[0] = m_classifiers[i][j].SVMOutput(-1, inst);
+            newInst[0] = m_classifiers[i][j].SVMOutput(inst, kernelValues);
             newInst[1] = Utils.missingValue();
             DenseInstance d = new DenseInstance(1, newInst);
             d.setDataset(m_classifiers[i][j].m_calibrationDataHeader);
@@ -1506,6 +1690,21 @@ public class SMO
     }
   }
 
+  /**
+   * Returns an empty cache for the kernel values of an instance to classify,
+   * so that each support vector is evaluated only once, however many of the
+   * pairwise machines share it.
+   *
+   * @return the cache, filled with NaN
+   */
+  protected double[] kernelValues() {
+
+    double[] result = new double[m_KernelIsLinear ? 0 : m_numTrainingInstances];
+    Arrays.fill(result, Double.NaN);
+
+    return result;
+  }
+
   /**
    * Returns an array of votes for the given instance.
    * @param inst the instance
@@ -1533,10 +1732,11 @@ public class SMO
       inst = m_Filter.output();
     }
 
+    double[] kernelValues = kernelValues();
     int[] votes = new int[inst.numClasses()];
     for (int i = 0; i < inst.numClasses(); i++) {
       for (int j = i + 1; j < inst.numClasses(); j++) {
-        double output = m_classifiers[i][j].SVMOutput(-1, inst);
+        double output = m_classifiers[i][j].SVMOutput(inst, kernelValues);
         if (output > 0) {
           votes[j] += 1;
         } else {
@@ -1708,6 +1908,12 @@ public class SMO
                     "\t(default: \"weka.classifiers.functions.Logistic\")",
             "calibrator", 1, "-calibrator <scheme specification>"));
 
+    result.addElement(new Option(
+            "\tNumber of execution slots.\n"
+                    + "\t(default 1 - i.e. no parallelism)\n"
+                    + "\t(use 0 to auto-detect number of cores)",
+            "num-slots", 1, "-num-slots <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     result.addElement(new Option(
@@ -1772,6 +1978,11 @@ public class SMO
     Full name of calibration model, followed by options.
     (default: "weka.classifiers.functions.Logistic")</pre>
    
+   <pre> -num-slots &lt;num&gt;
+    Number of execution slots.
+    (default 1 - i.e. no parallelism)
+    (use 0 to auto-detect number of cores)</pre>
+   
    <pre> -output-debug-info
     If set, classifier is run in debug mode and
     may output additional info to the console</pre>
@@ -1800,6 +2011,11 @@ public class SMO
     -1 to turn it off.
     (default: 250007)</pre>
    
+   <pre> -row-cache &lt;num&gt;
+    The memory for caching whole rows of the kernel matrix
+    in megabytes, replaces the cache above if &gt; 0.
+    (default: 0)</pre>
+   
    <pre> -output-debug-info
     Enables debugging output (if available) to be printed.
     (default: off)</pre>
@@ -1900,6 +2116,12 @@ public class SMO
     }
     setCalibrator(AbstractClassifier.forName(classifierName, classifierSpec));
 
+    tmpStr = Utils.getOption("num-slots", options);
+    if (tmpStr.length() != 0)
+      setNumExecutionSlots(Integer.parseInt(tmpStr));
+    else
+      setNumExecutionSlots(1);
+
     super.setOptions(options);
   }
 
@@ -1943,6 +2165,11 @@ public class SMO
     result.add(getCalibrator().getClass().getName() + " "
             + Utils.joinOptions(((OptionHandler)getCalibrator()).getOptions()));
 
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+
     Collections.addAll(result, super.getOptions());
     
     return (String[]) result.toArray(new String[result.size()]);	  
@@ -2239,6 +2466,39 @@ public class SMO
     
     m_randomSeed = newrandomSeed;
   }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for training the "
+      + "pairwise machines. The cache of the kernel is divided between "
+      + "the machines trained at the same time. Use 0 to auto-detect the "
+      + "number of cores.";
+  }
+
+  /**
+   * Get the number of execution slots.
+   *
+   * @return the number of slots, 0 for one per core
+   */
+  public int getNumExecutionSlots() {
+
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Set the number of execution slots (threads) to train the pairwise
+   * machines with.
+   *
+   * @param value the number of slots, 0 for one per core
+   */
+  public void setNumExecutionSlots(int value) {
+
+    m_numExecutionSlots = value;
+  }
   
   /**
    * Prints out the classifier.
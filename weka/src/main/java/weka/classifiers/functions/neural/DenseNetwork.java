@@ -0,0 +1,568 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    DenseNetwork.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.functions.neural;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Trains a network of neural nodes that are arranged in fully connected
+ * layers, as set up by the MultilayerPerceptron, without going through the
+ * node objects. The weights of each layer are packed into a single matrix
+ * with one row per node, holding the threshold followed by the weights of
+ * the node's inputs, and the outputs and errors of a layer are computed with
+ * plain loops over these rows.
+ * <p/>
+ *
+ * The computations are the same as the ones of the nodes, in the same order,
+ * so updating the weights after every instance gives exactly the same network
+ * as training the nodes themselves. With mini-batches, the updates of several
+ * instances are computed with the same weights and added up, and the
+ * instances of a mini-batch can be split into blocks that are processed by
+ * separate threads. The updates of the blocks are added up in the order of
+ * the blocks, so the result only depends on the number of blocks.
+ *
+ * @version $Revision$
+ */
+public class DenseNetwork implements RevisionHandler {
+
+  /** the nodes of each layer, without the inputs */
+  protected NeuralNode[][] m_Nodes;
+
+  /** the number of units in each layer, starting with the inputs */
+  protected int[] m_LayerSizes;
+
+  /** the weights of each layer, row by row, with the threshold first */
+  protected double[][] m_Weights;
+
+  /** the last change of each weight, for the momentum */
+  protected double[][] m_Changes;
+
+  /** whether the nodes of the last layer are linear units */
+  protected boolean m_LinearOutputs;
+
+  /** the factor that scales the outputs to the range of the targets */
+  protected double m_OutputScale = 1;
+
+  /** the value that is added to the scaled outputs */
+  protected double m_OutputShift = 0;
+
+  /** the threads that process the blocks of a mini-batch, null for none */
+  protected ExecutorService m_Executor;
+
+  /** the number of blocks a mini-batch is split into */
+  protected int m_NumBlocks = 1;
+
+  /** the buffers of each block */
+  protected Workspace[] m_Workspaces = new Workspace[0];
+
+  /**
+   * The buffers used for processing one block of instances.
+   */
+  protected class Workspace {
+
+    /** the outputs of each layer, starting with the inputs */
+    protected double[][] m_Values;
+
+    /** the errors of the nodes of each layer */
+    protected double[][] m_Errors;
+
+    /** the sum of the weight updates of the block */
+    protected double[][] m_Updates;
+
+    /**
+     * Allocates the buffers for the network.
+     */
+    protected Workspace() {
+
+      int numLayers = m_Weights.length;
+      m_Values = new double[numLayers + 1][];
+      m_Errors = new double[numLayers][];
+      m_Updates = new double[numLayers][];
+      for (int l = 0; l < numLayers; l++) {
+        m_Values[l + 1] = new double[m_LayerSizes[l + 1]];
+        m_Errors[l] = new double[m_LayerSizes[l + 1]];
+        m_Updates[l] = new double[m_Weights[l].length];
+      }
+    }
+  }
+
+  /**
+   * Creates a network for the given layers of nodes. The weights are not
+   * loaded yet.
+   *
+   * @param numInputs the number of inputs
+   * @param nodes the nodes of each layer, the output nodes last
+   * @param linearOutputs whether the output nodes are linear units
+   */
+  protected DenseNetwork(int numInputs, NeuralNode[][] nodes,
+    boolean linearOutputs) {
+
+    m_Nodes = nodes;
+    m_LinearOutputs = linearOutputs;
+    m_LayerSizes = new int[nodes.length + 1];
+    m_LayerSizes[0] = numInputs;
+    m_Weights = new double[nodes.length][];
+    m_Changes = new double[nodes.length][];
+    for (int l = 0; l < nodes.length; l++) {
+      m_LayerSizes[l + 1] = nodes[l].length;
+      m_Weights[l] = new double[nodes[l].length * (m_LayerSizes[l] + 1)];
+      m_Changes[l] = new double[m_Weights[l].length];
+    }
+  }
+
+  /**
+   * Creates a network for the nodes that lead to the given output nodes, if
+   * the nodes form fully connected layers. That is, all nodes of a layer are
+   * connected to all nodes of the previous layer, in the same order, and to
+   * nothing else, the first layer is connected to the given inputs, and each
+   * output node feeds a single unit that only depends on that node. The
+   * output nodes may be linear units, all other nodes must be sigmoid units.
+   *
+   * @param inputs the units that provide the inputs of the network
+   * @param outputs the output nodes
+   * @return the network, null if the nodes are not arranged in fully
+   *         connected layers
+   */
+  public static DenseNetwork create(NeuralConnection[] inputs,
+    NeuralConnection[] outputs) {
+
+    if ((inputs.length == 0) || (outputs.length == 0)) {
+      return null;
+    }
+    IdentityHashMap<NeuralConnection, Boolean> seen =
+      new IdentityHashMap<NeuralConnection, Boolean>();
+    List<NeuralNode[]> layers = new ArrayList<NeuralNode[]>();
+    NeuralConnection[] layer = outputs;
+    NeuralConnection[] next = null;
+    boolean linearOutputs = false;
+    while (layer != inputs) {
+      NeuralNode[] nodes = new NeuralNode[layer.length];
+      NeuralConnection[] previous = null;
+      for (int j = 0; j < layer.length; j++) {
+        if (!(layer[j] instanceof NeuralNode) || (seen.put(layer[j], true) != null)) {
+          return null;
+        }
+        nodes[j] = (NeuralNode) layer[j];
+
+        // the kind of unit
+        NeuralMethod method = nodes[j].getMethod();
+        if ((next == null) && (j == 0)) {
+          linearOutputs = method instanceof LinearUnit;
+        }
+        if ((next == null) && linearOutputs) {
+          if (!(method instanceof LinearUnit)) {
+            return null;
+          }
+        } else if (!(method instanceof SigmoidUnit)) {
+          return null;
+        }
+
+        // the outputs of the node
+        if (next == null) {
+          if ((nodes[j].getNumOutputs() != 1)
+            || (nodes[j].getOutputs()[0].getNumInputs() != 1)) {
+            return null;
+          }
+        } else {
+          if (nodes[j].getNumOutputs() != next.length) {
+            return null;
+          }
+          for (int k = 0; k < next.length; k++) {
+            if ((nodes[j].getOutputs()[k] != next[k])
+              || (nodes[j].getOutputNums()[k] != j)) {
+              return null;
+            }
+          }
+        }
+
+        // the inputs of the node, which all nodes of the layer must share
+        if (j == 0) {
+          if (sameUnits(nodes[j], inputs)) {
+            previous = inputs;
+          } else {
+            previous = new NeuralConnection[nodes[j].getNumInputs()];
+            System.arraycopy(nodes[j].getInputs(), 0, previous, 0,
+              previous.length);
+          }
+        }
+        if ((previous.length == 0) || !sameUnits(nodes[j], previous)) {
+          return null;
+        }
+      }
+      layers.add(0, nodes);
+      next = layer;
+      layer = previous;
+    }
+
+    return new DenseNetwork(inputs.length,
+      layers.toArray(new NeuralNode[layers.size()][]), linearOutputs);
+  }
+
+  /**
+   * Checks whether the inputs of a node are exactly the given units.
+   *
+   * @param node the node
+   * @param units the units
+   * @return true if the node has the units as inputs, in the same order
+   */
+  protected static boolean sameUnits(NeuralNode node, NeuralConnection[] units) {
+
+    if (node.getNumInputs() != units.length) {
+      return false;
+    }
+    for (int k = 0; k < units.length; k++) {
+      if (node.getInputs()[k] != units[k]) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Returns the number of units in each layer, starting with the inputs and
+   * ending with the outputs.
+   *
+   * @return the sizes of the layers
+   */
+  public int[] getLayerSizes() {
+
+    return m_LayerSizes.clone();
+  }
+
+  /**
+   * Sets how the output of a node is turned into the value that is compared
+   * to the target, which is <code>output * scale + shift</code>. The error of
+   * the output is divided by the scale again, and is 0 if the scale is 0.
+   *
+   * @param scale the factor for the outputs
+   * @param shift the value to add to the scaled outputs
+   */
+  public void setOutputScale(double scale, double shift) {
+
+    m_OutputScale = scale;
+    m_OutputShift = shift;
+  }
+
+  /**
+   * Sets the threads to use for the mini-batches and the number of blocks to
+   * split a mini-batch into. The executor is not shut down by this class.
+   *
+   * @param executor the executor to process the blocks with, null to process
+   *          them one after the other in the calling thread
+   * @param numBlocks the number of blocks
+   */
+  public void setExecutor(ExecutorService executor, int numBlocks) {
+
+    m_Executor = executor;
+    m_NumBlocks = Math.max(1, numBlocks);
+  }
+
+  /**
+   * Copies the weights and their last changes from the nodes.
+   */
+  public void load() {
+
+    for (int l = 0; l < m_Nodes.length; l++) {
+      int stride = m_LayerSizes[l] + 1;
+      for (int j = 0; j < m_Nodes[l].length; j++) {
+        System.arraycopy(m_Nodes[l][j].getWeights(), 0, m_Weights[l], j
+          * stride, stride);
+        System.arraycopy(m_Nodes[l][j].getChangeInWeights(), 0, m_Changes[l],
+          j * stride, stride);
+      }
+    }
+  }
+
+  /**
+   * Copies the weights and their last changes back to the nodes.
+   */
+  public void store() {
+
+    for (int l = 0; l < m_Nodes.length; l++) {
+      int stride = m_LayerSizes[l] + 1;
+      for (int j = 0; j < m_Nodes[l].length; j++) {
+        System.arraycopy(m_Weights[l], j * stride, m_Nodes[l][j].getWeights(),
+          0, stride);
+        System.arraycopy(m_Changes[l], j * stride,
+          m_Nodes[l][j].getChangeInWeights(), 0, stride);
+      }
+    }
+  }
+
+  /**
+   * Returns the buffers of a block, allocating them when first needed.
+   *
+   * @param block the index of the block
+   * @return the buffers
+   */
+  protected synchronized Workspace workspace(int block) {
+
+    if (block >= m_Workspaces.length) {
+      Workspace[] workspaces = new Workspace[block + 1];
+      System.arraycopy(m_Workspaces, 0, workspaces, 0, m_Workspaces.length);
+      m_Workspaces = workspaces;
+    }
+    if (m_Workspaces[block] == null) {
+      m_Workspaces[block] = new Workspace();
+    }
+
+    return m_Workspaces[block];
+  }
+
+  /**
+   * Computes the outputs of all layers for an instance.
+   *
+   * @param input the inputs of the network
+   * @param values the arrays to store the outputs of the layers in, the
+   *          first one is replaced by the inputs
+   */
+  protected void forward(double[] input, double[][] values) {
+
+    values[0] = input;
+    for (int l = 0; l < m_Weights.length; l++) {
+      double[] in = values[l];
+      double[] out = values[l + 1];
+      double[] weights = m_Weights[l];
+      int stride = in.length + 1;
+      boolean linear = m_LinearOutputs && (l == m_Weights.length - 1);
+      for (int j = 0, pos = 0; j < out.length; j++, pos += stride) {
+        double value = weights[pos];
+        for (int k = 0; k < in.length; k++) {
+          value += in[k] * weights[pos + 1 + k];
+        }
+        if (linear) {
+          out[j] = value;
+        } else if (value < -45) {
+          out[j] = 0;
+        } else if (value > 45) {
+          out[j] = 1;
+        } else {
+          out[j] = 1 / (1 + Math.exp(-value));
+        }
+      }
+    }
+  }
+
+  /**
+   * Computes the errors of all nodes, given the outputs of the layers.
+   *
+   * @param target the target values of the outputs
+   * @param values the outputs of the layers
+   * @param errors the arrays to store the errors of the nodes in
+   * @return the sum of the squared errors of the outputs
+   */
+  protected double backward(double[] target, double[][] values,
+    double[][] errors) {
+
+    int last = m_Weights.length - 1;
+    double[] out = values[last + 1];
+    double result = 0;
+    for (int k = 0; k < out.length; k++) {
+      double error;
+      if (m_OutputScale == 0) {
+        error = 0;
+      } else {
+        error = (target[k] - (out[k] * m_OutputScale + m_OutputShift))
+          / m_OutputScale;
+      }
+      result += error * error;
+      if (m_LinearOutputs) {
+        errors[last][k] = error;
+      } else {
+        errors[last][k] = error * (out[k] * (1 - out[k]));
+      }
+    }
+
+    for (int l = last - 1; l >= 0; l--) {
+      double[] value = values[l + 1];
+      double[] nextErrors = errors[l + 1];
+      double[] nextWeights = m_Weights[l + 1];
+      int stride = value.length + 1;
+      for (int j = 0; j < value.length; j++) {
+        double error = 0;
+        for (int k = 0, pos = 1 + j; k < nextErrors.length; k++, pos += stride) {
+          error += nextErrors[k] * nextWeights[pos];
+        }
+        errors[l][j] = error * (value[j] * (1 - value[j]));
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the sum of the squared errors of the outputs for an instance,
+   * with the current weights.
+   *
+   * @param input the inputs of the network
+   * @param target the target values of the outputs
+   * @return the sum of the squared errors
+   */
+  public double squaredError(double[] input, double[] target) {
+
+    Workspace workspace = workspace(0);
+    forward(input, workspace.m_Values);
+
+    return backward(target, workspace.m_Values, workspace.m_Errors);
+  }
+
+  /**
+   * Adds up the weight updates of a range of instances, all computed with
+   * the current weights.
+   *
+   * @param inputs the inputs of the instances
+   * @param targets the targets of the instances
+   * @param rates the learning rate of each instance
+   * @param rows the indices of the instances to process
+   * @param from the first position in the rows to process
+   * @param to the position after the last one to process
+   * @param squaredErrors the array to store the sum of the squared errors of
+   *          each processed instance in, at its position in the rows
+   * @param workspace the buffers to use, with the updates in
+   *          <code>m_Updates</code>
+   */
+  protected void updates(double[][] inputs, double[][] targets,
+    double[] rates, int[] rows, int from, int to, double[] squaredErrors,
+    Workspace workspace) {
+
+    double[][] values = workspace.m_Values;
+    double[][] errors = workspace.m_Errors;
+    double[][] updates = workspace.m_Updates;
+    for (double[] update : updates) {
+      Arrays.fill(update, 0);
+    }
+
+    for (int i = from; i < to; i++) {
+      int row = rows[i];
+      forward(inputs[row], values);
+      squaredErrors[i] = backward(targets[row], values, errors);
+      double rate = rates[row];
+      for (int l = 0; l < updates.length; l++) {
+        double[] in = values[l];
+        double[] update = updates[l];
+        int stride = in.length + 1;
+        for (int j = 0, pos = 0; j < errors[l].length; j++, pos += stride) {
+          double learnTimesError = rate * errors[l][j];
+          update[pos] += learnTimesError;
+          for (int k = 0; k < in.length; k++) {
+            update[pos + 1 + k] += learnTimesError * in[k];
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Trains the network for one pass through the given instances, updating
+   * the weights after each mini-batch. The weights must have been loaded.
+   *
+   * @param inputs the inputs of the instances
+   * @param targets the target values of the outputs for each instance
+   * @param rates the learning rate of each instance
+   * @param rows the indices of the instances to use, in the order to use
+   *          them in
+   * @param batchSize the number of instances per update
+   * @param momentum the momentum
+   * @param squaredErrors the array to store the sum of the squared errors of
+   *          each instance in, at its position in the rows, computed with
+   *          the weights before the instance's update
+   * @throws Exception if a thread fails or gets interrupted
+   */
+  public void train(final double[][] inputs, final double[][] targets,
+    final double[] rates, final int[] rows, int batchSize, double momentum,
+    final double[] squaredErrors) throws Exception {
+
+    batchSize = Math.max(1, batchSize);
+    Workspace first = workspace(0);
+    for (int start = 0; start < rows.length; start += batchSize) {
+      int end = Math.min(start + batchSize, rows.length);
+      int numBlocks = Math.min(m_NumBlocks, end - start);
+      if ((numBlocks == 1) || (m_Executor == null)) {
+        updates(inputs, targets, rates, rows, start, end, squaredErrors, first);
+      } else {
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(numBlocks);
+        for (int b = 0; b < numBlocks; b++) {
+          final int from = start + (int) ((long) b * (end - start) / numBlocks);
+          final int to = start + (int) ((long) (b + 1) * (end - start) / numBlocks);
+          final Workspace workspace = workspace(b);
+          futures.add(m_Executor.submit(new Callable<Object>() {
+            @Override
+            public Object call() {
+              updates(inputs, targets, rates, rows, from, to, squaredErrors,
+                workspace);
+              return null;
+            }
+          }));
+        }
+        for (Future<Object> future : futures) {
+          try {
+            future.get();
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+              throw (Exception) e.getCause();
+            }
+            throw e;
+          }
+        }
+        for (int b = 1; b < numBlocks; b++) {
+          double[][] updates = m_Workspaces[b].m_Updates;
+          for (int l = 0; l < updates.length; l++) {
+            for (int n = 0; n < updates[l].length; n++) {
+              first.m_Updates[l][n] += updates[l][n];
+            }
+          }
+        }
+      }
+
+      for (int l = 0; l < m_Weights.length; l++) {
+        double[] weights = m_Weights[l];
+        double[] changes = m_Changes[l];
+        double[] update = first.m_Updates[l];
+        for (int n = 0; n < weights.length; n++) {
+          double c = update[n] + momentum * changes[n];
+          weights[n] += c;
+          changes[n] = c;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -27,12 +27,14 @@ import java.util.Vector;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
+import weka.core.SparseInstance;
 import weka.core.Utils;
 
 /**
  * Base class for RBFKernel and PolyKernel that implements a simple LRU.
  * (least-recently-used) cache if the cache size is set to a value > 0.
- * Otherwise it uses a full cache.
+ * Otherwise it uses a full cache. Alternatively, whole rows of the kernel
+ * matrix can be cached within a memory budget (see KernelRowCache).
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
  * @author Shane Legg (shane@intelligenesis.net) (sparse vector code)
@@ -68,6 +70,18 @@ public abstract class CachedKernel extends Kernel {
   /** number of cache slots in an entry */
   protected int m_cacheSlots = 4;
 
+  /** The memory for the row cache in megabytes, 0 to use the cache above */
+  protected double m_rowCacheSize = 0;
+
+  /** The row cache, if used */
+  protected KernelRowCache m_rowCache;
+
+  /** The values of the instances in the dataset as dense arrays */
+  protected transient double[][] m_packed;
+
+  /** Whether it has been checked if the dataset can be packed */
+  protected transient boolean m_packedChecked;
+
   /**
    * default constructor - does nothing.
    */
@@ -106,6 +120,11 @@ public abstract class CachedKernel extends Kernel {
           + "\t-1 to turn it off.\n" + "\t(default: 250007)", "C", 1,
         "-C <num>"));
 
+    result.addElement(new Option(
+      "\tThe memory for caching whole rows of the kernel matrix\n"
+        + "\tin megabytes, replaces the cache above if > 0.\n"
+        + "\t(default: 0)", "row-cache", 1, "-row-cache <num>"));
+
     result.addAll(Collections.list(super.listOptions()));
 
     return result.elements();
@@ -129,6 +148,13 @@ public abstract class CachedKernel extends Kernel {
       setCacheSize(250007);
     }
 
+    tmpStr = Utils.getOption("row-cache", options);
+    if (tmpStr.length() != 0) {
+      setRowCacheSize(Double.parseDouble(tmpStr));
+    } else {
+      setRowCacheSize(0);
+    }
+
     super.setOptions(options);
   }
 
@@ -145,6 +171,11 @@ public abstract class CachedKernel extends Kernel {
     result.add("-C");
     result.add("" + getCacheSize());
 
+    if (getRowCacheSize() > 0) {
+      result.add("-row-cache");
+      result.add("" + getRowCacheSize());
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -179,6 +210,10 @@ public abstract class CachedKernel extends Kernel {
     long key = -1;
     int location = -1;
 
+    if ((id1 >= 0) && (m_rowCache != null)) {
+      return evalRow(id1, id2, inst1);
+    }
+
     // we can only cache if we know the indexes and caching is not
     // disabled (m_cacheSize == -1)
     if ((id1 >= 0) && (m_cacheSize != -1)) {
@@ -251,6 +286,56 @@ public abstract class CachedKernel extends Kernel {
     return result;
   }
 
+  /**
+   * Evaluates the kernel using the row cache. The value is looked up in the
+   * row of either instance, as the kernel is symmetric, and stored in both
+   * rows if they are cached. A row for the first instance is only added if
+   * neither row is cached. Like for the full cache, the value is always
+   * computed with the larger index first, because the kernel function may
+   * round differently for the other order and the result must not depend on
+   * which rows happen to be cached.
+   * 
+   * @param id1 the index of the first instance in the dataset
+   * @param id2 the index of the second instance in the dataset
+   * @param inst1 the instance corresponding to id1
+   * @return the result of the kernel function
+   * @throws Exception if something goes wrong
+   */
+  protected double evalRow(int id1, int id2, Instance inst1) throws Exception {
+
+    double[] row = m_rowCache.row(id1);
+    if ((row != null) && !Double.isNaN(row[id2])) {
+      m_cacheHits++;
+      return row[id2];
+    }
+    double[] other = (row == null) ? m_rowCache.row(id2) : m_rowCache.peek(id2);
+    double result;
+    if ((other != null) && !Double.isNaN(other[id1])) {
+      m_cacheHits++;
+      result = other[id1];
+    } else {
+      if (id1 >= id2) {
+        result = evaluate(id1, id2, inst1);
+      } else {
+        result = evaluate(id2, id1, m_data.instance(id2));
+      }
+      m_kernelEvals++;
+      if (other != null) {
+        other[id1] = result;
+      }
+    }
+
+    // only add a row if the value can't be stored in the other one
+    if ((row == null) && (other == null)) {
+      row = m_rowCache.newRow(id1);
+    }
+    if (row != null) {
+      row[id2] = result;
+    }
+
+    return result;
+  }
+
   /**
    * Returns the number of time Eval has been called.
    * 
@@ -279,6 +364,7 @@ public abstract class CachedKernel extends Kernel {
     m_storage = null;
     m_keys = null;
     m_kernelMatrix = null;
+    m_rowCache = null;
   }
 
   /**
@@ -316,6 +402,91 @@ public abstract class CachedKernel extends Kernel {
     return (result);
   }
 
+  /**
+   * Returns the values of the instances in the dataset as dense arrays, which
+   * are faster to compute dot products with than the instances themselves.
+   * The arrays are only created if all instances are dense and all values
+   * finite, so that the dot products are exactly the same as the ones of
+   * dotProd(Instance, Instance), and they are kept until the kernel is built
+   * on a different dataset.
+   * 
+   * @return the arrays, null if the dataset can't be packed
+   */
+  protected double[][] packedData() {
+
+    if (!m_packedChecked) {
+      double[][] packed = new double[m_data.numInstances()][];
+      int classIndex = m_data.classIndex();
+      for (int i = 0; (packed != null) && (i < packed.length); i++) {
+        Instance inst = m_data.instance(i);
+        if (inst instanceof SparseInstance) {
+          packed = null;
+          break;
+        }
+        packed[i] = inst.toDoubleArray();
+        for (int j = 0; j < packed[i].length; j++) {
+          if ((j != classIndex) && (Double.isNaN(packed[i][j])
+            || Double.isInfinite(packed[i][j]))) {
+            packed = null;
+            break;
+          }
+        }
+      }
+      m_packed = packed;
+      m_packedChecked = true;
+    }
+
+    return m_packed;
+  }
+
+  /**
+   * Calculates a dot product between two instances given as dense arrays,
+   * skipping the class attribute.
+   * 
+   * @param values1 the values of the first instance
+   * @param values2 the values of the second instance
+   * @return the dot product of the two instances.
+   */
+  protected final double dotProd(double[] values1, double[] values2) {
+
+    double result = 0;
+    int classIndex = m_data.classIndex();
+    int end = (classIndex < 0) ? values1.length : classIndex;
+    for (int i = 0; i < end; i++) {
+      result += values1[i] * values2[i];
+    }
+    for (int i = end + 1; i < values1.length; i++) {
+      result += values1[i] * values2[i];
+    }
+
+    return result;
+  }
+
+  /**
+   * Calculates a dot product between an instance and an instance of the
+   * dataset, using the dense arrays if the first instance is the one of the
+   * dataset at the given index.
+   * 
+   * @param id1 the index of the first instance, -1 if it is not part of the
+   *          dataset
+   * @param inst1 the first instance
+   * @param id2 the index of the second instance
+   * @return the dot product of the two instances.
+   * @throws Exception if an error occurs
+   */
+  protected final double dotProd(int id1, Instance inst1, int id2)
+    throws Exception {
+
+    if ((id1 >= 0) && (inst1 == m_data.instance(id1))) {
+      double[][] packed = packedData();
+      if (packed != null) {
+        return dotProd(packed[id1], packed[id2]);
+      }
+    }
+
+    return dotProd(inst1, m_data.instance(id2));
+  }
+
   /**
    * Sets the size of the cache to use (a prime number)
    * 
@@ -350,6 +521,52 @@ public abstract class CachedKernel extends Kernel {
     return "The size of the cache (a prime number), 0 for full cache and -1 to turn it off.";
   }
 
+  /**
+   * Sets the memory for caching rows of the kernel matrix.
+   * 
+   * @param value the memory in megabytes, 0 to use the cache of individual
+   *          values instead
+   */
+  public void setRowCacheSize(double value) {
+    if (value >= 0) {
+      m_rowCacheSize = value;
+      clean();
+    } else {
+      System.out.println("Row cache size cannot be negative (provided: "
+        + value + ")!");
+    }
+  }
+
+  /**
+   * Gets the memory for caching rows of the kernel matrix.
+   * 
+   * @return the memory in megabytes
+   */
+  public double getRowCacheSize() {
+    return m_rowCacheSize;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String rowCacheSizeTipText() {
+    return "The memory in megabytes for caching whole rows of the kernel matrix, "
+      + "least recently used rows are discarded first. If > 0, this replaces "
+      + "the cache given by the cache size.";
+  }
+
+  /**
+   * Returns the row cache in use.
+   * 
+   * @return the row cache, null if rows are not cached
+   */
+  public KernelRowCache getRowCache() {
+    return m_rowCache;
+  }
+
   /**
    * initializes variables etc.
    * 
@@ -362,8 +579,18 @@ public abstract class CachedKernel extends Kernel {
     m_kernelEvals = 0;
     m_cacheHits = 0;
     m_numInsts = m_data.numInstances();
-
-    if (getCacheSize() > 0) {
+    m_packed = null;
+    m_packedChecked = false;
+
+    m_rowCache = null;
+    if (getRowCacheSize() > 0) {
+      // Cache rows within the given memory
+      m_rowCache = new KernelRowCache(m_numInsts,
+        (long) (getRowCacheSize() * 1024 * 1024));
+      m_storage = null;
+      m_keys = null;
+      m_kernelMatrix = null;
+    } else if (getCacheSize() > 0) {
       // Use LRU cache
       m_storage = new double[m_cacheSize * m_cacheSlots];
       m_keys = new long[m_cacheSize * m_cacheSlots];
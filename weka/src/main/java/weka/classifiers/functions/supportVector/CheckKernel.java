@@ -187,6 +187,13 @@ import weka.core.WeightedInstancesHandler;
  * </pre>
  * 
  * <pre>
+ * -row-cache &lt;num&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  in megabytes, replaces the cache above if &gt; 0.
+ *  (default: 0)
+ * </pre>
+ * 
+ * <pre>
  * -G &lt;num&gt;
  *  The Gamma parameter.
  *  (default: 0.01)
@@ -330,6 +337,13 @@ public class CheckKernel extends CheckScheme {
    * </pre>
    * 
    * <pre>
+   * -row-cache &lt;num&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  in megabytes, replaces the cache above if &gt; 0.
+   *  (default: 0)
+   * </pre>
+   * 
+   * <pre>
    * -G &lt;num&gt;
    *  The Gamma parameter.
    *  (default: 0.01)
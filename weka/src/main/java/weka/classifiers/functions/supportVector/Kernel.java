@@ -96,6 +96,29 @@ public abstract class Kernel implements Serializable, OptionHandler,
   public abstract double eval(int id1, int id2, Instance inst1)
     throws Exception;
 
+  /**
+   * Computes the kernel function between one instance and several instances
+   * of the dataset, e.g., the support vectors of a machine. This
+   * implementation calls eval for each of them, kernels can override it to
+   * share work between the evaluations.
+   * 
+   * @param id1 the index of the first instance in the dataset, -1 if it is
+   *          not part of the dataset
+   * @param inst1 the first instance
+   * @param ids the indices of the other instances in the dataset
+   * @param numIds the number of indices to use
+   * @param result the array to store the values in, in the order of the
+   *          indices
+   * @throws Exception if something goes wrong
+   */
+  public void evalRow(int id1, Instance inst1, int[] ids, int numIds,
+    double[] result) throws Exception {
+
+    for (int k = 0; k < numIds; k++) {
+      result[k] = eval(id1, ids[k], inst1);
+    }
+  }
+
   /**
    * Frees the memory used by the kernel. (Useful with kernels which use cache.)
    * This function is called when the training is done. i.e. after that, eval
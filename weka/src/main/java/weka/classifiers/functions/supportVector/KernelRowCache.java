@@ -0,0 +1,258 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    KernelRowCache.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.functions.supportVector;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Caches rows of a kernel matrix within a memory budget. The entries of a row
+ * are NaN until they are filled in, so only the columns an optimizer actually
+ * visits, typically its active set, are ever evaluated.
+ * <p>
+ *
+ * Rows are discarded in least recently used order, but the cache is split
+ * into two segments so that a single pass over all rows, as in the loops of
+ * SMO that examine every instance, does not flush the rows that are used
+ * over and over again: new rows enter a probationary segment and are only
+ * moved to the protected segment once they are used again.
+ *
+ * @version $Revision$
+ */
+public class KernelRowCache
+  implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2730587740359432118L;
+
+  /** the approximate number of bytes used by a row besides its values */
+  protected static final int ROW_OVERHEAD = 16;
+
+  /** the fraction of the rows that may be in the protected segment */
+  protected static final double PROTECTED_FRACTION = 0.75;
+
+  /** the cached rows, null if not cached */
+  protected double[][] m_Rows;
+
+  /** the previous (more recently used) row in its segment, -1 for none */
+  protected int[] m_Prev;
+
+  /** the next (less recently used) row in its segment, -1 for none */
+  protected int[] m_Next;
+
+  /** whether a row is in the protected segment */
+  protected boolean[] m_Protected;
+
+  /** the most recently used row of each segment (probationary, protected) */
+  protected int[] m_Head = { -1, -1 };
+
+  /** the least recently used row of each segment */
+  protected int[] m_Tail = { -1, -1 };
+
+  /** the number of rows in each segment */
+  protected int[] m_Size = new int[2];
+
+  /** the maximum number of rows that fit into the budget */
+  protected int m_MaxRows;
+
+  /** the maximum number of rows in the protected segment */
+  protected int m_MaxProtected;
+
+  /** the number of rows discarded so far */
+  protected int m_NumEvictions;
+
+  /**
+   * Creates an empty cache for a square kernel matrix.
+   *
+   * @param numInstances the number of rows and columns of the matrix
+   * @param maxBytes the memory budget in bytes
+   */
+  public KernelRowCache(int numInstances, long maxBytes) {
+
+    m_Rows = new double[numInstances][];
+    m_Prev = new int[numInstances];
+    m_Next = new int[numInstances];
+    m_Protected = new boolean[numInstances];
+    long rowBytes = 8L * numInstances + ROW_OVERHEAD;
+    m_MaxRows = (int) Math.min(numInstances, maxBytes / rowBytes);
+    m_MaxProtected = (int) (m_MaxRows * PROTECTED_FRACTION);
+  }
+
+  /**
+   * Returns the cached row and marks it as the most recently used one,
+   * moving it to the protected segment.
+   *
+   * @param index the index of the row
+   * @return the row, null if it is not cached
+   */
+  public double[] row(int index) {
+
+    double[] result = m_Rows[index];
+    if ((result != null) && (m_Head[1] != index)) {
+      unlink(index);
+      if (!m_Protected[index] && (m_Size[1] >= m_MaxProtected)) {
+        // make room by demoting the least recently used protected row
+        int last = m_Tail[1];
+        if (last != -1) {
+          unlink(last);
+          m_Protected[last] = false;
+          linkFirst(last);
+        }
+      }
+      m_Protected[index] = m_MaxProtected > 0;
+      linkFirst(index);
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the cached row without changing the order of the rows.
+   *
+   * @param index the index of the row
+   * @return the row, null if it is not cached
+   */
+  public double[] peek(int index) {
+
+    return m_Rows[index];
+  }
+
+  /**
+   * Adds an empty row to the probationary segment of the cache, discarding
+   * the least recently used rows if necessary.
+   *
+   * @param index the index of the row, which must not be cached yet
+   * @return the new row with all entries NaN, null if the budget does not
+   *         allow for a single row
+   */
+  public double[] newRow(int index) {
+
+    if (m_MaxRows == 0) {
+      return null;
+    }
+
+    double[] result;
+    if (m_Size[0] + m_Size[1] < m_MaxRows) {
+      result = new double[m_Rows.length];
+    } else {
+      // reuse the array of the least recently used row
+      int last = (m_Tail[0] != -1) ? m_Tail[0] : m_Tail[1];
+      unlink(last);
+      result = m_Rows[last];
+      m_Rows[last] = null;
+      m_NumEvictions++;
+    }
+    Arrays.fill(result, Double.NaN);
+    m_Rows[index] = result;
+    m_Protected[index] = false;
+    linkFirst(index);
+
+    return result;
+  }
+
+  /**
+   * Removes a row from the list of its segment.
+   *
+   * @param index the index of the row
+   */
+  protected void unlink(int index) {
+
+    int segment = m_Protected[index] ? 1 : 0;
+    int prev = m_Prev[index];
+    int next = m_Next[index];
+    if (prev == -1) {
+      m_Head[segment] = next;
+    } else {
+      m_Next[prev] = next;
+    }
+    if (next == -1) {
+      m_Tail[segment] = prev;
+    } else {
+      m_Prev[next] = prev;
+    }
+    m_Size[segment]--;
+  }
+
+  /**
+   * Inserts a row at the front of the list of its segment.
+   *
+   * @param index the index of the row
+   */
+  protected void linkFirst(int index) {
+
+    int segment = m_Protected[index] ? 1 : 0;
+    m_Prev[index] = -1;
+    m_Next[index] = m_Head[segment];
+    if (m_Head[segment] != -1) {
+      m_Prev[m_Head[segment]] = index;
+    }
+    m_Head[segment] = index;
+    if (m_Tail[segment] == -1) {
+      m_Tail[segment] = index;
+    }
+    m_Size[segment]++;
+  }
+
+  /**
+   * Returns the maximum number of rows that fit into the budget.
+   *
+   * @return the maximum number of rows
+   */
+  public int maxRows() {
+
+    return m_MaxRows;
+  }
+
+  /**
+   * Returns the number of rows currently cached.
+   *
+   * @return the number of rows
+   */
+  public int numRows() {
+
+    return m_Size[0] + m_Size[1];
+  }
+
+  /**
+   * Returns the number of rows that have been discarded to make room for
+   * others.
+   *
+   * @return the number of discarded rows
+   */
+  public int numEvictions() {
+
+    return m_NumEvictions;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -43,6 +43,11 @@ import weka.core.RevisionUtils;
  *  The size of the cache (a prime number), 0 for full cache and 
  *  -1 to turn it off.
  *  (default: 250007)</pre>
+ *
+ * <pre> -row-cache &lt;num&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  in megabytes, replaces the cache above if &gt; 0.
+ *  (default: 0)</pre>
  * 
  * <pre> -E &lt;num&gt;
  *  The Exponent to use.
@@ -136,11 +141,10 @@ public class NormalizedPolyKernel
   @Override
   protected double evaluate(int id1, int id2, Instance inst1) throws Exception {
 
-    double result;
     if (id1 == id2) {
       return 1.0;
     } else {
-      double numerator = dotProd(inst1, m_data.instance(id2));
+      double numerator = dotProd(id1, inst1, id2);
 
       double denom1, denom2;
       if (m_diagDotproducts != null) {
@@ -155,18 +159,33 @@ public class NormalizedPolyKernel
         denom2 = dotProd(m_data.instance(id2), m_data.instance(id2));
       }
 
-      // Use lower order terms?
-      if (m_lowerOrder) {
-        numerator += 1.0;
-        denom1 += 1.0;
-        denom2 += 1.0;
-      }
-      double denominatorSquared = denom1 * denom2;
-      if (denominatorSquared <= 0) {
-        result = 0;
-      } else {
-        result = numerator / Math.sqrt(denominatorSquared);
-      }
+      return normalize(numerator, denom1, denom2);
+    }
+  }
+
+  /**
+   * Turns the dot products into the value of the kernel function.
+   * 
+   * @param numerator the dot product of the two instances
+   * @param denom1 the dot product of the first instance with itself
+   * @param denom2 the dot product of the second instance with itself
+   * @return the value of the kernel function
+   */
+  protected double normalize(double numerator, double denom1, double denom2) {
+
+    double result;
+
+    // Use lower order terms?
+    if (m_lowerOrder) {
+      numerator += 1.0;
+      denom1 += 1.0;
+      denom2 += 1.0;
+    }
+    double denominatorSquared = denom1 * denom2;
+    if (denominatorSquared <= 0) {
+      result = 0;
+    } else {
+      result = numerator / Math.sqrt(denominatorSquared);
     }
 
     if (m_exponent != 1.0) {
@@ -174,6 +193,42 @@ public class NormalizedPolyKernel
     }
     return result;
   }
+
+  /**
+   * Computes the kernel function between one instance and several instances
+   * of the dataset. The dot product of an instance that is not part of the
+   * dataset with itself is only computed once.
+   * 
+   * @param id1 the index of the first instance in the dataset, -1 if it is
+   *          not part of the dataset
+   * @param inst1 the first instance
+   * @param ids the indices of the other instances in the dataset
+   * @param numIds the number of indices to use
+   * @param result the array to store the values in
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void evalRow(int id1, Instance inst1, int[] ids, int numIds,
+    double[] result) throws Exception {
+
+    double[][] packed = packedData();
+    if ((id1 >= 0) || (packed == null)) {
+      for (int k = 0; k < numIds; k++) {
+        result[k] = eval(id1, ids[k], inst1);
+      }
+      return;
+    }
+
+    double[] values1 = inst1.toDoubleArray();
+    double denom1 = dotProd(values1, values1);
+    double[] diag = m_diagDotproducts;
+    for (int k = 0; k < numIds; k++) {
+      double[] values2 = packed[ids[k]];
+      double denom2 = (diag != null) ? diag[ids[k]] : dotProd(values2, values2);
+      result[k] = normalize(dotProd(values1, values2), denom1, denom2);
+    }
+    m_kernelEvals += numIds;
+  }
   
   /**
    * returns a string representation for the Kernel
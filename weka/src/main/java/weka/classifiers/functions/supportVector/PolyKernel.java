@@ -56,6 +56,13 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -row-cache &lt;num&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  in megabytes, replaces the cache above if &gt; 0.
+ *  (default: 0)
+ * </pre>
+ * 
+ * <pre>
  * -E &lt;num&gt;
  *  The Exponent to use.
  *  (default: 1.0)
@@ -165,6 +172,13 @@ public class PolyKernel extends CachedKernel {
    * </pre>
    * 
    * <pre>
+   * -row-cache &lt;num&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  in megabytes, replaces the cache above if &gt; 0.
+   *  (default: 0)
+   * </pre>
+   * 
+   * <pre>
    * -E &lt;num&gt;
    *  The Exponent to use.
    *  (default: 1.0)
@@ -234,8 +248,20 @@ public class PolyKernel extends CachedKernel {
     if (id1 == id2) {
       result = dotProd(inst1, inst1);
     } else {
-      result = dotProd(inst1, m_data.instance(id2));
+      result = dotProd(id1, inst1, id2);
     }
+    return polynomial(result);
+  }
+
+  /**
+   * Turns a dot product into the value of the kernel function.
+   * 
+   * @param dotProduct the dot product
+   * @return the value of the kernel function
+   */
+  protected double polynomial(double dotProduct) {
+
+    double result = dotProduct;
     // Use lower order terms?
     if (m_lowerOrder) {
       result += 1.0;
@@ -246,6 +272,36 @@ public class PolyKernel extends CachedKernel {
     return result;
   }
 
+  /**
+   * Computes the kernel function between one instance and several instances
+   * of the dataset. An instance that is not part of the dataset is converted
+   * to a dense array once for all of them.
+   * 
+   * @param id1 the index of the first instance in the dataset, -1 if it is
+   *          not part of the dataset
+   * @param inst1 the first instance
+   * @param ids the indices of the other instances in the dataset
+   * @param numIds the number of indices to use
+   * @param result the array to store the values in
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void evalRow(int id1, Instance inst1, int[] ids, int numIds,
+    double[] result) throws Exception {
+
+    double[][] packed = packedData();
+    if ((id1 >= 0) || (packed == null)) {
+      super.evalRow(id1, inst1, ids, numIds, result);
+      return;
+    }
+
+    double[] values1 = inst1.toDoubleArray();
+    for (int k = 0; k < numIds; k++) {
+      result[k] = polynomial(dotProd(values1, packed[ids[k]]));
+    }
+    m_kernelEvals += numIds;
+  }
+
   /**
    * Returns the Capabilities of this kernel.
    * 
@@ -65,6 +65,13 @@ import weka.core.Utils;
  * </pre>
  * 
  * <pre>
+ * -row-cache &lt;num&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  in megabytes, replaces the cache above if &gt; 0.
+ *  (default: 0)
+ * </pre>
+ * 
+ * <pre>
  * -O &lt;num&gt;
  *  The Omega parameter.
  *  (default: 1.0)
@@ -207,6 +214,13 @@ public class Puk extends CachedKernel implements TechnicalInformationHandler {
    * </pre>
    * 
    * <pre>
+   * -row-cache &lt;num&gt;
+   *  The memory for caching whole rows of the kernel matrix
+   *  in megabytes, replaces the cache above if &gt; 0.
+   *  (default: 0)
+   * </pre>
+   * 
+   * <pre>
    * -O &lt;num&gt;
    *  The Omega parameter.
    *  (default: 1.0)
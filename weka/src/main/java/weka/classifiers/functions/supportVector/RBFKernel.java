@@ -38,6 +38,11 @@ import weka.core.Capabilities.Capability;
  *  -1 to turn it off.
  *  (default: 250007)</pre>
  * 
+ * <pre> -row-cache &lt;num&gt;
+ *  The memory for caching whole rows of the kernel matrix
+ *  in megabytes, replaces the cache above if &gt; 0.
+ *  (default: 0)</pre>
+ * 
  * <pre> -G &lt;double&gt;
  *  The value to use for the gamma parameter (default: 0.01).</pre>
  * 
@@ -137,12 +142,45 @@ public class RBFKernel extends CachedKernel {
         return Math.exp(-m_gamma * (dotProd(inst1, inst1) - 2 * dotProd(inst1, m_data.instance(id2))
                 + m_kernelPrecalc[id2]));
       } else {
-        return Math.exp(-m_gamma * (m_kernelPrecalc[id1] - 2 * dotProd(inst1, m_data.instance(id2))
+        return Math.exp(-m_gamma * (m_kernelPrecalc[id1] - 2 * dotProd(id1, inst1, id2)
                 + m_kernelPrecalc[id2]));
       }
     }
   }
 
+  /**
+   * Computes the kernel function between one instance and several instances
+   * of the dataset. An instance that is not part of the dataset is converted
+   * to a dense array, and its dot product with itself computed, once for all
+   * of them.
+   * 
+   * @param id1 the index of the first instance in the dataset, -1 if it is
+   *          not part of the dataset
+   * @param inst1 the first instance
+   * @param ids the indices of the other instances in the dataset
+   * @param numIds the number of indices to use
+   * @param result the array to store the values in
+   * @throws Exception if something goes wrong
+   */
+  @Override
+  public void evalRow(int id1, Instance inst1, int[] ids, int numIds,
+    double[] result) throws Exception {
+
+    double[][] packed = packedData();
+    if ((id1 >= 0) || (packed == null)) {
+      super.evalRow(id1, inst1, ids, numIds, result);
+      return;
+    }
+
+    double[] values1 = inst1.toDoubleArray();
+    double precalc1 = dotProd(values1, values1);
+    for (int k = 0; k < numIds; k++) {
+      result[k] = Math.exp(-m_gamma * (precalc1 - 2 * dotProd(values1, packed[ids[k]])
+              + m_kernelPrecalc[ids[k]]));
+    }
+    m_kernelEvals += numIds;
+  }
+
   /**
    * Returns the Capabilities of this kernel.
    * 
@@ -465,9 +465,17 @@ public class RegOptimizer implements OptionHandler, Serializable,
         }
       }
     } else {
+      // evaluate the kernel for all support vectors in one go
+      int[] ids = new int[m_supportVectors.numElements()];
+      int numIds = 0;
       for (int i = m_supportVectors.getNext(-1); i != -1; i = m_supportVectors
         .getNext(i)) {
-        result += (m_alpha[i] - m_alphaStar[i]) * m_kernel.eval(-1, i, inst);
+        ids[numIds++] = i;
+      }
+      double[] values = new double[numIds];
+      m_kernel.evalRow(-1, inst, ids, numIds, values);
+      for (int k = 0; k < numIds; k++) {
+        result += (m_alpha[ids[k]] - m_alphaStar[ids[k]]) * values[k];
       }
     }
     return result;
@@ -552,18 +552,13 @@ public class IBk
   }
 
   /**
-   * Calculates the class membership probabilities for the given test instance.
+   * Trims the training instances to the window size, and selects k by
+   * cross-validation if necessary, before predictions are made.
    *
-   * @param instance the instance to be classified
-   * @return predicted class probability distribution
-   * @throws Exception if an error occurred during the prediction
+   * @throws Exception if the neighbour search can't be updated
    */
-  public double [] distributionForInstance(Instance instance) throws Exception {
+  protected void prepareForPrediction() throws Exception {
 
-    if (m_Train.numInstances() == 0) {
-      //throw new Exception("No training instances!");
-      return m_defaultModel.distributionForInstance(instance);
-    }
     if ((m_WindowSize > 0) && (m_Train.numInstances() > m_WindowSize)) {
       m_kNNValid = false;
       boolean deletedInstance=false;
@@ -579,6 +574,22 @@ public class IBk
     if (!m_kNNValid && (m_CrossValidate) && (m_kNNUpper >= 1)) {
       crossValidate();
     }
+  }
+
+  /**
+   * Calculates the class membership probabilities for the given test instance.
+   *
+   * @param instance the instance to be classified
+   * @return predicted class probability distribution
+   * @throws Exception if an error occurred during the prediction
+   */
+  public double [] distributionForInstance(Instance instance) throws Exception {
+
+    if (m_Train.numInstances() == 0) {
+      //throw new Exception("No training instances!");
+      return m_defaultModel.distributionForInstance(instance);
+    }
+    prepareForPrediction();
 
     m_NNSearch.addInstanceInfo(instance);
 
@@ -589,6 +600,49 @@ public class IBk
     return distribution;
   }
 
+  /**
+   * Returns true, as the neighbours of a batch of instances are searched for
+   * together.
+   *
+   * @return true
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    return true;
+  }
+
+  /**
+   * Calculates the class membership probabilities for a batch of test
+   * instances. The neighbours of all instances are found with one query of
+   * the nearest neighbour search, which may process them together, and the
+   * results are the same as those of distributionForInstance().
+   *
+   * @param batch the instances to be classified
+   * @return predicted class probability distributions
+   * @throws Exception if an error occurred during the prediction
+   */
+  @Override
+  public double[][] distributionsForInstances(Instances batch)
+    throws Exception {
+
+    double[][] result = new double[batch.numInstances()][];
+    if (m_Train.numInstances() == 0) {
+      for (int i = 0; i < batch.numInstances(); i++) {
+        result[i] = m_defaultModel.distributionForInstance(batch.instance(i));
+      }
+      return result;
+    }
+    prepareForPrediction();
+
+    Instances[] neighbours = m_NNSearch.kNearestNeighbours(batch, m_kNN, true);
+    double[][] distances = m_NNSearch.getBatchDistances();
+    for (int i = 0; i < batch.numInstances(); i++) {
+      result[i] = makeDistribution(neighbours[i], distances[i]);
+    }
+
+    return result;
+  }
+
   /**
    * Returns an enumeration describing the available options.
    *
@@ -926,14 +980,17 @@ public class IBk
       Instance instance;
       Instances neighbours;
       double[] origDistances, convertedDistances;
+      if (m_Debug) {
+	System.err.print("Cross validating "
+			 + m_Train.numInstances() + " instances\r");
+      }
+      // the neighbours of all training instances, each one left out in turn
+      Instances[] allNeighbours = m_NNSearch.kNearestNeighbours(m_Train, m_kNN, false);
+      double[][] allDistances = m_NNSearch.getBatchDistances();
       for(int i = 0; i < m_Train.numInstances(); i++) {
-	if (m_Debug && (i % 50 == 0)) {
-	  System.err.print("Cross validating "
-			   + i + "/" + m_Train.numInstances() + "\r");
-	}
 	instance = m_Train.instance(i);
-	neighbours = m_NNSearch.kNearestNeighbours(instance, m_kNN);
-        origDistances = m_NNSearch.getDistances();
+	neighbours = allNeighbours[i];
+        origDistances = allDistances[i];
         
 	for(int j = m_kNNUpper - 1; j >= 0; j--) {
 	  // Update the performance stats
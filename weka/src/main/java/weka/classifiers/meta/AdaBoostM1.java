@@ -21,14 +21,20 @@
 
 package weka.classifiers.meta;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
-import weka.classifiers.Evaluation;
 import weka.classifiers.RandomizableIteratedSingleClassifierEnhancer;
 import weka.classifiers.Sourcable;
 import weka.classifiers.IterativeClassifier;
@@ -90,6 +96,19 @@ import weka.core.WeightedInstancesHandler;
  * </pre>
  * 
  * <pre>
+ * -represent-copies-using-weights
+ *  Represent copies of instances using weights rather than explicitly
+ *  when resampling (if the base classifier handles weights).
+ * </pre>
+ * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
+ * <pre>
  * -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)
@@ -142,6 +161,9 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
   /** Max num iterations tried to find classifier with non-zero error. */
   private static int MAX_NUM_RESAMPLING_ITERATIONS = 10;
 
+  /** The number of instances in a block of the passes over the training data. */
+  protected static final int BLOCK_SIZE = 1024;
+
   /** Array for storing the weights for the votes. */
   protected double[] m_Betas;
 
@@ -157,6 +179,12 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
   /** Use boosting with reweighting? */
   protected boolean m_UseResampling;
 
+  /** Whether to represent copies of instances using weights rather than explicitly */
+  protected boolean m_RepresentUsingWeights = false;
+
+  /** The number of execution slots for the passes over the training data */
+  protected int m_numExecutionSlots = 1;
+
   /** The number of classes */
   protected int m_NumClasses;
 
@@ -290,6 +318,16 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
     newVector.addElement(new Option("\tUse resampling for boosting.", "Q", 0,
       "-Q"));
 
+    newVector.addElement(new Option(
+      "\tRepresent copies of instances using weights rather than explicitly\n"
+        + "\twhen resampling (if the base classifier handles weights).",
+      "represent-copies-using-weights", 0, "-represent-copies-using-weights"));
+
+    newVector.addElement(new Option("\tNumber of execution slots.\n"
+      + "\t(default 1 - i.e. no parallelism)\n"
+      + "\t(use 0 to auto-detect number of cores)", "num-slots", 1,
+      "-num-slots <num>"));
+
     newVector.addElement(new Option("\t" + resumeTipText() + "\n",
       "resume", 0, "-resume"));
 
@@ -317,6 +355,19 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
    * </pre>
    * 
    * <pre>
+   * -represent-copies-using-weights
+   *  Represent copies of instances using weights rather than explicitly
+   *  when resampling (if the base classifier handles weights).
+   * </pre>
+   * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
+   * <pre>
    * -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)
@@ -370,6 +421,16 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
 
     setUseResampling(Utils.getFlag('Q', options));
 
+    setRepresentCopiesUsingWeights(Utils.getFlag("represent-copies-using-weights",
+      options));
+
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
     setResume(Utils.getFlag("resume", options));
 
     super.setOptions(options);
@@ -391,6 +452,15 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
     result.add("-P");
     result.add("" + getWeightThreshold());
 
+    if (getRepresentCopiesUsingWeights()) {
+      result.add("-represent-copies-using-weights");
+    }
+
+    if (getNumExecutionSlots() != 1) {
+      result.add("-num-slots");
+      result.add("" + getNumExecutionSlots());
+    }
+
     if (getResume()) {
       result.add("-resume");
     }
@@ -461,6 +531,73 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
     return m_UseResampling;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String representCopiesUsingWeightsTipText() {
+    return "Whether to represent copies of instances using weights rather than "
+      + "explicitly when resampling (only if the base classifier handles weights).";
+  }
+
+  /**
+   * Set whether copies of instances are represented using weights rather than
+   * explicitly when resampling.
+   * 
+   * @param representUsingWeights whether to represent copies using weights
+   */
+  public void setRepresentCopiesUsingWeights(boolean representUsingWeights) {
+
+    m_RepresentUsingWeights = representUsingWeights;
+  }
+
+  /**
+   * Get whether copies of instances are represented using weights rather than
+   * explicitly when resampling.
+   * 
+   * @return whether copies are represented using weights
+   */
+  public boolean getRepresentCopiesUsingWeights() {
+
+    return m_RepresentUsingWeights;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for classifying and "
+      + "reweighting the training data in each iteration (0 = number of cores). "
+      + "The base classifier must support concurrent predictions.";
+  }
+
+  /**
+   * Set the number of execution slots (threads) to use for the passes over the
+   * training data.
+   * 
+   * @param numSlots the number of slots to use, 0 for the number of cores
+   */
+  public void setNumExecutionSlots(int numSlots) {
+
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Get the number of execution slots (threads) to use for the passes over the
+   * training data.
+   * 
+   * @return the number of slots to use
+   */
+  public int getNumExecutionSlots() {
+
+    return m_numExecutionSlots;
+  }
+
   /**
    * Returns default capabilities of the classifier.
    * 
@@ -586,18 +723,24 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
         + (m_NumIterationsPerformed + 1));
     }
 
-    // Select instances to train the classifier on
+    boolean resample = (m_UseResampling)
+      || (!(m_Classifier instanceof WeightedInstancesHandler));
+
+    // Select instances to train the classifier on (the resampled data are
+    // new instances anyway, so there is no need to copy the training data)
     Instances trainData = null;
     if (m_WeightThreshold < 100) {
       trainData =
         selectWeightQuantile(m_TrainingData, (double) m_WeightThreshold / 100);
+    } else if (resample) {
+      trainData = m_TrainingData;
     } else {
       trainData = new Instances(m_TrainingData);
     }
 
     double epsilon = 0;
-    if ((m_UseResampling)
-      || (!(m_Classifier instanceof WeightedInstancesHandler))) {
+    boolean[] misclassified = new boolean[m_TrainingData.numInstances()];
+    if (resample) {
 
       // Resample
       int resamplingIterations = 0;
@@ -605,16 +748,16 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
       for (int i = 0; i < weights.length; i++) {
         weights[i] = trainData.instance(i).weight();
       }
+      boolean representUsingWeights = m_RepresentUsingWeights
+        && (m_Classifier instanceof WeightedInstancesHandler);
       do {
-        Instances sample =
-          trainData.resampleWithWeights(m_RandomInstance, weights);
+        Instances sample = trainData.resampleWithWeights(m_RandomInstance,
+          weights, null, representUsingWeights);
 
         // Build and evaluate classifier
         m_Classifiers[m_NumIterationsPerformed].buildClassifier(sample);
-        Evaluation evaluation = new Evaluation(m_TrainingData);
-        evaluation.evaluateModel(m_Classifiers[m_NumIterationsPerformed],
-          m_TrainingData);
-        epsilon = evaluation.errorRate();
+        epsilon = errorRate(m_Classifiers[m_NumIterationsPerformed],
+          m_TrainingData, misclassified);
         resamplingIterations++;
       } while (Utils.eq(epsilon, 0)
         && (resamplingIterations < MAX_NUM_RESAMPLING_ITERATIONS));
@@ -628,11 +771,8 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
       m_Classifiers[m_NumIterationsPerformed].buildClassifier(trainData);
 
       // Evaluate the classifier
-      Evaluation evaluation = new Evaluation(m_TrainingData); // Does this need
-                                                              // to be a copy
-      evaluation.evaluateModel(m_Classifiers[m_NumIterationsPerformed],
-        m_TrainingData);
-      epsilon = evaluation.errorRate();
+      epsilon = errorRate(m_Classifiers[m_NumIterationsPerformed],
+        m_TrainingData, misclassified);
     }
 
     // Stop if error too big or 0
@@ -652,7 +792,7 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
     }
 
     // Update instance weights
-    setWeights(m_TrainingData, reweight);
+    setWeights(m_TrainingData, reweight, misclassified);
 
     // Model has been built successfully
     m_NumIterationsPerformed++;
@@ -721,6 +861,112 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
     return m_resume;
   }
 
+  /**
+   * A pass over a block of the training data.
+   */
+  protected abstract static class BlockPass {
+
+    /**
+     * Processes the instances in the given range.
+     * 
+     * @param from the index of the first instance
+     * @param to the index after the last instance
+     * @throws Exception if the instances can't be processed
+     */
+    public abstract void process(int from, int to) throws Exception;
+  }
+
+  /**
+   * Runs a pass over the given number of instances in blocks of BLOCK_SIZE,
+   * spreading the blocks over the execution slots. Passes only do work per
+   * instance; sums over the instances are left to the caller, which adds them
+   * up in the order of the instances, so the models do not depend on the
+   * number of slots.
+   * 
+   * @param pass the pass to run
+   * @param numInstances the number of instances
+   * @throws Exception if the pass fails
+   */
+  protected void runPass(final BlockPass pass, int numInstances)
+    throws Exception {
+
+    int numBlocks = (numInstances + BLOCK_SIZE - 1) / BLOCK_SIZE;
+    int numThreads =
+      (m_numExecutionSlots == 0) ? Runtime.getRuntime().availableProcessors()
+        : m_numExecutionSlots;
+    if ((numThreads < 2) || (numBlocks < 2)) {
+      pass.process(0, numInstances);
+      return;
+    }
+
+    ExecutorService pool =
+      Executors.newFixedThreadPool(Math.min(numThreads, numBlocks));
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>(numBlocks);
+      for (int b = 0; b < numBlocks; b++) {
+        final int from = b * BLOCK_SIZE;
+        final int to = Math.min(numInstances, from + BLOCK_SIZE);
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            pass.process(from, to);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        result.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Computes the weighted error rate of a classifier on the training data and
+   * records which instances it misclassifies. As in Evaluation, instances the
+   * classifier leaves unclassified do not count as errors, but they are
+   * reweighted like misclassified ones.
+   * 
+   * @param classifier the classifier to evaluate
+   * @param data the training instances
+   * @param misclassified receives true for the instances whose class is not
+   *          predicted correctly
+   * @return the weighted error rate
+   * @throws Exception if the instances can't be classified
+   */
+  protected double errorRate(final Classifier classifier, final Instances data,
+    final boolean[] misclassified) throws Exception {
+
+    final boolean[] unclassified = new boolean[data.numInstances()];
+    runPass(new BlockPass() {
+      @Override
+      public void process(int from, int to) throws Exception {
+        for (int i = from; i < to; i++) {
+          Instance instance = data.instance(i);
+          double predicted = classifier.classifyInstance(instance);
+          misclassified[i] = !Utils.eq(predicted, instance.classValue());
+          unclassified[i] = Utils.isMissingValue(predicted);
+        }
+      }
+    }, data.numInstances());
+
+    double incorrect = 0, total = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      double weight = data.instance(i).weight();
+      if (misclassified[i] && !unclassified[i]) {
+        incorrect += weight;
+      }
+      total += weight;
+    }
+    return incorrect / total;
+  }
+
   /**
    * Sets the weights for the next iteration.
    * 
@@ -731,26 +977,49 @@ public class AdaBoostM1 extends RandomizableIteratedSingleClassifierEnhancer
   protected void setWeights(Instances training, double reweight)
     throws Exception {
 
-    double oldSumOfWeights, newSumOfWeights;
+    boolean[] misclassified = new boolean[training.numInstances()];
+    errorRate(m_Classifiers[m_NumIterationsPerformed], training, misclassified);
+    setWeights(training, reweight, misclassified);
+  }
 
-    oldSumOfWeights = training.sumOfWeights();
-    Enumeration<Instance> enu = training.enumerateInstances();
-    while (enu.hasMoreElements()) {
-      Instance instance = enu.nextElement();
-      if (!Utils.eq(
-        m_Classifiers[m_NumIterationsPerformed].classifyInstance(instance),
-        instance.classValue())) {
-        instance.setWeight(instance.weight() * reweight);
+  /**
+   * Sets the weights for the next iteration, given the instances misclassified
+   * by the current classifier.
+   * 
+   * @param training the training instances
+   * @param reweight the reweighting factor
+   * @param misclassified true for the misclassified instances
+   * @throws Exception if something goes wrong
+   */
+  protected void setWeights(final Instances training, final double reweight,
+    final boolean[] misclassified) throws Exception {
+
+    // Reweight the misclassified instances
+    final double oldSumOfWeights = training.sumOfWeights();
+    runPass(new BlockPass() {
+      @Override
+      public void process(int from, int to) {
+        for (int i = from; i < to; i++) {
+          if (misclassified[i]) {
+            Instance instance = training.instance(i);
+            instance.setWeight(instance.weight() * reweight);
+          }
+        }
       }
-    }
+    }, training.numInstances());
 
     // Renormalize weights
-    newSumOfWeights = training.sumOfWeights();
-    enu = training.enumerateInstances();
-    while (enu.hasMoreElements()) {
-      Instance instance = enu.nextElement();
-      instance.setWeight(instance.weight() * oldSumOfWeights / newSumOfWeights);
-    }
+    final double newSumOfWeights = training.sumOfWeights();
+    runPass(new BlockPass() {
+      @Override
+      public void process(int from, int to) {
+        for (int i = from; i < to; i++) {
+          Instance instance = training.instance(i);
+          instance.setWeight(instance.weight() * oldSumOfWeights
+            / newSumOfWeights);
+        }
+      }
+    }, training.numInstances());
   }
 
   /**
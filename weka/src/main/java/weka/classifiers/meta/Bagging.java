@@ -28,6 +28,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import weka.classifiers.Classifier;
+import weka.classifiers.PresortedIndexHandler;
 import weka.classifiers.RandomizableParallelIteratedSingleClassifierEnhancer;
 import weka.classifiers.evaluation.Evaluation;
 import weka.core.*;
@@ -81,6 +82,10 @@ import weka.core.TechnicalInformation.Type;
  *
  * <pre> -represent-copies-using-weights
  *  Represent copies of instances using weights rather than explicitly.</pre>
+ *
+ * <pre> -presort
+ *  Sort the data once and reuse the order in base classifiers
+ *  that support it (requires copies to be represented using weights).</pre>
  * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
@@ -157,6 +162,12 @@ public class Bagging
   /** Whether to represent copies of instances using weights rather than explicitly */
   protected boolean m_RepresentUsingWeights = false;
 
+  /** Whether to pass a presorted index of the data to the base classifiers */
+  protected boolean m_UsePresortedIndex = false;
+
+  /** The presorted index of the data, only kept while building */
+  protected transient PresortedIndex m_PresortedIndex;
+
   /** The evaluation object holding the out of bag error, etc. */
   protected Evaluation m_OutOfBagEvaluationObject = null;
 
@@ -262,6 +273,10 @@ public class Bagging
     newVector.addElement(new Option(
               "\tRepresent copies of instances using weights rather than explicitly.",
               "represent-copies-using-weights", 0, "-represent-copies-using-weights"));
+    newVector.addElement(new Option(
+              "\tSort the data once and reuse the order in base classifiers\n"
+              + "\tthat support it (requires copies to be represented using weights).",
+              "presort", 0, "-presort"));
     newVector.addElement(new Option(
               "\tPrint the individual classifiers in the output", "print", 0, "-print"));
 
@@ -295,6 +310,10 @@ public class Bagging
    *
    * <pre> -represent-copies-using-weights
    *  Represent copies of instances using weights rather than explicitly.</pre>
+   *
+   * <pre> -presort
+   *  Sort the data once and reuse the order in base classifiers
+   *  that support it (requires copies to be represented using weights).</pre>
    * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
@@ -370,6 +389,8 @@ public class Bagging
 
     setRepresentCopiesUsingWeights(Utils.getFlag("represent-copies-using-weights", options));
 
+    setUsePresortedIndex(Utils.getFlag("presort", options));
+
     setPrintClassifiers(Utils.getFlag("print", options));
 
     super.setOptions(options);
@@ -404,6 +425,10 @@ public class Bagging
         options.add("-represent-copies-using-weights");
     }
 
+    if (getUsePresortedIndex()) {
+        options.add("-presort");
+    }
+
     if (getPrintClassifiers()) {
       options.add("-print");
     }
@@ -471,6 +496,36 @@ public class Bagging
     return m_RepresentUsingWeights;
   }
 
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String usePresortedIndexTipText() {
+    return "Whether to sort the data only once and let base classifiers that support it "
+      + "reuse the order for their bags, which requires copies to be represented using weights.";
+  }
+
+  /**
+   * Set whether a presorted index of the data is passed to base classifiers that support it.
+   *
+   * @param usePresortedIndex whether to use a presorted index
+   */
+  public void setUsePresortedIndex(boolean usePresortedIndex) {
+
+    m_UsePresortedIndex = usePresortedIndex;
+  }
+
+  /**
+   * Get whether a presorted index of the data is passed to base classifiers that support it.
+   *
+   * @return whether a presorted index is used
+   */
+  public boolean getUsePresortedIndex() {
+
+    return m_UsePresortedIndex;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -657,6 +712,54 @@ public class Bagging
     }
   }
 
+  /**
+   * Returns the weights of the instances in the bag for a particular
+   * iteration, i.e., the number of times each instance was drawn. The bag is
+   * the same as the training set returned by getTrainingSet() when copies are
+   * represented using weights.
+   *
+   * @param iteration the number of the iteration for the requested bag
+   * @return the weight of each training instance in the bag
+   * @throws Exception if something goes wrong
+   */
+  protected synchronized double[] getBagWeights(int iteration) throws Exception {
+
+    Random r = new Random(m_Seed + iteration);
+
+    // create the in-bag indicator array if necessary
+    boolean[] sampled = null;
+    if (m_CalcOutOfBag) {
+      m_inBag[iteration] = new boolean[m_data.numInstances()];
+      sampled = m_inBag[iteration];
+    }
+    int[] counts = m_data.resampleCounts(r, sampled, m_BagSizePercent);
+
+    double[] weights = new double[counts.length];
+    for (int i = 0; i < counts.length; i++) {
+      weights[i] = counts[i];
+    }
+    return weights;
+  }
+
+  /**
+   * Builds the classifier of a particular iteration. If a presorted index is
+   * used, the base classifier is trained on the index with the weights of
+   * the bag instead of a copy of the data.
+   *
+   * @param iteration the number of the iteration
+   * @throws Exception if something goes wrong during the training process
+   */
+  @Override
+  protected void buildClassifier(int iteration) throws Exception {
+
+    if (m_PresortedIndex == null) {
+      super.buildClassifier(iteration);
+    } else {
+      ((PresortedIndexHandler) m_Classifiers[iteration]).buildClassifier(
+        m_PresortedIndex, getBagWeights(iteration));
+    }
+  }
+
   /**
    * Returns the out-of-bag evaluation object.
    *
@@ -686,6 +789,10 @@ public class Bagging
               "base learner in bagging does not implement " +
               "WeightedInstancesHandler.");
     }
+    if (getUsePresortedIndex() && !getRepresentCopiesUsingWeights()) {
+      throw new IllegalArgumentException("Cannot use a presorted index unless " +
+              "copies of instances are represented using weights.");
+    }
 
     // get fresh Instances object
     m_data = new Instances(data);
@@ -706,7 +813,15 @@ public class Bagging
 
     m_Numeric = m_data.classAttribute().isNumeric();
 
-    buildClassifiers();
+    m_PresortedIndex = null;
+    if (getUsePresortedIndex() && (m_Classifier instanceof PresortedIndexHandler)) {
+      m_PresortedIndex = new PresortedIndex(m_data);
+    }
+    try {
+      buildClassifiers();
+    } finally {
+      m_PresortedIndex = null;
+    }
 
     // calc OOB error?
     if (getCalcOutOfBag()) {
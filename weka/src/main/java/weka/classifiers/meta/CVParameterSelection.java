@@ -22,14 +22,15 @@
 package weka.classifiers.meta;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
-import weka.classifiers.Evaluation;
 import weka.classifiers.RandomizableSingleClassifierEnhancer;
 import weka.core.Capabilities;
 import weka.core.Drawable;
@@ -76,6 +77,16 @@ import weka.core.Utils;
  * <pre> -X &lt;number of folds&gt;
  *  Number of folds used for cross validation (default 10).</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)</pre>
+ * 
+ * <pre> -race &lt;significance level&gt;
+ *  Significance level for eliminating parameter settings that
+ *  are significantly worse than the best one early.
+ *  (default 0 - i.e. evaluate all settings on all folds)</pre>
+ * 
  * <pre> -P &lt;classifier parameter&gt;
  *  Classifier parameter options.
  *  eg: "N 1 5 10" Sets an optimisation parameter for the
@@ -274,6 +285,16 @@ public class CVParameterSelection
   /** The number of folds used in cross-validation */
   protected int m_NumFolds = 10;
 
+  /** The number of execution slots for evaluating the parameter settings */
+  protected int m_numExecutionSlots = 1;
+
+  /** The significance level for eliminating settings early, 0 for no racing */
+  protected double m_RacingSignificanceLevel = 0;
+
+  /** The number of folds each setting was evaluated on before it was
+   * eliminated, -1 if it was not eliminated */
+  protected int[] m_EliminatedAfter;
+
   /**
    * Create the options array to pass to the classifier. The parameter
    * values and positions are taken from m_ClassifierOptions and
@@ -318,17 +339,13 @@ public class CVParameterSelection
   }
 
   /**
-   * Finds the best parameter combination. (recursive for each parameter
-   * being optimised).
+   * Adds the options for all points of the parameter grid (recursive for
+   * each parameter being optimised).
    * 
-   * @param depth the index of the parameter to be optimised at this level
-   * @param trainData the data the search is based on
-   * @param random a random number generator
-   * @throws Exception if an error occurs
+   * @param depth the index of the parameter to be varied at this level
+   * @param grid receives the options for the points of the grid
    */
-  protected void findParamsByCrossValidation(int depth, Instances trainData,
-					     Random random)
-    throws Exception {
+  protected void addGridOptions(int depth, List<String[]> grid) {
 
     if (depth < m_CVParams.size()) {
       CVParameter cvParam = (CVParameter) m_CVParams.elementAt(depth);
@@ -349,47 +366,64 @@ public class CVParameterSelection
       for (cvParam.m_ParamValue = cvParam.m_Lower;
            cvParam.m_ParamValue <= upper;
            cvParam.m_ParamValue += increment) {
-        findParamsByCrossValidation(depth + 1, trainData, random);
+        addGridOptions(depth + 1, grid);
       }
     } else {
+      grid.add(createOptions());
+    }
+  }
+
+  /**
+   * Finds the best parameter combination. All points of the grid are
+   * cross-validated on the same folds, using the execution slots to evaluate
+   * several points at once. If racing is enabled, points that are
+   * significantly worse than the best one so far are dropped before all
+   * folds have been evaluated.
+   * 
+   * @param depth the index of the first parameter to be optimised
+   * @param trainData the data the search is based on
+   * @param random a random number generator
+   * @throws Exception if an error occurs
+   */
+  protected void findParamsByCrossValidation(int depth, Instances trainData,
+					     Random random)
+    throws Exception {
 
-      Evaluation evaluation = new Evaluation(trainData);
+    List<String[]> grid = new ArrayList<String[]>();
+    addGridOptions(depth, grid);
 
-      // Work with a copy of the base classifier in case the base classifier does not initialize itself properly
-      Classifier copiedClassifier = AbstractClassifier.makeCopy(m_Classifier);
+    // Work with copies of the base classifier in case the base classifier does not initialize itself properly
+    Classifier[] candidates = new Classifier[grid.size()];
+    for (int i = 0; i < candidates.length; i++) {
+      candidates[i] = AbstractClassifier.makeCopy(m_Classifier);
+      ((OptionHandler) candidates[i]).setOptions(grid.get(i).clone());
+    }
 
-      // Set the classifier options
-      String[] options = createOptions();
-      if (m_Debug) {
-        System.err.print("Setting options for "
-                + copiedClassifier.getClass().getName() + ":");
-        for (int i = 0; i < options.length; i++) {
-          System.err.print(" " + options[i]);
+    CrossValidationRace race = new CrossValidationRace(trainData, m_NumFolds);
+    race.setNumExecutionSlots(m_numExecutionSlots);
+    race.setSignificanceLevel(m_RacingSignificanceLevel);
+    int best = race.race(candidates);
+    m_EliminatedAfter = new int[candidates.length];
+    for (int i = 0; i < candidates.length; i++) {
+      m_EliminatedAfter[i] = race.eliminatedAfter(i);
+    }
+    if (m_Debug) {
+      for (int i = 0; i < candidates.length; i++) {
+        System.err.println("Options for " + m_Classifier.getClass().getName()
+                + ": " + Utils.joinOptions(grid.get(i)));
+        if (race.eliminatedAfter(i) >= 0) {
+          System.err.println("Eliminated after " + race.eliminatedAfter(i)
+                  + " folds");
+        } else {
+          System.err.println("Cross-validated error rate: "
+                  + Utils.doubleToString(race.errorRate(i), 6, 4));
         }
-        System.err.println("");
-      }
-      ((OptionHandler) copiedClassifier).setOptions(options);
-      for (int j = 0; j < m_NumFolds; j++) {
-
-        // We want to randomize the data the same way for every 
-        // learning scheme.
-        Instances train = trainData.trainCV(m_NumFolds, j, new Random(1));
-        Instances test = trainData.testCV(m_NumFolds, j);
-        copiedClassifier.buildClassifier(train);
-        evaluation.setPriors(train);
-        evaluation.evaluateModel(copiedClassifier, test);
-      }
-      double error = evaluation.errorRate();
-      if (m_Debug) {
-        System.err.println("Cross-validated error rate: "
-                + Utils.doubleToString(error, 6, 4));
-      }
-      if ((m_BestPerformance == -99) || (error < m_BestPerformance)) {
-
-        m_BestPerformance = error;
-        m_BestClassifierOptions = createOptions();
       }
     }
+    if (best >= 0) {
+      m_BestPerformance = race.errorRate(best);
+      m_BestClassifierOptions = grid.get(best);
+    }
   }
 
   /**
@@ -436,6 +470,16 @@ public class CVParameterSelection
     newVector.addElement(new Option(
 	      "\tNumber of folds used for cross validation (default 10).",
 	      "X", 1, "-X <number of folds>"));
+    newVector.addElement(new Option(
+	      "\tNumber of execution slots.\n"
+	      + "\t(default 1 - i.e. no parallelism)\n"
+	      + "\t(use 0 to auto-detect number of cores)",
+	      "num-slots", 1, "-num-slots <num>"));
+    newVector.addElement(new Option(
+	      "\tSignificance level for eliminating parameter settings that\n"
+	      + "\tare significantly worse than the best one early.\n"
+	      + "\t(default 0 - i.e. evaluate all settings on all folds)",
+	      "race", 1, "-race <significance level>"));
     newVector.addElement(new Option(
 	      "\tClassifier parameter options.\n"
 	      + "\teg: \"N 1 5 10\" Sets an optimisation parameter for the\n"
@@ -463,6 +507,16 @@ public class CVParameterSelection
    * <pre> -X &lt;number of folds&gt;
    *  Number of folds used for cross validation (default 10).</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)</pre>
+   * 
+   * <pre> -race &lt;significance level&gt;
+   *  Significance level for eliminating parameter settings that
+   *  are significantly worse than the best one early.
+   *  (default 0 - i.e. evaluate all settings on all folds)</pre>
+   * 
    * <pre> -P &lt;classifier parameter&gt;
    *  Classifier parameter options.
    *  eg: "N 1 5 10" Sets an optimisation parameter for the
@@ -510,6 +564,20 @@ public class CVParameterSelection
       setNumFolds(10);
     }
 
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    String race = Utils.getOption("race", options);
+    if (race.length() != 0) {
+      setRacingSignificanceLevel(Double.parseDouble(race));
+    } else {
+      setRacingSignificanceLevel(0);
+    }
+
     String cvParam;
     m_CVParams = new Vector<CVParameter>();
     do {
@@ -535,6 +603,12 @@ public class CVParameterSelection
       options.add("-P"); options.add("" + getCVParameter(i));
     }
     options.add("-X"); options.add("" + getNumFolds());
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots"); options.add("" + getNumExecutionSlots());
+    }
+    if (getRacingSignificanceLevel() > 0) {
+      options.add("-race"); options.add("" + getRacingSignificanceLevel());
+    }
 
     Collections.addAll(options, super.getOptions());
     
@@ -584,6 +658,7 @@ public class CVParameterSelection
     }
     m_InitOptions = ((OptionHandler)m_Classifier).getOptions();
     m_BestPerformance = -99;
+    m_EliminatedAfter = null;
     m_NumAttributes = trainData.numAttributes();
     Random random = new Random(m_Seed);
     trainData.randomize(random);
@@ -744,6 +819,68 @@ public class CVParameterSelection
     }
     m_NumFolds = numFolds;
   }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for evaluating "
+      + "the parameter settings (0 = number of cores).";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use for evaluating the
+   * parameter settings.
+   *
+   * @param numSlots the number of slots, 0 for the number of cores
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use for evaluating the
+   * parameter settings.
+   *
+   * @return the number of slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String racingSignificanceLevelTipText() {
+    return "The significance level of the corrected resampled t-test used to "
+      + "stop evaluating parameter settings that are significantly worse than "
+      + "the best one after a few folds (0 = evaluate all settings on all folds).";
+  }
+
+  /**
+   * Sets the significance level for eliminating parameter settings early.
+   *
+   * @param level the significance level, 0 for no racing
+   * @throws IllegalArgumentException if the level is neither 0 nor between 0
+   *           and 1
+   */
+  public void setRacingSignificanceLevel(double level) {
+    CrossValidationRace.checkSignificanceLevel(level);
+    m_RacingSignificanceLevel = level;
+  }
+
+  /**
+   * Gets the significance level for eliminating parameter settings early.
+   *
+   * @return the significance level
+   */
+  public double getRacingSignificanceLevel() {
+    return m_RacingSignificanceLevel;
+  }
  
   /**
    *  Returns the type of graph this classifier
@@ -0,0 +1,387 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    CrossValidationRace.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.meta;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.classifiers.Evaluation;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.SubsetInstances;
+import weka.core.Utils;
+import weka.experiment.PairedStatsCorrected;
+
+/**
+ * Cross-validates a set of candidate classifiers on the same folds to select
+ * the best one. Each fold is set up once as a view onto the data and shared by
+ * all candidates, and the candidates are evaluated on each fold concurrently. If a significance
+ * level is set, candidates whose error rates on the folds so far are
+ * significantly worse than the ones of the current leader (according to the
+ * corrected resampled t-test) are eliminated from the race. With fewer than
+ * two folds, the candidates are trained and evaluated on the full data.
+ * Each candidate is trained on a copy of the given classifier for every fold,
+ * so the candidates themselves are left untouched.<p/>
+ *
+ * The result does not depend on the number of execution slots, and without
+ * racing each candidate is evaluated exactly as by a sequential
+ * cross-validation with the data randomized by <code>new Random(1)</code>.
+ *
+ * @version $Revision$
+ */
+public class CrossValidationRace implements RevisionHandler {
+
+  /** The number of folds that need to be evaluated before eliminating candidates */
+  public static final int MIN_FOLDS = 3;
+
+  /** A view of the data the folds are taken from */
+  protected Instances m_Data;
+
+  /** The number of folds, less than two for no folds */
+  protected int m_NumFolds;
+
+  /** The number of threads to use */
+  protected int m_NumExecutionSlots = 1;
+
+  /** The significance level for eliminating candidates, 0 for no racing */
+  protected double m_SignificanceLevel = 0;
+
+  /** The evaluations of the candidates of the last race */
+  protected Evaluation[] m_Evaluations;
+
+  /** The error rates of the candidates on the individual folds */
+  protected double[][] m_FoldErrors;
+
+  /** The fold after which a candidate was eliminated, or -1 */
+  protected int[] m_Eliminated;
+
+  /**
+   * Sets up the race. The folds are views onto the data that are only
+   * created when they are evaluated.
+   *
+   * @param data the data, randomized and stratified if necessary
+   * @param numFolds the number of folds, less than two to train and evaluate
+   *          on the full data
+   */
+  public CrossValidationRace(Instances data, int numFolds) {
+
+    m_Data = new SubsetInstances(data);
+    m_NumFolds = numFolds;
+  }
+
+  /**
+   * Sets the number of execution slots (threads) used to evaluate the
+   * candidates.
+   *
+   * @param numSlots the number of slots, 0 for the number of cores
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_NumExecutionSlots = numSlots;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) used to evaluate the
+   * candidates.
+   *
+   * @return the number of slots
+   */
+  public int getNumExecutionSlots() {
+    return m_NumExecutionSlots;
+  }
+
+  /**
+   * Sets the significance level for eliminating candidates.
+   *
+   * @param level the significance level, 0 to evaluate all candidates on all
+   *          folds
+   * @throws IllegalArgumentException if the level is neither 0 nor between 0
+   *           and 1
+   */
+  public void setSignificanceLevel(double level) {
+    checkSignificanceLevel(level);
+    m_SignificanceLevel = level;
+  }
+
+  /**
+   * Checks that a significance level is 0, for no racing, or strictly between
+   * 0 and 1.
+   *
+   * @param level the significance level
+   * @throws IllegalArgumentException if the level is not valid
+   */
+  public static void checkSignificanceLevel(double level) {
+    if (!((level == 0) || ((level > 0) && (level < 1)))) {
+      throw new IllegalArgumentException("Significance level must be 0 (no "
+        + "racing) or between 0 and 1: " + level);
+    }
+  }
+
+  /**
+   * Gets the significance level for eliminating candidates.
+   *
+   * @return the significance level
+   */
+  public double getSignificanceLevel() {
+    return m_SignificanceLevel;
+  }
+
+  /**
+   * Returns the number of folds.
+   *
+   * @return the number of folds
+   */
+  public int numFolds() {
+    return (m_NumFolds > 1) ? m_NumFolds : 1;
+  }
+
+  /**
+   * Evaluates the candidates and returns the index of the one with the lowest
+   * error rate among the ones that were not eliminated (the first one in case
+   * of ties).
+   *
+   * @param candidates the candidate classifiers
+   * @return the index of the best candidate
+   * @throws Exception if a candidate can't be trained or evaluated
+   */
+  public int race(final Classifier[] candidates) throws Exception {
+
+    int numCandidates = candidates.length;
+    m_Evaluations = new Evaluation[numCandidates];
+    m_FoldErrors = new double[numCandidates][numFolds()];
+    m_Eliminated = new int[numCandidates];
+    for (int i = 0; i < numCandidates; i++) {
+      m_Evaluations[i] = new Evaluation(m_Data);
+      m_Eliminated[i] = -1;
+    }
+
+    int numThreads =
+      (m_NumExecutionSlots == 0) ? Runtime.getRuntime().availableProcessors()
+        : m_NumExecutionSlots;
+    ExecutorService pool = null;
+    if ((numThreads > 1) && (numCandidates > 1)) {
+      pool = Executors.newFixedThreadPool(Math.min(numThreads, numCandidates));
+    }
+    try {
+      for (int j = 0; j < numFolds(); j++) {
+        final int fold = j;
+        final Instances train, test;
+        if (numFolds() > 1) {
+
+          // We want to randomize the data the same way for every
+          // learning scheme.
+          train = m_Data.trainCV(numFolds(), j, new Random(1));
+          test = m_Data.testCV(numFolds(), j);
+        } else {
+          train = m_Data;
+          test = m_Data;
+        }
+        List<Future<Void>> results = new ArrayList<Future<Void>>();
+        for (int i = 0; i < numCandidates; i++) {
+          if (m_Eliminated[i] >= 0) {
+            continue;
+          }
+          final int candidate = i;
+          Callable<Void> task = new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              evaluate(candidates[candidate], candidate, fold, train, test);
+              return null;
+            }
+          };
+          if (pool == null) {
+            task.call();
+          } else {
+            results.add(pool.submit(task));
+          }
+        }
+        for (Future<Void> result : results) {
+          result.get();
+        }
+
+        if ((m_SignificanceLevel > 0) && (j + 1 >= MIN_FOLDS)
+          && (j + 1 < numFolds())) {
+          eliminate(j + 1);
+        }
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
+      }
+    }
+
+    int best = -1;
+    for (int i = 0; i < numCandidates; i++) {
+      if ((m_Eliminated[i] < 0)
+        && ((best < 0) || (errorRate(i) < errorRate(best)))) {
+        best = i;
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Trains a copy of a candidate on the training set of a fold and evaluates
+   * it on the test set.
+   *
+   * @param template the candidate
+   * @param candidate the index of the candidate
+   * @param fold the index of the fold
+   * @param train the training set of the fold
+   * @param test the test set of the fold
+   * @throws Exception if the candidate can't be trained or evaluated
+   */
+  protected void evaluate(Classifier template, int candidate, int fold,
+    Instances train, Instances test) throws Exception {
+
+    Evaluation evaluation = m_Evaluations[candidate];
+    Classifier classifier = AbstractClassifier.makeCopy(template);
+    classifier.buildClassifier(train);
+    if (numFolds() > 1) {
+      evaluation.setPriors(train);
+    }
+    double[] predictions = evaluation.evaluateModel(classifier, test);
+    m_FoldErrors[candidate][fold] = foldError(test, predictions);
+  }
+
+  /**
+   * Computes the error rate on the test set of a fold from the predictions,
+   * in the same way as Evaluation.errorRate().
+   *
+   * @param test the test instances
+   * @param predictions the predictions for the test instances
+   * @return the error rate
+   */
+  protected double foldError(Instances test, double[] predictions) {
+
+    boolean nominal = test.classAttribute().isNominal();
+    double error = 0, weight = 0;
+    for (int i = 0; i < predictions.length; i++) {
+      Instance instance = test.instance(i);
+      if (instance.classIsMissing()) {
+        continue;
+      }
+      if (Utils.isMissingValue(predictions[i])) {
+        if (nominal) {
+          weight += instance.weight();
+        }
+      } else {
+        double diff = predictions[i] - instance.classValue();
+        if (nominal) {
+          error += (diff != 0) ? instance.weight() : 0;
+        } else {
+          error += instance.weight() * diff * diff;
+        }
+        weight += instance.weight();
+      }
+    }
+    return nominal ? error / weight : Math.sqrt(error / weight);
+  }
+
+  /**
+   * Eliminates the candidates that are significantly worse than the one with
+   * the lowest mean error rate on the folds evaluated so far.
+   *
+   * @param numFolds the number of folds evaluated so far
+   */
+  protected void eliminate(int numFolds) {
+
+    int leader = -1;
+    double leaderError = Double.NaN;
+    for (int i = 0; i < m_FoldErrors.length; i++) {
+      if (m_Eliminated[i] >= 0) {
+        continue;
+      }
+      double error = Utils.sum(m_FoldErrors[i]) / numFolds;
+      if ((leader < 0) || (error < leaderError)) {
+        leader = i;
+        leaderError = error;
+      }
+    }
+    if (Double.isNaN(leaderError)) {
+      return;
+    }
+
+    // a fold tests on 1/k of the data and trains on the remaining (k-1)/k
+    double testTrainRatio = 1.0 / (numFolds() - 1);
+    for (int i = 0; i < m_FoldErrors.length; i++) {
+      if ((i == leader) || (m_Eliminated[i] >= 0)) {
+        continue;
+      }
+      PairedStatsCorrected stats =
+        new PairedStatsCorrected(m_SignificanceLevel, testTrainRatio);
+      for (int j = 0; j < numFolds; j++) {
+        stats.add(m_FoldErrors[i][j], m_FoldErrors[leader][j]);
+      }
+      stats.calculateDerived();
+      if (stats.differencesSignificance > 0) {
+        m_Eliminated[i] = numFolds;
+      }
+    }
+  }
+
+  /**
+   * Returns the cross-validated error rate of a candidate of the last race,
+   * on the folds it was evaluated on.
+   *
+   * @param candidate the index of the candidate
+   * @return the error rate
+   */
+  public double errorRate(int candidate) {
+    return m_Evaluations[candidate].errorRate();
+  }
+
+  /**
+   * Returns the number of folds a candidate of the last race was evaluated on
+   * before it was eliminated.
+   *
+   * @param candidate the index of the candidate
+   * @return the number of folds, or -1 if the candidate was not eliminated
+   */
+  public int eliminatedAfter(int candidate) {
+    return m_Eliminated[candidate];
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
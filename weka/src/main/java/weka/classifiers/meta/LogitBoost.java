@@ -25,10 +25,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.Vector;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
@@ -814,7 +816,9 @@ public class LogitBoost extends RandomizableIteratedSingleClassifierEnhancer
    */
   public String poolSizeTipText() {
 
-    return "The size of the thread pool, for example, the number of cores in the CPU.";
+    return "The size of the thread pool, for example, the number of cores in the CPU. "
+      + "Also used to fit the models for the classes and to update the scores "
+      + "of the training instances in parallel.";
   }
 
   /**
@@ -1091,7 +1095,11 @@ public class LogitBoost extends RandomizableIteratedSingleClassifierEnhancer
   }
 
   /**
-   * Performs one boosting iteration.
+   * Performs one boosting iteration. If the thread pool has more than one
+   * thread, the base classifiers for the classes are fitted concurrently and
+   * the F scores are updated for blocks of instances in parallel. Resampling
+   * always draws the samples for the classes in order, so the models do not
+   * depend on the size of the pool.
    *
    * @param trainYs class values
    * @param trainFs F scores
@@ -1100,87 +1108,222 @@ public class LogitBoost extends RandomizableIteratedSingleClassifierEnhancer
    * @param origSumOfWeights the original sum of weights
    * @throws Exception in case base classifiers run into problems
    */
-  private void performIteration(double[][] trainYs, double[][] trainFs,
-    double[][] probs, Instances data, double origSumOfWeights) throws Exception {
+  private void performIteration(final double[][] trainYs,
+    final double[][] trainFs, final double[][] probs, final Instances data,
+    final double origSumOfWeights) throws Exception {
 
     if (m_Debug) {
       System.err.println("Training classifier " + (m_NumGenerated + 1));
     }
 
     // Make space for classifiers
-    Classifier[] classifiers = new Classifier[m_NumClasses];
+    final Classifier[] classifiers = new Classifier[m_NumClasses];
 
-    // Build the new models
-    for (int j = 0; j < m_NumClasses; j++) {
-      if (m_Debug) {
-        System.err.println("\t...for class " + (j + 1) + " ("
-          + m_ClassAttribute.name() + "=" + m_ClassAttribute.value(j) + ")");
-      }
-
-      // Make copy because we want to save the weights
-      Instances boostData = new Instances(data);
+    // Don't actually need to build the other model in the two-class case
+    int numModels = (m_NumClasses == 2) ? 1 : m_NumClasses;
 
-      // Set instance pseudoclass and weights
-      for (int i = 0; i < probs.length; i++) {
+    ExecutorService pool =
+      (m_poolSize > 1) ? Executors.newFixedThreadPool(m_poolSize) : null;
+    try {
 
-        // Compute response and weight
-        double p = probs[i][j];
-        double z, actual = trainYs[i][j];
-        if (actual == 1 - m_Offset) {
-          z = 1.0 / p;
-          if (z > m_zMax) { // threshold
-            z = m_zMax;
-          }
-        } else {
-          z = -1.0 / (1.0 - p);
-          if (z < -m_zMax) { // threshold
-            z = -m_zMax;
-          }
+      // Build the new models
+      if ((pool == null) || (numModels == 1)) {
+        for (int j = 0; j < numModels; j++) {
+          printClass(j);
+          Instances trainData =
+            sample(boostData(j, trainYs, probs, data, origSumOfWeights));
+          classifiers[j] = AbstractClassifier.makeCopy(m_Classifier);
+          classifiers[j].buildClassifier(trainData);
+        }
+      } else {
+        List<Future<Instances>> classData =
+          new ArrayList<Future<Instances>>(numModels);
+        for (int j = 0; j < numModels; j++) {
+          printClass(j);
+          final int classIndex = j;
+          classData.add(pool.submit(new Callable<Instances>() {
+            @Override
+            public Instances call() throws Exception {
+              return boostData(classIndex, trainYs, probs, data,
+                origSumOfWeights);
+            }
+          }));
+        }
+        List<Future<Void>> fits = new ArrayList<Future<Void>>(numModels);
+        for (int j = 0; j < numModels; j++) {
+          final Instances trainData = sample(get(classData.get(j)));
+          final int classIndex = j;
+          fits.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              Classifier classifier = AbstractClassifier.makeCopy(m_Classifier);
+              classifier.buildClassifier(trainData);
+              classifiers[classIndex] = classifier;
+              return null;
+            }
+          }));
         }
-        double w = (actual - p) / z;
+        for (Future<Void> fit : fits) {
+          get(fit);
+        }
+      }
+      m_Classifiers.add(classifiers);
+      m_NumItsPerformed++;
 
-        // Set values for instance
-        Instance current = boostData.instance(i);
-        current.setValue(boostData.classIndex(), z);
-        current.setWeight(current.weight() * w);
+      // Evaluate / increment trainFs from the classifier
+      if (pool == null) {
+        updateFs(classifiers, data, trainFs, probs, 0, trainFs.length);
+      } else {
+        int chunksize = trainFs.length / m_poolSize;
+        List<Future<Void>> results = new ArrayList<Future<Void>>(m_poolSize);
+        for (int t = 0; t < m_poolSize; t++) {
+          final int lo = t * chunksize;
+          final int hi = (t < m_poolSize - 1) ? (lo + chunksize) : trainFs.length;
+          results.add(pool.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+              updateFs(classifiers, data, trainFs, probs, lo, hi);
+              return null;
+            }
+          }));
+        }
+        for (Future<Void> result : results) {
+          get(result);
+        }
+      }
+      m_NumGenerated = m_Classifiers.size();
+    } finally {
+      if (pool != null) {
+        pool.shutdownNow();
       }
+    }
+  }
 
-      // Scale the weights (helps with some base learners)
-      double sumOfWeights = boostData.sumOfWeights();
-      double scalingFactor = (double) origSumOfWeights / sumOfWeights;
-      for (int i = 0; i < probs.length; i++) {
-        Instance current = boostData.instance(i);
-        current.setWeight(current.weight() * scalingFactor);
+  /**
+   * Outputs the class a model is built for in debug mode.
+   *
+   * @param j the index of the class
+   */
+  private void printClass(int j) {
+
+    if (m_Debug) {
+      System.err.println("\t...for class " + (j + 1) + " ("
+        + m_ClassAttribute.name() + "=" + m_ClassAttribute.value(j) + ")");
+    }
+  }
+
+  /**
+   * Waits for a task and passes on the exception it threw, if any.
+   *
+   * @param future the task
+   * @return the result of the task
+   * @throws Exception if the task failed
+   */
+  private static <T> T get(Future<T> future) throws Exception {
+
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
       }
+      throw e;
+    }
+  }
 
-      // Select instances to train the classifier on
-      Instances trainData = boostData;
-      if (m_WeightThreshold < 100) {
-        trainData =
-          selectWeightQuantile(boostData, (double) m_WeightThreshold / 100);
+  /**
+   * Sets up the data for fitting the model for one class, with the working
+   * responses as class values and the corresponding weights, and selects
+   * the instances to train on if weight thresholding is used.
+   *
+   * @param j the index of the class
+   * @param trainYs class values
+   * @param probs probabilities
+   * @param data the data to run the iteration on
+   * @param origSumOfWeights the original sum of weights
+   * @return the data for the class
+   */
+  private Instances boostData(int j, double[][] trainYs, double[][] probs,
+    Instances data, double origSumOfWeights) {
+
+    // Make copy because we want to save the weights
+    Instances boostData = new Instances(data);
+
+    // Set instance pseudoclass and weights
+    for (int i = 0; i < probs.length; i++) {
+
+      // Compute response and weight
+      double p = probs[i][j];
+      double z, actual = trainYs[i][j];
+      if (actual == 1 - m_Offset) {
+        z = 1.0 / p;
+        if (z > m_zMax) { // threshold
+          z = m_zMax;
+        }
       } else {
-        if (m_UseResampling) {
-          double[] weights = new double[boostData.numInstances()];
-          for (int kk = 0; kk < weights.length; kk++) {
-            weights[kk] = boostData.instance(kk).weight();
-          }
-          trainData = boostData.resampleWithWeights(m_RandomInstance, weights);
+        z = -1.0 / (1.0 - p);
+        if (z < -m_zMax) { // threshold
+          z = -m_zMax;
         }
       }
+      double w = (actual - p) / z;
 
-      // Build the classifier
-      classifiers[j] = AbstractClassifier.makeCopy(m_Classifier);
-      classifiers[j].buildClassifier(trainData);
-      if (m_NumClasses == 2) {
-        break; // Don't actually need to build the other model in the two-class
-               // case
-      }
+      // Set values for instance
+      Instance current = boostData.instance(i);
+      current.setValue(boostData.classIndex(), z);
+      current.setWeight(current.weight() * w);
+    }
+
+    // Scale the weights (helps with some base learners)
+    double sumOfWeights = boostData.sumOfWeights();
+    double scalingFactor = (double) origSumOfWeights / sumOfWeights;
+    for (int i = 0; i < probs.length; i++) {
+      Instance current = boostData.instance(i);
+      current.setWeight(current.weight() * scalingFactor);
+    }
+
+    // Select instances to train the classifier on
+    if (m_WeightThreshold < 100) {
+      return selectWeightQuantile(boostData, (double) m_WeightThreshold / 100);
+    }
+    return boostData;
+  }
+
+  /**
+   * Resamples the data for a class according to its weights if resampling is
+   * used (and weight thresholding is not).
+   *
+   * @param boostData the data for the class
+   * @return the data to train the classifier on
+   */
+  private Instances sample(Instances boostData) {
+
+    if ((m_WeightThreshold < 100) || !m_UseResampling) {
+      return boostData;
+    }
+    double[] weights = new double[boostData.numInstances()];
+    for (int kk = 0; kk < weights.length; kk++) {
+      weights[kk] = boostData.instance(kk).weight();
     }
-    m_Classifiers.add(classifiers);
-    m_NumItsPerformed ++;
+    return boostData.resampleWithWeights(m_RandomInstance, weights);
+  }
+
+  /**
+   * Adds the predictions of the new models to the F scores of a range of
+   * training instances, and updates their probabilities.
+   *
+   * @param classifiers the models of the iteration
+   * @param data the data to run the iteration on
+   * @param trainFs F scores
+   * @param probs probabilities
+   * @param from the index of the first instance
+   * @param to the index after the last instance
+   * @throws Exception if a model predicts a missing value
+   */
+  private void updateFs(Classifier[] classifiers, Instances data,
+    double[][] trainFs, double[][] probs, int from, int to) throws Exception {
 
-    // Evaluate / increment trainFs from the classifier
-    for (int i = 0; i < trainFs.length; i++) {
+    for (int i = from; i < to; i++) {
       double[] pred = new double[m_NumClasses];
       double predSum = 0;
       for (int j = 0; j < m_NumClasses; j++) {
@@ -1199,11 +1342,8 @@ public class LogitBoost extends RandomizableIteratedSingleClassifierEnhancer
       for (int j = 0; j < m_NumClasses; j++) {
         trainFs[i][j] += (pred[j] - predSum) * (m_NumClasses - 1) / m_NumClasses;
       }
-    }
-    m_NumGenerated = m_Classifiers.size();
 
-    // Compute the current probability estimates
-    for (int i = 0; i < trainYs.length; i++) {
+      // Compute the current probability estimates
       probs[i] = probs(trainFs[i]);
     }
   }
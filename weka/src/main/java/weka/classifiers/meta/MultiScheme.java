@@ -27,7 +27,6 @@ import java.util.Random;
 import java.util.Vector;
 
 import weka.classifiers.Classifier;
-import weka.classifiers.Evaluation;
 import weka.classifiers.RandomizableMultipleClassifiersCombiner;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -50,6 +49,16 @@ import weka.core.Utils;
  *  given number of folds. (default 0, is to
  *  use training error)</pre>
  * 
+ * <pre> -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)</pre>
+ * 
+ * <pre> -race &lt;significance level&gt;
+ *  Significance level for eliminating schemes that are
+ *  significantly worse than the best one early.
+ *  (default 0 - i.e. evaluate all schemes on all folds)</pre>
+ * 
  * <pre> -S &lt;num&gt;
  *  Random number seed.
  *  (default 1)</pre>
@@ -85,6 +94,16 @@ public class MultiScheme
    * error for selection)
    */
   protected int m_NumXValFolds;
+
+  /** The number of execution slots for evaluating the schemes */
+  protected int m_numExecutionSlots = 1;
+
+  /** The significance level for eliminating schemes early, 0 for no racing */
+  protected double m_RacingSignificanceLevel = 0;
+
+  /** The number of folds each scheme was evaluated on before it was
+   * eliminated, -1 if it was not eliminated */
+  protected int[] m_EliminatedAfter;
     
   /**
    * Returns a string describing classifier
@@ -112,6 +131,16 @@ public class MultiScheme
 	      + "\tgiven number of folds. (default 0, is to\n"
 	      + "\tuse training error)",
 	      "X", 1, "-X <number of folds>"));
+    newVector.addElement(new Option(
+	      "\tNumber of execution slots.\n"
+	      + "\t(default 1 - i.e. no parallelism)\n"
+	      + "\t(use 0 to auto-detect number of cores)",
+	      "num-slots", 1, "-num-slots <num>"));
+    newVector.addElement(new Option(
+	      "\tSignificance level for eliminating schemes that are\n"
+	      + "\tsignificantly worse than the best one early.\n"
+	      + "\t(default 0 - i.e. evaluate all schemes on all folds)",
+	      "race", 1, "-race <significance level>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
     
@@ -129,6 +158,16 @@ public class MultiScheme
    *  given number of folds. (default 0, is to
    *  use training error)</pre>
    * 
+   * <pre> -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)</pre>
+   * 
+   * <pre> -race &lt;significance level&gt;
+   *  Significance level for eliminating schemes that are
+   *  significantly worse than the best one early.
+   *  (default 0 - i.e. evaluate all schemes on all folds)</pre>
+   * 
    * <pre> -S &lt;num&gt;
    *  Random number seed.
    *  (default 1)</pre>
@@ -155,6 +194,20 @@ public class MultiScheme
     } else {
       setNumFolds(0);
     }
+
+    String slots = Utils.getOption("num-slots", options);
+    if (slots.length() != 0) {
+      setNumExecutionSlots(Integer.parseInt(slots));
+    } else {
+      setNumExecutionSlots(1);
+    }
+
+    String race = Utils.getOption("race", options);
+    if (race.length() != 0) {
+      setRacingSignificanceLevel(Double.parseDouble(race));
+    } else {
+      setRacingSignificanceLevel(0);
+    }
     super.setOptions(options);
   }
 
@@ -166,16 +219,19 @@ public class MultiScheme
   public String [] getOptions() {
 
 
-    String [] superOptions = super.getOptions();
-    String [] options = new String [superOptions.length + 2];
+    Vector<String> options = new Vector<String>();
 
-    int current = 0;
-    options[current++] = "-X"; options[current++] = "" + getNumFolds();
+    options.add("-X"); options.add("" + getNumFolds());
+    if (getNumExecutionSlots() != 1) {
+      options.add("-num-slots"); options.add("" + getNumExecutionSlots());
+    }
+    if (getRacingSignificanceLevel() > 0) {
+      options.add("-race"); options.add("" + getRacingSignificanceLevel());
+    }
 
-    System.arraycopy(superOptions, 0, options, current, 
-		     superOptions.length);
+    Collections.addAll(options, super.getOptions());
 
-    return options;
+    return options.toArray(new String[0]);
   }
   
   /**
@@ -302,6 +358,68 @@ public class MultiScheme
     m_NumXValFolds = numFolds;
   }
   
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for evaluating "
+      + "the schemes (0 = number of cores).";
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use for evaluating the
+   * schemes.
+   *
+   * @param numSlots the number of slots, 0 for the number of cores
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
+  /**
+   * Gets the number of execution slots (threads) to use for evaluating the
+   * schemes.
+   *
+   * @return the number of slots
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * @return tip text for this property suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String racingSignificanceLevelTipText() {
+    return "The significance level of the corrected resampled t-test used to "
+      + "stop cross-validating schemes that are significantly worse than the "
+      + "best one after a few folds (0 = evaluate all schemes on all folds).";
+  }
+
+  /**
+   * Sets the significance level for eliminating schemes early.
+   *
+   * @param level the significance level, 0 for no racing
+   * @throws IllegalArgumentException if the level is neither 0 nor between 0
+   *           and 1
+   */
+  public void setRacingSignificanceLevel(double level) {
+    CrossValidationRace.checkSignificanceLevel(level);
+    m_RacingSignificanceLevel = level;
+  }
+
+  /**
+   * Gets the significance level for eliminating schemes early.
+   *
+   * @return the significance level
+   */
+  public double getRacingSignificanceLevel() {
+    return m_RacingSignificanceLevel;
+  }
+
   /**
    * Returns the tip text for this property
    * @return tip text for this property suitable for
@@ -367,51 +485,32 @@ public class MultiScheme
     if (newData.classAttribute().isNominal() && (m_NumXValFolds > 1)) {
       newData.stratify(m_NumXValFolds);
     }
-    Instances train = newData;               // train on all data by default
-    Instances test = newData;               // test on training data by default
-    Classifier bestClassifier = null;
-    int bestIndex = -1;
-    double bestPerformance = Double.NaN;
-    int numClassifiers = m_Classifiers.length;
-    for (int i = 0; i < numClassifiers; i++) {
-      Classifier currentClassifier = getClassifier(i);
-      Evaluation evaluation;
-      if (m_NumXValFolds > 1) {
-	evaluation = new Evaluation(newData);
-	for (int j = 0; j < m_NumXValFolds; j++) {
-
-          // We want to randomize the data the same way for every 
-          // learning scheme.
-	  train = newData.trainCV(m_NumXValFolds, j, new Random (1));
-	  test = newData.testCV(m_NumXValFolds, j);
-	  currentClassifier.buildClassifier(train);
-	  evaluation.setPriors(train);
-	  evaluation.evaluateModel(currentClassifier, test);
-	}
-      } else {
-	currentClassifier.buildClassifier(train);
-	evaluation = new Evaluation(train);
-	evaluation.evaluateModel(currentClassifier, test);
-      }
-
-      double error = evaluation.errorRate();
-      if (m_Debug) {
-	System.err.println("Error rate: " + Utils.doubleToString(error, 6, 4)
-			   + " for classifier "
-			   + currentClassifier.getClass().getName());
-      }
-
-      if ((i == 0) || (error < bestPerformance)) {
-	bestClassifier = currentClassifier;
-	bestPerformance = error;
-	bestIndex = i;
+    CrossValidationRace race = new CrossValidationRace(newData, m_NumXValFolds);
+    race.setNumExecutionSlots(m_numExecutionSlots);
+    race.setSignificanceLevel(m_RacingSignificanceLevel);
+    int bestIndex = race.race(m_Classifiers);
+    m_EliminatedAfter = new int[m_Classifiers.length];
+    for (int i = 0; i < m_Classifiers.length; i++) {
+      m_EliminatedAfter[i] = race.eliminatedAfter(i);
+    }
+    if (m_Debug) {
+      for (int i = 0; i < m_Classifiers.length; i++) {
+        if (race.eliminatedAfter(i) >= 0) {
+	  System.err.println("Eliminated after " + race.eliminatedAfter(i)
+			     + " folds: classifier "
+			     + getClassifier(i).getClass().getName());
+        } else {
+	  System.err.println("Error rate: "
+			     + Utils.doubleToString(race.errorRate(i), 6, 4)
+			     + " for classifier "
+			     + getClassifier(i).getClass().getName());
+        }
       }
     }
+
     m_ClassifierIndex = bestIndex;
-    if (m_NumXValFolds > 1) {
-      bestClassifier.buildClassifier(newData);
-    }
-    m_Classifier = bestClassifier;
+    m_Classifier = getClassifier(bestIndex);
+    m_Classifier.buildClassifier(newData);
   }
 
   /**
@@ -24,8 +24,12 @@ package weka.classifiers.meta;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
@@ -416,20 +420,83 @@ public class Stacking
       newData.stratify(m_NumFolds);
     }
 
-    // Create meta level
-    generateMetaLevel(newData, random);
+    if (m_numExecutionSlots <= 1) {
 
-    // restart the executor pool because at the end of processing
-    // a set of classifiers it gets shutdown to prevent the program
-    // executing as a server
+      // Create meta level
+      generateMetaLevel(newData, random);
+
+      // restart the executor pool because at the end of processing
+      // a set of classifiers it gets shutdown to prevent the program
+      // executing as a server
+      super.buildClassifier(newData);
+
+      // Rebuild all the base classifiers on the full training data
+      buildClassifiers(newData);
+      return;
+    }
+
+    // Build copies of the base classifiers on the full training data while
+    // the meta level is generated, so that all builds share the slots
     super.buildClassifier(newData);
+    Classifier[] classifiers = new Classifier[m_Classifiers.length];
+    List<Future<Void>> builds = new ArrayList<Future<Void>>();
+    try {
+      for (int k = 0; k < classifiers.length; k++) {
+        classifiers[k] = AbstractClassifier.makeCopy(getClassifier(k));
+        builds.add(submitBuild(classifiers[k], newData));
+      }
+      generateMetaLevel(newData, random);
+      waitFor(builds);
+    } finally {
+      m_executorPool.shutdownNow();
+    }
+    m_Classifiers = classifiers;
+  }
 
-    // Rebuild all the base classifiers on the full training data
-    buildClassifiers(newData);
+  /**
+   * Submits the construction of a classifier to the executor pool.
+   *
+   * @param classifier the classifier to build
+   * @param data the training data
+   * @return the pending build
+   */
+  protected Future<Void> submitBuild(final Classifier classifier,
+    final Instances data) {
+
+    return m_executorPool.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        classifier.buildClassifier(data);
+        return null;
+      }
+    });
+  }
+
+  /**
+   * Waits for the given builds to finish.
+   *
+   * @param builds the pending builds
+   * @throws Exception the exception thrown by a failed build
+   */
+  protected void waitFor(List<Future<Void>> builds) throws Exception {
+
+    try {
+      for (Future<Void> build : builds) {
+        build.get();
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
   }
 
   /**
    * Generates the meta data. Uses efficient batch prediction when base classifiers enable this.
+   * With more than one execution slot, copies of the base classifiers are built for all folds
+   * concurrently; the meta data is then assembled fold by fold, so it is the same as with a
+   * single slot.
    *
    * @param newData the data to work on
    * @param random  the random number generator to use for cross-validation
@@ -440,6 +507,37 @@ public class Stacking
 
     Instances metaData = metaFormat(newData);
     m_MetaFormat = new Instances(metaData, 0);
+    if (m_numExecutionSlots > 1) {
+      boolean startPool = (m_executorPool == null) || m_executorPool.isShutdown();
+      if (startPool) {
+        startExecutorPool();
+      }
+      try {
+
+        // the training sets are drawn in order as this uses the random number generator
+        Classifier[][] classifiers = new Classifier[m_NumFolds][m_Classifiers.length];
+        List<Future<Void>> builds = new ArrayList<Future<Void>>();
+        for (int j = 0; j < m_NumFolds; j++) {
+          Instances train = newData.trainCV(m_NumFolds, j, random);
+          for (int k = 0; k < m_Classifiers.length; k++) {
+            classifiers[j][k] = AbstractClassifier.makeCopy(getClassifier(k));
+            builds.add(submitBuild(classifiers[j][k], train));
+          }
+        }
+        waitFor(builds);
+
+        for (int j = 0; j < m_NumFolds; j++) {
+          addMetaInstances(metaData, newData.testCV(m_NumFolds, j), classifiers[j]);
+        }
+      } finally {
+        if (startPool) {
+          m_executorPool.shutdownNow();
+        }
+      }
+      m_MetaClassifier.buildClassifier(metaData);
+      return;
+    }
+
     for (int j = 0; j < m_NumFolds; j++) {
       Instances train = newData.trainCV(m_NumFolds, j, random);
 
@@ -454,19 +552,32 @@ public class Stacking
       buildClassifiers(train);
 
       // Classify test instances to add to meta data
-      Instances test = newData.testCV(m_NumFolds, j);
-      if (baseClassifiersImplementMoreEfficientBatchPrediction()) {
-        metaData.addAll(metaInstances(test));
-      } else {
-        for (int i = 0; i < test.numInstances(); i++) {
-          metaData.add(metaInstance(test.instance(i)));
-        }
-      }
+      addMetaInstances(metaData, newData.testCV(m_NumFolds, j), m_Classifiers);
     }
 
     m_MetaClassifier.buildClassifier(metaData);
   }
 
+  /**
+   * Adds the level-1 instances for the given test instances to the meta data.
+   *
+   * @param metaData the meta data to add to
+   * @param test the test instances
+   * @param classifiers the base classifiers built without the test instances
+   * @throws Exception if the instance generation fails
+   */
+  protected void addMetaInstances(Instances metaData, Instances test,
+    Classifier[] classifiers) throws Exception {
+
+    if (baseClassifiersImplementMoreEfficientBatchPrediction()) {
+      metaData.addAll(metaInstances(test, classifiers));
+    } else {
+      for (int i = 0; i < test.numInstances(); i++) {
+        metaData.add(metaInstance(test.instance(i), classifiers));
+      }
+    }
+  }
+
   /**
    * Returns estimated class probabilities for the given instance if the class is nominal and a
    * one-element array containing the numeric prediction if the class is numeric.
@@ -567,11 +678,26 @@ public class Stacking
    */
   protected Instance metaInstance(Instance instance) throws Exception {
 
+    return metaInstance(instance, m_Classifiers);
+  }
+
+  /**
+   * Makes a level-1 instance from the given instance, using the given base
+   * classifiers.
+   *
+   * @param instance the instance to be transformed
+   * @param classifiers the base classifiers
+   * @return the level-1 instance
+   * @throws Exception if the instance generation fails
+   */
+  protected Instance metaInstance(Instance instance, Classifier[] classifiers)
+    throws Exception {
+
     double[] values = new double[m_MetaFormat.numAttributes()];
     Instance metaInstance;
     int i = 0;
-    for (int k = 0; k < m_Classifiers.length; k++) {
-      Classifier classifier = getClassifier(k);
+    for (int k = 0; k < classifiers.length; k++) {
+      Classifier classifier = classifiers[k];
       if (m_BaseFormat.classAttribute().isNumeric()) {
         values[i++] = classifier.classifyInstance(instance);
       } else {
@@ -597,16 +723,31 @@ public class Stacking
    */
   protected Instances metaInstances(Instances instances) throws Exception {
 
-    double[][][] predictions = new double[m_Classifiers.length][][];
-    for (int k = 0; k < m_Classifiers.length; k++) {
-      predictions[k] = ((BatchPredictor) getClassifier(k)).distributionsForInstances(instances);
+    return metaInstances(instances, m_Classifiers);
+  }
+
+  /**
+   * Makes a set of level-1 instances from the given instances, using the given base classifiers.
+   * Requires all base classifiers to implement BatchPredictor.
+   *
+   * @param instances the instances to be transformed
+   * @param classifiers the base classifiers
+   * @return the level-1 instances
+   * @throws Exception if the instance generation fails
+   */
+  protected Instances metaInstances(Instances instances, Classifier[] classifiers)
+    throws Exception {
+
+    double[][][] predictions = new double[classifiers.length][][];
+    for (int k = 0; k < classifiers.length; k++) {
+      predictions[k] = ((BatchPredictor) classifiers[k]).distributionsForInstances(instances);
     }
 
     Instances metaData = new Instances(m_MetaFormat, 0);
     for (int l = 0; l < instances.numInstances(); l++) {
       double[] values = new double[m_MetaFormat.numAttributes()];
       int i = 0;
-      for (int k = 0; k < m_Classifiers.length; k++) {
+      for (int k = 0; k < classifiers.length; k++) {
         if (m_BaseFormat.classAttribute().isNumeric()) {
           values[i++] = predictions[k][l][0];
         } else {
@@ -24,6 +24,7 @@ package weka.classifiers.rules;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.rules.part.MakeDecList;
@@ -129,6 +130,13 @@ import weka.core.Capabilities.Capability;
  *  Do not make split point actual value.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -171,6 +179,9 @@ public class PART extends AbstractClassifier implements OptionHandler,
   /** Do not relocate split point to actual data value */
   private boolean m_doNotMakeSplitPointActualValue;
 
+  /** The number of threads to build the rules with. */
+  private int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing classifier
    * 
@@ -287,7 +298,14 @@ public class PART extends AbstractClassifier implements OptionHandler,
     } else {
       m_root = new MakeDecList(modSelection, m_CF, m_minNumObj);
     }
-    m_root.buildClassifier(instances);
+    final Instances data = instances;
+    modSelection.runInPool(m_numExecutionSlots, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        m_root.buildClassifier(data);
+        return null;
+      }
+    });
     if (m_binarySplits) {
       ((BinC45ModelSelection) modSelection).cleanup();
     } else {
@@ -384,6 +402,10 @@ public class PART extends AbstractClassifier implements OptionHandler,
       "\tSeed for random data shuffling (default 1).", "Q", 1, "-Q <seed>"));
     newVector.addElement(new Option("\tDo not make split point actual value.",
       "-doNotMakeSplitPointActualValue", 0, "-doNotMakeSplitPointActualValue"));
+    newVector.addElement(new Option("\tNumber of execution slots.\n"
+      + "\t(default 1 - i.e. no parallelism)\n"
+      + "\t(use 0 to auto-detect number of cores)", "num-slots", 1,
+      "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -446,6 +468,13 @@ public class PART extends AbstractClassifier implements OptionHandler,
    *  Do not make split point actual value.
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -460,6 +489,12 @@ public class PART extends AbstractClassifier implements OptionHandler,
     m_binarySplits = Utils.getFlag('B', options);
     m_useMDLcorrection = !Utils.getFlag('J', options);
     m_doNotMakeSplitPointActualValue = Utils.getFlag("doNotMakeSplitPointActualValue", options);
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      m_numExecutionSlots = Integer.parseInt(slotsString);
+    } else {
+      m_numExecutionSlots = 1;
+    }
     String confidenceString = Utils.getOption('C', options);
     if (confidenceString.length() != 0) {
       setConfidenceFactor((new Float(confidenceString)).floatValue());
@@ -536,6 +571,10 @@ public class PART extends AbstractClassifier implements OptionHandler,
     if (m_doNotMakeSplitPointActualValue) {
       options.add("-doNotMakeSplitPointActualValue");
     }
+    if (m_numExecutionSlots != 1) {
+      options.add("-num-slots");
+      options.add("" + m_numExecutionSlots);
+    }
     if (m_reducedErrorPruning) {
       options.add("-N");
       options.add("" + m_numFolds);
@@ -889,6 +928,38 @@ public class PART extends AbstractClassifier implements OptionHandler,
     this.m_doNotMakeSplitPointActualValue = m_doNotMakeSplitPointActualValue;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for building the "
+      + "rules. Split evaluation and, where possible, subtrees run in parallel; "
+      + "the result is the same as with a single slot. "
+      + "Use 0 to auto-detect the number of cores.";
+  }
+
+  /**
+   * Gets the number of execution slots.
+   * 
+   * @return the number of slots, 0 for one per core
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use for building the
+   * rules.
+   * 
+   * @param numSlots the number of slots, 0 for one per core
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -0,0 +1,654 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    FlatForest.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * One or more trained decision trees compiled into flat node tables for fast
+ * inference. The nodes of all trees are stored in parallel arrays holding the
+ * attribute tested, the split point, the position of the first child (the
+ * children of a node are stored next to each other) and the offset of the
+ * class distribution, so that an instance is classified by following indices
+ * rather than node objects. The values of an instance are copied into an
+ * array first, which can be reused for the next instance, so that classifying
+ * does not allocate memory; and since the tables are never modified after they
+ * are built, any number of threads can use the same FlatForest.
+ * <p>
+ *
+ * An instance follows a single path from the root unless it has a missing
+ * value for the attribute tested at a node, in which case it is passed down
+ * all branches and the results are summed with the weights of the children.
+ * The distribution of a path is the one of the deepest node with a
+ * distribution, which lets trees store nothing at empty leaves and fall back
+ * on their parent's distribution. With several trees, the distributions are
+ * combined like Bagging does: they are summed and normalised for a nominal
+ * class, and the predictions that are not missing are averaged for a numeric
+ * class.
+ *
+ * @version $Revision$
+ */
+public class FlatForest implements Serializable, RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2745063117823370458L;
+
+  /** the number of instances that batch prediction passes through a tree */
+  protected static final int BLOCK_SIZE = 64;
+
+  /** branch marker for a numeric attribute */
+  protected static final int NUMERIC = -1;
+
+  /** branch marker for a nominal attribute with a child for every value */
+  protected static final int PER_VALUE = -2;
+
+  /** the number of classes, 1 for a numeric class */
+  protected final int m_NumClasses;
+
+  /** whether the class is numeric */
+  protected final boolean m_NumericClass;
+
+  /** the root of each tree */
+  protected final int[] m_Roots;
+
+  /** the attribute tested at each node, -1 for leaves */
+  protected final int[] m_Attribute;
+
+  /**
+   * the split point of each numeric node: values below it go to the first
+   * child, the others to the second
+   */
+  protected final double[] m_SplitPoint;
+
+  /** the position of the first child of each node */
+  protected final int[] m_Children;
+
+  /** the number of children of each node */
+  protected final int[] m_NumChildren;
+
+  /**
+   * the branches of each node: NUMERIC, PER_VALUE or the offset of the child
+   * index of each value of a nominal attribute in m_BranchTable
+   */
+  protected final int[] m_Branches;
+
+  /** the children of the values of nominal attributes */
+  protected final int[] m_BranchTable;
+
+  /** the weight of each node in its parent's sum for a missing value */
+  protected final double[] m_Weights;
+
+  /** the offset of the distribution of each node in m_Values, -1 if none */
+  protected final int[] m_Distribution;
+
+  /** the distributions of the nodes */
+  protected final double[] m_Values;
+
+  /**
+   * the deepest node with a distribution on the path to each node, -1 if
+   * none. Children are stored after their parents, so a node is below another
+   * on the same path if its index is larger.
+   */
+  protected final int[] m_Source;
+
+  /**
+   * Initialises the forest from the tables of a builder.
+   *
+   * @param builder the builder
+   */
+  protected FlatForest(Builder builder) {
+
+    int numNodes = builder.m_NumNodes;
+    m_NumClasses = builder.m_NumClasses;
+    m_NumericClass = builder.m_NumericClass;
+    m_Roots = Arrays.copyOf(builder.m_Roots, builder.m_NumTrees);
+    m_Attribute = Arrays.copyOf(builder.m_Attribute, numNodes);
+    m_SplitPoint = Arrays.copyOf(builder.m_SplitPoint, numNodes);
+    m_Children = Arrays.copyOf(builder.m_Children, numNodes);
+    m_NumChildren = Arrays.copyOf(builder.m_NumChildren, numNodes);
+    m_Branches = Arrays.copyOf(builder.m_Branches, numNodes);
+    m_BranchTable = Arrays.copyOf(builder.m_BranchTable,
+      builder.m_NumBranches);
+    m_Weights = Arrays.copyOf(builder.m_Weights, numNodes);
+    m_Distribution = Arrays.copyOf(builder.m_Distribution, numNodes);
+    m_Values = Arrays.copyOf(builder.m_Values, builder.m_NumValues);
+
+    m_Source = new int[numNodes];
+    Arrays.fill(m_Source, -1);
+    for (int i = 0; i < numNodes; i++) {
+      if (m_Distribution[i] >= 0) {
+        m_Source[i] = i;
+      }
+      if (m_Attribute[i] >= 0) {
+        for (int j = m_Children[i]; j < m_Children[i] + m_NumChildren[i]; j++) {
+          m_Source[j] = m_Source[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the number of trees.
+   *
+   * @return the number of trees
+   */
+  public int numTrees() {
+
+    return m_Roots.length;
+  }
+
+  /**
+   * Returns the total number of nodes of the trees.
+   *
+   * @return the number of nodes
+   */
+  public int numNodes() {
+
+    return m_Attribute.length;
+  }
+
+  /**
+   * Returns the length of the distributions, 1 for a numeric class.
+   *
+   * @return the number of classes
+   */
+  public int numClasses() {
+
+    return m_NumClasses;
+  }
+
+  /**
+   * Adds the weighted distribution of an instance in the subtree below a
+   * node to the given array.
+   *
+   * @param node the root of the subtree
+   * @param weight the weight of the distribution
+   * @param values the attribute values of the instance
+   * @param dist the array to add the distribution to
+   * @return false if no node on the path of the instance has a distribution
+   */
+  protected boolean accumulate(int node, double weight, double[] values,
+    double[] dist) {
+
+    int start = node;
+    int att;
+    while ((att = m_Attribute[node]) >= 0) {
+      double value = values[att];
+      int first = m_Children[node];
+      if (Utils.isMissingValue(value)) {
+
+        // Split instance up
+        for (int i = first; i < first + m_NumChildren[node]; i++) {
+          accumulate(i, weight * m_Weights[i], values, dist);
+        }
+        return true;
+      }
+      int branches = m_Branches[node];
+      if (branches == NUMERIC) {
+        node = (value < m_SplitPoint[node]) ? first : first + 1;
+      } else if (branches == PER_VALUE) {
+        node = first + (int) value;
+      } else {
+        node = first + m_BranchTable[branches + (int) value];
+      }
+    }
+
+    // Only nodes below the start count
+    int source = m_Source[node];
+    if (source < start) {
+      return false;
+    }
+    int offset = m_Distribution[source];
+    for (int j = 0; j < m_NumClasses; j++) {
+      dist[j] += weight * m_Values[offset + j];
+    }
+    return true;
+  }
+
+  /**
+   * Copies the attribute values of an instance into an array, so that the
+   * trees can read them without calls to the instance.
+   *
+   * @param instance the instance
+   * @param values the array, with at least as many elements as there are
+   *          attributes
+   */
+  public static void values(Instance instance, double[] values) {
+
+    if (instance.numValues() < instance.numAttributes()) {
+      Arrays.fill(values, 0, instance.numAttributes(), 0);
+    }
+    for (int i = 0; i < instance.numValues(); i++) {
+      values[instance.index(i)] = instance.valueSparse(i);
+    }
+  }
+
+  /**
+   * Computes the distribution of one tree for an instance.
+   *
+   * @param tree the index of the tree
+   * @param values the attribute values of the instance
+   * @param dist the array to store the distribution in
+   * @return false if the tree has no distribution for the instance, in which
+   *         case the array holds zeros
+   * @see #values(Instance, double[])
+   */
+  public boolean distributionForTree(int tree, double[] values, double[] dist) {
+
+    Arrays.fill(dist, 0, m_NumClasses, 0);
+    return accumulate(m_Roots[tree], 1, values, dist);
+  }
+
+  /**
+   * Computes the combined distribution of the trees for an instance. For a
+   * single tree, this is its distribution; if it has none for the instance,
+   * the array holds zeros or, for a numeric class, a missing value.
+   *
+   * @param values the attribute values of the instance
+   * @param dist the array to store the distribution in
+   * @param scratch an array with at least numClasses() elements to hold the
+   *          distribution of each tree, not used for a single tree
+   * @throws Exception if one of several trees has no distribution for the
+   *           instance
+   * @see #values(Instance, double[])
+   */
+  public void distributionForValues(double[] values, double[] dist,
+    double[] scratch) throws Exception {
+
+    if (m_Roots.length == 1) {
+      if (!distributionForTree(0, values, dist) && m_NumericClass) {
+        dist[0] = Utils.missingValue();
+      }
+      return;
+    }
+
+    Arrays.fill(dist, 0, m_NumClasses, 0);
+    int numPreds = 0;
+    for (int i = 0; i < m_Roots.length; i++) {
+      numPreds += addTree(i, values, dist, scratch);
+    }
+    combine(dist, numPreds);
+  }
+
+  /**
+   * Adds the distribution of a tree to the sum of an ensemble.
+   *
+   * @param tree the index of the tree
+   * @param values the attribute values of the instance
+   * @param dist the sum of the distributions
+   * @param scratch an array to hold the distribution of the tree
+   * @return the number of predictions added: 0 if the class is numeric and
+   *         the prediction is missing, 1 otherwise
+   * @throws Exception if the tree has no distribution for the instance
+   */
+  protected int addTree(int tree, double[] values, double[] dist,
+    double[] scratch) throws Exception {
+
+    if (!distributionForTree(tree, values, scratch)) {
+      throw new Exception("Null distribution predicted");
+    }
+    if (m_NumericClass) {
+      if (Utils.isMissingValue(scratch[0])) {
+        return 0;
+      }
+      dist[0] += scratch[0];
+    } else {
+      for (int j = 0; j < m_NumClasses; j++) {
+        dist[j] += scratch[j];
+      }
+    }
+    return 1;
+  }
+
+  /**
+   * Turns the sum of the distributions of an ensemble into its distribution.
+   *
+   * @param dist the sum of the distributions
+   * @param numPreds the number of predictions in the sum
+   */
+  protected void combine(double[] dist, int numPreds) {
+
+    if (m_NumericClass) {
+      if (numPreds == 0) {
+        dist[0] = Utils.missingValue();
+      } else {
+        dist[0] /= numPreds;
+      }
+    } else if (!Utils.eq(Utils.sum(dist), 0)) {
+      Utils.normalize(dist);
+    }
+  }
+
+  /**
+   * Computes the combined distribution of the trees for an instance.
+   *
+   * @param instance the instance
+   * @return the distribution, null if a single tree has none for the
+   *         instance
+   * @throws Exception if one of several trees has no distribution for the
+   *           instance
+   */
+  public double[] distributionForInstance(Instance instance) throws Exception {
+
+    double[] values = new double[instance.numAttributes()];
+    values(instance, values);
+    double[] dist = new double[m_NumClasses];
+    if (m_Roots.length == 1) {
+      return distributionForTree(0, values, dist) ? dist : null;
+    }
+    distributionForValues(values, dist, new double[m_NumClasses]);
+    return dist;
+  }
+
+  /**
+   * Computes the combined distributions of the trees for a block of
+   * instances. The instances are processed in small blocks, passing each
+   * block through one tree after another. Apart from arrays for the values of
+   * a block and the distribution of a tree, no memory is allocated.
+   *
+   * @param insts the instances
+   * @param from the index of the first instance
+   * @param to the index after the last instance
+   * @param dists the arrays to store the distributions in, indexed like the
+   *          instances
+   * @throws Exception if one of several trees has no distribution for an
+   *           instance
+   * @see #distributionForValues(double[], double[], double[])
+   */
+  public void distributionsForInstances(Instances insts, int from, int to,
+    double[][] dists) throws Exception {
+
+    double[][] values =
+      new double[Math.max(0, Math.min(BLOCK_SIZE, to - from))][insts
+        .numAttributes()];
+    int[] numPreds = new int[values.length];
+    double[] scratch = new double[m_NumClasses];
+    for (int start = from; start < to; start += BLOCK_SIZE) {
+      int end = Math.min(to, start + BLOCK_SIZE);
+      for (int i = start; i < end; i++) {
+        values(insts.instance(i), values[i - start]);
+      }
+      if (m_Roots.length == 1) {
+        for (int i = start; i < end; i++) {
+          distributionForValues(values[i - start], dists[i], scratch);
+        }
+        continue;
+      }
+
+      // Apply each tree to the whole block while its nodes are in the cache
+      for (int i = start; i < end; i++) {
+        Arrays.fill(dists[i], 0, m_NumClasses, 0);
+        numPreds[i - start] = 0;
+      }
+      for (int tree = 0; tree < m_Roots.length; tree++) {
+        for (int i = start; i < end; i++) {
+          numPreds[i - start] +=
+            addTree(tree, values[i - start], dists[i], scratch);
+        }
+      }
+      for (int i = start; i < end; i++) {
+        combine(dists[i], numPreds[i - start]);
+      }
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Collects the nodes of trees in growing tables. A tree is added by
+   * creating its root with addTree() and then describing each node, giving
+   * it a split and children with the set...Split() methods and
+   * addChildren(), or a distribution.
+   */
+  public static class Builder {
+
+    /** the number of classes */
+    protected int m_NumClasses;
+
+    /** whether the class is numeric */
+    protected boolean m_NumericClass;
+
+    /** the number of trees */
+    protected int m_NumTrees;
+
+    /** the number of nodes */
+    protected int m_NumNodes;
+
+    /** the number of entries of the branch table */
+    protected int m_NumBranches;
+
+    /** the number of values of the distributions */
+    protected int m_NumValues;
+
+    /** the roots of the trees */
+    protected int[] m_Roots = new int[4];
+
+    /** the attributes of the nodes */
+    protected int[] m_Attribute = new int[64];
+
+    /** the split points of the nodes */
+    protected double[] m_SplitPoint = new double[64];
+
+    /** the first children of the nodes */
+    protected int[] m_Children = new int[64];
+
+    /** the numbers of children of the nodes */
+    protected int[] m_NumChildren = new int[64];
+
+    /** the branches of the nodes */
+    protected int[] m_Branches = new int[64];
+
+    /** the children of the values of nominal attributes */
+    protected int[] m_BranchTable = new int[64];
+
+    /** the weights of the nodes */
+    protected double[] m_Weights = new double[64];
+
+    /** the offsets of the distributions of the nodes */
+    protected int[] m_Distribution = new int[64];
+
+    /** the distributions of the nodes */
+    protected double[] m_Values = new double[64];
+
+    /**
+     * Creates a builder for trees predicting the class of the given data.
+     *
+     * @param header the structure of the data
+     */
+    public Builder(Instances header) {
+
+      this(header.numClasses(), header.classAttribute().isNumeric());
+    }
+
+    /**
+     * Creates a builder for trees with distributions of the given length.
+     *
+     * @param numClasses the number of classes, 1 for a numeric class
+     * @param numericClass whether the class is numeric
+     */
+    public Builder(int numClasses, boolean numericClass) {
+
+      m_NumClasses = numClasses;
+      m_NumericClass = numericClass;
+    }
+
+    /**
+     * Adds the given number of nodes, initialised as leaves without a
+     * distribution and with weight 1.
+     *
+     * @param count the number of nodes
+     * @return the index of the first node
+     */
+    protected int addNodes(int count) {
+
+      int first = m_NumNodes;
+      m_NumNodes += count;
+      if (m_NumNodes > m_Attribute.length) {
+        int capacity = Math.max(m_NumNodes, 2 * m_Attribute.length);
+        m_Attribute = Arrays.copyOf(m_Attribute, capacity);
+        m_SplitPoint = Arrays.copyOf(m_SplitPoint, capacity);
+        m_Children = Arrays.copyOf(m_Children, capacity);
+        m_NumChildren = Arrays.copyOf(m_NumChildren, capacity);
+        m_Branches = Arrays.copyOf(m_Branches, capacity);
+        m_Weights = Arrays.copyOf(m_Weights, capacity);
+        m_Distribution = Arrays.copyOf(m_Distribution, capacity);
+      }
+      for (int i = first; i < m_NumNodes; i++) {
+        m_Attribute[i] = -1;
+        m_Branches[i] = NUMERIC;
+        m_Weights[i] = 1;
+        m_Distribution[i] = -1;
+      }
+      return first;
+    }
+
+    /**
+     * Adds the root of a new tree.
+     *
+     * @return the index of the root
+     */
+    public int addTree() {
+
+      if (m_NumTrees == m_Roots.length) {
+        m_Roots = Arrays.copyOf(m_Roots, 2 * m_Roots.length);
+      }
+      int root = addNodes(1);
+      m_Roots[m_NumTrees++] = root;
+      return root;
+    }
+
+    /**
+     * Adds the children of a node, which must have a split.
+     *
+     * @param node the index of the node
+     * @param count the number of children
+     * @return the index of the first child, the others follow it
+     */
+    public int addChildren(int node, int count) {
+
+      int first = addNodes(count);
+      m_Children[node] = first;
+      m_NumChildren[node] = count;
+      return first;
+    }
+
+    /**
+     * Makes a node test a numeric attribute. Instances with a value below
+     * the split point go to the first child, the others to the second.
+     *
+     * @param node the index of the node
+     * @param att the index of the attribute
+     * @param splitPoint the split point
+     */
+    public void setNumericSplit(int node, int att, double splitPoint) {
+
+      m_Attribute[node] = att;
+      m_SplitPoint[node] = splitPoint;
+      m_Branches[node] = NUMERIC;
+    }
+
+    /**
+     * Makes a node test a nominal attribute.
+     *
+     * @param node the index of the node
+     * @param att the index of the attribute
+     * @param branches the child for each value of the attribute, null if
+     *          there is one child per value
+     */
+    public void setNominalSplit(int node, int att, int[] branches) {
+
+      m_Attribute[node] = att;
+      if (branches == null) {
+        m_Branches[node] = PER_VALUE;
+        return;
+      }
+      if (m_NumBranches + branches.length > m_BranchTable.length) {
+        m_BranchTable = Arrays.copyOf(m_BranchTable,
+          Math.max(m_NumBranches + branches.length, 2 * m_BranchTable.length));
+      }
+      System.arraycopy(branches, 0, m_BranchTable, m_NumBranches,
+        branches.length);
+      m_Branches[node] = m_NumBranches;
+      m_NumBranches += branches.length;
+    }
+
+    /**
+     * Sets the weight of a node in its parent's sum when the value tested
+     * by the parent is missing.
+     *
+     * @param node the index of the node
+     * @param weight the weight
+     */
+    public void setWeight(int node, double weight) {
+
+      m_Weights[node] = weight;
+    }
+
+    /**
+     * Sets the distribution of a node.
+     *
+     * @param node the index of the node
+     * @param dist the distribution, with one element per class
+     * @throws IllegalArgumentException if the distribution has the wrong
+     *           length
+     */
+    public void setDistribution(int node, double[] dist) {
+
+      if (dist.length != m_NumClasses) {
+        throw new IllegalArgumentException("Distribution has "
+          + dist.length + " elements instead of " + m_NumClasses);
+      }
+      if (m_NumValues + m_NumClasses > m_Values.length) {
+        m_Values = Arrays.copyOf(m_Values,
+          Math.max(m_NumValues + m_NumClasses, 2 * m_Values.length));
+      }
+      System.arraycopy(dist, 0, m_Values, m_NumValues, m_NumClasses);
+      m_Distribution[node] = m_NumValues;
+      m_NumValues += m_NumClasses;
+    }
+
+    /**
+     * Returns the trees added so far.
+     *
+     * @return the compiled trees
+     */
+    public FlatForest build() {
+
+      return new FlatForest(this);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    Flattenable.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees;
+
+/**
+ * Interface to tree classifiers that can be compiled into a FlatForest for
+ * fast inference.
+ *
+ * @version $Revision$
+ */
+public interface Flattenable {
+
+  /**
+   * Compiles the trained model into flat node tables. The result gives the
+   * same distributions as the classifier, up to rounding when values are
+   * missing, and does not change when the classifier is rebuilt.
+   *
+   * @return the compiled model
+   * @throws Exception if the model has not been built or can't be compiled
+   */
+  FlatForest flatten() throws Exception;
+}
@@ -0,0 +1,676 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    HistogramSplitter.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.classifiers.trees;
+
+import weka.core.BinnedData;
+import weka.core.ContingencyTables;
+import weka.core.Instances;
+import weka.core.PresortedIndex;
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ * Finds splits for RandomTree and REPTree on histograms of binned attribute
+ * values rather than on sorted values. For each attribute considered at a
+ * node, the class distribution (or the sums of the target and its square in
+ * the numeric case) is accumulated per bin in one pass over the instances at
+ * the node, and the candidate split points between bins are evaluated on the
+ * histogram. Instances with a missing value are distributed over the branches
+ * in proportion to their weights, as by the trees themselves.
+ * <p>
+ *
+ * If the instances at a node have been partitioned among its children without
+ * any instance being split up, the histogram of one child is obtained by
+ * subtracting the histograms of its siblings from the node's, which is
+ * cheaper than a pass over the child's instances.
+ *
+ * @version $Revision$
+ */
+public class HistogramSplitter implements RevisionHandler {
+
+  /**
+   * The instances at a node of a tree while it is grown, with the histograms
+   * computed for them.
+   */
+  public static class NodeData {
+
+    /** The positions of the instances in the binned data. */
+    protected int[] m_Rows;
+
+    /** The weights of the instances at this node. */
+    protected double[] m_Weights;
+
+    /** The histograms computed so far, indexed by attribute. */
+    protected Histogram[] m_Histograms;
+
+    /** The data at the parent node, null at the root. */
+    protected NodeData m_Parent;
+
+    /** The data at the children of the parent node, this one included. */
+    protected NodeData[] m_Siblings;
+
+    /**
+     * Whether the children of the parent node partition its instances, so
+     * that histograms can be subtracted.
+     */
+    protected boolean m_Partition;
+
+    /**
+     * Creates the data at a node.
+     *
+     * @param rows the positions of the instances in the binned data
+     * @param weights the weights of the instances
+     * @param numAttributes the number of attributes
+     */
+    protected NodeData(int[] rows, double[] weights, int numAttributes) {
+
+      m_Rows = rows;
+      m_Weights = weights;
+      m_Histograms = new Histogram[numAttributes];
+    }
+
+    /**
+     * Returns the number of instances at the node.
+     *
+     * @return the number of instances
+     */
+    public int numInstances() {
+
+      return m_Rows.length;
+    }
+
+    /**
+     * Releases the instances once the subtree below the node has been grown.
+     * The histograms are kept for the node's siblings.
+     */
+    public void discardRows() {
+
+      m_Rows = null;
+      m_Weights = null;
+      m_Parent = null;
+    }
+  }
+
+  /**
+   * The statistics of the class per bin of an attribute, with an extra bin
+   * for missing values.
+   */
+  protected static class Histogram {
+
+    /** The statistics, <code>m_Width</code> values per bin. */
+    protected double[] m_Stats;
+
+    /** The number of instances in each bin. */
+    protected int[] m_Counts;
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param numBins the number of bins, without the one for missing values
+     * @param width the number of statistics per bin
+     */
+    protected Histogram(int numBins, int width) {
+
+      m_Stats = new double[(numBins + 1) * width];
+      m_Counts = new int[numBins + 1];
+    }
+  }
+
+  /**
+   * The best split on an attribute found at a node.
+   */
+  public static class Split {
+
+    /** The attribute. */
+    protected int m_Attribute;
+
+    /** The gain in information or reduction in variance. */
+    protected double m_Gain;
+
+    /** The split point for numeric attributes, NaN for nominal ones. */
+    protected double m_SplitPoint = Double.NaN;
+
+    /** The last bin going down the first branch of a numeric attribute. */
+    protected int m_Bin = -1;
+
+    /** The proportions of the weight going down each branch. */
+    protected double[] m_Props;
+
+    /**
+     * The class distribution of each branch in the nominal case, the mean of
+     * the target in the numeric case.
+     */
+    protected double[][] m_Dist;
+
+    /** The weight going down each branch. */
+    protected double[] m_SubsetWeights;
+
+    /**
+     * Returns the attribute.
+     *
+     * @return the index of the attribute
+     */
+    public int getAttribute() {
+      return m_Attribute;
+    }
+
+    /**
+     * Returns the gain of the split.
+     *
+     * @return the gain in information or reduction in variance
+     */
+    public double getGain() {
+      return m_Gain;
+    }
+
+    /**
+     * Returns the split point.
+     *
+     * @return the split point for numeric attributes, NaN for nominal ones
+     */
+    public double getSplitPoint() {
+      return m_SplitPoint;
+    }
+
+    /**
+     * Returns the proportions of the weight going down each branch.
+     *
+     * @return the proportions
+     */
+    public double[] getProps() {
+      return m_Props;
+    }
+
+    /**
+     * Returns the class distribution of each branch.
+     *
+     * @return the class distributions in the nominal case, the means of the
+     *         target in the numeric case
+     */
+    public double[][] getDist() {
+      return m_Dist;
+    }
+
+    /**
+     * Returns the weight going down each branch.
+     *
+     * @return the weights
+     */
+    public double[] getSubsetWeights() {
+      return m_SubsetWeights;
+    }
+  }
+
+  /** The binned data. */
+  protected BinnedData m_Binned;
+
+  /** The class value of each instance of the binned data. */
+  protected double[] m_ClassValues;
+
+  /** Whether the class is nominal. */
+  protected boolean m_NominalClass;
+
+  /** The number of classes. */
+  protected int m_NumClasses;
+
+  /**
+   * The number of statistics per bin: the weight per class in the nominal
+   * case, the weighted sums of the target and its square plus the weight in
+   * the numeric case.
+   */
+  protected int m_Width;
+
+  /**
+   * Creates a splitter for the given binned data.
+   *
+   * @param binned the binned data
+   */
+  public HistogramSplitter(BinnedData binned) {
+
+    m_Binned = binned;
+    m_ClassValues = binned.getData().attributeToDoubleArray(
+      binned.getData().classIndex());
+    m_NominalClass = binned.getData().classAttribute().isNominal();
+    m_NumClasses = binned.getData().numClasses();
+    m_Width = m_NominalClass ? m_NumClasses : 3;
+  }
+
+  /**
+   * Creates a splitter for the given training data. With a presorted index,
+   * the bins of the whole indexed dataset are used, so that they are shared
+   * by all trees built on samples of it.
+   *
+   * @param train the training data
+   * @param index the presorted index of the data the training data is a
+   *          sample of, null if none is used
+   * @param maxBins the maximum number of bins of a numeric attribute
+   * @return the splitter, null if an attribute of the data can't be binned
+   * @throws Exception if the number of bins is out of range
+   */
+  public static HistogramSplitter forData(Instances train,
+    PresortedIndex index, int maxBins) throws Exception {
+
+    if ((maxBins < 2) || (maxBins > BinnedData.MAX_BINS)) {
+      throw new Exception("The maximum number of bins must be between 2 and "
+        + BinnedData.MAX_BINS + ".");
+    }
+    BinnedData binned = (index != null) ? index.binned(maxBins)
+      : new BinnedData(train, maxBins);
+    for (int i = 0; i < train.numAttributes(); i++) {
+      if ((i != train.classIndex()) && !binned.isBinned(i)) {
+        return null;
+      }
+    }
+
+    return new HistogramSplitter(binned);
+  }
+
+  /**
+   * Creates the data at the root of a tree.
+   *
+   * @param rows the positions of the training instances in the binned data,
+   *          none of them with a missing class
+   * @param weights the weights of the training instances
+   * @return the data at the root
+   */
+  public NodeData root(int[] rows, double[] weights) {
+
+    return new NodeData(rows, weights, m_Binned.getData().numAttributes());
+  }
+
+  /**
+   * Computes the weighted sums of the target, of its square, and of the
+   * weights of the instances at a node, for a numeric class.
+   *
+   * @param node the data at the node
+   * @return the three sums
+   */
+  public double[] targetSums(NodeData node) {
+
+    double[] result = new double[3];
+    for (int i = 0; i < node.m_Rows.length; i++) {
+      double value = m_ClassValues[node.m_Rows[i]];
+      double weight = node.m_Weights[i];
+      result[0] += value * weight;
+      result[1] += value * value * weight;
+      result[2] += weight;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the histogram of an attribute at a node, subtracting the
+   * histograms of the node's siblings from its parent's if possible.
+   *
+   * @param node the data at the node
+   * @param att the index of the attribute
+   * @return the histogram
+   */
+  protected Histogram histogram(NodeData node, int att) {
+
+    Histogram result = node.m_Histograms[att];
+    if (result != null) {
+      return result;
+    }
+
+    if (node.m_Partition && (node.m_Parent.m_Histograms[att] != null)) {
+      boolean available = true;
+      for (NodeData sibling : node.m_Siblings) {
+        if ((sibling != node) && (sibling.m_Histograms[att] == null)) {
+          available = false;
+          break;
+        }
+      }
+      if (available) {
+        result = subtract(node.m_Parent.m_Histograms[att], node, att);
+      }
+    }
+    if (result == null) {
+      result = accumulate(node, att);
+    }
+    node.m_Histograms[att] = result;
+
+    return result;
+  }
+
+  /**
+   * Accumulates the histogram of an attribute over the instances at a node.
+   *
+   * @param node the data at the node
+   * @param att the index of the attribute
+   * @return the histogram
+   */
+  protected Histogram accumulate(NodeData node, int att) {
+
+    int numBins = m_Binned.numBins(att);
+    Histogram result = new Histogram(numBins, m_Width);
+    double[] stats = result.m_Stats;
+    int[] counts = result.m_Counts;
+    byte[] bins = m_Binned.bins(att);
+    int[] rows = node.m_Rows;
+    double[] weights = node.m_Weights;
+    for (int i = 0; i < rows.length; i++) {
+      int row = rows[i];
+      int bin = bins[row] & 0xFF;
+      if (bin == BinnedData.MISSING) {
+        bin = numBins;
+      }
+      counts[bin]++;
+      if (m_NominalClass) {
+        stats[bin * m_Width + (int) m_ClassValues[row]] += weights[i];
+      } else {
+        double value = m_ClassValues[row];
+        int offset = bin * m_Width;
+        stats[offset] += value * weights[i];
+        stats[offset + 1] += value * value * weights[i];
+        stats[offset + 2] += weights[i];
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Obtains the histogram of an attribute at a node by subtracting the
+   * histograms of its siblings from its parent's. Bins without instances are
+   * set to zero, so that rounding errors do not leave spurious weights.
+   *
+   * @param parent the histogram at the parent
+   * @param node the data at the node
+   * @param att the index of the attribute
+   * @return the histogram
+   */
+  protected Histogram subtract(Histogram parent, NodeData node, int att) {
+
+    Histogram result = new Histogram(m_Binned.numBins(att), m_Width);
+    System.arraycopy(parent.m_Stats, 0, result.m_Stats, 0,
+      result.m_Stats.length);
+    System.arraycopy(parent.m_Counts, 0, result.m_Counts, 0,
+      result.m_Counts.length);
+    for (NodeData sibling : node.m_Siblings) {
+      if (sibling == node) {
+        continue;
+      }
+      Histogram other = sibling.m_Histograms[att];
+      for (int i = 0; i < result.m_Stats.length; i++) {
+        result.m_Stats[i] -= other.m_Stats[i];
+      }
+      for (int i = 0; i < result.m_Counts.length; i++) {
+        result.m_Counts[i] -= other.m_Counts[i];
+      }
+    }
+    for (int bin = 0; bin < result.m_Counts.length; bin++) {
+      if (result.m_Counts[bin] == 0) {
+        for (int j = 0; j < m_Width; j++) {
+          result.m_Stats[bin * m_Width + j] = 0;
+        }
+      } else if (!m_NominalClass) {
+        result.m_Stats[bin * m_Width + 2] = Math.max(0,
+          result.m_Stats[bin * m_Width + 2]);
+      } else {
+        for (int j = 0; j < m_Width; j++) {
+          result.m_Stats[bin * m_Width + j] = Math.max(0,
+            result.m_Stats[bin * m_Width + j]);
+        }
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the histograms of the given attributes for all children of a
+   * node except the one with the most instances, whose histograms can then
+   * be obtained by subtraction. Does nothing if the children do not
+   * partition the node's instances.
+   *
+   * @param children the data at the children
+   * @param atts the indices of the attributes
+   */
+  public void prepareChildren(NodeData[] children, int[] atts) {
+
+    if ((children.length < 2) || !children[0].m_Partition) {
+      return;
+    }
+    int largest = 0;
+    for (int i = 1; i < children.length; i++) {
+      if (children[i].numInstances() > children[largest].numInstances()) {
+        largest = i;
+      }
+    }
+    for (int i = 0; i < children.length; i++) {
+      if (i != largest) {
+        for (int att : atts) {
+          histogram(children[i], att);
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the best split on an attribute at a node.
+   *
+   * @param node the data at the node
+   * @param att the index of the attribute
+   * @return the split
+   */
+  public Split findSplit(NodeData node, int att) {
+
+    Histogram histogram = histogram(node, att);
+    double[] stats = histogram.m_Stats;
+    int numBins = m_Binned.numBins(att);
+    boolean nominal = m_Binned.getData().attribute(att).isNominal();
+    Split result = new Split();
+    result.m_Attribute = att;
+
+    double[][] branches;
+    if (nominal) {
+      branches = new double[numBins][m_Width];
+      for (int bin = 0; bin < numBins; bin++) {
+        System.arraycopy(stats, bin * m_Width, branches[bin], 0, m_Width);
+      }
+    } else {
+      branches = new double[2][m_Width];
+      double[][] curr = new double[2][m_Width];
+      for (int bin = 0; bin < numBins; bin++) {
+        for (int j = 0; j < m_Width; j++) {
+          curr[1][j] += stats[bin * m_Width + j];
+        }
+      }
+      System.arraycopy(curr[1], 0, branches[1], 0, m_Width);
+
+      // Try the split points between non-empty bins
+      double bestVal = Double.MAX_VALUE;
+      int previous = -1;
+      for (int bin = 0; bin < numBins; bin++) {
+        if (histogram.m_Counts[bin] == 0) {
+          continue;
+        }
+        if (previous >= 0) {
+          double currVal = m_NominalClass ? ContingencyTables
+            .entropyConditionedOnRows(curr) : variance(curr);
+          if (currVal < bestVal) {
+            bestVal = currVal;
+            result.m_Bin = previous;
+            for (int j = 0; j < 2; j++) {
+              System.arraycopy(curr[j], 0, branches[j], 0, m_Width);
+            }
+          }
+        }
+        for (int j = 0; j < m_Width; j++) {
+          curr[0][j] += stats[bin * m_Width + j];
+          curr[1][j] -= stats[bin * m_Width + j];
+        }
+        previous = bin;
+      }
+      if (result.m_Bin >= 0) {
+        result.m_SplitPoint = m_Binned.splitPoint(att, result.m_Bin);
+      }
+    }
+
+    // Compute weights
+    int weightIndex = m_NominalClass ? -1 : 2;
+    double[] props = new double[branches.length];
+    for (int k = 0; k < props.length; k++) {
+      props[k] = (weightIndex < 0) ? Utils.sum(branches[k])
+        : branches[k][weightIndex];
+    }
+    if (!(Utils.sum(props) > 0)) {
+      for (int k = 0; k < props.length; k++) {
+        props[k] = 1.0 / props.length;
+      }
+    } else {
+      Utils.normalize(props);
+    }
+
+    // Distribute the statistics of instances with missing values
+    int missing = numBins * m_Width;
+    if (histogram.m_Counts[numBins] > 0) {
+      for (int k = 0; k < branches.length; k++) {
+        for (int j = 0; j < m_Width; j++) {
+          branches[k][j] += props[k] * stats[missing + j];
+        }
+      }
+    }
+
+    result.m_Props = props;
+    result.m_SubsetWeights = new double[branches.length];
+    if (m_NominalClass) {
+      for (int k = 0; k < branches.length; k++) {
+        result.m_SubsetWeights[k] = Utils.sum(branches[k]);
+      }
+      result.m_Dist = branches;
+      result.m_Gain = ContingencyTables.entropyOverColumns(branches)
+        - ContingencyTables.entropyConditionedOnRows(branches);
+    } else {
+      double totalSum = 0, totalSumSquared = 0, totalSumOfWeights = 0;
+      for (int bin = 0; bin <= numBins; bin++) {
+        totalSum += stats[bin * m_Width];
+        totalSumSquared += stats[bin * m_Width + 1];
+        totalSumOfWeights += stats[bin * m_Width + 2];
+      }
+      result.m_Dist = new double[branches.length][m_NumClasses];
+      for (int k = 0; k < branches.length; k++) {
+        result.m_SubsetWeights[k] = branches[k][2];
+        if (branches[k][2] > 0) {
+          result.m_Dist[k][0] = branches[k][0] / branches[k][2];
+        } else {
+          result.m_Dist[k][0] = totalSum / totalSumOfWeights;
+        }
+      }
+      result.m_Gain = RandomTree.singleVariance(totalSum, totalSumSquared,
+        totalSumOfWeights) - variance(branches);
+    }
+
+    return result;
+  }
+
+  /**
+   * Computes the sum of the variances of the branches of a split, for a
+   * numeric class.
+   *
+   * @param branches the sums of the target, its square and the weights
+   * @return the sum of the variances
+   */
+  protected double variance(double[][] branches) {
+
+    double var = 0;
+    for (double[] branch : branches) {
+      if (branch[2] > 0) {
+        var += RandomTree.singleVariance(branch[0], branch[1], branch[2]);
+      }
+    }
+
+    return var;
+  }
+
+  /**
+   * Divides the instances at a node among the branches of a split. Instances
+   * with a missing value are split up according to the proportions of the
+   * split.
+   *
+   * @param node the data at the node
+   * @param split the split
+   * @return the data at the children
+   */
+  public NodeData[] split(NodeData node, Split split) {
+
+    int att = split.m_Attribute;
+    boolean nominal = m_Binned.getData().attribute(att).isNominal();
+    byte[] bins = m_Binned.bins(att);
+    double[] props = split.m_Props;
+    int numBranches = props.length;
+    int n = node.m_Rows.length;
+    int[][] rows = new int[numBranches][n];
+    double[][] weights = new double[numBranches][n];
+    int[] num = new int[numBranches];
+    boolean partition = true;
+    for (int i = 0; i < n; i++) {
+      int row = node.m_Rows[i];
+      int bin = bins[row] & 0xFF;
+      if (bin == BinnedData.MISSING) {
+
+        // Split instance up
+        partition = false;
+        for (int k = 0; k < numBranches; k++) {
+          if (props[k] > 0) {
+            rows[k][num[k]] = row;
+            weights[k][num[k]] = props[k] * node.m_Weights[i];
+            num[k]++;
+          }
+        }
+      } else {
+        int subset = nominal ? bin : ((bin <= split.m_Bin) ? 0 : 1);
+        rows[subset][num[subset]] = row;
+        weights[subset][num[subset]] = node.m_Weights[i];
+        num[subset]++;
+      }
+    }
+
+    NodeData[] result = new NodeData[numBranches];
+    for (int k = 0; k < numBranches; k++) {
+      int[] subsetRows = new int[num[k]];
+      System.arraycopy(rows[k], 0, subsetRows, 0, num[k]);
+      double[] subsetWeights = new double[num[k]];
+      System.arraycopy(weights[k], 0, subsetWeights, 0, num[k]);
+      result[k] = new NodeData(subsetRows, subsetWeights,
+        node.m_Histograms.length);
+      result[k].m_Parent = node;
+      result[k].m_Siblings = result;
+      result[k].m_Partition = partition;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -24,6 +24,7 @@ package weka.classifiers.trees;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Vector;
+import java.util.concurrent.Callable;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Sourcable;
@@ -148,6 +149,13 @@ import weka.core.Capabilities.Capability;
  *  Do not make split point actual value.
  * </pre>
  * 
+ * <pre>
+ * -num-slots &lt;num&gt;
+ *  Number of execution slots.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -155,7 +163,8 @@ import weka.core.Capabilities.Capability;
  */
 public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
   Matchable, Sourcable, WeightedInstancesHandler, Summarizable,
-  AdditionalMeasureProducer, TechnicalInformationHandler, PartitionGenerator {
+  AdditionalMeasureProducer, TechnicalInformationHandler, PartitionGenerator,
+  Flattenable {
 
   /** for serialization */
   static final long serialVersionUID = -217733168393644444L;
@@ -205,6 +214,9 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
   /** Do not relocate split point to actual data value */
   protected boolean m_doNotMakeSplitPointActualValue;
 
+  /** The number of threads to build the tree with. */
+  protected int m_numExecutionSlots = 1;
+
   /**
    * Returns a string describing classifier
    * 
@@ -315,7 +327,14 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
       m_root = new PruneableClassifierTree(modSelection, !m_unpruned,
         m_numFolds, !m_noCleanup, m_Seed);
     }
-    m_root.buildClassifier(instances);
+    final Instances data = instances;
+    modSelection.runInPool(m_numExecutionSlots, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        m_root.buildClassifier(data);
+        return null;
+      }
+    });
     if (m_binarySplits) {
       ((BinC45ModelSelection) modSelection).cleanup();
     } else {
@@ -482,6 +501,10 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
       "\tSeed for random data shuffling (default 1).", "Q", 1, "-Q <seed>"));
     newVector.addElement(new Option("\tDo not make split point actual value.",
       "-doNotMakeSplitPointActualValue", 0, "-doNotMakeSplitPointActualValue"));
+    newVector.addElement(new Option("\tNumber of execution slots.\n"
+      + "\t(default 1 - i.e. no parallelism)\n"
+      + "\t(use 0 to auto-detect number of cores)", "num-slots", 1,
+      "-num-slots <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -563,6 +586,13 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
    *  Do not make split point actual value.
    * </pre>
    * 
+   * <pre>
+   * -num-slots &lt;num&gt;
+   *  Number of execution slots.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -588,6 +618,12 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     m_subtreeRaising = !Utils.getFlag('S', options);
     m_noCleanup = Utils.getFlag('L', options);
     m_doNotMakeSplitPointActualValue = Utils.getFlag("doNotMakeSplitPointActualValue", options);
+    String slotsString = Utils.getOption("num-slots", options);
+    if (slotsString.length() != 0) {
+      m_numExecutionSlots = Integer.parseInt(slotsString);
+    } else {
+      m_numExecutionSlots = 1;
+    }
     m_reducedErrorPruning = Utils.getFlag('R', options);
     String confidenceString = Utils.getOption('C', options);
     if (confidenceString.length() != 0) {
@@ -672,6 +708,10 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     if (m_doNotMakeSplitPointActualValue) {
       options.add("-doNotMakeSplitPointActualValue");
     }
+    if (m_numExecutionSlots != 1) {
+      options.add("-num-slots");
+      options.add("" + m_numExecutionSlots);
+    }
     if (m_reducedErrorPruning) {
       options.add("-N");
       options.add("" + m_numFolds);
@@ -1175,6 +1215,38 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     this.m_doNotMakeSplitPointActualValue = m_doNotMakeSplitPointActualValue;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numExecutionSlotsTipText() {
+    return "The number of execution slots (threads) to use for building the "
+      + "tree. Split evaluation and, where possible, subtrees run in parallel; "
+      + "the result is the same as with a single slot. "
+      + "Use 0 to auto-detect the number of cores.";
+  }
+
+  /**
+   * Gets the number of execution slots.
+   * 
+   * @return the number of slots, 0 for one per core
+   */
+  public int getNumExecutionSlots() {
+    return m_numExecutionSlots;
+  }
+
+  /**
+   * Sets the number of execution slots (threads) to use for building the
+   * tree.
+   * 
+   * @param numSlots the number of slots, 0 for one per core
+   */
+  public void setNumExecutionSlots(int numSlots) {
+    m_numExecutionSlots = numSlots;
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -1212,6 +1284,24 @@ public class J48 extends AbstractClassifier implements OptionHandler, Drawable,
     return m_root.numNodes();
   }
 
+  /**
+   * Compiles the tree into flat node tables.
+   * 
+   * @return the compiled tree
+   * @throws Exception if the tree has not been built
+   */
+  @Override
+  public FlatForest flatten() throws Exception {
+
+    if (m_root == null) {
+      throw new Exception("No model built yet.");
+    }
+    FlatForest.Builder builder = new FlatForest.Builder(
+      m_root.getLocalModel().distribution().numClasses(), false);
+    m_root.flatten(builder, builder.addTree(), m_useLaplace);
+    return builder.build();
+  }
+
   /**
    * Main method for testing this class
    * 
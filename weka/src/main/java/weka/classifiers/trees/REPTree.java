@@ -30,6 +30,7 @@ import java.util.Random;
 import java.util.Vector;
 
 import weka.classifiers.AbstractClassifier;
+import weka.classifiers.PresortedIndexHandler;
 import weka.classifiers.Sourcable;
 import weka.classifiers.rules.ZeroR;
 import weka.core.AdditionalMeasureProducer;
@@ -43,9 +44,11 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.PartitionGenerator;
+import weka.core.PresortedIndex;
 import weka.core.Randomizable;
 import weka.core.RevisionHandler;
 import weka.core.RevisionUtils;
+import weka.core.SubsetInstances;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 
@@ -92,6 +95,13 @@ import weka.core.WeightedInstancesHandler;
  *  Maximum tree depth (default -1, no maximum)
  * </pre>
  * 
+ * <pre>
+ * -bins &lt;num&gt;
+ *  The maximum number of bins of a numeric attribute when splits
+ *  are found on histograms, at most 255.
+ *  (default 0 = splits are found on the sorted values)
+ * </pre>
+ * 
  * <!-- options-end -->
  * 
  * @author Eibe Frank (eibe@cs.waikato.ac.nz)
@@ -99,7 +109,7 @@ import weka.core.WeightedInstancesHandler;
  */
 public class REPTree extends AbstractClassifier implements OptionHandler,
   WeightedInstancesHandler, Drawable, AdditionalMeasureProducer, Sourcable,
-  PartitionGenerator, Randomizable {
+  PartitionGenerator, Randomizable, PresortedIndexHandler, Flattenable {
 
   /** for serialization */
   static final long serialVersionUID = -9216785998198681299L;
@@ -224,6 +234,32 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       }
     }
 
+    /**
+     * Describes the subtree below this node to the given builder, which
+     * reproduces distributionForInstance().
+     * 
+     * @param builder the builder
+     * @param node the index of this node in the builder
+     */
+    protected void flatten(FlatForest.Builder builder, int node) {
+
+      if (m_ClassProbs != null) {
+        builder.setDistribution(node, m_ClassProbs);
+      }
+      if (m_Attribute > -1) {
+        if (m_Info.attribute(m_Attribute).isNominal()) {
+          builder.setNominalSplit(node, m_Attribute, null);
+        } else {
+          builder.setNumericSplit(node, m_Attribute, m_SplitPoint);
+        }
+        int first = builder.addChildren(node, m_Successors.length);
+        for (int i = 0; i < m_Successors.length; i++) {
+          builder.setWeight(first + i, m_Prop[i]);
+          m_Successors[i].flatten(builder, first + i);
+        }
+      }
+    }
+
     /**
      * Returns a string containing java source code equivalent to the test made
      * at this node. The instance being tested is called "i". This routine
@@ -717,6 +753,136 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       }
     }
 
+    /**
+     * Recursively generates a tree, finding splits on histograms of the
+     * binned training data.
+     * 
+     * @param splitter the splitter for the binned data
+     * @param node the training instances at this node
+     * @param totalWeight the weight of the instances
+     * @param classProbs the class probabilities
+     * @param header the header of the data
+     * @param minNum the minimum number of instances in a leaf
+     * @param minVariance the minimum variance for a split in the numeric case
+     * @param depth the current depth of the tree
+     * @param maxDepth the maximum allowed depth of the tree
+     * @throws Exception if generation fails
+     */
+    protected void buildTree(HistogramSplitter splitter,
+      HistogramSplitter.NodeData node, double totalWeight,
+      double[] classProbs, Instances header, double minNum,
+      double minVariance, int depth, int maxDepth) throws Exception {
+
+      // Store structure of dataset and make space for potential info from
+      // pruning data
+      m_Info = header;
+      boolean numericClass = header.classAttribute().isNumeric();
+      if (numericClass) {
+        m_HoldOutDist = new double[2];
+      } else {
+        m_HoldOutDist = new double[header.numClasses()];
+      }
+
+      // Make leaf if there are no training instances
+      if (node.numInstances() == 0) {
+        if (numericClass) {
+          m_Distribution = new double[2];
+        } else {
+          m_Distribution = new double[header.numClasses()];
+        }
+        m_ClassProbs = null;
+        return;
+      }
+
+      double priorVar = 0;
+      if (numericClass) {
+        double[] sums = splitter.targetSums(node);
+        priorVar = singleVariance(sums[0], sums[1], sums[2]);
+      }
+
+      // Check if node doesn't contain enough instances, is pure
+      // or the maximum tree depth is reached
+      m_ClassProbs = classProbs.clone();
+      boolean leaf = (totalWeight < (2 * minNum))
+        || (!numericClass && Utils.eq(m_ClassProbs[Utils.maxIndex(m_ClassProbs)],
+          Utils.sum(m_ClassProbs)))
+        || (numericClass && ((priorVar / totalWeight) < minVariance))
+        || ((m_MaxDepth >= 0) && (depth >= maxDepth));
+
+      if (!leaf) {
+
+        // Find the best split on each attribute
+        double[] vals = new double[header.numAttributes()];
+        HistogramSplitter.Split[] splits =
+          new HistogramSplitter.Split[header.numAttributes()];
+        for (int i = 0; i < header.numAttributes(); i++) {
+          if (i != header.classIndex()) {
+            splits[i] = splitter.findSplit(node, i);
+            vals[i] = splits[i].getGain();
+          }
+        }
+
+        // Find best attribute
+        m_Attribute = Utils.maxIndex(vals);
+        HistogramSplitter.Split best = splits[m_Attribute];
+
+        // Check if there are at least two subsets with
+        // required minimum number of instances
+        int count = 0;
+        for (double weight : best.getSubsetWeights()) {
+          if (weight >= minNum) {
+            count++;
+          }
+        }
+
+        // Any useful split found?
+        if (Utils.gr(vals[m_Attribute], 0) && (count > 1)) {
+
+          // Split data
+          m_SplitPoint = best.getSplitPoint();
+          m_Prop = best.getProps();
+          HistogramSplitter.NodeData[] children = splitter.split(node, best);
+          node.discardRows();
+
+          // The histograms of all attributes are needed at each child, so
+          // compute the smaller children's and subtract for the largest
+          int[] atts = new int[header.numAttributes() - 1];
+          for (int i = 0, j = 0; i < header.numAttributes(); i++) {
+            if (i != header.classIndex()) {
+              atts[j++] = i;
+            }
+          }
+          splitter.prepareChildren(children, atts);
+
+          // Build successors
+          m_Successors = new Tree[children.length];
+          for (int i = 0; i < children.length; i++) {
+            m_Successors[i] = new Tree();
+            m_Successors[i].buildTree(splitter, children[i],
+              best.getSubsetWeights()[i], best.getDist()[i], header, minNum,
+              minVariance, depth + 1, maxDepth);
+            children[i].discardRows();
+          }
+        } else {
+          leaf = true;
+        }
+      }
+      if (leaf) {
+        m_Attribute = -1;
+      }
+
+      // Normalize class counts
+      if (!numericClass) {
+        m_Distribution = m_ClassProbs.clone();
+        doSmoothing();
+        Utils.normalize(m_ClassProbs);
+      } else {
+        m_Distribution = new double[2];
+        m_Distribution[0] = priorVar;
+        m_Distribution[1] = totalWeight;
+      }
+    }
+
     /**
      * Smoothes class probabilities stored at node.
      */
@@ -1388,6 +1554,12 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
   /** Whether to spread initial count across all values */
   protected boolean m_SpreadInitialCount = false;
 
+  /**
+   * The maximum number of bins of a numeric attribute if splits are found on
+   * histograms, 0 if they are found on the sorted values.
+   */
+  protected int m_MaxBins = 0;
+
   /**
    * Returns the tip text for this property
    * 
@@ -1633,6 +1805,41 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     m_SpreadInitialCount = newSpreadInitialCount;
   }
 
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBinsTipText() {
+    return "If greater than 0, the values of numeric attributes are quantised "
+      + "into at most this many bins (up to 255) before the tree is grown, and "
+      + "splits are found on histograms of the bins rather than the sorted "
+      + "values. 0 finds splits on the sorted values.";
+  }
+
+  /**
+   * Get the maximum number of bins of a numeric attribute.
+   * 
+   * @return the maximum number of bins, 0 if splits are found on the sorted
+   *         values
+   */
+  public int getMaxBins() {
+
+    return m_MaxBins;
+  }
+
+  /**
+   * Set the maximum number of bins of a numeric attribute.
+   * 
+   * @param newMaxBins the maximum number of bins, 0 to find splits on the
+   *          sorted values
+   */
+  public void setMaxBins(int newMaxBins) {
+
+    m_MaxBins = newMaxBins;
+  }
+
   /**
    * Lists the command-line options for this classifier.
    * 
@@ -1641,7 +1848,7 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
   @Override
   public Enumeration<Option> listOptions() {
 
-    Vector<Option> newVector = new Vector<Option>(8);
+    Vector<Option> newVector = new Vector<Option>(9);
 
     newVector.addElement(new Option(
       "\tSet minimum number of instances per leaf " + "(default 2).", "M", 1,
@@ -1663,6 +1870,11 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     newVector.addElement(new Option(
       "\tSpread initial count over all class values (i.e."
         + " don't use 1 per value)", "R", 0, "-R"));
+    newVector.addElement(new Option(
+      "\tThe maximum number of bins of a numeric attribute when splits\n"
+        + "\tare found on histograms, at most 255.\n"
+        + "\t(default 0 = splits are found on the sorted values)", "bins", 1,
+      "-bins <num>"));
 
     newVector.addAll(Collections.list(super.listOptions()));
 
@@ -1696,6 +1908,10 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     if (getSpreadInitialCount()) {
       options.add("-R");
     }
+    if (getMaxBins() > 0) {
+      options.add("-bins");
+      options.add("" + getMaxBins());
+    }
 
     Collections.addAll(options, super.getOptions());
 
@@ -1740,6 +1956,13 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
    *  Maximum tree depth (default -1, no maximum)
    * </pre>
    * 
+   * <pre>
+   * -bins &lt;num&gt;
+   *  The maximum number of bins of a numeric attribute when splits
+   *  are found on histograms, at most 255.
+   *  (default 0 = splits are found on the sorted values)
+   * </pre>
+   * 
    * <!-- options-end -->
    * 
    * @param options the list of options as an array of strings
@@ -1786,6 +2009,12 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       m_InitialCount = 0;
     }
     m_SpreadInitialCount = Utils.getFlag('R', options);
+    String binsString = Utils.getOption("bins", options);
+    if (binsString.length() != 0) {
+      m_MaxBins = Integer.parseInt(binsString);
+    } else {
+      m_MaxBins = 0;
+    }
 
     super.setOptions(options);
   }
@@ -1872,6 +2101,47 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     data = new Instances(data);
     data.deleteWithMissingClass();
 
+    buildClassifier(data, null, null);
+  }
+
+  /**
+   * Builds the classifier on a sample of a presorted dataset. The sorted
+   * indices at the root are obtained from the index rather than by sorting.
+   *
+   * @param index the presorted index of the dataset
+   * @param weights the weight of each instance in the sample
+   * @throws Exception if building fails
+   */
+  @Override
+  public void buildClassifier(PresortedIndex index, double[] weights)
+    throws Exception {
+
+    int[] rows = index.rows(weights);
+    Instances sample = index.sample(rows, weights);
+
+    // can classifier handle the data?
+    getCapabilities().testWithFail(sample);
+
+    // remove instances with missing class, the view keeps track of the
+    // positions in the sample
+    Instances data = new SubsetInstances(sample);
+    data.deleteWithMissingClass();
+
+    buildClassifier(data, index, rows);
+  }
+
+  /**
+   * Builds the tree on data without missing class values.
+   *
+   * @param data the data to train with, a view onto the sample if an index
+   *          is given
+   * @param index the presorted index, null if the data is to be sorted
+   * @param rows the positions of the instances of the sample in the index
+   * @throws Exception if building fails
+   */
+  protected void buildClassifier(Instances data, PresortedIndex index,
+    int[] rows) throws Exception {
+
     Random random = new Random(m_Seed);
 
     m_zeroR = null;
@@ -1897,12 +2167,30 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
       train = data;
     }
 
-    // Create array of sorted indices and weights
+    // Positions of the training instances in the index
+    int[] trainRows = null;
+    if (index != null) {
+      trainRows = new int[train.numInstances()];
+      for (int i = 0; i < trainRows.length; i++) {
+        trainRows[i] = rows[((SubsetInstances) train).parentIndex(i)];
+      }
+
+      // the tree accesses the training data a lot, so work on a copy
+      train = new Instances(train);
+    }
+
+    // Find splits on histograms if requested
+    HistogramSplitter splitter = null;
+    if (m_MaxBins > 0) {
+      splitter = HistogramSplitter.forData(train, index, m_MaxBins);
+    }
+
+    // Create array of sorted indices and weights, unless histograms are used
     int[][][] sortedIndices = new int[1][train.numAttributes()][0];
     double[][][] weights = new double[1][train.numAttributes()][0];
     double[] vals = new double[train.numInstances()];
     for (int j = 0; j < train.numAttributes(); j++) {
-      if (j != train.classIndex()) {
+      if ((j != train.classIndex()) && (splitter == null)) {
         weights[0][j] = new double[train.numInstances()];
         if (train.attribute(j).isNominal()) {
 
@@ -1929,11 +2217,15 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
         } else {
 
           // Sorted indices are computed for numeric attributes
-          for (int i = 0; i < train.numInstances(); i++) {
-            Instance inst = train.instance(i);
-            vals[i] = inst.value(j);
+          if (index != null) {
+            sortedIndices[0][j] = index.sort(j, trainRows);
+          } else {
+            for (int i = 0; i < train.numInstances(); i++) {
+              Instance inst = train.instance(i);
+              vals[i] = inst.value(j);
+            }
+            sortedIndices[0][j] = Utils.sort(vals);
           }
-          sortedIndices[0][j] = Utils.sort(vals);
           for (int i = 0; i < train.numInstances(); i++) {
             weights[0][j][i] = train.instance(sortedIndices[0][j][i]).weight();
           }
@@ -1965,9 +2257,21 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     }
 
     // Build tree
-    m_Tree.buildTree(sortedIndices, weights, train, totalWeight, classProbs,
-      new Instances(train, 0), m_MinNum, m_MinVarianceProp * trainVariance, 0,
-      m_MaxDepth);
+    if (splitter != null) {
+      int[] binRows = new int[train.numInstances()];
+      double[] binWeights = new double[train.numInstances()];
+      for (int i = 0; i < binRows.length; i++) {
+        binRows[i] = (trainRows != null) ? trainRows[i] : i;
+        binWeights[i] = train.instance(i).weight();
+      }
+      m_Tree.buildTree(splitter, splitter.root(binRows, binWeights),
+        totalWeight, classProbs, new Instances(train, 0), m_MinNum,
+        m_MinVarianceProp * trainVariance, 0, m_MaxDepth);
+    } else {
+      m_Tree.buildTree(sortedIndices, weights, train, totalWeight, classProbs,
+        new Instances(train, 0), m_MinNum, m_MinVarianceProp * trainVariance,
+        0, m_MaxDepth);
+    }
 
     // Insert pruning data and perform reduced error pruning
     if (!m_NoPruning) {
@@ -2164,6 +2468,32 @@ public class REPTree extends AbstractClassifier implements OptionHandler,
     return numNodes();
   }
 
+  /**
+   * Compiles the tree into flat node tables.
+   * 
+   * @return the compiled tree
+   * @throws Exception if the tree has not been built
+   */
+  @Override
+  public FlatForest flatten() throws Exception {
+
+    FlatForest.Builder builder;
+    if (m_zeroR != null) {
+
+      // a single leaf always has a distribution, so the class type is
+      // irrelevant
+      double[] dist = m_zeroR.distributionForInstance(null);
+      builder = new FlatForest.Builder(dist.length, false);
+      builder.setDistribution(builder.addTree(), dist);
+    } else if (m_Tree != null) {
+      builder = new FlatForest.Builder(m_Tree.m_Info);
+      m_Tree.flatten(builder, builder.addTree());
+    } else {
+      throw new Exception("No model built yet.");
+    }
+    return builder.build();
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -25,6 +25,7 @@ import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.meta.Bagging;
 import weka.core.Capabilities;
+import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
@@ -35,10 +36,16 @@ import weka.core.Utils;
 import weka.core.WekaException;
 import weka.gui.ProgrammaticProperty;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <!-- globalinfo-start --> Class for constructing a forest of random trees.<br>
@@ -100,6 +107,11 @@ import java.util.Vector;
  * -attribute-importance
  *  Compute and output attribute importance (mean impurity decrease method)
  * </pre>
+ *
+ * <pre>
+ * -presort
+ *  Sort the data once and reuse the order in all trees.
+ * </pre>
  * 
  * <pre>
  * -I &lt;num&gt;
@@ -160,6 +172,13 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -bins &lt;num&gt;
+ *  The maximum number of bins of a numeric attribute when splits
+ *  are found on histograms, at most 255.
+ *  (default 0 = splits are found on the sorted values)
+ * </pre>
+ * 
+ * <pre>
  * -output-debug-info
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -186,7 +205,7 @@ import java.util.Vector;
  * @author Richard Kirkby (rkirkby@cs.waikato.ac.nz)
  * @version $Revision$
  */
-public class RandomForest extends Bagging {
+public class RandomForest extends Bagging implements Flattenable {
 
   /** for serialization */
   static final long serialVersionUID = 1116839470751428698L;
@@ -194,6 +213,15 @@ public class RandomForest extends Bagging {
   /** True to compute attribute importance */
   protected boolean m_computeAttributeImportance;
 
+  /** The minimum number of instances per thread in batch prediction */
+  protected static final int BATCH_BLOCK_SIZE = 256;
+
+  /** The compiled trees for batch prediction, created when first needed */
+  protected transient FlatForest m_Flattened;
+
+  /** The trees that m_Flattened was compiled from */
+  protected transient Classifier[] m_FlattenedTrees;
+
   /**
    * The default number of iterations to perform.
    */
@@ -444,6 +472,39 @@ public class RandomForest extends Bagging {
     ((RandomTree) getClassifier()).setBreakTiesRandomly(newBreakTiesRandomly);
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBinsTipText() {
+    return ((RandomTree) getClassifier()).maxBinsTipText();
+  }
+
+  /**
+   * Get the maximum number of bins of a numeric attribute.
+   *
+   * @return the maximum number of bins, 0 if splits are found on the sorted
+   *         values
+   */
+  public int getMaxBins() {
+
+    return ((RandomTree) getClassifier()).getMaxBins();
+  }
+
+  /**
+   * Set the maximum number of bins of a numeric attribute. Combined with
+   * the presorted index, the data is quantised once for all trees.
+   *
+   * @param newMaxBins the maximum number of bins, 0 to find splits on the
+   *          sorted values
+   */
+  public void setMaxBins(int newMaxBins) {
+
+    ((RandomTree) getClassifier()).setMaxBins(newMaxBins);
+  }
+
   /**
    * Set debugging mode.
    *
@@ -487,6 +548,107 @@ public class RandomForest extends Bagging {
     ((RandomTree) getClassifier()).setSeed(s);
   }
 
+  /**
+   * Compiles the trees of the forest into flat node tables.
+   *
+   * @return the compiled forest
+   * @throws Exception if the forest has not been built
+   */
+  @Override
+  public FlatForest flatten() throws Exception {
+
+    if (m_Classifiers == null) {
+      throw new Exception("No model built yet.");
+    }
+    FlatForest.Builder builder = new FlatForest.Builder(m_data);
+    for (Classifier tree : m_Classifiers) {
+      ((RandomTree) tree).flatten(builder);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the compiled forest, compiling the trees if they have changed
+   * since it was last used.
+   *
+   * @return the compiled forest
+   * @throws Exception if the forest can't be compiled
+   */
+  protected synchronized FlatForest flattened() throws Exception {
+
+    if ((m_Flattened == null) || (m_FlattenedTrees != m_Classifiers)) {
+      m_Flattened = flatten();
+      m_FlattenedTrees = m_Classifiers;
+    }
+    return m_Flattened;
+  }
+
+  /**
+   * Returns true, as batch predictions are computed with the compiled
+   * forest.
+   *
+   * @return true
+   */
+  @Override
+  public boolean implementsMoreEfficientBatchPrediction() {
+    return true;
+  }
+
+  /**
+   * Computes the distributions for a batch of instances with the compiled
+   * forest, dividing the instances between the execution slots.
+   *
+   * @param insts the instances to get predictions for
+   * @return an array of probability distributions, one for each instance
+   * @throws Exception if a problem occurs
+   */
+  @Override
+  public double[][] distributionsForInstances(final Instances insts)
+    throws Exception {
+
+    final FlatForest forest = flattened();
+    final double[][] dists =
+      new double[insts.numInstances()][forest.numClasses()];
+    int numThreads = (m_numExecutionSlots == 0) ? Runtime.getRuntime()
+      .availableProcessors() : m_numExecutionSlots;
+    numThreads = Math.max(1, Math.min(numThreads, insts.numInstances()
+      / BATCH_BLOCK_SIZE));
+    if (numThreads == 1) {
+      forest.distributionsForInstances(insts, 0, insts.numInstances(), dists);
+      return dists;
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(numThreads);
+    try {
+      List<Future<Void>> results = new ArrayList<Future<Void>>();
+      for (int i = 0; i < numThreads; i++) {
+        final int from = (int) ((long) insts.numInstances() * i / numThreads);
+        final int to =
+          (int) ((long) insts.numInstances() * (i + 1) / numThreads);
+        results.add(pool.submit(new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            forest.distributionsForInstances(insts, from, to, dists);
+            return null;
+          }
+        }));
+      }
+      for (Future<Void> result : results) {
+        try {
+          result.get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof Exception) {
+            throw (Exception) e.getCause();
+          }
+          throw e;
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return dists;
+  }
+
   /**
    * Returns description of the bagged classifier.
    *
@@ -607,6 +769,10 @@ public class RandomForest extends Bagging {
       "\tCompute and output attribute importance (mean impurity decrease "
         + "method)", "attribute-importance", 0, "-attribute-importance"));
 
+    newVector.addElement(new Option(
+      "\tSort the data once and reuse the order in all trees.", "presort", 0,
+      "-presort"));
+
     newVector.addElement(new Option("\tNumber of iterations (i.e., the number of trees in the random forest).\n"
       + "\t(current value " + getNumIterations() + ")", "I", 1, "-I <num>"));
 
@@ -655,6 +821,10 @@ public class RandomForest extends Bagging {
       result.add("-attribute-importance");
     }
 
+    if (getUsePresortedIndex()) {
+      result.add("-presort");
+    }
+
     result.add("-I");
     result.add("" + getNumIterations());
 
@@ -712,6 +882,11 @@ public class RandomForest extends Bagging {
    * -attribute-importance
    *  Compute and output attribute importance (mean impurity decrease method)
    * </pre>
+   *
+   * <pre>
+   * -presort
+   *  Sort the data once and reuse the order in all trees.
+   * </pre>
    * 
    * <pre>
    * -I &lt;num&gt;
@@ -772,6 +947,13 @@ public class RandomForest extends Bagging {
    * </pre>
    * 
    * <pre>
+   * -bins &lt;num&gt;
+   *  The maximum number of bins of a numeric attribute when splits
+   *  are found on histograms, at most 255.
+   *  (default 0 = splits are found on the sorted values)
+   * </pre>
+   * 
+   * <pre>
    * -output-debug-info
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -821,6 +1003,8 @@ public class RandomForest extends Bagging {
     setComputeAttributeImportance(Utils
       .getFlag("attribute-importance", options));
 
+    setUsePresortedIndex(Utils.getFlag("presort", options));
+
     String iterations = Utils.getOption('I', options);
     if (iterations.length() != 0) {
       setNumIterations(Integer.parseInt(iterations));
@@ -23,6 +23,7 @@ package weka.classifiers.trees;
 
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
+import weka.classifiers.PresortedIndexHandler;
 import weka.core.Attribute;
 import weka.core.Capabilities;
 import weka.core.Capabilities.Capability;
@@ -33,13 +34,16 @@ import weka.core.Instances;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.PartitionGenerator;
+import weka.core.PresortedIndex;
 import weka.core.Randomizable;
 import weka.core.RevisionUtils;
+import weka.core.SubsetInstances;
 import weka.core.Utils;
 import weka.core.WeightedInstancesHandler;
 import weka.gui.ProgrammaticProperty;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.LinkedList;
@@ -104,6 +108,13 @@ import java.util.Vector;
  * </pre>
  * 
  * <pre>
+ * -bins &lt;num&gt;
+ *  The maximum number of bins of a numeric attribute when splits
+ *  are found on histograms, at most 255.
+ *  (default 0 = splits are found on the sorted values)
+ * </pre>
+ * 
+ * <pre>
  * -output-debug-info
  *  If set, classifier is run in debug mode and
  *  may output additional info to the console
@@ -127,11 +138,18 @@ import java.util.Vector;
  * @version $Revision$
  */
 public class RandomTree extends AbstractClassifier implements OptionHandler,
-  WeightedInstancesHandler, Randomizable, Drawable, PartitionGenerator {
+  WeightedInstancesHandler, Randomizable, Drawable, PartitionGenerator,
+  PresortedIndexHandler, Flattenable {
 
   /** for serialization */
   private static final long serialVersionUID = -9051119597407396024L;
 
+  /**
+   * The minimum number of instances at a node for using the presorted index,
+   * smaller nodes are sorted directly.
+   */
+  protected static final int MIN_PRESORTED_INSTANCES = 64;
+
   /** The Tree object */
   protected Tree m_Tree = null;
 
@@ -159,6 +177,12 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
   /** Whether to break ties randomly. */
   protected boolean m_BreakTiesRandomly = false;
 
+  /**
+   * The maximum number of bins of a numeric attribute if splits are found on
+   * histograms, 0 if they are found on the sorted values.
+   */
+  protected int m_MaxBins = 0;
+
   /** a ZeroR model in case no model can be built from the data */
   protected Classifier m_zeroR;
 
@@ -177,6 +201,24 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
    */
   protected double[][] m_impurityDecreasees;
 
+  /** The presorted index of the data, only kept while building */
+  protected transient PresortedIndex m_Index;
+
+  /**
+   * For each instance of the index, the mark of the last node whose data was
+   * found to contain it, only kept while building
+   */
+  protected transient int[] m_Marks;
+
+  /**
+   * For each instance of the index, its position in the data of the node that
+   * marked it last, only kept while building
+   */
+  protected transient int[] m_Positions;
+
+  /** The number of marks handed out so far */
+  protected transient int m_NumMarks;
+
   /**
    * Returns a string describing classifier
    * 
@@ -468,6 +510,41 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     m_BreakTiesRandomly = newBreakTiesRandomly;
   }
 
+  /**
+   * Returns the tip text for this property
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String maxBinsTipText() {
+    return "If greater than 0, the values of numeric attributes are quantised "
+      + "into at most this many bins (up to 255) before the tree is grown, and "
+      + "splits are found on histograms of the bins, which is much faster for "
+      + "large datasets. 0 finds splits on the sorted values.";
+  }
+
+  /**
+   * Get the maximum number of bins of a numeric attribute.
+   *
+   * @return the maximum number of bins, 0 if splits are found on the sorted
+   *         values
+   */
+  public int getMaxBins() {
+
+    return m_MaxBins;
+  }
+
+  /**
+   * Set the maximum number of bins of a numeric attribute.
+   *
+   * @param newMaxBins the maximum number of bins, 0 to find splits on the
+   *          sorted values
+   */
+  public void setMaxBins(int newMaxBins) {
+
+    m_MaxBins = newMaxBins;
+  }
+
   /**
    * Lists the command-line options for this classifier.
    * 
@@ -505,6 +582,11 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       "-U"));
     newVector.addElement(new Option("\t" + breakTiesRandomlyTipText(), "B", 0,
       "-B"));
+    newVector.addElement(new Option(
+      "\tThe maximum number of bins of a numeric attribute when splits\n"
+        + "\tare found on histograms, at most 255.\n"
+        + "\t(default 0 = splits are found on the sorted values)", "bins", 1,
+      "-bins <num>"));
     newVector.addAll(Collections.list(super.listOptions()));
 
     return newVector.elements();
@@ -549,6 +631,11 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       result.add("-B");
     }
 
+    if (getMaxBins() > 0) {
+      result.add("-bins");
+      result.add("" + getMaxBins());
+    }
+
     Collections.addAll(result, super.getOptions());
 
     return result.toArray(new String[result.size()]);
@@ -607,6 +694,13 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
    * </pre>
    * 
    * <pre>
+   * -bins &lt;num&gt;
+   *  The maximum number of bins of a numeric attribute when splits
+   *  are found on histograms, at most 255.
+   *  (default 0 = splits are found on the sorted values)
+   * </pre>
+   * 
+   * <pre>
    * -output-debug-info
    *  If set, classifier is run in debug mode and
    *  may output additional info to the console
@@ -677,6 +771,13 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
 
     setBreakTiesRandomly(Utils.getFlag('B', options));
 
+    tmpStr = Utils.getOption("bins", options);
+    if (tmpStr.length() != 0) {
+      setMaxBins(Integer.parseInt(tmpStr));
+    } else {
+      setMaxBins(0);
+    }
+
     super.setOptions(options);
   }
 
@@ -713,6 +814,55 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
   @Override
   public void buildClassifier(Instances data) throws Exception {
 
+    // can classifier handle the data?
+    getCapabilities().testWithFail(data);
+
+    // remove instances with missing class
+    data = new Instances(data);
+    data.deleteWithMissingClass();
+
+    buildClassifier(data, null, null);
+  }
+
+  /**
+   * Builds the classifier on a sample of a presorted dataset. Nodes obtain
+   * the order of their data on an attribute from an ancestor or the index
+   * where that is cheaper than sorting.
+   *
+   * @param index the presorted index of the dataset
+   * @param weights the weight of each instance in the sample
+   * @throws Exception if something goes wrong or the data doesn't fit
+   */
+  @Override
+  public void buildClassifier(PresortedIndex index, double[] weights)
+    throws Exception {
+
+    int[] rows = index.rows(weights);
+    Instances sample = index.sample(rows, weights);
+
+    // can classifier handle the data?
+    getCapabilities().testWithFail(sample);
+
+    // remove instances with missing class, positions in the sample remain
+    // available through the view
+    Instances data = new SubsetInstances(sample);
+    data.deleteWithMissingClass();
+
+    buildClassifier(data, index, rows);
+  }
+
+  /**
+   * Builds the tree once instances with missing class have been removed.
+   *
+   * @param data the data to train with, a view onto the sample if an index
+   *          is given
+   * @param index the presorted index, null if the data is to be sorted
+   * @param rows the positions of the instances of the sample in the index
+   * @throws Exception if something goes wrong
+   */
+  protected void buildClassifier(Instances data, PresortedIndex index,
+    int[] rows) throws Exception {
+
     if (m_computeImpurityDecreases) {
       m_impurityDecreasees = new double[data.numAttributes()][2];
     }
@@ -725,13 +875,6 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       m_KValue = (int) Utils.log2(data.numAttributes() - 1) + 1;
     }
 
-    // can classifier handle the data?
-    getCapabilities().testWithFail(data);
-
-    // remove instances with missing class
-    data = new Instances(data);
-    data.deleteWithMissingClass();
-
     // only class? -> build ZeroR model
     if (data.numAttributes() == 1) {
       System.err
@@ -796,8 +939,45 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     // Build tree
     m_Tree = new Tree();
     m_Info = new Instances(data, 0);
-    m_Tree.buildTree(train, classProbs, attIndicesWindow, totalWeight, rand, 0,
-      m_MinVarianceProp * trainVariance);
+    if (index != null) {
+      m_Index = index;
+      m_Marks = new int[index.getData().numInstances()];
+      m_Positions = new int[m_Marks.length];
+      m_NumMarks = 0;
+      m_Tree.m_Rows = new int[train.numInstances()];
+      for (int i = 0; i < m_Tree.m_Rows.length; i++) {
+        m_Tree.m_Rows[i] = rows[((SubsetInstances) train).parentIndex(i)];
+      }
+
+      // growing the tree is faster on a standard copy than on a view
+      train = new Instances(train);
+    }
+    HistogramSplitter splitter = null;
+    if (m_MaxBins > 0) {
+      splitter = HistogramSplitter.forData(train, index, m_MaxBins);
+    }
+    try {
+      if (splitter != null) {
+        int[] binRows = new int[train.numInstances()];
+        double[] weights = new double[train.numInstances()];
+        for (int i = 0; i < binRows.length; i++) {
+          binRows[i] = (index != null) ? m_Tree.m_Rows[i] : i;
+          weights[i] = train.instance(i).weight();
+        }
+        m_Tree.discardRows();
+        m_Tree.buildTree(splitter, splitter.root(binRows, weights),
+          classProbs, attIndicesWindow, totalWeight, rand, 0,
+          m_MinVarianceProp * trainVariance);
+      } else {
+        m_Tree.buildTree(train, classProbs, attIndicesWindow, totalWeight,
+          rand, 0, m_MinVarianceProp * trainVariance);
+      }
+    } finally {
+      m_Tree.discardRows();
+      m_Index = null;
+      m_Marks = null;
+      m_Positions = null;
+    }
 
     // Backfit if required
     if (backfit != null) {
@@ -962,6 +1142,39 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
     return m_Tree.numNodes();
   }
 
+  /**
+   * Compiles the tree into flat node tables.
+   * 
+   * @return the compiled tree
+   * @throws Exception if the tree has not been built
+   */
+  @Override
+  public FlatForest flatten() throws Exception {
+
+    if (m_Info == null) {
+      throw new Exception("No model built yet.");
+    }
+    FlatForest.Builder builder = new FlatForest.Builder(m_Info);
+    flatten(builder);
+    return builder.build();
+  }
+
+  /**
+   * Adds the tree to the given builder.
+   * 
+   * @param builder the builder
+   * @throws Exception if the tree can't be added
+   */
+  protected void flatten(FlatForest.Builder builder) throws Exception {
+
+    int root = builder.addTree();
+    if (m_zeroR != null) {
+      builder.setDistribution(root, m_zeroR.distributionForInstance(null));
+    } else {
+      m_Tree.flatten(builder, root);
+    }
+  }
+
   /**
    * The inner class for dealing with the tree.
    */
@@ -993,6 +1206,27 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
      */
     protected double[] m_Distribution = null;
 
+    /**
+     * The positions in the presorted index of the instances at this node,
+     * only kept while building and only if an index is used.
+     */
+    protected transient int[] m_Rows;
+
+    /**
+     * The positions of the instances at this node, sorted on each attribute
+     * the data at this node has been sorted on, only kept while building.
+     */
+    protected transient int[][] m_SortedRows;
+
+    /** The mark of this node in the index, 0 if not marked yet. */
+    protected transient int m_Mark;
+
+    /** The parent of this node, only kept while building. */
+    protected transient Tree m_Parent;
+
+    /** The positions of the instances in the subsets created by splitData(). */
+    protected transient int[][] m_SubsetRows;
+
     /**
      * Backfits the given data into the tree.
      */
@@ -1101,6 +1335,44 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       }
     }
 
+    /**
+     * Describes the subtree below this node to the given builder, which
+     * reproduces distributionForInstance(): empty nodes have no distribution
+     * unless unclassified instances are allowed.
+     * 
+     * @param builder the builder
+     * @param node the index of this node in the builder
+     */
+    protected void flatten(FlatForest.Builder builder, int node) {
+
+      if (m_ClassDistribution != null) {
+        double[] dist = m_ClassDistribution.clone();
+        if (m_Info.classAttribute().isNominal() && (Utils.sum(dist) > 0)) {
+          Utils.normalize(dist);
+        }
+        builder.setDistribution(node, dist);
+      } else if (getAllowUnclassifiedInstances()) {
+        double[] dist = new double[m_Info.numClasses()];
+        if (m_Info.classAttribute().isNumeric()) {
+          dist[0] = Utils.missingValue();
+        }
+        builder.setDistribution(node, dist);
+      }
+
+      if (m_Attribute > -1) {
+        if (m_Info.attribute(m_Attribute).isNominal()) {
+          builder.setNominalSplit(node, m_Attribute, null);
+        } else {
+          builder.setNumericSplit(node, m_Attribute, m_SplitPoint);
+        }
+        int first = builder.addChildren(node, m_Successors.length);
+        for (int i = 0; i < m_Successors.length; i++) {
+          builder.setWeight(first + i, m_Prop[i]);
+          m_Successors[i].flatten(builder, first + i);
+        }
+      }
+    }
+
     /**
      * Outputs one node for graph.
      * 
@@ -1390,6 +1662,12 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       int[] attIndicesWindow, double totalWeight, Random random, int depth,
       double minVariance) throws Exception {
 
+      // Stop using the presorted index if sorting is cheap enough
+      if ((m_Rows != null)
+        && (data.numInstances() < MIN_PRESORTED_INSTANCES)) {
+        m_Rows = null;
+      }
+
       // Make leaf if there are no training instances
       if (data.numInstances() == 0) {
         m_Attribute = -1;
@@ -1526,10 +1804,17 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
 
         for (int i = 0; i < bestDists.length; i++) {
           m_Successors[i] = new Tree();
+          if (m_SubsetRows != null) {
+            m_Successors[i].m_Parent = this;
+            m_Successors[i].m_Rows = m_SubsetRows[i];
+            m_SubsetRows[i] = null;
+          }
           m_Successors[i].buildTree(subsets[i], bestDists[i], attIndicesWindow,
             data.classAttribute().isNominal() ? 0 : attTotalSubsetWeights[i],
             random, depth + 1, minVariance);
+          m_Successors[i].discardRows();
         }
+        m_SubsetRows = null;
 
         // If all successors are non-empty, we don't need to store the class
         // distribution
@@ -1556,6 +1841,146 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
       }
     }
 
+    /**
+     * Recursively generates a tree, finding splits on histograms of the
+     * binned training data.
+     * 
+     * @param splitter the splitter for the binned data
+     * @param node the training instances at this node
+     * @param classProbs the class distribution
+     * @param attIndicesWindow the attribute window to choose attributes from
+     * @param totalWeight the weight of the instances in the numeric case
+     * @param random random number generator for choosing random attributes
+     * @param depth the current depth
+     * @param minVariance the minimum variance for a split in the numeric case
+     * @throws Exception if generation fails
+     */
+    protected void buildTree(HistogramSplitter splitter,
+      HistogramSplitter.NodeData node, double[] classProbs,
+      int[] attIndicesWindow, double totalWeight, Random random, int depth,
+      double minVariance) throws Exception {
+
+      boolean numericClass = m_Info.classAttribute().isNumeric();
+
+      // Make leaf if there are no training instances
+      if (node.numInstances() == 0) {
+        m_Attribute = -1;
+        m_ClassDistribution = null;
+        m_Prop = null;
+
+        if (numericClass) {
+          m_Distribution = new double[2];
+        }
+        return;
+      }
+
+      double priorVar = 0;
+      if (numericClass) {
+        double[] sums = splitter.targetSums(node);
+        priorVar = RandomTree.singleVariance(sums[0], sums[1], sums[2]);
+      } else {
+        totalWeight = Utils.sum(classProbs);
+      }
+
+      // Check if node doesn't contain enough instances or is pure
+      // or maximum depth reached
+      if (totalWeight < 2 * m_MinNum
+        || (!numericClass && Utils.eq(classProbs[Utils.maxIndex(classProbs)],
+          Utils.sum(classProbs)))
+        || (numericClass && priorVar / totalWeight < minVariance)
+        || ((getMaxDepth() > 0) && (depth >= getMaxDepth()))) {
+
+        // Make leaf
+        m_Attribute = -1;
+        m_ClassDistribution = classProbs.clone();
+        if (numericClass) {
+          m_Distribution = new double[2];
+          m_Distribution[0] = priorVar;
+          m_Distribution[1] = totalWeight;
+        }
+
+        m_Prop = null;
+        return;
+      }
+
+      // Investigate K random attributes
+      double val = -Double.MAX_VALUE;
+      HistogramSplitter.Split best = null;
+      int bestIndex = 0;
+      int windowSize = attIndicesWindow.length;
+      int k = m_KValue;
+      boolean gainFound = false;
+      while ((windowSize > 0) && (k-- > 0 || !gainFound)) {
+
+        int chosenIndex = random.nextInt(windowSize);
+        int attIndex = attIndicesWindow[chosenIndex];
+
+        // shift chosen attIndex out of window
+        attIndicesWindow[chosenIndex] = attIndicesWindow[windowSize - 1];
+        attIndicesWindow[windowSize - 1] = attIndex;
+        windowSize--;
+
+        HistogramSplitter.Split split = splitter.findSplit(node, attIndex);
+        double currVal = split.getGain();
+
+        if (Utils.gr(currVal, 0)) {
+          gainFound = true;
+        }
+
+        if ((currVal > val)
+          || ((!getBreakTiesRandomly()) && (currVal == val) && (attIndex < bestIndex))) {
+          val = currVal;
+          bestIndex = attIndex;
+          best = split;
+        }
+      }
+
+      // Find best attribute
+      m_Attribute = bestIndex;
+
+      // Any useful split found?
+      if (Utils.gr(val, 0)) {
+        if (m_computeImpurityDecreases) {
+          m_impurityDecreasees[m_Attribute][0] += val;
+          m_impurityDecreasees[m_Attribute][1]++;
+        }
+
+        // Build subtrees
+        m_SplitPoint = best.getSplitPoint();
+        m_Prop = best.getProps();
+        double[][] bestDists = best.getDist();
+        HistogramSplitter.NodeData[] children = splitter.split(node, best);
+        node.discardRows();
+        m_Successors = new Tree[bestDists.length];
+        for (int i = 0; i < bestDists.length; i++) {
+          m_Successors[i] = new Tree();
+          m_Successors[i].buildTree(splitter, children[i], bestDists[i],
+            attIndicesWindow, numericClass ? best.getSubsetWeights()[i] : 0,
+            random, depth + 1, minVariance);
+          children[i].discardRows();
+        }
+
+        // If all successors are non-empty, we don't need to store the class
+        // distribution
+        for (Tree successor : m_Successors) {
+          if (successor.m_ClassDistribution == null) {
+            m_ClassDistribution = classProbs.clone();
+            break;
+          }
+        }
+      } else {
+
+        // Make leaf
+        m_Attribute = -1;
+        m_ClassDistribution = classProbs.clone();
+        if (numericClass) {
+          m_Distribution = new double[2];
+          m_Distribution[0] = priorVar;
+          m_Distribution[1] = totalWeight;
+        }
+      }
+    }
+
     /**
      * Computes size of the tree.
      * 
@@ -1589,6 +2014,13 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
         subsets[i] = new Instances(data, data.numInstances());
       }
 
+      // Keep track of positions in the index if necessary
+      int[] numRows = null;
+      if (m_Rows != null) {
+        m_SubsetRows = new int[m_Prop.length][data.numInstances()];
+        numRows = new int[m_Prop.length];
+      }
+
       // Go through the data
       for (int i = 0; i < data.numInstances(); i++) {
 
@@ -1604,6 +2036,9 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
               Instance copy = (Instance) inst.copy();
               copy.setWeight(m_Prop[k] * inst.weight());
               subsets[k].add(copy);
+              if (m_Rows != null) {
+                m_SubsetRows[k][numRows[k]++] = m_Rows[i];
+              }
             }
           }
 
@@ -1612,34 +2047,138 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
         }
 
         // Do we have a nominal attribute?
+        int subset;
         if (data.attribute(m_Attribute).isNominal()) {
-          subsets[(int) inst.value(m_Attribute)].add(inst);
+          subset = (int) inst.value(m_Attribute);
+        } else if (data.attribute(m_Attribute).isNumeric()) {
+          subset = (inst.value(m_Attribute) < m_SplitPoint) ? 0 : 1;
+        } else {
 
-          // Proceed to next instance
-          continue;
+          // Else throw an exception
+          throw new IllegalArgumentException("Unknown attribute type");
         }
-
-        // Do we have a numeric attribute?
-        if (data.attribute(m_Attribute).isNumeric()) {
-          subsets[(inst.value(m_Attribute) < m_SplitPoint) ? 0 : 1].add(inst);
-
-          // Proceed to next instance
-          continue;
+        subsets[subset].add(inst);
+        if (m_Rows != null) {
+          m_SubsetRows[subset][numRows[subset]++] = m_Rows[i];
         }
-
-        // Else throw an exception
-        throw new IllegalArgumentException("Unknown attribute type");
       }
 
       // Save memory
       for (int i = 0; i < m_Prop.length; i++) {
         subsets[i].compactify();
+        if (m_Rows != null) {
+          m_SubsetRows[i] = Arrays.copyOf(m_SubsetRows[i], numRows[i]);
+        }
       }
 
       // Return the subsets
       return subsets;
     }
 
+    /**
+     * Releases the information about positions in the presorted index once
+     * this node has been built.
+     */
+    protected void discardRows() {
+
+      m_Rows = null;
+      m_SortedRows = null;
+      m_SubsetRows = null;
+      m_Parent = null;
+    }
+
+    /**
+     * Sorts the data at this node on a numeric attribute. If a presorted
+     * index is used, the order is obtained by filtering the order of the
+     * closest ancestor that has been sorted on the attribute, or the order of
+     * the whole index, unless that holds so many more instances that sorting
+     * is cheaper.
+     *
+     * @param data the data at this node
+     * @param att the index of the attribute
+     */
+    protected void sortData(Instances data, int att) {
+
+      if (m_Rows == null) {
+        data.sort(att);
+      } else {
+        sortRows(data, att);
+      }
+    }
+
+    /**
+     * Sorts the data at this node and the positions of its instances in the
+     * presorted index on a numeric attribute, and remembers the sorted
+     * positions for the descendants of this node.
+     *
+     * @param data the data at this node
+     * @param att the index of the attribute
+     */
+    protected void sortRows(Instances data, int att) {
+
+      int[] candidate = null;
+      for (Tree node = m_Parent; node != null; node = node.m_Parent) {
+        if ((node.m_SortedRows != null) && (node.m_SortedRows[att] != null)) {
+          candidate = node.m_SortedRows[att];
+          break;
+        }
+      }
+      if (candidate == null) {
+        candidate = m_Index.order(att);
+      }
+
+      int n = data.numInstances();
+      int[] order;
+      if (candidate.length <= 2 * n * Utils.log2(n)) {
+        if (m_Mark == 0) {
+          m_Mark = ++m_NumMarks;
+          for (int i = 0; i < n; i++) {
+            m_Marks[m_Rows[i]] = m_Mark;
+            m_Positions[m_Rows[i]] = i;
+          }
+        }
+        order = new int[n];
+        int count = 0;
+        for (int row : candidate) {
+          if (m_Marks[row] == m_Mark) {
+            order[count++] = m_Positions[row];
+          }
+        }
+      } else {
+        double[] vals = new double[n];
+        for (int i = 0; i < n; i++) {
+          vals[i] = data.instance(i).value(att);
+        }
+        order = Utils.sort(vals);
+      }
+
+      // Apply the order to the data and the positions, cycle by cycle
+      boolean[] placed = new boolean[n];
+      for (int i = 0; i < n; i++) {
+        int j = i;
+        while (!placed[j]) {
+          placed[j] = true;
+          if (order[j] != i) {
+            data.swap(j, order[j]);
+            int row = m_Rows[j];
+            m_Rows[j] = m_Rows[order[j]];
+            m_Rows[order[j]] = row;
+          }
+          j = order[j];
+        }
+      }
+      if (m_Mark != 0) {
+        for (int i = 0; i < n; i++) {
+          m_Positions[m_Rows[i]] = i;
+        }
+      }
+
+      if (m_SortedRows == null) {
+        m_SortedRows = new int[data.numAttributes()][];
+      }
+      m_SortedRows[att] = m_Rows.clone();
+    }
+
     /**
      * Computes numeric class distribution for an attribute
      * 
@@ -1702,7 +2241,7 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
         double[] currSumOfWeights = new double[2];
 
         // Sort data
-        data.sort(att);
+        sortData(data, att);
 
         // Move all instances into second subset
         for (int j = 0; j < data.numInstances(); j++) {
@@ -1863,7 +2402,7 @@ public class RandomTree extends AbstractClassifier implements OptionHandler,
         dist = new double[2][data.numClasses()];
 
         // Sort data
-        data.sort(att);
+        sortData(data, att);
 
         // Move all instances into second subset
         for (int j = 0; j < data.numInstances(); j++) {
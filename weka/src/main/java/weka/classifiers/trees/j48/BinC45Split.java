@@ -93,6 +93,21 @@ public class BinC45Split extends ClassifierSplitModel {
   @Override
   public void buildClassifier(Instances trainInstances) throws Exception {
 
+    buildClassifier(trainInstances, false);
+  }
+
+  /**
+   * Creates a C4.5-type split on the given data, skipping the sort for a
+   * numeric attribute if the data has already been sorted on it.
+   * 
+   * @param trainInstances the training data
+   * @param isSorted true if the data has been sorted on the attribute
+   * @exception Exception if something goes wrong
+   */
+  @Override
+  public void buildClassifier(Instances trainInstances, boolean isSorted)
+    throws Exception {
+
     // Initialize the remaining instance variables.
     m_numSubsets = 0;
     m_splitPoint = Double.MAX_VALUE;
@@ -104,7 +119,9 @@ public class BinC45Split extends ClassifierSplitModel {
     if (trainInstances.attribute(m_attIndex).isNominal()) {
       handleEnumeratedAttribute(trainInstances);
     } else {
-      trainInstances.sort(trainInstances.attribute(m_attIndex));
+      if (!isSorted) {
+        trainInstances.sort(trainInstances.attribute(m_attIndex));
+      }
       handleNumericAttribute(trainInstances);
     }
   }
@@ -127,17 +127,23 @@ public class C45ModelSelection extends ModelSelection {
       currentModel = new C45Split[data.numAttributes()];
       sumOfWeights = data.sumOfWeights();
 
+      // Get models for each attribute apart from the class attribute.
+      for (i = 0; i < data.numAttributes(); i++) {
+        if (i != (data).classIndex()) {
+          currentModel[i] = new C45Split(i, m_minNoObj, sumOfWeights,
+            m_useMDLcorrection);
+        } else {
+          currentModel[i] = null;
+        }
+      }
+      buildSplitModels(data, currentModel);
+
       // For each attribute.
       for (i = 0; i < data.numAttributes(); i++) {
 
         // Apart from class attribute.
         if (i != (data).classIndex()) {
 
-          // Get models for current attribute.
-          currentModel[i] = new C45Split(i, m_minNoObj, sumOfWeights,
-            m_useMDLcorrection);
-          currentModel[i].buildClassifier(data);
-
           // Check if useful split for current attribute
           // exists and check for enumerated attributes with
           // a lot of values.
@@ -154,8 +160,6 @@ public class C45ModelSelection extends ModelSelection {
               validModels++;
             }
           }
-        } else {
-          currentModel[i] = null;
         }
       }
 
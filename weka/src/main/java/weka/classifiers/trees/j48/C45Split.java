@@ -100,6 +100,21 @@ public class C45Split extends ClassifierSplitModel {
   @Override
   public void buildClassifier(Instances trainInstances) throws Exception {
 
+    buildClassifier(trainInstances, false);
+  }
+
+  /**
+   * Creates a C4.5-type split on the given data, skipping the sort for a
+   * numeric attribute if the data has already been sorted on it.
+   * 
+   * @param trainInstances the training data
+   * @param isSorted true if the data has been sorted on the attribute
+   * @exception Exception if something goes wrong
+   */
+  @Override
+  public void buildClassifier(Instances trainInstances, boolean isSorted)
+    throws Exception {
+
     // Initialize the remaining instance variables.
     m_numSubsets = 0;
     m_splitPoint = Double.MAX_VALUE;
@@ -115,7 +130,9 @@ public class C45Split extends ClassifierSplitModel {
     } else {
       m_complexityIndex = 2;
       m_index = 0;
-      trainInstances.sort(trainInstances.attribute(m_attIndex));
+      if (!isSorted) {
+        trainInstances.sort(trainInstances.attribute(m_attIndex));
+      }
       handleNumericAttribute(trainInstances);
     }
   }
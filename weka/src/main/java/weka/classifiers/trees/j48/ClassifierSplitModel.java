@@ -67,6 +67,23 @@ public abstract class ClassifierSplitModel
    * @exception Exception if something goes wrong
    */
   public abstract void buildClassifier(Instances instances) throws Exception;
+
+  /**
+   * Builds the classifier split model for the given set of instances, which
+   * may already be sorted on the model's attribute. Models that sort the data
+   * themselves can then skip sorting it. The default implementation ignores
+   * the flag.
+   *
+   * @param instances the instances
+   * @param isSorted true if the instances have been sorted on the attribute
+   *          with <code>Instances.sort</code>
+   * @exception Exception if something goes wrong
+   */
+  public void buildClassifier(Instances instances, boolean isSorted)
+    throws Exception {
+
+    buildClassifier(instances);
+  }
   
   /**
    * Checks if generated model is valid.
@@ -24,7 +24,10 @@ package weka.classifiers.trees.j48;
 import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinTask;
 
+import weka.classifiers.trees.FlatForest;
 import weka.core.Capabilities;
 import weka.core.CapabilitiesHandler;
 import weka.core.Drawable;
@@ -167,11 +170,16 @@ public class ClassifierTree implements Drawable, Serializable, RevisionHandler,
     m_localModel = m_toSelectModel.selectModel(data);
     if (m_localModel.numSubsets() > 1) {
       localInstances = m_localModel.split(data);
+      boolean fork = m_toSelectModel.canFork(data.numInstances());
       data = null;
       m_sons = new ClassifierTree[m_localModel.numSubsets()];
-      for (int i = 0; i < m_sons.length; i++) {
-        m_sons[i] = getNewTree(localInstances[i]);
-        localInstances[i] = null;
+      if (fork) {
+        buildSons(localInstances, null);
+      } else {
+        for (int i = 0; i < m_sons.length; i++) {
+          m_sons[i] = getNewTree(localInstances[i]);
+          localInstances[i] = null;
+        }
       }
     } else {
       m_isLeaf = true;
@@ -207,13 +215,18 @@ public class ClassifierTree implements Drawable, Serializable, RevisionHandler,
     if (m_localModel.numSubsets() > 1) {
       localTrain = m_localModel.split(train);
       localTest = m_localModel.split(test);
+      boolean fork = m_toSelectModel.canFork(train.numInstances());
       train = null;
       test = null;
       m_sons = new ClassifierTree[m_localModel.numSubsets()];
-      for (i = 0; i < m_sons.length; i++) {
-        m_sons[i] = getNewTree(localTrain[i], localTest[i]);
-        localTrain[i] = null;
-        localTest[i] = null;
+      if (fork) {
+        buildSons(localTrain, localTest);
+      } else {
+        for (i = 0; i < m_sons.length; i++) {
+          m_sons[i] = getNewTree(localTrain[i], localTest[i]);
+          localTrain[i] = null;
+          localTest[i] = null;
+        }
       }
     } else {
       m_isLeaf = true;
@@ -225,6 +238,47 @@ public class ClassifierTree implements Drawable, Serializable, RevisionHandler,
     }
   }
 
+  /**
+   * Builds the sons of the node concurrently, in the pool the tree is built
+   * in. Each son is built on its own subsets of the data, so the result is the
+   * same as when building them one after the other.
+   * 
+   * @param localTrain the training data for each son
+   * @param localTest the pruning data for each son, null if there is none
+   * @throws Exception if a son can't be built
+   */
+  protected void buildSons(Instances[] localTrain, Instances[] localTest)
+    throws Exception {
+
+    ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[m_sons.length];
+    for (int i = 0; i < m_sons.length; i++) {
+      final int son = i;
+      final Instances train = localTrain[i];
+      final Instances test = (localTest == null) ? null : localTest[i];
+      tasks[i] = ForkJoinTask.adapt(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          if (test == null) {
+            m_sons[son] = getNewTree(train);
+          } else {
+            m_sons[son] = getNewTree(train, test);
+          }
+          return null;
+        }
+      });
+      localTrain[i] = null;
+      if (localTest != null) {
+        localTest[i] = null;
+      }
+    }
+    for (int i = tasks.length - 1; i >= 0; i--) {
+      tasks[i].fork();
+    }
+    for (ForkJoinTask<?> task : tasks) {
+      ModelSelection.join(task);
+    }
+  }
+
   /**
    * Classifies an instance.
    * 
@@ -763,6 +817,93 @@ public class ClassifierTree implements Drawable, Serializable, RevisionHandler,
     return a;
   }
 
+  /**
+   * Describes the subtree below this node to the given builder, which
+   * reproduces distributionForInstance(). The sons that are empty become
+   * leaves with the distribution this node uses for them, and get weight 0
+   * for missing values since they are skipped.
+   * 
+   * @param builder the builder
+   * @param node the index of this node in the builder
+   * @param useLaplace whether to use laplace or not
+   * @throws Exception if a split or leaf model is not supported
+   */
+  public void flatten(FlatForest.Builder builder, int node, boolean useLaplace)
+    throws Exception {
+
+    if (m_isLeaf) {
+      if (!(localModel() instanceof NoSplit)) {
+        throw new Exception("Can't flatten leaf model "
+          + localModel().getClass().getName());
+      }
+      builder.setDistribution(node, classProbs(-1, useLaplace));
+      return;
+    }
+
+    // Describe split
+    int att;
+    double splitPoint;
+    if (localModel() instanceof C45Split) {
+      att = ((C45Split) localModel()).attIndex();
+      splitPoint = ((C45Split) localModel()).splitPoint();
+    } else if (localModel() instanceof BinC45Split) {
+      att = ((BinC45Split) localModel()).attIndex();
+      splitPoint = ((BinC45Split) localModel()).splitPoint();
+    } else {
+      throw new Exception("Can't flatten split model "
+        + localModel().getClass().getName());
+    }
+    if (m_train.attribute(att).isNumeric()) {
+
+      // values up to the split point go to the first son
+      builder.setNumericSplit(node, att, Math.nextUp(splitPoint));
+    } else if (localModel() instanceof BinC45Split) {
+      int[] branches = new int[m_train.attribute(att).numValues()];
+      for (int i = 0; i < branches.length; i++) {
+        branches[i] = (i == (int) splitPoint) ? 0 : 1;
+      }
+      builder.setNominalSplit(node, att, branches);
+    } else {
+      builder.setNominalSplit(node, att, null);
+    }
+
+    // Describe sons
+    Distribution dist = localModel().distribution();
+    int first = builder.addChildren(node, m_sons.length);
+    for (int i = 0; i < m_sons.length; i++) {
+      if (son(i).m_isEmpty) {
+        builder.setWeight(first + i, 0);
+        builder.setDistribution(first + i, classProbs(i, useLaplace));
+      } else {
+        builder.setWeight(first + i, dist.perBag(i) / dist.total());
+        son(i).flatten(builder, first + i, useLaplace);
+      }
+    }
+  }
+
+  /**
+   * Returns the class probabilities the local model gives a subset, or the
+   * whole data at a leaf.
+   * 
+   * @param theSubset the subset, -1 for the whole data at a leaf
+   * @param useLaplace whether to use laplace or not
+   * @return the class probabilities
+   * @throws Exception if something goes wrong
+   */
+  private double[] classProbs(int theSubset, boolean useLaplace)
+    throws Exception {
+
+    double[] probs = new double[localModel().distribution().numClasses()];
+    for (int i = 0; i < probs.length; i++) {
+      if (!useLaplace) {
+        probs[i] = localModel().classProb(i, null, theSubset);
+      } else {
+        probs[i] = localModel().classProbLaplace(i, null, theSubset);
+      }
+    }
+    return probs;
+  }
+
   /**
    * Returns the revision string.
    * 
@@ -22,9 +22,16 @@
 package weka.classifiers.trees.j48;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 
 import weka.core.Instances;
 import weka.core.RevisionHandler;
+import weka.core.SubsetInstances;
+import weka.core.Utils;
 
 /**
  * Abstract class for model selection criteria.
@@ -38,6 +45,198 @@ public abstract class ModelSelection
   /** for serialization */
   private static final long serialVersionUID = -4850147125096133642L;
 
+  /** The minimum number of instances for which work is forked. */
+  protected static final int MIN_PARALLEL_INSTANCES = 1000;
+
+  /** The pool the tree is built in, null if it is built sequentially. */
+  protected transient ForkJoinPool m_pool;
+
+  /**
+   * Runs the given task, which builds a tree using this model selection
+   * method. If more than one execution slot is requested, the task runs in a
+   * fork/join pool and the tree is built in parallel: the splits of a node
+   * are evaluated concurrently and so are the subtrees of a node. The result
+   * is identical to the one of a sequential build.
+   *
+   * @param numSlots the number of threads to use, 0 for one per processor
+   * @param task the task that builds the tree
+   * @throws Exception if the task fails
+   */
+  public void runInPool(int numSlots, Callable<?> task) throws Exception {
+
+    if (numSlots < 1) {
+      numSlots = Runtime.getRuntime().availableProcessors();
+    }
+    if (numSlots == 1) {
+      task.call();
+      return;
+    }
+    m_pool = new ForkJoinPool(numSlots);
+    try {
+      m_pool.submit(task).get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    } finally {
+      m_pool.shutdown();
+      m_pool = null;
+    }
+  }
+
+  /**
+   * Returns whether work on the given number of instances should be forked,
+   * i.e., whether the tree is built in a pool, the current thread belongs to
+   * it and there are enough instances to make forking worthwhile.
+   *
+   * @param numInstances the number of instances to process
+   * @return true if work should be forked
+   */
+  public boolean canFork(int numInstances) {
+
+    return (m_pool != null) && (ForkJoinTask.getPool() == m_pool)
+      && (numInstances >= MIN_PARALLEL_INSTANCES);
+  }
+
+  /**
+   * Builds the split models for the given data, in the order of the
+   * attributes. Models that sort the data leave it sorted for the following
+   * ones. If work can be forked, the models are built concurrently on views of
+   * the data: each one sees the instances in the order in which the
+   * sequential build would present them, and the data is left in the same
+   * order, so that the models and all further splits are identical. Only the
+   * sorting is sequential.
+   *
+   * @param data the data to build the models on
+   * @param models the models, one per attribute, null for attributes to skip
+   * @throws Exception if a model can't be built
+   */
+  protected void buildSplitModels(final Instances data,
+    final ClassifierSplitModel[] models) throws Exception {
+
+    if (!canFork(data.numInstances())) {
+      for (ClassifierSplitModel model : models) {
+        if (model != null) {
+          model.buildClassifier(data);
+        }
+      }
+      return;
+    }
+
+    int[] order = new int[data.numInstances()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    boolean reordered = false;
+    ArrayDeque<ForkJoinTask<Object>> pending = new ArrayDeque<ForkJoinTask<Object>>();
+    for (int i = 0; i < models.length; i++) {
+      if (models[i] == null) {
+        continue;
+      }
+      final boolean sorted = !data.attribute(i).isNominal();
+      if (sorted) {
+        order = sortOrder(data, order, i);
+        reordered = true;
+      }
+      final int[] current = order;
+      final ClassifierSplitModel model = models[i];
+      pending.add(ForkJoinTask.adapt(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          model.buildClassifier(new SubsetInstances(data, current), sorted);
+          return null;
+        }
+      }).fork());
+
+      // bound the number of order arrays held by waiting tasks
+      if (pending.size() > 2 * m_pool.getParallelism()) {
+        join(pending.poll());
+      }
+    }
+    while (!pending.isEmpty()) {
+      join(pending.poll());
+    }
+
+    if (reordered) {
+      permute(data, order);
+    }
+  }
+
+  /**
+   * Waits for a task and rethrows its exception, if any.
+   *
+   * @param task the task
+   * @throws Exception the exception thrown by the task
+   */
+  protected static void join(ForkJoinTask<?> task) throws Exception {
+
+    try {
+      task.join();
+    } catch (RuntimeException e) {
+      if (e.getCause() instanceof Exception) {
+        throw (Exception) e.getCause();
+      }
+      throw e;
+    }
+  }
+
+  /**
+   * Sorts an order of the instances on a numeric attribute, in the same way
+   * as <code>Instances.sort</code>.
+   *
+   * @param data the instances
+   * @param order the current order, as positions in the data
+   * @param attIndex the attribute to sort on
+   * @return the new order
+   */
+  protected static int[] sortOrder(Instances data, int[] order, int attIndex) {
+
+    double[] vals = new double[order.length];
+    for (int i = 0; i < vals.length; i++) {
+      double val = data.instance(order[i]).value(attIndex);
+      if (Utils.isMissingValue(val)) {
+        vals[i] = Double.MAX_VALUE;
+      } else {
+        vals[i] = val;
+      }
+    }
+    int[] sortOrder = Utils.sortWithNoMissingValues(vals);
+    int[] result = new int[order.length];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = order[sortOrder[i]];
+    }
+    return result;
+  }
+
+  /**
+   * Rearranges the instances so that the instance at position i is the one
+   * that was at position order[i], by swapping along the cycles of the
+   * permutation.
+   *
+   * @param data the instances
+   * @param order the new order, as positions in the data
+   */
+  protected static void permute(Instances data, int[] order) {
+
+    boolean[] done = new boolean[order.length];
+    for (int i = 0; i < order.length; i++) {
+      if (done[i]) {
+        continue;
+      }
+      int j = i;
+      while (true) {
+        done[j] = true;
+        int next = order[j];
+        if (next == i) {
+          break;
+        }
+        data.swap(j, next);
+        j = next;
+      }
+    }
+  }
+
   /**
    * Selects a model for the given dataset.
    *
@@ -0,0 +1,794 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    AbstractInstanceView.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.Serializable;
+import java.util.Enumeration;
+
+/**
+ * Abstract base class for dense instances that do not hold an array of
+ * attribute values of their own, but are views onto values stored elsewhere.
+ * Subclasses only need to provide access to the values and the weight; all
+ * other methods of the <code>Instance</code> interface are implemented on top
+ * of that. Copies obtained via <code>copy()</code> are independent
+ * <code>DenseInstance</code> objects, unless a subclass decides otherwise.
+ *
+ * @version $Revision$
+ * @see ColumnarInstance
+ * @see MappedInstance
+ */
+public abstract class AbstractInstanceView implements Instance, Serializable,
+  RevisionHandler {
+
+  /** for serialization */
+  private static final long serialVersionUID = -3550371949128817455L;
+
+  /** the dataset the instance has access to */
+  protected Instances m_Dataset;
+
+  /**
+   * Returns a row-oriented copy of this view, with access to the same dataset.
+   *
+   * @return the copy
+   */
+  protected DenseInstance toDenseInstance() {
+
+    DenseInstance result = new DenseInstance(weight(), toDoubleArray());
+    result.setDataset(m_Dataset);
+    return result;
+  }
+
+  /**
+   * Throws an exception if the instance has no access to a dataset.
+   *
+   * @throws UnassignedDatasetException if the dataset is not set
+   */
+  protected void checkDataset() {
+
+    if (m_Dataset == null) {
+      throw new UnassignedDatasetException(
+        "Instance doesn't have access to a dataset!");
+    }
+  }
+
+  /**
+   * Returns the attribute with the given index.
+   *
+   * @param index the attribute's index
+   * @return the attribute at the given position
+   * @throws UnassignedDatasetException if instance doesn't have access to a
+   *           dataset
+   */
+  @Override
+  public Attribute attribute(int index) {
+
+    checkDataset();
+    return m_Dataset.attribute(index);
+  }
+
+  /**
+   * Returns the attribute with the given index in the sparse representation.
+   * Same as attribute(int) since the view is dense.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @return the attribute at the given position
+   */
+  @Override
+  public Attribute attributeSparse(int indexOfIndex) {
+
+    return attribute(indexOfIndex);
+  }
+
+  /**
+   * Returns class attribute.
+   *
+   * @return the class attribute
+   */
+  @Override
+  public Attribute classAttribute() {
+
+    checkDataset();
+    return m_Dataset.classAttribute();
+  }
+
+  /**
+   * Returns the class attribute's index.
+   *
+   * @return the class index as an integer
+   */
+  @Override
+  public int classIndex() {
+
+    checkDataset();
+    return m_Dataset.classIndex();
+  }
+
+  /**
+   * Tests if an instance's class is missing.
+   *
+   * @return true if the instance's class is missing
+   * @throws UnassignedClassException if the class is not set
+   */
+  @Override
+  public boolean classIsMissing() {
+
+    int classIndex = classIndex();
+    if (classIndex < 0) {
+      throw new UnassignedClassException("Class is not set!");
+    }
+    return isMissing(classIndex);
+  }
+
+  /**
+   * Returns an instance's class value in internal format.
+   *
+   * @return the corresponding value as a double
+   * @throws UnassignedClassException if the class is not set
+   */
+  @Override
+  public double classValue() {
+
+    int classIndex = classIndex();
+    if (classIndex < 0) {
+      throw new UnassignedClassException("Class is not set!");
+    }
+    return value(classIndex);
+  }
+
+  /**
+   * Produces a row-oriented copy of this instance. The copy has access to the
+   * same dataset.
+   *
+   * @return the copy, a DenseInstance
+   */
+  @Override
+  public Object copy() {
+
+    return toDenseInstance();
+  }
+
+  /**
+   * Copies the instance but fills up its values based on the given array of
+   * doubles. The copy has access to the same dataset.
+   *
+   * @param values the array with new values
+   * @return the new instance, a DenseInstance
+   */
+  @Override
+  public Instance copy(double[] values) {
+
+    DenseInstance result = new DenseInstance(weight(), values);
+    result.setDataset(m_Dataset);
+    return result;
+  }
+
+  /**
+   * Returns the dataset this instance has access to.
+   *
+   * @return the dataset the instance has accesss to
+   */
+  @Override
+  public Instances dataset() {
+
+    return m_Dataset;
+  }
+
+  /**
+   * Not supported by default, since the values are held elsewhere. Use
+   * Instances.deleteAttributeAt(int) instead.
+   *
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void deleteAttributeAt(int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot delete attributes from a view onto shared storage!");
+  }
+
+  /**
+   * Returns an enumeration of all the attributes.
+   *
+   * @return enumeration of all the attributes
+   */
+  @Override
+  public Enumeration<Attribute> enumerateAttributes() {
+
+    checkDataset();
+    return m_Dataset.enumerateAttributes();
+  }
+
+  /**
+   * Tests if the headers of two instances are equivalent.
+   *
+   * @param inst another instance
+   * @return true if the headers are equivalent
+   */
+  @Override
+  public boolean equalHeaders(Instance inst) {
+
+    checkDataset();
+    return m_Dataset.equalHeaders(inst.dataset());
+  }
+
+  /**
+   * Checks if the headers of two instances are equivalent. If not, then returns
+   * a message why they differ.
+   *
+   * @param inst another instance
+   * @return null if the headers are equivalent, otherwise a message
+   */
+  @Override
+  public String equalHeadersMsg(Instance inst) {
+
+    checkDataset();
+    return m_Dataset.equalHeadersMsg(inst.dataset());
+  }
+
+  /**
+   * Tests whether an instance has a missing value. Skips the class attribute if
+   * set.
+   *
+   * @return true if instance has a missing value.
+   */
+  @Override
+  public boolean hasMissingValue() {
+
+    int classIndex = classIndex();
+    for (int i = 0; i < numAttributes(); i++) {
+      if ((i != classIndex) && isMissing(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the index of the attribute stored at the given position. Just
+   * returns the given value.
+   *
+   * @param position the position
+   * @return the index of the attribute stored at the given position
+   */
+  @Override
+  public int index(int position) {
+
+    return position;
+  }
+
+  /**
+   * Not supported by default, since the values are held elsewhere. Use
+   * Instances.insertAttributeAt(Attribute, int) instead.
+   *
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void insertAttributeAt(int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot insert attributes into a view onto shared storage!");
+  }
+
+  /**
+   * Tests if a specific value is "missing".
+   *
+   * @param attIndex the attribute's index
+   * @return true if the value is "missing"
+   */
+  @Override
+  public boolean isMissing(int attIndex) {
+
+    return Utils.isMissingValue(value(attIndex));
+  }
+
+  /**
+   * Tests if a specific value is "missing", given an index in the sparse
+   * representation.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @return true if the value is "missing"
+   */
+  @Override
+  public boolean isMissingSparse(int indexOfIndex) {
+
+    return isMissing(indexOfIndex);
+  }
+
+  /**
+   * Tests if a specific value is "missing".
+   *
+   * @param att the attribute
+   * @return true if the value is "missing"
+   */
+  @Override
+  public boolean isMissing(Attribute att) {
+
+    return isMissing(att.index());
+  }
+
+  /**
+   * Merges this instance with the given instance and returns the result.
+   * Dataset is set to null.
+   *
+   * @param inst the instance to be merged with this one
+   * @return the merged instance, a DenseInstance
+   */
+  @Override
+  public Instance mergeInstance(Instance inst) {
+
+    return toDenseInstance().mergeInstance(inst);
+  }
+
+  /**
+   * Returns the number of attributes.
+   *
+   * @return the number of attributes as an integer
+   */
+  @Override
+  public abstract int numAttributes();
+
+  /**
+   * Returns the number of class labels.
+   *
+   * @return the number of class labels
+   */
+  @Override
+  public int numClasses() {
+
+    checkDataset();
+    return m_Dataset.numClasses();
+  }
+
+  /**
+   * Returns the number of values present. Always the same as numAttributes().
+   *
+   * @return the number of values
+   */
+  @Override
+  public int numValues() {
+
+    return numAttributes();
+  }
+
+  /**
+   * Replaces all missing values in the instance with the values contained in
+   * the given array.
+   *
+   * @param array containing the means and modes
+   * @throws IllegalArgumentException if numbers of attributes are unequal
+   */
+  @Override
+  public void replaceMissingValues(double[] array) {
+
+    if ((array == null) || (array.length != numAttributes())) {
+      throw new IllegalArgumentException("Unequal number of attributes!");
+    }
+    for (int i = 0; i < array.length; i++) {
+      if (isMissing(i)) {
+        setValue(i, array[i]);
+      }
+    }
+  }
+
+  /**
+   * Sets the class value of an instance to be "missing".
+   *
+   * @throws UnassignedClassException if the class is not set
+   */
+  @Override
+  public void setClassMissing() {
+
+    int classIndex = classIndex();
+    if (classIndex < 0) {
+      throw new UnassignedClassException("Class is not set!");
+    }
+    setMissing(classIndex);
+  }
+
+  /**
+   * Sets the class value of an instance to the given value (internal
+   * floating-point format).
+   *
+   * @param value the new class value
+   * @throws UnassignedClassException if the class is not set
+   */
+  @Override
+  public void setClassValue(double value) {
+
+    int classIndex = classIndex();
+    if (classIndex < 0) {
+      throw new UnassignedClassException("Class is not set!");
+    }
+    setValue(classIndex, value);
+  }
+
+  /**
+   * Sets the class value of an instance to the given value.
+   *
+   * @param value the new class value
+   * @throws UnassignedClassException if the class is not set
+   */
+  @Override
+  public void setClassValue(String value) {
+
+    int classIndex = classIndex();
+    if (classIndex < 0) {
+      throw new UnassignedClassException("Class is not set!");
+    }
+    setValue(classIndex, value);
+  }
+
+  /**
+   * Sets the reference to the dataset. The values are still read from the
+   * storage the view was created from.
+   *
+   * @param instances the reference to the dataset
+   */
+  @Override
+  public void setDataset(Instances instances) {
+
+    m_Dataset = instances;
+  }
+
+  /**
+   * Sets a specific value to be "missing".
+   *
+   * @param attIndex the attribute's index
+   */
+  @Override
+  public void setMissing(int attIndex) {
+
+    setValue(attIndex, Utils.missingValue());
+  }
+
+  /**
+   * Sets a specific value to be "missing".
+   *
+   * @param att the attribute
+   */
+  @Override
+  public void setMissing(Attribute att) {
+
+    setMissing(att.index());
+  }
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format).
+   *
+   * @param attIndex the attribute's index
+   * @param value the new attribute value
+   */
+  @Override
+  public abstract void setValue(int attIndex, double value);
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format), given an index in the sparse representation.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @param value the new attribute value
+   */
+  @Override
+  public void setValueSparse(int indexOfIndex, double value) {
+
+    setValue(indexOfIndex, value);
+  }
+
+  /**
+   * Sets a value of a nominal or string attribute to the given value.
+   *
+   * @param attIndex the attribute's index
+   * @param value the new attribute value (If the attribute is a string
+   *          attribute and the value can't be found, the value is added to the
+   *          attribute).
+   * @throws IllegalArgumentException if the selected attribute is not nominal
+   *           or a string, or the supplied value couldn't be found for a
+   *           nominal attribute
+   */
+  @Override
+  public void setValue(int attIndex, String value) {
+
+    checkDataset();
+    setValue(attribute(attIndex), value);
+  }
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format).
+   *
+   * @param att the attribute
+   * @param value the new attribute value
+   */
+  @Override
+  public void setValue(Attribute att, double value) {
+
+    setValue(att.index(), value);
+  }
+
+  /**
+   * Sets a value of a nominal or string attribute to the given value.
+   *
+   * @param att the attribute
+   * @param value the new attribute value
+   * @throws IllegalArgumentException if the the attribute is not nominal or a
+   *           string, or the value couldn't be found for a nominal attribute
+   */
+  @Override
+  public void setValue(Attribute att, String value) {
+
+    if (!att.isNominal() && !att.isString()) {
+      throw new IllegalArgumentException(
+        "Attribute neither nominal nor string!");
+    }
+    int valIndex = att.indexOfValue(value);
+    if (valIndex == -1) {
+      if (att.isNominal()) {
+        throw new IllegalArgumentException(
+          "Value not defined for given nominal attribute!");
+      } else {
+        att.forceAddValue(value);
+        valIndex = att.indexOfValue(value);
+      }
+    }
+    setValue(att.index(), valIndex);
+  }
+
+  /**
+   * Sets the weight of an instance.
+   *
+   * @param weight the weight
+   */
+  @Override
+  public abstract void setWeight(double weight);
+
+  /**
+   * Returns the relational value of a relational attribute.
+   *
+   * @param attIndex the attribute's index
+   * @return the corresponding relation as an Instances object
+   */
+  @Override
+  public Instances relationalValue(int attIndex) {
+
+    return toDenseInstance().relationalValue(attIndex);
+  }
+
+  /**
+   * Returns the relational value of a relational attribute.
+   *
+   * @param att the attribute
+   * @return the corresponding relation as an Instances object
+   */
+  @Override
+  public Instances relationalValue(Attribute att) {
+
+    return toDenseInstance().relationalValue(att);
+  }
+
+  /**
+   * Returns the value of a nominal, string, date, or relational attribute for
+   * the instance as a string.
+   *
+   * @param attIndex the attribute's index
+   * @return the value as a string
+   */
+  @Override
+  public String stringValue(int attIndex) {
+
+    checkDataset();
+    return stringValue(m_Dataset.attribute(attIndex));
+  }
+
+  /**
+   * Returns the value of a nominal, string, date, or relational attribute for
+   * the instance as a string.
+   *
+   * @param att the attribute
+   * @return the value as a string
+   */
+  @Override
+  public String stringValue(Attribute att) {
+
+    int attIndex = att.index();
+    if (isMissing(attIndex)) {
+      return "?";
+    }
+    switch (att.type()) {
+    case Attribute.NOMINAL:
+    case Attribute.STRING:
+      return att.value((int) value(attIndex));
+    default:
+      return toDenseInstance().stringValue(att);
+    }
+  }
+
+  /**
+   * Returns the values of each attribute as an array of doubles. Creates a
+   * fresh array object for this.
+   *
+   * @return an array containing all the instance attribute values
+   */
+  @Override
+  public double[] toDoubleArray() {
+
+    double[] result = new double[numAttributes()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = value(i);
+    }
+    return result;
+  }
+
+  /**
+   * Returns the description of one instance (without weight appended).
+   *
+   * @param afterDecimalPoint maximum number of digits after the decimal point
+   *          for numeric values
+   * @return the instance's description as a string
+   */
+  @Override
+  public String toStringNoWeight(int afterDecimalPoint) {
+
+    return toDenseInstance().toStringNoWeight(afterDecimalPoint);
+  }
+
+  /**
+   * Returns the description of one instance (without weight appended).
+   *
+   * @return the instance's description as a string
+   */
+  @Override
+  public String toStringNoWeight() {
+
+    return toDenseInstance().toStringNoWeight();
+  }
+
+  /**
+   * Returns the description of one instance with any numeric values printed at
+   * the supplied maximum number of decimal places.
+   *
+   * @param afterDecimalPoint the maximum number of digits permitted after the
+   *          decimal point for a numeric value
+   * @return the instance's description as a string
+   */
+  @Override
+  public String toStringMaxDecimalDigits(int afterDecimalPoint) {
+
+    return toDenseInstance().toStringMaxDecimalDigits(afterDecimalPoint);
+  }
+
+  /**
+   * Returns the description of one value of the instance as a string.
+   *
+   * @param attIndex the attribute's index
+   * @param afterDecimalPoint the maximum number of digits permitted after the
+   *          decimal point for numeric values
+   * @return the value's description as a string
+   */
+  @Override
+  public String toString(int attIndex, int afterDecimalPoint) {
+
+    return toDenseInstance().toString(attIndex, afterDecimalPoint);
+  }
+
+  /**
+   * Returns the description of one value of the instance as a string.
+   *
+   * @param attIndex the attribute's index
+   * @return the value's description as a string
+   */
+  @Override
+  public String toString(int attIndex) {
+
+    return toDenseInstance().toString(attIndex);
+  }
+
+  /**
+   * Returns the description of one value of the instance as a string.
+   *
+   * @param att the attribute
+   * @param afterDecimalPoint the maximum number of decimal places to print
+   * @return the value's description as a string
+   */
+  @Override
+  public String toString(Attribute att, int afterDecimalPoint) {
+
+    return toString(att.index(), afterDecimalPoint);
+  }
+
+  /**
+   * Returns the description of one value of the instance as a string.
+   *
+   * @param att the attribute
+   * @return the value's description as a string
+   */
+  @Override
+  public String toString(Attribute att) {
+
+    return toString(att.index());
+  }
+
+  /**
+   * Returns the description of one instance.
+   *
+   * @return the instance's description as a string
+   */
+  @Override
+  public String toString() {
+
+    return toDenseInstance().toString();
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   *
+   * @param attIndex the attribute's index
+   * @return the specified value as a double
+   */
+  @Override
+  public abstract double value(int attIndex);
+
+  /**
+   * Returns an instance's attribute value in internal format, given an index in
+   * the sparse representation.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @return the specified value as a double
+   */
+  @Override
+  public double valueSparse(int indexOfIndex) {
+
+    return value(indexOfIndex);
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   *
+   * @param att the attribute
+   * @return the specified value as a double
+   */
+  @Override
+  public double value(Attribute att) {
+
+    return value(att.index());
+  }
+
+  /**
+   * Returns the instance's weight.
+   *
+   * @return the instance's weight as a double
+   */
+  @Override
+  public abstract double weight();
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -26,7 +26,6 @@ import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.Enumeration;
-import java.util.Hashtable;
 import java.util.List;
 import java.util.Properties;
 
@@ -592,12 +591,7 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
           + " searching uncompressed.");
       }
     }
-    Integer val = ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.get(store);
-    if (val == null) {
-      return -1;
-    } else {
-      return val.intValue();
-    }
+    return ((NominalAttributeInfo)m_AttributeInfo).indexOf(store);
   }
 
   /**
@@ -681,6 +675,26 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
     }
   }
 
+  /**
+   * Returns an estimate of the memory occupied by the values of a nominal,
+   * string, or relation-valued attribute and by the index that maps them to
+   * their indices. Attributes sharing their values (e.g., copies) report the
+   * same memory. Returns 0 for other attributes.
+   *
+   * @return the estimated number of bytes
+   * @see NominalAttributeInfo#valueBytes()
+   * @see NominalAttributeInfo#indexBytes()
+   */
+  public final/* @ pure @ */long valueBytes() {
+
+    if (!isNominal() && !isString() && !isRelationValued()) {
+      return 0;
+    } else {
+      return ((NominalAttributeInfo)m_AttributeInfo).valueBytes()
+        + ((NominalAttributeInfo)m_AttributeInfo).indexBytes();
+    }
+  }
+
   /**
    * Returns a description of this attribute in ARFF format. Quotes strings if
    * they contain whitespace characters, or if they are a question mark.
@@ -914,13 +928,13 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
           + " storing uncompressed.");
       }
     }
-    Integer index = ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.get(store);
-    if (index != null) {
-      return index.intValue();
+    int index = ((NominalAttributeInfo)m_AttributeInfo).indexOf(store);
+    if (index != -1) {
+      return index;
     } else {
       int intIndex = ((NominalAttributeInfo)m_AttributeInfo).m_Values.size();
       ((NominalAttributeInfo)m_AttributeInfo).m_Values.add(store);
-      ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.put(store, new Integer(intIndex));
+      ((NominalAttributeInfo)m_AttributeInfo).putIndex(store, intIndex);
       return intIndex;
     }
   }
@@ -937,8 +951,7 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
       return;
     }
 
-    ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.clear();
-    ((NominalAttributeInfo)m_AttributeInfo).m_Values.clear();
+    ((NominalAttributeInfo)m_AttributeInfo).clear();
     if (value != null) {
       addStringValue(value);
     }
@@ -965,13 +978,13 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
       return -1;
     }
     Object store = ((NominalAttributeInfo)src.m_AttributeInfo).m_Values.get(index);
-    Integer oldIndex = ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.get(store);
-    if (oldIndex != null) {
-      return oldIndex.intValue();
+    int oldIndex = ((NominalAttributeInfo)m_AttributeInfo).indexOf(store);
+    if (oldIndex != -1) {
+      return oldIndex;
     } else {
       int intIndex = ((NominalAttributeInfo)m_AttributeInfo).m_Values.size();
       ((NominalAttributeInfo)m_AttributeInfo).m_Values.add(store);
-      ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.put(store, new Integer(intIndex));
+      ((NominalAttributeInfo)m_AttributeInfo).putIndex(store, intIndex);
       return intIndex;
     }
   }
@@ -992,13 +1005,13 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
       throw new IllegalArgumentException("Incompatible value for "
         + "relation-valued attribute.\n" + ((RelationalAttributeInfo)m_AttributeInfo).m_Header.equalHeadersMsg(value));
     }
-    Integer index = ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.get(value);
-    if (index != null) {
-      return index.intValue();
+    int index = ((NominalAttributeInfo)m_AttributeInfo).indexOf(value);
+    if (index != -1) {
+      return index;
     } else {
       int intIndex = ((NominalAttributeInfo)m_AttributeInfo).m_Values.size();
       ((NominalAttributeInfo)m_AttributeInfo).m_Values.add(value);
-      ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.put(value, new Integer(intIndex));
+      ((NominalAttributeInfo)m_AttributeInfo).putIndex(value, intIndex);
       return intIndex;
     }
   }
@@ -1011,10 +1024,7 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
    */
   final void addValue(String value) {
 
-    ((NominalAttributeInfo)m_AttributeInfo).m_Values = 
-      Utils.cast(((NominalAttributeInfo)m_AttributeInfo).m_Values.clone());
-    ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable = 
-      Utils.cast(((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.clone());
+    ((NominalAttributeInfo)m_AttributeInfo).copyValues();
     forceAddValue(value);
   }
 
@@ -1060,22 +1070,7 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
       ((NominalAttributeInfo)m_AttributeInfo).m_Values = 
         Utils.cast(((NominalAttributeInfo)m_AttributeInfo).m_Values.clone());
       ((NominalAttributeInfo)m_AttributeInfo).m_Values.remove(index);
-      if (!isRelationValued()) {
-        Hashtable<Object, Integer> hash = new Hashtable<Object, Integer>(
-          ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.size());
-        Enumeration<Object> enu = ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.keys();
-        while (enu.hasMoreElements()) {
-          Object string = enu.nextElement();
-          Integer valIndexObject = ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.get(string);
-          int valIndex = valIndexObject.intValue();
-          if (valIndex > index) {
-            hash.put(string, new Integer(valIndex - 1));
-          } else if (valIndex < index) {
-            hash.put(string, valIndexObject);
-          }
-        }
-        ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable = hash;
-      }
+      ((NominalAttributeInfo)m_AttributeInfo).rebuildIndex();
     }
   }
 
@@ -1098,8 +1093,8 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
       }
     }
     ((NominalAttributeInfo)m_AttributeInfo).m_Values.add(store);
-    ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.
-      put(store, new Integer(((NominalAttributeInfo)m_AttributeInfo).m_Values.size() - 1));
+    ((NominalAttributeInfo)m_AttributeInfo).
+      putIndex(store, ((NominalAttributeInfo)m_AttributeInfo).m_Values.size() - 1);
   }
 
   /**
@@ -1131,10 +1126,7 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
     switch (m_Type) {
     case NOMINAL:
     case STRING:
-      ((NominalAttributeInfo)m_AttributeInfo).m_Values = 
-        Utils.cast(((NominalAttributeInfo)m_AttributeInfo).m_Values.clone());
-      ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable = 
-        Utils.cast(((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.clone());
+      ((NominalAttributeInfo)m_AttributeInfo).copyValues();
       Object store = string;
       if (string.length() > STRING_COMPRESS_THRESHOLD) {
         try {
@@ -1144,10 +1136,10 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
             + " storing uncompressed.");
         }
       }
-      ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.
-        remove(((NominalAttributeInfo)m_AttributeInfo).m_Values.get(index));
+      ((NominalAttributeInfo)m_AttributeInfo).
+        removeIndex(((NominalAttributeInfo)m_AttributeInfo).m_Values.get(index));
       ((NominalAttributeInfo)m_AttributeInfo).m_Values.set(index, store);
-      ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.put(store, new Integer(index));
+      ((NominalAttributeInfo)m_AttributeInfo).putIndex(store, index);
       break;
     default:
       throw new IllegalArgumentException("Can only set values for nominal"
@@ -1170,9 +1162,11 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
         throw new IllegalArgumentException("Can't set relational value. "
           + "Headers not compatible.\n" + data.equalHeadersMsg(((RelationalAttributeInfo)m_AttributeInfo).m_Header));
       }
-      ((NominalAttributeInfo)m_AttributeInfo).m_Values = 
-        Utils.cast(((NominalAttributeInfo)m_AttributeInfo).m_Values.clone());
+      ((NominalAttributeInfo)m_AttributeInfo).copyValues();
+      ((NominalAttributeInfo)m_AttributeInfo).
+        removeIndex(((NominalAttributeInfo)m_AttributeInfo).m_Values.get(index));
       ((NominalAttributeInfo)m_AttributeInfo).m_Values.set(index, data);
+      ((NominalAttributeInfo)m_AttributeInfo).putIndex(data, index);
     } else {
       throw new IllegalArgumentException("Can only set value for"
         + " relation-valued attributes!");
@@ -1380,7 +1374,7 @@ public class Attribute implements Copyable, Serializable, RevisionHandler {
     if (m_Type != NUMERIC) {
       // do label range check
       int intVal = (int) value;
-      if (intVal < 0 || intVal >= ((NominalAttributeInfo)m_AttributeInfo).m_Hashtable.size()) {
+      if (intVal < 0 || intVal >= ((NominalAttributeInfo)m_AttributeInfo).numIndexed()) {
         return false;
       }
     } else {
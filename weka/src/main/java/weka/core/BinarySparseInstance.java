@@ -53,9 +53,22 @@ public class BinarySparseInstance extends SparseInstance {
     m_Weight = instance.weight();
     m_Dataset = null;
     m_NumAttributes = instance.numAttributes();
-    if (instance instanceof SparseInstance) {
+    if ((instance instanceof SparseInstance)
+      && (((SparseInstance) instance).m_Indices != null)) {
       m_AttValues = null;
       m_Indices = ((SparseInstance) instance).m_Indices;
+    } else if (instance instanceof SparseInstance) {
+      int[] tempIndices = new int[instance.numValues()];
+      int vals = 0;
+      for (int i = 0; i < instance.numValues(); i++) {
+        if (instance.valueSparse(i) != 0) {
+          tempIndices[vals] = instance.index(i);
+          vals++;
+        }
+      }
+      m_AttValues = null;
+      m_Indices = new int[vals];
+      System.arraycopy(tempIndices, 0, m_Indices, 0, vals);
     } else {
       int[] tempIndices = new int[instance.numAttributes()];
       int vals = 0;
@@ -80,11 +93,7 @@ public class BinarySparseInstance extends SparseInstance {
    */
   public BinarySparseInstance(SparseInstance instance) {
 
-    m_AttValues = null;
-    m_Indices = instance.m_Indices;
-    m_Weight = instance.m_Weight;
-    m_NumAttributes = instance.m_NumAttributes;
-    m_Dataset = null;
+    this((Instance) instance);
   }
 
   /**
@@ -0,0 +1,304 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    BinnedData.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+/**
+ * Holds the values of the attributes of a dataset quantised into a small
+ * number of bins, one byte per value, so that schemes like decision trees can
+ * search for splits on histograms of the bins rather than on sorted values.
+ * <p>
+ *
+ * The values of a numeric attribute are divided into at most
+ * <code>maxBins</code> bins holding roughly equal numbers of instances; an
+ * attribute with fewer distinct values gets one bin per value. Every
+ * boundary between two bins has a split point that is larger than all values
+ * in the lower bin and not larger than any value in the upper one, so that
+ * the instances in bins up to <code>b</code> are exactly those with a value
+ * below <code>splitPoint(att, b)</code>. The bin of a value of a nominal
+ * attribute is the index of the value. Attributes of other types, the class
+ * attribute and nominal attributes with more than <code>MAX_BINS</code>
+ * values are not binned.
+ * <p>
+ *
+ * The dataset must not be modified while the bins are in use.
+ *
+ * @version $Revision$
+ */
+public class BinnedData implements RevisionHandler {
+
+  /** the maximum number of bins of an attribute */
+  public static final int MAX_BINS = 255;
+
+  /** the code of a missing value */
+  public static final int MISSING = 0xFF;
+
+  /** the binned dataset */
+  protected Instances m_Data;
+
+  /** the maximum number of bins of a numeric attribute */
+  protected int m_MaxBins;
+
+  /** the bins of the values, indexed by attribute and instance */
+  protected byte[][] m_Bins;
+
+  /** the number of bins of each attribute, 0 if it is not binned */
+  protected int[] m_NumBins;
+
+  /** the split points between the bins of each numeric attribute */
+  protected double[][] m_SplitPoints;
+
+  /**
+   * Quantises the attributes of the given dataset.
+   *
+   * @param data the dataset
+   * @param maxBins the maximum number of bins of a numeric attribute, at most
+   *          <code>MAX_BINS</code>
+   * @throws IllegalArgumentException if the number of bins is out of range
+   */
+  public BinnedData(Instances data, int maxBins) {
+    this(data, null, maxBins);
+  }
+
+  /**
+   * Quantises the attributes of the dataset of the given index, using the
+   * orders of the index.
+   *
+   * @param index the presorted index of the dataset
+   * @param maxBins the maximum number of bins of a numeric attribute, at most
+   *          <code>MAX_BINS</code>
+   * @throws IllegalArgumentException if the number of bins is out of range
+   */
+  public BinnedData(PresortedIndex index, int maxBins) {
+    this(index.getData(), index, maxBins);
+  }
+
+  /**
+   * Quantises the attributes of the given dataset.
+   *
+   * @param data the dataset
+   * @param index the presorted index of the dataset, null to sort the values
+   * @param maxBins the maximum number of bins of a numeric attribute
+   * @throws IllegalArgumentException if the number of bins is out of range
+   */
+  protected BinnedData(Instances data, PresortedIndex index, int maxBins) {
+
+    if ((maxBins < 2) || (maxBins > MAX_BINS)) {
+      throw new IllegalArgumentException("Number of bins must be between 2 "
+        + "and " + MAX_BINS + ": " + maxBins);
+    }
+
+    m_Data = data;
+    m_MaxBins = maxBins;
+    m_Bins = new byte[data.numAttributes()][];
+    m_NumBins = new int[data.numAttributes()];
+    m_SplitPoints = new double[data.numAttributes()][];
+    for (int att = 0; att < data.numAttributes(); att++) {
+      if (att == data.classIndex()) {
+        continue;
+      }
+      Attribute attribute = data.attribute(att);
+      if (attribute.isNominal() && (attribute.numValues() <= MAX_BINS)) {
+        binNominal(att);
+      } else if (attribute.isNumeric()) {
+        binNumeric(att, (index == null) ? null : index.order(att));
+      }
+    }
+  }
+
+  /**
+   * Stores the indices of the values of a nominal attribute.
+   *
+   * @param att the index of the attribute
+   */
+  protected void binNominal(int att) {
+
+    byte[] bins = new byte[m_Data.numInstances()];
+    for (int i = 0; i < bins.length; i++) {
+      double value = m_Data.instance(i).value(att);
+      bins[i] = (byte) (Utils.isMissingValue(value) ? MISSING : (int) value);
+    }
+    m_Bins[att] = bins;
+    m_NumBins[att] = m_Data.attribute(att).numValues();
+  }
+
+  /**
+   * Divides the values of a numeric attribute into bins with roughly equal
+   * numbers of instances. Runs of equal values are never split.
+   *
+   * @param att the index of the attribute
+   * @param order the positions of the instances ordered by their values,
+   *          missing values last, null to sort the values
+   */
+  protected void binNumeric(int att, int[] order) {
+
+    double[] vals = m_Data.attributeToDoubleArray(att);
+    if (order == null) {
+      order = Utils.sort(vals);
+    }
+    byte[] bins = new byte[vals.length];
+    int numValues = 0;
+    for (int element : order) {
+      if (Utils.isMissingValue(vals[element])) {
+        bins[element] = (byte) MISSING;
+      } else {
+        numValues++;
+      }
+    }
+
+    // Utils.sort places Double.MAX_VALUE among the missing values
+    int[] sorted = new int[numValues];
+    int count = 0;
+    for (int element : order) {
+      if (!Utils.isMissingValue(vals[element])) {
+        sorted[count++] = element;
+      }
+    }
+
+    // one bin per distinct value if there are few of them
+    int numDistinct = 0;
+    for (int i = 0; i < numValues; i++) {
+      if ((i == 0) || (vals[sorted[i]] > vals[sorted[i - 1]])) {
+        numDistinct++;
+      }
+    }
+    boolean perValue = (numDistinct <= m_MaxBins);
+
+    double[] splitPoints = new double[m_MaxBins - 1];
+    int bin = 0;
+    for (int i = 0; i < numValues; i++) {
+      bins[sorted[i]] = (byte) bin;
+      if ((i + 1 == numValues) || (bin == m_MaxBins - 1)) {
+        continue;
+      }
+      double value = vals[sorted[i]];
+      double next = vals[sorted[i + 1]];
+      if ((next > value)
+        && (perValue || ((long) (i + 1) * m_MaxBins >= (long) (bin + 1)
+          * numValues))) {
+        double splitPoint = (value + next) / 2.0;
+
+        // Check for numeric precision problems
+        if (splitPoint <= value) {
+          splitPoint = next;
+        }
+        splitPoints[bin++] = splitPoint;
+      }
+    }
+
+    m_Bins[att] = bins;
+    m_NumBins[att] = bin + 1;
+    m_SplitPoints[att] = new double[m_NumBins[att] - 1];
+    System.arraycopy(splitPoints, 0, m_SplitPoints[att], 0,
+      m_SplitPoints[att].length);
+  }
+
+  /**
+   * Returns the binned dataset.
+   *
+   * @return the dataset
+   */
+  public Instances getData() {
+
+    return m_Data;
+  }
+
+  /**
+   * Returns the maximum number of bins of a numeric attribute.
+   *
+   * @return the maximum number of bins
+   */
+  public int getMaxBins() {
+
+    return m_MaxBins;
+  }
+
+  /**
+   * Returns whether an attribute has been binned.
+   *
+   * @param att the index of the attribute
+   * @return true if the attribute has been binned
+   */
+  public boolean isBinned(int att) {
+
+    return m_Bins[att] != null;
+  }
+
+  /**
+   * Returns the number of bins of an attribute.
+   *
+   * @param att the index of the attribute
+   * @return the number of bins, 0 if the attribute has not been binned
+   */
+  public int numBins(int att) {
+
+    return m_NumBins[att];
+  }
+
+  /**
+   * Returns the bins of the values of an attribute, one per instance, with
+   * <code>MISSING</code> for missing values. The array is shared and must not
+   * be modified; its elements must be read as unsigned bytes.
+   *
+   * @param att the index of the attribute
+   * @return the bins, null if the attribute has not been binned
+   */
+  public byte[] bins(int att) {
+
+    return m_Bins[att];
+  }
+
+  /**
+   * Returns the bin of the value of an attribute for an instance.
+   *
+   * @param att the index of the attribute
+   * @param row the position of the instance
+   * @return the bin, <code>MISSING</code> if the value is missing
+   */
+  public int bin(int att, int row) {
+
+    return m_Bins[att][row] & 0xFF;
+  }
+
+  /**
+   * Returns the split point between a bin of a numeric attribute and the
+   * next one: the values in the bin and those below are smaller than it, and
+   * the others are not.
+   *
+   * @param att the index of the attribute
+   * @param bin the bin, less than <code>numBins(att) - 1</code>
+   * @return the split point
+   */
+  public double splitPoint(int att, int bin) {
+
+    return m_SplitPoints[att][bin];
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
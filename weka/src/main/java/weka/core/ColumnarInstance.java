@@ -0,0 +1,143 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ColumnarInstance.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+/**
+ * Lightweight view onto one row of a <code>ColumnarInstances</code> object.
+ * The view does not hold any attribute values itself: all values and the
+ * weight are read from, and written to, the columns of the underlying
+ * dataset. Copies obtained via <code>copy()</code> are independent
+ * <code>DenseInstance</code> objects.
+ * <p>
+ *
+ * Views are created by <code>ColumnarInstances.instance(int)</code> and are
+ * not meant to be instantiated directly.
+ *
+ * @version $Revision$
+ * @see ColumnarInstances
+ */
+public class ColumnarInstance extends AbstractInstanceView {
+
+  /** for serialization */
+  private static final long serialVersionUID = 6207218344610945372L;
+
+  /** the column storage holding the values */
+  protected ColumnarInstances m_Store;
+
+  /** the row in the column storage */
+  protected int m_Row;
+
+  /**
+   * Creates a view onto the given row of the column storage. The view has
+   * access to the storage as its dataset.
+   *
+   * @param store the column storage
+   * @param row the row
+   */
+  protected ColumnarInstance(ColumnarInstances store, int row) {
+
+    m_Store = store;
+    m_Row = row;
+    m_Dataset = store;
+  }
+
+  /**
+   * Tests if a specific value is "missing".
+   *
+   * @param attIndex the attribute's index
+   * @return true if the value is "missing"
+   */
+  @Override
+  public boolean isMissing(int attIndex) {
+
+    return m_Store.rowIsMissing(m_Row, attIndex);
+  }
+
+  /**
+   * Returns the number of attributes.
+   *
+   * @return the number of attributes as an integer
+   */
+  @Override
+  public int numAttributes() {
+
+    return m_Store.m_ColumnKinds.length;
+  }
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format). The value is written to the column storage.
+   *
+   * @param attIndex the attribute's index
+   * @param value the new attribute value
+   */
+  @Override
+  public void setValue(int attIndex, double value) {
+
+    m_Store.setRowValue(m_Row, attIndex, value);
+  }
+
+  /**
+   * Sets the weight of an instance. The weight is written to the column
+   * storage.
+   *
+   * @param weight the weight
+   */
+  @Override
+  public void setWeight(double weight) {
+
+    m_Store.setRowWeight(m_Row, weight);
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   *
+   * @param attIndex the attribute's index
+   * @return the specified value as a double
+   */
+  @Override
+  public double value(int attIndex) {
+
+    return m_Store.rowValue(m_Row, attIndex);
+  }
+
+  /**
+   * Returns the instance's weight.
+   *
+   * @return the instance's weight as a double
+   */
+  @Override
+  public double weight() {
+
+    return m_Store.rowWeight(m_Row);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,729 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    ColumnarInstances.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Column-oriented set of instances. Instead of holding one
+ * <code>Instance</code> object (and one value array) per row, the attribute
+ * values are stored in one primitive array per attribute: numeric and date
+ * attributes use <code>double</code> columns, nominal attributes use
+ * <code>byte</code> or <code>short</code> codes (depending on the number of
+ * labels), and string and relational attributes use <code>int</code> codes.
+ * The instance weights are kept in a separate <code>double</code> column.
+ * <p>
+ *
+ * <code>Instance</code> objects are handed out on demand as lightweight views
+ * (see <code>ColumnarInstance</code>) onto a row of the column storage, so
+ * this class can be used wherever an <code>Instances</code> object is
+ * expected. Changing a value through a view changes the underlying column.
+ * Views remain valid while the set is reordered (e.g. sorted, randomized or
+ * stratified) and after their row has been removed from the set, but not after
+ * <code>delete()</code> has been called.
+ * <p>
+ *
+ * Note that schemes that take a copy of their training data via
+ * <code>new Instances(data)</code> will obtain a standard row-oriented copy.
+ * <p>
+ *
+ * Typical usage:
+ * <p>
+ *
+ * <pre>
+ * Instances data = new ColumnarInstances(DataSource.read(filename));
+ * </pre>
+ *
+ * @version $Revision$
+ * @see ColumnarInstance
+ */
+public class ColumnarInstances extends IndexedInstances {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2846390174823451207L;
+
+  /** column holding doubles */
+  protected static final int DOUBLE_COLUMN = 0;
+
+  /** column holding byte codes (-1 denotes a missing value) */
+  protected static final int BYTE_COLUMN = 1;
+
+  /** column holding short codes (-1 denotes a missing value) */
+  protected static final int SHORT_COLUMN = 2;
+
+  /** column holding int codes (-1 denotes a missing value) */
+  protected static final int INT_COLUMN = 3;
+
+  /** the kind of storage used for each attribute */
+  protected int[] m_ColumnKinds;
+
+  /** the double columns (null for attributes stored differently) */
+  protected double[][] m_DoubleColumns;
+
+  /** the byte columns (null for attributes stored differently) */
+  protected byte[][] m_ByteColumns;
+
+  /** the short columns (null for attributes stored differently) */
+  protected short[][] m_ShortColumns;
+
+  /** the int columns (null for attributes stored differently) */
+  protected int[][] m_IntColumns;
+
+  /** the weight of each row */
+  protected double[] m_Weights;
+
+  /** the number of rows allocated in the columns so far */
+  protected int m_NumRows;
+
+  /**
+   * Constructor copying all instances and references to the header information
+   * from the given set of instances.
+   *
+   * @param dataset the set to be copied
+   */
+  public ColumnarInstances(Instances dataset) {
+
+    this(dataset, dataset.numInstances());
+
+    dataset.copyInstances(0, this, dataset.numInstances());
+  }
+
+  /**
+   * Constructor creating an empty set of instances. Copies references to the
+   * header information from the given set of instances. Sets the capacity of
+   * the set of instances to 0 if its negative.
+   *
+   * @param dataset the instances from which the header information is to be
+   *          taken
+   * @param capacity the capacity of the new dataset
+   */
+  public ColumnarInstances(Instances dataset, int capacity) {
+
+    super(dataset, capacity);
+
+    initializeColumns(capacity);
+  }
+
+  /**
+   * Creates an empty set of instances. Uses the given attribute information.
+   * Sets the capacity of the set of instances to 0 if its negative. Given
+   * attribute information must not be changed after this constructor has been
+   * used.
+   *
+   * @param name the name of the relation
+   * @param attInfo the attribute information
+   * @param capacity the capacity of the set
+   * @throws IllegalArgumentException if attribute names are not unique
+   */
+  public ColumnarInstances(String name, ArrayList<Attribute> attInfo,
+    int capacity) {
+
+    super(name, attInfo, capacity);
+
+    initializeColumns(capacity);
+  }
+
+  /**
+   * Sets up empty columns for the current header.
+   *
+   * @param capacity the number of rows to reserve
+   */
+  protected void initializeColumns(int capacity) {
+
+    if (capacity < 0) {
+      capacity = 0;
+    }
+    int numAtts = numAttributes();
+    m_ColumnKinds = new int[numAtts];
+    m_DoubleColumns = new double[numAtts][];
+    m_ByteColumns = new byte[numAtts][];
+    m_ShortColumns = new short[numAtts][];
+    m_IntColumns = new int[numAtts][];
+    for (int i = 0; i < numAtts; i++) {
+      allocateColumn(i, columnKind(attribute(i)), capacity);
+    }
+    m_Weights = new double[capacity];
+    m_Order = new int[capacity];
+    m_NumRows = 0;
+    m_Size = 0;
+  }
+
+  /**
+   * Determines the most compact kind of column for the given attribute.
+   *
+   * @param att the attribute
+   * @return the column kind
+   */
+  protected static int columnKind(Attribute att) {
+
+    switch (att.type()) {
+    case Attribute.NOMINAL:
+      if (att.numValues() <= Byte.MAX_VALUE + 1) {
+        return BYTE_COLUMN;
+      } else if (att.numValues() <= Short.MAX_VALUE + 1) {
+        return SHORT_COLUMN;
+      } else {
+        return INT_COLUMN;
+      }
+    case Attribute.STRING:
+    case Attribute.RELATIONAL:
+      return INT_COLUMN;
+    default:
+      return DOUBLE_COLUMN;
+    }
+  }
+
+  /**
+   * Allocates a fresh column for the given attribute, with all values missing.
+   *
+   * @param attIndex the attribute's index
+   * @param kind the kind of column
+   * @param capacity the number of rows to reserve
+   */
+  protected void allocateColumn(int attIndex, int kind, int capacity) {
+
+    m_ColumnKinds[attIndex] = kind;
+    m_DoubleColumns[attIndex] = null;
+    m_ByteColumns[attIndex] = null;
+    m_ShortColumns[attIndex] = null;
+    m_IntColumns[attIndex] = null;
+    switch (kind) {
+    case BYTE_COLUMN:
+      m_ByteColumns[attIndex] = new byte[capacity];
+      Arrays.fill(m_ByteColumns[attIndex], (byte) -1);
+      break;
+    case SHORT_COLUMN:
+      m_ShortColumns[attIndex] = new short[capacity];
+      Arrays.fill(m_ShortColumns[attIndex], (short) -1);
+      break;
+    case INT_COLUMN:
+      m_IntColumns[attIndex] = new int[capacity];
+      Arrays.fill(m_IntColumns[attIndex], -1);
+      break;
+    default:
+      m_DoubleColumns[attIndex] = new double[capacity];
+      Arrays.fill(m_DoubleColumns[attIndex], Utils.missingValue());
+    }
+  }
+
+  /**
+   * Returns the number of rows the columns can currently hold.
+   *
+   * @return the capacity
+   */
+  protected int capacity() {
+
+    return m_Weights.length;
+  }
+
+  /**
+   * Grows the columns so that they can hold at least the given number of rows.
+   *
+   * @param minCapacity the required capacity
+   */
+  protected void ensureCapacity(int minCapacity) {
+
+    int oldCapacity = capacity();
+    if (minCapacity <= oldCapacity) {
+      return;
+    }
+    int newCapacity = Math.max(minCapacity, oldCapacity + (oldCapacity >> 1)
+      + 1);
+    for (int i = 0; i < m_ColumnKinds.length; i++) {
+      resizeColumn(i, newCapacity);
+    }
+    m_Weights = Arrays.copyOf(m_Weights, newCapacity);
+    m_Order = Arrays.copyOf(m_Order, newCapacity);
+  }
+
+  /**
+   * Changes the capacity of the given column, setting new rows to missing.
+   *
+   * @param attIndex the attribute's index
+   * @param newCapacity the new capacity
+   */
+  protected void resizeColumn(int attIndex, int newCapacity) {
+
+    int oldCapacity;
+    switch (m_ColumnKinds[attIndex]) {
+    case BYTE_COLUMN:
+      oldCapacity = m_ByteColumns[attIndex].length;
+      m_ByteColumns[attIndex] = Arrays.copyOf(m_ByteColumns[attIndex],
+        newCapacity);
+      if (newCapacity > oldCapacity) {
+        Arrays.fill(m_ByteColumns[attIndex], oldCapacity, newCapacity,
+          (byte) -1);
+      }
+      break;
+    case SHORT_COLUMN:
+      oldCapacity = m_ShortColumns[attIndex].length;
+      m_ShortColumns[attIndex] = Arrays.copyOf(m_ShortColumns[attIndex],
+        newCapacity);
+      if (newCapacity > oldCapacity) {
+        Arrays.fill(m_ShortColumns[attIndex], oldCapacity, newCapacity,
+          (short) -1);
+      }
+      break;
+    case INT_COLUMN:
+      oldCapacity = m_IntColumns[attIndex].length;
+      m_IntColumns[attIndex] = Arrays.copyOf(m_IntColumns[attIndex],
+        newCapacity);
+      if (newCapacity > oldCapacity) {
+        Arrays.fill(m_IntColumns[attIndex], oldCapacity, newCapacity, -1);
+      }
+      break;
+    default:
+      oldCapacity = m_DoubleColumns[attIndex].length;
+      m_DoubleColumns[attIndex] = Arrays.copyOf(m_DoubleColumns[attIndex],
+        newCapacity);
+      if (newCapacity > oldCapacity) {
+        Arrays.fill(m_DoubleColumns[attIndex], oldCapacity, newCapacity,
+          Utils.missingValue());
+      }
+    }
+  }
+
+  /**
+   * Converts the given column into a wider kind of column, preserving its
+   * values.
+   *
+   * @param attIndex the attribute's index
+   * @param kind the new kind of column
+   */
+  protected void widenColumn(int attIndex, int kind) {
+
+    int capacity = capacity();
+    double[] values = new double[m_NumRows];
+    for (int row = 0; row < m_NumRows; row++) {
+      values[row] = rowValue(row, attIndex);
+    }
+    allocateColumn(attIndex, kind, capacity);
+    for (int row = 0; row < m_NumRows; row++) {
+      setRowValue(row, attIndex, values[row]);
+    }
+  }
+
+  /**
+   * Returns a value stored in the columns.
+   *
+   * @param row the row in the column storage
+   * @param attIndex the attribute's index
+   * @return the value in internal floating-point format
+   */
+  @Override
+  protected final double rowValue(int row, int attIndex) {
+
+    int code;
+    switch (m_ColumnKinds[attIndex]) {
+    case BYTE_COLUMN:
+      code = m_ByteColumns[attIndex][row];
+      break;
+    case SHORT_COLUMN:
+      code = m_ShortColumns[attIndex][row];
+      break;
+    case INT_COLUMN:
+      code = m_IntColumns[attIndex][row];
+      break;
+    default:
+      return m_DoubleColumns[attIndex][row];
+    }
+    return (code < 0) ? Utils.missingValue() : code;
+  }
+
+  /**
+   * Returns whether a value stored in the columns is missing.
+   *
+   * @param row the row in the column storage
+   * @param attIndex the attribute's index
+   * @return true if the value is missing
+   */
+  @Override
+  protected final boolean rowIsMissing(int row, int attIndex) {
+
+    switch (m_ColumnKinds[attIndex]) {
+    case BYTE_COLUMN:
+      return m_ByteColumns[attIndex][row] < 0;
+    case SHORT_COLUMN:
+      return m_ShortColumns[attIndex][row] < 0;
+    case INT_COLUMN:
+      return m_IntColumns[attIndex][row] < 0;
+    default:
+      return Utils.isMissingValue(m_DoubleColumns[attIndex][row]);
+    }
+  }
+
+  /**
+   * Stores a value in the columns. Code columns are widened if the value does
+   * not fit.
+   *
+   * @param row the row in the column storage
+   * @param attIndex the attribute's index
+   * @param value the value in internal floating-point format
+   */
+  protected final void setRowValue(int row, int attIndex, double value) {
+
+    int kind = m_ColumnKinds[attIndex];
+    if (kind == DOUBLE_COLUMN) {
+      m_DoubleColumns[attIndex][row] = value;
+      return;
+    }
+    int code;
+    if (Utils.isMissingValue(value)) {
+      code = -1;
+    } else {
+      code = (int) value;
+      if ((code != value) || (code < 0)) {
+        widenColumn(attIndex, DOUBLE_COLUMN);
+        m_DoubleColumns[attIndex][row] = value;
+        return;
+      }
+    }
+    switch (kind) {
+    case BYTE_COLUMN:
+      if (code > Byte.MAX_VALUE) {
+        widenColumn(attIndex, (code > Short.MAX_VALUE) ? INT_COLUMN
+          : SHORT_COLUMN);
+        setRowValue(row, attIndex, value);
+      } else {
+        m_ByteColumns[attIndex][row] = (byte) code;
+      }
+      break;
+    case SHORT_COLUMN:
+      if (code > Short.MAX_VALUE) {
+        widenColumn(attIndex, INT_COLUMN);
+        setRowValue(row, attIndex, value);
+      } else {
+        m_ShortColumns[attIndex][row] = (short) code;
+      }
+      break;
+    default:
+      m_IntColumns[attIndex][row] = code;
+    }
+  }
+
+  /**
+   * Returns the weight stored for a row.
+   *
+   * @param row the row in the column storage
+   * @return the weight
+   */
+  @Override
+  protected final double rowWeight(int row) {
+
+    return m_Weights[row];
+  }
+
+  /**
+   * Sets the weight stored for a row.
+   *
+   * @param row the row in the column storage
+   * @param weight the weight
+   */
+  protected final void setRowWeight(int row, double weight) {
+
+    m_Weights[row] = weight;
+  }
+
+  /**
+   * Appends the values and the weight of the given instance as a new row to
+   * the column storage. The row is not yet part of the dataset.
+   *
+   * @param instance the instance to store
+   * @return the new row
+   */
+  protected int appendRow(Instance instance) {
+
+    ensureCapacity(m_NumRows + 1);
+    int row = m_NumRows++;
+    int numAtts = m_ColumnKinds.length;
+    if (instance.numValues() == instance.numAttributes()) {
+      for (int i = 0; i < numAtts; i++) {
+        setRowValue(row, i, instance.value(i));
+      }
+    } else {
+      // Sparse instance: everything not stored is zero
+      for (int i = 0; i < numAtts; i++) {
+        setRowValue(row, i, 0);
+      }
+      for (int i = 0; i < instance.numValues(); i++) {
+        setRowValue(row, instance.index(i), instance.valueSparse(i));
+      }
+    }
+    m_Weights[row] = instance.weight();
+    return row;
+  }
+
+  /**
+   * Adds one instance to the end of the set. The instance's values are copied
+   * into the columns. Does not check if the instance is compatible with the
+   * dataset. Note: String or relational values are not transferred.
+   *
+   * @param instance the instance to be added
+   */
+  @Override
+  public boolean add(Instance instance) {
+
+    int row = appendRow(instance);
+    m_Order[m_Size++] = row;
+    modCount++;
+
+    return true;
+  }
+
+  /**
+   * Adds one instance at the given position in the list. The instance's values
+   * are copied into the columns. Does not check if the instance is compatible
+   * with the dataset. Note: String or relational values are not transferred.
+   *
+   * @param index position where instance is to be inserted
+   * @param instance the instance to be added
+   */
+  @Override
+  public void add(int index, Instance instance) {
+
+    if ((index < 0) || (index > m_Size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+        + m_Size);
+    }
+    insertRow(index, appendRow(instance));
+  }
+
+  /**
+   * Replaces the instance at the given position. The instance's values are
+   * copied into the columns. Does not check if the instance is compatible with
+   * the dataset. Note: String or relational values are not transferred.
+   *
+   * @param index position where instance is to be inserted
+   * @param instance the instance to be inserted
+   * @return the instance previously at that position
+   */
+  @Override
+  public Instance set(int index, Instance instance) {
+
+    Instance oldInstance = instance(index);
+    m_Order[index] = appendRow(instance);
+
+    return oldInstance;
+  }
+
+  /**
+   * Returns a view onto a row of the column storage.
+   *
+   * @param row the row in the column storage
+   * @return the view
+   */
+  @Override
+  protected Instance rowInstance(int row) {
+
+    return new ColumnarInstance(this, row);
+  }
+
+  /**
+   * Compactifies the set of instances. Decreases the capacity of the columns
+   * so that it matches the number of rows stored.
+   */
+  @Override
+  public void compactify() {
+
+    for (int i = 0; i < m_ColumnKinds.length; i++) {
+      resizeColumn(i, m_NumRows);
+    }
+    m_Weights = Arrays.copyOf(m_Weights, m_NumRows);
+    m_Order = Arrays.copyOf(m_Order, m_NumRows);
+  }
+
+  /**
+   * Removes all instances from the set and releases the column storage.
+   */
+  @Override
+  public void delete() {
+
+    initializeColumns(0);
+    modCount++;
+  }
+
+  /**
+   * Removes the column at the given position.
+   *
+   * @param position the attribute's position (position starts with 0)
+   */
+  @Override
+  protected void deleteAttributeValuesAt(int position) {
+
+    m_ColumnKinds = deleteElement(m_ColumnKinds, position);
+    m_DoubleColumns = deleteElement(m_DoubleColumns, position);
+    m_ByteColumns = deleteElement(m_ByteColumns, position);
+    m_ShortColumns = deleteElement(m_ShortColumns, position);
+    m_IntColumns = deleteElement(m_IntColumns, position);
+  }
+
+  /**
+   * Inserts a column at the given position, with all values missing.
+   *
+   * @param position the attribute's position (position starts with 0)
+   */
+  @Override
+  protected void insertAttributeValuesAt(int position) {
+
+    m_ColumnKinds = insertElement(m_ColumnKinds, position);
+    m_DoubleColumns = insertElement(m_DoubleColumns, position);
+    m_ByteColumns = insertElement(m_ByteColumns, position);
+    m_ShortColumns = insertElement(m_ShortColumns, position);
+    m_IntColumns = insertElement(m_IntColumns, position);
+    allocateColumn(position, columnKind(attribute(position)), capacity());
+  }
+
+  /**
+   * Replaces the column at the given position by one with all values missing.
+   *
+   * @param position the attribute's position (position starts with 0)
+   */
+  @Override
+  protected void replaceAttributeValuesAt(int position) {
+
+    allocateColumn(position, columnKind(attribute(position)), capacity());
+  }
+
+  /**
+   * Removes an element from an array.
+   *
+   * @param array the array
+   * @param position the element to remove
+   * @return the shortened copy
+   */
+  private static int[] deleteElement(int[] array, int position) {
+
+    int[] result = new int[array.length - 1];
+    System.arraycopy(array, 0, result, 0, position);
+    System.arraycopy(array, position + 1, result, position, array.length
+      - position - 1);
+    return result;
+  }
+
+  /**
+   * Removes an element from an array.
+   *
+   * @param array the array
+   * @param position the element to remove
+   * @return the shortened copy
+   */
+  private static <T> T[] deleteElement(T[] array, int position) {
+
+    T[] result = Arrays.copyOf(array, array.length - 1);
+    System.arraycopy(array, position + 1, result, position, array.length
+      - position - 1);
+    return result;
+  }
+
+  /**
+   * Inserts an empty element into an array.
+   *
+   * @param array the array
+   * @param position the position of the new element
+   * @return the lengthened copy
+   */
+  private static int[] insertElement(int[] array, int position) {
+
+    int[] result = new int[array.length + 1];
+    System.arraycopy(array, 0, result, 0, position);
+    System.arraycopy(array, position, result, position + 1, array.length
+      - position);
+    return result;
+  }
+
+  /**
+   * Inserts an empty element into an array.
+   *
+   * @param array the array
+   * @param position the position of the new element
+   * @return the lengthened copy
+   */
+  private static <T> T[] insertElement(T[] array, int position) {
+
+    T[] result = Arrays.copyOf(array, array.length + 1);
+    System.arraycopy(array, position, result, position + 1, array.length
+      - position);
+    result[position] = null;
+    return result;
+  }
+
+  /**
+   * Gets the value of all instances in this dataset for a particular attribute.
+   *
+   * @param index the index of the attribute.
+   * @return an array containing the value of the desired attribute for each
+   *         instance in the dataset.
+   */
+  @Override
+  public double[] attributeToDoubleArray(int index) {
+
+    double[] result = new double[m_Size];
+    if (m_ColumnKinds[index] == DOUBLE_COLUMN) {
+      double[] column = m_DoubleColumns[index];
+      for (int i = 0; i < result.length; i++) {
+        result[i] = column[m_Order[i]];
+      }
+    } else {
+      for (int i = 0; i < result.length; i++) {
+        result[i] = rowValue(m_Order[i], index);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the approximate number of bytes occupied by the column storage.
+   *
+   * @return the size of the columns in bytes
+   */
+  public long columnBytes() {
+
+    long result = 8L * m_Weights.length + 4L * m_Order.length;
+    for (int i = 0; i < m_ColumnKinds.length; i++) {
+      switch (m_ColumnKinds[i]) {
+      case BYTE_COLUMN:
+        result += m_ByteColumns[i].length;
+        break;
+      case SHORT_COLUMN:
+        result += 2L * m_ShortColumns[i].length;
+        break;
+      case INT_COLUMN:
+        result += 4L * m_IntColumns[i].length;
+        break;
+      default:
+        result += 8L * m_DoubleColumns[i].length;
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,705 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    CompactSparseInstance.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+/**
+ * Class for storing a sparse instance in compressed form. The indices of the
+ * stored values are delta-coded as variable-length integers in a byte array,
+ * with a small skip table every few entries so that values can still be
+ * located by binary search. The values are kept in the narrowest array that
+ * represents all of them exactly:
+ * <ul>
+ * <li>no array at all if all values are 1 (e.g. binary features),</li>
+ * <li>bytes or shorts if all values are small integers (e.g. word counts),</li>
+ * <li>floats if all values survive the conversion to float,</li>
+ * <li>doubles otherwise.</li>
+ * </ul>
+ * Missing values are stored as a reserved byte or short value, or NaN. The
+ * encoding is therefore lossless and the instance behaves exactly like the
+ * equivalent <code>SparseInstance</code>, so that learners that iterate over
+ * <code>numValues()</code>, <code>index(int)</code> and
+ * <code>valueSparse(int)</code> work on it unchanged. For typical text data,
+ * an instance occupies three to six times less memory than a
+ * <code>SparseInstance</code>.
+ * <p>
+ *
+ * Modifying a value re-encodes the whole instance, so this class is meant for
+ * data that is mostly read, like training data of SMO, SGD or
+ * NaiveBayesMultinomial.
+ *
+ * @version $Revision$
+ */
+public class CompactSparseInstance extends SparseInstance {
+
+  /** for serialization */
+  private static final long serialVersionUID = 7409472236593251618L;
+
+  /** The number of entries per block of the skip table. */
+  protected static final int BLOCK_SIZE = 8;
+
+  /** The shift that turns a position into its block. */
+  protected static final int BLOCK_SHIFT = 3;
+
+  /** The byte value that encodes a missing value. */
+  protected static final byte MISSING_BYTE = Byte.MIN_VALUE;
+
+  /** The short value that encodes a missing value. */
+  protected static final short MISSING_SHORT = Short.MIN_VALUE;
+
+  /**
+   * The gaps between consecutive indices (the first index counts from -1),
+   * minus one, as variable-length integers with seven bits per byte.
+   */
+  protected byte[] m_Packed;
+
+  /**
+   * For each block but the first: the offset in the packed indices after its
+   * first entry, followed by the index of that entry.
+   */
+  protected int[] m_Skips;
+
+  /** The number of stored values. */
+  protected int m_NumValues;
+
+  /** The values, if they are all small integers or missing. */
+  protected byte[] m_ByteValues;
+
+  /** The values, if they are all integers in the range of a short or missing. */
+  protected short[] m_ShortValues;
+
+  /** The values, if they can all be represented as floats. */
+  protected float[] m_FloatValues;
+
+  /**
+   * Constructor that generates a compact sparse instance from the given
+   * instance. Reference to the dataset is set to null. (ie. the instance
+   * doesn't have access to information about the attribute types)
+   *
+   * @param instance the instance from which the attribute values and the weight
+   *          are to be copied
+   */
+  public CompactSparseInstance(Instance instance) {
+
+    m_Weight = instance.weight();
+    m_Dataset = null;
+    m_NumAttributes = instance.numAttributes();
+    if (instance instanceof CompactSparseInstance) {
+      CompactSparseInstance compact = (CompactSparseInstance) instance;
+      if (compact.m_Indices == null) {
+        m_Packed = compact.m_Packed;
+        m_Skips = compact.m_Skips;
+        m_NumValues = compact.m_NumValues;
+        m_ByteValues = compact.m_ByteValues;
+        m_ShortValues = compact.m_ShortValues;
+        m_FloatValues = compact.m_FloatValues;
+        m_AttValues = compact.m_AttValues;
+        return;
+      }
+    }
+    double[] values = new double[instance.numValues()];
+    int[] indices = new int[instance.numValues()];
+    int vals = 0;
+    for (int i = 0; i < instance.numValues(); i++) {
+      if (instance.valueSparse(i) != 0) {
+        values[vals] = instance.valueSparse(i);
+        indices[vals] = instance.index(i);
+        vals++;
+      }
+    }
+    pack(indices, values, vals);
+  }
+
+  /**
+   * Constructor that generates a compact sparse instance from the given
+   * parameters. Reference to the dataset is set to null. (ie. the instance
+   * doesn't have access to information about the attribute types)
+   *
+   * @param weight the instance's weight
+   * @param attValues a vector of attribute values
+   */
+  public CompactSparseInstance(double weight, double[] attValues) {
+
+    m_Weight = weight;
+    m_Dataset = null;
+    m_NumAttributes = attValues.length;
+    double[] values = new double[m_NumAttributes];
+    int[] indices = new int[m_NumAttributes];
+    int vals = 0;
+    for (int i = 0; i < m_NumAttributes; i++) {
+      if (attValues[i] != 0) {
+        values[vals] = attValues[i];
+        indices[vals] = i;
+        vals++;
+      }
+    }
+    pack(indices, values, vals);
+  }
+
+  /**
+   * Constructor that initializes instance variable with given values.
+   * Reference to the dataset is set to null. (ie. the instance doesn't have
+   * access to information about the attribute types)
+   *
+   * @param weight the instance's weight
+   * @param attValues a vector of attribute values (just the ones to be stored)
+   * @param indices the indices of the given values in the full vector (need to
+   *          be sorted in ascending order)
+   * @param maxNumValues the maximum number of values that can be stored
+   * @throws IllegalArgumentException if the indices are not in ascending order
+   */
+  public CompactSparseInstance(double weight, double[] attValues,
+    int[] indices, int maxNumValues) {
+
+    m_Weight = weight;
+    m_Dataset = null;
+    m_NumAttributes = maxNumValues;
+    double[] values = new double[attValues.length];
+    int[] newIndices = new int[attValues.length];
+    int vals = 0;
+    for (int i = 0; i < attValues.length; i++) {
+      if (attValues[i] != 0) {
+        values[vals] = attValues[i];
+        newIndices[vals] = indices[i];
+        vals++;
+      }
+    }
+    pack(newIndices, values, vals);
+  }
+
+  /**
+   * Encodes the given indices and values, replacing the current contents of
+   * the instance.
+   *
+   * @param indices the indices, in ascending order
+   * @param values the values
+   * @param num the number of entries to use from the arrays
+   * @throws IllegalArgumentException if the indices are not in ascending order
+   */
+  protected void pack(int[] indices, double[] values, int num) {
+
+    // indices
+    byte[] buffer = new byte[num * 5];
+    int[] skips = new int[2 * Math.max(0, (num - 1) >> BLOCK_SHIFT)];
+    int offset = 0;
+    int prev = -1;
+    for (int i = 0; i < num; i++) {
+      int gap = indices[i] - prev - 1;
+      if (gap < 0) {
+        throw new IllegalArgumentException(
+          "Indices of sparse instance must be in ascending order!");
+      }
+      while ((gap & ~0x7F) != 0) {
+        buffer[offset++] = (byte) ((gap & 0x7F) | 0x80);
+        gap >>>= 7;
+      }
+      buffer[offset++] = (byte) gap;
+      prev = indices[i];
+      if ((i > 0) && ((i & (BLOCK_SIZE - 1)) == 0)) {
+        int block = i >> BLOCK_SHIFT;
+        skips[2 * block - 2] = offset;
+        skips[2 * block - 1] = prev;
+      }
+    }
+    m_Packed = new byte[offset];
+    System.arraycopy(buffer, 0, m_Packed, 0, offset);
+    m_Skips = skips;
+    m_NumValues = num;
+    m_Indices = null;
+
+    // values: find the narrowest type that holds all of them
+    boolean ones = true;
+    boolean bytes = true;
+    boolean shorts = true;
+    boolean floats = true;
+    for (int i = 0; i < num; i++) {
+      double value = values[i];
+      if (Utils.isMissingValue(value)) {
+        ones = false;
+        continue;
+      }
+      if (value != 1) {
+        ones = false;
+      }
+      if (value != Math.rint(value)) {
+        bytes = false;
+        shorts = false;
+      } else {
+        if ((value <= MISSING_BYTE) || (value > Byte.MAX_VALUE)) {
+          bytes = false;
+        }
+        if ((value <= MISSING_SHORT) || (value > Short.MAX_VALUE)) {
+          shorts = false;
+        }
+      }
+      if ((float) value != value) {
+        floats = false;
+      }
+    }
+    m_ByteValues = null;
+    m_ShortValues = null;
+    m_FloatValues = null;
+    m_AttValues = null;
+    if (ones) {
+      return;
+    }
+    if (bytes) {
+      m_ByteValues = new byte[num];
+      for (int i = 0; i < num; i++) {
+        m_ByteValues[i] = Utils.isMissingValue(values[i]) ? MISSING_BYTE
+          : (byte) values[i];
+      }
+    } else if (shorts) {
+      m_ShortValues = new short[num];
+      for (int i = 0; i < num; i++) {
+        m_ShortValues[i] = Utils.isMissingValue(values[i]) ? MISSING_SHORT
+          : (short) values[i];
+      }
+    } else if (floats) {
+      m_FloatValues = new float[num];
+      for (int i = 0; i < num; i++) {
+        m_FloatValues[i] = (float) values[i];
+      }
+    } else {
+      m_AttValues = new double[num];
+      System.arraycopy(values, 0, m_AttValues, 0, num);
+    }
+  }
+
+  /**
+   * Re-encodes the indices and values that a method of the superclass left in
+   * the uncompressed arrays.
+   */
+  protected void pack() {
+
+    int[] indices = m_Indices;
+    double[] values = m_AttValues;
+    pack(indices, values, indices.length);
+  }
+
+  /**
+   * Decodes the instance into the uncompressed arrays of the superclass, so
+   * that its methods can modify them. Must be followed by
+   * <code>pack()</code>.
+   */
+  protected void unpack() {
+
+    double[] values = new double[m_NumValues];
+    for (int i = 0; i < m_NumValues; i++) {
+      values[i] = valueSparse(i);
+    }
+    m_Indices = decodeIndices();
+    m_AttValues = values;
+    m_Packed = null;
+    m_Skips = null;
+    m_ByteValues = null;
+    m_ShortValues = null;
+    m_FloatValues = null;
+  }
+
+  /**
+   * Decodes all indices.
+   *
+   * @return the indices of the stored values
+   */
+  protected int[] decodeIndices() {
+
+    int[] result = new int[m_NumValues];
+    int offset = 0;
+    int prev = -1;
+    for (int i = 0; i < m_NumValues; i++) {
+      int gap = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = m_Packed[offset++];
+        gap |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      prev += gap + 1;
+      result[i] = prev;
+    }
+    return result;
+  }
+
+  /**
+   * Produces a shallow copy of this instance. The copy has access to the same
+   * dataset and shares the encoded arrays, which are never modified in place.
+   *
+   * @return the shallow copy
+   */
+  @Override
+  public Object copy() {
+
+    CompactSparseInstance result = new CompactSparseInstance(this);
+    result.m_Dataset = m_Dataset;
+    return result;
+  }
+
+  /**
+   * Copies the instance but fills up its values based on the given array
+   * of doubles. The copy has access to the same dataset.
+   *
+   * @param values the array with new values
+   * @return the new instance
+   */
+  @Override
+  public Instance copy(double[] values) {
+
+    CompactSparseInstance result = new CompactSparseInstance(this.m_Weight,
+      values);
+    result.m_Dataset = m_Dataset;
+    return result;
+  }
+
+  /**
+   * Returns the index of the attribute stored at the given position.
+   *
+   * @param position the position
+   * @return the index of the attribute stored at the given position
+   */
+  @Override
+  public int index(int position) {
+
+    if (m_Indices != null) {
+      return m_Indices[position];
+    }
+    if ((position < 0) || (position >= m_NumValues)) {
+      throw new ArrayIndexOutOfBoundsException(position);
+    }
+    int block = position >> BLOCK_SHIFT;
+    int offset;
+    int index;
+    int steps;
+    if (block == 0) {
+      offset = 0;
+      index = -1;
+      steps = position + 1;
+    } else {
+      offset = m_Skips[2 * block - 2];
+      index = m_Skips[2 * block - 1];
+      steps = position & (BLOCK_SIZE - 1);
+    }
+    for (int i = 0; i < steps; i++) {
+      int gap = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = m_Packed[offset++];
+        gap |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      index += gap + 1;
+    }
+    return index;
+  }
+
+  /**
+   * Locates the greatest index that is not greater than the given index.
+   *
+   * @return the internal index of the attribute index. Returns -1 if no index
+   *         with this property could be found
+   */
+  @Override
+  public int locateIndex(int index) {
+
+    if (m_Indices != null) {
+      return super.locateIndex(index);
+    }
+    if (m_NumValues == 0) {
+      return -1;
+    }
+
+    // find the last block whose first index is not greater than the index
+    int min = 1;
+    int max = m_Skips.length / 2;
+    int block = 0;
+    while (min <= max) {
+      int mid = (min + max) >>> 1;
+      if (m_Skips[2 * mid - 1] <= index) {
+        block = mid;
+        min = mid + 1;
+      } else {
+        max = mid - 1;
+      }
+    }
+
+    // scan the block
+    int position = block << BLOCK_SHIFT;
+    int end = Math.min(position + BLOCK_SIZE, m_NumValues);
+    int offset;
+    int current;
+    if (block == 0) {
+      offset = 0;
+      current = -1;
+      position = -1;
+    } else {
+      offset = m_Skips[2 * block - 2];
+      current = m_Skips[2 * block - 1];
+    }
+    while (position + 1 < end) {
+      int gap = 0;
+      int shift = 0;
+      byte b;
+      do {
+        b = m_Packed[offset++];
+        gap |= (b & 0x7F) << shift;
+        shift += 7;
+      } while (b < 0);
+      current += gap + 1;
+      if (current > index) {
+        break;
+      }
+      position++;
+    }
+    return position;
+  }
+
+  /**
+   * Returns the number of values present in a sparse representation.
+   *
+   * @return the number of values
+   */
+  @Override
+  public int numValues() {
+
+    return (m_Indices != null) ? m_Indices.length : m_NumValues;
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format, given an index
+   * in the sparse representation.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @return the specified value as a double (If the corresponding attribute is
+   *         nominal (or a string) then it returns the value's index as a
+   *         double).
+   */
+  @Override
+  public double valueSparse(int indexOfIndex) {
+
+    if (m_AttValues != null) {
+      return m_AttValues[indexOfIndex];
+    }
+    if (m_FloatValues != null) {
+      return m_FloatValues[indexOfIndex];
+    }
+    if (m_ShortValues != null) {
+      short value = m_ShortValues[indexOfIndex];
+      return (value == MISSING_SHORT) ? Utils.missingValue() : value;
+    }
+    if (m_ByteValues != null) {
+      byte value = m_ByteValues[indexOfIndex];
+      return (value == MISSING_BYTE) ? Utils.missingValue() : value;
+    }
+    if ((indexOfIndex < 0) || (indexOfIndex >= numValues())) {
+      throw new ArrayIndexOutOfBoundsException(indexOfIndex);
+    }
+    return 1.0;
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   *
+   * @param attIndex the attribute's index
+   * @return the specified value as a double (If the corresponding attribute is
+   *         nominal (or a string) then it returns the value's index as a
+   *         double).
+   */
+  @Override
+  public double value(int attIndex) {
+
+    int index = locateIndex(attIndex);
+    if ((index >= 0) && (index(index) == attIndex)) {
+      return valueSparse(index);
+    } else {
+      return 0.0;
+    }
+  }
+
+  /**
+   * Returns the values of each attribute as an array of doubles. Creates a
+   * fresh array object for this.
+   *
+   * @return an array containing all the instance attribute values
+   */
+  @Override
+  public double[] toDoubleArray() {
+
+    double[] newValues = new double[m_NumAttributes];
+    int[] indices = (m_Indices != null) ? m_Indices : decodeIndices();
+    for (int i = 0; i < indices.length; i++) {
+      newValues[indices[i]] = valueSparse(i);
+    }
+    return newValues;
+  }
+
+  /**
+   * Returns the description of one instance in sparse format. If the instance
+   * doesn't have access to a dataset, it returns the internal floating-point
+   * values. Quotes string values that contain whitespace characters.
+   *
+   * @param afterDecimalPoint maximum number of digits permitted after the
+   *          decimal point for numeric values
+   *
+   * @return the instance's description as a string
+   */
+  @Override
+  public String toStringNoWeight(int afterDecimalPoint) {
+
+    if (m_Indices != null) {
+      return super.toStringNoWeight(afterDecimalPoint);
+    }
+    SparseInstance plain = new SparseInstance();
+    plain.m_Indices = decodeIndices();
+    plain.m_AttValues = new double[m_NumValues];
+    for (int i = 0; i < m_NumValues; i++) {
+      plain.m_AttValues[i] = valueSparse(i);
+    }
+    plain.m_NumAttributes = m_NumAttributes;
+    plain.m_Weight = m_Weight;
+    plain.m_Dataset = m_Dataset;
+    return plain.toStringNoWeight(afterDecimalPoint);
+  }
+
+  /**
+   * Replaces all missing values in the instance with the values contained in
+   * the given array. A deep copy of the vector of attribute values is
+   * performed before the values are replaced.
+   *
+   * @param array containing the means and modes
+   * @throws IllegalArgumentException if numbers of attributes are unequal
+   */
+  @Override
+  public void replaceMissingValues(double[] array) {
+
+    unpack();
+    try {
+      super.replaceMissingValues(array);
+    } finally {
+      pack();
+    }
+  }
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format). The instance is re-encoded afterwards.
+   *
+   * @param attIndex the attribute's index
+   * @param value the new attribute value (If the corresponding attribute is
+   *          nominal (or a string) then this is the new value's index as a
+   *          double).
+   */
+  @Override
+  public void setValue(int attIndex, double value) {
+
+    unpack();
+    try {
+      super.setValue(attIndex, value);
+    } finally {
+      pack();
+    }
+  }
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format). The instance is re-encoded afterwards.
+   *
+   * @param indexOfIndex the index of the attribute's index
+   * @param value the new attribute value (If the corresponding attribute is
+   *          nominal (or a string) then this is the new value's index as a
+   *          double).
+   */
+  @Override
+  public void setValueSparse(int indexOfIndex, double value) {
+
+    unpack();
+    try {
+      super.setValueSparse(indexOfIndex, value);
+    } finally {
+      pack();
+    }
+  }
+
+  /**
+   * Deletes an attribute at the given position (0 to numAttributes() - 1).
+   *
+   * @param position the attribute's position
+   */
+  @Override
+  protected void forceDeleteAttributeAt(int position) {
+
+    unpack();
+    try {
+      super.forceDeleteAttributeAt(position);
+    } finally {
+      pack();
+    }
+  }
+
+  /**
+   * Inserts an attribute at the given position (0 to numAttributes()) and sets
+   * its value to be missing.
+   *
+   * @param position the attribute's position
+   */
+  @Override
+  protected void forceInsertAttributeAt(int position) {
+
+    unpack();
+    try {
+      super.forceInsertAttributeAt(position);
+    } finally {
+      pack();
+    }
+  }
+
+  /**
+   * Returns the number of bytes occupied by the arrays of the instance,
+   * assuming 16 bytes of array overhead.
+   *
+   * @return the size of the arrays in bytes
+   */
+  public long arrayBytes() {
+
+    long result = 16 + m_Packed.length + 16 + 4L * m_Skips.length;
+    if (m_AttValues != null) {
+      result += 16 + 8L * m_AttValues.length;
+    } else if (m_FloatValues != null) {
+      result += 16 + 4L * m_FloatValues.length;
+    } else if (m_ShortValues != null) {
+      result += 16 + 2L * m_ShortValues.length;
+    } else if (m_ByteValues != null) {
+      result += 16 + m_ByteValues.length;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,502 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    IndexedInstances.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+
+/**
+ * Abstract base class for sets of instances that do not keep a list of
+ * <code>Instance</code> objects, but an array of row indices into some
+ * underlying storage. The order of the rows in that array is the order of the
+ * instances in the dataset, so reordering the dataset (sorting, randomizing,
+ * stratifying) and removing instances only ever touches the index array.
+ * <p>
+ *
+ * Subclasses provide access to the values and weights stored for a row, and
+ * create the <code>Instance</code> objects that are handed out for a row. A
+ * subclass can leave the index array unset while the dataset consists of the
+ * first rows of the storage in their stored order, so that opening a large
+ * dataset does not take time proportional to its size; the array is only
+ * created once the dataset is reordered or changed.
+ *
+ * @version $Revision$
+ */
+public abstract class IndexedInstances extends Instances {
+
+  /** for serialization */
+  private static final long serialVersionUID = 4719034125580713391L;
+
+  /**
+   * the rows that make up the dataset, in order; null if these are rows 0 to
+   * m_Size - 1
+   */
+  protected int[] m_Order;
+
+  /** the number of instances in the dataset */
+  protected int m_Size;
+
+  /**
+   * Constructor creating an empty set of instances. Copies references to the
+   * header information from the given set of instances.
+   *
+   * @param dataset the instances from which the header information is to be
+   *          taken
+   * @param capacity the number of rows to reserve
+   */
+  protected IndexedInstances(Instances dataset, int capacity) {
+
+    super(dataset, 0);
+
+    m_Order = new int[Math.max(capacity, 0)];
+  }
+
+  /**
+   * Creates an empty set of instances. Uses the given attribute information.
+   *
+   * @param name the name of the relation
+   * @param attInfo the attribute information
+   * @param capacity the number of rows to reserve
+   * @throws IllegalArgumentException if attribute names are not unique
+   */
+  protected IndexedInstances(String name, ArrayList<Attribute> attInfo,
+    int capacity) {
+
+    super(name, attInfo, 0);
+
+    m_Order = new int[Math.max(capacity, 0)];
+  }
+
+  /**
+   * Returns the instance object for a row of the underlying storage.
+   *
+   * @param row the row
+   * @return the instance
+   */
+  protected abstract Instance rowInstance(int row);
+
+  /**
+   * Returns a value stored for a row.
+   *
+   * @param row the row
+   * @param attIndex the attribute's index
+   * @return the value in internal floating-point format
+   */
+  protected abstract double rowValue(int row, int attIndex);
+
+  /**
+   * Returns the weight stored for a row.
+   *
+   * @param row the row
+   * @return the weight
+   */
+  protected abstract double rowWeight(int row);
+
+  /**
+   * Returns whether a value stored for a row is missing.
+   *
+   * @param row the row
+   * @param attIndex the attribute's index
+   * @return true if the value is missing
+   */
+  protected boolean rowIsMissing(int row, int attIndex) {
+
+    return Utils.isMissingValue(rowValue(row, attIndex));
+  }
+
+  /**
+   * Returns the row that holds the instance at the given position.
+   *
+   * @param index the instance's index (index starts with 0)
+   * @return the row
+   */
+  protected int rowOf(int index) {
+
+    if ((index < 0) || (index >= m_Size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+        + m_Size);
+    }
+    return rowAt(index);
+  }
+
+  /**
+   * Returns the row that holds the instance at the given position, without
+   * checking the position.
+   *
+   * @param index the instance's index (index starts with 0)
+   * @return the row
+   */
+  protected final int rowAt(int index) {
+
+    return (m_Order == null) ? index : m_Order[index];
+  }
+
+  /**
+   * Creates the index array if the rows are still in their stored order, so
+   * that it can be changed.
+   */
+  protected void createOrder() {
+
+    if (m_Order == null) {
+      m_Order = new int[m_Size];
+      for (int i = 0; i < m_Size; i++) {
+        m_Order[i] = i;
+      }
+    }
+  }
+
+  /**
+   * Inserts a row into the dataset at the given position.
+   *
+   * @param index the position (index starts with 0)
+   * @param row the row
+   */
+  protected void insertRow(int index, int row) {
+
+    if ((index < 0) || (index > m_Size)) {
+      throw new IndexOutOfBoundsException("Index: " + index + ", Size: "
+        + m_Size);
+    }
+    createOrder();
+    if (m_Size == m_Order.length) {
+      m_Order = Arrays.copyOf(m_Order, m_Size + (m_Size >> 1) + 1);
+    }
+    System.arraycopy(m_Order, index, m_Order, index + 1, m_Size - index);
+    m_Order[index] = row;
+    m_Size++;
+    modCount++;
+  }
+
+  /**
+   * Returns the instance at the given position.
+   *
+   * @param index the instance's index (index starts with 0)
+   * @return the instance at the given position
+   */
+  @Override
+  public Instance instance(int index) {
+
+    return rowInstance(rowOf(index));
+  }
+
+  /**
+   * Returns the instance at the given position.
+   *
+   * @param index the instance's index (index starts with 0)
+   * @return the instance at the given position
+   */
+  @Override
+  public Instance get(int index) {
+
+    return instance(index);
+  }
+
+  /**
+   * Returns the first instance in the set.
+   *
+   * @return the first instance in the set
+   */
+  @Override
+  public Instance firstInstance() {
+
+    return instance(0);
+  }
+
+  /**
+   * Returns the last instance in the set.
+   *
+   * @return the last instance in the set
+   */
+  @Override
+  public Instance lastInstance() {
+
+    return instance(m_Size - 1);
+  }
+
+  /**
+   * Returns the number of instances in the dataset.
+   *
+   * @return the number of instances in the dataset as an integer
+   */
+  @Override
+  public int numInstances() {
+
+    return m_Size;
+  }
+
+  /**
+   * Returns the number of instances in the dataset.
+   *
+   * @return the number of instances in the dataset as an integer
+   */
+  @Override
+  public int size() {
+
+    return m_Size;
+  }
+
+  /**
+   * Returns an enumeration of all instances in the dataset.
+   *
+   * @return enumeration of all instances in the dataset
+   */
+  @Override
+  public Enumeration<Instance> enumerateInstances() {
+
+    return new WekaEnumeration<Instance>(this);
+  }
+
+  /**
+   * Compactifies the set of instances. Decreases the capacity of the index
+   * array so that it matches the number of instances in the set.
+   */
+  @Override
+  public void compactify() {
+
+    if (m_Order != null) {
+      m_Order = Arrays.copyOf(m_Order, m_Size);
+    }
+  }
+
+  /**
+   * Removes all instances from the set.
+   */
+  @Override
+  public void delete() {
+
+    m_Order = new int[0];
+    m_Size = 0;
+    modCount++;
+  }
+
+  /**
+   * Removes an instance at the given position from the set.
+   *
+   * @param index the instance's position (index starts with 0)
+   */
+  @Override
+  public void delete(int index) {
+
+    remove(index);
+  }
+
+  /**
+   * Removes the instance at the given position. Its row stays in the
+   * underlying storage, so the returned instance remains valid.
+   *
+   * @param index the instance's index (index starts with 0)
+   * @return the instance at the given position
+   */
+  @Override
+  public Instance remove(int index) {
+
+    Instance removed = instance(index);
+    createOrder();
+    System.arraycopy(m_Order, index + 1, m_Order, index, m_Size - index - 1);
+    m_Size--;
+    modCount++;
+
+    return removed;
+  }
+
+  /**
+   * Removes all instances with missing values for a particular attribute from
+   * the dataset.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  @Override
+  public void deleteWithMissing(int attIndex) {
+
+    createOrder();
+    int newSize = 0;
+    for (int i = 0; i < m_Size; i++) {
+      if (!rowIsMissing(m_Order[i], attIndex)) {
+        m_Order[newSize++] = m_Order[i];
+      }
+    }
+    m_Size = newSize;
+    modCount++;
+  }
+
+  /**
+   * Swaps two instances in the set.
+   *
+   * @param i the first instance's index (index starts with 0)
+   * @param j the second instance's index (index starts with 0)
+   */
+  @Override
+  public void swap(int i, int j) {
+
+    int row = rowOf(i);
+    int other = rowOf(j);
+    createOrder();
+    m_Order[i] = other;
+    m_Order[j] = row;
+  }
+
+  /**
+   * Reorders the instances in the set.
+   *
+   * @param sortOrder the old position of each instance in the new order
+   */
+  protected void reorder(int[] sortOrder) {
+
+    int[] newOrder = new int[m_Size];
+    for (int i = 0; i < sortOrder.length; i++) {
+      newOrder[i] = rowAt(sortOrder[i]);
+    }
+    m_Order = newOrder;
+  }
+
+  /**
+   * Sorts a nominal attribute (stable, linear-time sort). Instances are sorted
+   * based on the attribute label ordering specified in the header.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  @Override
+  protected void sortBasedOnNominalAttribute(int attIndex) {
+
+    int[] counts = new int[attribute(attIndex).numValues()];
+    for (int i = 0; i < m_Size; i++) {
+      int row = rowAt(i);
+      if (!rowIsMissing(row, attIndex)) {
+        counts[(int) rowValue(row, attIndex)]++;
+      }
+    }
+    int[] indices = new int[counts.length];
+    int start = 0;
+    for (int i = 0; i < counts.length; i++) {
+      indices[i] = start;
+      start += counts[i];
+    }
+    int[] newOrder = new int[m_Size];
+    for (int i = 0; i < m_Size; i++) {
+      int row = rowAt(i);
+      if (!rowIsMissing(row, attIndex)) {
+        newOrder[indices[(int) rowValue(row, attIndex)]++] = row;
+      } else {
+        newOrder[start++] = row;
+      }
+    }
+    m_Order = newOrder;
+  }
+
+  /**
+   * Sorts the instances based on an attribute. For numeric attributes,
+   * instances are sorted in ascending order. For nominal attributes, instances
+   * are sorted based on the attribute label ordering specified in the header.
+   * Instances with missing values for the attribute are placed at the end of
+   * the dataset.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  @Override
+  public void sort(int attIndex) {
+
+    if (!attribute(attIndex).isNominal()) {
+      double[] vals = new double[m_Size];
+      for (int i = 0; i < vals.length; i++) {
+        double val = rowValue(rowAt(i), attIndex);
+        if (Utils.isMissingValue(val)) {
+          vals[i] = Double.MAX_VALUE;
+        } else {
+          vals[i] = val;
+        }
+      }
+      reorder(Utils.sortWithNoMissingValues(vals));
+    } else {
+      sortBasedOnNominalAttribute(attIndex);
+    }
+  }
+
+  /**
+   * Sorts the instances based on an attribute, using a stable sort. For
+   * numeric attributes, instances are sorted in ascending order. For nominal
+   * attributes, instances are sorted based on the attribute label ordering
+   * specified in the header. Instances with missing values for the attribute
+   * are placed at the end of the dataset.
+   *
+   * @param attIndex the attribute's index (index starts with 0)
+   */
+  @Override
+  public void stableSort(int attIndex) {
+
+    if (!attribute(attIndex).isNominal()) {
+      reorder(Utils.stableSort(attributeToDoubleArray(attIndex)));
+    } else {
+      sortBasedOnNominalAttribute(attIndex);
+    }
+  }
+
+  /**
+   * Help function needed for stratification of set.
+   *
+   * @param numFolds the number of folds for the stratification
+   */
+  @Override
+  protected void stratStep(int numFolds) {
+
+    int[] newOrder = new int[m_Size];
+    int count = 0;
+    for (int start = 0; count < m_Size; start++) {
+      for (int j = start; j < m_Size; j += numFolds) {
+        newOrder[count++] = rowAt(j);
+      }
+    }
+    m_Order = newOrder;
+  }
+
+  /**
+   * Gets the value of all instances in this dataset for a particular attribute.
+   *
+   * @param index the index of the attribute.
+   * @return an array containing the value of the desired attribute for each
+   *         instance in the dataset.
+   */
+  @Override
+  public double[] attributeToDoubleArray(int index) {
+
+    double[] result = new double[m_Size];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = rowValue(rowAt(i), index);
+    }
+    return result;
+  }
+
+  /**
+   * Computes the sum of all the instances' weights.
+   *
+   * @return the sum of all the instances' weights as a double
+   */
+  @Override
+  public double sumOfWeights() {
+
+    double sum = 0;
+    for (int i = 0; i < m_Size; i++) {
+      sum += rowWeight(rowAt(i));
+    }
+    return sum;
+  }
+}
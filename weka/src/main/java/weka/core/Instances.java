@@ -36,6 +36,7 @@ import java.util.Random;
 
 import weka.core.converters.ArffLoader.ArffReader;
 import weka.core.converters.ConverterUtils.DataSource;
+import weka.core.converters.FastArffReader;
 
 /**
  * Class for handling an ordered set of weighted instances.
@@ -131,7 +132,7 @@ RevisionHandler {
    * @throws IOException if the ARFF file is not read successfully
    */
   public Instances(/* @non_null@ */Reader reader) throws IOException {
-    ArffReader arff = new ArffReader(reader, 1000, false);
+    ArffReader arff = new FastArffReader(reader, 1000, false);
     initialize(arff.getData(), 1000);
     arff.setRetainStringValues(true);
     Instance inst;
@@ -569,6 +570,17 @@ RevisionHandler {
     if (m_ClassIndex > position) {
       m_ClassIndex--;
     }
+    deleteAttributeValuesAt(position);
+  }
+
+  /**
+   * Removes the values at the given position from all instances in the set.
+   * Called by deleteAttributeAt() once the header has been updated.
+   * 
+   * @param position the attribute's position (position starts with 0)
+   */
+  protected void deleteAttributeValuesAt(int position) {
+
     for (int i = 0; i < numInstances(); i++) {
       instance(i).setDataset(null);
       instance(i).deleteAttributeAt(position);
@@ -785,14 +797,25 @@ RevisionHandler {
     m_Attributes = newList;
     m_NamesToAttributeIndices = newMap;
 
+    insertAttributeValuesAt(position);
+    if (m_ClassIndex >= position) {
+      m_ClassIndex++;
+    }
+  }
+
+  /**
+   * Inserts a missing value at the given position into all instances in the
+   * set. Called by insertAttributeAt() once the header has been updated.
+   * 
+   * @param position the attribute's position (position starts with 0)
+   */
+  protected void insertAttributeValuesAt(int position) {
+
     for (int i = 0; i < numInstances(); i++) {
       instance(i).setDataset(null);
       instance(i).insertAttributeAt(position);
       instance(i).setDataset(this);
     }
-    if (m_ClassIndex >= position) {
-      m_ClassIndex++;
-    }
   }
 
   /**
@@ -1107,6 +1130,17 @@ RevisionHandler {
     m_Attributes = newList;
     m_NamesToAttributeIndices = newMap;
 
+    replaceAttributeValuesAt(position);
+  }
+
+  /**
+   * Sets the values at the given position to missing in all instances in the
+   * set. Called by replaceAttributeAt() once the header has been updated.
+   * 
+   * @param position the attribute's position (position starts with 0)
+   */
+  protected void replaceAttributeValuesAt(int position) {
+
     for (int i = 0; i < numInstances(); i++) {
       instance(i).setDataset(null);
       instance(i).setMissing(position);
@@ -1471,10 +1505,60 @@ RevisionHandler {
     }
 
     // Walker's method, see pp. 232 of "Stochastic Simulation" by B.D. Ripley
+    int M = weights.length;
+    double[] Q = new double[M];
+    int[] A = aliasTable(weights, Q);
+
+    // Do we need to keep track of how many copies to use?
+    int[] counts = null;
+    if (representUsingWeights) {
+      counts = new int[M];
+    }
+
+    int numToBeSampled = (int) (numInstances() * (sampleSize / 100.0));
+
+    for (int i = 0; i < numToBeSampled; i++) {
+      int ALRV = drawAlias(random, Q, A);
+      if (representUsingWeights) {
+        counts[ALRV]++;
+      } else {
+        newData.add(instance(ALRV));
+      }
+      if (sampled != null) {
+        sampled[ALRV] = true;
+      }
+      if (!representUsingWeights) {
+        newData.instance(newData.numInstances() - 1).setWeight(1);
+      }
+    }
+
+    // Add data based on counts if weights should represent numbers of copies.
+    if (representUsingWeights) {
+      for (int i = 0; i < counts.length; i++) {
+        if (counts[i] > 0) {
+          newData.add(instance(i));
+          newData.instance(newData.numInstances() - 1).setWeight(counts[i]);
+        }
+      }
+    }
+
+    return newData;
+  }
+
+  /**
+   * Sets up the tables for sampling with Walker's alias method, see pp. 232
+   * of "Stochastic Simulation" by B.D. Ripley (1987).
+   *
+   * @param weights the weight vector
+   * @param Q array of the same length as the weights, receives the thresholds
+   * @return the aliases
+   * @throws IllegalArgumentException if the weights contain negative values
+   */
+  protected static int[] aliasTable(double[] weights, double[] Q) {
+
     double[] P = new double[weights.length];
     System.arraycopy(weights, 0, P, 0, weights.length);
     Utils.normalize(P);
-    double[] Q = new double[weights.length];
     int[] A = new int[weights.length];
     int[] W = new int[weights.length];
     int M = weights.length;
@@ -1511,47 +1595,74 @@ RevisionHandler {
       Q[I] += I;
     }
 
-    // Do we need to keep track of how many copies to use?
-    int[] counts = null;
-    if (representUsingWeights) {
-      counts = new int[M];
+    return A;
+  }
+
+  /**
+   * Draws the index of an instance using the tables of Walker's alias method.
+   *
+   * @param random a random number generator
+   * @param Q the thresholds
+   * @param A the aliases
+   * @return the index of the instance drawn
+   */
+  protected static int drawAlias(Random random, double[] Q, int[] A) {
+
+    double U = Q.length * random.nextDouble();
+    int I = (int) U;
+    if (U < Q[I]) {
+      return I;
+    } else {
+      return A[I];
     }
+  }
 
-    int numToBeSampled = (int) (numInstances() * (sampleSize / 100.0));
+  /**
+   * Draws a sample from this dataset using random sampling with replacement
+   * according to the current instance weights, like
+   * <code>resampleWithWeights(Random, boolean[], boolean, double)</code>
+   * does, but only returns how often each instance was drawn. Given the same
+   * random number generator, the counts match the weights of the dataset
+   * returned by <code>resampleWithWeights</code> when copies are represented
+   * using weights.
+   *
+   * @param random a random number generator
+   * @param sampled an array indicating what has been sampled, can be null
+   * @param sampleSize size of the sample as a percentage of the size of this
+   *          dataset
+   * @return the number of times each instance was drawn
+   * @throws IllegalArgumentException if the sample size is not a percentage
+   *           or the weights are negative
+   */
+  public int[] resampleCounts(Random random, boolean[] sampled,
+    double sampleSize) {
+
+    if ((sampleSize < 0) || (sampleSize > 100)) {
+      throw new IllegalArgumentException("Sample size must be a percentage.");
+    }
 
+    int[] counts = new int[numInstances()];
+    if (numInstances() == 0) {
+      return counts;
+    }
+
+    double[] weights = new double[numInstances()];
+    for (int i = 0; i < weights.length; i++) {
+      weights[i] = instance(i).weight();
+    }
+    double[] Q = new double[weights.length];
+    int[] A = aliasTable(weights, Q);
+
+    int numToBeSampled = (int) (numInstances() * (sampleSize / 100.0));
     for (int i = 0; i < numToBeSampled; i++) {
-      int ALRV;
-      double U = M * random.nextDouble();
-      int I = (int) U;
-      if (U < Q[I]) {
-        ALRV = I;
-      } else {
-        ALRV = A[I];
-      }
-      if (representUsingWeights) {
-        counts[ALRV]++;
-      } else {
-        newData.add(instance(ALRV));
-      }
+      int ALRV = drawAlias(random, Q, A);
+      counts[ALRV]++;
       if (sampled != null) {
         sampled[ALRV] = true;
       }
-      if (!representUsingWeights) {
-        newData.instance(newData.numInstances() - 1).setWeight(1);
-      }
     }
 
-    // Add data based on counts if weights should represent numbers of copies.
-    if (representUsingWeights) {
-      for (int i = 0; i < counts.length; i++) {
-        if (counts[i] > 0) {
-          newData.add(instance(i));
-          newData.instance(newData.numInstances() - 1).setWeight(counts[i]);
-        }
-      }
-    }
-
-    return newData;
+    return counts;
   }
 
   /**
@@ -1809,8 +1920,27 @@ RevisionHandler {
   // @ requires 0 <= numFold && numFold < numFolds;
   public Instances testCV(int numFolds, int numFold) {
 
+    int[] range = testCVRange(numFolds, numFold);
+    Instances test = new Instances(this, range[1]);
+    copyInstances(range[0], test, range[1]);
+    return test;
+  }
+
+  /**
+   * Determines which instances make up the test set for one fold of a
+   * cross-validation on the dataset.
+   * 
+   * @param numFolds the number of folds in the cross-validation. Must be
+   *          greater than 1.
+   * @param numFold 0 for the first fold, 1 for the second, ...
+   * @return the position of the first test instance and the number of test
+   *         instances
+   * @throws IllegalArgumentException if the number of folds is less than 2 or
+   *           greater than the number of instances.
+   */
+  protected int[] testCVRange(int numFolds, int numFold) {
+
     int numInstForFold, first, offset;
-    Instances test;
 
     if (numFolds < 2) {
       throw new IllegalArgumentException("Number of folds must be at least 2!");
@@ -1826,10 +1956,8 @@ RevisionHandler {
     } else {
       offset = numInstances() % numFolds;
     }
-    test = new Instances(this, numInstForFold);
     first = numFold * (numInstances() / numFolds) + offset;
-    copyInstances(first, test, numInstForFold);
-    return test;
+    return new int[] { first, numInstForFold };
   }
 
   /**
@@ -1888,25 +2016,9 @@ RevisionHandler {
   // @ requires 0 <= numFold && numFold < numFolds;
   public Instances trainCV(int numFolds, int numFold) {
 
-    int numInstForFold, first, offset;
-    Instances train;
-
-    if (numFolds < 2) {
-      throw new IllegalArgumentException("Number of folds must be at least 2!");
-    }
-    if (numFolds > numInstances()) {
-      throw new IllegalArgumentException(
-        "Can't have more folds than instances!");
-    }
-    numInstForFold = numInstances() / numFolds;
-    if (numFold < numInstances() % numFolds) {
-      numInstForFold++;
-      offset = numFold;
-    } else {
-      offset = numInstances() % numFolds;
-    }
-    train = new Instances(this, numInstances() - numInstForFold);
-    first = numFold * (numInstances() / numFolds) + offset;
+    int[] range = testCVRange(numFolds, numFold);
+    int first = range[0], numInstForFold = range[1];
+    Instances train = new Instances(this, numInstances() - numInstForFold);
     copyInstances(0, train, first);
     copyInstances(first + numInstForFold, train, numInstances() - first
       - numInstForFold);
@@ -0,0 +1,271 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    MappedInstance.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+/**
+ * Lightweight view onto one row of a <code>MappedInstances</code> object.
+ * <p>
+ *
+ * The instances handed out by the dataset are attached to it: they read the
+ * row's values and weight from the dataset, and values and weights set
+ * through them are kept by the dataset, so they are seen by every later
+ * access to the row (the file itself is never modified).
+ * <p>
+ *
+ * Copies obtained via <code>copy()</code> are detached from the dataset. They
+ * read the row's values from the mapped file until the first value is
+ * changed and then take a private copy of the values (copy-on-write), so
+ * copying a memory-mapped dataset into a standard <code>Instances</code>
+ * object does not load the attribute values onto the heap. Changes to a copy
+ * do not affect the dataset, and vice versa.
+ *
+ * @version $Revision$
+ * @see MappedInstances
+ */
+public class MappedInstance extends AbstractInstanceView {
+
+  /** for serialization */
+  private static final long serialVersionUID = -1480361573460317585L;
+
+  /** the mapped dataset holding the values */
+  protected MappedInstances m_Store;
+
+  /** the row in the mapped file */
+  protected int m_Row;
+
+  /** whether the view has its own weight and values */
+  protected boolean m_Detached;
+
+  /** the instance's weight, if the view is detached */
+  protected double m_Weight;
+
+  /**
+   * the private copy of the values, null as long as none has been changed or
+   * if the view is attached
+   */
+  protected double[] m_Values;
+
+  /**
+   * Creates a view onto the given row of the mapped dataset that is attached
+   * to the dataset. The view has access to the mapped dataset as its dataset.
+   *
+   * @param store the mapped dataset
+   * @param row the row
+   */
+  protected MappedInstance(MappedInstances store, int row) {
+
+    m_Store = store;
+    m_Row = row;
+    m_Dataset = store;
+  }
+
+  /**
+   * Produces a shallow copy of this instance: a detached view onto the same
+   * row, with the current weight and values. The copy has access to the same
+   * dataset.
+   *
+   * @return the copy, a MappedInstance
+   */
+  @Override
+  public Object copy() {
+
+    MappedInstance result = new MappedInstance(m_Store, m_Row);
+    result.m_Detached = true;
+    result.m_Weight = weight();
+    if (m_Values != null) {
+      result.m_Values = m_Values.clone();
+    } else if (!m_Detached && m_Store.rowIsChanged(m_Row)) {
+      result.m_Values = toDoubleArray();
+    }
+    result.m_Dataset = m_Dataset;
+    return result;
+  }
+
+  /**
+   * Detaches the view from the dataset and makes sure it holds a private copy
+   * of the row's values.
+   */
+  protected void materialize() {
+
+    if (m_Values == null) {
+      m_Values = toDoubleArray();
+    }
+    if (!m_Detached) {
+      m_Weight = weight();
+      m_Detached = true;
+    }
+  }
+
+  /**
+   * Deletes an attribute at the given position (0 to numAttributes() - 1).
+   * Only succeeds if the instance does not have access to any dataset because
+   * otherwise inconsistencies could be introduced.
+   *
+   * @param position the attribute's position
+   * @throws RuntimeException if the instance has access to a dataset
+   */
+  @Override
+  public void deleteAttributeAt(int position) {
+
+    if (m_Dataset != null) {
+      throw new RuntimeException("Instance has access to a dataset!");
+    }
+    materialize();
+    double[] newValues = new double[m_Values.length - 1];
+    System.arraycopy(m_Values, 0, newValues, 0, position);
+    System.arraycopy(m_Values, position + 1, newValues, position,
+      m_Values.length - position - 1);
+    m_Values = newValues;
+  }
+
+  /**
+   * Inserts an attribute at the given position (0 to numAttributes()) and sets
+   * its value to be missing. Only succeeds if the instance does not have
+   * access to any dataset because otherwise inconsistencies could be
+   * introduced.
+   *
+   * @param position the attribute's position
+   * @throws RuntimeException if the instance has access to a dataset
+   * @throws IllegalArgumentException if the position is out of range
+   */
+  @Override
+  public void insertAttributeAt(int position) {
+
+    if (m_Dataset != null) {
+      throw new RuntimeException("Instance has access to a dataset!");
+    }
+    if ((position < 0) || (position > numAttributes())) {
+      throw new IllegalArgumentException("Can't insert attribute: index out "
+        + "of range");
+    }
+    materialize();
+    double[] newValues = new double[m_Values.length + 1];
+    System.arraycopy(m_Values, 0, newValues, 0, position);
+    newValues[position] = Utils.missingValue();
+    System.arraycopy(m_Values, position, newValues, position + 1,
+      m_Values.length - position);
+    m_Values = newValues;
+  }
+
+  /**
+   * Tests if a specific value is "missing".
+   *
+   * @param attIndex the attribute's index
+   * @return true if the value is "missing"
+   */
+  @Override
+  public boolean isMissing(int attIndex) {
+
+    return Utils.isMissingValue(value(attIndex));
+  }
+
+  /**
+   * Returns the number of attributes.
+   *
+   * @return the number of attributes as an integer
+   */
+  @Override
+  public int numAttributes() {
+
+    if (m_Values != null) {
+      return m_Values.length;
+    }
+    return m_Store.numAttributes();
+  }
+
+  /**
+   * Sets a specific value in the instance to the given value (internal
+   * floating-point format). An attached view passes the value on to the
+   * dataset, a detached one copies the row's values first if necessary.
+   *
+   * @param attIndex the attribute's index
+   * @param value the new attribute value
+   */
+  @Override
+  public void setValue(int attIndex, double value) {
+
+    if (!m_Detached) {
+      m_Store.setRowValue(m_Row, attIndex, value);
+    } else {
+      materialize();
+      m_Values[attIndex] = value;
+    }
+  }
+
+  /**
+   * Sets the weight of an instance. An attached view passes the weight on to
+   * the dataset.
+   *
+   * @param weight the weight
+   */
+  @Override
+  public void setWeight(double weight) {
+
+    if (!m_Detached) {
+      m_Store.setRowWeight(m_Row, weight);
+    } else {
+      m_Weight = weight;
+    }
+  }
+
+  /**
+   * Returns an instance's attribute value in internal format.
+   *
+   * @param attIndex the attribute's index
+   * @return the specified value as a double
+   */
+  @Override
+  public double value(int attIndex) {
+
+    if (m_Values != null) {
+      return m_Values[attIndex];
+    }
+    if (!m_Detached) {
+      return m_Store.rowValue(m_Row, attIndex);
+    }
+    return m_Store.fileValue(m_Row, attIndex);
+  }
+
+  /**
+   * Returns the instance's weight.
+   *
+   * @return the instance's weight as a double
+   */
+  @Override
+  public double weight() {
+
+    if (!m_Detached) {
+      return m_Store.rowWeight(m_Row);
+    }
+    return m_Weight;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,599 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    MappedInstances.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Read-only set of instances backed by a memory-mapped binary file, so that
+ * datasets larger than the Java heap can be processed. The attribute values
+ * are paged in by the operating system when they are accessed; the heap only
+ * holds the header, one index per row once the dataset has been reordered,
+ * and the rows that have been changed.
+ * <p>
+ *
+ * The file consists of a short preamble, a block of fixed-size rows and a
+ * trailer. Each row holds the weight and the values of one instance in
+ * internal floating-point format, as big-endian doubles. The trailer holds the
+ * serialized header (which includes the values of string and relational
+ * attributes) followed by a footer of fixed size that locates the header, so
+ * files can be written in a single pass without knowing the number of
+ * instances in advance. Use <code>MappedInstancesSaver</code> to create such
+ * files and <code>MappedInstancesLoader</code> or the constructor of this class
+ * to open them.
+ * <p>
+ *
+ * The dataset can be reordered (sorted, randomized, stratified) and instances
+ * can be removed from it, since that only affects the row indices. Opening a
+ * file takes constant time: the row indices are only created once the
+ * dataset is reordered. Adding or replacing instances and changing the
+ * attributes are not supported. Instances are handed out as views (see
+ * <code>MappedInstance</code>). Values and weights set through these views
+ * are kept by the dataset in memory, in a copy of the changed row, and are
+ * never written back to the file.
+ *
+ * @version $Revision$
+ * @see MappedInstance
+ * @see weka.core.converters.MappedInstancesSaver
+ * @see weka.core.converters.MappedInstancesLoader
+ */
+public class MappedInstances extends IndexedInstances {
+
+  /** for serialization */
+  private static final long serialVersionUID = 2392765612044871237L;
+
+  /** the file extension for memory-mappable binary files */
+  public static final String FILE_EXTENSION = ".mbi";
+
+  /** the magic number at the start and the end of the file ("WEKAMBI1") */
+  public static final long MAGIC = 0x57454B414D424931L;
+
+  /** the version of the file format */
+  public static final int VERSION = 1;
+
+  /** the size of the preamble (magic, version, number of attributes) */
+  public static final int PREAMBLE_SIZE = 16;
+
+  /**
+   * the size of the footer (header offset, header length, number of rows,
+   * number of attributes, magic)
+   */
+  public static final int FOOTER_SIZE = 32;
+
+  /** the file the instances are mapped from */
+  protected File m_File;
+
+  /** the number of rows in the file */
+  protected int m_NumRows;
+
+  /** the number of bytes per row */
+  protected int m_RowSize;
+
+  /** the number of rows per mapped chunk */
+  protected int m_RowsPerChunk;
+
+  /** the mapped chunks of rows */
+  protected transient ByteBuffer[] m_Chunks;
+
+  /**
+   * the rows that have been changed, with the weight followed by the values
+   * in the same layout as in the file; null if no row has been changed
+   */
+  protected HashMap<Integer, double[]> m_ChangedRows;
+
+  /**
+   * The header and the number of rows, as stored in the trailer of a file.
+   */
+  protected static class Trailer {
+
+    /** the header */
+    protected Instances m_Header;
+
+    /** the number of rows */
+    protected int m_NumRows;
+  }
+
+  /**
+   * Opens the given file and maps its rows into memory.
+   *
+   * @param file the file to open
+   * @throws IOException if the file cannot be read or is not in the expected
+   *           format
+   */
+  public MappedInstances(File file) throws IOException {
+
+    this(file, readTrailer(file));
+  }
+
+  /**
+   * Initializes the set from the trailer of the given file and maps its rows.
+   *
+   * @param file the file to open
+   * @param trailer the trailer read from the file
+   * @throws IOException if the file cannot be mapped
+   */
+  protected MappedInstances(File file, Trailer trailer) throws IOException {
+
+    super(trailer.m_Header, 0);
+
+    m_File = file;
+    m_NumRows = trailer.m_NumRows;
+    m_RowSize = rowSize(numAttributes());
+    m_RowsPerChunk = Math.max(1, Integer.MAX_VALUE / m_RowSize);
+    m_Order = null;
+    m_Size = m_NumRows;
+    map();
+  }
+
+  /**
+   * Creates a new set of instances sharing the mapped file and the order of
+   * the instances with the given set. The new set can be reordered and
+   * changed independently.
+   *
+   * @param dataset the set to be copied
+   */
+  public MappedInstances(MappedInstances dataset) {
+
+    super(dataset, 0);
+
+    m_File = dataset.m_File;
+    m_NumRows = dataset.m_NumRows;
+    m_RowSize = dataset.m_RowSize;
+    m_RowsPerChunk = dataset.m_RowsPerChunk;
+    m_Chunks = dataset.m_Chunks;
+    m_Order = (dataset.m_Order == null) ? null : Arrays.copyOf(
+      dataset.m_Order, dataset.m_Size);
+    m_Size = dataset.m_Size;
+    if (dataset.m_ChangedRows != null) {
+      m_ChangedRows = new HashMap<Integer, double[]>();
+      for (Map.Entry<Integer, double[]> entry : dataset.m_ChangedRows
+        .entrySet()) {
+        m_ChangedRows.put(entry.getKey(), entry.getValue().clone());
+      }
+    }
+  }
+
+  /**
+   * Returns the number of bytes a row occupies in the file.
+   *
+   * @param numAttributes the number of attributes
+   * @return the size of a row
+   */
+  public static int rowSize(int numAttributes) {
+
+    return 8 * (numAttributes + 1);
+  }
+
+  /**
+   * Writes the preamble of a file.
+   *
+   * @param out the stream to write to
+   * @param numAttributes the number of attributes
+   * @throws IOException if writing fails
+   */
+  public static void writePreamble(DataOutputStream out, int numAttributes)
+    throws IOException {
+
+    out.writeLong(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(numAttributes);
+  }
+
+  /**
+   * Writes a row of a file.
+   *
+   * @param out the stream to write to
+   * @param weight the weight of the instance
+   * @param values the values of the instance in internal floating-point format
+   * @throws IOException if writing fails
+   */
+  public static void writeRow(DataOutputStream out, double weight,
+    double[] values) throws IOException {
+
+    out.writeDouble(weight);
+    for (double value : values) {
+      out.writeDouble(value);
+    }
+  }
+
+  /**
+   * Writes the trailer of a file, after the preamble and all rows have been
+   * written.
+   *
+   * @param out the stream to write to
+   * @param header the header, including the values of string and relational
+   *          attributes referenced by the rows
+   * @param numRows the number of rows written
+   * @throws IOException if writing fails
+   */
+  public static void writeTrailer(DataOutputStream out, Instances header,
+    int numRows) throws IOException {
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream oos = new ObjectOutputStream(bytes);
+    oos.writeObject(new Instances(header, 0));
+    oos.close();
+
+    out.write(bytes.toByteArray());
+    out.writeLong(PREAMBLE_SIZE + (long) numRows
+      * rowSize(header.numAttributes()));
+    out.writeInt(bytes.size());
+    out.writeLong(numRows);
+    out.writeInt(header.numAttributes());
+    out.writeLong(MAGIC);
+  }
+
+  /**
+   * Reads the header and the number of rows from the trailer of a file and
+   * checks that the file is consistent.
+   *
+   * @param file the file to read
+   * @return the trailer
+   * @throws IOException if the file cannot be read or is not in the expected
+   *           format
+   */
+  protected static Trailer readTrailer(File file) throws IOException {
+
+    RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      long length = raf.length();
+      if (length < PREAMBLE_SIZE + FOOTER_SIZE) {
+        throw new IOException("File too short: " + file);
+      }
+      if (raf.readLong() != MAGIC) {
+        throw new IOException("Not a memory-mappable instances file: " + file);
+      }
+      int version = raf.readInt();
+      if (version != VERSION) {
+        throw new IOException("Unsupported file format version " + version
+          + ": " + file);
+      }
+      int numAtts = raf.readInt();
+
+      raf.seek(length - FOOTER_SIZE);
+      long headerOffset = raf.readLong();
+      int headerLength = raf.readInt();
+      long numRows = raf.readLong();
+      int numAttsFooter = raf.readInt();
+      if (raf.readLong() != MAGIC) {
+        throw new IOException("File is truncated: " + file);
+      }
+      if ((numAtts != numAttsFooter) || (numRows < 0)
+        || (headerOffset != PREAMBLE_SIZE + numRows * rowSize(numAtts))
+        || (headerOffset + headerLength + FOOTER_SIZE != length)) {
+        throw new IOException("File is corrupt: " + file);
+      }
+      if (numRows > Integer.MAX_VALUE - 8) {
+        throw new IOException("Too many rows (" + numRows + "): " + file);
+      }
+
+      byte[] bytes = new byte[headerLength];
+      raf.seek(headerOffset);
+      raf.readFully(bytes);
+      Instances header;
+      ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(
+        bytes));
+      try {
+        header = (Instances) ois.readObject();
+      } catch (ClassNotFoundException e) {
+        throw new IOException("Cannot read header: " + e.getMessage());
+      } finally {
+        ois.close();
+      }
+      if (header.numAttributes() != numAtts) {
+        throw new IOException("File is corrupt: " + file);
+      }
+
+      Trailer result = new Trailer();
+      result.m_Header = header;
+      result.m_NumRows = (int) numRows;
+      return result;
+    } finally {
+      raf.close();
+    }
+  }
+
+  /**
+   * Maps the rows of the file into memory, in chunks of whole rows that are
+   * each smaller than 2GB.
+   *
+   * @throws IOException if the file cannot be mapped
+   */
+  protected void map() throws IOException {
+
+    int numChunks = (m_NumRows + m_RowsPerChunk - 1) / m_RowsPerChunk;
+    ByteBuffer[] chunks = new ByteBuffer[numChunks];
+    RandomAccessFile raf = new RandomAccessFile(m_File, "r");
+    try {
+      FileChannel channel = raf.getChannel();
+      for (int i = 0; i < numChunks; i++) {
+        long first = (long) i * m_RowsPerChunk;
+        long rows = Math.min(m_RowsPerChunk, m_NumRows - first);
+        chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, PREAMBLE_SIZE
+          + first * m_RowSize, rows * m_RowSize);
+      }
+    } finally {
+      raf.close();
+    }
+    m_Chunks = chunks;
+  }
+
+  /**
+   * Maps the file again after deserialization.
+   *
+   * @param in the stream to read from
+   * @throws IOException if reading or mapping fails
+   * @throws ClassNotFoundException if a class cannot be found
+   */
+  private void readObject(ObjectInputStream in) throws IOException,
+    ClassNotFoundException {
+
+    in.defaultReadObject();
+    map();
+  }
+
+  /**
+   * Returns the file the instances are mapped from.
+   *
+   * @return the file
+   */
+  public File getFile() {
+
+    return m_File;
+  }
+
+  /**
+   * Returns a view onto a row of the file.
+   *
+   * @param row the row in the file
+   * @return the view
+   */
+  @Override
+  protected Instance rowInstance(int row) {
+
+    return new MappedInstance(this, row);
+  }
+
+  /**
+   * Returns a value stored in the file.
+   *
+   * @param row the row in the file
+   * @param attIndex the attribute's index
+   * @return the value in internal floating-point format
+   */
+  @Override
+  protected final double rowValue(int row, int attIndex) {
+
+    if (m_ChangedRows != null) {
+      double[] changed = m_ChangedRows.get(row);
+      if (changed != null) {
+        return changed[attIndex + 1];
+      }
+    }
+    return fileValue(row, attIndex);
+  }
+
+  /**
+   * Returns a value stored in the file, ignoring changes made to the row.
+   *
+   * @param row the row in the file
+   * @param attIndex the attribute's index
+   * @return the value in internal floating-point format
+   */
+  protected final double fileValue(int row, int attIndex) {
+
+    return m_Chunks[row / m_RowsPerChunk].getDouble((row % m_RowsPerChunk)
+      * m_RowSize + 8 * (attIndex + 1));
+  }
+
+  /**
+   * Returns the weight stored in the file for a row.
+   *
+   * @param row the row in the file
+   * @return the weight
+   */
+  @Override
+  protected final double rowWeight(int row) {
+
+    if (m_ChangedRows != null) {
+      double[] changed = m_ChangedRows.get(row);
+      if (changed != null) {
+        return changed[0];
+      }
+    }
+    return m_Chunks[row / m_RowsPerChunk].getDouble((row % m_RowsPerChunk)
+      * m_RowSize);
+  }
+
+  /**
+   * Returns the copy of a row that holds its changes, creating it from the
+   * file if the row has not been changed yet.
+   *
+   * @param row the row in the file
+   * @return the weight followed by the values of the row
+   */
+  protected double[] changedRow(int row) {
+
+    if (m_ChangedRows == null) {
+      m_ChangedRows = new HashMap<Integer, double[]>();
+    }
+    double[] changed = m_ChangedRows.get(row);
+    if (changed == null) {
+      changed = new double[numAttributes() + 1];
+      for (int i = 0; i < changed.length; i++) {
+        changed[i] = m_Chunks[row / m_RowsPerChunk]
+          .getDouble((row % m_RowsPerChunk) * m_RowSize + 8 * i);
+      }
+      m_ChangedRows.put(row, changed);
+    }
+    return changed;
+  }
+
+  /**
+   * Sets a value of a row. The file is not changed.
+   *
+   * @param row the row in the file
+   * @param attIndex the attribute's index
+   * @param value the new value in internal floating-point format
+   */
+  protected void setRowValue(int row, int attIndex, double value) {
+
+    changedRow(row)[attIndex + 1] = value;
+  }
+
+  /**
+   * Sets the weight of a row. The file is not changed.
+   *
+   * @param row the row in the file
+   * @param weight the new weight
+   */
+  protected void setRowWeight(int row, double weight) {
+
+    changedRow(row)[0] = weight;
+  }
+
+  /**
+   * Returns whether the values or the weight of a row have been changed.
+   *
+   * @param row the row in the file
+   * @return true if the row has been changed
+   */
+  protected boolean rowIsChanged(int row) {
+
+    return (m_ChangedRows != null) && m_ChangedRows.containsKey(row);
+  }
+
+  /**
+   * Returns the number of rows whose values or weight have been changed.
+   *
+   * @return the number of changed rows
+   */
+  public int numChangedRows() {
+
+    return (m_ChangedRows == null) ? 0 : m_ChangedRows.size();
+  }
+
+  /**
+   * Not supported, the set is read-only.
+   *
+   * @param instance the instance to be added
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public boolean add(Instance instance) {
+
+    throw new UnsupportedOperationException(
+      "Cannot add instances to a memory-mapped dataset!");
+  }
+
+  /**
+   * Not supported, the set is read-only.
+   *
+   * @param index position where instance is to be inserted
+   * @param instance the instance to be added
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void add(int index, Instance instance) {
+
+    throw new UnsupportedOperationException(
+      "Cannot add instances to a memory-mapped dataset!");
+  }
+
+  /**
+   * Not supported, the set is read-only.
+   *
+   * @param index position where instance is to be inserted
+   * @param instance the instance to be inserted
+   * @return nothing
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public Instance set(int index, Instance instance) {
+
+    throw new UnsupportedOperationException(
+      "Cannot replace instances in a memory-mapped dataset!");
+  }
+
+  /**
+   * Not supported, the attributes are fixed by the file.
+   *
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void deleteAttributeAt(int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot delete attributes from a memory-mapped dataset!");
+  }
+
+  /**
+   * Not supported, the attributes are fixed by the file.
+   *
+   * @param att the attribute to be inserted
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void insertAttributeAt(Attribute att, int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot insert attributes into a memory-mapped dataset!");
+  }
+
+  /**
+   * Not supported, the attributes are fixed by the file.
+   *
+   * @param att the new attribute
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void replaceAttributeAt(Attribute att, int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot replace attributes in a memory-mapped dataset!");
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -20,20 +20,37 @@
  */
 package weka.core;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.util.ArrayList;
-import java.util.Hashtable;
 import java.util.List;
 
 /**
- * Stores information for nominal and string attributes.
+ * Stores information for nominal and string attributes. Values are mapped to
+ * their indices with an open-addressing hash table that stores the index of
+ * each value and its hash code in two int arrays. The values themselves are
+ * only kept in the list of values, so the index holds neither keys nor boxed
+ * integers. The index is not serialized but rebuilt after deserialization.
  */
 public class NominalAttributeInfo implements AttributeInfo {
 
+  /** for serialization, the one computed for the Hashtable-based version */
+  private static final long serialVersionUID = -4143961687839418499L;
+
+  /** The maximum ratio of indexed values to slots of the index. */
+  protected static final double MAX_LOAD = 0.5;
+
   /** The attribute's values. */
   protected/* @ spec_public @ */ArrayList<Object> m_Values;
 
-  /** Mapping of values to indices. */
-  protected Hashtable<Object, Integer> m_Hashtable;
+  /** The slots of the index: index of the value plus one, 0 if empty. */
+  protected transient int[] m_Slots;
+
+  /** The hash codes of the values in the slots. */
+  protected transient int[] m_Hashes;
+
+  /** The number of values in the index. */
+  protected transient int m_NumIndexed;
 
   /**
    * Constructs the info based on argument.
@@ -42,10 +59,10 @@ public class NominalAttributeInfo implements AttributeInfo {
 
     if (attributeValues == null) {
       m_Values = new ArrayList<Object>();
-      m_Hashtable = new Hashtable<Object, Integer>();
+      initIndex(0);
     } else {
       m_Values = new ArrayList<Object>(attributeValues.size());
-      m_Hashtable = new Hashtable<Object, Integer>(attributeValues.size());
+      initIndex(attributeValues.size());
       for (int i = 0; i < attributeValues.size(); i++) {
         Object store = attributeValues.get(i);
         if (((String) store).length() > Attribute.STRING_COMPRESS_THRESHOLD) {
@@ -56,14 +73,241 @@ public class NominalAttributeInfo implements AttributeInfo {
               + " storing uncompressed.");
           }
         }
-        if (m_Hashtable.containsKey(store)) {
+        if (indexOf(store) != -1) {
           throw new IllegalArgumentException("A nominal attribute ("
             + attributeName + ") cannot" + " have duplicate labels (" + store
             + ").");
         }
         m_Values.add(store);
-        m_Hashtable.put(store, new Integer(i));
+        putIndex(store, i);
       }
     }
   }
-}
\ No newline at end of file
+
+  /**
+   * Allocates an empty index.
+   *
+   * @param expected the number of values expected to be indexed
+   */
+  protected void initIndex(int expected) {
+
+    int capacity = 8;
+    while (capacity * MAX_LOAD < expected) {
+      capacity <<= 1;
+    }
+    m_Slots = new int[capacity];
+    m_Hashes = new int[capacity];
+    m_NumIndexed = 0;
+  }
+
+  /**
+   * Spreads the bits of a hash code, since the slot is taken from the lower
+   * bits and hash codes like the one of SerializedObject vary little.
+   *
+   * @param hash the hash code
+   * @return the spread hash code
+   */
+  protected static int spread(int hash) {
+
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Returns the slot of the index that holds the given value, or the empty
+   * slot where it would be stored.
+   *
+   * @param value the stored form of the value
+   * @param hash the hash code of the value
+   * @return the slot
+   */
+  protected int findSlot(Object value, int hash) {
+
+    int mask = m_Slots.length - 1;
+    int slot = spread(hash) & mask;
+    while (m_Slots[slot] != 0) {
+      if ((m_Hashes[slot] == hash)
+        && value.equals(m_Values.get(m_Slots[slot] - 1))) {
+        break;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return slot;
+  }
+
+  /**
+   * Returns the index of a value.
+   *
+   * @param value the stored form of the value, i.e., compressed if it is a
+   *          long string
+   * @return the index, -1 if the value is not indexed
+   */
+  public int indexOf(Object value) {
+
+    int slot = findSlot(value, value.hashCode());
+    return m_Slots[slot] - 1;
+  }
+
+  /**
+   * Maps a value to the given index, replacing any previous mapping of the
+   * value. The value must be stored at this index in the list of values.
+   *
+   * @param value the stored form of the value
+   * @param index the index of the value
+   */
+  protected void putIndex(Object value, int index) {
+
+    int hash = value.hashCode();
+    int slot = findSlot(value, hash);
+    if (m_Slots[slot] == 0) {
+      if (m_NumIndexed + 1 > m_Slots.length * MAX_LOAD) {
+        resizeIndex(m_Slots.length << 1);
+        slot = findSlot(value, hash);
+      }
+      m_Hashes[slot] = hash;
+      m_NumIndexed++;
+    }
+    m_Slots[slot] = index + 1;
+  }
+
+  /**
+   * Removes the mapping of a value. Must be called while the value is still
+   * stored at its index in the list of values.
+   *
+   * @param value the stored form of the value
+   */
+  protected void removeIndex(Object value) {
+
+    int mask = m_Slots.length - 1;
+    int slot = findSlot(value, value.hashCode());
+    if (m_Slots[slot] == 0) {
+      return;
+    }
+    m_NumIndexed--;
+
+    // shift subsequent entries of the cluster back into the gap
+    int gap = slot;
+    for (int next = (gap + 1) & mask; m_Slots[next] != 0; next = (next + 1)
+      & mask) {
+      int home = spread(m_Hashes[next]) & mask;
+      if (((next - home) & mask) >= ((next - gap) & mask)) {
+        m_Slots[gap] = m_Slots[next];
+        m_Hashes[gap] = m_Hashes[next];
+        gap = next;
+      }
+    }
+    m_Slots[gap] = 0;
+  }
+
+  /**
+   * Changes the number of slots of the index.
+   *
+   * @param capacity the new number of slots, a power of two
+   */
+  protected void resizeIndex(int capacity) {
+
+    int[] slots = m_Slots;
+    int[] hashes = m_Hashes;
+    int mask = capacity - 1;
+    m_Slots = new int[capacity];
+    m_Hashes = new int[capacity];
+    for (int i = 0; i < slots.length; i++) {
+      if (slots[i] != 0) {
+        int slot = spread(hashes[i]) & mask;
+        while (m_Slots[slot] != 0) {
+          slot = (slot + 1) & mask;
+        }
+        m_Slots[slot] = slots[i];
+        m_Hashes[slot] = hashes[i];
+      }
+    }
+  }
+
+  /**
+   * Rebuilds the index from the list of values. If a value occurs more than
+   * once, it is mapped to its last occurrence.
+   */
+  protected void rebuildIndex() {
+
+    initIndex(m_Values.size());
+    for (int i = 0; i < m_Values.size(); i++) {
+      putIndex(m_Values.get(i), i);
+    }
+  }
+
+  /**
+   * Removes all values.
+   */
+  protected void clear() {
+
+    m_Values.clear();
+    initIndex(0);
+  }
+
+  /**
+   * Replaces the list of values and the index with copies, so that changes
+   * don't affect other holders of the old ones.
+   */
+  protected void copyValues() {
+
+    m_Values = Utils.cast(m_Values.clone());
+    m_Slots = m_Slots.clone();
+    m_Hashes = m_Hashes.clone();
+  }
+
+  /**
+   * Returns the number of distinct values in the index.
+   *
+   * @return the number of indexed values
+   */
+  public int numIndexed() {
+
+    return m_NumIndexed;
+  }
+
+  /**
+   * Returns the number of bytes occupied by the index, assuming 16 bytes of
+   * array overhead.
+   *
+   * @return the size of the index in bytes
+   */
+  public long indexBytes() {
+
+    return 2 * (16 + 4L * m_Slots.length);
+  }
+
+  /**
+   * Returns an estimate of the number of bytes occupied by the list of values
+   * and the strings in it, assuming compressed references and two bytes per
+   * character. Values of relation-valued attributes are only counted as
+   * references.
+   *
+   * @return the estimated size of the values in bytes
+   */
+  public long valueBytes() {
+
+    long result = 24 + 16 + 4L * m_Values.size();
+    for (Object value : m_Values) {
+      if (value instanceof String) {
+        result += 24 + 16 + 2L * ((String) value).length();
+      } else if (value instanceof SerializedObject) {
+        result += 24 + 16 + ((SerializedObject) value).size();
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Restores the values and rebuilds the index.
+   *
+   * @param in the stream to read from
+   * @throws IOException if reading fails
+   * @throws ClassNotFoundException if a class of a value is not available
+   */
+  private void readObject(ObjectInputStream in) throws IOException,
+    ClassNotFoundException {
+
+    in.defaultReadObject();
+    rebuildIndex();
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PartitionedObjective.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Base class for objective functions that are sums over the training
+ * instances, such as a (weighted) negative log-likelihood, and whose value and
+ * gradient can hence be computed on several threads. The
+ * <code>objectiveFunction()</code> and <code>evaluateGradient()</code> methods
+ * of an <code>Optimization</code> subclass can simply delegate to the ones of
+ * a subclass.
+ * <p/>
+ *
+ * The work is done in passes over a range of items, e.g. instances or
+ * variables, that are split into consecutive parts, one per thread. A pass
+ * must not depend on how its range is split: it should only do work per item
+ * and leave any sums over the instances to the calling thread, or sum over
+ * the instances in their order for each of its items. The results are then
+ * identical for any number of threads. Passes over little data are run in
+ * the calling thread only, as handing them to other threads costs more than
+ * it saves.
+ *
+ * @version $Revision$
+ * @see Optimization
+ */
+public abstract class PartitionedObjective implements RevisionHandler {
+
+  /** the minimum amount of work, in multiply-adds, for each thread of a pass */
+  public static final long MIN_WORK_PER_THREAD = 1 << 16;
+
+  /** the threads that run the parts after the first one, null for none */
+  protected ExecutorService m_Executor;
+
+  /** the number of threads, including the calling thread */
+  protected int m_NumThreads = 1;
+
+  /** the tasks running the parts after the first one, reused for each pass */
+  protected List<Callable<Void>> m_Tasks = new ArrayList<Callable<Void>>();
+
+  /** the pass that is running */
+  protected RangePass m_Pass;
+
+  /** the number of items of the pass that is running */
+  protected int m_NumItems;
+
+  /** the number of parts of the pass that is running */
+  protected int m_NumParts;
+
+  /**
+   * A pass over a range of items.
+   */
+  protected abstract static class RangePass {
+
+    /**
+     * Processes the items in the given range.
+     *
+     * @param from the index of the first item
+     * @param to the index after the last item
+     * @throws Exception if something goes wrong
+     */
+    public abstract void process(int from, int to) throws Exception;
+  }
+
+  /**
+   * Sets the threads to use. The calling thread runs the first part of each
+   * pass, the executor the others, so it needs at most one thread less than
+   * the given number. The executor is not shut down by this class.
+   *
+   * @param executor the executor to run the other parts with, null to run
+   *          all passes in the calling thread
+   * @param numThreads the number of threads, including the calling thread
+   */
+  public void setExecutor(ExecutorService executor, int numThreads) {
+
+    m_Executor = executor;
+    m_NumThreads = (executor == null) ? 1 : Math.max(1, numThreads);
+    m_Tasks.clear();
+    for (int p = 1; p < m_NumThreads; p++) {
+      final int part = p;
+      m_Tasks.add(new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          m_Pass.process(from(part), from(part + 1));
+          return null;
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns the number of threads, including the calling thread.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+
+    return m_NumThreads;
+  }
+
+  /**
+   * Computes the value of the objective function.
+   *
+   * @param x the current values of the variables
+   * @return the value of the objective function
+   * @throws Exception if something goes wrong
+   */
+  public abstract double objectiveFunction(double[] x) throws Exception;
+
+  /**
+   * Computes the gradient of the objective function.
+   *
+   * @param x the current values of the variables
+   * @return the gradient vector
+   * @throws Exception if something goes wrong
+   */
+  public abstract double[] evaluateGradient(double[] x) throws Exception;
+
+  /**
+   * Runs a pass over the given number of items, split over as many threads as
+   * the amount of work warrants. Passes must not be run concurrently.
+   *
+   * @param pass the pass to run
+   * @param numItems the number of items
+   * @param workPerItem the approximate number of multiply-adds per item
+   * @throws Exception if the pass fails
+   */
+  protected void run(RangePass pass, int numItems, long workPerItem)
+    throws Exception {
+
+    long numParts = Math.min(m_NumThreads, numItems);
+    numParts = Math.min(numParts, numItems * workPerItem / MIN_WORK_PER_THREAD);
+    if (numParts < 2) {
+      pass.process(0, numItems);
+      return;
+    }
+
+    m_Pass = pass;
+    m_NumItems = numItems;
+    m_NumParts = (int) numParts;
+    List<Future<Void>> futures = new ArrayList<Future<Void>>(m_NumParts - 1);
+    for (int p = 1; p < m_NumParts; p++) {
+      futures.add(m_Executor.submit(m_Tasks.get(p - 1)));
+    }
+
+    // Wait for all parts before passing on a failure, as they share the
+    // pass's state
+    Exception failure = null;
+    try {
+      pass.process(from(0), from(1));
+    } catch (Exception e) {
+      failure = e;
+    }
+    for (Future<Void> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          failure = (e.getCause() instanceof Exception) ? (Exception) e
+            .getCause() : e;
+        }
+      }
+    }
+    m_Pass = null;
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Returns the index of the first item of a part of the running pass.
+   *
+   * @param part the index of the part, the number of parts for the end of
+   *          the last part
+   * @return the index of the first item
+   */
+  protected int from(int part) {
+
+    return (int) ((long) part * m_NumItems / m_NumParts);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    PresortedIndex.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Holds the order of the instances of a dataset on each of its attributes, so
+ * that several schemes trained on samples of the same data, like the members
+ * of a bagged ensemble of trees, need not sort the data themselves. The order
+ * on an attribute is computed the first time it is requested and then shared
+ * by all threads using the index.
+ * <p>
+ *
+ * A sample is described by a vector of weights for the instances of the
+ * dataset, with zero for the instances that are not in the sample. Its order
+ * on an attribute is obtained by filtering the order of the whole dataset,
+ * which takes time linear in the size of the dataset rather than
+ * <code>O(n log n)</code>.
+ * <p>
+ *
+ * The dataset must not be modified while the index is in use.
+ *
+ * @version $Revision$
+ */
+public class PresortedIndex implements RevisionHandler {
+
+  /** the indexed dataset */
+  protected Instances m_Data;
+
+  /** the orders computed so far, indexed by attribute */
+  protected AtomicReferenceArray<int[]> m_Orders;
+
+  /** the binned values of the dataset, null if not computed yet */
+  protected BinnedData m_Binned;
+
+  /**
+   * Creates an index for the given dataset. No orders are computed yet.
+   *
+   * @param data the dataset to index
+   */
+  public PresortedIndex(Instances data) {
+
+    m_Data = data;
+    m_Orders = new AtomicReferenceArray<int[]>(data.numAttributes());
+  }
+
+  /**
+   * Returns the indexed dataset.
+   *
+   * @return the dataset
+   */
+  public Instances getData() {
+
+    return m_Data;
+  }
+
+  /**
+   * Returns the positions of all instances of the dataset, ordered by their
+   * value of the given attribute. Equal values keep the order of the dataset
+   * and instances with a missing value come last. The array is shared and
+   * must not be modified.
+   *
+   * @param att the index of the attribute
+   * @return the positions in ascending order of the attribute's values
+   */
+  public int[] order(int att) {
+
+    int[] result = m_Orders.get(att);
+    if (result == null) {
+      double[] vals = m_Data.attributeToDoubleArray(att);
+      int[] sorted = Utils.sort(vals);
+
+      // Values of Double.MAX_VALUE are sorted together with missing values
+      result = new int[sorted.length];
+      int count = 0;
+      for (int element : sorted) {
+        if (!Utils.isMissingValue(vals[element])) {
+          result[count++] = element;
+        }
+      }
+      int numValues = count;
+      for (int element : sorted) {
+        if (Utils.isMissingValue(vals[element])) {
+          result[count++] = element;
+        }
+      }
+
+      // Make the order stable by sorting runs of equal values by position
+      int start = 0;
+      for (int i = 1; i <= numValues; i++) {
+        if ((i == numValues) || (vals[result[i]] != vals[result[start]])) {
+          if (i - start > 1) {
+            Arrays.sort(result, start, i);
+          }
+          start = i;
+        }
+      }
+      Arrays.sort(result, numValues, result.length);
+
+      // another thread may have been faster, use the same array then
+      if (!m_Orders.compareAndSet(att, null, result)) {
+        result = m_Orders.get(att);
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the values of the dataset quantised into the given maximum number
+   * of bins. The bins are computed the first time they are requested and then
+   * shared by all threads using the index, as long as the same number of bins
+   * is requested.
+   *
+   * @param maxBins the maximum number of bins of a numeric attribute
+   * @return the binned values
+   */
+  public synchronized BinnedData binned(int maxBins) {
+
+    if ((m_Binned == null) || (m_Binned.getMaxBins() != maxBins)) {
+      m_Binned = new BinnedData(this, maxBins);
+    }
+
+    return m_Binned;
+  }
+
+  /**
+   * Returns the positions of the instances with positive weight, in
+   * ascending order.
+   *
+   * @param weights the weight of each instance of the dataset
+   * @return the positions of the instances in the sample
+   * @throws IllegalArgumentException if the number of weights differs from
+   *           the number of instances
+   */
+  public int[] rows(double[] weights) {
+
+    if (weights.length != m_Data.numInstances()) {
+      throw new IllegalArgumentException("weights.length != numInstances.");
+    }
+    int count = 0;
+    for (double weight : weights) {
+      if (weight > 0) {
+        count++;
+      }
+    }
+    int[] result = new int[count];
+    count = 0;
+    for (int i = 0; i < weights.length; i++) {
+      if (weights[i] > 0) {
+        result[count++] = i;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Creates a sample that contains shallow copies of the instances at the
+   * given positions, in the same order, with their weights replaced by the
+   * given ones. This is the dataset that
+   * <code>Instances.resampleWithWeights</code> returns when copies are
+   * represented using weights.
+   *
+   * @param rows the positions of the instances, as returned by
+   *          <code>rows(double[])</code>
+   * @param weights the weight of each instance of the dataset
+   * @return the sample
+   */
+  public Instances sample(int[] rows, double[] weights) {
+
+    Instances result = new Instances(m_Data, rows.length);
+    for (int row : rows) {
+      result.add(m_Data.instance(row));
+      result.instance(result.numInstances() - 1).setWeight(weights[row]);
+    }
+
+    return result;
+  }
+
+  /**
+   * Orders the instances of a sample by their value of the given attribute.
+   * The result lists indices into the given array of positions; equal values
+   * keep the order of the dataset and instances with a missing value come
+   * last.
+   *
+   * @param att the index of the attribute
+   * @param rows the positions of the instances of the sample in the dataset,
+   *          all different
+   * @return the indices into <code>rows</code>, ordered by attribute value
+   */
+  public int[] sort(int att, int[] rows) {
+
+    int[] order = order(att);
+    int[] result = new int[rows.length];
+    if (rows.length == 0) {
+      return result;
+    }
+
+    // slot of each instance in the sample plus one, 0 if not contained
+    int[] slots = new int[m_Data.numInstances()];
+    for (int i = 0; i < rows.length; i++) {
+      slots[rows[i]] = i + 1;
+    }
+    int count = 0;
+    for (int element : order) {
+      if (slots[element] != 0) {
+        result[count++] = slots[element] - 1;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -132,6 +132,16 @@ public class SerializedObject implements Serializable, RevisionHandler {
     return m_storedObjectArray.length;
   }
 
+  /**
+   * Returns the number of bytes the serialized object occupies.
+   *
+   * @return the length of the (possibly compressed) serialized form
+   */
+  public int size() {
+
+    return m_storedObjectArray.length;
+  }
+
   /**
    * Returns a serialized object. Uses org.python.util.PythonObjectInputStream
    * for Jython objects (read <a
@@ -60,9 +60,19 @@ public class SparseInstance extends AbstractInstance {
     m_Weight = instance.weight();
     m_Dataset = null;
     m_NumAttributes = instance.numAttributes();
-    if (instance instanceof SparseInstance) {
+    if ((instance instanceof SparseInstance)
+      && (((SparseInstance) instance).m_Indices != null)
+      && (((SparseInstance) instance).m_AttValues != null)) {
       m_AttValues = ((SparseInstance) instance).m_AttValues;
       m_Indices = ((SparseInstance) instance).m_Indices;
+    } else if (instance instanceof SparseInstance) {
+      // subclasses that store their values differently
+      m_AttValues = new double[instance.numValues()];
+      m_Indices = new int[instance.numValues()];
+      for (int i = 0; i < m_AttValues.length; i++) {
+        m_AttValues[i] = instance.valueSparse(i);
+        m_Indices[i] = instance.index(i);
+      }
     } else {
       double[] tempValues = new double[instance.numAttributes()];
       int[] tempIndices = new int[instance.numAttributes()];
@@ -90,11 +100,7 @@ public class SparseInstance extends AbstractInstance {
    */
   public SparseInstance(SparseInstance instance) {
 
-    m_AttValues = instance.m_AttValues;
-    m_Indices = instance.m_Indices;
-    m_Weight = instance.m_Weight;
-    m_NumAttributes = instance.m_NumAttributes;
-    m_Dataset = null;
+    this((Instance) instance);
   }
 
   /**
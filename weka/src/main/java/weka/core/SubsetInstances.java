@@ -0,0 +1,362 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    SubsetInstances.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A view onto a subset of the instances of a parent dataset. The view shares
+ * the header of the parent and only stores the positions of its instances in
+ * the parent, so creating a view does not copy any <code>Instance</code>
+ * objects.
+ * <p>
+ *
+ * The methods that derive new sets of instances, <code>trainCV</code>,
+ * <code>testCV</code> and <code>resample</code>, return views onto the same
+ * parent again, and reordering a view (<code>randomize</code>,
+ * <code>stratify</code>, sorting) only permutes its index array. They consume
+ * random numbers exactly like their counterparts in <code>Instances</code>,
+ * hence repeated cross-validations on a view produce the same folds as on a
+ * copy of the data. Views of views refer to the original parent directly.
+ * <p>
+ *
+ * The instances of a view are the ones of the parent, so modifying them
+ * modifies the parent. Views are therefore meant for read-only use, e.g., for
+ * evaluating models or for schemes that take a copy of their training data via
+ * <code>new Instances(data)</code>, which yields a standard copy. The parent
+ * must not be reordered or shrunk while views onto it are in use.
+ * <p>
+ *
+ * Typical usage:
+ * <p>
+ *
+ * <pre>
+ * Instances view = new SubsetInstances(data);
+ * view.randomize(random);
+ * view.stratify(numFolds);
+ * for (int i = 0; i &lt; numFolds; i++) {
+ *   Instances train = view.trainCV(numFolds, i, random);
+ *   Instances test = view.testCV(numFolds, i);
+ *   ...
+ * }
+ * </pre>
+ *
+ * @version $Revision$
+ */
+public class SubsetInstances extends IndexedInstances {
+
+  /** for serialization */
+  private static final long serialVersionUID = -2392563212508496148L;
+
+  /** the dataset the positions refer to */
+  protected Instances m_Parent;
+
+  /**
+   * Creates a view containing all the instances of the given dataset, in
+   * order. If the dataset is a view itself, the new view shares its parent
+   * and can be reordered independently.
+   *
+   * @param dataset the dataset
+   */
+  public SubsetInstances(Instances dataset) {
+
+    super(dataset, 0);
+
+    if (dataset instanceof SubsetInstances) {
+      SubsetInstances view = (SubsetInstances) dataset;
+      m_Parent = view.m_Parent;
+      m_Order = (view.m_Order == null) ? null : Arrays.copyOf(view.m_Order,
+        view.m_Size);
+    } else {
+      m_Parent = dataset;
+      m_Order = null;
+    }
+    m_Size = dataset.numInstances();
+  }
+
+  /**
+   * Creates a view containing the instances at the given positions of the
+   * dataset. Positions can occur more than once.
+   *
+   * @param dataset the dataset
+   * @param indices the positions of the instances in the dataset (index
+   *          starts with 0)
+   * @throws IndexOutOfBoundsException if a position is out of range
+   */
+  public SubsetInstances(Instances dataset, int[] indices) {
+
+    super(dataset, indices.length);
+
+    SubsetInstances view = null;
+    if (dataset instanceof SubsetInstances) {
+      view = (SubsetInstances) dataset;
+      m_Parent = view.m_Parent;
+    } else {
+      m_Parent = dataset;
+    }
+    for (int i = 0; i < indices.length; i++) {
+      if ((indices[i] < 0) || (indices[i] >= dataset.numInstances())) {
+        throw new IndexOutOfBoundsException("Index: " + indices[i]
+          + ", Size: " + dataset.numInstances());
+      }
+      m_Order[i] = (view != null) ? view.rowAt(indices[i]) : indices[i];
+    }
+    m_Size = indices.length;
+  }
+
+  /**
+   * Creates an empty view onto the parent of the given view.
+   *
+   * @param view the view to take parent and header from
+   * @param capacity the number of positions to reserve
+   */
+  protected SubsetInstances(SubsetInstances view, int capacity) {
+
+    super(view, capacity);
+
+    m_Parent = view.m_Parent;
+  }
+
+  /**
+   * Returns the dataset the view refers to.
+   *
+   * @return the parent dataset
+   */
+  public Instances getParent() {
+
+    return m_Parent;
+  }
+
+  /**
+   * Returns the position in the parent of an instance of the view.
+   *
+   * @param index the index of the instance in the view
+   * @return the position of the instance in the parent
+   */
+  public int parentIndex(int index) {
+
+    return rowOf(index);
+  }
+
+  /**
+   * Returns the instance of the parent at the given position.
+   *
+   * @param row the position in the parent
+   * @return the instance
+   */
+  @Override
+  protected Instance rowInstance(int row) {
+
+    return m_Parent.instance(row);
+  }
+
+  /**
+   * Returns a value of the instance of the parent at the given position.
+   *
+   * @param row the position in the parent
+   * @param attIndex the attribute's index
+   * @return the value in internal floating-point format
+   */
+  @Override
+  protected double rowValue(int row, int attIndex) {
+
+    return m_Parent.instance(row).value(attIndex);
+  }
+
+  /**
+   * Returns the weight of the instance of the parent at the given position.
+   *
+   * @param row the position in the parent
+   * @return the weight
+   */
+  @Override
+  protected double rowWeight(int row) {
+
+    return m_Parent.instance(row).weight();
+  }
+
+  /**
+   * Appends positions of this view to another view.
+   *
+   * @param from the position of the first instance to be copied
+   * @param dest the view to append to
+   * @param num the number of instances to be copied
+   */
+  protected void copyRows(int from, SubsetInstances dest, int num) {
+
+    for (int i = 0; i < num; i++) {
+      dest.insertRow(dest.m_Size, rowOf(from + i));
+    }
+  }
+
+  /**
+   * Creates the test set for one fold of a cross-validation as a view onto
+   * the same parent.
+   *
+   * @param numFolds the number of folds in the cross-validation. Must be
+   *          greater than 1.
+   * @param numFold 0 for the first fold, 1 for the second, ...
+   * @return the test set
+   * @throws IllegalArgumentException if the number of folds is less than 2 or
+   *           greater than the number of instances.
+   */
+  @Override
+  public Instances testCV(int numFolds, int numFold) {
+
+    int[] range = testCVRange(numFolds, numFold);
+    SubsetInstances test = new SubsetInstances(this, range[1]);
+    copyRows(range[0], test, range[1]);
+    return test;
+  }
+
+  /**
+   * Creates the training set for one fold of a cross-validation as a view
+   * onto the same parent.
+   *
+   * @param numFolds the number of folds in the cross-validation. Must be
+   *          greater than 1.
+   * @param numFold 0 for the first fold, 1 for the second, ...
+   * @return the training set
+   * @throws IllegalArgumentException if the number of folds is less than 2 or
+   *           greater than the number of instances.
+   */
+  @Override
+  public Instances trainCV(int numFolds, int numFold) {
+
+    int[] range = testCVRange(numFolds, numFold);
+    SubsetInstances train = new SubsetInstances(this, m_Size - range[1]);
+    copyRows(0, train, range[0]);
+    copyRows(range[0] + range[1], train, m_Size - range[0] - range[1]);
+    return train;
+  }
+
+  /**
+   * Creates a view of the same size as this one using random sampling with
+   * replacement.
+   *
+   * @param random a random number generator
+   * @return the new view
+   */
+  @Override
+  public Instances resample(Random random) {
+
+    SubsetInstances newData = new SubsetInstances(this, m_Size);
+    while (newData.m_Size < m_Size) {
+      newData.insertRow(newData.m_Size, rowOf(random.nextInt(m_Size)));
+    }
+    return newData;
+  }
+
+  /**
+   * Not supported, a view can only contain instances of its parent.
+   *
+   * @param instance the instance to be added
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public boolean add(Instance instance) {
+
+    throw new UnsupportedOperationException(
+      "Cannot add instances to a subset view!");
+  }
+
+  /**
+   * Not supported, a view can only contain instances of its parent.
+   *
+   * @param index position where instance is to be inserted
+   * @param instance the instance to be added
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void add(int index, Instance instance) {
+
+    throw new UnsupportedOperationException(
+      "Cannot add instances to a subset view!");
+  }
+
+  /**
+   * Not supported, a view can only contain instances of its parent.
+   *
+   * @param index position where instance is to be inserted
+   * @param instance the instance to be inserted
+   * @return nothing
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public Instance set(int index, Instance instance) {
+
+    throw new UnsupportedOperationException(
+      "Cannot replace instances in a subset view!");
+  }
+
+  /**
+   * Not supported, the header is shared with the parent.
+   *
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void deleteAttributeAt(int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot delete attributes from a subset view!");
+  }
+
+  /**
+   * Not supported, the header is shared with the parent.
+   *
+   * @param att the attribute to be inserted
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void insertAttributeAt(Attribute att, int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot insert attributes into a subset view!");
+  }
+
+  /**
+   * Not supported, the header is shared with the parent.
+   *
+   * @param att the new attribute
+   * @param position the attribute's position
+   * @throws UnsupportedOperationException always
+   */
+  @Override
+  public void replaceAttributeAt(Attribute att, int position) {
+
+    throw new UnsupportedOperationException(
+      "Cannot replace attributes in a subset view!");
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
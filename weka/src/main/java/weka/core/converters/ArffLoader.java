@@ -79,6 +79,12 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
    */
   protected boolean m_retainStringVals;
 
+  /** Whether to parse with the StreamTokenizer-based ArffReader */
+  protected boolean m_useLegacyParser = false;
+
+  /** The number of threads to use for parsing in batch mode */
+  protected int m_numThreads = 1;
+
   /**
    * Reads data from an ARFF file, either in incremental or batch mode.
    * <p/>
@@ -1100,6 +1106,63 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
     return m_retainStringVals;
   }
 
+  /**
+   * Tool tip text for this property
+   * 
+   * @return the tool tip for this property
+   */
+  public String useLegacyParserTipText() {
+    return "If true then the data is parsed with the original, "
+      + "StreamTokenizer-based parser instead of the faster buffer-based one.";
+  }
+
+  /**
+   * Set whether to use the original StreamTokenizer-based parser.
+   * 
+   * @param legacy true if the original parser is to be used
+   */
+  public void setUseLegacyParser(boolean legacy) {
+    m_useLegacyParser = legacy;
+  }
+
+  /**
+   * Get whether to use the original StreamTokenizer-based parser.
+   * 
+   * @return true if the original parser is used
+   */
+  public boolean getUseLegacyParser() {
+    return m_useLegacyParser;
+  }
+
+  /**
+   * Tool tip text for this property
+   * 
+   * @return the tool tip for this property
+   */
+  public String numThreadsTipText() {
+    return "The number of threads to use for parsing the data when loading "
+      + "it in batch mode. Only data with numeric and nominal attributes "
+      + "is parsed in parallel.";
+  }
+
+  /**
+   * Set the number of threads to use for parsing in batch mode.
+   * 
+   * @param numThreads the number of threads
+   */
+  public void setNumThreads(int numThreads) {
+    m_numThreads = numThreads;
+  }
+
+  /**
+   * Get the number of threads to use for parsing in batch mode.
+   * 
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
   /**
    * Get the file extension used for arff files
    * 
@@ -1242,8 +1305,14 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
       }
 
       try {
-        m_ArffReader =
-          new ArffReader(m_sourceReader, 1, (getRetrieval() == BATCH));
+        if (getUseLegacyParser()) {
+          m_ArffReader =
+            new ArffReader(m_sourceReader, 1, (getRetrieval() == BATCH));
+        } else {
+          m_ArffReader =
+            new FastArffReader(m_sourceReader, 1, (getRetrieval() == BATCH));
+          ((FastArffReader) m_ArffReader).setNumThreads(getNumThreads());
+        }
         m_ArffReader.setRetainStringValues(getRetainStringVals());
         m_structure = m_ArffReader.getStructure();
       } catch (Exception ex) {
@@ -1282,9 +1351,13 @@ public class ArffLoader extends AbstractFileLoader implements BatchConverter,
 
       // Read all instances
       insts = new Instances(m_structure, 0);
-      Instance inst;
-      while ((inst = m_ArffReader.readInstance(m_structure)) != null) {
-        insts.add(inst);
+      if (m_ArffReader instanceof FastArffReader) {
+        ((FastArffReader) m_ArffReader).readInstances(m_structure, insts);
+      } else {
+        Instance inst;
+        while ((inst = m_ArffReader.readInstance(m_structure)) != null) {
+          insts.add(inst);
+        }
       }
 
       // Instances readIn = new Instances(m_structure);
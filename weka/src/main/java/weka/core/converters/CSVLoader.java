@@ -21,33 +21,53 @@
 
 package weka.core.converters;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.CharArrayReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import weka.core.Attribute;
 import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Environment;
 import weka.core.Option;
 import weka.core.OptionHandler;
 import weka.core.Range;
@@ -124,6 +144,19 @@ import weka.core.converters.ArffLoader.ArffReader;
  *  The size of the in memory buffer (in rows).
  *  (default: 100)</pre>
  * 
+ * <pre> -sample &lt;num&gt;
+ *  The number of rows to determine the structure from in batch
+ *  mode, after which the file is parsed in parallel chunks.
+ *  (default: 0, i.e., use all rows)</pre>
+ * 
+ * <pre> -reservoir
+ *  Draw the sample uniformly from the whole file instead of
+ *  using the first rows.</pre>
+ * 
+ * <pre> -threads &lt;num&gt;
+ *  The number of threads for parsing when using a sample.
+ *  (default: 1)</pre>
+ * 
  <!-- options-end -->
  * 
  * @author Mark Hall (mhall{[at]}pentaho{[dot]}com)
@@ -186,6 +219,21 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
   /** The maximum number of rows to hold in memory at any one time */
   protected int m_bufferSize = 100;
 
+  /** The number of rows to determine the structure from (0 = all rows) */
+  protected int m_sampleSize = 0;
+
+  /** Whether to draw the sample from the whole file */
+  protected boolean m_reservoirSample = false;
+
+  /** The number of threads to use for parsing when using a sample */
+  protected int m_numThreads = 1;
+
+  /** The minimum number of bytes per chunk parsed in parallel */
+  protected static final int MIN_CHUNK_SIZE = 1 << 20;
+
+  /** The maximum number of bytes per chunk parsed in parallel */
+  protected static final int MAX_CHUNK_SIZE = 64 << 20;
+
   /** Lookup for nominal values */
   protected Map<Integer, LinkedHashSet<String>> m_nominalVals;
 
@@ -243,7 +291,11 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       + "seen in the initial buffer is encountered. In this case, the size of the "
       + "initial buffer can be increased, or the user can explicitly provide the "
       + "legal values of all nominal attributes using the -L (setNominalLabelSpecs) "
-      + "option.";
+      + "option. Alternatively, batch mode can determine the structure from a "
+      + "sample of the rows only (-sample option). The file is then read in a "
+      + "single pass, split into chunks that are parsed by several threads; "
+      + "nominal values not contained in the sample are added to the "
+      + "structure.";
   }
 
   @Override
@@ -560,6 +612,97 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     return "The number of rows to process in memory at any one time.";
   }
 
+  /**
+   * Get the number of rows to determine the structure from in batch mode.
+   *
+   * @return the sample size, 0 if all rows are used
+   */
+  public int getSampleSize() {
+    return m_sampleSize;
+  }
+
+  /**
+   * Set the number of rows to determine the structure from in batch mode.
+   *
+   * @param size the sample size, 0 to use all rows
+   */
+  public void setSampleSize(int size) {
+    m_sampleSize = size;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String sampleSizeTipText() {
+    return "The number of rows to determine the attribute types from in batch "
+      + "mode (0 = all rows). When using a sample, the data is read in a "
+      + "single pass and parsed in parallel chunks; this requires the source "
+      + "to be an uncompressed file.";
+  }
+
+  /**
+   * Get whether the sample is drawn from the whole file.
+   *
+   * @return true if a reservoir sample is drawn
+   */
+  public boolean getReservoirSample() {
+    return m_reservoirSample;
+  }
+
+  /**
+   * Set whether the sample is drawn from the whole file.
+   *
+   * @param reservoir true to draw a reservoir sample, false to use the first
+   *          rows
+   */
+  public void setReservoirSample(boolean reservoir) {
+    m_reservoirSample = reservoir;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String reservoirSampleTipText() {
+    return "If true, the sample is drawn uniformly from the whole file "
+      + "(requires an additional pass over the lines) rather than consisting "
+      + "of the first rows.";
+  }
+
+  /**
+   * Get the number of threads to use for parsing when using a sample.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_numThreads;
+  }
+
+  /**
+   * Set the number of threads to use for parsing when using a sample.
+   *
+   * @param numThreads the number of threads
+   */
+  public void setNumThreads(int numThreads) {
+    m_numThreads = numThreads;
+  }
+
+  /**
+   * Returns the tip text for this property.
+   *
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads to use for parsing the chunks of the file "
+      + "when the structure is determined from a sample.";
+  }
+
   /**
    * Get label specifications for nominal attributes.
    *
@@ -666,6 +809,18 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     result.add(new Option("\tThe size of the in memory buffer (in rows).\n"
       + "\t(default: 100)", "B", 1, "-B <num>"));
 
+    result.add(new Option(
+      "\tThe number of rows to determine the structure from in batch\n"
+        + "\tmode, after which the file is parsed in parallel chunks.\n"
+        + "\t(default: 0, i.e., use all rows)", "sample", 1, "-sample <num>"));
+
+    result.add(new Option("\tDraw the sample uniformly from the whole file "
+      + "instead of\n\tusing the first rows.", "reservoir", 0, "-reservoir"));
+
+    result.add(new Option(
+      "\tThe number of threads for parsing when using a sample.\n"
+        + "\t(default: 1)", "threads", 1, "-threads <num>"));
+
     return result.elements();
   }
 
@@ -701,6 +856,16 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     result.add("-B");
     result.add("" + getBufferSize());
 
+    if (getSampleSize() > 0) {
+      result.add("-sample");
+      result.add("" + getSampleSize());
+      if (getReservoirSample()) {
+        result.add("-reservoir");
+      }
+      result.add("-threads");
+      result.add("" + getNumThreads());
+    }
+
     result.add("-E");
     result.add(getEnclosureCharacters());
 
@@ -777,6 +942,22 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       setEnclosureCharacters(tmpStr);
     }
 
+    tmpStr = Utils.getOption("sample", options);
+    if (tmpStr.length() > 0) {
+      setSampleSize(Integer.parseInt(tmpStr));
+    } else {
+      setSampleSize(0);
+    }
+
+    setReservoirSample(Utils.getFlag("reservoir", options));
+
+    tmpStr = Utils.getOption("threads", options);
+    if (tmpStr.length() > 0) {
+      setNumThreads(Integer.parseInt(tmpStr));
+    } else {
+      setNumThreads(1);
+    }
+
     while (true) {
       tmpStr = Utils.getOption('L', options);
       if (tmpStr.length() == 0) {
@@ -877,6 +1058,11 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
       getStructure();
     }
 
+    File file = getSplittableSourceFile();
+    if ((m_sampleSize > 0) && (file != null)) {
+      return getDataSetFromSample(file);
+    }
+
     while (readData(true)) {
       ;
     }
@@ -1135,6 +1321,33 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     m_StringAttributes.setUpper(m_structure.numAttributes() - 1);
     m_dateAttributes.setUpper(m_structure.numAttributes() - 1);
     m_numericAttributes.setUpper(m_structure.numAttributes() - 1);
+    initTypes();
+
+    // Prevents the first row from getting lost in the
+    // case where there is no header row and we're
+    // running in batch mode
+    if (m_noHeaderRow && getRetrieval() == BATCH) {
+      StreamTokenizer tempT = new StreamTokenizer(new StringReader(firstRow));
+      initTokenizer(tempT);
+      tempT.ordinaryChar(m_FieldSeparator.charAt(0));
+      String checked = getInstance(tempT);
+      dumpRow(checked);
+    }
+
+    m_st = new StreamTokenizer(m_sourceReader);
+    initTokenizer(m_st);
+    m_st.ordinaryChar(m_FieldSeparator.charAt(0));
+
+    // try and determine a more accurate structure from the first batch
+    readData(false || getRetrieval() == BATCH);
+    makeStructure();
+  }
+
+  /**
+   * Initializes the types of the attributes from the ranges of forced types
+   * and the nominal label specifications.
+   */
+  protected void initTypes() {
     m_nominalVals = new HashMap<Integer, LinkedHashSet<String>>();
 
     m_types = new TYPE[m_structure.numAttributes()];
@@ -1193,25 +1406,6 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
         }
       }
     }
-
-    // Prevents the first row from getting lost in the
-    // case where there is no header row and we're
-    // running in batch mode
-    if (m_noHeaderRow && getRetrieval() == BATCH) {
-      StreamTokenizer tempT = new StreamTokenizer(new StringReader(firstRow));
-      initTokenizer(tempT);
-      tempT.ordinaryChar(m_FieldSeparator.charAt(0));
-      String checked = getInstance(tempT);
-      dumpRow(checked);
-    }
-
-    m_st = new StreamTokenizer(m_sourceReader);
-    initTokenizer(m_st);
-    m_st.ordinaryChar(m_FieldSeparator.charAt(0));
-
-    // try and determine a more accurate structure from the first batch
-    readData(false || getRetrieval() == BATCH);
-    makeStructure();
   }
 
   protected void openTempFiles() throws IOException {
@@ -1383,6 +1577,684 @@ public class CSVLoader extends AbstractFileLoader implements BatchConverter,
     return temp.substring(0, temp.length() - 1);
   }
 
+  /**
+   * Returns the source file if it can be split into byte ranges at line
+   * breaks, i.e., if it is an uncompressed file on disk and line breaks are
+   * single bytes that cannot be part of other characters in the platform's
+   * default character set.
+   *
+   * @return the file, null if the source cannot be split
+   */
+  protected File getSplittableSourceFile() {
+    File result;
+    String fName;
+
+    if (m_sourceFile == null) {
+      return null;
+    }
+    fName = m_sourceFile.getPath();
+    try {
+      if (m_env == null) {
+        m_env = Environment.getSystemWide();
+      }
+      fName = m_env.substitute(fName);
+    } catch (Exception e) {
+      // ignore any missing environment variables
+    }
+    result = new File(fName);
+    if (!result.isFile()
+      || result.getName().endsWith(FILE_EXTENSION_COMPRESSED)) {
+      return null;
+    }
+    if (!Arrays.equals("\n\r".getBytes(Charset.defaultCharset()), new byte[] {
+      '\n', '\r' })) {
+      return null;
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the offset of the first data row in the file, skipping the header
+   * row if present.
+   *
+   * @param file the file
+   * @return the byte offset
+   * @throws IOException if reading fails
+   */
+  protected long getDataOffset(File file) throws IOException {
+    InputStream in;
+    long result;
+    int c;
+
+    result = 0;
+    if (m_noHeaderRow) {
+      return result;
+    }
+    in = new BufferedInputStream(new FileInputStream(file));
+    try {
+      while ((c = in.read()) != -1) {
+        result++;
+        if (c == '\n') {
+          break;
+        }
+        if (c == '\r') {
+          if (in.read() == '\n') {
+            result++;
+          }
+          break;
+        }
+      }
+    } finally {
+      in.close();
+    }
+
+    return result;
+  }
+
+  /**
+   * Reads the rows to determine the structure from: either the first rows or,
+   * if a reservoir sample is to be drawn, a uniform sample of all rows (in the
+   * order they appear in the file).
+   *
+   * @param file the file
+   * @param offset the offset of the first data row
+   * @return the rows
+   * @throws IOException if reading fails
+   */
+  protected List<String> readSample(File file, long offset) throws IOException {
+    InputStream in;
+    BufferedReader reader;
+    List<String> rows;
+    List<Integer> positions;
+    Map<Integer, String> ordered;
+    Random rand;
+    String line;
+    int count;
+    int index;
+
+    rows = new ArrayList<String>();
+    positions = new ArrayList<Integer>();
+    in = new FileInputStream(file);
+    reader = new BufferedReader(new InputStreamReader(in));
+    try {
+      if (in.skip(offset) != offset) {
+        return rows;
+      }
+      rand = new Random(1);
+      count = 0;
+      while ((line = reader.readLine()) != null) {
+        if (rows.size() < m_sampleSize) {
+          rows.add(line);
+          positions.add(count);
+        } else if (!m_reservoirSample) {
+          break;
+        } else {
+          index = rand.nextInt(count + 1);
+          if (index < m_sampleSize) {
+            rows.set(index, line);
+            positions.set(index, count);
+          }
+        }
+        count++;
+      }
+    } finally {
+      reader.close();
+    }
+
+    // restore the order of the file
+    ordered = new TreeMap<Integer, String>();
+    for (int i = 0; i < rows.size(); i++) {
+      ordered.put(positions.get(i), rows.get(i));
+    }
+
+    return new ArrayList<String>(ordered.values());
+  }
+
+  /**
+   * Reads the full data set after determining the structure from a sample of
+   * the rows. The rest of the file is split into chunks of whole lines that
+   * are parsed in parallel and merged in order. Nominal values not contained
+   * in the sample are added to the structure, while numbers or dates that
+   * cannot be parsed result in an error.
+   *
+   * @param file the file to read
+   * @return the data set
+   * @throws IOException if reading or parsing fails
+   */
+  protected Instances getDataSetFromSample(File file) throws IOException {
+    RandomAccessFile raf;
+    FileChannel channel;
+    ExecutorService pool;
+    LinkedList<Future<Chunk>> pending;
+    ChunkMerger merger;
+    StringBuilder sample;
+    StreamTokenizer tokenizer;
+    long offset;
+    long length;
+    long chunkSize;
+    int numThreads;
+
+    // the temporary file and the reader of the initial pass are not needed
+    if (m_dataDumper != null) {
+      m_dataDumper.close();
+      m_dataDumper = null;
+    }
+    if (m_tempFile != null) {
+      m_tempFile.delete();
+    }
+    m_sourceReader.close();
+
+    // determine the structure from the sample
+    offset = getDataOffset(file);
+    sample = new StringBuilder();
+    for (String row : readSample(file, offset)) {
+      sample.append(row).append("\n");
+    }
+    initTypes();
+    m_rowCount = m_noHeaderRow ? 0 : 1;
+    tokenizer = new StreamTokenizer(new StringReader(sample.toString()));
+    initTokenizer(tokenizer);
+    tokenizer.ordinaryChar(m_FieldSeparator.charAt(0));
+    while (getInstance(tokenizer) != null) {
+      ;
+    }
+    makeStructure();
+
+    // parse the chunks
+    numThreads = Math.max(1, m_numThreads);
+    merger = new ChunkMerger(m_noHeaderRow ? 0 : 1);
+    raf = new RandomAccessFile(file, "r");
+    pool = Executors.newFixedThreadPool(numThreads);
+    pending = new LinkedList<Future<Chunk>>();
+    try {
+      channel = raf.getChannel();
+      length = channel.size();
+      chunkSize = (length - offset) / (4 * numThreads) + 1;
+      chunkSize = Math.max(MIN_CHUNK_SIZE, Math.min(MAX_CHUNK_SIZE, chunkSize));
+      for (long start = offset; start < length; start += chunkSize) {
+        pending.add(pool.submit(new ChunkParser(channel, start, Math.min(
+          start + chunkSize, length), start == offset)));
+        if (pending.size() >= 2 * numThreads) {
+          merger.merge(waitFor(pending.removeFirst()));
+        }
+      }
+      while (pending.size() > 0) {
+        merger.merge(waitFor(pending.removeFirst()));
+      }
+    } finally {
+      pool.shutdownNow();
+      raf.close();
+    }
+
+    m_sourceReader = null;
+    Instances result = merger.getData();
+    m_structure = new Instances(result, 0);
+
+    return result;
+  }
+
+  /**
+   * Waits for a chunk to be parsed.
+   *
+   * @param future the pending chunk
+   * @return the chunk
+   * @throws IOException if parsing failed
+   */
+  protected Chunk waitFor(Future<Chunk> future) throws IOException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().toString());
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    }
+  }
+
+  /**
+   * The rows parsed from a chunk of the file. Values of string attributes and
+   * nominal values not in the structure are stored as -(index + 1) into the
+   * chunk's own list of labels for the attribute.
+   */
+  protected static class Chunk {
+
+    /** the values of the rows */
+    protected List<double[]> m_Rows = new ArrayList<double[]>();
+
+    /** the labels not in the structure, per attribute (null if none) */
+    protected List<List<String>> m_Labels;
+
+    /** the number of lines in the chunk */
+    protected int m_NumLines;
+
+    /** the error that stopped parsing, null if none */
+    protected String m_Error;
+
+    /** the line of the error, relative to the chunk */
+    protected int m_ErrorLine;
+
+    /**
+     * Initializes the chunk.
+     *
+     * @param numAttributes the number of attributes
+     */
+    protected Chunk(int numAttributes) {
+      m_Labels = new ArrayList<List<String>>(Collections
+        .nCopies(numAttributes, (List<String>) null));
+    }
+  }
+
+  /**
+   * Parses the lines starting within a byte range of the file. A line belongs
+   * to the range its first byte lies in, so the parser skips the partial line
+   * at the start of the range and reads past its end to complete the last
+   * line.
+   */
+  protected class ChunkParser implements Callable<Chunk> {
+
+    /** the channel to read from */
+    protected FileChannel m_Channel;
+
+    /** the start of the range */
+    protected long m_Start;
+
+    /** the end of the range (exclusive) */
+    protected long m_End;
+
+    /** whether the range starts with a line */
+    protected boolean m_First;
+
+    /** the known labels of the nominal attributes */
+    protected List<Map<String, Integer>> m_Known;
+
+    /** the labels added in this chunk */
+    protected List<Map<String, Integer>> m_Added;
+
+    /** the date formats */
+    protected SimpleDateFormat[] m_Formats;
+
+    /**
+     * Initializes the parser.
+     *
+     * @param channel the channel to read from
+     * @param start the start of the range
+     * @param end the end of the range (exclusive)
+     * @param first whether the range starts with a line
+     */
+    protected ChunkParser(FileChannel channel, long start, long end,
+      boolean first) {
+      m_Channel = channel;
+      m_Start = start;
+      m_End = end;
+      m_First = first;
+    }
+
+    /**
+     * Reads bytes from the given position until the buffer is full or the
+     * end of the file has been reached.
+     *
+     * @param buf the buffer
+     * @param off the offset in the buffer
+     * @param position the position in the file
+     * @return the number of bytes read
+     * @throws IOException if reading fails
+     */
+    protected int read(byte[] buf, int off, long position) throws IOException {
+      ByteBuffer buffer;
+      int read;
+
+      buffer = ByteBuffer.wrap(buf, off, buf.length - off);
+      while (buffer.hasRemaining()) {
+        read = m_Channel.read(buffer, position + buffer.position() - off);
+        if (read < 0) {
+          break;
+        }
+      }
+
+      return buffer.position() - off;
+    }
+
+    /**
+     * Reads the lines starting within the range and decodes them.
+     *
+     * @return the characters, null if no line starts within the range
+     * @throws IOException if reading fails
+     */
+    protected CharBuffer readLines() throws IOException {
+      byte[] buf;
+      long position;
+      int length;
+      int from;
+      int end;
+      int read;
+
+      position = m_First ? m_Start : m_Start - 1;
+      buf = new byte[(int) (m_End - position) + 8192];
+      length = read(buf, 0, position);
+
+      // skip the partial line at the start
+      from = 0;
+      if (!m_First) {
+        while ((from < length) && (buf[from] != '\n')) {
+          from++;
+        }
+        from++;
+      }
+      if (from >= m_End - position) {
+        return null;
+      }
+
+      // complete the last line
+      end = (int) (m_End - position) - 1;
+      while (true) {
+        while ((end < length) && (buf[end] != '\n')) {
+          end++;
+        }
+        if (end < length) {
+          end++;
+          break;
+        }
+        if (length < buf.length) {
+          break;
+        }
+        buf = Arrays.copyOf(buf, buf.length + Math.max(8192, buf.length / 4));
+        read = read(buf, length, position + length);
+        if (read == 0) {
+          break;
+        }
+        length += read;
+      }
+
+      return Charset.defaultCharset().decode(
+        ByteBuffer.wrap(buf, from, end - from));
+    }
+
+    /**
+     * Converts a value read from the file.
+     *
+     * @param index the index of the attribute
+     * @param value the value
+     * @param chunk the chunk to add new labels to
+     * @return the value in internal format
+     * @throws Exception if the value cannot be converted
+     */
+    protected double convert(int index, String value, Chunk chunk)
+      throws Exception {
+      Attribute att;
+      Integer label;
+
+      if (value.equals(m_MissingValue) || (value.trim().length() == 0)) {
+        return Utils.missingValue();
+      }
+
+      att = m_structure.attribute(index);
+      switch (att.type()) {
+      case Attribute.NUMERIC:
+        try {
+          return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+          throw new Exception("Was expecting a number for attribute "
+            + att.name() + " but read " + value + " instead. Try increasing "
+            + "the sample size or forcing the type of the attribute.");
+        }
+
+      case Attribute.DATE:
+        try {
+          return m_Formats[index].parse(value).getTime();
+        } catch (ParseException e) {
+          throw new Exception("Unable to parse date value " + value
+            + " using date format " + att.getDateFormat()
+            + " for date attribute " + att);
+        }
+
+      default:
+        if (att.isNominal()) {
+          label = m_Known.get(index).get(value);
+          if (label != null) {
+            return label;
+          }
+        }
+        label = m_Added.get(index).get(value);
+        if (label == null) {
+          label = m_Added.get(index).size();
+          m_Added.get(index).put(value, label);
+          if (chunk.m_Labels.get(index) == null) {
+            chunk.m_Labels.set(index, new ArrayList<String>());
+          }
+          chunk.m_Labels.get(index).add(value);
+        }
+        return -(label + 1);
+      }
+    }
+
+    /**
+     * Parses the lines of the range.
+     *
+     * @return the parsed rows
+     * @throws Exception if reading fails
+     */
+    @Override
+    public Chunk call() throws Exception {
+      Chunk result;
+      CharBuffer chars;
+      StreamTokenizer tokenizer;
+      double[] values;
+      boolean first;
+      boolean wasSep;
+      int numAtts;
+      int line;
+      int i;
+
+      numAtts = m_structure.numAttributes();
+      result = new Chunk(numAtts);
+      m_Known = new ArrayList<Map<String, Integer>>();
+      m_Added = new ArrayList<Map<String, Integer>>();
+      m_Formats = new SimpleDateFormat[numAtts];
+      for (i = 0; i < numAtts; i++) {
+        Attribute att = m_structure.attribute(i);
+        Map<String, Integer> known = new HashMap<String, Integer>();
+        if (att.isNominal()) {
+          for (int n = 0; n < att.numValues(); n++) {
+            known.put(att.value(n), n);
+          }
+        }
+        if (att.isDate()) {
+          m_Formats[i] = new SimpleDateFormat(att.getDateFormat());
+          m_Formats[i].setLenient(false);
+        }
+        m_Known.add(known);
+        m_Added.add(new HashMap<String, Integer>());
+      }
+
+      chars = readLines();
+      if (chars == null) {
+        return result;
+      }
+      tokenizer = new StreamTokenizer(new CharArrayReader(chars.array(),
+        chars.arrayOffset() + chars.position(), chars.remaining()));
+      initTokenizer(tokenizer);
+      tokenizer.ordinaryChar(m_FieldSeparator.charAt(0));
+
+      while (true) {
+        StreamTokenizerUtils.getFirstToken(tokenizer);
+        if (tokenizer.ttype == StreamTokenizer.TT_EOF) {
+          break;
+        }
+        line = tokenizer.lineno();
+
+        values = new double[numAtts];
+        first = true;
+        i = 0;
+        try {
+          while ((tokenizer.ttype != StreamTokenizer.TT_EOL)
+            && (tokenizer.ttype != StreamTokenizer.TT_EOF)) {
+            if (!first) {
+              StreamTokenizerUtils.getToken(tokenizer);
+            }
+            if ((tokenizer.ttype == m_FieldSeparator.charAt(0))
+              || (tokenizer.ttype == StreamTokenizer.TT_EOL)
+              || (tokenizer.ttype == StreamTokenizer.TT_EOF)) {
+              if (i < numAtts) {
+                values[i] = Utils.missingValue();
+              }
+              wasSep = true;
+            } else {
+              if (i < numAtts) {
+                values[i] = convert(i, tokenizer.sval, result);
+              }
+              wasSep = false;
+            }
+            if (!wasSep) {
+              StreamTokenizerUtils.getToken(tokenizer);
+            }
+            first = false;
+            i++;
+          }
+          if (i != numAtts) {
+            throw new Exception("wrong number of values. Read " + i
+              + ", expected " + numAtts);
+          }
+        } catch (Exception e) {
+          result.m_Error = e.getMessage();
+          result.m_ErrorLine = line;
+          return result;
+        }
+
+        result.m_Rows.add(values);
+      }
+      result.m_NumLines = tokenizer.lineno() - 1;
+
+      return result;
+    }
+  }
+
+  /**
+   * Merges parsed chunks in order into the data set, resolving the labels
+   * each chunk collected.
+   */
+  protected class ChunkMerger {
+
+    /** the data */
+    protected Instances m_Data;
+
+    /** the nominal labels not in the structure, per attribute */
+    protected List<Map<String, Integer>> m_NewLabels;
+
+    /** the number of lines before the current chunk */
+    protected int m_Lines;
+
+    /**
+     * Initializes the merger.
+     *
+     * @param lines the number of lines before the first chunk
+     */
+    protected ChunkMerger(int lines) {
+      m_Data = new Instances(m_structure, 0);
+      m_NewLabels = new ArrayList<Map<String, Integer>>();
+      for (int i = 0; i < m_structure.numAttributes(); i++) {
+        m_NewLabels.add(new LinkedHashMap<String, Integer>());
+      }
+      m_Lines = lines;
+    }
+
+    /**
+     * Adds the rows of the next chunk.
+     *
+     * @param chunk the chunk
+     * @throws IOException if the chunk could not be parsed
+     */
+    public void merge(Chunk chunk) throws IOException {
+      int[][] map;
+      List<String> labels;
+      Attribute att;
+      Integer index;
+      double value;
+
+      if (chunk.m_Error != null) {
+        throw new IOException(chunk.m_Error + " (line: "
+          + (m_Lines + chunk.m_ErrorLine) + ")");
+      }
+
+      // the global indices of the chunk's labels
+      map = new int[m_Data.numAttributes()][];
+      for (int i = 0; i < map.length; i++) {
+        labels = chunk.m_Labels.get(i);
+        if (labels == null) {
+          continue;
+        }
+        att = m_Data.attribute(i);
+        map[i] = new int[labels.size()];
+        for (int n = 0; n < map[i].length; n++) {
+          if (att.isString()) {
+            map[i][n] = att.addStringValue(labels.get(n));
+          } else {
+            index = m_NewLabels.get(i).get(labels.get(n));
+            if (index == null) {
+              index = att.numValues() + m_NewLabels.get(i).size();
+              m_NewLabels.get(i).put(labels.get(n), index);
+            }
+            map[i][n] = index;
+          }
+        }
+      }
+
+      for (double[] values : chunk.m_Rows) {
+        for (int i = 0; i < map.length; i++) {
+          value = values[i];
+          if ((map[i] != null) && (value < 0)) {
+            values[i] = map[i][(int) -value - 1];
+          }
+        }
+        m_Data.add(new DenseInstance(1.0, values));
+      }
+      m_Lines += chunk.m_NumLines;
+    }
+
+    /**
+     * Returns the merged data, with the nominal labels not contained in the
+     * sample appended to the attributes.
+     *
+     * @return the data
+     */
+    public Instances getData() {
+      ArrayList<Attribute> atts;
+      ArrayList<String> labels;
+      Attribute att;
+      Instances result;
+      boolean extended;
+
+      extended = false;
+      atts = new ArrayList<Attribute>();
+      for (int i = 0; i < m_Data.numAttributes(); i++) {
+        att = m_Data.attribute(i);
+        if (m_NewLabels.get(i).size() > 0) {
+          labels = new ArrayList<String>();
+          for (int n = 0; n < att.numValues(); n++) {
+            labels.add(att.value(n));
+          }
+          labels.addAll(m_NewLabels.get(i).keySet());
+          atts.add(new Attribute(att.name(), labels));
+          extended = true;
+        } else {
+          atts.add((Attribute) att.copy());
+        }
+      }
+      if (!extended) {
+        return m_Data;
+      }
+
+      result = new Instances(m_Data.relationName(), atts, m_Data.numInstances());
+      for (int i = 0; i < m_Data.numInstances(); i++) {
+        result.add(new DenseInstance(1.0, m_Data.instance(i).toDoubleArray()));
+      }
+
+      return result;
+    }
+  }
+
   @Override
   public void reset() throws IOException {
     m_structure = null;
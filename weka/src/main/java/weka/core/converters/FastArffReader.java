@@ -0,0 +1,1581 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    FastArffReader.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.RevisionUtils;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader.ArffReader;
+
+/**
+ * ArffReader that parses the data section without a
+ * <code>java.io.StreamTokenizer</code>. The header is still read by the
+ * tokenizer of the superclass; the data rows are then tokenized directly in a
+ * large character buffer. Numbers are converted to doubles straight from the
+ * characters and nominal values are looked up in per-attribute hash tables
+ * keyed on the characters, so no <code>String</code> objects are created for
+ * numeric and nominal values. The tokenization rules are the same as the ones
+ * used by <code>ArffReader</code>, so the same instances are produced.
+ * <p/>
+ *
+ * When reading all remaining instances via
+ * <code>readInstances(Instances, Instances)</code>, the rows can additionally
+ * be parsed in parallel, in chunks of whole lines, if more than one thread is
+ * used and the data only has numeric and nominal attributes. The order of the
+ * instances is preserved.
+ * <p/>
+ *
+ * Since the reader buffers ahead, it must be the only consumer of the given
+ * <code>Reader</code>.
+ *
+ * @version $Revision$
+ * @see ArffReader
+ */
+public class FastArffReader extends ArffReader {
+
+  /** the initial size of the character buffer */
+  protected static final int BUFFER_SIZE = 65536;
+
+  /** the number of characters per chunk when parsing in parallel */
+  protected static final int CHUNK_SIZE = 1 << 20;
+
+  /** character type: part of a word */
+  protected static final byte CT_WORD = 0;
+
+  /** character type: whitespace or field separator */
+  protected static final byte CT_WHITESPACE = 1;
+
+  /** character type: enclosure */
+  protected static final byte CT_QUOTE = 2;
+
+  /** character type: start of a comment */
+  protected static final byte CT_COMMENT = 3;
+
+  /** character type: opening brace */
+  protected static final byte CT_LBRACE = 4;
+
+  /** character type: closing brace */
+  protected static final byte CT_RBRACE = 5;
+
+  /** token type: end of file */
+  protected static final int TOKEN_EOF = 0;
+
+  /** token type: end of line */
+  protected static final int TOKEN_EOL = 1;
+
+  /** token type: word */
+  protected static final int TOKEN_WORD = 2;
+
+  /** token type: quoted string */
+  protected static final int TOKEN_QUOTED = 3;
+
+  /** token type: opening brace */
+  protected static final int TOKEN_LBRACE = 4;
+
+  /** token type: closing brace */
+  protected static final int TOKEN_RBRACE = 5;
+
+  /** exactly representable powers of ten */
+  protected static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4,
+    1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17,
+    1e18, 1e19, 1e20, 1e21, 1e22 };
+
+  /** the types of the characters 0-255, all others are word characters */
+  protected byte[] m_CharTypes;
+
+  /** the parser for the data section */
+  protected Parser m_Parser;
+
+  /** the dataset the nominal lookup tables were built for */
+  protected Instances m_LookupStructure;
+
+  /** the lookup tables for the nominal attributes (null for other types) */
+  protected NominalLookup[] m_Lookups;
+
+  /** the number of threads to use for reading all instances */
+  protected int m_NumThreads = 1;
+
+  /**
+   * Reader that hands out the characters of the underlying reader to the
+   * tokenizer that reads the header, while keeping them in a buffer that is
+   * taken over by the parser for the data section afterwards.
+   */
+  protected static class HeaderInput extends Reader {
+
+    /** the underlying reader */
+    protected Reader m_In;
+
+    /** the buffer */
+    protected char[] m_Buf = new char[BUFFER_SIZE];
+
+    /** the position of the next character in the buffer */
+    protected int m_Pos;
+
+    /** the number of characters in the buffer */
+    protected int m_Limit;
+
+    /** whether the end of the underlying reader has been reached */
+    protected boolean m_EOF;
+
+    /** the value returned by the last call to read() */
+    protected int m_LastRead = -1;
+
+    /**
+     * Initializes the input.
+     *
+     * @param in the underlying reader
+     */
+    protected HeaderInput(Reader in) {
+      m_In = in;
+    }
+
+    /**
+     * Refills the buffer.
+     *
+     * @return false if the end of the underlying reader has been reached
+     * @throws IOException if reading fails
+     */
+    protected boolean fill() throws IOException {
+      int read;
+
+      if (m_EOF) {
+        return false;
+      }
+      m_Pos = 0;
+      m_Limit = 0;
+      read = m_In.read(m_Buf, 0, m_Buf.length);
+      if (read < 0) {
+        m_EOF = true;
+        return false;
+      }
+      m_Limit = read;
+      return true;
+    }
+
+    /**
+     * Reads a single character.
+     *
+     * @return the character or -1 at the end of the stream
+     * @throws IOException if reading fails
+     */
+    @Override
+    public int read() throws IOException {
+      while (m_Pos == m_Limit) {
+        if (!fill()) {
+          m_LastRead = -1;
+          return -1;
+        }
+      }
+      m_LastRead = m_Buf[m_Pos++];
+      return m_LastRead;
+    }
+
+    /**
+     * Reads characters into a portion of an array.
+     *
+     * @param cbuf the destination buffer
+     * @param off the offset at which to start storing characters
+     * @param len the maximum number of characters to read
+     * @return the number of characters read, or -1 at the end of the stream
+     * @throws IOException if reading fails
+     */
+    @Override
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int count;
+
+      if (len == 0) {
+        return 0;
+      }
+      while (m_Pos == m_Limit) {
+        if (!fill()) {
+          m_LastRead = -1;
+          return -1;
+        }
+      }
+      count = Math.min(len, m_Limit - m_Pos);
+      System.arraycopy(m_Buf, m_Pos, cbuf, off, count);
+      m_Pos += count;
+      m_LastRead = cbuf[off + count - 1];
+      return count;
+    }
+
+    /**
+     * Closes the underlying reader.
+     *
+     * @throws IOException if closing fails
+     */
+    @Override
+    public void close() throws IOException {
+      m_In.close();
+    }
+  }
+
+  /**
+   * Hash table mapping the labels of a nominal attribute, given as a range of
+   * characters, to their indices.
+   */
+  protected static class NominalLookup {
+
+    /** the attribute the table was built for */
+    protected Attribute m_Attribute;
+
+    /** the labels */
+    protected String[] m_Labels;
+
+    /** the hash codes of the labels */
+    protected int[] m_Hashes;
+
+    /** the slots, holding label index + 1 (0 for empty slots) */
+    protected int[] m_Table;
+
+    /** the mask for computing slots */
+    protected int m_Mask;
+
+    /**
+     * Builds the table for the given nominal attribute.
+     *
+     * @param att the attribute
+     */
+    protected NominalLookup(Attribute att) {
+      int size;
+      int slot;
+
+      m_Attribute = att;
+      m_Labels = new String[att.numValues()];
+      m_Hashes = new int[m_Labels.length];
+      size = Integer.highestOneBit(Math.max(2 * m_Labels.length, 2)) * 2;
+      m_Table = new int[size];
+      m_Mask = size - 1;
+      for (int i = 0; i < m_Labels.length; i++) {
+        m_Labels[i] = att.value(i);
+        m_Hashes[i] = m_Labels[i].hashCode();
+        slot = spread(m_Hashes[i]) & m_Mask;
+        while (m_Table[slot] != 0) {
+          slot = (slot + 1) & m_Mask;
+        }
+        m_Table[slot] = i + 1;
+      }
+    }
+
+    /**
+     * Spreads the bits of a hash code.
+     *
+     * @param h the hash code
+     * @return the spread hash code
+     */
+    protected static int spread(int h) {
+      return h ^ (h >>> 16);
+    }
+
+    /**
+     * Returns whether the table is still valid for the given attribute.
+     *
+     * @param att the attribute
+     * @return true if the table was built for the attribute
+     */
+    protected boolean isValidFor(Attribute att) {
+      return (m_Attribute == att) && (att.numValues() == m_Labels.length);
+    }
+
+    /**
+     * Returns the index of the label given as a range of characters.
+     *
+     * @param buf the characters
+     * @param off the start of the label
+     * @param len the length of the label
+     * @return the index, -1 if the label is not declared
+     */
+    protected int indexOf(char[] buf, int off, int len) {
+      int h;
+      int slot;
+      int index;
+      String label;
+      int i;
+
+      h = 0;
+      for (i = off; i < off + len; i++) {
+        h = 31 * h + buf[i];
+      }
+      slot = spread(h) & m_Mask;
+      while (m_Table[slot] != 0) {
+        index = m_Table[slot] - 1;
+        if (m_Hashes[index] == h) {
+          label = m_Labels[index];
+          if (label.length() == len) {
+            for (i = 0; i < len; i++) {
+              if (label.charAt(i) != buf[off + i]) {
+                break;
+              }
+            }
+            if (i == len) {
+              return index;
+            }
+          }
+        }
+        slot = (slot + 1) & m_Mask;
+      }
+      return -1;
+    }
+  }
+
+  /**
+   * Tokenizes and parses data rows held in a character buffer. The parser
+   * either refills the buffer from a reader, making sure that the current
+   * line is always completely in the buffer, or works on a fixed chunk of
+   * whole lines.
+   */
+  protected class Parser {
+
+    /** the reader to refill the buffer from, null for a fixed chunk */
+    protected Reader m_In;
+
+    /** the buffer */
+    protected char[] m_Buf;
+
+    /** the current position in the buffer */
+    protected int m_Pos;
+
+    /** the number of characters in the buffer */
+    protected int m_Limit;
+
+    /** whether the end of the reader has been reached */
+    protected boolean m_EOF;
+
+    /** the position of the end of the current line, if known */
+    protected int m_LineEnd = -1;
+
+    /** the current line number */
+    protected int m_Line;
+
+    /** the type of the current token */
+    protected int m_Type;
+
+    /** the characters of the current token */
+    protected char[] m_TokenBuf;
+
+    /** the start of the current token */
+    protected int m_TokenStart;
+
+    /** the length of the current token */
+    protected int m_TokenLength;
+
+    /** buffer for quoted strings containing escapes */
+    protected char[] m_Scratch = new char[64];
+
+    /** buffer of values for sparse instances */
+    protected double[] m_Values;
+
+    /** buffer of indices for sparse instances */
+    protected int[] m_Indices;
+
+    /**
+     * Initializes a parser that refills the buffer from the given reader.
+     *
+     * @param in the reader
+     * @param buf the buffer, possibly already holding characters
+     * @param pos the position of the next character in the buffer
+     * @param limit the number of characters in the buffer
+     * @param eof whether the end of the reader has been reached
+     * @param line the current line number
+     */
+    protected Parser(Reader in, char[] buf, int pos, int limit, boolean eof,
+      int line) {
+      m_In = in;
+      m_Buf = buf;
+      m_Pos = pos;
+      m_Limit = limit;
+      m_EOF = eof;
+      m_Line = line;
+    }
+
+    /**
+     * Initializes a parser for a fixed chunk of whole lines.
+     *
+     * @param chunk the chunk
+     * @param line the line number of the first line in the chunk
+     */
+    protected Parser(char[] chunk, int line) {
+      this(null, chunk, 0, chunk.length, true, line);
+    }
+
+    /**
+     * Compacts the buffer, grows it if it is full and reads more characters.
+     *
+     * @return the number of positions the content was shifted to the left
+     * @throws IOException if reading fails
+     */
+    protected int fill() throws IOException {
+      int shift;
+      int read;
+
+      shift = m_Pos;
+      if (shift > 0) {
+        System.arraycopy(m_Buf, shift, m_Buf, 0, m_Limit - shift);
+        m_Limit -= shift;
+        m_Pos = 0;
+        m_LineEnd -= shift;
+      }
+      if (m_Limit == m_Buf.length) {
+        m_Buf = Arrays.copyOf(m_Buf, 2 * m_Buf.length);
+      }
+      read = m_In.read(m_Buf, m_Limit, m_Buf.length - m_Limit);
+      if (read < 0) {
+        m_EOF = true;
+      } else {
+        m_Limit += read;
+      }
+
+      return shift;
+    }
+
+    /**
+     * Makes sure that the current line is completely in the buffer, including
+     * the character following a carriage return.
+     *
+     * @throws IOException if reading fails
+     */
+    protected void ensureLine() throws IOException {
+      char[] buf;
+      int limit;
+      int i;
+      char c;
+
+      if ((m_In == null) || (m_LineEnd >= m_Pos)) {
+        return;
+      }
+
+      i = m_Pos;
+      while (true) {
+        buf = m_Buf;
+        limit = m_Limit;
+        while (i < limit) {
+          c = buf[i];
+          if ((c == '\n') || ((c == '\r') && ((i + 1 < limit) || m_EOF))) {
+            m_LineEnd = i;
+            return;
+          }
+          if (c == '\r') {
+            break;
+          }
+          i++;
+        }
+        if (m_EOF) {
+          m_LineEnd = m_Limit;
+          return;
+        }
+        i -= fill();
+      }
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return the type of the token
+     * @throws IOException if reading fails
+     */
+    protected int nextToken() throws IOException {
+      char[] buf;
+      byte[] types;
+      int pos;
+      int limit;
+      char c;
+      int type;
+
+      buf = m_Buf;
+      types = m_CharTypes;
+      pos = m_Pos;
+      limit = m_Limit;
+
+      while (pos < limit) {
+        c = buf[pos];
+        if (c == '\n') {
+          m_Pos = pos + 1;
+          m_Line++;
+          ensureLine();
+          return m_Type = TOKEN_EOL;
+        }
+        if (c == '\r') {
+          pos++;
+          if ((pos < limit) && (buf[pos] == '\n')) {
+            pos++;
+          }
+          m_Pos = pos;
+          m_Line++;
+          ensureLine();
+          return m_Type = TOKEN_EOL;
+        }
+
+        type = (c < 256) ? types[c] : CT_WORD;
+        switch (type) {
+        case CT_WHITESPACE:
+          pos++;
+          break;
+
+        case CT_COMMENT:
+          while ((pos < limit) && (buf[pos] != '\n') && (buf[pos] != '\r')) {
+            pos++;
+          }
+          break;
+
+        case CT_LBRACE:
+          m_Pos = pos + 1;
+          m_TokenBuf = buf;
+          m_TokenStart = pos;
+          m_TokenLength = 1;
+          return m_Type = TOKEN_LBRACE;
+
+        case CT_RBRACE:
+          m_Pos = pos + 1;
+          m_TokenBuf = buf;
+          m_TokenStart = pos;
+          m_TokenLength = 1;
+          return m_Type = TOKEN_RBRACE;
+
+        case CT_QUOTE:
+          m_Pos = pos;
+          readQuoted();
+          return m_Type = TOKEN_QUOTED;
+
+        default:
+          m_TokenBuf = buf;
+          m_TokenStart = pos;
+          pos++;
+          while (pos < limit) {
+            c = buf[pos];
+            if ((c < 256) && (types[c] != CT_WORD)) {
+              break;
+            }
+            pos++;
+          }
+          m_TokenLength = pos - m_TokenStart;
+          m_Pos = pos;
+          return m_Type = TOKEN_WORD;
+        }
+      }
+
+      m_Pos = pos;
+      return m_Type = TOKEN_EOF;
+    }
+
+    /**
+     * Reads a quoted string, processing escape sequences the same way as
+     * <code>java.io.StreamTokenizer</code>. The string ends at the matching
+     * quote or before the end of the line.
+     */
+    protected void readQuoted() {
+      char[] buf;
+      int limit;
+      int quote;
+      int start;
+      int i;
+      int c;
+      int c2;
+      int d;
+      int first;
+      int n;
+
+      buf = m_Buf;
+      limit = m_Limit;
+      quote = buf[m_Pos];
+      start = m_Pos + 1;
+
+      // fast path: no escapes
+      i = start;
+      while (i < limit) {
+        c = buf[i];
+        if ((c == quote) || (c == '\\') || (c == '\n') || (c == '\r')) {
+          break;
+        }
+        i++;
+      }
+      if ((i == limit) || (buf[i] != '\\')) {
+        m_TokenBuf = buf;
+        m_TokenStart = start;
+        m_TokenLength = i - start;
+        m_Pos = ((i < limit) && (buf[i] == quote)) ? i + 1 : i;
+        return;
+      }
+
+      // slow path
+      i = start;
+      n = 0;
+      d = (i < limit) ? buf[i++] : -1;
+      while ((d >= 0) && (d != quote) && (d != '\n') && (d != '\r')) {
+        if (d == '\\') {
+          c = (i < limit) ? buf[i++] : -1;
+          first = c;
+          if ((c >= '0') && (c <= '7')) {
+            c = c - '0';
+            c2 = (i < limit) ? buf[i++] : -1;
+            if (('0' <= c2) && (c2 <= '7')) {
+              c = (c << 3) + (c2 - '0');
+              c2 = (i < limit) ? buf[i++] : -1;
+              if (('0' <= c2) && (c2 <= '7') && (first <= '3')) {
+                c = (c << 3) + (c2 - '0');
+                d = (i < limit) ? buf[i++] : -1;
+              } else {
+                d = c2;
+              }
+            } else {
+              d = c2;
+            }
+          } else {
+            switch (c) {
+            case 'a':
+              c = 0x7;
+              break;
+            case 'b':
+              c = '\b';
+              break;
+            case 'f':
+              c = 0xC;
+              break;
+            case 'n':
+              c = '\n';
+              break;
+            case 'r':
+              c = '\r';
+              break;
+            case 't':
+              c = '\t';
+              break;
+            case 'v':
+              c = 0xB;
+              break;
+            }
+            d = (i < limit) ? buf[i++] : -1;
+          }
+        } else {
+          c = d;
+          d = (i < limit) ? buf[i++] : -1;
+        }
+        if (n == m_Scratch.length) {
+          m_Scratch = Arrays.copyOf(m_Scratch, 2 * n);
+        }
+        m_Scratch[n++] = (char) c;
+      }
+      // the character that ended the string is read again, unless it is the
+      // closing quote
+      if ((d >= 0) && (d != quote)) {
+        i--;
+      }
+
+      m_TokenBuf = m_Scratch;
+      m_TokenStart = 0;
+      m_TokenLength = n;
+      m_Pos = i;
+    }
+
+    /**
+     * Returns whether the current token denotes a missing value.
+     *
+     * @return true if the token is an unquoted "?"
+     */
+    protected boolean isMissing() {
+      return (m_Type == TOKEN_WORD) && (m_TokenLength == 1)
+        && (m_TokenBuf[m_TokenStart] == '?');
+    }
+
+    /**
+     * Returns whether the current token is a word or a quoted string.
+     *
+     * @return true if the token can be a value
+     */
+    protected boolean isValue() {
+      return (m_Type == TOKEN_WORD) || (m_Type == TOKEN_QUOTED);
+    }
+
+    /**
+     * Returns the current token as string.
+     *
+     * @return the token
+     */
+    protected String tokenString() {
+      return new String(m_TokenBuf, m_TokenStart, m_TokenLength);
+    }
+
+    /**
+     * Returns a description of the current token, in the format used by
+     * <code>java.io.StreamTokenizer</code>.
+     *
+     * @return the description
+     */
+    protected String describeToken() {
+      String result;
+
+      switch (m_Type) {
+      case TOKEN_EOF:
+        result = "EOF";
+        break;
+      case TOKEN_EOL:
+        result = "EOL";
+        break;
+      case TOKEN_WORD:
+        result = tokenString();
+        break;
+      case TOKEN_QUOTED:
+        result = "\"" + tokenString() + "\"";
+        break;
+      default:
+        result = "'" + tokenString() + "'";
+      }
+
+      return "Token[" + result + "]";
+    }
+
+    /**
+     * Throws an error message with line number and last token read.
+     *
+     * @param msg the error message
+     * @throws IOException containing the error message
+     */
+    protected void error(String msg) throws IOException {
+      int line;
+
+      line = m_Line;
+      if (m_Lines > 0) {
+        line = m_Lines + m_Line - 1;
+      }
+      throw new IOException(msg + ", read " + describeToken() + ", line "
+        + line);
+    }
+
+    /**
+     * Reads the next token, checking for a premature end of line or file.
+     *
+     * @throws IOException if the line or file ends prematurely
+     */
+    protected void nextValueToken() throws IOException {
+      nextToken();
+      if (m_Type == TOKEN_EOL) {
+        error("premature end of line");
+      }
+      if (m_Type == TOKEN_EOF) {
+        error("premature end of file");
+      }
+    }
+
+    /**
+     * Converts the current token into a value of the given attribute.
+     *
+     * @param structure the dataset header information
+     * @param attIndex the index of the attribute
+     * @param sparse whether a sparse instance is being read
+     * @return the value in internal floating-point format
+     * @throws IOException if the token is not a valid value
+     */
+    protected double parseValue(Instances structure, int attIndex,
+      boolean sparse) throws IOException {
+      Attribute att;
+      String str;
+      double result;
+
+      if (isMissing()) {
+        return Utils.missingValue();
+      }
+      if (!isValue()) {
+        error("not a valid value");
+      }
+
+      result = 0;
+      att = structure.attribute(attIndex);
+      switch (att.type()) {
+      case Attribute.NOMINAL:
+        result = m_Lookups[attIndex].indexOf(m_TokenBuf, m_TokenStart,
+          m_TokenLength);
+        if (result == -1) {
+          error("nominal value not declared in header");
+        }
+        break;
+
+      case Attribute.NUMERIC:
+        try {
+          result = parseDouble(m_TokenBuf, m_TokenStart, m_TokenLength);
+        } catch (NumberFormatException e) {
+          error("number expected");
+        }
+        break;
+
+      case Attribute.STRING:
+        str = tokenString();
+        if (m_batchMode || m_retainStringValues) {
+          result = att.addStringValue(str);
+        } else if (sparse) {
+          att.addStringValue(str);
+        } else {
+          att.setStringValue(str);
+        }
+        break;
+
+      case Attribute.DATE:
+        str = tokenString();
+        try {
+          result = att.parseDate(str);
+        } catch (ParseException e) {
+          error("unparseable date: " + str);
+        }
+        break;
+
+      case Attribute.RELATIONAL:
+        try {
+          ArffReader arff = new ArffReader(new StringReader(tokenString()),
+            att.relation(), 0);
+          result = att.addRelation(arff.getData());
+        } catch (Exception e) {
+          throw new IOException(e.toString() + " of line " + getLineNo());
+        }
+        break;
+
+      default:
+        error("unknown attribute type in column " + attIndex);
+      }
+
+      return result;
+    }
+
+    /**
+     * Reads the optional instance weight and the end of the line.
+     *
+     * @return the weight, 1 if none was given
+     * @throws IOException if the weight is malformed
+     */
+    protected double readWeight() throws IOException {
+      double weight;
+
+      nextToken();
+      if ((m_Type != TOKEN_LBRACE)) {
+        return 1.0;
+      }
+      nextToken();
+      if (!isValue()) {
+        return 1.0;
+      }
+      try {
+        weight = parseDouble(m_TokenBuf, m_TokenStart, m_TokenLength);
+      } catch (NumberFormatException e) {
+        // quietly ignore
+        return 1.0;
+      }
+      nextToken();
+      if (m_Type != TOKEN_RBRACE) {
+        error("Problem reading instance weight: } expected");
+      }
+      nextToken();
+      if ((m_Type != TOKEN_EOL) && (m_Type != TOKEN_EOF)) {
+        error("end of line expected");
+      }
+
+      return weight;
+    }
+
+    /**
+     * Reads a single instance.
+     *
+     * @param structure the dataset header information, will get updated in
+     *          case of string or relational attributes
+     * @param flag if method should test for carriage return after each
+     *          instance
+     * @return null if end of file has been reached
+     * @throws IOException if the information is not read successfully
+     */
+    protected Instance readInstance(Instances structure, boolean flag)
+      throws IOException {
+
+      ensureLine();
+      do {
+        nextToken();
+      } while (m_Type == TOKEN_EOL);
+      if (m_Type == TOKEN_EOF) {
+        return null;
+      }
+
+      if (m_Type == TOKEN_LBRACE) {
+        return readInstanceSparse(structure, flag);
+      } else {
+        return readInstanceFull(structure, flag);
+      }
+    }
+
+    /**
+     * Reads the values of a dense instance, starting with the current token.
+     *
+     * @param structure the dataset header information
+     * @param flag if method should test for carriage return after the
+     *          instance
+     * @return the instance
+     * @throws IOException if the information is not read successfully
+     */
+    protected Instance readInstanceFull(Instances structure, boolean flag)
+      throws IOException {
+      double[] values;
+      double weight;
+      Instance inst;
+
+      values = new double[structure.numAttributes()];
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          nextValueToken();
+        }
+        values[i] = parseValue(structure, i, false);
+      }
+
+      weight = flag ? readWeight() : 1.0;
+      inst = new DenseInstance(weight, values);
+      inst.setDataset(structure);
+
+      return inst;
+    }
+
+    /**
+     * Reads the index/value pairs of a sparse instance, after the opening
+     * brace.
+     *
+     * @param structure the dataset header information
+     * @param flag if method should test for carriage return after the
+     *          instance
+     * @return the instance
+     * @throws IOException if the information is not read successfully
+     */
+    protected Instance readInstanceSparse(Instances structure, boolean flag)
+      throws IOException {
+      int numValues;
+      int maxIndex;
+      int index;
+      double weight;
+      Instance inst;
+
+      if ((m_Values == null) || (m_Values.length != structure.numAttributes())) {
+        m_Values = new double[structure.numAttributes()];
+        m_Indices = new int[structure.numAttributes()];
+      }
+
+      // if reading incrementally, and we have string values, make sure that
+      // all string attributes are initialized
+      if (!m_batchMode && !m_retainStringValues && m_stringAttIndices != null) {
+        for (int i = 0; i < m_stringAttIndices.size(); i++) {
+          structure.attribute(m_stringAttIndices.get(i)).setStringValue(null);
+        }
+      }
+
+      numValues = 0;
+      maxIndex = -1;
+      while (true) {
+        nextValueToken();
+        if (m_Type == TOKEN_RBRACE) {
+          break;
+        }
+
+        index = -1;
+        try {
+          if (!isValue()) {
+            throw new NumberFormatException();
+          }
+          index = parseInt(m_TokenBuf, m_TokenStart, m_TokenLength);
+        } catch (NumberFormatException e) {
+          error("index number expected");
+        }
+        if (index <= maxIndex) {
+          error("indices have to be ordered");
+        }
+        if ((index < 0) || (index >= structure.numAttributes())) {
+          error("index out of bounds");
+        }
+        maxIndex = index;
+
+        nextValueToken();
+        m_Indices[numValues] = index;
+        m_Values[numValues] = parseValue(structure, index, true);
+        numValues++;
+      }
+
+      weight = flag ? readWeight() : 1.0;
+      inst = new SparseInstance(weight, Arrays.copyOf(m_Values, numValues),
+        Arrays.copyOf(m_Indices, numValues), structure.numAttributes());
+      inst.setDataset(structure);
+
+      return inst;
+    }
+
+    /**
+     * Returns the next chunk of whole lines, of roughly the given size.
+     *
+     * @param size the minimum number of characters
+     * @return the chunk, null if the end of the file has been reached
+     * @throws IOException if reading fails
+     */
+    protected char[] nextChunk(int size) throws IOException {
+      char[] result;
+      int end;
+      int i;
+
+      while (true) {
+        if ((m_Limit - m_Pos >= size) || m_EOF) {
+          if (m_EOF) {
+            if (m_Pos >= m_Limit) {
+              return null;
+            }
+            end = m_Limit - 1;
+          } else {
+            end = -1;
+            for (i = m_Limit - 1; i >= m_Pos; i--) {
+              if (m_Buf[i] == '\n') {
+                end = i;
+                break;
+              }
+            }
+          }
+          if (end >= m_Pos) {
+            result = Arrays.copyOfRange(m_Buf, m_Pos, end + 1);
+            for (i = 0; i < result.length; i++) {
+              if ((result[i] == '\n')
+                || ((result[i] == '\r') && ((i + 1 == result.length) || (result[i + 1] != '\n')))) {
+                m_Line++;
+              }
+            }
+            m_Pos = end + 1;
+            m_LineEnd = -1;
+            return result;
+          }
+          // no complete line in the buffer yet
+          size = m_Limit - m_Pos + 1;
+        }
+        fill();
+      }
+    }
+  }
+
+  /**
+   * Reads the data completely from the reader. The data can be accessed via
+   * the <code>getData()</code> method.
+   *
+   * @param reader the reader to use
+   * @throws IOException if something goes wrong
+   * @see #getData()
+   */
+  public FastArffReader(Reader reader) throws IOException {
+    this(new HeaderInput(reader), 1000, true);
+
+    readInstances(m_Data, m_Data);
+    compactify();
+  }
+
+  /**
+   * Reads only the header and reserves the specified space for instances.
+   * Further instances can be read via <code>readInstance()</code>.
+   *
+   * @param reader the reader to use
+   * @param capacity the capacity of the new dataset
+   * @param batch true if reading in batch mode
+   * @throws IOException if something goes wrong
+   * @see #getStructure()
+   * @see #readInstance(Instances)
+   */
+  public FastArffReader(Reader reader, int capacity, boolean batch)
+    throws IOException {
+    this(new HeaderInput(reader), capacity, batch);
+  }
+
+  /**
+   * Reads the header through the given input and takes over its buffer.
+   *
+   * @param input the input wrapping the reader
+   * @param capacity the capacity of the new dataset
+   * @param batch true if reading in batch mode
+   * @throws IOException if something goes wrong
+   */
+  protected FastArffReader(HeaderInput input, int capacity, boolean batch)
+    throws IOException {
+    super(input, capacity, batch);
+
+    initParser(input, true);
+  }
+
+  /**
+   * Initializes the reader without reading the header according to the
+   * specified template. The data must be read via the
+   * <code>readInstance()</code> method.
+   *
+   * @param reader the reader to use
+   * @param template the template header
+   * @param lines the lines read so far
+   * @param capacity the capacity of the new dataset
+   * @param batch true if the data is going to be read in batch mode
+   * @param fieldSepAndEnclosures an optional array of Strings containing the
+   *          field separator and enclosures to use instead of the defaults.
+   *          The first entry in the array is expected to be the single
+   *          character field separator to use; the remaining entries (if any)
+   *          are enclosure characters to use.
+   * @throws IOException if something goes wrong
+   * @see #getData()
+   */
+  public FastArffReader(Reader reader, Instances template, int lines,
+    int capacity, boolean batch, String... fieldSepAndEnclosures)
+    throws IOException {
+    this(new HeaderInput(reader), template, lines, capacity, batch,
+      fieldSepAndEnclosures);
+  }
+
+  /**
+   * Initializes the reader through the given input.
+   *
+   * @param input the input wrapping the reader
+   * @param template the template header
+   * @param lines the lines read so far
+   * @param capacity the capacity of the new dataset
+   * @param batch true if the data is going to be read in batch mode
+   * @param fieldSepAndEnclosures the field separator and enclosures
+   * @throws IOException if something goes wrong
+   */
+  protected FastArffReader(HeaderInput input, Instances template, int lines,
+    int capacity, boolean batch, String... fieldSepAndEnclosures)
+    throws IOException {
+    super(input, template, lines, capacity, batch, fieldSepAndEnclosures);
+
+    initParser(input, false);
+  }
+
+  /**
+   * Sets up the character types and the parser, which takes over the buffer
+   * of the input used for reading the header.
+   *
+   * @param input the input
+   * @param headerRead whether the header has been read through the input
+   */
+  protected void initParser(HeaderInput input, boolean headerRead) {
+    int pos;
+
+    m_CharTypes = new byte[256];
+    for (int i = 0; i <= ' '; i++) {
+      m_CharTypes[i] = CT_WHITESPACE;
+    }
+    if (m_fieldSeparator != null) {
+      if (m_fieldSeparator.charAt(0) < 256) {
+        m_CharTypes[m_fieldSeparator.charAt(0)] = CT_WHITESPACE;
+      }
+    } else {
+      m_CharTypes[','] = CT_WHITESPACE;
+    }
+    m_CharTypes['%'] = CT_COMMENT;
+    if (m_enclosures != null && m_enclosures.size() > 0) {
+      for (String e : m_enclosures) {
+        if (e.charAt(0) < 256) {
+          m_CharTypes[e.charAt(0)] = CT_QUOTE;
+        }
+      }
+    } else {
+      m_CharTypes['"'] = CT_QUOTE;
+      m_CharTypes['\''] = CT_QUOTE;
+    }
+    m_CharTypes['{'] = CT_LBRACE;
+    m_CharTypes['}'] = CT_RBRACE;
+
+    // the tokenizer has already consumed the character following the last
+    // token of the header, unless that token was a quoted string
+    pos = input.m_Pos;
+    if (headerRead && (input.m_LastRead >= 0) && (pos > 0)
+      && ((input.m_LastRead >= 256) || (m_CharTypes[input.m_LastRead] != CT_QUOTE))) {
+      pos--;
+    }
+
+    m_Parser = new Parser(input.m_In, input.m_Buf, pos, input.m_Limit,
+      input.m_EOF, m_Tokenizer.lineno());
+  }
+
+  /**
+   * Sets the number of threads to use when reading all instances via
+   * <code>readInstances(Instances, Instances)</code>.
+   *
+   * @param value the number of threads
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = value;
+  }
+
+  /**
+   * Returns the number of threads to use when reading all instances.
+   *
+   * @return the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
+  /**
+   * Makes sure the lookup tables for the nominal attributes match the given
+   * structure.
+   *
+   * @param structure the dataset header information
+   */
+  protected void prepare(Instances structure) {
+    Attribute att;
+
+    if ((m_Lookups == null) || (m_Lookups.length != structure.numAttributes())) {
+      m_Lookups = new NominalLookup[structure.numAttributes()];
+    } else if (structure == m_LookupStructure) {
+      return;
+    }
+    for (int i = 0; i < m_Lookups.length; i++) {
+      att = structure.attribute(i);
+      if (!att.isNominal()) {
+        m_Lookups[i] = null;
+      } else if ((m_Lookups[i] == null) || !m_Lookups[i].isValidFor(att)) {
+        m_Lookups[i] = new NominalLookup(att);
+      }
+    }
+    m_LookupStructure = structure;
+  }
+
+  /**
+   * Throws error message with line number and last token read.
+   *
+   * @param msg the error message to be thrown
+   * @throws IOException containing the error message
+   */
+  @Override
+  protected void errorMessage(String msg) throws IOException {
+    if (m_Parser == null) {
+      super.errorMessage(msg);
+    } else {
+      m_Parser.error(msg);
+    }
+  }
+
+  /**
+   * returns the current line number
+   *
+   * @return the current line number
+   */
+  @Override
+  public int getLineNo() {
+    if (m_Parser == null) {
+      return super.getLineNo();
+    }
+    return m_Lines + m_Parser.m_Line;
+  }
+
+  /**
+   * Reads a single instance and returns it.
+   *
+   * @param structure the dataset header information, will get updated in case
+   *          of string or relational attributes
+   * @param flag if method should test for carriage return after each instance
+   * @return null if end of file has been reached
+   * @throws IOException if the information is not read successfully
+   */
+  @Override
+  protected Instance getInstance(Instances structure, boolean flag)
+    throws IOException {
+    m_Data = structure;
+
+    // Check if any attributes have been declared.
+    if (m_Data.numAttributes() == 0) {
+      errorMessage("no header information available");
+    }
+
+    prepare(structure);
+    return m_Parser.readInstance(structure, flag);
+  }
+
+  /**
+   * Returns whether the instances for the given structure can be parsed in
+   * parallel, i.e., whether it only has numeric and nominal attributes.
+   *
+   * @param structure the dataset header information
+   * @return true if parallel parsing is possible
+   */
+  protected boolean canParseInParallel(Instances structure) {
+    for (int i = 0; i < structure.numAttributes(); i++) {
+      if (!structure.attribute(i).isNumeric()
+        && !structure.attribute(i).isNominal()) {
+        return false;
+      }
+      if (structure.attribute(i).isDate()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads all remaining instances and adds them to the given dataset. If more
+   * than one thread is to be used and the structure only has numeric and
+   * nominal attributes, chunks of lines are parsed in parallel.
+   *
+   * @param structure the dataset header information, will get updated in case
+   *          of string or relational attributes
+   * @param data the dataset to add the instances to
+   * @throws IOException if the information is not read successfully
+   */
+  public void readInstances(final Instances structure, Instances data)
+    throws IOException {
+    ExecutorService pool;
+    LinkedList<Future<List<Instance>>> pending;
+    char[] chunk;
+    Instance inst;
+
+    if ((m_NumThreads <= 1) || !canParseInParallel(structure)) {
+      while ((inst = readInstance(structure)) != null) {
+        data.add(inst);
+      }
+      return;
+    }
+
+    m_Data = structure;
+    if (m_Data.numAttributes() == 0) {
+      errorMessage("no header information available");
+    }
+    prepare(structure);
+    pool = Executors.newFixedThreadPool(m_NumThreads);
+    pending = new LinkedList<Future<List<Instance>>>();
+    try {
+      while ((chunk = m_Parser.nextChunk(CHUNK_SIZE)) != null) {
+        final Parser parser =
+          new Parser(chunk, m_Parser.m_Line - countLines(chunk));
+        pending.add(pool.submit(new Callable<List<Instance>>() {
+          @Override
+          public List<Instance> call() throws Exception {
+            List<Instance> result = new ArrayList<Instance>();
+            Instance inst;
+            while ((inst = parser.readInstance(structure, true)) != null) {
+              result.add(inst);
+            }
+            return result;
+          }
+        }));
+        if (pending.size() >= 2 * m_NumThreads) {
+          addAll(pending.removeFirst(), data);
+        }
+      }
+      while (pending.size() > 0) {
+        addAll(pending.removeFirst(), data);
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /**
+   * Counts the lines in a chunk.
+   *
+   * @param chunk the chunk
+   * @return the number of line terminators
+   */
+  protected static int countLines(char[] chunk) {
+    int result;
+
+    result = 0;
+    for (int i = 0; i < chunk.length; i++) {
+      if ((chunk[i] == '\n')
+        || ((chunk[i] == '\r') && ((i + 1 == chunk.length) || (chunk[i + 1] != '\n')))) {
+        result++;
+      }
+    }
+
+    return result;
+  }
+
+  /**
+   * Waits for the instances of a chunk and adds them to the dataset.
+   *
+   * @param future the result of parsing the chunk
+   * @param data the dataset to add the instances to
+   * @throws IOException if the chunk could not be parsed
+   */
+  protected void addAll(Future<List<Instance>> future, Instances data)
+    throws IOException {
+    try {
+      for (Instance inst : future.get()) {
+        data.add(inst);
+      }
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause().toString());
+    } catch (InterruptedException e) {
+      throw new IOException(e.toString());
+    }
+  }
+
+  /**
+   * Parses a double from a range of characters. Plain decimal numbers with up
+   * to 18 significant digits and a small exponent are converted directly
+   * (exactly, since both the mantissa and the power of ten are representable
+   * as doubles); everything else is handed to
+   * <code>Double.parseDouble(String)</code>.
+   *
+   * @param buf the characters
+   * @param off the start of the number
+   * @param len the length of the number
+   * @return the parsed number
+   * @throws NumberFormatException if the characters are not a number
+   */
+  public static double parseDouble(char[] buf, int off, int len) {
+    int i;
+    int end;
+    boolean negative;
+    boolean any;
+    long mantissa;
+    int digits;
+    int exponent;
+    int expValue;
+    boolean expNegative;
+    char c;
+    double result;
+
+    i = off;
+    end = off + len;
+    negative = false;
+    if ((i < end) && ((buf[i] == '-') || (buf[i] == '+'))) {
+      negative = (buf[i] == '-');
+      i++;
+    }
+
+    any = false;
+    mantissa = 0;
+    digits = 0;
+    exponent = 0;
+    while ((i < end) && ((c = buf[i]) >= '0') && (c <= '9')) {
+      any = true;
+      if ((mantissa != 0) || (c != '0')) {
+        if (digits == 18) {
+          return Double.parseDouble(new String(buf, off, len));
+        }
+        mantissa = 10 * mantissa + (c - '0');
+        digits++;
+      }
+      i++;
+    }
+    if ((i < end) && (buf[i] == '.')) {
+      i++;
+      while ((i < end) && ((c = buf[i]) >= '0') && (c <= '9')) {
+        any = true;
+        if ((mantissa != 0) || (c != '0')) {
+          if (digits == 18) {
+            return Double.parseDouble(new String(buf, off, len));
+          }
+          mantissa = 10 * mantissa + (c - '0');
+          digits++;
+        }
+        exponent--;
+        i++;
+      }
+    }
+    if (!any) {
+      return Double.parseDouble(new String(buf, off, len));
+    }
+    if ((i < end) && ((buf[i] == 'e') || (buf[i] == 'E'))) {
+      i++;
+      expNegative = false;
+      if ((i < end) && ((buf[i] == '-') || (buf[i] == '+'))) {
+        expNegative = (buf[i] == '-');
+        i++;
+      }
+      if ((i == end) || (buf[i] < '0') || (buf[i] > '9')) {
+        return Double.parseDouble(new String(buf, off, len));
+      }
+      expValue = 0;
+      while ((i < end) && ((c = buf[i]) >= '0') && (c <= '9')) {
+        if (expValue > 10000) {
+          return Double.parseDouble(new String(buf, off, len));
+        }
+        expValue = 10 * expValue + (c - '0');
+        i++;
+      }
+      exponent += expNegative ? -expValue : expValue;
+    }
+    if (i != end) {
+      return Double.parseDouble(new String(buf, off, len));
+    }
+
+    if (mantissa == 0) {
+      return negative ? -0.0 : 0.0;
+    }
+    if ((mantissa > (1L << 53)) || (exponent > 22) || (exponent < -22)) {
+      return Double.parseDouble(new String(buf, off, len));
+    }
+    result = mantissa;
+    if (exponent > 0) {
+      result *= POWERS_OF_TEN[exponent];
+    } else if (exponent < 0) {
+      result /= POWERS_OF_TEN[-exponent];
+    }
+
+    return negative ? -result : result;
+  }
+
+  /**
+   * Parses an int from a range of characters.
+   *
+   * @param buf the characters
+   * @param off the start of the number
+   * @param len the length of the number
+   * @return the parsed number
+   * @throws NumberFormatException if the characters are not an int
+   */
+  public static int parseInt(char[] buf, int off, int len) {
+    int result;
+    char c;
+
+    if ((len == 0) || (len > 9)) {
+      return Integer.parseInt(new String(buf, off, len));
+    }
+    result = 0;
+    for (int i = off; i < off + len; i++) {
+      c = buf[i];
+      if ((c < '0') || (c > '9')) {
+        return Integer.parseInt(new String(buf, off, len));
+      }
+      result = 10 * result + (c - '0');
+    }
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -0,0 +1,267 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    MappedInstancesLoader.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import weka.core.Environment;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.MappedInstances;
+import weka.core.RevisionUtils;
+import weka.core.Utils;
+
+/**
+ <!-- globalinfo-start -->
+ * Reads a binary file written by MappedInstancesSaver by memory-mapping it. Only the header is read up front; the attribute values are paged in by the operating system when accessed, so the dataset does not need to fit into the Java heap. The resulting dataset is read-only.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ * @version $Revision$
+ * @see Loader
+ * @see MappedInstances
+ */
+public class MappedInstancesLoader
+  extends AbstractFileLoader
+  implements BatchConverter, IncrementalConverter {
+
+  /** for serialization */
+  private static final long serialVersionUID = -5765212479024926914L;
+
+  /** the file extension */
+  public static String FILE_EXTENSION = MappedInstances.FILE_EXTENSION;
+
+  /** the mapped data set. */
+  protected MappedInstances m_Dataset = null;
+
+  /** The current index position for incremental reading */
+  protected int m_IncrementalIndex = 0;
+
+  /**
+   * Returns a string describing this object
+   *
+   * @return a description of the classifier suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return
+        "Reads a binary file written by MappedInstancesSaver by "
+      + "memory-mapping it. Only the header is read up front; the attribute "
+      + "values are paged in by the operating system when accessed, so the "
+      + "dataset does not need to fit into the Java heap. The resulting "
+      + "dataset is read-only.";
+  }
+
+  /** Resets the Loader ready to read a new data set */
+  public void reset() {
+
+    m_Dataset = null;
+    m_IncrementalIndex = 0;
+  }
+
+  /**
+   * Get the file extension used for memory-mappable files
+   *
+   * @return the file extension
+   */
+  public String getFileExtension() {
+    return FILE_EXTENSION;
+  }
+
+  /**
+   * Gets all the file extensions used for this type of file
+   *
+   * @return the file extensions
+   */
+  public String[] getFileExtensions() {
+    return new String[]{getFileExtension()};
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  public String getFileDescription() {
+    return "Memory-mappable binary instances";
+  }
+
+  /**
+   * Resets the Loader object and maps the supplied file. Files that do not
+   * exist on disk (e.g., resources on the classpath) and compressed files
+   * are read as streams instead.
+   *
+   * @param file the source file.
+   * @throws IOException if an error occurs
+   */
+  public void setSource(File file) throws IOException {
+    File	original;
+    String	fName;
+
+    if (file == null)
+      throw new IOException("Source file object is null!");
+
+    original = file;
+    fName    = file.getPath();
+    try {
+      if (m_env == null)
+	m_env = Environment.getSystemWide();
+      fName = m_env.substitute(fName);
+    }
+    catch (Exception e) {
+      // ignore any missing environment variables at this time
+    }
+    file = new File(fName);
+    if (!file.isFile() || !file.getName().endsWith(getFileExtension())) {
+      super.setSource(original);
+      return;
+    }
+
+    m_structure = null;
+    setRetrieval(NONE);
+    reset();
+    m_Dataset = new MappedInstances(file);
+
+    if (m_useRelativePath) {
+      try {
+	m_sourceFile = Utils.convertToRelativePath(original);
+      }
+      catch (Exception ex) {
+	m_sourceFile = original;
+      }
+    }
+    else {
+      m_sourceFile = original;
+    }
+    m_File = m_sourceFile.getPath();
+  }
+
+  /**
+   * Resets the Loader object and sets the source of the data set to be
+   * the supplied InputStream. Since streams cannot be mapped, the data is
+   * copied into a temporary file first, which is mapped and deleted on exit.
+   *
+   * @param in the source InputStream.
+   * @throws IOException if there is a problem with IO
+   */
+  public void setSource(InputStream in) throws IOException {
+    File		tmp;
+    OutputStream	out;
+    byte[]		buffer;
+    int			read;
+
+    tmp = File.createTempFile("weka", getFileExtension());
+    tmp.deleteOnExit();
+    out = new BufferedOutputStream(new FileOutputStream(tmp));
+    try {
+      buffer = new byte[65536];
+      while ((read = in.read(buffer)) != -1)
+	out.write(buffer, 0, read);
+    }
+    finally {
+      out.close();
+      in.close();
+    }
+
+    reset();
+    m_Dataset = new MappedInstances(tmp);
+  }
+
+  /**
+   * Determines and returns (if possible) the structure (internally the
+   * header) of the data set as an empty set of instances.
+   *
+   * @return the structure of the data set as an empty set of Instances
+   * @throws IOException if an error occurs
+   */
+  public Instances getStructure() throws IOException {
+
+    if (m_Dataset == null) {
+      throw new IOException("No source has been specified");
+    }
+
+    return new Instances(m_Dataset, 0);
+  }
+
+  /**
+   * Return the full data set, as a read-only MappedInstances object. Each
+   * call returns a new object sharing the mapped file, so reordering one
+   * does not affect the others.
+   *
+   * @return the data set
+   * @throws IOException if there is no source
+   */
+  public Instances getDataSet() throws IOException {
+
+    if (m_Dataset == null) {
+      throw new IOException("No source has been specified");
+    }
+
+    return new MappedInstances(m_Dataset);
+  }
+
+  /**
+   * Read the data set incrementally---get the next instance in the data
+   * set or returns null if there are no
+   * more instances to get.
+   *
+   * @param structure ignored
+   * @return the next instance in the data set as an Instance object or null
+   * if there are no more instances to be read
+   * @throws IOException if there is no source
+   */
+  public Instance getNextInstance(Instances structure) throws IOException {
+
+    if (m_Dataset == null) {
+      throw new IOException("No source has been specified");
+    }
+
+    if (m_IncrementalIndex == m_Dataset.numInstances()) {
+      return null;
+    }
+
+    return m_Dataset.instance(m_IncrementalIndex++);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the name of an input file.
+   */
+  public static void main(String[] args) {
+    runFileLoader(new MappedInstancesLoader(), args);
+  }
+}
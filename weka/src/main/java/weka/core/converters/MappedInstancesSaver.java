@@ -0,0 +1,305 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ *    MappedInstancesSaver.java
+ *    Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.converters;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import weka.core.Attribute;
+import weka.core.Capabilities;
+import weka.core.Capabilities.Capability;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.MappedInstances;
+import weka.core.RevisionUtils;
+import weka.core.WeightedInstancesHandler;
+
+/**
+ <!-- globalinfo-start -->
+ * Writes the instances to a binary file with extension .mbi that can be memory-mapped by MappedInstancesLoader, allowing datasets larger than the Java heap to be processed. Rows have a fixed size, so every instance can be accessed in constant time.
+ * <p/>
+ <!-- globalinfo-end -->
+ *
+ <!-- options-start -->
+ * Valid options are: <p/>
+ *
+ * <pre> -i &lt;the input file&gt;
+ * The input file</pre>
+ *
+ * <pre> -o &lt;the output file&gt;
+ * The output file</pre>
+ *
+ <!-- options-end -->
+ *
+ * @version $Revision$
+ * @see Saver
+ * @see MappedInstances
+ */
+public class MappedInstancesSaver
+  extends AbstractFileSaver
+  implements BatchConverter, IncrementalConverter, WeightedInstancesHandler {
+
+  /** for serialization. */
+  private static final long serialVersionUID = 8296307526347164925L;
+
+  /** the output stream. */
+  protected DataOutputStream m_Output;
+
+  /** the header written to the trailer, collecting string and relational values. */
+  protected Instances m_Header;
+
+  /** the number of rows written so far. */
+  protected int m_NumRows;
+
+  /** Constructor. */
+  public MappedInstancesSaver(){
+    resetOptions();
+  }
+
+  /**
+   * Returns a string describing this Saver.
+   *
+   * @return a description of the Saver suitable for
+   * displaying in the explorer/experimenter gui
+   */
+  public String globalInfo() {
+    return
+        "Writes the instances to a binary file with extension "
+      + MappedInstances.FILE_EXTENSION + " that can be memory-mapped by "
+      + "MappedInstancesLoader, allowing datasets larger than the Java heap "
+      + "to be processed. Rows have a fixed size, so every instance can be "
+      + "accessed in constant time.";
+  }
+
+  /**
+   * Returns a description of the file type.
+   *
+   * @return a short file description
+   */
+  public String getFileDescription() {
+    return "Memory-mappable binary instances";
+  }
+
+  /**
+   * Resets the Saver.
+   */
+  public void resetOptions() {
+
+    super.resetOptions();
+    setFileExtension(MappedInstances.FILE_EXTENSION);
+  }
+
+  /**
+   * Returns the Capabilities of this saver.
+   *
+   * @return            the capabilities of this object
+   * @see               Capabilities
+   */
+  public Capabilities getCapabilities() {
+    Capabilities result = super.getCapabilities();
+
+    // attributes
+    result.enableAllAttributes();
+    result.enable(Capability.MISSING_VALUES);
+
+    // class
+    result.enableAllClasses();
+    result.enable(Capability.MISSING_CLASS_VALUES);
+    result.enable(Capability.NO_CLASS);
+
+    return result;
+  }
+
+  /**
+   * Resets the writer, setting the output stream to null.
+   */
+  public void resetWriter() {
+    super.resetWriter();
+
+    m_Output = null;
+    m_Header = null;
+    m_NumRows = 0;
+  }
+
+  /**
+   * Sets the destination output stream.
+   *
+   * @param output the output stream.
+   * @throws IOException throws an IOException if destination cannot be set
+   */
+  public void setDestination(OutputStream output) throws IOException {
+    super.setDestination(output);
+
+    m_Output = new DataOutputStream(new BufferedOutputStream(output));
+  }
+
+  /**
+   * Writes the preamble and sets up the header for the trailer.
+   *
+   * @param structure the structure of the data
+   * @throws IOException if writing fails
+   */
+  protected void writeStart(Instances structure) throws IOException {
+    if (m_Output == null)
+      throw new IOException("No output for memory-mappable instances.");
+
+    m_Header   = structure.stringFreeStructure();
+    m_NumRows  = 0;
+    MappedInstances.writePreamble(m_Output, m_Header.numAttributes());
+  }
+
+  /**
+   * Writes a single instance as a row. The values of string and relational
+   * attributes are added to the header written to the trailer.
+   *
+   * @param inst the instance to write
+   * @throws IOException if writing fails
+   */
+  protected void writeRow(Instance inst) throws IOException {
+    double[]	values;
+    Attribute	att;
+    int		i;
+
+    values = new double[m_Header.numAttributes()];
+    for (i = 0; i < values.length; i++) {
+      values[i] = inst.value(i);
+      if (inst.isMissing(i))
+	continue;
+      att = m_Header.attribute(i);
+      if (att.isString())
+	values[i] = att.addStringValue(inst.stringValue(i));
+      else if (att.isRelationValued())
+	values[i] = att.addRelation(inst.relationalValue(i));
+    }
+    MappedInstances.writeRow(m_Output, inst.weight(), values);
+    m_NumRows++;
+  }
+
+  /**
+   * Writes the trailer and closes the output.
+   *
+   * @throws IOException if writing fails
+   */
+  protected void writeEnd() throws IOException {
+    MappedInstances.writeTrailer(m_Output, m_Header, m_NumRows);
+    m_Output.flush();
+    m_Output.close();
+  }
+
+  /**
+   * Saves an instances incrementally. Structure has to be set by using the
+   * setStructure() method or setInstances() method. When a structure is set,
+   * the preamble is written. The trailer is written when null is passed in.
+   *
+   * @param inst the instance to save
+   * @throws IOException throws IOEXception if an instance cannot be saved
+   *           incrementally.
+   */
+  public void writeIncremental(Instance inst) throws IOException {
+    int 	writeMode;
+    Instances	structure;
+
+    writeMode = getWriteMode();
+    structure = getInstances();
+
+    if (getRetrieval() == BATCH || getRetrieval() == NONE)
+      throw new IOException("Batch and incremental saving cannot be mixed.");
+
+    if (writeMode == WAIT) {
+      if (structure == null) {
+	setWriteMode(CANCEL);
+	if (inst != null)
+	  System.err.println("Structure(Header Information) has to be set in advance");
+      }
+      else {
+	setWriteMode(STRUCTURE_READY);
+      }
+      writeMode = getWriteMode();
+    }
+    if (writeMode == CANCEL) {
+      if (m_Output != null)
+	m_Output.close();
+      cancel();
+    }
+    if (writeMode == STRUCTURE_READY) {
+      setWriteMode(WRITE);
+      writeStart(structure);
+      writeMode = getWriteMode();
+    }
+    if (writeMode == WRITE) {
+      if (structure == null)
+	throw new IOException("No instances information available.");
+      if (inst != null) {
+	writeRow(inst);
+      }
+      else {
+	writeEnd();
+	resetStructure();
+	resetWriter();
+      }
+    }
+  }
+
+  /**
+   * Writes a Batch of instances.
+   *
+   * @throws IOException throws IOException if saving in batch mode is not possible
+   */
+  public void writeBatch() throws IOException {
+    if (getRetrieval() == INCREMENTAL)
+      throw new IOException("Batch and incremental saving cannot be mixed.");
+
+    if (getInstances() == null)
+      throw new IOException("No instances to save");
+
+    setRetrieval(BATCH);
+
+    setWriteMode(WRITE);
+    writeStart(getInstances());
+    for (int i = 0; i < getInstances().numInstances(); i++)
+      writeRow(getInstances().instance(i));
+    writeEnd();
+    setWriteMode(WAIT);
+    resetWriter();
+    setWriteMode(CANCEL);
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return		the revision
+   */
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+
+  /**
+   * Main method.
+   *
+   * @param args should contain the options of a Saver.
+   */
+  public static void main(String[] args) {
+    runFileSaver(new MappedInstancesSaver(), args);
+  }
+}
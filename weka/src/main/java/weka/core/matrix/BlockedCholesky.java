@@ -0,0 +1,347 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * BlockedCholesky.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Cholesky decomposition of a symmetric, positive definite matrix that
+ * processes the columns in blocks. Once the columns of a block have been
+ * factored, the rows below the block are updated with them, which is where
+ * most of the work lies; the rows are independent of each other and are split
+ * between several threads.
+ * <p/>
+ *
+ * Only the lower triangle of the matrix is used. It is given as rows of
+ * increasing length, row <code>i</code> holding the entries of the columns 0
+ * to <code>i</code>, and is overwritten with the factor L, so that A = L*L'.
+ * Each entry is always computed by the same sequence of operations, so the
+ * result does not depend on the number of threads. If the matrix is not
+ * positive definite, the decomposition stops at the first non-positive pivot
+ * and <code>isSPD()</code> returns false.
+ *
+ * @version $Revision$
+ * @see CholeskyDecomposition
+ */
+public class BlockedCholesky implements RevisionHandler {
+
+  /** the number of columns that are factored together */
+  public static final int BLOCK_SIZE = 64;
+
+  /** the number of consecutive rows a thread processes at a time */
+  protected static final int CHUNK_SIZE = 8;
+
+  /** the factor, as rows of increasing length */
+  protected double[][] m_L;
+
+  /** the dimension of the matrix */
+  protected int m_N;
+
+  /** whether the matrix is positive definite */
+  protected boolean m_SPD;
+
+  /** the threads to use, null to do all the work in the calling thread */
+  protected ExecutorService m_Executor;
+
+  /** the number of tasks the rows are split into */
+  protected int m_NumTasks;
+
+  /**
+   * A piece of work on a range of rows.
+   */
+  protected interface RowTask {
+
+    /**
+     * Processes the rows in the given range.
+     *
+     * @param from the first row
+     * @param to the row after the last one
+     */
+    void run(int from, int to);
+  }
+
+  /**
+   * Factors the given matrix in the calling thread.
+   *
+   * @param a the lower triangle of the matrix, overwritten with the factor
+   * @throws Exception never, as no threads are used
+   */
+  public BlockedCholesky(double[][] a) throws Exception {
+    this(a, null, 1);
+  }
+
+  /**
+   * Factors the given matrix.
+   *
+   * @param a the lower triangle of the matrix, overwritten with the factor
+   * @param executor the threads to use, null for the calling thread; the
+   *          executor is not shut down
+   * @param numTasks the number of tasks to split the rows into, usually the
+   *          number of threads
+   * @throws Exception if a thread fails or is interrupted
+   */
+  public BlockedCholesky(double[][] a, ExecutorService executor, int numTasks)
+    throws Exception {
+
+    m_L = a;
+    m_N = a.length;
+    m_Executor = executor;
+    m_NumTasks = Math.max(1, numTasks);
+    m_SPD = true;
+
+    for (int k0 = 0; (k0 < m_N) && m_SPD; k0 += BLOCK_SIZE) {
+      final int start = k0;
+      final int end = Math.min(k0 + BLOCK_SIZE, m_N);
+
+      // the block on the diagonal
+      for (int j = start; j < end; j++) {
+        double[] rowJ = m_L[j];
+        double d = rowJ[j];
+        for (int p = start; p < j; p++) {
+          d -= rowJ[p] * rowJ[p];
+        }
+        if (!(d > 0.0)) {
+          m_SPD = false;
+          return;
+        }
+        rowJ[j] = Math.sqrt(d);
+        for (int i = j + 1; i < end; i++) {
+          double[] rowI = m_L[i];
+          double s = rowI[j];
+          for (int p = start; p < j; p++) {
+            s -= rowI[p] * rowJ[p];
+          }
+          rowI[j] = s / rowJ[j];
+        }
+      }
+
+      // the columns of the block below the diagonal
+      forEachRow(end, m_N, new RowTask() {
+        @Override
+        public void run(int from, int to) {
+          for (int i = from; i < to; i++) {
+            double[] rowI = m_L[i];
+            for (int j = start; j < end; j++) {
+              double[] rowJ = m_L[j];
+              double s = rowI[j];
+              for (int p = start; p < j; p++) {
+                s -= rowI[p] * rowJ[p];
+              }
+              rowI[j] = s / rowJ[j];
+            }
+          }
+        }
+      });
+
+      // the remaining rows and columns
+      forEachRow(end, m_N, new RowTask() {
+        @Override
+        public void run(int from, int to) {
+          for (int i = from; i < to; i++) {
+            double[] rowI = m_L[i];
+            for (int j = end; j <= i; j++) {
+              double[] rowJ = m_L[j];
+              double s = 0;
+              for (int p = start; p < end; p++) {
+                s += rowI[p] * rowJ[p];
+              }
+              rowI[j] -= s;
+            }
+          }
+        }
+      });
+    }
+  }
+
+  /**
+   * Runs a task on a range of rows. With several tasks, the rows are dealt
+   * out in chunks, in turn, to balance the work of rows of different length.
+   *
+   * @param from the first row
+   * @param to the row after the last one
+   * @param task the work to do
+   * @throws Exception if a thread fails or is interrupted
+   */
+  protected void forEachRow(final int from, final int to, final RowTask task)
+    throws Exception {
+
+    if ((m_Executor == null) || (m_NumTasks == 1) || (to - from <= CHUNK_SIZE)) {
+      task.run(from, to);
+      return;
+    }
+
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(m_NumTasks);
+    for (int t = 0; t < m_NumTasks; t++) {
+      final int first = from + t * CHUNK_SIZE;
+      futures.add(m_Executor.submit(new Callable<Object>() {
+        @Override
+        public Object call() {
+          for (int i = first; i < to; i += m_NumTasks * CHUNK_SIZE) {
+            task.run(i, Math.min(i + CHUNK_SIZE, to));
+          }
+          return null;
+        }
+      }));
+    }
+    for (Future<Object> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception) {
+          throw (Exception) e.getCause();
+        }
+        throw e;
+      }
+    }
+  }
+
+  /**
+   * Is the matrix positive definite?
+   *
+   * @return true if the decomposition succeeded
+   */
+  public boolean isSPD() {
+    return m_SPD;
+  }
+
+  /**
+   * Returns the factor, as rows of increasing length.
+   *
+   * @return the lower triangular factor L
+   */
+  public double[][] getL() {
+    return m_L;
+  }
+
+  /**
+   * Solves A*x = b.
+   *
+   * @param b the right-hand side
+   * @return the solution x
+   * @throws RuntimeException if the matrix is not positive definite
+   */
+  public double[] solve(double[] b) {
+
+    if (!m_SPD) {
+      throw new RuntimeException("Matrix is not symmetric positive definite.");
+    }
+
+    // L*y = b
+    double[] x = b.clone();
+    for (int i = 0; i < m_N; i++) {
+      double[] rowI = m_L[i];
+      double s = x[i];
+      for (int p = 0; p < i; p++) {
+        s -= rowI[p] * x[p];
+      }
+      x[i] = s / rowI[i];
+    }
+
+    // L'*x = y
+    for (int i = m_N - 1; i >= 0; i--) {
+      x[i] /= m_L[i][i];
+      double xi = x[i];
+      double[] rowI = m_L[i];
+      for (int p = 0; p < i; p++) {
+        x[p] -= rowI[p] * xi;
+      }
+    }
+
+    return x;
+  }
+
+  /**
+   * Computes the inverse of the matrix, which is the product of the inverse
+   * of L' and the inverse of L.
+   *
+   * @return the lower triangle of the inverse, as rows of increasing length
+   * @throws Exception if the matrix is not positive definite, or a thread
+   *           fails or is interrupted
+   */
+  public double[][] inverse() throws Exception {
+
+    if (!m_SPD) {
+      throw new RuntimeException("Matrix is not symmetric positive definite.");
+    }
+
+    // row j of U holds the entries j to n - 1 of column j of the inverse of L
+    final double[][] u = new double[m_N][];
+    forEachRow(0, m_N, new RowTask() {
+      @Override
+      public void run(int from, int to) {
+        for (int j = from; j < to; j++) {
+          double[] x = new double[m_N - j];
+          x[0] = 1.0 / m_L[j][j];
+          for (int p = j + 1; p < m_N; p++) {
+            double[] rowP = m_L[p];
+            double s = 0;
+            for (int q = j; q < p; q++) {
+              s += rowP[q] * x[q - j];
+            }
+            x[p - j] = -s / rowP[p];
+          }
+          u[j] = x;
+        }
+      }
+    });
+
+    final double[][] result = new double[m_N][];
+    forEachRow(0, m_N, new RowTask() {
+      @Override
+      public void run(int from, int to) {
+        for (int i = from; i < to; i++) {
+          double[] row = new double[i + 1];
+          double[] uI = u[i];
+          for (int j = 0; j <= i; j++) {
+            double[] uJ = u[j];
+            double s = 0;
+            for (int p = i, pI = 0, pJ = i - j; p < m_N; p++, pI++, pJ++) {
+              s += uI[pI] * uJ[pJ];
+            }
+            row[j] = s;
+          }
+          result[i] = row;
+        }
+      }
+    });
+
+    return result;
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
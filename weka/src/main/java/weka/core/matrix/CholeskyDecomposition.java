@@ -41,6 +41,9 @@ public class CholeskyDecomposition
   /** for serialization */
   private static final long serialVersionUID = -8739775942782694701L;
 
+  /** the number of columns that are processed together */
+  protected static final int BLOCK_SIZE = 64;
+
   /** 
    * Array for internal storage of decomposition.
    * @serial internal array storage.
@@ -61,35 +64,70 @@ public class CholeskyDecomposition
 
   /** 
    * Cholesky algorithm for symmetric and positive definite matrix.
+   * <p/>
+   * The columns are processed in blocks: the rows of a block of columns
+   * that lie on the diagonal are computed first, and then the rows below
+   * them, which do not depend on each other, by several threads if the
+   * matrix is large. The elements are computed in the same order and the
+   * same way as by the row-by-row algorithm.
    *
    * @param  Arg   Square, symmetric matrix.
    */
   public CholeskyDecomposition(Matrix Arg) {
     // Initialize.
-    double[][] A = Arg.getArray();
+    final double[][] A = Arg.getArray();
     n = Arg.getRowDimension();
     L = new double[n][n];
     isspd = (Arg.getColumnDimension() == n);
-    // Main loop.
-    for (int j = 0; j < n; j++) {
-      double[] Lrowj = L[j];
-      double d = 0.0;
+    for (int j = 0; (j < n) && isspd; j++) {
       for (int k = 0; k < j; k++) {
-        double[] Lrowk = L[k];
-        double s = 0.0;
-        for (int i = 0; i < k; i++) {
-          s += Lrowk[i]*Lrowj[i];
-        }
-        Lrowj[k] = s = (A[j][k] - s)/L[k][k];
-        d = d + s*s;
-        isspd = isspd & (A[k][j] == A[j][k]); 
+        isspd = isspd & (A[k][j] == A[j][k]);
       }
-      d = A[j][j] - d;
-      isspd = isspd & (d > 0.0);
-      L[j][j] = Math.sqrt(Math.max(d,0.0));
-      for (int k = j+1; k < n; k++) {
-        L[j][k] = 0.0;
+    }
+    // Sums of squares of the rows computed so far.
+    final double[] d = new double[n];
+    // Main loop.
+    for (int k0 = 0; k0 < n; k0 += BLOCK_SIZE) {
+      final int k1 = Math.min(k0 + BLOCK_SIZE, n);
+      // Rows on the diagonal.
+      for (int j = k0; j < k1; j++) {
+        row(A, d, j, k0, j);
+        double dj = A[j][j] - d[j];
+        isspd = isspd & (dj > 0.0);
+        L[j][j] = Math.sqrt(Math.max(dj,0.0));
       }
+      // Rows below the diagonal.
+      final int start = k0;
+      ParallelRange.run(k1, n, (long) (n - k1) * (k1 - k0) * k1,
+        new ParallelRange.Task() {
+          public void run(int from, int to) {
+            for (int j = from; j < to; j++) {
+              row(A, d, j, start, k1);
+            }
+          }
+        });
+    }
+  }
+
+  /**
+   * Computes a range of columns of a row of L.
+   *
+   * @param A the matrix
+   * @param d the sums of squares of the rows, updated
+   * @param j the row
+   * @param from the first column
+   * @param to the column after the last one
+   */
+  protected void row(double[][] A, double[] d, int j, int from, int to) {
+    double[] Lrowj = L[j];
+    for (int k = from; k < to; k++) {
+      double[] Lrowk = L[k];
+      double s = 0.0;
+      for (int i = 0; i < k; i++) {
+        s += Lrowk[i]*Lrowj[i];
+      }
+      Lrowj[k] = s = (A[j][k] - s)/L[k][k];
+      d[j] = d[j] + s*s;
     }
   }
 
@@ -125,28 +163,43 @@ public class CholeskyDecomposition
     }
 
     // Copy right hand side.
-    double[][] X = B.getArrayCopy();
+    final double[][] X = B.getArrayCopy();
     int nx = B.getColumnDimension();
 
-    // Solve L*Y = B;
-    for (int k = 0; k < n; k++) {
-      for (int j = 0; j < nx; j++) {
-	for (int i = 0; i < k ; i++) {
-	  X[k][j] -= X[i][j]*L[k][i];
-	}
-	X[k][j] /= L[k][k];
-      }
-    }
+    // Each column of the right hand side is solved on its own.
+    ParallelRange.run(0, nx, (long) n * n * nx, new ParallelRange.Task() {
+      public void run(int from, int to) {
+        // Solve L*Y = B;
+        for (int k = 0; k < n; k++) {
+          double[] Xk = X[k];
+          for (int i = 0; i < k ; i++) {
+            double[] Xi = X[i];
+            double Lki = L[k][i];
+            for (int j = from; j < to; j++) {
+              Xk[j] -= Xi[j]*Lki;
+            }
+          }
+          for (int j = from; j < to; j++) {
+            Xk[j] /= L[k][k];
+          }
+        }
 
-    // Solve L'*X = Y;
-    for (int k = n-1; k >= 0; k--) {
-      for (int j = 0; j < nx; j++) {
-	for (int i = k+1; i < n ; i++) {
-	  X[k][j] -= X[i][j]*L[i][k];
-	}
-	X[k][j] /= L[k][k];
+        // Solve L'*X = Y;
+        for (int k = n-1; k >= 0; k--) {
+          double[] Xk = X[k];
+          for (int i = k+1; i < n ; i++) {
+            double[] Xi = X[i];
+            double Lik = L[i][k];
+            for (int j = from; j < to; j++) {
+              Xk[j] -= Xi[j]*Lik;
+            }
+          }
+          for (int j = from; j < to; j++) {
+            Xk[j] /= L[k][k];
+          }
+        }
       }
-    }
+    });
 
     return new Matrix(X,n,nx);
   }
@@ -65,7 +65,8 @@ public class LUDecomposition
   private int[] piv;
 
   /** 
-   * LU Decomposition
+   * LU Decomposition. For large matrices, the dot products of the rows
+   * below the diagonal with a column are computed by several threads.
    * @param  A   Rectangular matrix
    */
   public LUDecomposition(Matrix A) {
@@ -81,7 +82,7 @@ public class LUDecomposition
     }
     pivsign = 1;
     double[] LUrowi;
-    double[] LUcolj = new double[m];
+    final double[] LUcolj = new double[m];
 
     // Outer loop.
 
@@ -93,14 +94,14 @@ public class LUDecomposition
         LUcolj[i] = LU[i][j];
       }
 
-      // Apply previous transformations.
+      // Apply previous transformations, first to the rows above the
+      // diagonal, which depend on each other...
 
-      for (int i = 0; i < m; i++) {
+      int imax = Math.min(j, m);
+      for (int i = 0; i < imax; i++) {
         LUrowi = LU[i];
 
-        // Most of the time is spent in the following dot product.
-
-        int kmax = Math.min(i,j);
+        int kmax = i;
         double s = 0.0;
         for (int k = 0; k < kmax; k++) {
           s += LUrowi[k]*LUcolj[k];
@@ -109,6 +110,27 @@ public class LUDecomposition
         LUrowi[j] = LUcolj[i] -= s;
       }
 
+      // ...and then to the others, which do not and may be done by several
+      // threads.
+
+      final int col = j;
+      ParallelRange.run(imax, m, (long) (m - imax) * j, new ParallelRange.Task() {
+        public void run(int from, int to) {
+          for (int i = from; i < to; i++) {
+            double[] LUrowi = LU[i];
+
+            // Most of the time is spent in the following dot product.
+
+            double s = 0.0;
+            for (int k = 0; k < col; k++) {
+              s += LUrowi[k]*LUcolj[k];
+            }
+
+            LUrowi[col] = LUcolj[i] -= s;
+          }
+        }
+      });
+
       // Find pivot and exchange if necessary.
 
       int p = j;
@@ -245,27 +267,32 @@ public class LUDecomposition
     // Copy right hand side with pivoting
     int nx = B.getColumnDimension();
     Matrix Xmat = B.getMatrix(piv,0,nx-1);
-    double[][] X = Xmat.getArray();
+    final double[][] X = Xmat.getArray();
 
-    // Solve L*Y = B(piv,:)
-    for (int k = 0; k < n; k++) {
-      for (int i = k+1; i < n; i++) {
-        for (int j = 0; j < nx; j++) {
-          X[i][j] -= X[k][j]*LU[i][k];
+    // Each column of the right hand side is solved on its own.
+    ParallelRange.run(0, nx, (long) n * n * nx, new ParallelRange.Task() {
+      public void run(int from, int to) {
+        // Solve L*Y = B(piv,:)
+        for (int k = 0; k < n; k++) {
+          for (int i = k+1; i < n; i++) {
+            for (int j = from; j < to; j++) {
+              X[i][j] -= X[k][j]*LU[i][k];
+            }
+          }
         }
-      }
-    }
-    // Solve U*X = Y;
-    for (int k = n-1; k >= 0; k--) {
-      for (int j = 0; j < nx; j++) {
-        X[k][j] /= LU[k][k];
-      }
-      for (int i = 0; i < k; i++) {
-        for (int j = 0; j < nx; j++) {
-          X[i][j] -= X[k][j]*LU[i][k];
+        // Solve U*X = Y;
+        for (int k = n-1; k >= 0; k--) {
+          for (int j = from; j < to; j++) {
+            X[k][j] /= LU[k][k];
+          }
+          for (int i = 0; i < k; i++) {
+            for (int j = from; j < to; j++) {
+              X[i][j] -= X[k][j]*LU[i][k];
+            }
+          }
         }
       }
-    }
+    });
     return Xmat;
   }
   
@@ -99,6 +99,12 @@ public class Matrix implements Cloneable, Serializable, RevisionHandler {
    */
   protected double[][] A;
 
+  /**
+   * The number of columns of the right-hand matrix that a product processes
+   * at a time, so that the part of a row being computed stays in the cache.
+   */
+  protected static final int BLOCK_SIZE = 256;
+
   /**
    * Row and column dimensions.
    * 
@@ -905,32 +911,71 @@ public class Matrix implements Cloneable, Serializable, RevisionHandler {
   }
 
   /**
-   * Linear algebraic matrix multiplication, A * B
+   * Linear algebraic matrix multiplication, A * B. Large products are computed
+   * in blocks of columns of B, by several threads that each take different
+   * rows of A, but every element is still the sum of the products in the
+   * order of the inner dimension, so the result is the same as with a single
+   * thread.
    * 
    * @param B another matrix
    * @return Matrix product, A * B
    * @throws IllegalArgumentException Matrix inner dimensions must agree.
+   * @see ParallelRange
    */
-  public Matrix times(Matrix B) {
+  public Matrix times(final Matrix B) {
     if (B.m != n) {
       throw new IllegalArgumentException("Matrix inner dimensions must agree.");
     }
     Matrix X = new Matrix(m, B.n);
-    double[][] C = X.getArray();
-    double[] Bcolj = new double[n];
-    for (int j = 0; j < B.n; j++) {
-      for (int k = 0; k < n; k++) {
-        Bcolj[k] = B.A[k][j];
-      }
-      for (int i = 0; i < m; i++) {
-        double[] Arowi = A[i];
-        double s = 0;
+    final double[][] C = X.getArray();
+    final int p = B.n;
+    long work = (long) m * n * p;
+
+    if (p < 4) {
+      // few columns: dot products with each column of B
+      for (int j = 0; j < p; j++) {
+        final double[] Bcolj = new double[n];
         for (int k = 0; k < n; k++) {
-          s += Arowi[k] * Bcolj[k];
+          Bcolj[k] = B.A[k][j];
         }
-        C[i][j] = s;
+        final int col = j;
+        ParallelRange.run(0, m, work / p, new ParallelRange.Task() {
+          @Override
+          public void run(int from, int to) {
+            for (int i = from; i < to; i++) {
+              double[] Arowi = A[i];
+              double s = 0;
+              for (int k = 0; k < n; k++) {
+                s += Arowi[k] * Bcolj[k];
+              }
+              C[i][col] = s;
+            }
+          }
+        });
       }
+      return X;
     }
+
+    // add multiples of the rows of B, one block of columns at a time
+    ParallelRange.run(0, m, work, new ParallelRange.Task() {
+      @Override
+      public void run(int from, int to) {
+        for (int j0 = 0; j0 < p; j0 += BLOCK_SIZE) {
+          int j1 = Math.min(j0 + BLOCK_SIZE, p);
+          for (int i = from; i < to; i++) {
+            double[] Arowi = A[i];
+            double[] Crowi = C[i];
+            for (int k = 0; k < n; k++) {
+              double a = Arowi[k];
+              double[] Browk = B.A[k];
+              for (int j = j0; j < j1; j++) {
+                Crowi[j] += a * Browk[j];
+              }
+            }
+          }
+        }
+      }
+    });
     return X;
   }
 
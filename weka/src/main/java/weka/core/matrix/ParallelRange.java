@@ -0,0 +1,240 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * ParallelRange.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ *
+ */
+
+package weka.core.matrix;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import weka.core.RevisionHandler;
+import weka.core.RevisionUtils;
+
+/**
+ * Splits a range of rows or columns of a matrix into chunks that are
+ * processed by several threads, for the operations of the matrix classes in
+ * this package. The calling thread processes chunks as well, and the other
+ * threads are taken from a pool that is shared by all matrices. Operations
+ * with too little work, and operations started from within one of the pool's
+ * threads, are done in the calling thread alone.
+ * <p/>
+ *
+ * The tasks must compute each element the same way regardless of how the
+ * range is split, so that the results do not depend on the number of threads.
+ * The default number of threads is the number of available processors; it
+ * can be set with the system property <code>weka.core.matrix.numThreads</code>
+ * or with <code>setNumThreads(int)</code>.
+ *
+ * @version $Revision$
+ */
+public final class ParallelRange implements RevisionHandler {
+
+  /** the system property for the number of threads */
+  public static final String NUM_THREADS_PROPERTY = "weka.core.matrix.numThreads";
+
+  /** the number of multiply-adds below which no other threads are used */
+  public static final long MIN_WORK = 1L << 16;
+
+  /** the number of chunks per thread, for balancing the load */
+  protected static final int CHUNKS_PER_THREAD = 4;
+
+  /** the number of threads to use */
+  protected static volatile int m_NumThreads = defaultNumThreads();
+
+  /** the threads shared by all matrices, created when first needed */
+  protected static ExecutorService m_Executor;
+
+  /** whether the current thread belongs to the pool */
+  protected static final ThreadLocal<Boolean> m_InPool = new ThreadLocal<Boolean>();
+
+  /**
+   * A piece of work on a range of rows or columns.
+   */
+  public interface Task {
+
+    /**
+     * Processes the given range.
+     *
+     * @param from the first index
+     * @param to the index after the last one
+     */
+    void run(int from, int to);
+  }
+
+  /** no instances */
+  private ParallelRange() {
+  }
+
+  /**
+   * Determines the number of threads from the system property, or the number
+   * of available processors if it is not set.
+   *
+   * @return the number of threads
+   */
+  protected static int defaultNumThreads() {
+
+    int result = 0;
+    try {
+      result = Integer.parseInt(System.getProperty(NUM_THREADS_PROPERTY, "0"));
+    } catch (NumberFormatException e) {
+      // use the default
+    }
+    if (result <= 0) {
+      result = Runtime.getRuntime().availableProcessors();
+    }
+
+    return result;
+  }
+
+  /**
+   * Sets the number of threads matrix operations may use.
+   *
+   * @param value the number of threads, 0 for one per available processor
+   */
+  public static void setNumThreads(int value) {
+
+    m_NumThreads = (value > 0) ? value : Runtime.getRuntime()
+      .availableProcessors();
+  }
+
+  /**
+   * Returns the number of threads matrix operations may use.
+   *
+   * @return the number of threads
+   */
+  public static int getNumThreads() {
+
+    return m_NumThreads;
+  }
+
+  /**
+   * Returns the shared pool, creating it if necessary. Its threads are
+   * daemon threads, so they do not keep the virtual machine alive.
+   *
+   * @return the pool
+   */
+  protected static synchronized ExecutorService getExecutor() {
+
+    if (m_Executor == null) {
+      m_Executor = Executors.newCachedThreadPool(new ThreadFactory() {
+        protected final AtomicInteger m_Count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable r) {
+          Thread result = new Thread(new Runnable() {
+            @Override
+            public void run() {
+              m_InPool.set(Boolean.TRUE);
+              r.run();
+            }
+          }, "weka.core.matrix-" + m_Count.incrementAndGet());
+          result.setDaemon(true);
+          return result;
+        }
+      });
+    }
+
+    return m_Executor;
+  }
+
+  /**
+   * Runs a task on a range, with several threads if there is enough work.
+   *
+   * @param from the first index
+   * @param to the index after the last one
+   * @param work the approximate number of multiply-adds of the whole range
+   * @param task the work to do
+   */
+  public static void run(final int from, final int to, long work,
+    final Task task) {
+
+    int numThreads = Math.min(m_NumThreads, to - from);
+    if ((numThreads <= 1) || (work < MIN_WORK) || (m_InPool.get() != null)) {
+      if (from < to) {
+        task.run(from, to);
+      }
+      return;
+    }
+
+    final int chunkSize = Math.max(1, (to - from + CHUNKS_PER_THREAD
+      * numThreads - 1)
+      / (CHUNKS_PER_THREAD * numThreads));
+    final AtomicInteger next = new AtomicInteger(from);
+    Runnable worker = new Runnable() {
+      @Override
+      public void run() {
+        int start;
+        while ((start = next.getAndAdd(chunkSize)) < to) {
+          task.run(start, Math.min(start + chunkSize, to));
+        }
+      }
+    };
+
+    ExecutorService executor = getExecutor();
+    List<Future<?>> futures = new ArrayList<Future<?>>(numThreads - 1);
+    for (int t = 1; t < numThreads; t++) {
+      futures.add(executor.submit(worker));
+    }
+    RuntimeException failure = null;
+    try {
+      worker.run();
+    } catch (RuntimeException e) {
+      failure = e;
+      next.set(to);
+    }
+    for (Future<?> future : futures) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (failure == null) {
+          if (e.getCause() instanceof RuntimeException) {
+            failure = (RuntimeException) e.getCause();
+          } else if (e.getCause() instanceof Error) {
+            throw (Error) e.getCause();
+          } else {
+            failure = new RuntimeException(e.getCause());
+          }
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Returns the revision string.
+   *
+   * @return the revision
+   */
+  @Override
+  public String getRevision() {
+    return RevisionUtils.extract("$Revision$");
+  }
+}
@@ -62,7 +62,9 @@ public class QRDecomposition
   private double[] Rdiag;
 
   /** 
-   * QR Decomposition, computed by Householder reflections.
+   * QR Decomposition, computed by Householder reflections. For large
+   * matrices, the reflections are applied to the remaining columns by
+   * several threads.
    * @param A    Rectangular matrix
    */
   public QRDecomposition(Matrix A) {
@@ -91,21 +93,51 @@ public class QRDecomposition
         QR[k][k] += 1.0;
 
         // Apply transformation to remaining columns.
-        for (int j = k+1; j < n; j++) {
-          double s = 0.0; 
-          for (int i = k; i < m; i++) {
-            s += QR[i][k]*QR[i][j];
-          }
-          s = -s/QR[k][k];
-          for (int i = k; i < m; i++) {
-            QR[i][j] += s*QR[i][k];
-          }
-        }
+        final int col = k;
+        ParallelRange.run(k+1, n, 2L * (m - k) * (n - k - 1),
+          new ParallelRange.Task() {
+            public void run(int from, int to) {
+              reflect(QR, col, from, to);
+            }
+          });
       }
       Rdiag[k] = -nrm;
     }
   }
 
+  /**
+   * Applies the Householder reflection defined by a column of the
+   * decomposition to a range of columns of a matrix. The rows are traversed
+   * one after the other, accumulating the dot products of all columns at
+   * once, rather than column by column.
+   *
+   * @param X the matrix to transform, with as many rows as the decomposed
+   *          matrix
+   * @param k the column of the Householder vector
+   * @param from the first column of X to transform
+   * @param to the column after the last one
+   */
+  protected void reflect(double[][] X, int k, int from, int to) {
+    double[] s = new double[to - from];
+    for (int i = k; i < m; i++) {
+      double[] Xrowi = X[i];
+      double QRik = QR[i][k];
+      for (int j = from; j < to; j++) {
+        s[j - from] += QRik*Xrowi[j];
+      }
+    }
+    for (int j = from; j < to; j++) {
+      s[j - from] = -s[j - from]/QR[k][k];
+    }
+    for (int i = k; i < m; i++) {
+      double[] Xrowi = X[i];
+      double QRik = QR[i][k];
+      for (int j = from; j < to; j++) {
+        Xrowi[j] += s[j - from]*QRik;
+      }
+    }
+  }
+
   /** 
    * Is the matrix full rank?
    * @return     true if R, and hence A, has full rank.
@@ -203,32 +235,28 @@ public class QRDecomposition
 
     // Copy right hand side
     int nx = B.getColumnDimension();
-    double[][] X = B.getArrayCopy();
+    final double[][] X = B.getArrayCopy();
 
-    // Compute Y = transpose(Q)*B
-    for (int k = 0; k < n; k++) {
-      for (int j = 0; j < nx; j++) {
-        double s = 0.0; 
-        for (int i = k; i < m; i++) {
-          s += QR[i][k]*X[i][j];
+    // Each column of the right hand side is solved on its own.
+    ParallelRange.run(0, nx, 2L * m * n * nx, new ParallelRange.Task() {
+      public void run(int from, int to) {
+        // Compute Y = transpose(Q)*B
+        for (int k = 0; k < n; k++) {
+          reflect(X, k, from, to);
         }
-        s = -s/QR[k][k];
-        for (int i = k; i < m; i++) {
-          X[i][j] += s*QR[i][k];
-        }
-      }
-    }
-    // Solve R*X = Y;
-    for (int k = n-1; k >= 0; k--) {
-      for (int j = 0; j < nx; j++) {
-        X[k][j] /= Rdiag[k];
-      }
-      for (int i = 0; i < k; i++) {
-        for (int j = 0; j < nx; j++) {
-          X[i][j] -= X[k][j]*QR[i][k];
+        // Solve R*X = Y;
+        for (int k = n-1; k >= 0; k--) {
+          for (int j = from; j < to; j++) {
+            X[k][j] /= Rdiag[k];
+          }
+          for (int i = 0; i < k; i++) {
+            for (int j = from; j < to; j++) {
+              X[i][j] -= X[k][j]*QR[i][k];
+            }
+          }
         }
       }
-    }
+    });
     return (new Matrix(X,n,nx).getMatrix(0,n-1,0,nx-1));
   }
   
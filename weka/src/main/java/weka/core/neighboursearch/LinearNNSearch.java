@@ -20,19 +20,34 @@
 
 package weka.core.neighboursearch;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import weka.core.Attribute;
+import weka.core.EuclideanDistance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.NormalizableDistance;
 import weka.core.Option;
+import weka.core.Range;
 import weka.core.RevisionUtils;
 import weka.core.Utils;
 
 /**
  <!-- globalinfo-start -->
- * Class implementing the brute force search algorithm for nearest neighbour search.
+ * Class implementing the brute force search algorithm for nearest neighbour search.<br/>
+ * Batches of targets are searched for together if the Euclidean distance is used and there are no missing values: the training instances are then copied into a compact array of normalized values, which is scanned in tiles by several threads.
  * <p/>
  <!-- globalinfo-end -->
  * 
@@ -43,6 +58,12 @@ import weka.core.Utils;
  *  Skip identical instances (distances equal to zero).
  * </pre>
  * 
+ * <pre> -num-threads &lt;num&gt;
+ *  The number of threads to search batches of targets with.
+ *  (default 1 - i.e. no parallelism)
+ *  (use 0 to auto-detect number of cores)
+ * </pre>
+ * 
  <!-- options-end -->
  *
  * @author Ashraf M. Kibriya (amk14[at-the-rate]cs[dot]waikato[dot]ac[dot]nz)
@@ -62,6 +83,36 @@ public class LinearNNSearch
   /** Whether to skip instances from the neighbours that are identical to the query instance. */
   protected boolean m_SkipIdentical = false;
 
+  /** The number of threads to search batches of targets with. */
+  protected int m_NumThreads = 1;
+
+  /** The number of targets a thread processes together. */
+  protected static final int QUERY_BLOCK_SIZE = 16;
+
+  /** The number of values of the training instances in a tile. */
+  protected static final int TILE_SIZE = 4096;
+
+  /** The instances the packed values belong to, null if there are none. */
+  protected transient Instances m_PackedInstances;
+
+  /** The number of instances that have been packed. */
+  protected transient int m_PackedCount;
+
+  /** The normalized values of the packed attributes, one row per instance. */
+  protected transient double[] m_Packed;
+
+  /** The indices of the attributes that are packed. */
+  protected transient int[] m_PackedColumns;
+
+  /** Whether the packed attributes are nominal rather than numeric. */
+  protected transient boolean[] m_PackedNominal;
+
+  /** The minima the numeric attributes were normalized with. */
+  protected transient double[] m_PackedMin;
+
+  /** The widths the numeric attributes were normalized with. */
+  protected transient double[] m_PackedWidth;
+
   /**
    * Constructor. Needs setInstances(Instances) 
    * to be called before the class is usable.
@@ -105,6 +156,12 @@ public class LinearNNSearch
 	"\tSkip identical instances (distances equal to zero).\n",
 	"S", 1,"-S"));
     
+    result.add(new Option(
+	"\tThe number of threads to search batches of targets with.\n"
+	+ "\t(default 1 - i.e. no parallelism)\n"
+	+ "\t(use 0 to auto-detect number of cores)",
+	"num-threads", 1, "-num-threads <num>"));
+    
     result.addAll(Collections.list(super.listOptions()));
     
     return result.elements();
@@ -120,6 +177,12 @@ public class LinearNNSearch
    *  Skip identical instances (distances equal to zero).
    * </pre>
    * 
+   * <pre> -num-threads &lt;num&gt;
+   *  The number of threads to search batches of targets with.
+   *  (default 1 - i.e. no parallelism)
+   *  (use 0 to auto-detect number of cores)
+   * </pre>
+   * 
    <!-- options-end -->
    *
    * @param options 	the list of options as an array of strings
@@ -130,6 +193,12 @@ public class LinearNNSearch
 
     setSkipIdentical(Utils.getFlag('S', options));
     
+    String tmpStr = Utils.getOption("num-threads", options);
+    if (tmpStr.length() != 0)
+      setNumThreads(Integer.parseInt(tmpStr));
+    else
+      setNumThreads(1);
+    
     Utils.checkForRemainingOptions(options);
   }
 
@@ -145,6 +214,11 @@ public class LinearNNSearch
     
     if (getSkipIdentical())
       result.add("-S");
+    
+    if (getNumThreads() != 1) {
+      result.add("-num-threads");
+      result.add("" + getNumThreads());
+    }
 
     return result.toArray(new String[result.size()]);
   }
@@ -178,6 +252,35 @@ public class LinearNNSearch
     return m_SkipIdentical;
   }
 
+  /**
+   * Returns the tip text for this property.
+   * 
+   * @return 		tip text for this property suitable for
+   * 			displaying in the explorer/experimenter gui
+   */
+  public String numThreadsTipText() {
+    return "The number of threads to search batches of targets with "
+      + "(0 = number of cores).";
+  }
+  
+  /**
+   * Sets the number of threads to search batches of targets with.
+   * 
+   * @param value 	the number of threads, 0 for the number of cores
+   */
+  public void setNumThreads(int value) {
+    m_NumThreads = value;
+  }
+  
+  /**
+   * Gets the number of threads to search batches of targets with.
+   * 
+   * @return 		the number of threads
+   */
+  public int getNumThreads() {
+    return m_NumThreads;
+  }
+
   
   /** 
    * Returns the nearest instance in the current neighbourhood to the supplied
@@ -242,33 +345,409 @@ public class LinearNNSearch
       }
     }
     
-    Instances neighbours = new Instances(m_Instances, (heap.size()+heap.noOfKthNearest()));
     m_Distances = new double[heap.size()+heap.noOfKthNearest()];
-    int [] indices = new int[heap.size()+heap.noOfKthNearest()];
+    Instances neighbours = emptyHeap(heap, m_Distances);
+    
+    if(m_Stats!=null)
+      m_Stats.searchFinish();
+    
+    return neighbours;    
+  }
+  
+  /**
+   * Takes the neighbours out of a heap, nearest first.
+   * 
+   * @param heap	the heap with the neighbours
+   * @param distances	receives the post-processed distances of the 
+   * 			neighbours, must have the number of elements of the heap
+   * @return		the neighbours
+   * @throws Exception	if the heap is inconsistent
+   */
+  protected Instances emptyHeap(MyHeap heap, double[] distances) throws Exception {
+    Instances neighbours = new Instances(m_Instances, distances.length);
+    int [] indices = new int[distances.length];
     int i=1; MyHeapElement h;
     while(heap.noOfKthNearest()>0) {
       h = heap.getKthNearest();
       indices[indices.length-i] = h.index;
-      m_Distances[indices.length-i] = h.distance;
+      distances[indices.length-i] = h.distance;
       i++;
     }
     while(heap.size()>0) {
       h = heap.get();
       indices[indices.length-i] = h.index;
-      m_Distances[indices.length-i] = h.distance;
+      distances[indices.length-i] = h.distance;
       i++;
     }
     
-    m_DistanceFunction.postProcessDistances(m_Distances);
+    m_DistanceFunction.postProcessDistances(distances);
     
     for(int k=0; k<indices.length; k++) {
       neighbours.add(m_Instances.instance(indices[k]));
     }
     
-    if(m_Stats!=null)
-      m_Stats.searchFinish();
-    
-    return neighbours;    
+    return neighbours;
+  }
+  
+  /**
+   * Returns the k nearest instances in the current neighbourhood to each of
+   * the supplied instances. If the Euclidean distance is used, the training
+   * instances are copied into an array of normalized values, and consecutive
+   * targets whose values can be normalized with the same ranges are searched
+   * for together: blocks of targets are dealt out to the threads, which scan
+   * the training instances in tiles that stay in the cache while all targets
+   * of the block are compared with them. The training instances are
+   * considered in the same order, and the distances computed in the same way,
+   * as by kNearestNeighbours(Instance, int), so the results are the same.
+   * Targets with missing or sparse values are searched for one at a time.
+   *
+   * @param targets 	the instances to find the k nearest neighbours for
+   * @param kNN		the number of nearest neighbours to find
+   * @param addInfo	whether to call addInstanceInfo() for each target
+   * @return		the k nearest neighbours of each target
+   * @throws Exception  if the neighbours could not be found
+   */
+  public Instances[] kNearestNeighbours(Instances targets, int kNN,
+    boolean addInfo) throws Exception {
+
+    if ((m_Stats != null) || (m_Instances == null)
+      || (m_DistanceFunction.getClass() != EuclideanDistance.class))
+      return super.kNearestNeighbours(targets, kNN, addInfo);
+
+    Instances[] result = new Instances[targets.numInstances()];
+    double[][] distances = new double[targets.numInstances()][];
+    m_BatchDistances = null;
+
+    // the training instances the targets are, for hold-one-out evaluation
+    Map<Instance, Integer> training = new IdentityHashMap<Instance, Integer>();
+    for (int i = 0; i < m_Instances.numInstances(); i++)
+      training.put(m_Instances.instance(i), i);
+
+    List<double[]> pendingRows = new ArrayList<double[]>();
+    List<Integer> pendingTargets = new ArrayList<Integer>();
+    boolean packable = true;
+    ExecutorService executor = null;
+    try {
+      for (int t = 0; t < targets.numInstances(); t++) {
+        Instance target = targets.instance(t);
+        if (addInfo)
+          addInstanceInfo(target);
+
+        double[] row = null;
+        if (packable) {
+          if (!packingValid()) {
+            // the pending targets use the values packed with the old ranges
+            executor = search(pendingRows, pendingTargets, training, targets,
+              kNN, result, distances, executor);
+            packable = pack();
+          }
+          if (packable)
+            row = packRow(target);
+        }
+        if (row == null) {
+          result[t] = kNearestNeighbours(target, kNN);
+          distances[t] = getDistances().clone();
+        }
+        else {
+          pendingRows.add(row);
+          pendingTargets.add(t);
+        }
+      }
+      executor = search(pendingRows, pendingTargets, training, targets, kNN,
+        result, distances, executor);
+    }
+    finally {
+      if (executor != null)
+        executor.shutdownNow();
+    }
+
+    if (distances.length > 0)
+      m_Distances = distances[distances.length - 1];
+    m_BatchDistances = distances;
+
+    return result;
+  }
+
+  /**
+   * Checks whether the packed values are up to date, i.e., whether they have
+   * been computed from the current training instances with the current
+   * ranges of the distance function.
+   *
+   * @return		true if the packed values can be used
+   * @throws Exception	if the ranges are not available
+   */
+  protected boolean packingValid() throws Exception {
+    if ((m_Packed == null) || (m_PackedInstances != m_Instances)
+      || (m_PackedCount != m_Instances.numInstances()))
+      return false;
+
+    NormalizableDistance df = (NormalizableDistance) m_DistanceFunction;
+    if (!df.getDontNormalize()) {
+      double[][] ranges = df.getRanges();
+      for (int c = 0; c < m_PackedColumns.length; c++) {
+        if (!m_PackedNominal[c]
+          && ((ranges[m_PackedColumns[c]][NormalizableDistance.R_MIN] != m_PackedMin[c])
+          || (ranges[m_PackedColumns[c]][NormalizableDistance.R_WIDTH] != m_PackedWidth[c])))
+          return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Copies the normalized values of the training instances into a compact
+   * array. Only the numeric and nominal attributes the distance function
+   * uses are copied, as the others never contribute to a distance.
+   *
+   * @return		false if the training instances have missing or sparse
+   * 			values and can't be packed
+   * @throws Exception	if the ranges are not available
+   */
+  protected boolean pack() throws Exception {
+    m_Packed = null;
+    m_PackedInstances = null;
+
+    NormalizableDistance df = (NormalizableDistance) m_DistanceFunction;
+    double[][] ranges = df.getRanges();
+    Range active = new Range(df.getAttributeIndices());
+    active.setInvert(df.getInvertSelection());
+    active.setUpper(m_Instances.numAttributes() - 1);
+    int[] columns = new int[m_Instances.numAttributes()];
+    int numColumns = 0;
+    for (int j = 0; j < m_Instances.numAttributes(); j++) {
+      int type = m_Instances.attribute(j).type();
+      if ((j != m_Instances.classIndex()) && active.isInRange(j)
+        && ((type == Attribute.NUMERIC) || (type == Attribute.NOMINAL)))
+        columns[numColumns++] = j;
+    }
+    m_PackedColumns = new int[numColumns];
+    System.arraycopy(columns, 0, m_PackedColumns, 0, numColumns);
+    m_PackedNominal = new boolean[numColumns];
+    m_PackedMin = new double[numColumns];
+    m_PackedWidth = new double[numColumns];
+    for (int c = 0; c < numColumns; c++) {
+      m_PackedNominal[c] = m_Instances.attribute(m_PackedColumns[c]).isNominal();
+      m_PackedMin[c] = ranges[m_PackedColumns[c]][NormalizableDistance.R_MIN];
+      m_PackedWidth[c] = ranges[m_PackedColumns[c]][NormalizableDistance.R_WIDTH];
+    }
+
+    int numInstances = m_Instances.numInstances();
+    double[] packed = new double[numInstances * numColumns];
+    for (int i = 0; i < numInstances; i++) {
+      double[] row = packRow(m_Instances.instance(i));
+      if (row == null)
+        return false;
+      System.arraycopy(row, 0, packed, i * numColumns, numColumns);
+    }
+
+    m_Packed = packed;
+    m_PackedInstances = m_Instances;
+    m_PackedCount = numInstances;
+
+    return true;
+  }
+
+  /**
+   * Normalizes the packed attributes of an instance like the distance
+   * function does.
+   *
+   * @param inst	the instance
+   * @return		the values, null if the instance has missing values of
+   * 			packed attributes or is sparse
+   */
+  protected double[] packRow(Instance inst) {
+    if (inst.numValues() != inst.numAttributes())
+      return null;
+
+    boolean dontNormalize = ((NormalizableDistance) m_DistanceFunction).getDontNormalize();
+    double[] result = new double[m_PackedColumns.length];
+    for (int c = 0; c < result.length; c++) {
+      double value = inst.value(m_PackedColumns[c]);
+      if (Utils.isMissingValue(value))
+        return null;
+      if (m_PackedNominal[c] || dontNormalize)
+        result[c] = value;
+      else if (m_PackedWidth[c] == 0.0)
+        result[c] = 0;
+      else
+        result[c] = (value - m_PackedMin[c]) / m_PackedWidth[c];
+    }
+
+    return result;
+  }
+
+  /**
+   * Finds the neighbours of the pending targets with the packed values, and
+   * clears the lists of pending targets.
+   *
+   * @param rows	the packed values of the pending targets
+   * @param positions	the positions of the pending targets in the batch
+   * @param training	the indices of the training instances
+   * @param targets	the batch of targets
+   * @param kNN		the number of nearest neighbours to find
+   * @param result	receives the neighbours
+   * @param distances	receives the distances
+   * @param executor	the threads, null if none have been created yet
+   * @return		the threads, null if none have been created
+   * @throws Exception  if the neighbours could not be found
+   */
+  protected ExecutorService search(List<double[]> rows,
+    List<Integer> positions, Map<Instance, Integer> training,
+    Instances targets, final int kNN, final Instances[] result,
+    final double[][] distances, ExecutorService executor) throws Exception {
+
+    final int numQueries = rows.size();
+    if (numQueries == 0)
+      return executor;
+
+    final double[][] queries = rows.toArray(new double[numQueries][]);
+    final int[] position = new int[numQueries];
+    final int[] self = new int[numQueries];
+    for (int q = 0; q < numQueries; q++) {
+      position[q] = positions.get(q);
+      Integer index = training.get(targets.instance(position[q]));
+      self[q] = (index == null) ? -1 : index;
+    }
+    rows.clear();
+    positions.clear();
+
+    final int numBlocks = (numQueries + QUERY_BLOCK_SIZE - 1) / QUERY_BLOCK_SIZE;
+    int numThreads = (m_NumThreads > 0) ? m_NumThreads
+      : Runtime.getRuntime().availableProcessors();
+    numThreads = Math.min(numThreads, numBlocks);
+    final AtomicInteger nextBlock = new AtomicInteger();
+    Callable<Object> worker = new Callable<Object>() {
+      public Object call() throws Exception {
+        int block;
+        while ((block = nextBlock.getAndIncrement()) < numBlocks) {
+          int from = block * QUERY_BLOCK_SIZE;
+          int to = Math.min(from + QUERY_BLOCK_SIZE, numQueries);
+          searchBlock(queries, self, from, to, kNN, position, result, distances);
+        }
+        return null;
+      }
+    };
+
+    if (numThreads <= 1) {
+      worker.call();
+      return executor;
+    }
+
+    if (executor == null)
+      executor = Executors.newFixedThreadPool(numThreads);
+    List<Future<Object>> futures = new ArrayList<Future<Object>>(numThreads);
+    for (int t = 0; t < numThreads; t++)
+      futures.add(executor.submit(worker));
+    for (Future<Object> future : futures) {
+      try {
+        future.get();
+      }
+      catch (ExecutionException e) {
+        if (e.getCause() instanceof Exception)
+          throw (Exception) e.getCause();
+        throw e;
+      }
+    }
+
+    return executor;
+  }
+
+  /**
+   * Finds the neighbours of a block of targets. The training instances are
+   * processed in tiles, and the targets in the loop that is inside the loop
+   * over the tiles, so a tile is compared with all the targets of the block
+   * while it is in the cache. For each target, the training instances are
+   * considered in order, exactly as in kNearestNeighbours(Instance, int).
+   *
+   * @param queries	the packed values of the targets
+   * @param self	the index of the training instance that each target
+   * 			is, -1 if it is none of them
+   * @param from	the first target of the block
+   * @param to		the target after the last one of the block
+   * @param kNN		the number of nearest neighbours to find
+   * @param position	the positions of the targets in the batch
+   * @param result	receives the neighbours
+   * @param distances	receives the distances
+   * @throws Exception  if the neighbours could not be found
+   */
+  protected void searchBlock(double[][] queries, int[] self, int from, int to,
+    int kNN, int[] position, Instances[] result, double[][] distances)
+    throws Exception {
+
+    int numInstances = m_PackedCount;
+    int numColumns = m_PackedColumns.length;
+    int tileRows = Math.max(1, TILE_SIZE / Math.max(1, numColumns));
+    MyHeap[] heaps = new MyHeap[to - from];
+    int[] firstkNN = new int[to - from];
+    for (int q = from; q < to; q++)
+      heaps[q - from] = new MyHeap(kNN);
+
+    for (int start = 0; start < numInstances; start += tileRows) {
+      int end = Math.min(start + tileRows, numInstances);
+      for (int q = from; q < to; q++) {
+        MyHeap heap = heaps[q - from];
+        double[] query = queries[q];
+        for (int i = start; i < end; i++) {
+          if (i == self[q]) //for hold-one-out cross-validation
+            continue;
+          if (firstkNN[q - from] < kNN) {
+            double distance = distance(query, i, Double.POSITIVE_INFINITY);
+            if (distance == 0.0 && m_SkipIdentical && (i < numInstances - 1))
+              continue;
+            heap.put(i, distance);
+            firstkNN[q - from]++;
+          }
+          else {
+            MyHeapElement temp = heap.peek();
+            double distance = distance(query, i, temp.distance);
+            if (distance == 0.0 && m_SkipIdentical)
+              continue;
+            if (distance < temp.distance)
+              heap.putBySubstitute(i, distance);
+            else if (distance == temp.distance)
+              heap.putKthNearest(i, distance);
+          }
+        }
+      }
+    }
+
+    for (int q = from; q < to; q++) {
+      MyHeap heap = heaps[q - from];
+      double[] dist = new double[heap.size() + heap.noOfKthNearest()];
+      result[position[q]] = emptyHeap(heap, dist);
+      distances[position[q]] = dist;
+    }
+  }
+
+  /**
+   * Computes the squared Euclidean distance between a target and a training
+   * instance from their packed values, adding the squared differences in the
+   * order of the attributes like EuclideanDistance does.
+   *
+   * @param query	the packed values of the target
+   * @param index	the index of the training instance
+   * @param cutOffValue	the distance above which the computation may stop
+   * @return		the distance, or Double.POSITIVE_INFINITY if it is larger
+   * 			than cutOffValue
+   */
+  protected double distance(double[] query, int index, double cutOffValue) {
+    double[] packed = m_Packed;
+    boolean[] nominal = m_PackedNominal;
+    int offset = index * query.length;
+    double distance = 0;
+    for (int c = 0; c < query.length; c++) {
+      double diff;
+      if (nominal[c])
+        diff = ((int) query[c] != (int) packed[offset + c]) ? 1 : 0;
+      else
+        diff = query[c] - packed[offset + c];
+      distance += diff * diff;
+      if (distance > cutOffValue)
+        return Double.POSITIVE_INFINITY;
+    }
+
+    return distance;
   }
   
   /** 
@@ -305,6 +784,7 @@ public class LinearNNSearch
    */
   public void setInstances(Instances insts) throws Exception {
     m_Instances = insts;
+    m_Packed = null;
     m_DistanceFunction.setInstances(insts);
   }
   
@@ -541,6 +541,9 @@ public abstract class NearestNeighbourSearch implements Serializable,
   /** Should we measure Performance. */
   protected boolean m_MeasurePerformance = false;
 
+  /** The distances of the neighbours found by the last batch query. */
+  protected double[][] m_BatchDistances;
+
   /**
    * Constructor.
    */
@@ -728,6 +731,58 @@ public abstract class NearestNeighbourSearch implements Serializable,
   public abstract Instances kNearestNeighbours(Instance target, int k)
     throws Exception;
 
+  /**
+   * Returns the k nearest instances in the current neighbourhood to each of
+   * the supplied instances. The targets are processed in order, and if
+   * addInfo is true, addInstanceInfo() is called for each target just before
+   * its neighbours are found, as a classifier does when it predicts the
+   * targets one at a time. The result is the same as that of the
+   * corresponding calls of kNearestNeighbours(Instance, int), and the
+   * distances are available from getBatchDistances() afterwards.
+   * <p/>
+   * This implementation simply makes those calls. Subclasses may process
+   * several targets together.
+   * 
+   * @param targets the instances to find the k nearest neighbours for
+   * @param k the number of nearest neighbours to find
+   * @param addInfo whether to call addInstanceInfo() for each target
+   * @return the k nearest neighbours of each target
+   * @throws Exception if the neighbours could not be found
+   */
+  public Instances[] kNearestNeighbours(Instances targets, int k,
+    boolean addInfo) throws Exception {
+
+    Instances[] result = new Instances[targets.numInstances()];
+    double[][] distances = new double[targets.numInstances()][];
+    for (int i = 0; i < targets.numInstances(); i++) {
+      Instance target = targets.instance(i);
+      if (addInfo) {
+        addInstanceInfo(target);
+      }
+      result[i] = kNearestNeighbours(target, k);
+      distances[i] = getDistances().clone();
+    }
+    m_BatchDistances = distances;
+
+    return result;
+  }
+
+  /**
+   * Returns the distances of the neighbours found by the last call of
+   * kNearestNeighbours(Instances, int, boolean), one array per target. The
+   * arrays are ordered like the neighbours.
+   * 
+   * @return the distances
+   * @throws Exception if no batch of neighbours has been found yet
+   */
+  public double[][] getBatchDistances() throws Exception {
+    if (m_BatchDistances == null) {
+      throw new Exception("No distances available. Please call "
+        + "kNearestNeighbours(Instances, int, boolean) first.");
+    }
+    return m_BatchDistances;
+  }
+
   /**
    * Returns the distances of the k nearest neighbours. The kNearestNeighbours
    * or nearestNeighbour needs to be called first for this to work.
@@ -48,6 +48,9 @@ public class NonSparseToSparse extends Filter implements UnsupervisedFilter,
 
   protected boolean m_encodeMissingAsZero = false;
 
+  /** whether to output compactly encoded sparse instances */
+  protected boolean m_compact = false;
+
   /**
    * Returns a string describing this filter
    * 
@@ -92,6 +95,9 @@ public class NonSparseToSparse extends Filter implements UnsupervisedFilter,
 
     Vector<Option> result = new Vector<Option>();
     result.add(new Option("\tTreat missing values as zero.", "M", 0, "-M"));
+    result.add(new Option(
+      "\tOutput compact sparse instances (delta-coded indices,\n"
+        + "\tvalues in the narrowest exact type).", "C", 0, "-C"));
 
     return result.elements();
   }
@@ -100,6 +106,7 @@ public class NonSparseToSparse extends Filter implements UnsupervisedFilter,
   public void setOptions(String[] options) throws Exception {
 
     m_encodeMissingAsZero = Utils.getFlag('M', options);
+    m_compact = Utils.getFlag('C', options);
 
     Utils.checkForRemainingOptions(options);
   }
@@ -113,6 +120,10 @@ public class NonSparseToSparse extends Filter implements UnsupervisedFilter,
       result.add("-M");
     }
 
+    if (m_compact) {
+      result.add("-C");
+    }
+
     return result.toArray(new String[result.size()]);
   }
 
@@ -144,6 +155,37 @@ public class NonSparseToSparse extends Filter implements UnsupervisedFilter,
     return "Treat missing values in the same way as zeros.";
   }
 
+  /**
+   * Set whether to output compact sparse instances, which store their indices
+   * delta-coded and their values in the narrowest type that represents them
+   * exactly.
+   * 
+   * @param c true if compact sparse instances are to be output
+   */
+  public void setCompact(boolean c) {
+    m_compact = c;
+  }
+
+  /**
+   * Get whether compact sparse instances are output
+   * 
+   * @return true if compact sparse instances are output
+   */
+  public boolean getCompact() {
+    return m_compact;
+  }
+
+  /**
+   * Returns the tip text for this property
+   * 
+   * @return tip text for this property suitable for displaying in the
+   *         explorer/experimenter gui
+   */
+  public String compactTipText() {
+    return "Output compact sparse instances, which use less memory but are "
+      + "slower to modify.";
+  }
+
   /**
    * Sets the format of the input instances.
    * 
@@ -197,7 +239,11 @@ public class NonSparseToSparse extends Filter implements UnsupervisedFilter,
       instance = tempInst;
     }
 
-    newInstance = new SparseInstance(instance);
+    if (m_compact) {
+      newInstance = new CompactSparseInstance(instance);
+    } else {
+      newInstance = new SparseInstance(instance);
+    }
     newInstance.setDataset(instance.dataset());
     push(newInstance, false); // No need to copy
 
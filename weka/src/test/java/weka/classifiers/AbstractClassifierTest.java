@@ -20,6 +20,8 @@
 package weka.classifiers;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
 
 import junit.framework.TestCase;
 import weka.classifiers.evaluation.EvaluationUtils;
@@ -28,8 +30,11 @@ import weka.core.Attribute;
 import weka.core.CheckGOE;
 import weka.core.CheckOptionHandler;
 import weka.core.CheckScheme.PostProcessor;
+import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.OptionHandler;
+import weka.core.TestInstances;
+import weka.core.Utils;
 import weka.test.Regression;
 
 /**
@@ -927,6 +932,135 @@ public abstract class AbstractClassifierTest extends TestCase {
     return data;
   }
 
+  /**
+   * Generates data for comparing models built sequentially and in parallel.
+   * 
+   * @param numInstances the number of instances
+   * @param numNominal the number of nominal attributes
+   * @param numNumeric the number of numeric attributes
+   * @param classType the type of the class attribute
+   * @param numClasses the number of classes, if the class is nominal
+   * @param seed the seed for generating the data
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generateData(int numInstances, int numNominal,
+    int numNumeric, int classType, int numClasses, int seed) throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(numInstances);
+    gen.setNumNominal(numNominal);
+    gen.setNumNumeric(numNumeric);
+    gen.setClassType(classType);
+    gen.setNumClasses(numClasses);
+    gen.setSeed(seed);
+    return gen.generate();
+  }
+
+  /**
+   * Makes the given data harder to split up: the numeric attributes are
+   * rounded to quarters, which gives ties, about one in fifty values of the
+   * attributes other than the class is set missing, and the instances get
+   * fractional weights.
+   * 
+   * @param data the data to modify
+   * @param seed the seed for choosing the missing values and weights
+   * @return the modified data
+   */
+  protected Instances addTiesMissingValuesAndWeights(Instances data, long seed) {
+    Random random = new Random(seed);
+    for (Instance inst : data) {
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if (i == data.classIndex()) {
+          continue;
+        }
+        if (random.nextInt(50) == 0) {
+          inst.setMissing(i);
+        } else if (data.attribute(i).isNumeric()) {
+          inst.setValue(i, Math.round(inst.value(i) * 4) / 4.0);
+        }
+      }
+      inst.setWeight(0.5 + random.nextDouble());
+    }
+    return data;
+  }
+
+  /**
+   * Returns the description of a model that a model built in parallel has to
+   * reproduce. Derived classes can remove parts that legitimately differ,
+   * like statistics of caches.
+   * 
+   * @param model the built model
+   * @return the description, the output of <code>toString()</code> by default
+   */
+  protected String modelDescription(Classifier model) {
+    return model.toString();
+  }
+
+  /**
+   * Builds a copy of the given classifier as configured, and another copy
+   * with additional options that make it build in parallel, e.g.
+   * <code>-num-slots 3</code>, which replace the classifier's own values of
+   * these options. Checks that both copies predict the same for
+   * all training instances and, if no tolerance is given, that their
+   * descriptions are the same.
+   * 
+   * @param classifier the configured classifier, it is only copied
+   * @param parallelOptions the options, each with a value, to add for building
+   *          in parallel
+   * @param data the training data
+   * @param tolerance the largest difference allowed between predicted values
+   *          or probabilities, 0 for exactly the same models
+   * @return the models built sequentially and in parallel
+   * @throws Exception if the models can't be built
+   */
+  protected Classifier[] checkParallelBuild(Classifier classifier,
+    String[] parallelOptions, Instances data, double tolerance)
+    throws Exception {
+    String[] options = ((OptionHandler) classifier).getOptions();
+    String msg = "Models differ for " + Utils.joinOptions(options) + " and "
+      + Utils.joinOptions(parallelOptions);
+
+    Classifier sequential = AbstractClassifier.makeCopy(classifier);
+    sequential.buildClassifier(data);
+    Classifier parallel = AbstractClassifier.makeCopy(classifier);
+    String[] remaining = options.clone();
+    for (int i = 0; i < parallelOptions.length; i += 2) {
+      Utils.getOption(parallelOptions[i].substring(1), remaining);
+    }
+    ArrayList<String> combined = new ArrayList<String>();
+    for (String option : remaining) {
+      if (option.length() > 0) {
+        combined.add(option);
+      }
+    }
+    // in front of the options of a base classifier, if any
+    int end = combined.indexOf("--");
+    combined.addAll((end < 0) ? combined.size() : end,
+      Arrays.asList(parallelOptions));
+    ((OptionHandler) parallel).setOptions(combined.toArray(new String[0]));
+    parallel.buildClassifier(data);
+
+    if (tolerance == 0) {
+      assertEquals(msg, modelDescription(sequential),
+        modelDescription(parallel));
+    }
+    for (Instance inst : data) {
+      double[] expected = sequential.distributionForInstance(inst);
+      double[] actual = parallel.distributionForInstance(inst);
+      if (tolerance == 0) {
+        assertEquals(msg, Utils.arrayToString(expected),
+          Utils.arrayToString(actual));
+      } else {
+        assertEquals(msg, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+          assertEquals(msg, expected[i], actual[i], tolerance);
+        }
+      }
+    }
+
+    return new Classifier[] { sequential, parallel };
+  }
+
   /**
    * Runs a regression test -- this checks that the output of the tested object
    * matches that in a reference version. When this test is run without any
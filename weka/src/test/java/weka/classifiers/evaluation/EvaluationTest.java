@@ -19,13 +19,22 @@
 
 package weka.classifiers.evaluation;
 
+import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import weka.classifiers.rules.ZeroR;
+import weka.classifiers.trees.REPTree;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
 import weka.core.Instances;
+import weka.core.SubsetInstances;
+import weka.core.TestInstances;
 
 /**
  * Tests Evaluation. So far just does a simple regression test for
@@ -80,6 +89,156 @@ public class EvaluationTest extends TestCase {
     }
   }
 
+  /**
+   * Cross-validates REPTree on generated data with the given class type, once
+   * sequentially and with several threads, and compares the results.
+   *
+   * @param classType the type of the class attribute
+   */
+  protected void compareCrossValidation(int classType) throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(300);
+    test.setClassType(classType);
+    test.setNumNominal(3);
+    test.setNumNumeric(3);
+    Instances data = test.generate();
+
+    Evaluation sequential = new Evaluation(data);
+    StringBuffer sequentialModels = new StringBuffer();
+    sequential.crossValidateModel(new REPTree(), data, 10, new Random(1), sequentialModels);
+
+    Evaluation parallel = new Evaluation(data);
+    StringBuffer parallelModels = new StringBuffer();
+    parallel.setNumExecutionSlots(3);
+    parallel.crossValidateModel(new REPTree(), data, 10, new Random(1), parallelModels);
+
+    assertEquals("models differ", sequentialModels.toString(), parallelModels.toString());
+    assertEquals("number of predictions differs", sequential.predictions().size(), parallel.predictions().size());
+    for (int i = 0; i < sequential.predictions().size(); i++) {
+      assertEquals("prediction " + i + " differs", sequential.predictions().get(i).predicted(),
+        parallel.predictions().get(i).predicted(), 0.0);
+    }
+    assertEquals("correct differs", sequential.correct(), parallel.correct(), 0.0);
+    assertEquals("MAE differs", sequential.meanAbsoluteError(), parallel.meanAbsoluteError(), 1e-12);
+    assertEquals("RMSE differs", sequential.rootMeanSquaredError(), parallel.rootMeanSquaredError(), 1e-12);
+    assertEquals("RAE differs", sequential.relativeAbsoluteError(), parallel.relativeAbsoluteError(), 1e-9);
+    assertEquals("SF scheme entropy differs", sequential.SFSchemeEntropy(), parallel.SFSchemeEntropy(), 1e-9);
+    assertEquals("SF prior entropy differs", sequential.SFPriorEntropy(), parallel.SFPriorEntropy(), 1e-9);
+    if (classType == Attribute.NOMINAL) {
+      assertEquals("kappa differs", sequential.kappa(), parallel.kappa(), 1e-12);
+      assertEquals("confusion matrix differs", sequential.toMatrixString(), parallel.toMatrixString());
+      assertEquals("AUC differs", sequential.weightedAreaUnderROC(), parallel.weightedAreaUnderROC(), 1e-12);
+    }
+    else {
+      assertEquals("correlation differs", sequential.correlationCoefficient(),
+        parallel.correlationCoefficient(), 1e-12);
+    }
+
+    // the number of threads does not matter
+    Evaluation other = new Evaluation(data);
+    other.setNumExecutionSlots(4);
+    other.crossValidateModel(new REPTree(), data, 10, new Random(1));
+    assertEquals("results depend on number of threads", parallel.toSummaryString(true), other.toSummaryString(true));
+  }
+
+  /**
+   * Tests that cross-validating with several threads gives the same results
+   * as the sequential cross-validation.
+   */
+  public void testParallelCrossValidation() throws Exception {
+    compareCrossValidation(Attribute.NOMINAL);
+    compareCrossValidation(Attribute.NUMERIC);
+  }
+
+  /**
+   * A classifier that removes the first attribute from its training data.
+   */
+  protected static class ModifyingClassifier extends ZeroR {
+
+    /** for serialization */
+    private static final long serialVersionUID = -3316052712374102571L;
+
+    @Override
+    public void buildClassifier(Instances data) throws Exception {
+      data.deleteAttributeAt(0);
+      super.buildClassifier(data);
+    }
+  }
+
+  /**
+   * Tests that cross-validation copies the data by default, so classifiers
+   * may modify their training data without changing the given data.
+   */
+  public void testCrossValidationCopiesData() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(50);
+    test.setNumNominal(2);
+    test.setNumNumeric(2);
+    Instances data = test.generate();
+    String before = data.toString();
+
+    Evaluation eval = new Evaluation(data);
+    eval.crossValidateModel(new ModifyingClassifier(), data, 5, new Random(1));
+    assertEquals("data modified", before, data.toString());
+  }
+
+  /**
+   * Tests that cross-validating on views of the folds, as done for a
+   * SubsetInstances view, gives the same results as building and evaluating
+   * the models on copies of the folds, and leaves the data unchanged.
+   */
+  public void testCrossValidationOnViews() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(211);
+    test.setNumNominal(2);
+    test.setNumNumeric(2);
+    Instances data = test.generate();
+    String before = data.toString();
+
+    Evaluation views = new Evaluation(data);
+    views.crossValidateModel(new REPTree(), new SubsetInstances(data), 7,
+      new Random(3));
+    assertEquals("data modified", before, data.toString());
+
+    Instances copy = new Instances(data);
+    Random random = new Random(3);
+    copy.randomize(random);
+    copy.stratify(7);
+    Evaluation copies = new Evaluation(data);
+    for (int i = 0; i < 7; i++) {
+      Instances train = copy.trainCV(7, i, random);
+      copies.setPriors(train);
+      REPTree tree = new REPTree();
+      tree.buildClassifier(train);
+      copies.evaluateModel(tree, copy.testCV(7, i));
+    }
+    assertEquals("results differ", copies.toSummaryString(true),
+      views.toSummaryString(true));
+  }
+
+  /**
+   * Tests that the evaluation's own number of threads does not take the
+   * -num-slots option away from classifiers that have one.
+   */
+  public void testEvalSlotsOption() throws Exception {
+    TestInstances test = new TestInstances();
+    test.setNumInstances(100);
+    test.setNumNominal(2);
+    test.setNumNumeric(2);
+    File file = File.createTempFile("EvaluationTest", ".arff");
+    file.deleteOnExit();
+    FileWriter writer = new FileWriter(file);
+    writer.write(test.generate().toString());
+    writer.close();
+
+    String output = Evaluation.evaluateModel(new RandomForest(),
+      new String[]{"-t", file.getAbsolutePath(), "-x", "3", "-eval-slots", "2",
+        "-num-slots", "2", "-I", "5"});
+    assertTrue("-num-slots not passed on to the classifier",
+      output.indexOf("Options: -num-slots 2 -I 5") > -1);
+    file.delete();
+  }
+
   public static Test suite() {
     return new TestSuite(weka.classifiers.evaluation.EvaluationTest.class);
   }
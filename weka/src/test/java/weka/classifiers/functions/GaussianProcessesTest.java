@@ -21,6 +21,10 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.supportVector.RBFKernel;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.SelectedTag;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +48,229 @@ public class GaussianProcessesTest
     return new GaussianProcesses();
   }
 
+  /**
+   * Generates a regression dataset.
+   *
+   * @param numInstances the number of instances
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances regressionData(int numInstances) throws Exception {
+    return generateData(numInstances, 0, 4, Attribute.NUMERIC, 2, 7);
+  }
+
+  /**
+   * Checks that two models make the same predictions on the given data.
+   *
+   * @param msg the message for failures
+   * @param expected the reference model
+   * @param actual the model to check
+   * @param data the instances to predict
+   * @param tolerance the largest difference allowed
+   * @throws Exception if a prediction fails
+   */
+  protected void assertSamePredictions(String msg, GaussianProcesses expected,
+    GaussianProcesses actual, Instances data, double tolerance) throws Exception {
+    for (int i = 0; i < data.numInstances(); i++) {
+      assertEquals(msg + " (mean)", expected.classifyInstance(data.instance(i)),
+        actual.classifyInstance(data.instance(i)), tolerance);
+      assertEquals(msg + " (standard deviation)",
+        expected.getStandardDeviation(data.instance(i)),
+        actual.getStandardDeviation(data.instance(i)), tolerance);
+    }
+  }
+
+  /**
+   * Tests that inverting the kernel matrix with several threads gives the
+   * same model as the default sequential inversion.
+   */
+  public void testNumThreads() throws Exception {
+    Instances data = regressionData(300);
+    Classifier[] models = checkParallelBuild(new GaussianProcesses(),
+      new String[]{"-num-threads", "3"}, data, 1e-8);
+    GaussianProcesses parallel = (GaussianProcesses) models[1];
+    assertEquals("number of threads not set", 3, parallel.getNumThreads());
+    assertSamePredictions("threads changed model",
+      (GaussianProcesses) models[0], parallel, data, 1e-8);
+  }
+
+  /**
+   * Tests the inversions with several threads for the matrices of a sparse
+   * approximation, with more threads than instances, and with one thread
+   * per core.
+   */
+  public void testNumThreadsEdgeCases() throws Exception {
+    Instances data = regressionData(200);
+    GaussianProcesses sparse = new GaussianProcesses();
+    sparse.setNumInducingPoints(40);
+    Classifier[] models = checkParallelBuild(sparse,
+      new String[]{"-num-threads", "3"}, data, 1e-8);
+    assertSamePredictions("threads changed sparse model",
+      (GaussianProcesses) models[0], (GaussianProcesses) models[1], data, 1e-8);
+
+    data = regressionData(5);
+    models = checkParallelBuild(new GaussianProcesses(),
+      new String[]{"-num-threads", "8"}, data, 1e-8);
+    assertSamePredictions("more threads than instances changed model",
+      (GaussianProcesses) models[0], (GaussianProcesses) models[1], data, 1e-8);
+    checkParallelBuild(new GaussianProcesses(),
+      new String[]{"-num-threads", "0"}, regressionData(100), 1e-8);
+  }
+
+  /**
+   * Creates a model with an RBF kernel and without normalization whose
+   * inducing points are the first instances of the training data.
+   *
+   * @param numInducingPoints the number of inducing points, 0 for none
+   * @return the model
+   */
+  protected GaussianProcesses unfiltered(int numInducingPoints) {
+    GaussianProcesses result = new GaussianProcesses() {
+      @Override
+      protected int[] selectInducingPoints(Instances insts) {
+        int[] indices = new int[m_numInducingPoints];
+        for (int i = 0; i < indices.length; i++) {
+          indices[i] = i;
+        }
+        return indices;
+      }
+    };
+    result.setFilterType(new SelectedTag(GaussianProcesses.FILTER_NONE,
+      GaussianProcesses.TAGS_FILTER));
+    result.setNumInducingPoints(numInducingPoints);
+    RBFKernel kernel = new RBFKernel();
+    kernel.setGamma(1.0);
+    result.setKernel(kernel);
+    return result;
+  }
+
+  /**
+   * Tests that adding instances to a model gives the same model as building
+   * it from all instances, with and without inducing points.
+   */
+  public void testAddTrainingInstance() throws Exception {
+    Instances data = regressionData(120);
+    Instances initial = new Instances(data, 0, 100);
+
+    for (int numInducingPoints : new int[]{0, 30}) {
+      GaussianProcesses full = unfiltered(numInducingPoints);
+      full.buildClassifier(data);
+
+      GaussianProcesses updated = unfiltered(numInducingPoints);
+      updated.buildClassifier(initial);
+      for (int i = initial.numInstances(); i < data.numInstances(); i++) {
+        updated.addTrainingInstance(data.instance(i));
+      }
+      assertSamePredictions("updates differ from model built from scratch ("
+        + numInducingPoints + " inducing points)", full, updated, data, 1e-6);
+    }
+  }
+
+  /**
+   * Generates a regression dataset whose attributes are on very different
+   * scales, which makes the kernel matrix of a polynomial kernel without
+   * normalization badly conditioned.
+   *
+   * @param numInstances the number of instances
+   * @param factor the factor between the scales of the attributes
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances badlyScaledData(int numInstances, double factor)
+    throws Exception {
+    Instances data = regressionData(numInstances);
+    double[] scales = {1, factor, factor * factor, 2 * factor * factor, factor};
+    for (int i = 0; i < data.numInstances(); i++) {
+      for (int j = 0; j < data.numAttributes(); j++) {
+        data.instance(i).setValue(j,
+          Math.round(data.instance(i).value(j) * scales[j]));
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Tests that adding instances to a model with a badly conditioned kernel
+   * matrix gives the same predictions as building it from all instances.
+   */
+  public void testAddTrainingInstanceBadlyConditioned() throws Exception {
+    Instances data = badlyScaledData(200, 10);
+    String[] options = {"-N", "2"};
+
+    GaussianProcesses full = new GaussianProcesses();
+    full.setOptions(options.clone());
+    full.buildClassifier(data);
+
+    GaussianProcesses updated = new GaussianProcesses();
+    updated.setOptions(options.clone());
+    updated.buildClassifier(new Instances(data, 0, 100));
+    for (int i = 100; i < data.numInstances(); i++) {
+      updated.addTrainingInstance(data.instance(i));
+    }
+    for (int i = 0; i < data.numInstances(); i++) {
+      double expected = full.classifyInstance(data.instance(i));
+      assertEquals("updates differ from model built from scratch", expected,
+        updated.classifyInstance(data.instance(i)),
+        1e-6 * (1 + Math.abs(expected)));
+    }
+  }
+
+  /**
+   * Tests that more inducing points than a linear kernel needs, on badly
+   * scaled data, still give a model close to the exact one. The posterior
+   * covariance matrix of the inducing points is numerically singular here,
+   * and only the jitter keeps the model from failing.
+   */
+  public void testRedundantInducingPoints() throws Exception {
+    Instances data = badlyScaledData(200, 30);
+    String[] options = {"-N", "2"};
+
+    GaussianProcesses exact = new GaussianProcesses();
+    exact.setOptions(options.clone());
+    exact.buildClassifier(data);
+
+    GaussianProcesses sparse = new GaussianProcesses();
+    sparse.setOptions(options.clone());
+    sparse.setNumInducingPoints(50);
+    sparse.buildClassifier(data);
+
+    // the error of the sparse model must be small compared to the spread
+    // of the exact predictions
+    double mean = 0;
+    double[] expected = new double[data.numInstances()];
+    for (int i = 0; i < data.numInstances(); i++) {
+      expected[i] = exact.classifyInstance(data.instance(i));
+      mean += expected[i] / data.numInstances();
+    }
+    double error = 0;
+    double spread = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      double diff = sparse.classifyInstance(data.instance(i)) - expected[i];
+      error += diff * diff;
+      spread += (expected[i] - mean) * (expected[i] - mean);
+    }
+    assertTrue("sparse model far from exact one", error < 0.1 * spread);
+  }
+
+  /**
+   * Tests that a linear kernel, which can be represented exactly by a few
+   * inducing points, gives the same model with inducing points as without.
+   */
+  public void testInducingPoints() throws Exception {
+    Instances data = regressionData(300);
+
+    GaussianProcesses exact = new GaussianProcesses();
+    exact.buildClassifier(data);
+
+    GaussianProcesses sparse = new GaussianProcesses();
+    sparse.setOptions(new String[]{"-inducing-points", "40", "-num-threads", "2"});
+    assertEquals("number of inducing points not set", 40,
+      sparse.getNumInducingPoints());
+    sparse.buildClassifier(data);
+    assertSamePredictions("inducing points changed linear model", exact, sparse,
+      data, 1e-4);
+  }
+
   public static Test suite() {
     return new TestSuite(GaussianProcessesTest.class);
   }
@@ -21,6 +21,8 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +43,108 @@ public class LinearRegressionTest extends AbstractClassifierTest {
     return new LinearRegression();
   }
 
+  /**
+   * Generates a regression dataset with nominal and numeric attributes.
+   *
+   * @param numInstances the number of instances
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances regressionData(int numInstances) throws Exception {
+    return generateData(numInstances, 2, 5, Attribute.NUMERIC, 2, 11);
+  }
+
+  /**
+   * Builds a model with the given options.
+   *
+   * @param options the options
+   * @param data the training data
+   * @return the model
+   * @throws Exception if the model can't be built
+   */
+  protected LinearRegression build(String[] options, Instances data)
+    throws Exception {
+    LinearRegression result = new LinearRegression();
+    result.setOptions(options);
+    result.buildClassifier(data);
+    return result;
+  }
+
+  /**
+   * Checks that two arrays of coefficients agree.
+   *
+   * @param msg the message for failures
+   * @param expected the expected coefficients
+   * @param actual the coefficients to check
+   * @param tolerance the largest difference allowed
+   */
+  protected void assertCoefficients(String msg, double[] expected,
+    double[] actual, double tolerance) {
+    assertEquals(msg + " (length)", expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals(msg + " (" + i + ")", expected[i], actual[i], tolerance);
+    }
+  }
+
+  /**
+   * Tests that the models computed from the Gram matrix agree with the ones
+   * computed from the data, for all attribute selection methods.
+   */
+  public void testGramMatrix() throws Exception {
+    Instances data = regressionData(300);
+    for (String selection : new String[]{"0", "1", "2"}) {
+      LinearRegression expected = build(new String[]{"-S", selection,
+        "-additional-stats"}, data);
+      LinearRegression actual = build(new String[]{"-S", selection,
+        "-additional-stats", "-gram"}, data);
+      assertTrue("Gram matrix not used", actual.getUseGramMatrix());
+      assertCoefficients("selection " + selection, expected.coefficients(),
+        actual.coefficients(), 1e-8);
+      assertEquals("selection " + selection, expected.toString(),
+        actual.toString());
+    }
+  }
+
+  /**
+   * Tests that accumulating the Gram matrix with several threads gives the
+   * same model as one thread.
+   */
+  public void testNumThreads() throws Exception {
+    Instances data = regressionData(500);
+    LinearRegression gram = new LinearRegression();
+    gram.setUseGramMatrix(true);
+    Classifier[] models = checkParallelBuild(gram,
+      new String[]{"-num-threads", "3"}, data, 1e-8);
+    LinearRegression parallel = (LinearRegression) models[1];
+    assertEquals("number of threads not set", 3, parallel.getNumThreads());
+    assertCoefficients("threads changed model",
+      ((LinearRegression) models[0]).coefficients(), parallel.coefficients(),
+      1e-10);
+  }
+
+  /**
+   * Tests the Gram matrix accumulated with several threads for all attribute
+   * selection methods on data with missing values and fractional weights,
+   * and with more threads than instances.
+   */
+  public void testNumThreadsEdgeCases() throws Exception {
+    Instances data = addTiesMissingValuesAndWeights(regressionData(400), 12);
+    for (String selection : new String[]{"0", "1", "2"}) {
+      LinearRegression gram = new LinearRegression();
+      gram.setOptions(new String[]{"-S", selection, "-gram"});
+      Classifier[] models = checkParallelBuild(gram,
+        new String[]{"-num-threads", "4"}, data, 1e-8);
+      assertCoefficients("selection " + selection,
+        ((LinearRegression) models[0]).coefficients(),
+        ((LinearRegression) models[1]).coefficients(), 1e-10);
+    }
+
+    LinearRegression gram = new LinearRegression();
+    gram.setUseGramMatrix(true);
+    checkParallelBuild(gram, new String[]{"-num-threads", "16"},
+      regressionData(10), 1e-8);
+  }
+
   public static Test suite() {
     return new TestSuite(LinearRegressionTest.class);
   }
@@ -0,0 +1,195 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.functions;
+
+import java.util.Random;
+
+import weka.classifiers.AbstractClassifierTest;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+/**
+ * Tests LinearRegressionUpdateable. Run from the command line with:<p/>
+ * java weka.classifiers.functions.LinearRegressionUpdateableTest
+ *
+ * @version $Revision$
+ */
+public class LinearRegressionUpdateableTest extends AbstractClassifierTest {
+
+  public LinearRegressionUpdateableTest(String name) {
+    super(name);
+  }
+
+  /** Creates a default LinearRegressionUpdateable */
+  public Classifier getClassifier() {
+    return new LinearRegressionUpdateable();
+  }
+
+  /**
+   * Generates data with a numeric class.
+   *
+   * @param numNominal the number of nominal attributes
+   * @param missing the proportion of missing values, including the class
+   * @param weighted whether to give the instances random weights
+   * @param seed the seed for the data, the missing values and the weights
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generate(int numNominal, double missing,
+    boolean weighted, int seed) throws Exception {
+
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(300);
+    gen.setNumNominal(numNominal);
+    gen.setNumNominalValues(4);
+    gen.setNumNumeric(4);
+    gen.setClassType(Attribute.NUMERIC);
+    gen.setSeed(seed);
+    Instances data = gen.generate();
+
+    Random random = new Random(seed);
+    for (int i = 0; i < data.numInstances(); i++) {
+      Instance inst = data.instance(i);
+      for (int j = 0; j < data.numAttributes(); j++) {
+        if (random.nextDouble() < missing) {
+          inst.setMissing(j);
+        }
+      }
+      if (weighted) {
+        inst.setWeight(1 + random.nextInt(3));
+      }
+    }
+
+    return data;
+  }
+
+  /**
+   * Builds the updateable classifier on the first instances and adds the
+   * rest one at a time, and checks that the model is the same as the one
+   * built by LinearRegression from all instances.
+   *
+   * @param data the data
+   * @param initial the number of instances to build the classifier on
+   * @param batch the classifier built from all instances
+   * @throws Exception if a classifier fails
+   */
+  protected void checkUpdates(Instances data, int initial, LinearRegression batch)
+    throws Exception {
+
+    LinearRegressionUpdateable updateable = new LinearRegressionUpdateable();
+    updateable.buildClassifier(new Instances(data, 0, initial));
+    for (int i = initial; i < data.numInstances(); i++) {
+      updateable.updateClassifier(data.instance(i));
+    }
+
+    double[] expected = batch.coefficients();
+    double[] actual = updateable.coefficients();
+    assertEquals("length", expected.length, actual.length);
+    for (int i = 0; i < expected.length; i++) {
+      assertEquals("coefficient " + i + " (" + initial + " initial)",
+        expected[i], actual[i], 1e-8 * (1 + Math.abs(expected[i])));
+    }
+    for (int i = 0; i < data.numInstances(); i++) {
+      double prediction = batch.classifyInstance(data.instance(i));
+      assertEquals("prediction " + i + " (" + initial + " initial)",
+        prediction, updateable.classifyInstance(data.instance(i)),
+        1e-8 * (1 + Math.abs(prediction)));
+    }
+  }
+
+  /**
+   * Tests that adding instances one at a time gives the same model as
+   * computing the Gram matrix from all instances at once.
+   */
+  public void testUpdateClassifier() throws Exception {
+    Instances data = generate(0, 0, false, 5);
+
+    LinearRegression batch = new LinearRegression();
+    batch.setUseGramMatrix(true);
+    batch.buildClassifier(data);
+    for (int initial : new int[] { 0, 100 }) {
+      checkUpdates(data, initial, batch);
+    }
+  }
+
+  /**
+   * Tests that nominal attributes are encoded and missing values replaced
+   * as by LinearRegression with all instances, however few instances the
+   * classifier has been built on.
+   */
+  public void testNominalAndMissingValues() throws Exception {
+    for (int seed = 1; seed <= 3; seed++) {
+      Instances data = generate(3, 0.1, false, seed);
+
+      LinearRegression batch = new LinearRegression();
+      batch.buildClassifier(data);
+      for (int initial : new int[] { 0, 5, 150 }) {
+        checkUpdates(data, initial, batch);
+      }
+    }
+  }
+
+  /**
+   * Tests weighted instances with nominal attributes and missing values. The
+   * squared error that attributes are selected by is only weighted when the
+   * model is computed from the Gram matrix.
+   */
+  public void testWeightedInstances() throws Exception {
+    Instances data = generate(3, 0.1, true, 6);
+
+    LinearRegression batch = new LinearRegression();
+    batch.setUseGramMatrix(true);
+    batch.buildClassifier(data);
+    for (int initial : new int[] { 0, 5, 150 }) {
+      checkUpdates(data, initial, batch);
+    }
+  }
+
+  /**
+   * Tests that a model built on empty data predicts zero, and that the
+   * options to turn the checks off still work.
+   */
+  public void testEmptyData() throws Exception {
+    Instances data = generate(2, 0.1, false, 4);
+
+    LinearRegressionUpdateable updateable = new LinearRegressionUpdateable();
+    updateable.buildClassifier(new Instances(data, 0));
+    assertEquals("empty model", 0, updateable.classifyInstance(data.instance(0)),
+      0);
+    updateable.updateClassifier(data.instance(0));
+    assertEquals("model of one instance",
+      data.instance(0).classIsMissing() ? 0 : data.instance(0).classValue(),
+      updateable.classifyInstance(data.instance(1)), 1e-10);
+  }
+
+  public static Test suite() {
+    return new TestSuite(LinearRegressionUpdateableTest.class);
+  }
+
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -21,6 +21,9 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +44,56 @@ public class LogisticTest extends AbstractClassifierTest {
     return new Logistic();
   }
 
+  /**
+   * Tests that the model does not depend on the number of threads. The data
+   * is large enough for the passes over the instances and over the
+   * variables to be split between the threads.
+   */
+  public void testNumThreads() throws Exception {
+    Instances data = generateData(5000, 3, 10, Attribute.NOMINAL, 4, 3);
+    for (String threads : new String[]{"2", "3"}) {
+      Classifier[] models = checkParallelBuild(new Logistic(),
+        new String[]{"-num-threads", threads}, data, 0);
+      Logistic single = (Logistic) models[0];
+      Logistic parallel = (Logistic) models[1];
+      assertEquals("number of threads not set", Integer.parseInt(threads),
+        parallel.getNumThreads());
+      for (int i = 0; i < single.m_Par.length; i++) {
+        for (int j = 0; j < single.m_Par[i].length; j++) {
+          assertEquals("coefficient differs for " + threads + " threads",
+            single.m_Par[i][j], parallel.m_Par[i][j], 0.0);
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests the number of threads with two classes, i.e., a single set of
+   * coefficients, with fewer instances than threads, where the passes are
+   * not split, and with a ridge of 0 and one thread per core.
+   */
+  public void testNumThreadsEdgeCases() throws Exception {
+    checkParallelBuild(new Logistic(), new String[]{"-num-threads", "4"},
+      generateData(3000, 0, 30, Attribute.NOMINAL, 2, 4), 0);
+    checkParallelBuild(new Logistic(), new String[]{"-num-threads", "8"},
+      generateData(5, 1, 2, Attribute.NOMINAL, 3, 5), 0);
+    Logistic logistic = new Logistic();
+    logistic.setRidge(0);
+    checkParallelBuild(logistic, new String[]{"-num-threads", "0"},
+      generateData(2000, 2, 20, Attribute.NOMINAL, 3, 6), 0);
+  }
+
+  /**
+   * Tests that the number of threads is only output if it is not the
+   * default.
+   */
+  public void testNumThreadsOption() throws Exception {
+    Logistic logistic = new Logistic();
+    assertTrue(Utils.joinOptions(logistic.getOptions()).indexOf("-num-threads") < 0);
+    logistic.setNumThreads(0);
+    assertTrue(Utils.joinOptions(logistic.getOptions()).indexOf("-num-threads 0") >= 0);
+  }
+
   public static Test suite() {
     return new TestSuite(LogisticTest.class);
   }
@@ -21,6 +21,9 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -42,6 +45,81 @@ public class MultilayerPerceptronTest extends AbstractClassifierTest {
     return new MultilayerPerceptron();
   }
 
+  /**
+   * Returns the fraction of the given instances that is classified correctly.
+   *
+   * @param classifier	the classifier to use
+   * @param data	the instances to classify
+   * @return		the accuracy
+   * @throws Exception	if the instances can't be classified
+   */
+  protected double accuracy(Classifier classifier, Instances data) throws Exception {
+    int correct = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (classifier.classifyInstance(data.instance(i)) == data.instance(i).classValue())
+        correct++;
+    }
+    return (double) correct / data.numInstances();
+  }
+
+  /**
+   * Tests that mini-batches, also processed by several threads, learn
+   * networks that are about as accurate as the ones learned with updates by
+   * single instances, and that the threads do not make training
+   * nondeterministic.
+   */
+  public void testMiniBatches() throws Exception {
+    Instances data = generateData(500, 2, 6, Attribute.NOMINAL, 3, 3);
+
+    MultilayerPerceptron single = new MultilayerPerceptron();
+    single.setTrainingTime(100);
+    Classifier[] models = checkParallelBuild(single,
+      new String[]{"-mini-batch-size", "1", "-num-threads", "2"}, data, 0);
+    double expected = accuracy(models[0], data);
+
+    MultilayerPerceptron batch = new MultilayerPerceptron();
+    batch.setOptions(new String[]{"-N", "100", "-mini-batch-size", "5"});
+    assertEquals("mini-batch size not set", 5, batch.getMiniBatchSize());
+    batch.buildClassifier(data);
+    assertEquals("mini-batches less accurate", expected, accuracy(batch, data), 0.05);
+
+    MultilayerPerceptron parallel = new MultilayerPerceptron();
+    parallel.setOptions(new String[]{"-N", "100", "-mini-batch-size", "5", "-num-threads", "3"});
+    parallel.buildClassifier(data);
+    assertEquals("threads less accurate", expected, accuracy(parallel, data), 0.05);
+    MultilayerPerceptron again = new MultilayerPerceptron();
+    again.setOptions(parallel.getOptions());
+    again.buildClassifier(data);
+    assertEquals("threads not reproducible", parallel.toString(), again.toString());
+  }
+
+  /**
+   * Tests mini-batches larger than the training data, with a smaller last
+   * batch, and with more threads than instances in a batch. The networks
+   * must be reproducible and predict probability distributions.
+   */
+  public void testMiniBatchEdgeCases() throws Exception {
+    Instances data = generateData(103, 1, 3, Attribute.NOMINAL, 2, 4);
+    String[][] options = {{"-mini-batch-size", "500", "-num-threads", "3"},
+      {"-mini-batch-size", "10", "-num-threads", "3"},
+      {"-mini-batch-size", "2", "-num-threads", "4"}};
+    for (String[] opts : options) {
+      MultilayerPerceptron first = new MultilayerPerceptron();
+      first.setOptions(opts.clone());
+      first.setTrainingTime(20);
+      first.buildClassifier(data);
+      MultilayerPerceptron second = new MultilayerPerceptron();
+      second.setOptions(first.getOptions());
+      second.buildClassifier(data);
+      String msg = "options " + Utils.joinOptions(opts);
+      assertEquals(msg + " not reproducible", first.toString(), second.toString());
+      for (int i = 0; i < data.numInstances(); i++) {
+        double[] dist = first.distributionForInstance(data.instance(i));
+        assertEquals(msg + " gives no distribution", 1.0, Utils.sum(dist), 1e-10);
+      }
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(MultilayerPerceptronTest.class);
   }
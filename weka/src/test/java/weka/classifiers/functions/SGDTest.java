@@ -21,6 +21,9 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -46,6 +49,67 @@ public class SGDTest extends AbstractClassifierTest {
     return p;
   }
 
+  /**
+   * Returns the fraction of the given instances that is classified correctly.
+   *
+   * @param classifier	the classifier to use
+   * @param data	the instances to classify
+   * @return		the accuracy
+   * @throws Exception	if the instances can't be classified
+   */
+  protected double accuracy(Classifier classifier, Instances data) throws Exception {
+    int correct = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (classifier.classifyInstance(data.instance(i)) == data.instance(i).classValue())
+        correct++;
+    }
+    return (double) correct / data.numInstances();
+  }
+
+  /**
+   * Tests that mini-batches and concurrent updates learn models that are
+   * about as accurate as the ones learned with updates by single instances.
+   */
+  public void testMiniBatches() throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(1000);
+    gen.setNumNominal(0);
+    gen.setNumNumeric(10);
+    gen.setNumClasses(2);
+    gen.setSeed(5);
+    Instances data = gen.generate();
+
+    SGD single = new SGD();
+    single.setEpochs(20);
+    single.buildClassifier(data);
+    double expected = accuracy(single, data);
+
+    SGD batch = new SGD();
+    batch.setEpochs(20);
+    batch.setMiniBatchSize(1);
+    batch.setNumThreads(1);
+    batch.buildClassifier(data);
+    assertEquals("defaults changed the model", Utils.arrayToString(single.getWeights()),
+      Utils.arrayToString(batch.getWeights()));
+
+    batch.setOptions(new String[]{"-E", "20", "-mini-batch-size", "10"});
+    assertEquals("mini-batch size not set", 10, batch.getMiniBatchSize());
+    batch.buildClassifier(data);
+    assertEquals("mini-batches less accurate", expected, accuracy(batch, data), 0.05);
+    SGD again = new SGD();
+    again.setOptions(batch.getOptions());
+    again.buildClassifier(data);
+    assertEquals("mini-batches not reproducible", Utils.arrayToString(batch.getWeights()),
+      Utils.arrayToString(again.getWeights()));
+
+    SGD parallel = new SGD();
+    parallel.setEpochs(20);
+    parallel.setMiniBatchSize(10);
+    parallel.setNumThreads(4);
+    parallel.buildClassifier(data);
+    assertEquals("concurrent updates less accurate", expected, accuracy(parallel, data), 0.05);
+  }
+
   public static Test suite() {
     return new TestSuite(SGDTest.class);
   }
@@ -19,8 +19,14 @@
 
 package weka.classifiers.functions;
 
+import java.util.ArrayList;
+import java.util.Random;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +50,84 @@ public class SGDTextTest extends AbstractClassifierTest {
     return p;
   }
 
+  /**
+   * Generates documents of two classes whose vocabularies overlap.
+   *
+   * @param numDocs	the number of documents
+   * @param seed	the seed for the random number generator
+   * @return		the documents
+   */
+  protected Instances documents(int numDocs, int seed) {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("text", (ArrayList<String>) null));
+    ArrayList<String> labels = new ArrayList<String>();
+    labels.add("a");
+    labels.add("b");
+    atts.add(new Attribute("class", labels));
+    Instances result = new Instances("documents", atts, numDocs);
+    result.setClassIndex(1);
+    Random random = new Random(seed);
+    for (int i = 0; i < numDocs; i++) {
+      int cls = random.nextInt(2);
+      StringBuilder text = new StringBuilder();
+      for (int j = 0; j < 15; j++)
+        text.append(" w").append(cls * 20 + random.nextInt(30));
+      double[] values = new double[2];
+      values[0] = result.attribute(0).addStringValue(text.toString());
+      values[1] = cls;
+      result.add(new DenseInstance(1.0, values));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the fraction of the given documents that is classified correctly.
+   *
+   * @param classifier	the classifier to use
+   * @param data	the documents to classify
+   * @return		the accuracy
+   * @throws Exception	if the documents can't be classified
+   */
+  protected double accuracy(Classifier classifier, Instances data) throws Exception {
+    int correct = 0;
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (classifier.classifyInstance(data.instance(i)) == data.instance(i).classValue())
+        correct++;
+    }
+    return (double) correct / data.numInstances();
+  }
+
+  /**
+   * Tests that mini-batches and concurrent updates learn models that are
+   * about as accurate as the ones learned with updates by single documents.
+   */
+  public void testMiniBatches() throws Exception {
+    Instances train = documents(400, 1);
+    Instances test = documents(200, 2);
+
+    SGDText single = new SGDText();
+    single.setEpochs(10);
+    single.buildClassifier(train);
+    double expected = accuracy(single, test);
+    assertTrue("baseline not accurate", expected > 0.8);
+
+    SGDText batch = new SGDText();
+    batch.setOptions(new String[]{"-E", "10", "-mini-batch-size", "8"});
+    assertEquals("mini-batch size not set", 8, batch.getMiniBatchSize());
+    batch.buildClassifier(train);
+    assertEquals("mini-batches less accurate", expected, accuracy(batch, test), 0.05);
+    SGDText again = new SGDText();
+    again.setOptions(batch.getOptions());
+    again.buildClassifier(train);
+    assertEquals("mini-batches not reproducible", batch.toString(), again.toString());
+
+    SGDText parallel = new SGDText();
+    parallel.setEpochs(10);
+    parallel.setNumThreads(4);
+    parallel.buildClassifier(train);
+    assertEquals("concurrent updates less accurate", expected, accuracy(parallel, test), 0.05);
+  }
+
   public static Test suite() {
     return new TestSuite(SGDTextTest.class);
   }
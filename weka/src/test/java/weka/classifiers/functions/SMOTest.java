@@ -21,6 +21,10 @@ package weka.classifiers.functions;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.supportVector.RBFKernel;
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,116 @@ public class SMOTest extends AbstractClassifierTest {
     return new SMO();
   }
 
+  /**
+   * Removes the kernel statistics from the output, as these depend on the
+   * size of the cache.
+   */
+  protected String stripStatistics(String model) {
+    return model.replaceAll("Number of kernel evaluations.*\n", "");
+  }
+
+  /**
+   * Leaves the kernel statistics out of the models' descriptions.
+   */
+  @Override
+  protected String modelDescription(Classifier model) {
+    return stripStatistics(model.toString());
+  }
+
+  /**
+   * Checks that training the pairwise machines concurrently and sharing the
+   * kernel evaluations at prediction time don't change the model or the
+   * predictions.
+   */
+  public void testParallelBuild() throws Exception {
+    Instances data = generateData(300, 2, 5, Attribute.NOMINAL, 5, 3);
+
+    for (int setup = 0; setup < 3; setup++) {
+      SMO smo = new SMO();
+      if (setup > 0) {
+        smo.setKernel(new RBFKernel());
+      }
+      smo.setBuildCalibrationModels(setup == 2);
+      SMO sequential = (SMO) checkParallelBuild(smo,
+        new String[]{"-num-slots", "3"}, data, 0)[0];
+
+      double[][] dists = new double[data.numInstances()][];
+      for (int i = 0; i < data.numInstances(); i++) {
+        dists[i] = sequential.distributionForInstance(data.instance(i));
+      }
+
+      // evaluate each machine on its own
+      for (int i = 0; i < data.numClasses(); i++) {
+        for (int j = i + 1; j < data.numClasses(); j++) {
+          sequential.m_classifiers[i][j].m_rows = null;
+        }
+      }
+      for (int i = 0; i < data.numInstances(); i++) {
+        assertEquals("Setup " + setup + ": shared kernel values change distribution",
+          Utils.arrayToString(dists[i]),
+          Utils.arrayToString(sequential.distributionForInstance(data.instance(i))));
+      }
+    }
+  }
+
+  /**
+   * Checks the parallel build with a single machine, with a class that has no
+   * training instances, and with more slots than machines and a cache too
+   * small to be divided between them.
+   */
+  public void testParallelBuildEdgeCases() throws Exception {
+    checkParallelBuild(new SMO(), new String[]{"-num-slots", "4"},
+      generateData(100, 1, 3, Attribute.NOMINAL, 2, 5), 0);
+
+    Instances data = generateData(150, 1, 3, Attribute.NOMINAL, 4, 6);
+    for (int i = data.numInstances() - 1; i >= 0; i--) {
+      if (data.instance(i).classValue() == 2) {
+        data.delete(i);
+      }
+    }
+    SMO smo = new SMO();
+    RBFKernel kernel = new RBFKernel();
+    kernel.setCacheSize(3);
+    smo.setKernel(kernel);
+    checkParallelBuild(smo, new String[]{"-num-slots", "8"}, data, 0);
+  }
+
+  /**
+   * Checks how the cache of the kernel is divided between the slots.
+   */
+  public void testCacheSizeForSlots() {
+    assertEquals("full cache", 0, SMO.cacheSizeForSlots(0, 4));
+    assertEquals("no cache", -1, SMO.cacheSizeForSlots(-1, 4));
+    assertEquals("smallest cache", 2, SMO.cacheSizeForSlots(3, 8));
+    assertEquals("one slot", 250007, SMO.cacheSizeForSlots(250007, 1));
+    int size = SMO.cacheSizeForSlots(250007, 4);
+    assertTrue("cache too large", size <= 250007 / 4);
+    for (int k = 2; k * k <= size; k++) {
+      assertTrue("cache size " + size + " not prime", size % k != 0);
+    }
+  }
+
+  /**
+   * Checks that caching rows of the kernel matrix gives the same model as
+   * caching the full matrix, even if rows have to be discarded.
+   */
+  public void testRowCache() throws Exception {
+    Instances data = generateData(400, 0, 5, Attribute.NOMINAL, 3, 4);
+
+    SMO full = new SMO();
+    RBFKernel kernel = new RBFKernel();
+    kernel.setCacheSize(0);
+    full.setKernel(kernel);
+    full.buildClassifier(data);
+    SMO cached = new SMO();
+    kernel = new RBFKernel();
+    kernel.setRowCacheSize(0.05);
+    cached.setKernel(kernel);
+    cached.buildClassifier(data);
+    assertEquals("models differ", stripStatistics(full.toString()),
+      stripStatistics(cached.toString()));
+  }
+
   public static Test suite() {
     return new TestSuite(SMOTest.class);
   }
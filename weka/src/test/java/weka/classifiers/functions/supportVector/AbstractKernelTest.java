@@ -24,6 +24,8 @@ import weka.core.CheckGOE;
 import weka.core.CheckOptionHandler;
 import weka.core.Instances;
 import weka.core.OptionHandler;
+import weka.core.SparseInstance;
+import weka.core.TestInstances;
 import weka.core.CheckScheme.PostProcessor;
 import weka.test.Regression;
 
@@ -802,6 +804,50 @@ public abstract class AbstractKernelTest
     }
   }
   
+  /**
+   * Checks that the given kernel evaluates rows, and pairs of training
+   * instances, to exactly the same values as evaluating the instances one
+   * by one on sparse copies of the data, which the kernel cannot pack.
+   *
+   * @param kernel	the kernel to check
+   * @throws Exception	if the kernel cannot be built
+   */
+  protected void checkEvalRow(Kernel kernel) throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(200);
+    gen.setNumNominal(2);
+    gen.setNumNumeric(6);
+    gen.setSeed(7);
+    Instances data = gen.generate();
+    Instances sparse = new Instances(data, data.numInstances());
+    for (int i = 0; i < data.numInstances(); i++)
+      sparse.add(new SparseInstance(data.instance(i)));
+
+    Kernel dense = Kernel.makeCopy(kernel);
+    dense.buildKernel(data);
+    Kernel plain = Kernel.makeCopy(kernel);
+    plain.buildKernel(sparse);
+
+    for (int i = 0; i < 20; i++) {
+      for (int j = 0; j < data.numInstances(); j++)
+	assertEquals("value of (" + i + ", " + j + ") differs",
+	  plain.eval(i, j, sparse.instance(i)), dense.eval(i, j, data.instance(i)), 0.0);
+    }
+
+    int[] ids = new int[data.numInstances()];
+    for (int j = 0; j < ids.length; j++)
+      ids[j] = (j * 37) % ids.length;
+    double[] row = new double[ids.length + 1];
+    for (int i = 0; i < 20; i++) {
+      row[ids.length] = 42;
+      dense.evalRow(-1, data.instance(i), ids, ids.length, row);
+      for (int j = 0; j < ids.length; j++)
+	assertEquals("row value " + j + " of " + i + " differs",
+	  plain.eval(-1, ids[j], sparse.instance(i)), row[j], 0.0);
+      assertEquals("value beyond row modified", 42, row[ids.length], 0.0);
+    }
+  }
+
   /**
    * tests the listing of the options
    */
@@ -44,6 +44,13 @@ public class NormalizedPolyKernelTest
     return new NormalizedPolyKernel();
   }
 
+  /**
+   * Tests that rows are evaluated like single pairs of instances.
+   */
+  public void testEvalRow() throws Exception {
+    checkEvalRow(getKernel());
+  }
+
   public static Test suite() {
     return new TestSuite(NormalizedPolyKernelTest.class);
   }
@@ -21,6 +21,10 @@ package weka.classifiers.functions.supportVector;
 
 import weka.classifiers.functions.supportVector.AbstractKernelTest;
 import weka.classifiers.functions.supportVector.Kernel;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+import java.util.Random;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +48,56 @@ public class RBFKernelTest
     return new RBFKernel();
   }
 
+  /**
+   * Tests that the row cache returns the same values as the kernel and
+   * discards rows once its memory is used up.
+   */
+  public void testRowCache() throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(2000);
+    gen.setNumNominal(0);
+    gen.setNumNumeric(5);
+    gen.setSeed(4);
+    Instances data = gen.generate();
+
+    RBFKernel plain = new RBFKernel();
+    plain.setCacheSize(-1);
+    plain.buildKernel(data);
+    RBFKernel cached = new RBFKernel();
+    // room for about 30 rows
+    cached.setRowCacheSize(0.5);
+    cached.buildKernel(data);
+    assertEquals("rows that fit", 32, cached.getRowCache().maxRows());
+
+    Random random = new Random(5);
+    for (int n = 0; n < 20000; n++) {
+      int i = random.nextInt(50);
+      int j = random.nextInt(data.numInstances());
+      if (random.nextBoolean()) {
+        i = j;
+        j = random.nextInt(50);
+      }
+      // the row cache evaluates the larger index first
+      int max = Math.max(i, j);
+      assertEquals("value differs", plain.eval(max, i + j - max, data.instance(max)),
+        cached.eval(i, j, data.instance(i)), 0.0);
+    }
+    assertEquals("evaluations miscounted", 20000, cached.numEvals() + cached.numCacheHits());
+    assertTrue("no cache hits", cached.numCacheHits() > 0);
+    assertTrue("no rows discarded", cached.getRowCache().numEvictions() > 0);
+    assertEquals("cache not full", 32, cached.getRowCache().numRows());
+
+    cached.clean();
+    assertNull("cache not freed", cached.getRowCache());
+  }
+
+  /**
+   * Tests that rows are evaluated like single pairs of instances.
+   */
+  public void testEvalRow() throws Exception {
+    checkEvalRow(getKernel());
+  }
+
   public static Test suite() {
     return new TestSuite(RBFKernelTest.class);
   }
@@ -21,6 +21,12 @@ package weka.classifiers.meta;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.evaluation.Evaluation;
+import weka.classifiers.trees.DecisionStump;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +47,114 @@ public class AdaBoostM1Test extends AbstractClassifierTest {
     return new AdaBoostM1();
   }
 
+  /**
+   * Generates data with more instances than fit into one block of the passes
+   * over the training data.
+   *
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generate() throws Exception {
+    return generateData(3000, 2, 3, Attribute.NOMINAL, 3, 5);
+  }
+
+  /**
+   * Tests that the models do not depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    Instances data = generate();
+    String[][] options = {{}, {"-Q"}, {"-P", "90"}};
+    for (String[] opts : options) {
+      AdaBoostM1 boost = new AdaBoostM1();
+      boost.setOptions(opts);
+      checkParallelBuild(boost, new String[]{"-num-slots", "3"}, data, 0);
+    }
+  }
+
+  /**
+   * Tests the execution slots with data that fits exactly into one block,
+   * with a last block of a single instance, and with one slot per core.
+   */
+  public void testExecutionSlotsEdgeCases() throws Exception {
+    for (int numInstances : new int[]{AdaBoostM1.BLOCK_SIZE,
+      AdaBoostM1.BLOCK_SIZE + 1}) {
+      Instances data = generateData(numInstances, 2, 3, Attribute.NOMINAL, 3, 6);
+      checkParallelBuild(new AdaBoostM1(), new String[]{"-num-slots", "3"},
+        data, 0);
+    }
+    checkParallelBuild(new AdaBoostM1(), new String[]{"-num-slots", "0"},
+      generate(), 0);
+  }
+
+  /**
+   * Tests that representing resampled copies using weights gives the same
+   * decision stumps as explicit copies.
+   */
+  public void testRepresentCopiesUsingWeights() throws Exception {
+    Instances data = generate();
+    AdaBoostM1 copies = new AdaBoostM1();
+    copies.setUseResampling(true);
+    copies.buildClassifier(data);
+    AdaBoostM1 weights = new AdaBoostM1();
+    weights.setUseResampling(true);
+    weights.setRepresentCopiesUsingWeights(true);
+    weights.buildClassifier(data);
+    assertEquals(copies.toString(), weights.toString());
+  }
+
+  /**
+   * Tests that the error rate and the new weights are exactly those of a
+   * sequential pass over the instances, as computed before the passes were
+   * split into blocks, for one and for several execution slots.
+   */
+  public void testSequentialSums() throws Exception {
+    Instances data = generate();
+    for (int i = 0; i < data.numInstances(); i++) {
+      data.instance(i).setWeight(1 + (i % 7) / 3.0);
+    }
+    DecisionStump stump = new DecisionStump();
+    stump.buildClassifier(data);
+    Evaluation evaluation = new Evaluation(data);
+    evaluation.evaluateModel(stump, data);
+    double reweight = 1.7;
+    Instances expected = new Instances(data);
+    double oldSumOfWeights = expected.sumOfWeights();
+    for (Instance instance : expected) {
+      if (!Utils.eq(stump.classifyInstance(instance), instance.classValue())) {
+        instance.setWeight(instance.weight() * reweight);
+      }
+    }
+    double newSumOfWeights = expected.sumOfWeights();
+    for (Instance instance : expected) {
+      instance.setWeight(instance.weight() * oldSumOfWeights / newSumOfWeights);
+    }
+
+    for (int slots : new int[]{1, 3}) {
+      AdaBoostM1 boost = new AdaBoostM1();
+      boost.setNumExecutionSlots(slots);
+      Instances training = new Instances(data);
+      boolean[] misclassified = new boolean[training.numInstances()];
+      assertEquals("Error rate differs for " + slots + " slots",
+        evaluation.errorRate(), boost.errorRate(stump, training, misclassified), 0);
+      boost.setWeights(training, reweight, misclassified);
+      for (int i = 0; i < training.numInstances(); i++) {
+        assertEquals("Weight differs for " + slots + " slots",
+          expected.instance(i).weight(), training.instance(i).weight(), 0);
+      }
+    }
+  }
+
+  /**
+   * Tests that the number of execution slots is only output if it is not
+   * the default.
+   */
+  public void testNumSlotsOption() throws Exception {
+    AdaBoostM1 boost = new AdaBoostM1();
+    assertTrue(Utils.joinOptions(boost.getOptions()).indexOf("-num-slots") < 0);
+    boost.setNumExecutionSlots(4);
+    assertTrue(Utils.joinOptions(boost.getOptions()).indexOf("-num-slots 4") >= 0);
+  }
+
   public static Test suite() {
     return new TestSuite(AdaBoostM1Test.class);
   }
@@ -21,6 +21,10 @@ package weka.classifiers.meta;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +45,62 @@ public class BaggingTest extends AbstractClassifierTest {
     return new Bagging();
   }
 
+  /**
+   * Checks that REPTrees built with a presorted index are the same as the
+   * ones built on copies of the data.
+   */
+  public void testPresortedIndex() throws Exception {
+    Instances data = generateData(2000, 2, 6, Attribute.NOMINAL, 2, 7);
+
+    String[][] options = {{"-represent-copies-using-weights", "-O"},
+      {"-represent-copies-using-weights", "-P", "50", "-num-slots", "2"}};
+    for (String[] opts : options) {
+      Bagging copies = new Bagging();
+      copies.setOptions(opts.clone());
+      copies.setPrintClassifiers(true);
+      copies.buildClassifier(data);
+      Bagging presorted = new Bagging();
+      presorted.setOptions(opts.clone());
+      presorted.setPrintClassifiers(true);
+      presorted.setUsePresortedIndex(true);
+      presorted.buildClassifier(data);
+      String msg = "Models differ for " + Utils.joinOptions(opts);
+      assertEquals(msg, copies.toString(), presorted.toString());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(msg, Utils.arrayToString(copies.distributionForInstance(data.instance(i))),
+          Utils.arrayToString(presorted.distributionForInstance(data.instance(i))));
+      }
+    }
+
+    // with missing values the weights of the instances that are split up are
+    // summed in a different order, so only the predictions are compared
+    data = addTiesMissingValuesAndWeights(data, 8);
+    Bagging copies = new Bagging();
+    copies.setRepresentCopiesUsingWeights(true);
+    copies.buildClassifier(data);
+    Bagging presorted = new Bagging();
+    presorted.setRepresentCopiesUsingWeights(true);
+    presorted.setUsePresortedIndex(true);
+    presorted.buildClassifier(data);
+    int same = 0;
+    for (Instance inst : data) {
+      if (copies.classifyInstance(inst) == presorted.classifyInstance(inst)) {
+        same++;
+      }
+    }
+    assertTrue("Predictions differ for " + (data.numInstances() - same) + " instances",
+      same >= 0.98 * data.numInstances());
+
+    Bagging bagging = new Bagging();
+    bagging.setUsePresortedIndex(true);
+    try {
+      bagging.buildClassifier(data);
+      fail("Presorted index used without representing copies using weights");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(BaggingTest.class);
   }
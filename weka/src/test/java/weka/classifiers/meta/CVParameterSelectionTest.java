@@ -19,8 +19,15 @@
 
 package weka.classifiers.meta;
 
+import java.util.Random;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.lazy.IBk;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +48,151 @@ public class CVParameterSelectionTest extends AbstractClassifierTest {
     return new CVParameterSelection();
   }
 
+  /**
+   * Configures CVParameterSelection optimising the number of neighbours of
+   * IBk with 10-fold cross-validation.
+   *
+   * @param level the significance level for racing
+   * @return the configured classifier
+   * @throws Exception if the parameter can't be added
+   */
+  protected CVParameterSelection configure(double level) throws Exception {
+
+    CVParameterSelection selection = new CVParameterSelection();
+    selection.setClassifier(new IBk());
+    selection.addCVParameter("K 1 15 8");
+    selection.setNumFolds(10);
+    selection.setRacingSignificanceLevel(level);
+    return selection;
+  }
+
+  /**
+   * Builds CVParameterSelection as configured by configure().
+   *
+   * @param slots the number of execution slots
+   * @param level the significance level for racing
+   * @param data the training data
+   * @return the built classifier
+   * @throws Exception if the classifier can't be built
+   */
+  protected CVParameterSelection build(int slots, double level, Instances data)
+    throws Exception {
+
+    CVParameterSelection selection = configure(level);
+    selection.setNumExecutionSlots(slots);
+    selection.buildClassifier(data);
+    return selection;
+  }
+
+  /**
+   * Generates the data for the tests, with noise in the class.
+   *
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generate() throws Exception {
+    Instances data = generateData(300, 0, 4, Attribute.NOMINAL, 3, 3);
+    Random random = new Random(7);
+    for (Instance inst : data) {
+      if (random.nextInt(4) == 0) {
+        inst.setClassValue(random.nextInt(3));
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Tests that the selected parameters do not depend on the number of
+   * execution slots, with and without racing.
+   */
+  public void testExecutionSlots() throws Exception {
+    Instances data = generate();
+    for (double level : new double[]{0, 0.05}) {
+      Classifier[] models = checkParallelBuild(configure(level),
+        new String[]{"-num-slots", "3"}, data, 0);
+      assertEquals("Selected options differ",
+        Utils.joinOptions(((CVParameterSelection) models[0]).getBestClassifierOptions()),
+        Utils.joinOptions(((CVParameterSelection) models[1]).getBestClassifierOptions()));
+    }
+  }
+
+  /**
+   * Tests racing with a single setting and more slots than settings, and
+   * with fewer folds than racing needs before it eliminates settings.
+   */
+  public void testRacingEdgeCases() throws Exception {
+    Instances data = generate();
+    CVParameterSelection single = new CVParameterSelection();
+    single.setClassifier(new IBk());
+    single.addCVParameter("K 3 3 1");
+    single.setRacingSignificanceLevel(0.05);
+    single = (CVParameterSelection) checkParallelBuild(single,
+      new String[]{"-num-slots", "8"}, data, 0)[1];
+    assertEquals("Setting eliminated", -1, single.m_EliminatedAfter[0]);
+
+    CVParameterSelection few = configure(0.05);
+    few.setNumFolds(CrossValidationRace.MIN_FOLDS - 1);
+    few.setNumExecutionSlots(3);
+    few.buildClassifier(data);
+    for (int i = 0; i < few.m_EliminatedAfter.length; i++) {
+      assertEquals("Eliminated before the minimum number of folds", -1,
+        few.m_EliminatedAfter[i]);
+    }
+  }
+
+  /**
+   * Tests that racing selects the same parameters as the full
+   * cross-validation.
+   */
+  public void testRacing() throws Exception {
+    Instances data = generate();
+    CVParameterSelection full = build(1, 0, data);
+    CVParameterSelection raced = build(3, 0.05, data);
+    assertEquals("Selected options differ",
+      Utils.joinOptions(full.getBestClassifierOptions()),
+      Utils.joinOptions(raced.getBestClassifierOptions()));
+  }
+
+  /**
+   * Tests that racing eliminates at least one setting and that the eliminations happen
+   * after at least the minimum number of folds.
+   */
+  public void testElimination() throws Exception {
+    Instances data = generate();
+    CVParameterSelection full = build(1, 0, data);
+    for (int i = 0; i < full.m_EliminatedAfter.length; i++) {
+      assertEquals("Eliminated without racing", -1, full.m_EliminatedAfter[i]);
+    }
+    CVParameterSelection raced = build(3, 0.05, data);
+    int eliminated = 0;
+    for (int i = 0; i < raced.m_EliminatedAfter.length; i++) {
+      if (raced.m_EliminatedAfter[i] >= 0) {
+        assertTrue("Eliminated too early",
+          raced.m_EliminatedAfter[i] >= CrossValidationRace.MIN_FOLDS);
+        eliminated++;
+      }
+    }
+    assertTrue("Nothing eliminated", eliminated > 0);
+  }
+
+  /**
+   * Tests the options for the execution slots and the significance level.
+   */
+  public void testRaceOptions() throws Exception {
+    CVParameterSelection classifier = new CVParameterSelection();
+    String options = Utils.joinOptions(classifier.getOptions());
+    assertTrue("Default slots output", options.indexOf("-num-slots") < 0);
+    classifier.setNumExecutionSlots(2);
+    options = Utils.joinOptions(classifier.getOptions());
+    assertTrue("Slots not output", options.indexOf("-num-slots 2") >= 0);
+    try {
+      classifier.setOptions(new String[]{"-race", "1"});
+      fail("Significance level of 1 accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(CVParameterSelectionTest.class);
   }
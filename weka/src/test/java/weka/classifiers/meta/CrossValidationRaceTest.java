@@ -0,0 +1,189 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.classifiers.meta;
+
+import java.util.Random;
+
+import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.lazy.IBk;
+import weka.classifiers.rules.ZeroR;
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.TestInstances;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests CrossValidationRace. Run from the command line with:<p/>
+ * java weka.classifiers.meta.CrossValidationRaceTest
+ *
+ * @version $Revision$
+ */
+public class CrossValidationRaceTest
+  extends TestCase {
+
+  /** the candidates, ZeroR being much worse than the others */
+  protected Classifier[] m_Candidates;
+
+  /** the data, with noise in the class */
+  protected Instances m_Instances;
+
+  /**
+   * Constructs the <code>CrossValidationRaceTest</code>.
+   *
+   * @param name 	the name of the test
+   */
+  public CrossValidationRaceTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception 	if an error occurs
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Candidates = new Classifier[]{new J48(), new IBk(), new NaiveBayes(),
+      new ZeroR()};
+
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(300);
+    gen.setNumNominal(3);
+    gen.setNumNumeric(3);
+    gen.setClassType(Attribute.NOMINAL);
+    gen.setNumClasses(2);
+    gen.setSeed(5);
+    m_Instances = gen.generate();
+    Random random = new Random(7);
+    for (Instance inst : m_Instances) {
+      if (random.nextInt(4) == 0) {
+        inst.setClassValue(random.nextInt(2));
+      }
+    }
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception 	if an error occurs
+   */
+  protected void tearDown() throws Exception {
+    m_Candidates = null;
+    m_Instances = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * Runs a race on the test data with 10 folds.
+   *
+   * @param slots	the number of execution slots
+   * @param level	the significance level
+   * @return		the race, after it has been run
+   * @throws Exception	if the race fails
+   */
+  protected CrossValidationRace race(int slots, double level) throws Exception {
+    CrossValidationRace result = new CrossValidationRace(m_Instances, 10);
+    result.setNumExecutionSlots(slots);
+    result.setSignificanceLevel(level);
+    result.race(m_Candidates);
+    return result;
+  }
+
+  /**
+   * Tests that racing eliminates the worst candidate after a few folds, and
+   * that the remaining candidates are evaluated as in the full race.
+   *
+   * @throws Exception	if an error occurs
+   */
+  public void testElimination() throws Exception {
+    CrossValidationRace full = race(1, 0);
+    CrossValidationRace raced = race(3, 0.05);
+
+    int best = -1;
+    int eliminated = 0;
+    for (int i = 0; i < m_Candidates.length; i++) {
+      assertEquals("candidate " + i + " eliminated without racing", -1,
+        full.eliminatedAfter(i));
+      if ((best < 0) || (full.errorRate(i) < full.errorRate(best))) {
+        best = i;
+      }
+      if (raced.eliminatedAfter(i) >= 0) {
+        eliminated++;
+        assertTrue("candidate " + i + " eliminated too early",
+          raced.eliminatedAfter(i) >= CrossValidationRace.MIN_FOLDS);
+        assertTrue("candidate " + i + " eliminated too late",
+          raced.eliminatedAfter(i) < full.numFolds());
+      } else {
+        assertEquals("error rate of candidate " + i, full.errorRate(i),
+          raced.errorRate(i), 1e-12);
+      }
+    }
+    assertTrue("no candidate eliminated", eliminated > 0);
+    assertEquals("ZeroR not eliminated", CrossValidationRace.MIN_FOLDS,
+      raced.eliminatedAfter(m_Candidates.length - 1));
+    assertEquals("best candidate eliminated", -1, raced.eliminatedAfter(best));
+  }
+
+  /**
+   * Tests that only 0 and levels strictly between 0 and 1 are accepted.
+   */
+  public void testSignificanceLevel() {
+    CrossValidationRace race = new CrossValidationRace(m_Instances, 10);
+    race.setSignificanceLevel(0);
+    race.setSignificanceLevel(0.01);
+    assertEquals("level not set", 0.01, race.getSignificanceLevel(), 0);
+    for (double level : new double[]{-0.05, 1, 5, Double.NaN}) {
+      try {
+        race.setSignificanceLevel(level);
+        fail("level " + level + " accepted");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+    assertEquals("level changed", 0.01, race.getSignificanceLevel(), 0);
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(CrossValidationRaceTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args) {
+    TestRunner.run(suite());
+  }
+}
@@ -21,6 +21,8 @@ package weka.classifiers.meta;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +43,35 @@ public class LogitBoostTest extends AbstractClassifierTest {
     return new LogitBoost();
   }
 
+  /**
+   * Tests that the models do not depend on the size of the thread pool.
+   */
+  public void testPoolSize() throws Exception {
+    Instances data = generateData(1000, 2, 3, Attribute.NOMINAL, 4, 7);
+    String[][] options = {{}, {"-Q"}, {"-P", "90"}};
+    for (String[] opts : options) {
+      LogitBoost boost = new LogitBoost();
+      boost.setOptions(opts);
+      checkParallelBuild(boost, new String[]{"-O", "3"}, data, 0);
+    }
+  }
+
+  /**
+   * Tests the thread pool with two classes, where a single model is fitted
+   * in each iteration, with fewer instances than threads, and with a pool
+   * larger than the number of classes.
+   */
+  public void testPoolSizeEdgeCases() throws Exception {
+    checkParallelBuild(new LogitBoost(), new String[]{"-O", "3"},
+      generateData(500, 2, 3, Attribute.NOMINAL, 2, 8), 0);
+    checkParallelBuild(new LogitBoost(), new String[]{"-O", "8"},
+      generateData(6, 1, 2, Attribute.NOMINAL, 3, 9), 0);
+    LogitBoost boost = new LogitBoost();
+    boost.setUseResampling(true);
+    checkParallelBuild(boost, new String[]{"-O", "8"},
+      generateData(300, 1, 3, Attribute.NOMINAL, 3, 10), 0);
+  }
+
   public static Test suite() {
     return new TestSuite(LogitBoostTest.class);
   }
@@ -19,8 +19,18 @@
 
 package weka.classifiers.meta;
 
+import java.util.Random;
+
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.bayes.NaiveBayes;
+import weka.classifiers.lazy.IBk;
+import weka.classifiers.rules.ZeroR;
+import weka.classifiers.trees.J48;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +51,145 @@ public class MultiSchemeTest extends AbstractClassifierTest {
     return new MultiScheme();
   }
 
+  /**
+   * Configures MultiScheme choosing between J48, IBk, NaiveBayes and ZeroR
+   * with 10-fold cross-validation.
+   *
+   * @param level the significance level for racing
+   * @return the configured classifier
+   */
+  protected MultiScheme configure(double level) {
+
+    MultiScheme scheme = new MultiScheme();
+    scheme.setClassifiers(new Classifier[]{new J48(), new IBk(),
+      new NaiveBayes(), new ZeroR()});
+    scheme.setNumFolds(10);
+    scheme.setRacingSignificanceLevel(level);
+    return scheme;
+  }
+
+  /**
+   * Builds MultiScheme as configured by configure().
+   *
+   * @param slots the number of execution slots
+   * @param level the significance level for racing
+   * @param data the training data
+   * @return the built classifier
+   * @throws Exception if the classifier can't be built
+   */
+  protected MultiScheme build(int slots, double level, Instances data)
+    throws Exception {
+
+    MultiScheme scheme = configure(level);
+    scheme.setNumExecutionSlots(slots);
+    scheme.buildClassifier(data);
+    return scheme;
+  }
+
+  /**
+   * Generates the data for the tests, with noise in the class.
+   *
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generate() throws Exception {
+    Instances data = generateData(300, 3, 3, Attribute.NOMINAL, 2, 5);
+    Random random = new Random(7);
+    for (Instance inst : data) {
+      if (random.nextInt(4) == 0) {
+        inst.setClassValue(random.nextInt(2));
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Tests that the selected scheme does not depend on the number of
+   * execution slots, with and without racing.
+   */
+  public void testExecutionSlots() throws Exception {
+    Instances data = generate();
+    for (double level : new double[]{0, 0.05}) {
+      Classifier[] models = checkParallelBuild(configure(level),
+        new String[]{"-num-slots", "3"}, data, 0);
+      assertEquals("Selected schemes differ",
+        ((MultiScheme) models[0]).getBestClassifierIndex(),
+        ((MultiScheme) models[1]).getBestClassifierIndex());
+    }
+  }
+
+  /**
+   * Tests racing with a single scheme and more slots than schemes, and with
+   * fewer folds than racing needs before it eliminates schemes.
+   */
+  public void testRacingEdgeCases() throws Exception {
+    Instances data = generate();
+    MultiScheme single = new MultiScheme();
+    single.setClassifiers(new Classifier[]{new NaiveBayes()});
+    single.setRacingSignificanceLevel(0.05);
+    checkParallelBuild(single, new String[]{"-num-slots", "8"}, data, 0);
+
+    MultiScheme few = configure(0.05);
+    few.setNumFolds(CrossValidationRace.MIN_FOLDS - 1);
+    few.setNumExecutionSlots(3);
+    few.buildClassifier(data);
+    for (int i = 0; i < few.m_EliminatedAfter.length; i++) {
+      assertEquals("Eliminated before the minimum number of folds", -1,
+        few.m_EliminatedAfter[i]);
+    }
+  }
+
+  /**
+   * Tests that racing selects the same scheme as the full cross-validation.
+   */
+  public void testRacing() throws Exception {
+    Instances data = generate();
+    MultiScheme full = build(1, 0, data);
+    MultiScheme raced = build(3, 0.05, data);
+    assertEquals("Selected schemes differ", full.getBestClassifierIndex(),
+      raced.getBestClassifierIndex());
+  }
+
+  /**
+   * Tests that racing eliminates at least one scheme and that the eliminations happen
+   * after at least the minimum number of folds.
+   */
+  public void testElimination() throws Exception {
+    Instances data = generate();
+    MultiScheme full = build(1, 0, data);
+    for (int i = 0; i < full.m_EliminatedAfter.length; i++) {
+      assertEquals("Eliminated without racing", -1, full.m_EliminatedAfter[i]);
+    }
+    MultiScheme raced = build(3, 0.05, data);
+    int eliminated = 0;
+    for (int i = 0; i < raced.m_EliminatedAfter.length; i++) {
+      if (raced.m_EliminatedAfter[i] >= 0) {
+        assertTrue("Eliminated too early",
+          raced.m_EliminatedAfter[i] >= CrossValidationRace.MIN_FOLDS);
+        eliminated++;
+      }
+    }
+    assertTrue("Nothing eliminated", eliminated > 0);
+  }
+
+  /**
+   * Tests the options for the execution slots and the significance level.
+   */
+  public void testRaceOptions() throws Exception {
+    MultiScheme classifier = new MultiScheme();
+    String options = Utils.joinOptions(classifier.getOptions());
+    assertTrue("Default slots output", options.indexOf("-num-slots") < 0);
+    classifier.setNumExecutionSlots(2);
+    options = Utils.joinOptions(classifier.getOptions());
+    assertTrue("Slots not output", options.indexOf("-num-slots 2") >= 0);
+    try {
+      classifier.setOptions(new String[]{"-race", "1"});
+      fail("Significance level of 1 accepted");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(MultiSchemeTest.class);
   }
@@ -21,6 +21,14 @@ package weka.classifiers.meta;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.classifiers.functions.LinearRegression;
+import weka.classifiers.functions.Logistic;
+import weka.classifiers.lazy.IBk;
+import weka.classifiers.trees.J48;
+import weka.classifiers.trees.REPTree;
+import weka.classifiers.trees.RandomTree;
+import weka.core.Attribute;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +49,53 @@ public class StackingTest extends AbstractClassifierTest {
     return new Stacking();
   }
 
+  /**
+   * Configures Stacking with the given base and meta classifiers and number
+   * of folds.
+   *
+   * @param base the base classifiers
+   * @param meta the meta classifier
+   * @param numFolds the number of folds
+   * @return the configured classifier
+   * @throws Exception if the number of folds is invalid
+   */
+  protected Stacking stacking(Classifier[] base, Classifier meta,
+    int numFolds) throws Exception {
+
+    Stacking stacking = new Stacking();
+    stacking.setClassifiers(base);
+    stacking.setMetaClassifier(meta);
+    stacking.setNumFolds(numFolds);
+    return stacking;
+  }
+
+  /**
+   * Tests that the model does not depend on the number of execution slots.
+   */
+  public void testExecutionSlots() throws Exception {
+    Instances data = generateData(300, 2, 3, Attribute.NOMINAL, 3, 9);
+    checkParallelBuild(stacking(new Classifier[]{new J48(), new IBk(),
+      new RandomTree()}, new Logistic(), 5), new String[]{"-num-slots", "3"},
+      data, 0);
+
+    data = generateData(300, 2, 3, Attribute.NUMERIC, 3, 9);
+    checkParallelBuild(stacking(new Classifier[]{new REPTree(), new IBk(),
+      new RandomTree()}, new LinearRegression(), 5),
+      new String[]{"-num-slots", "3"}, data, 0);
+  }
+
+  /**
+   * Tests the execution slots with a single base classifier, and with more
+   * slots than models to build.
+   */
+  public void testExecutionSlotsEdgeCases() throws Exception {
+    Instances data = generateData(200, 2, 3, Attribute.NOMINAL, 2, 10);
+    checkParallelBuild(stacking(new Classifier[]{new RandomTree()},
+      new Logistic(), 10), new String[]{"-num-slots", "4"}, data, 0);
+    checkParallelBuild(stacking(new Classifier[]{new J48(), new RandomTree()},
+      new Logistic(), 2), new String[]{"-num-slots", "16"}, data, 0);
+  }
+
   public static Test suite() {
     return new TestSuite(StackingTest.class);
   }
@@ -0,0 +1,185 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.classifiers.trees;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.classifiers.AbstractClassifier;
+import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.TestInstances;
+import weka.core.Utils;
+
+/**
+ * Tests FlatForest by comparing the distributions of compiled trees with the
+ * ones of the classifiers they were compiled from. Run from the command line
+ * with:<p/>
+ * java weka.classifiers.trees.FlatForestTest
+ *
+ * @version $Revision$
+ */
+public class FlatForestTest extends TestCase {
+
+  /**
+   * Constructs the <code>FlatForestTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public FlatForestTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates data with missing values.
+   *
+   * @param classType the type of the class
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generate(int classType) throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(1000);
+    gen.setNumNominal(3);
+    gen.setNumNumeric(4);
+    gen.setClassType(classType);
+    gen.setNumClasses(3);
+    gen.setSeed(11);
+    Instances data = gen.generate();
+    Random random = new Random(12);
+    for (Instance inst : data) {
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if ((i != data.classIndex()) && (random.nextInt(15) == 0)) {
+          inst.setMissing(i);
+        }
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Checks that the compiled model gives the same distributions as the
+   * classifier, for single instances and in batches.
+   *
+   * @param classname the classname of the classifier
+   * @param options the options of the classifier
+   * @param data the data to train and test on
+   * @throws Exception if the classifier can't be built or compiled
+   */
+  protected void check(String classname, String options, Instances data)
+    throws Exception {
+
+    Classifier classifier =
+      AbstractClassifier.forName(classname, Utils.splitOptions(options));
+    classifier.buildClassifier(data);
+    FlatForest flat = ((Flattenable) classifier).flatten();
+    double[][] batch = new double[data.numInstances()][flat.numClasses()];
+    flat.distributionsForInstances(data, 0, data.numInstances(), batch);
+
+    String msg = classname + " " + options;
+    for (int i = 0; i < data.numInstances(); i++) {
+      double[] expected = classifier.distributionForInstance(data.instance(i));
+      double[] actual = flat.distributionForInstance(data.instance(i));
+      assertEquals(msg + ": length", expected.length, actual.length);
+      for (int j = 0; j < expected.length; j++) {
+        assertEquals(msg + ": instance " + i, expected[j], actual[j], 1e-12);
+        assertEquals(msg + ": batch " + i, expected[j], batch[i][j], 1e-12);
+      }
+    }
+  }
+
+  /**
+   * Tests J48 with multi-way and binary splits, with and without pruning.
+   */
+  public void testJ48() throws Exception {
+    Instances data = generate(Attribute.NOMINAL);
+    for (String options : new String[]{"", "-U", "-B", "-A", "-R", "-U -B -A"}) {
+      check(J48.class.getName(), options, data);
+    }
+  }
+
+  /**
+   * Tests RandomTree, including empty leaves without distributions.
+   */
+  public void testRandomTree() throws Exception {
+    for (int classType : new int[]{Attribute.NOMINAL, Attribute.NUMERIC}) {
+      Instances data = generate(classType);
+      for (String options : new String[]{"", "-U", "-depth 3", "-K 0 -M 5"}) {
+        check(RandomTree.class.getName(), options, data);
+      }
+    }
+  }
+
+  /**
+   * Tests REPTree, with and without pruning.
+   */
+  public void testREPTree() throws Exception {
+    for (int classType : new int[]{Attribute.NOMINAL, Attribute.NUMERIC}) {
+      Instances data = generate(classType);
+      for (String options : new String[]{"", "-P", "-L 2"}) {
+        check(REPTree.class.getName(), options, data);
+      }
+    }
+  }
+
+  /**
+   * Tests RandomForest, including its batch predictions on several threads.
+   */
+  public void testRandomForest() throws Exception {
+    for (int classType : new int[]{Attribute.NOMINAL, Attribute.NUMERIC}) {
+      Instances data = generate(classType);
+      check(RandomForest.class.getName(), "-I 20", data);
+
+      RandomForest forest = new RandomForest();
+      forest.setNumIterations(20);
+      forest.setNumExecutionSlots(3);
+      forest.buildClassifier(data);
+      double[][] batch = forest.distributionsForInstances(data);
+      for (int i = 0; i < data.numInstances(); i++) {
+        double[] expected = forest.distributionForInstance(data.instance(i));
+        for (int j = 0; j < expected.length; j++) {
+          assertEquals("batch " + i, expected[j], batch[i][j], 1e-12);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(FlatForestTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -21,6 +21,9 @@ package weka.classifiers.trees;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +44,51 @@ public class J48Test extends AbstractClassifierTest {
     return new J48();
   }
 
+  /**
+   * Checks that building with several threads gives the same model, on data
+   * with ties in the numeric attributes, missing values and fractional
+   * weights that is large enough to be split up in parallel.
+   */
+  public void testParallelBuild() throws Exception {
+    Instances data = addTiesMissingValuesAndWeights(
+      generateData(6000, 4, 8, Attribute.NOMINAL, 3, 3), 4);
+    String[][] options = {{}, {"-U"}, {"-B"}, {"-R"}};
+    for (String[] opts : options) {
+      J48 j48 = new J48();
+      j48.setOptions(opts);
+      checkParallelBuild(j48, new String[]{"-num-slots", "3"}, data, 0);
+    }
+  }
+
+  /**
+   * Checks the parallel build where there is little to split up: data below
+   * and at the size from which subtrees are forked (1000 instances), an
+   * attribute whose values are all missing, more slots than attributes and
+   * one slot per core. Also checks that the same classifier can be built in
+   * parallel more than once.
+   */
+  public void testParallelBuildEdgeCases() throws Exception {
+    for (int numInstances : new int[]{50, 1000}) {
+      Instances data = addTiesMissingValuesAndWeights(
+        generateData(numInstances, 2, 2, Attribute.NOMINAL, 2, 7), 8);
+      for (Instance inst : data) {
+        inst.setMissing(0);
+      }
+      for (String slots : new String[]{"8", "0"}) {
+        checkParallelBuild(new J48(), new String[]{"-num-slots", slots}, data, 0);
+      }
+    }
+
+    Instances data = addTiesMissingValuesAndWeights(
+      generateData(3000, 2, 4, Attribute.NOMINAL, 3, 9), 10);
+    J48 j48 = new J48();
+    j48.setNumExecutionSlots(3);
+    j48.buildClassifier(data);
+    String first = j48.toString();
+    j48.buildClassifier(data);
+    assertEquals("Building again changed the model", first, j48.toString());
+  }
+
   public static Test suite() {
     return new TestSuite(J48Test.class);
   }
@@ -21,6 +21,9 @@ package weka.classifiers.trees;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -41,6 +44,36 @@ public class REPTreeTest extends AbstractClassifierTest {
     return new REPTree();
   }
 
+  /**
+   * Checks that with a bin for every distinct value, the unpruned trees grown
+   * on histograms make the same predictions on the training data as the ones
+   * grown on sorted values. The split points may differ where a node has no
+   * values between two bins, so pruning would not give the same trees.
+   */
+  public void testHistogramSplits() throws Exception {
+    for (int classType : new int[]{Attribute.NOMINAL, Attribute.NUMERIC}) {
+      Instances data = addTiesMissingValuesAndWeights(
+        generateData(2000, 2, 4, classType, 2, 7), 8);
+
+      REPTree sorted = new REPTree();
+      sorted.setNoPruning(true);
+      sorted.buildClassifier(data);
+      REPTree binned = new REPTree();
+      binned.setNoPruning(true);
+      binned.setMaxBins(255);
+      binned.buildClassifier(data);
+      int same = 0;
+      for (Instance inst : data) {
+        if (Math.abs(sorted.classifyInstance(inst)
+          - binned.classifyInstance(inst)) < 1e-6) {
+          same++;
+        }
+      }
+      assertTrue("Predictions differ for " + (data.numInstances() - same)
+        + " instances", same >= 0.98 * data.numInstances());
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(REPTreeTest.class);
   }
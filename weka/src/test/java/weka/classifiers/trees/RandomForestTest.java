@@ -21,6 +21,10 @@ package weka.classifiers.trees;
 
 import weka.classifiers.AbstractClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Attribute;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
 
 import junit.framework.Test;
 import junit.framework.TestSuite;
@@ -44,6 +48,75 @@ public class RandomForestTest
     return new RandomForest();
   }
 
+  /**
+   * Checks that the trees grown with a presorted index are the same as the
+   * ones grown on copies of the data.
+   */
+  public void testPresortedIndex() throws Exception {
+    Instances data = generateData(3000, 2, 6, Attribute.NOMINAL, 3, 5);
+    String[][] options = {{}, {"-depth", "4"}, {"-N", "3"}, {"-K", "1", "-num-slots", "3"}};
+    for (String[] opts : options) {
+      RandomForest copies = new RandomForest();
+      copies.setOptions(opts.clone());
+      copies.setNumIterations(10);
+      copies.setPrintClassifiers(true);
+      copies.buildClassifier(data);
+      RandomForest presorted = new RandomForest();
+      presorted.setOptions(opts.clone());
+      presorted.setNumIterations(10);
+      presorted.setPrintClassifiers(true);
+      presorted.setUsePresortedIndex(true);
+      presorted.buildClassifier(data);
+      String msg = "Models differ for " + Utils.joinOptions(opts);
+      assertEquals(msg, copies.toString(), presorted.toString());
+      for (int i = 0; i < 100; i++) {
+        assertEquals(msg, Utils.arrayToString(copies.distributionForInstance(data.instance(i))),
+          Utils.arrayToString(presorted.distributionForInstance(data.instance(i))));
+      }
+    }
+
+    // with missing values the weights of the instances that are split up are
+    // summed in a different order, so only the predictions are compared
+    data = addTiesMissingValuesAndWeights(data, 6);
+    RandomForest copies = new RandomForest();
+    copies.buildClassifier(data);
+    RandomForest presorted = new RandomForest();
+    presorted.setUsePresortedIndex(true);
+    presorted.buildClassifier(data);
+    int same = 0;
+    for (Instance inst : data) {
+      if (copies.classifyInstance(inst) == presorted.classifyInstance(inst)) {
+        same++;
+      }
+    }
+    assertTrue("Predictions differ for " + (data.numInstances() - same) + " instances",
+      same >= 0.98 * data.numInstances());
+  }
+
+  /**
+   * Checks that with a bin for every distinct value, the trees grown on
+   * histograms make the same predictions as the ones grown on sorted values.
+   */
+  public void testHistogramSplits() throws Exception {
+    Instances data = addTiesMissingValuesAndWeights(
+      generateData(3000, 2, 6, Attribute.NOMINAL, 3, 5), 6);
+    RandomForest sorted = new RandomForest();
+    sorted.setNumIterations(10);
+    sorted.buildClassifier(data);
+    RandomForest binned = new RandomForest();
+    binned.setNumIterations(10);
+    binned.setMaxBins(255);
+    binned.buildClassifier(data);
+    int same = 0;
+    for (Instance inst : data) {
+      if (sorted.classifyInstance(inst) == binned.classifyInstance(inst)) {
+        same++;
+      }
+    }
+    assertTrue("Predictions differ for " + (data.numInstances() - same) + " instances",
+      same >= 0.98 * data.numInstances());
+  }
+
   public static Test suite() {
     return new TestSuite(RandomForestTest.class);
   }
@@ -67,6 +67,8 @@ public class AllTests extends WekaTestSuite {
 
     suite.addTestSuite(weka.core.DictionaryBuilderTest.class);
 
+    suite.addTestSuite(weka.core.matrix.MatrixTest.class);
+
     return suite;
   }
 
@@ -0,0 +1,201 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests the mapping of values to indices of nominal and string attributes.
+ * Run from the command line with:<p/>
+ * java weka.core.AttributeTest
+ *
+ * @version $Revision$
+ */
+public class AttributeTest
+  extends TestCase {
+
+  /**
+   * Constructs the <code>AttributeTest</code>.
+   *
+   * @param name 	the name of the test
+   */
+  public AttributeTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(AttributeTest.class);
+  }
+
+  /**
+   * Returns a string longer than the compression threshold.
+   *
+   * @param c		the character to repeat
+   * @return		the string
+   */
+  protected String longString(char c) {
+    StringBuilder result = new StringBuilder();
+    for (int i = 0; i <= Attribute.STRING_COMPRESS_THRESHOLD; i++)
+      result.append(c);
+    return result.toString();
+  }
+
+  /**
+   * Checks that every value of the attribute is found at its index.
+   *
+   * @param att		the attribute to check
+   */
+  protected void assertIndexed(Attribute att) {
+    for (int i = 0; i < att.numValues(); i++)
+      assertEquals("index of '" + att.value(i) + "' differs", i, att.indexOfValue(att.value(i)));
+  }
+
+  /**
+   * Tests nominal labels, including duplicates and compressed labels.
+   */
+  public void testNominal() {
+    List<String> labels = new ArrayList<String>();
+    labels.add("a");
+    labels.add(longString('x'));
+    labels.add("c");
+    Attribute att = new Attribute("nom", labels);
+    assertIndexed(att);
+    assertEquals("unknown label found", -1, att.indexOfValue("b"));
+    assertTrue("index not in range", att.isInRange(2));
+    assertFalse("index in range", att.isInRange(3));
+
+    labels.add("a");
+    try {
+      new Attribute("dup", labels);
+      fail("duplicate labels not detected");
+    }
+    catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+  /**
+   * Tests adding many string values.
+   */
+  public void testString() {
+    Attribute att = new Attribute("str", (List<String>) null);
+    for (int i = 0; i < 100000; i++)
+      assertEquals("wrong index assigned", i, att.addStringValue("v" + i));
+    assertEquals("existing value added", 5, att.addStringValue("v5"));
+    assertEquals("existing value added", 99999, att.addStringValue(att, 99999));
+    assertEquals("long value added twice", att.addStringValue(longString('y')), att.addStringValue(longString('y')));
+    assertIndexed(att);
+    assertEquals("unknown value found", -1, att.indexOfValue("v100000"));
+
+    att.setStringValue("only");
+    assertEquals("values not cleared", 1, att.numValues());
+    assertEquals("value not found", 0, att.indexOfValue("only"));
+    assertEquals("old value found", -1, att.indexOfValue("v5"));
+  }
+
+  /**
+   * Tests renaming, adding and deleting values of copies of an attribute.
+   */
+  public void testModification() {
+    List<String> labels = new ArrayList<String>();
+    for (int i = 0; i < 50; i++)
+      labels.add("l" + i);
+    Attribute att = new Attribute("nom", labels);
+    Attribute copy = (Attribute) att.copy();
+
+    copy.setValue(3, "renamed");
+    assertEquals("renamed value not found", 3, copy.indexOfValue("renamed"));
+    assertEquals("old value found", -1, copy.indexOfValue("l3"));
+    assertIndexed(copy);
+
+    copy.addValue("added");
+    assertEquals("added value not found", 50, copy.indexOfValue("added"));
+    copy.delete(10);
+    assertEquals("deleted value found", -1, copy.indexOfValue("l10"));
+    assertEquals("value not moved", 10, copy.indexOfValue("l11"));
+    assertIndexed(copy);
+  }
+
+  /**
+   * Tests that relations can still be looked up after deleting and replacing
+   * values of a relation-valued attribute.
+   */
+  public void testRelationValued() {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    atts.add(new Attribute("x"));
+    Instances header = new Instances("bag", atts, 0);
+    Attribute att = new Attribute("rel", header);
+    List<Instances> relations = new ArrayList<Instances>();
+    for (int i = 0; i < 20; i++) {
+      relations.add(new Instances(header, 1));
+      relations.get(i).add(new DenseInstance(1.0, new double[]{i}));
+      assertEquals("relation not added at the end", i, att.addRelation(relations.get(i)));
+    }
+    Attribute copy = (Attribute) att.copy();
+
+    copy.delete(5);
+    Instances deleted = relations.remove(5);
+    assertEquals("wrong number of values", 19, copy.numValues());
+    for (int i = 0; i < relations.size(); i++)
+      assertEquals("relation " + i + " not found", i, copy.addRelation(relations.get(i)));
+    assertEquals("deleted relation not added at the end", 19, copy.addRelation(deleted));
+
+    Instances replacement = new Instances(header, 1);
+    replacement.add(new DenseInstance(1.0, new double[]{-1}));
+    copy.setValue(7, replacement);
+    assertEquals("replacement not found", 7, copy.addRelation(replacement));
+    assertEquals("replaced relation not added at the end", 20, copy.addRelation(relations.get(7)));
+  }
+
+  /**
+   * Tests that the index is restored after deserialization and that the
+   * memory used for the values is reported.
+   */
+  public void testSerialization() throws Exception {
+    Attribute att = new Attribute("str", (List<String>) null);
+    for (int i = 0; i < 1000; i++)
+      att.addStringValue("value" + i);
+    Attribute copy = (Attribute) new SerializedObject(att).getObject();
+    assertIndexed(copy);
+    assertEquals("value not added at the end", 1000, copy.addStringValue("new"));
+    assertTrue("memory not reported", copy.valueBytes() > 1000 * 6);
+    assertEquals("memory reported for numeric attribute", 0, new Attribute("num").valueBytes());
+  }
+
+  /**
+   * Executes the test from command-line.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
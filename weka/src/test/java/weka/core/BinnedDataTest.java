@@ -0,0 +1,190 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core;
+
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests BinnedData. Run from the command line with:<p/>
+ * java weka.core.BinnedDataTest
+ *
+ * @version $Revision$
+ */
+public class BinnedDataTest extends TestCase {
+
+  /**
+   * Constructs the <code>BinnedDataTest</code>.
+   *
+   * @param name the name of the test
+   */
+  public BinnedDataTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates data with a nominal and two numeric attributes, one of them
+   * with few distinct values, and some missing values.
+   *
+   * @return the data
+   * @throws Exception if the data can't be generated
+   */
+  protected Instances generate() throws Exception {
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(1000);
+    gen.setNumNominal(1);
+    gen.setNumNumeric(2);
+    gen.setNumClasses(2);
+    gen.setSeed(3);
+    Instances data = gen.generate();
+    Random random = new Random(4);
+    for (Instance inst : data) {
+      inst.setValue(2, Math.round(inst.value(2)));
+      for (int i = 0; i < data.numAttributes(); i++) {
+        if ((i != data.classIndex()) && (random.nextInt(20) == 0)) {
+          inst.setMissing(i);
+        }
+      }
+    }
+    return data;
+  }
+
+  /**
+   * Checks that the split points separate the values of the bins.
+   *
+   * @param binned the binned data
+   * @param att the numeric attribute to check
+   */
+  protected void checkSplitPoints(BinnedData binned, int att) {
+    Instances data = binned.getData();
+    for (int i = 0; i < data.numInstances(); i++) {
+      double value = data.instance(i).value(att);
+      int bin = binned.bin(att, i);
+      if (Utils.isMissingValue(value)) {
+        assertEquals("bin of missing value", BinnedData.MISSING, bin);
+        continue;
+      }
+      assertTrue("bin out of range", bin < binned.numBins(att));
+      if (bin > 0) {
+        assertTrue("value below its bin", value >= binned.splitPoint(att, bin - 1));
+      }
+      if (bin < binned.numBins(att) - 1) {
+        assertTrue("value above its bin", value < binned.splitPoint(att, bin));
+      }
+    }
+  }
+
+  /**
+   * Tests the bins of nominal and numeric attributes.
+   */
+  public void testBins() throws Exception {
+    Instances data = generate();
+    BinnedData binned = new BinnedData(data, 16);
+
+    assertFalse("class binned", binned.isBinned(data.classIndex()));
+    assertEquals("nominal bins", data.attribute(0).numValues(), binned.numBins(0));
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (!data.instance(i).isMissing(0)) {
+        assertEquals("nominal bin", (int) data.instance(i).value(0), binned.bin(0, i));
+      }
+    }
+
+    assertEquals("numeric bins", 16, binned.numBins(1));
+    checkSplitPoints(binned, 1);
+    checkSplitPoints(binned, 2);
+
+    // the rounded attribute has fewer distinct values than bins
+    HashSet<Double> distinct = new HashSet<Double>();
+    for (Instance inst : data) {
+      if (!inst.isMissing(2)) {
+        distinct.add(inst.value(2));
+      }
+    }
+    assertTrue("too many values", distinct.size() <= 16);
+    assertEquals("bins of rounded attribute", distinct.size(), binned.numBins(2));
+
+    // the bins hold roughly equal numbers of instances
+    int[] counts = new int[binned.numBins(1)];
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (!data.instance(i).isMissing(1)) {
+        counts[binned.bin(1, i)]++;
+      }
+    }
+    for (int count : counts) {
+      assertTrue("unbalanced bins", (count > 30) && (count < 90));
+    }
+  }
+
+  /**
+   * Tests that binning with a presorted index gives the same bins.
+   */
+  public void testPresortedIndex() throws Exception {
+    Instances data = generate();
+    BinnedData binned = new BinnedData(data, 16);
+    PresortedIndex index = new PresortedIndex(data);
+    BinnedData presorted = index.binned(16);
+    assertSame("bins not cached", presorted, index.binned(16));
+    for (int att = 0; att < data.numAttributes(); att++) {
+      assertEquals("number of bins", binned.numBins(att), presorted.numBins(att));
+      if (binned.isBinned(att)) {
+        for (int i = 0; i < data.numInstances(); i++) {
+          assertEquals("bin", binned.bin(att, i), presorted.bin(att, i));
+        }
+      }
+    }
+  }
+
+  /**
+   * Tests that the number of bins is checked.
+   */
+  public void testNumBins() throws Exception {
+    Instances data = generate();
+    for (int maxBins : new int[]{1, BinnedData.MAX_BINS + 1}) {
+      try {
+        new BinnedData(data, maxBins);
+        fail("Accepted " + maxBins + " bins");
+      } catch (IllegalArgumentException e) {
+        // expected
+      }
+    }
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(BinnedDataTest.class);
+  }
+
+  /**
+   * Runs the test from the command line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.trees.J48;
+import weka.core.converters.ConverterUtils.DataSource;
+
+/**
+ * Tests ColumnarInstances. Run from the command line with:<p/>
+ * java weka.core.ColumnarInstancesTest
+ *
+ * @version $Revision$
+ */
+public class ColumnarInstancesTest
+  extends TestCase {
+
+  /** the row-oriented test instances. */
+  protected Instances m_Instances;
+
+  /** the column-oriented copy of the test instances. */
+  protected ColumnarInstances m_Columnar;
+
+  /**
+   * Constructs the <code>ColumnarInstancesTest</code>.
+   *
+   * @param name 	the name of the test
+   */
+  public ColumnarInstancesTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception 	if an error occurs
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    m_Instances = DataSource.read(ClassLoader.getSystemResourceAsStream("weka/core/data/InstancesTest.arff"));
+    m_Columnar  = new ColumnarInstances(m_Instances);
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception 	if an error occurs
+   */
+  protected void tearDown() throws Exception {
+    m_Instances = null;
+    m_Columnar  = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(ColumnarInstancesTest.class);
+  }
+
+  /**
+   * Checks that two datasets hold the same values and weights. Sparse rows in
+   * the row-oriented data are printed differently, so strings are not compared.
+   *
+   * @param msg		the message to output in case of failure
+   * @param expected	the row-oriented data
+   * @param actual	the column-oriented data
+   */
+  protected void assertSameData(String msg, Instances expected, Instances actual) {
+    assertEquals(msg + ": # of instances differ", expected.numInstances(), actual.numInstances());
+    assertNull(msg + ": headers differ", expected.equalHeadersMsg(actual));
+    for (int i = 0; i < expected.numInstances(); i++) {
+      assertEquals(msg + ": weight differs", expected.instance(i).weight(), actual.instance(i).weight(), 0.0);
+      double[] exp = expected.instance(i).toDoubleArray();
+      double[] act = actual.instance(i).toDoubleArray();
+      for (int j = 0; j < exp.length; j++)
+        assertEquals(msg + ": value differs", exp[j], act[j], 0.0);
+    }
+  }
+
+  /**
+   * Tests that the copy holds the same data as the original.
+   */
+  public void testCopy() {
+    assertEquals("# of instances differ", m_Instances.numInstances(), m_Columnar.numInstances());
+    assertSameData("data differs", m_Instances, m_Columnar);
+    assertEquals("sum of weights differs", m_Instances.sumOfWeights(), m_Columnar.sumOfWeights(), 1e-15);
+    assertEquals("variance differs", m_Instances.variance(2), m_Columnar.variance(2), 1e-15);
+  }
+
+  /**
+   * Tests that changes made through views end up in the columns.
+   */
+  public void testViews() {
+    Instance inst = m_Columnar.instance(3);
+    inst.setValue(2, 42.0);
+    inst.setMissing(1);
+    inst.setWeight(3.0);
+    assertEquals("value not stored", 42.0, m_Columnar.instance(3).value(2), 0.0);
+    assertTrue("missing value not stored", m_Columnar.instance(3).isMissing(1));
+    assertEquals("weight not stored", 3.0, m_Columnar.instance(3).weight(), 0.0);
+
+    // copies are independent
+    Instance copy = (Instance) inst.copy();
+    copy.setValue(2, 1.0);
+    assertEquals("copy not independent", 42.0, inst.value(2), 0.0);
+
+    // views survive reordering
+    m_Columnar.randomize(new Random(1));
+    assertEquals("view lost its row", 42.0, inst.value(2), 0.0);
+  }
+
+  /**
+   * Tests sorting, which only reorders the rows.
+   */
+  public void testSort() {
+    m_Instances.sort(2);
+    m_Columnar.sort(2);
+    assertSameData("numeric sort differs", m_Instances, m_Columnar);
+    m_Instances.stableSort(5);
+    m_Columnar.stableSort(5);
+    assertSameData("stable sort differs", m_Instances, m_Columnar);
+    m_Instances.sort(4);
+    m_Columnar.sort(4);
+    assertSameData("nominal sort differs", m_Instances, m_Columnar);
+  }
+
+  /**
+   * Tests adding, removing and restructuring.
+   */
+  public void testModification() {
+    m_Instances.setClassIndex(1);
+    m_Columnar.setClassIndex(1);
+    m_Instances.stratify(3);
+    m_Columnar.stratify(3);
+    assertSameData("stratification differs", m_Instances, m_Columnar);
+
+    m_Instances.deleteWithMissing(4);
+    m_Columnar.deleteWithMissing(4);
+    m_Instances.delete(2);
+    m_Columnar.delete(2);
+    m_Instances.add(1, m_Instances.instance(5));
+    m_Columnar.add(1, m_Columnar.instance(5));
+    assertSameData("modified data differs", m_Instances, m_Columnar);
+
+    m_Instances.deleteAttributeAt(0);
+    m_Columnar.deleteAttributeAt(0);
+    m_Instances.insertAttributeAt(new Attribute("new"), 2);
+    m_Columnar.insertAttributeAt(new Attribute("new"), 2);
+    m_Instances.instance(0).setValue(2, 7.0);
+    m_Columnar.instance(0).setValue(2, 7.0);
+    assertSameData("restructured data differs", m_Instances, m_Columnar);
+  }
+
+  /**
+   * Tests that a classifier builds the same model from both representations.
+   *
+   * @throws Exception 	if building fails
+   */
+  public void testClassifier() throws Exception {
+    m_Instances.deleteStringAttributes();
+    m_Instances.setClassIndex(0);
+    m_Columnar = new ColumnarInstances(m_Instances);
+    J48 rows = new J48();
+    rows.buildClassifier(m_Instances);
+    J48 columns = new J48();
+    columns.buildClassifier(m_Columnar);
+    assertEquals("models differ", rows.toString(), columns.toString());
+  }
+
+  /**
+   * Executes the test from command-line.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
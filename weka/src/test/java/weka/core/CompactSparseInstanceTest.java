@@ -0,0 +1,235 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+import weka.classifiers.bayes.NaiveBayesMultinomial;
+
+/**
+ * Tests CompactSparseInstance. Run from the command line with:<p/>
+ * java weka.core.CompactSparseInstanceTest
+ *
+ * @version $Revision$
+ */
+public class CompactSparseInstanceTest
+  extends TestCase {
+
+  /**
+   * Constructs the <code>CompactSparseInstanceTest</code>.
+   *
+   * @param name 	the name of the test
+   */
+  public CompactSparseInstanceTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(CompactSparseInstanceTest.class);
+  }
+
+  /**
+   * Generates a sparse vector with gaps of varying size.
+   *
+   * @param numAttributes	the length of the vector
+   * @param random		the random number generator
+   * @param kind		0 = ones, 1 = small counts, 2 = large counts,
+   * 				3 = floats, 4 = doubles
+   * @return			the vector
+   */
+  protected double[] vector(int numAttributes, Random random, int kind) {
+    double[] result = new double[numAttributes];
+    for (int i = 0; i < numAttributes; i++) {
+      if (random.nextInt(i < 200 ? 3 : 200) != 0)
+	continue;
+      switch (kind) {
+	case 0:
+	  result[i] = 1;
+	  break;
+	case 1:
+	  result[i] = random.nextInt(20) - 5;
+	  break;
+	case 2:
+	  result[i] = random.nextInt(60000) - 30000;
+	  break;
+	case 3:
+	  result[i] = random.nextFloat();
+	  break;
+	default:
+	  result[i] = random.nextGaussian();
+      }
+      if ((kind > 0) && (random.nextInt(20) == 0))
+	result[i] = Utils.missingValue();
+    }
+    return result;
+  }
+
+  /**
+   * Checks that the compact instance is equivalent to the sparse one.
+   *
+   * @param msg		the message to output in case of failure
+   * @param expected	the sparse instance
+   * @param actual	the compact instance
+   */
+  protected void assertEquivalent(String msg, SparseInstance expected, CompactSparseInstance actual) {
+    assertEquals(msg + ": # of values differ", expected.numValues(), actual.numValues());
+    for (int i = 0; i < expected.numValues(); i++) {
+      assertEquals(msg + ": index " + i + " differs", expected.index(i), actual.index(i));
+      assertEquals(msg + ": value " + i + " differs", expected.valueSparse(i), actual.valueSparse(i), 0.0);
+    }
+    for (int i = -1; i <= expected.numAttributes(); i++)
+      assertEquals(msg + ": located index of " + i + " differs", expected.locateIndex(i), actual.locateIndex(i));
+    for (int i = 0; i < expected.numAttributes(); i++)
+      assertEquals(msg + ": value of attribute " + i + " differs", expected.value(i), actual.value(i), 0.0);
+    assertEquals(msg + ": string differs", expected.toString(), actual.toString());
+  }
+
+  /**
+   * Tests that all kinds of values are encoded without loss.
+   */
+  public void testEncoding() {
+    Random random = new Random(1);
+    for (int kind = 0; kind < 5; kind++) {
+      double[] values = vector(2000 + 70000 * (kind % 2), random, kind);
+      SparseInstance sparse = new SparseInstance(1.0, values);
+      CompactSparseInstance compact = new CompactSparseInstance(sparse);
+      assertEquivalent("kind " + kind, sparse, compact);
+      assertEquivalent("kind " + kind + ", copy", sparse, (CompactSparseInstance) compact.copy());
+      assertEquivalent("kind " + kind + ", from array", sparse, new CompactSparseInstance(1.0, values));
+      assertEquals("kind " + kind + ": array differs", Utils.arrayToString(values), Utils.arrayToString(compact.toDoubleArray()));
+
+      SparseInstance back = new SparseInstance(compact);
+      assertEquals("kind " + kind + ": conversion back differs", sparse.toString(), back.toString());
+    }
+
+    assertEquivalent("empty", new SparseInstance(1.0, new double[10]), new CompactSparseInstance(1.0, new double[10]));
+  }
+
+  /**
+   * Tests that modifications are applied like on a sparse instance and do
+   * not affect copies.
+   */
+  public void testModification() {
+    Random random = new Random(2);
+    SparseInstance sparse = new SparseInstance(1.0, vector(500, random, 1));
+    CompactSparseInstance compact = new CompactSparseInstance(sparse);
+    CompactSparseInstance copy = (CompactSparseInstance) compact.copy();
+    String original = copy.toString();
+
+    for (int i = 0; i < 200; i++) {
+      int att = random.nextInt(500);
+      double value = (i % 3 == 0) ? 0 : (i % 3 == 1) ? random.nextInt(10) : 0.5;
+      sparse.setValue(att, value);
+      compact.setValue(att, value);
+    }
+    assertEquivalent("set values", sparse, compact);
+
+    sparse.setValueSparse(3, 7);
+    compact.setValueSparse(3, 7);
+    sparse.setValueSparse(4, 0);
+    compact.setValueSparse(4, 0);
+    assertEquivalent("set sparse values", sparse, compact);
+
+    sparse.forceInsertAttributeAt(17);
+    compact.forceInsertAttributeAt(17);
+    sparse.forceDeleteAttributeAt(100);
+    compact.forceDeleteAttributeAt(100);
+    assertEquivalent("inserted and deleted", sparse, compact);
+
+    double[] means = new double[sparse.numAttributes()];
+    for (int i = 0; i < means.length; i++)
+      means[i] = i;
+    sparse.replaceMissingValues(means);
+    compact.replaceMissingValues(means);
+    assertEquivalent("replaced missing values", sparse, compact);
+
+    assertEquals("copy modified", original, copy.toString());
+  }
+
+  /**
+   * Tests the memory reduction for binary and count data.
+   */
+  public void testMemory() {
+    Random random = new Random(3);
+    for (int kind = 0; kind < 2; kind++) {
+      SparseInstance sparse = new SparseInstance(1.0, vector(20000, random, kind));
+      CompactSparseInstance compact = new CompactSparseInstance(sparse);
+      long sparseBytes = 16 + 4L * sparse.numValues() + 16 + 8L * sparse.numValues();
+      assertTrue("kind " + kind + ": no reduction to a third (" + compact.arrayBytes() + " vs " + sparseBytes + ")",
+	compact.arrayBytes() * 3 < sparseBytes);
+    }
+  }
+
+  /**
+   * Tests that a learner that accesses the values via the sparse interface
+   * builds the same model on compact instances.
+   */
+  public void testClassifier() throws Exception {
+    ArrayList<Attribute> atts = new ArrayList<Attribute>();
+    for (int i = 0; i < 300; i++)
+      atts.add(new Attribute("w" + i));
+    ArrayList<String> labels = new ArrayList<String>();
+    labels.add("a");
+    labels.add("b");
+    atts.add(new Attribute("class", labels));
+    Instances sparse = new Instances("sparse", atts, 100);
+    sparse.setClassIndex(300);
+    Instances compact = new Instances(sparse, 100);
+    Random random = new Random(4);
+    for (int i = 0; i < 100; i++) {
+      double[] values = new double[301];
+      for (int j = 0; j < 300; j++) {
+	if (random.nextInt(10) == 0)
+	  values[j] = 1 + random.nextInt(3);
+      }
+      values[300] = random.nextInt(2);
+      sparse.add(new SparseInstance(1.0, values));
+      compact.add(new CompactSparseInstance(1.0, values));
+    }
+
+    NaiveBayesMultinomial expected = new NaiveBayesMultinomial();
+    expected.buildClassifier(sparse);
+    NaiveBayesMultinomial actual = new NaiveBayesMultinomial();
+    actual.buildClassifier(compact);
+    assertEquals("models differ", expected.toString(), actual.toString());
+    for (int i = 0; i < sparse.numInstances(); i++)
+      assertEquals("distribution differs", Utils.arrayToString(expected.distributionForInstance(sparse.instance(i))),
+	Utils.arrayToString(actual.distributionForInstance(compact.instance(i))));
+  }
+
+  /**
+   * Executes the test from command-line.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package weka.core;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import junit.textui.TestRunner;
+
+/**
+ * Tests SubsetInstances. Run from the command line with:<p/>
+ * java weka.core.SubsetInstancesTest
+ *
+ * @version $Revision$
+ */
+public class SubsetInstancesTest
+  extends TestCase {
+
+  /** the test instances. */
+  protected Instances m_Instances;
+
+  /**
+   * Constructs the <code>SubsetInstancesTest</code>.
+   *
+   * @param name 	the name of the test
+   */
+  public SubsetInstancesTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception 	if an error occurs
+   */
+  protected void setUp() throws Exception {
+    super.setUp();
+
+    TestInstances gen = new TestInstances();
+    gen.setNumInstances(53);
+    gen.setNumNominal(2);
+    gen.setNumNumeric(3);
+    gen.setNumClasses(3);
+    gen.setSeed(4);
+    m_Instances = gen.generate();
+    Random random = new Random(5);
+    for (Instance inst : m_Instances) {
+      inst.setWeight(1 + random.nextInt(3));
+      if (random.nextInt(10) == 0)
+        inst.setMissing(random.nextInt(m_Instances.numAttributes()));
+    }
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception 	if an error occurs
+   */
+  protected void tearDown() throws Exception {
+    m_Instances = null;
+
+    super.tearDown();
+  }
+
+  /**
+   * Returns the test suite.
+   *
+   * @return		the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(SubsetInstancesTest.class);
+  }
+
+  /**
+   * Checks that two datasets contain the same instances in the same order.
+   *
+   * @param msg		the message to output in case of failure
+   * @param expected	the copied data
+   * @param actual	the view
+   */
+  protected void assertSameData(String msg, Instances expected, Instances actual) {
+    assertTrue(msg + ": not a view", actual instanceof SubsetInstances);
+    assertEquals(msg + ": # of instances differ", expected.numInstances(), actual.numInstances());
+    assertNull(msg + ": headers differ", expected.equalHeadersMsg(actual));
+    for (int i = 0; i < expected.numInstances(); i++)
+      assertEquals(msg + ": instance " + i + " differs", expected.instance(i).toString(), actual.instance(i).toString());
+    assertEquals(msg + ": sum of weights differs", expected.sumOfWeights(), actual.sumOfWeights(), 1e-15);
+  }
+
+  /**
+   * Tests that a view of the whole dataset contains the instances of the
+   * dataset itself.
+   */
+  public void testView() {
+    SubsetInstances view = new SubsetInstances(m_Instances);
+    assertSame("parent differs", m_Instances, view.getParent());
+    for (int i = 0; i < m_Instances.numInstances(); i++)
+      assertSame("instance " + i + " copied", m_Instances.instance(i), view.instance(i));
+
+    view.randomize(new Random(1));
+    assertEquals("parent reordered", m_Instances.instance(0).toString(), view.getParent().instance(0).toString());
+
+    // views of views refer to the original parent
+    SubsetInstances subset = new SubsetInstances(view, new int[]{3, 1, 1});
+    assertSame("parent differs", m_Instances, subset.getParent());
+    assertSame("wrong instance", view.instance(3), subset.instance(0));
+    assertSame("wrong instance", view.instance(1), subset.instance(2));
+  }
+
+  /**
+   * Tests that the folds of a cross-validation on a view are the same as the
+   * ones on a copy.
+   */
+  public void testCrossValidation() {
+    Instances copy = new Instances(m_Instances);
+    Instances view = new SubsetInstances(m_Instances);
+    copy.randomize(new Random(1));
+    view.randomize(new Random(1));
+    copy.stratify(5);
+    view.stratify(5);
+    assertSameData("stratified data", copy, view);
+
+    Random copyRandom = new Random(2);
+    Random viewRandom = new Random(2);
+    for (int i = 0; i < 5; i++) {
+      assertSameData("training set " + i, copy.trainCV(5, i, copyRandom), view.trainCV(5, i, viewRandom));
+      assertSameData("test set " + i, copy.testCV(5, i), view.testCV(5, i));
+    }
+    assertSameData("resampled data", copy.resample(copyRandom), view.resample(viewRandom));
+  }
+
+  /**
+   * Tests that views are read-only and that copies of them are standard
+   * datasets.
+   */
+  public void testModification() {
+    Instances view = new SubsetInstances(m_Instances).testCV(3, 1);
+    try {
+      view.add(m_Instances.instance(0));
+      fail("adding to a view should fail");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+    try {
+      view.deleteAttributeAt(0);
+      fail("deleting an attribute of a view should fail");
+    }
+    catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    Instances copy = new Instances(view);
+    assertFalse("copy is a view", copy instanceof SubsetInstances);
+    copy.deleteAttributeAt(0);
+    assertEquals("parent modified", 6, m_Instances.numAttributes());
+    assertEquals("view modified", 6, view.numAttributes());
+  }
+
+  /**
+   * Executes the test from command-line.
+   *
+   * @param args	ignored
+   */
+  public static void main(String[] args){
+    TestRunner.run(suite());
+  }
+}
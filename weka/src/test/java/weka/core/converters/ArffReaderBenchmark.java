@@ -0,0 +1,183 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.Reader;
+
+import weka.core.Attribute;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.TestInstances;
+import weka.core.Utils;
+import weka.core.converters.ArffLoader.ArffReader;
+
+/**
+ * Compares the time ArffReader and FastArffReader take to read large
+ * generated dense and sparse ARFF files. Not run as part of the test suite.
+ * Run from the command line with:<p/>
+ * java weka.core.converters.ArffReaderBenchmark [-rows num] [-threads num] [-runs num]
+ *
+ * @version $Revision$
+ */
+public class ArffReaderBenchmark {
+
+  /**
+   * Generates an ARFF file with numeric and nominal attributes.
+   *
+   * @param rows the number of rows
+   * @param sparse whether to save the data in sparse format
+   * @return the temporary file
+   * @throws Exception if generating fails
+   */
+  protected static File generate(int rows, boolean sparse) throws Exception {
+    TestInstances	test;
+    Instances		data;
+    File		file;
+    BufferedWriter	writer;
+    SparseInstance	inst;
+
+    test = new TestInstances();
+    test.setNumInstances(rows);
+    test.setNumNumeric(sparse ? 200 : 40);
+    test.setNumNominal(sparse ? 0 : 10);
+    test.setNumNominalValues(5);
+    test.setNumString(0);
+    test.setNumDate(0);
+    test.setNumRelational(0);
+    test.setClassType(Attribute.NOMINAL);
+    test.setNumClasses(3);
+    data = test.generate();
+
+    if (sparse) {
+      // sparsify the numeric values
+      for (int i = 0; i < data.numInstances(); i++) {
+        for (int n = 0; n < data.numAttributes(); n++) {
+          if ((n != data.classIndex()) && ((i + n) % 10 != 0))
+            data.instance(i).setValue(n, 0);
+        }
+      }
+    }
+
+    file = File.createTempFile("benchmark", ".arff");
+    file.deleteOnExit();
+    writer = new BufferedWriter(new FileWriter(file));
+    writer.write(new Instances(data, 0).toString());
+    writer.newLine();
+    for (int i = 0; i < data.numInstances(); i++) {
+      if (sparse) {
+	inst = new SparseInstance(data.instance(i));
+	inst.setDataset(data);
+	writer.write(inst.toString());
+      }
+      else {
+	writer.write(data.instance(i).toString());
+      }
+      writer.newLine();
+    }
+    writer.close();
+
+    return file;
+  }
+
+  /**
+   * Reads the file and returns the time taken.
+   *
+   * @param file the file to read
+   * @param fast whether to use FastArffReader
+   * @param threads the number of threads for FastArffReader
+   * @return the time in milliseconds
+   * @throws Exception if reading fails
+   */
+  protected static long time(File file, boolean fast, int threads) throws Exception {
+    long		start;
+    Reader		reader;
+    Instances		data;
+    FastArffReader	fastReader;
+
+    start  = System.currentTimeMillis();
+    reader = new BufferedReader(new FileReader(file));
+    if (fast) {
+      fastReader = new FastArffReader(reader, 1000, true);
+      fastReader.setNumThreads(threads);
+      data = fastReader.getStructure();
+      fastReader.readInstances(data, data);
+    }
+    else {
+      data = new ArffReader(reader).getData();
+    }
+    reader.close();
+    if (data.numInstances() == 0)
+      throw new IllegalStateException("No data read from " + file);
+
+    return System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the options: -rows, -threads, -runs
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    int		rows;
+    int		threads;
+    int		runs;
+    String	tmpStr;
+    File	file;
+    long	legacy;
+    long	sequential;
+    long	parallel;
+
+    tmpStr  = Utils.getOption("rows", args);
+    rows    = (tmpStr.length() > 0) ? Integer.parseInt(tmpStr) : 200000;
+    tmpStr  = Utils.getOption("threads", args);
+    threads = (tmpStr.length() > 0) ? Integer.parseInt(tmpStr) : Runtime.getRuntime().availableProcessors();
+    tmpStr  = Utils.getOption("runs", args);
+    runs    = (tmpStr.length() > 0) ? Integer.parseInt(tmpStr) : 5;
+
+    for (boolean sparse: new boolean[]{false, true}) {
+      file = generate(rows, sparse);
+      System.out.println((sparse ? "sparse" : "dense") + ": " + rows + " rows, "
+	+ (file.length() / 1024 / 1024) + "MB");
+
+      // warm up
+      time(file, false, 1);
+      time(file, true, threads);
+
+      legacy     = 0;
+      sequential = 0;
+      parallel   = 0;
+      for (int i = 0; i < runs; i++) {
+	legacy     += time(file, false, 1);
+	sequential += time(file, true, 1);
+	parallel   += time(file, true, threads);
+      }
+      System.out.println("  ArffReader:                   " + (legacy / runs) + "ms");
+      System.out.println("  FastArffReader:               " + (sequential / runs) + "ms");
+      System.out.println("  FastArffReader (" + threads + " threads): " + (parallel / runs) + "ms");
+      file.delete();
+    }
+  }
+}
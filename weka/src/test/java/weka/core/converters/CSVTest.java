@@ -19,8 +19,13 @@
 
 package weka.core.converters;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instances;
 
 /**
  * Tests CSVLoader/CSVSaver. Run from the command line with:<p/>
@@ -72,6 +77,77 @@ public class CSVTest
     m_CompareValuesAsString = true;
   }
 
+  /**
+   * Loads the file with the given loader.
+   *
+   * @param file the file to load
+   * @param loader the loader to use
+   * @return the data
+   * @throws Exception if loading fails
+   */
+  protected Instances load(File file, CSVLoader loader) throws Exception {
+    loader.setStringAttributes("last");
+    loader.setSource(file);
+    return loader.getDataSet();
+  }
+
+  /**
+   * tests determining the structure from a sample and parsing the file in
+   * parallel chunks.
+   */
+  public void testSample() {
+    File		file;
+    BufferedWriter	writer;
+    CSVLoader		loader;
+    Instances		expected;
+    Instances		actual;
+
+    try {
+      // large enough for several chunks, with labels not in the sample
+      file = File.createTempFile("sample", ".csv");
+      file.deleteOnExit();
+      writer = new BufferedWriter(new FileWriter(file));
+      writer.write("num,nom,date,str\n");
+      for (int i = 0; i < 60000; i++) {
+	writer.write(((i % 13 == 0) ? "?" : "" + (i * 0.25)) + ",");
+	writer.write(((i % 17 == 0) ? "" : "'label " + (i % (i < 5000 ? 3 : 7)) + "'") + ",");
+	writer.write("2026-01-0" + (1 + i % 9) + "T00:00:00,");
+	writer.write("text " + (i % 101) + ((i % 5 == 0) ? "\r\n" : "\n"));
+      }
+      writer.close();
+
+      loader = new CSVLoader();
+      loader.setDateAttributes("3");
+      expected = load(file, loader);
+
+      loader = new CSVLoader();
+      loader.setDateAttributes("3");
+      loader.setSampleSize(100);
+      loader.setNumThreads(4);
+      actual = load(file, loader);
+      assertNull(expected.equalHeadersMsg(actual), expected.equalHeadersMsg(actual));
+      assertEquals("number of instances differs", expected.numInstances(), actual.numInstances());
+      for (int i = 0; i < expected.numInstances(); i++)
+	assertEquals("instance " + i + " differs", expected.instance(i).toString(), actual.instance(i).toString());
+
+      loader = new CSVLoader();
+      loader.setDateAttributes("3");
+      loader.setSampleSize(100);
+      loader.setReservoirSample(true);
+      loader.setNumThreads(2);
+      actual = load(file, loader);
+      assertEquals("number of instances differs", expected.numInstances(), actual.numInstances());
+      for (int i = 0; i < expected.numInstances(); i++)
+	assertEquals("instance " + i + " differs", expected.instance(i).toString(), actual.instance(i).toString());
+
+      file.delete();
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+      fail("Loading with a sample failed: " + e);
+    }
+  }
+
   /**
    * returns a test suite.
    * 
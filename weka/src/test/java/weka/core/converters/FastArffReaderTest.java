@@ -0,0 +1,290 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.converters.ArffLoader.ArffReader;
+
+/**
+ * Tests FastArffReader by comparing its output with the one of ArffReader.
+ * Run from the command line with:<p/>
+ * java weka.core.converters.FastArffReaderTest
+ *
+ * @version $Revision$
+ */
+public class FastArffReaderTest
+  extends TestCase {
+
+  /** data exercising the tokenizer rules */
+  protected static final String TRICKY =
+      "% comment\n"
+    + "@relation tricky\n"
+    + "@attribute num numeric\n"
+    + "@attribute nom {a, 'b c', \"d,e\", '?'}\n"
+    + "@attribute str string\n"
+    + "@attribute dat date \"yyyy-MM-dd\"\n"
+    + "@data\n"
+    + "1,a,hello,2026-01-02\n"
+    + "\n"
+    + "-0,'b c','it\\'s',?  % trailing comment\r\n"
+    + ".5e3, \"d,e\" , 'tab\\there', '2026-02-03'\r"
+    + "1.2345678901234567890123,'?','oct\\101\\7',?,{2.5}\n"
+    + "?,?,?,?\n"
+    + "{0 1e-300, 2 'x y'}\n"
+    + "{1 a, 3 2026-03-04} {0.5}\n"
+    + "{}\n"
+    + "-12345678901234567890,a,'',2026-01-02";
+
+  /**
+   * Constructs the <code>FastArffReaderTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public FastArffReaderTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Generates ARFF data with numeric and nominal attributes.
+   *
+   * @param rows the number of rows
+   * @param sparse whether to use the sparse format
+   * @return the data
+   */
+  protected String generate(int rows, boolean sparse) {
+    StringBuilder result;
+    Random rand;
+    int i;
+    int n;
+
+    rand = new Random(42);
+    result = new StringBuilder();
+    result.append("@relation generated\n");
+    for (n = 0; n < 10; n++)
+      result.append("@attribute n" + n + " numeric\n");
+    result.append("@attribute class {yes,no,maybe}\n");
+    result.append("@data\n");
+    for (i = 0; i < rows; i++) {
+      if (sparse) {
+        result.append("{");
+        for (n = 0; n < 10; n++) {
+          if (rand.nextInt(3) == 0)
+            result.append(n + " " + rand.nextGaussian() + ",");
+        }
+        result.append("10 maybe}");
+      }
+      else {
+        for (n = 0; n < 10; n++)
+          result.append(((rand.nextInt(20) == 0) ? "?" : "" + rand.nextGaussian()) + ",");
+        result.append((rand.nextBoolean() ? "yes" : "no"));
+      }
+      if (rand.nextInt(10) == 0)
+        result.append(",{" + rand.nextInt(5) + "}");
+      result.append((i % 7 == 0) ? "\r\n" : "\n");
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Checks that the datasets contain the same instances.
+   *
+   * @param expected the data read by ArffReader
+   * @param actual the data read by FastArffReader
+   */
+  protected void assertEqualData(Instances expected, Instances actual) {
+    Instance exp;
+    Instance act;
+
+    assertEquals("headers differ", null, expected.equalHeadersMsg(actual));
+    assertEquals("number of instances differs", expected.numInstances(), actual.numInstances());
+    for (int i = 0; i < expected.numInstances(); i++) {
+      exp = expected.instance(i);
+      act = actual.instance(i);
+      assertEquals("class of instance " + i + " differs", exp.getClass(), act.getClass());
+      assertEquals("weight of instance " + i + " differs", exp.weight(), act.weight(), 0.0);
+      for (int n = 0; n < expected.numAttributes(); n++) {
+        assertEquals("value " + n + " of instance " + i + " differs",
+          Double.doubleToLongBits(exp.value(n)), Double.doubleToLongBits(act.value(n)));
+      }
+      assertEquals("instance " + i + " differs", exp.toString(), act.toString());
+    }
+  }
+
+  /**
+   * Reads the data with both readers in batch mode.
+   *
+   * @param data the ARFF data
+   * @param numThreads the number of threads for FastArffReader
+   */
+  protected void compareBatch(String data, int numThreads) throws Exception {
+    Instances expected;
+    Instances actual;
+    FastArffReader reader;
+
+    expected = new ArffReader(new StringReader(data)).getData();
+    reader = new FastArffReader(new StringReader(data), 1000, true);
+    reader.setNumThreads(numThreads);
+    actual = reader.getStructure();
+    reader.readInstances(actual, actual);
+    assertEqualData(expected, actual);
+  }
+
+  /**
+   * Tests reading data that exercises quoting, escapes, comments, missing
+   * values, line terminators, sparse instances and weights.
+   */
+  public void testTricky() throws Exception {
+    assertEqualData(
+      new ArffReader(new StringReader(TRICKY)).getData(),
+      new FastArffReader(new StringReader(TRICKY)).getData());
+  }
+
+  /**
+   * Tests reading the data incrementally.
+   */
+  public void testIncremental() throws Exception {
+    ArffReader legacy;
+    ArffReader fast;
+    Instances expected;
+    Instances actual;
+    Instance exp;
+    Instance act;
+
+    legacy = new ArffReader(new StringReader(TRICKY), 1, false);
+    fast = new FastArffReader(new StringReader(TRICKY), 1, false);
+    expected = legacy.getStructure();
+    actual = fast.getStructure();
+    while ((exp = legacy.readInstance(expected)) != null) {
+      act = fast.readInstance(actual);
+      assertNotNull("premature end of data", act);
+      assertEquals("weight differs", exp.weight(), act.weight(), 0.0);
+      for (int n = 0; n < expected.numAttributes(); n++) {
+        assertEquals("value " + n + " differs",
+          Double.doubleToLongBits(exp.value(n)), Double.doubleToLongBits(act.value(n)));
+        if (expected.attribute(n).isString()) {
+          assertEquals("string values of " + n + " differ",
+            expected.attribute(n).numValues(), actual.attribute(n).numValues());
+          for (int v = 0; v < expected.attribute(n).numValues(); v++)
+            assertEquals("string value " + v + " of " + n + " differs",
+              expected.attribute(n).value(v), actual.attribute(n).value(v));
+        }
+      }
+    }
+    assertNull("too many instances", fast.readInstance(actual));
+  }
+
+  /**
+   * Tests reading dense and sparse data sequentially and in parallel.
+   */
+  public void testParallel() throws Exception {
+    String data;
+
+    data = generate(30000, false);
+    compareBatch(data, 1);
+    compareBatch(data, 4);
+    data = generate(30000, true);
+    compareBatch(data, 1);
+    compareBatch(data, 4);
+  }
+
+  /**
+   * Tests that errors are reported like ArffReader does.
+   */
+  public void testErrors() throws Exception {
+    String[] rows;
+    String header;
+    String legacy;
+    String fast;
+
+    header = "@relation errors\n@attribute a numeric\n@attribute b {x,y}\n@data\n1,x\n";
+    rows = new String[]{"1,z\n", "abc,x\n", "1\n", "{1 x,0 1}\n", "{5 1}\n", "1,x,{2\n", "1,x,{1} 2\n"};
+    for (String row: rows) {
+      legacy = null;
+      fast = null;
+      try {
+        new ArffReader(new StringReader(header + row));
+      }
+      catch (IOException e) {
+        legacy = e.getMessage();
+      }
+      for (int numThreads = 1; numThreads <= 2; numThreads++) {
+        try {
+          compareBatch(header + row, numThreads);
+        }
+        catch (IOException e) {
+          fast = e.getMessage();
+        }
+        assertNotNull("no error for: " + row, legacy);
+        assertEquals("error differs for: " + row, legacy, fast);
+      }
+    }
+  }
+
+  /**
+   * Tests the direct conversion of numbers.
+   */
+  public void testParseDouble() {
+    String[] numbers = {"0", "-0", "1", "-1.5", "3.14159", ".5", "5.", "1e10",
+      "1E-5", "+7", "123456789012345678", "1234567890123456789", "0.1", "0.3",
+      "4.9e-324", "1.7976931348623157E308", "NaN", "Infinity", "-Infinity",
+      "0.000000000000000000000000001", "9007199254740993", "1e23", "1d"};
+    char[] buf;
+
+    for (String number: numbers) {
+      buf = (" " + number + " ").toCharArray();
+      assertEquals(number, Double.doubleToLongBits(Double.parseDouble(number)),
+        Double.doubleToLongBits(FastArffReader.parseDouble(buf, 1, number.length())));
+    }
+    try {
+      FastArffReader.parseDouble("1.2.3".toCharArray(), 0, 5);
+      fail("number format not detected");
+    }
+    catch (NumberFormatException e) {
+      // expected
+    }
+  }
+
+  /**
+   * returns a test suite
+   *
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(FastArffReaderTest.class);
+  }
+
+  /**
+   * for running the test from commandline
+   *
+   * @param args the commandline arguments - ignored
+   */
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+}
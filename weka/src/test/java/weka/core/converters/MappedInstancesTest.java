@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.converters;
+
+import java.io.File;
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.MappedInstances;
+import weka.core.SerializedObject;
+
+/**
+ * Tests MappedInstancesLoader/MappedInstancesSaver. Run from the command line with:<p/>
+ * java weka.core.converters.MappedInstancesTest
+ *
+ * @version $Revision$
+ */
+public class MappedInstancesTest 
+  extends AbstractFileConverterTest {
+
+  /**
+   * Constructs the <code>MappedInstancesTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public MappedInstancesTest(String name) { 
+    super(name);  
+  }
+
+  /**
+   * returns the loader used in the tests
+   * 
+   * @return the configured loader
+   */
+  public AbstractLoader getLoader() {
+    return new MappedInstancesLoader();
+  }
+
+  /**
+   * returns the saver used in the tests
+   * 
+   * @return the configured saver
+   */
+  public AbstractSaver getSaver() {
+    return new MappedInstancesSaver();
+  }
+
+  /**
+   * tests the dataset returned by the loader and copies made of it.
+   */
+  public void testMappedDataset() {
+    Instances data;
+    Instances copy;
+
+    try {
+      m_Saver.setInstances(m_Instances);
+      m_Saver.setFile(new File(m_ExportFilename));
+      m_Saver.writeBatch();
+      ((AbstractFileLoader) m_Loader).setFile(new File(m_ExportFilename));
+      data = m_Loader.getDataSet();
+      assertTrue("not memory-mapped", data instanceof MappedInstances);
+
+      try {
+        data.add(data.instance(0));
+        fail("adding to a memory-mapped dataset should fail");
+      }
+      catch (UnsupportedOperationException e) {
+        // expected
+      }
+
+      // changes made through the dataset's instances are kept, copies are independent
+      Instance copied = (Instance) data.instance(0).copy();
+      data.instance(0).setValue(0, 42);
+      data.instance(0).setWeight(3);
+      assertEquals("value not kept", 42, data.instance(0).value(0), 0.0);
+      assertEquals("weight not kept", 3, data.instance(0).weight(), 0.0);
+      assertEquals("copy changed", m_Instances.instance(0).value(0), copied.value(0), 0.0);
+      assertEquals("copy changed", m_Instances.instance(0).weight(), copied.weight(), 0.0);
+      copied = (Instance) data.instance(0).copy();
+      data.instance(0).setValue(0, 43);
+      assertEquals("copy changed", 42, copied.value(0), 0.0);
+      copied.setValue(0, 44);
+      assertEquals("dataset changed", 43, data.instance(0).value(0), 0.0);
+      copy = new MappedInstances((MappedInstances) data);
+      copy.instance(0).setValue(0, 45);
+      assertEquals("dataset changed", 43, data.instance(0).value(0), 0.0);
+      assertEquals("weight not copied", 3, copy.instance(0).weight(), 0.0);
+      assertEquals("changes written to file", m_Instances.instance(0).value(0),
+        ((AbstractFileLoader) m_Loader).getDataSet().instance(0).value(0), 0.0);
+      data.instance(0).setValue(0, m_Instances.instance(0).value(0));
+      data.instance(0).setWeight(m_Instances.instance(0).weight());
+
+      // reordering the dataset
+      copy = new MappedInstances((MappedInstances) data);
+      copy.randomize(new Random(1));
+      Instances expected = new Instances(m_Instances);
+      expected.randomize(new Random(1));
+      compareDatasets(expected, copy);
+      compareDatasets(m_Instances, data);
+
+      // heap copies can be restructured
+      copy = new Instances(data);
+      copy.deleteAttributeAt(0);
+      assertEquals("# of attributes differ", m_Instances.numAttributes() - 1, copy.instance(0).numAttributes());
+      assertEquals("value differs", m_Instances.instance(0).value(1), copy.instance(0).value(0), 0.0);
+
+      // the mapping is restored after deserialization
+      copy = (Instances) new SerializedObject(data).getObject();
+      compareDatasets(m_Instances, copy);
+    }
+    catch (Exception e) {
+      e.printStackTrace();
+      fail("Memory-mapped dataset failed: " + e.toString());
+    }
+  }
+
+  /**
+   * returns a test suite
+   * 
+   * @return the test suite
+   */
+  public static Test suite() {
+    return new TestSuite(MappedInstancesTest.class);
+  }
+
+  /**
+   * for running the test from commandline
+   * 
+   * @param args the commandline arguments - ignored
+   */
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+}
+
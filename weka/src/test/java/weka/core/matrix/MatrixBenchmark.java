@@ -0,0 +1,198 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.matrix;
+
+import java.util.Random;
+
+import no.uib.cipr.matrix.DenseCholesky;
+import no.uib.cipr.matrix.DenseMatrix;
+import no.uib.cipr.matrix.QR;
+import no.uib.cipr.matrix.UpperSPDDenseMatrix;
+import weka.core.Utils;
+
+/**
+ * Compares the time the operations of weka.core.matrix.Matrix take with one
+ * and with several threads to the time of the same operations in MTJ, which
+ * uses a native BLAS/LAPACK if netlib-java finds one and its Java
+ * translation otherwise. Not run as part of the test suite. Run from the
+ * command line with:<p/>
+ * java weka.core.matrix.MatrixBenchmark [-size num] [-threads num] [-runs num]
+ *
+ * @version $Revision$
+ */
+public class MatrixBenchmark {
+
+  /** the operations that are timed */
+  protected static final String[] OPERATIONS = {"times", "solve (LU)",
+    "Cholesky + solve", "QR"};
+
+  /** a random square matrix */
+  protected static double[][] m_Square;
+
+  /** a random right-hand side with several columns */
+  protected static double[][] m_Rhs;
+
+  /** a symmetric, positive definite matrix */
+  protected static double[][] m_SPD;
+
+  /** a random matrix with more rows than columns */
+  protected static double[][] m_Tall;
+
+  /**
+   * Generates the matrices.
+   *
+   * @param size the number of columns of the matrices
+   */
+  protected static void generate(int size) {
+    Random	random;
+    Matrix	square;
+
+    random   = new Random(1);
+    m_Square = new double[size][size];
+    m_Rhs    = new double[size][size / 4];
+    m_Tall   = new double[2 * size][size];
+    for (int i = 0; i < size; i++) {
+      for (int j = 0; j < size; j++)
+	m_Square[i][j] = random.nextGaussian();
+      for (int j = 0; j < size / 4; j++)
+	m_Rhs[i][j] = random.nextGaussian();
+    }
+    for (int i = 0; i < 2 * size; i++) {
+      for (int j = 0; j < size; j++)
+	m_Tall[i][j] = random.nextGaussian();
+    }
+    square = new Matrix(m_Square);
+    m_SPD  = square.transpose().times(square).getArray();
+    for (int i = 0; i < size; i++)
+      m_SPD[i][i] += size;
+  }
+
+  /**
+   * Runs an operation with weka.core.matrix and returns the time taken.
+   *
+   * @param operation the index of the operation
+   * @return the time in milliseconds
+   */
+  protected static long timeWeka(int operation) {
+    long	start;
+    Matrix	result;
+
+    start = System.currentTimeMillis();
+    switch (operation) {
+      case 0:
+	result = new Matrix(m_Square).times(new Matrix(m_Square));
+	break;
+      case 1:
+	result = new Matrix(m_Square).solve(new Matrix(m_Rhs));
+	break;
+      case 2:
+	result = new Matrix(m_SPD).chol().solve(new Matrix(m_Rhs));
+	break;
+      default:
+	result = new Matrix(m_Tall).qr().getR();
+    }
+    if (result.getRowDimension() == 0)
+      throw new IllegalStateException("Empty result");
+
+    return System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Runs an operation with MTJ and returns the time taken.
+   *
+   * @param operation the index of the operation
+   * @return the time in milliseconds
+   */
+  protected static long timeMTJ(int operation) {
+    long		start;
+    DenseMatrix		result;
+    DenseMatrix		a;
+
+    start = System.currentTimeMillis();
+    switch (operation) {
+      case 0:
+	a      = new DenseMatrix(m_Square);
+	result = (DenseMatrix) a.mult(new DenseMatrix(m_Square), new DenseMatrix(a.numRows(), a.numColumns()));
+	break;
+      case 1:
+	a      = new DenseMatrix(m_Square);
+	result = (DenseMatrix) a.solve(new DenseMatrix(m_Rhs), new DenseMatrix(m_Rhs.length, m_Rhs[0].length));
+	break;
+      case 2:
+	result = DenseCholesky.factorize(new UpperSPDDenseMatrix(new DenseMatrix(m_SPD))).solve(new DenseMatrix(m_Rhs));
+	break;
+      default:
+	a      = new DenseMatrix(m_Tall);
+	QR.factorize(a);
+	result = a;
+    }
+    if (result.numRows() == 0)
+      throw new IllegalStateException("Empty result");
+
+    return System.currentTimeMillis() - start;
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the options: -size, -threads, -runs
+   * @throws Exception if the benchmark fails
+   */
+  public static void main(String[] args) throws Exception {
+    int		size;
+    int		threads;
+    int		runs;
+    String	tmpStr;
+    long	sequential;
+    long	parallel;
+    long	mtj;
+
+    tmpStr  = Utils.getOption("size", args);
+    size    = (tmpStr.length() > 0) ? Integer.parseInt(tmpStr) : 1000;
+    tmpStr  = Utils.getOption("threads", args);
+    threads = (tmpStr.length() > 0) ? Integer.parseInt(tmpStr) : Runtime.getRuntime().availableProcessors();
+    tmpStr  = Utils.getOption("runs", args);
+    runs    = (tmpStr.length() > 0) ? Integer.parseInt(tmpStr) : 5;
+
+    generate(size);
+    System.out.println(size + "x" + size + ", " + threads + " threads");
+    for (int op = 0; op < OPERATIONS.length; op++) {
+      // warm up
+      ParallelRange.setNumThreads(threads);
+      timeWeka(op);
+      timeMTJ(op);
+
+      sequential = 0;
+      parallel   = 0;
+      mtj        = 0;
+      for (int i = 0; i < runs; i++) {
+	ParallelRange.setNumThreads(1);
+	sequential += timeWeka(op);
+	ParallelRange.setNumThreads(threads);
+	parallel   += timeWeka(op);
+	mtj        += timeMTJ(op);
+      }
+      System.out.println("  " + OPERATIONS[op] + ":");
+      System.out.println("    Matrix:                " + (sequential / runs) + "ms");
+      System.out.println("    Matrix (" + threads + " threads):    " + (parallel / runs) + "ms");
+      System.out.println("    MTJ:                   " + (mtj / runs) + "ms");
+    }
+  }
+}
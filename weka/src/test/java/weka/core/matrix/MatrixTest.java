@@ -0,0 +1,200 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/*
+ * Copyright (C) 2026 University of Waikato, Hamilton, New Zealand
+ */
+
+package weka.core.matrix;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Tests Matrix and its decompositions, in particular that several threads
+ * give the same results as one. Run from the command line with:<p/>
+ * java weka.core.matrix.MatrixTest
+ *
+ * @version $Revision$
+ */
+public class MatrixTest extends TestCase {
+
+  /** the number of threads before the test */
+  protected int m_NumThreads;
+
+  /**
+   * Constructs the <code>MatrixTest</code>.
+   *
+   * @param name the name of the test class
+   */
+  public MatrixTest(String name) {
+    super(name);
+  }
+
+  /**
+   * Called by JUnit before each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    m_NumThreads = ParallelRange.getNumThreads();
+  }
+
+  /**
+   * Called by JUnit after each test method.
+   *
+   * @throws Exception if an error occurs
+   */
+  @Override
+  protected void tearDown() throws Exception {
+    ParallelRange.setNumThreads(m_NumThreads);
+    super.tearDown();
+  }
+
+  /**
+   * Generates a matrix with normally distributed values.
+   *
+   * @param rows the number of rows
+   * @param columns the number of columns
+   * @param seed the seed for the random numbers
+   * @return the matrix
+   */
+  protected Matrix random(int rows, int columns, long seed) {
+    Random random = new Random(seed);
+    Matrix result = new Matrix(rows, columns);
+    for (int i = 0; i < rows; i++) {
+      for (int j = 0; j < columns; j++) {
+        result.set(i, j, random.nextGaussian());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Checks that two matrices are identical.
+   *
+   * @param msg the message for failures
+   * @param expected the expected matrix
+   * @param actual the matrix to check
+   */
+  protected void assertIdentical(String msg, Matrix expected, Matrix actual) {
+    assertEquals(msg + " (rows)", expected.getRowDimension(),
+      actual.getRowDimension());
+    assertEquals(msg + " (columns)", expected.getColumnDimension(),
+      actual.getColumnDimension());
+    for (int i = 0; i < expected.getRowDimension(); i++) {
+      for (int j = 0; j < expected.getColumnDimension(); j++) {
+        assertEquals(msg + " (" + i + "," + j + ")",
+          Double.doubleToLongBits(expected.get(i, j)),
+          Double.doubleToLongBits(actual.get(i, j)));
+      }
+    }
+  }
+
+  /**
+   * Computes the results of the operations that may use several threads.
+   *
+   * @param numThreads the number of threads to use
+   * @return the results
+   */
+  protected Matrix[] compute(int numThreads) {
+    ParallelRange.setNumThreads(numThreads);
+    Matrix a = random(150, 150, 1);
+    Matrix b = random(150, 40, 2);
+    Matrix tall = random(300, 150, 3);
+    Matrix spd = a.transpose().times(a);
+    for (int i = 0; i < spd.getRowDimension(); i++) {
+      spd.set(i, i, spd.get(i, i) + 1);
+    }
+    // the columns of LU are only split between threads for large matrices
+    Matrix large = random(600, 600, 4);
+    Matrix rhs = random(600, 40, 5);
+
+    return new Matrix[]{a.times(b), a.times(b.getMatrix(0, 149, 0, 0)),
+      large.lu().getL(), large.lu().getU(), large.solve(rhs), a.inverse(),
+      spd.chol().getL(), spd.chol().solve(b), tall.qr().getR(),
+      tall.qr().getH(), tall.qr().solve(random(300, 40, 6))};
+  }
+
+  /**
+   * Tests that the results do not depend on the number of threads.
+   */
+  public void testNumThreads() {
+    Matrix[] expected = compute(1);
+    Matrix[] actual = compute(3);
+    for (int i = 0; i < expected.length; i++) {
+      assertIdentical("result " + i + " differs", expected[i], actual[i]);
+    }
+  }
+
+  /**
+   * Tests the product against the sums of products of rows and columns.
+   */
+  public void testTimes() {
+    Matrix a = random(70, 300, 5);
+    Matrix b = random(300, 90, 6);
+    Matrix c = a.times(b);
+    for (int i = 0; i < a.getRowDimension(); i++) {
+      for (int j = 0; j < b.getColumnDimension(); j++) {
+        double s = 0;
+        for (int k = 0; k < a.getColumnDimension(); k++) {
+          s += a.get(i, k) * b.get(k, j);
+        }
+        assertEquals("element (" + i + "," + j + ")", s, c.get(i, j), 0.0);
+      }
+    }
+  }
+
+  /**
+   * Tests that the decompositions solve linear systems.
+   */
+  public void testSolve() {
+    ParallelRange.setNumThreads(2);
+    Matrix a = random(120, 120, 7);
+    Matrix b = random(120, 10, 8);
+    Matrix spd = a.transpose().times(a);
+
+    assertTrue("LU", a.times(a.solve(b)).minus(b).normInf() < 1e-8);
+    assertTrue("Cholesky", spd.chol().isSPD());
+    assertTrue("Cholesky",
+      spd.times(spd.chol().solve(b)).minus(b).normInf() < 1e-6);
+    Matrix tall = random(160, 120, 9);
+    Matrix x = tall.qr().solve(tall.times(b));
+    assertTrue("QR", x.minus(b).normInf() < 1e-8);
+  }
+
+  /**
+   * Returns a test suite.
+   *
+   * @return test suite
+   */
+  public static Test suite() {
+    return new TestSuite(MatrixTest.class);
+  }
+
+  /**
+   * Runs the test from command-line.
+   *
+   * @param args ignored
+   */
+  public static void main(String[] args) {
+    junit.textui.TestRunner.run(suite());
+  }
+}
@@ -22,6 +22,7 @@ package weka.core.neighboursearch;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 import junit.framework.TestCase;
@@ -314,6 +315,38 @@ public abstract class AbstractNearestNeighbourSearchTest extends TestCase {
     }
   }
 
+  /**
+   * tests whether searching for the neighbours of a batch of instances gives
+   * the same neighbours and distances as searching for them one at a time
+   */
+  public void testBatchNeighbours() {
+    Instances[] batch;
+    double[][] distances;
+    Instances inst;
+    int n;
+
+    try {
+      m_NearestNeighbourSearch.setInstances(m_Instances);
+      batch = m_NearestNeighbourSearch.kNearestNeighbours(m_Instances,
+        m_NumNeighbors, false);
+      distances = m_NearestNeighbourSearch.getBatchDistances();
+      assertEquals("Number of results", m_Instances.numInstances(),
+        batch.length);
+
+      for (n = 0; n < m_Instances.numInstances(); n++) {
+        inst = m_NearestNeighbourSearch.kNearestNeighbours(
+          m_Instances.instance(n), m_NumNeighbors);
+        assertEquals("Neighbors of instance #" + (n + 1), inst.toString(),
+          batch[n].toString());
+        assertEquals("Distances of instance #" + (n + 1),
+          Arrays.toString(m_NearestNeighbourSearch.getDistances()),
+          Arrays.toString(distances[n]));
+      }
+    } catch (Exception e) {
+      fail("Batch search failed: " + e);
+    }
+  }
+
   /**
    * Runs the NearestNeighbourSearch with the given data and returns the
    * generated results.
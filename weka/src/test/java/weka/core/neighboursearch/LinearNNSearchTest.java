@@ -19,8 +19,13 @@
 
 package weka.core.neighboursearch;
 
+import java.util.Arrays;
+
 import junit.framework.Test;
 import junit.framework.TestSuite;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.attribute.ReplaceMissingValues;
 
 /**
  * Tests LinearNNSearch. Run from the command line with: <p/>
@@ -41,6 +46,64 @@ public class LinearNNSearchTest
     return new LinearNNSearch();
   }
   
+  /**
+   * Searches for the neighbours of the targets, in a batch and one at a
+   * time, and compares the results.
+   *
+   * @param search the search to use
+   * @param train the training instances
+   * @param targets the instances to find the neighbours for
+   * @param addInfo whether the targets' info is added to the search
+   * @throws Exception if the search fails
+   */
+  protected void compareBatch(LinearNNSearch search, Instances train,
+    Instances targets, boolean addInfo) throws Exception {
+
+    search.setInstances(train);
+    Instances[] batch = search.kNearestNeighbours(targets, m_NumNeighbors,
+      addInfo);
+    double[][] distances = search.getBatchDistances();
+
+    search.setInstances(train);
+    for (int n = 0; n < targets.numInstances(); n++) {
+      if (addInfo)
+        search.addInstanceInfo(targets.instance(n));
+      Instances inst = search.kNearestNeighbours(targets.instance(n),
+        m_NumNeighbors);
+      assertEquals("Neighbors of instance #" + (n + 1), inst.toString(),
+        batch[n].toString());
+      assertEquals("Distances of instance #" + (n + 1),
+        Arrays.toString(search.getDistances()), Arrays.toString(distances[n]));
+    }
+  }
+
+  /**
+   * Tests the batch search with the Euclidean distance on data without
+   * missing values, with targets that are training instances and others
+   * whose values lie outside the ranges, with and without several threads.
+   */
+  public void testBatchWithoutMissingValues() throws Exception {
+    ReplaceMissingValues replace = new ReplaceMissingValues();
+    replace.setInputFormat(m_Instances);
+    Instances data = Filter.useFilter(m_Instances, replace);
+    Instances train = new Instances(data, 0, data.numInstances() / 2);
+    Instances test = new Instances(data, data.numInstances() / 2,
+      data.numInstances() - data.numInstances() / 2);
+    // a target with missing values is searched for on its own
+    test.add(m_Instances.instance(m_Instances.numInstances() - 1));
+    test.add(data.instance(0));
+
+    for (int threads = 1; threads <= 3; threads += 2) {
+      LinearNNSearch search = new LinearNNSearch();
+      search.setNumThreads(threads);
+      compareBatch(search, train, train, false);
+      compareBatch(search, train, test, false);
+      compareBatch(search, train, test, true);
+      search.setSkipIdentical(true);
+      compareBatch(search, train, train, false);
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(LinearNNSearchTest.class);
   }
@@ -19,6 +19,7 @@
 
 package weka.filters.unsupervised.instance;
 
+import weka.core.CompactSparseInstance;
 import weka.core.Instances;
 import weka.core.SparseInstance;
 import weka.filters.AbstractFilterTest;
@@ -57,6 +58,21 @@ public class NonSparseToSparseTest extends AbstractFilterTest {
   }
 
 
+  public void testCompact() throws Exception {
+    Instances expected = useFilter();
+    NonSparseToSparse f = new NonSparseToSparse();
+    f.setCompact(true);
+    f.setInputFormat(m_Instances);
+    Instances result = Filter.useFilter(m_Instances, f);
+    assertEquals(expected.numInstances(), result.numInstances());
+    for (int i = 0; i < result.numInstances(); i++) {
+      assertTrue("Instance should be an instanceof CompactSparseInstance",
+             result.instance(i) instanceof CompactSparseInstance);
+      assertEquals("Instance " + i + " differs",
+             expected.instance(i).toString(), result.instance(i).toString());
+    }
+  }
+
   public static Test suite() {
     return new TestSuite(NonSparseToSparseTest.class);
   }